@@ -19,10 +19,26 @@ package com.blobcity.code;
 import com.blobcity.lib.export.ExportType;
 import com.blobcity.lib.export.GenericExportResponse;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
 /**
  * @author sanketsarang
  */
 public interface ExportServiceRouter {
 
     public GenericExportResponse export(final String ds, final String spName, final ExportType exportType, final String param);
+
+    /**
+     * Streams all records of a collection to the output stream without holding them in memory
+     *
+     * @param ds name of the datastore
+     * @param collection name of the collection
+     * @param exportType {@link ExportType#CSV}, or {@link ExportType#JSON} for one JSON record per line
+     * @param compress <code>true</code> to gzip the output
+     * @param outputStream stream to write to; is not closed
+     * @throws IOException if the export type is not supported, the collection could not be read or writing fails
+     */
+    public void exportCollection(final String ds, final String collection, final ExportType exportType, final boolean compress,
+            final OutputStream outputStream) throws IOException;
 }
@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.lib.database.bean.manager.interfaces.engine;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A query response delivered as a sequence of string chunks, which when concatenated form the complete JSON response.
+ * Chunks are produced only as they are pulled, so the memory held by a response is bounded by the size of a chunk
+ * and not by the size of the result. The consumer controls the pace at which rows are read by the pace at which it
+ * pulls chunks.
+ *
+ * <p>
+ * Streams must be closed once consumed or abandoned, so that any resources held by the query are released.
+ *
+ * @author sanketsarang
+ */
+public interface QueryResultStream extends Iterator<String>, AutoCloseable {
+
+    @Override
+    public void close();
+
+    /**
+     * Wraps a fully computed response as a stream with a single chunk
+     *
+     * @param response the complete response
+     * @return a stream producing the response as its only chunk
+     */
+    public static QueryResultStream of(final String response) {
+        return new QueryResultStream() {
+            private boolean consumed = response == null;
+
+            @Override
+            public boolean hasNext() {
+                return !consumed;
+            }
+
+            @Override
+            public String next() {
+                if (consumed) {
+                    throw new NoSuchElementException();
+                }
+                consumed = true;
+                return response;
+            }
+
+            @Override
+            public void close() {
+                consumed = true;
+            }
+        };
+    }
+}
@@ -16,6 +16,8 @@
 
 package com.blobcity.lib.database.bean.manager.interfaces.engine;
 
+import java.util.List;
+
 /**
  * Interface for exposing the SqlExecutorBean bean to other projects
  *
@@ -37,4 +39,52 @@ public interface SqlExecutor {
      * @return The JSON response of the SQL query, which may be a scalar result, a resultSet, an error etc.
      */
     public String runQuery(final String requestId, final String userName, final String password, final String dbName, final String sqlString);
+
+    /**
+     * Runs the query and streams the response in chunks instead of building it as a single string. Concatenating the
+     * chunks gives the same response as {@link #runQuery(java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String)}.
+     *
+     * @param requestId the id of the request
+     * @param userName The username
+     * @param password The password
+     * @param dbName The database name (previously known as appId)
+     * @param sqlString The SQL statement to execute
+     * @param fetchSize maximum number of rows in a single chunk of the response
+     * @return the response as a stream of chunks, which must be closed by the caller
+     */
+    public default QueryResultStream runQueryAsStream(final String requestId, final String userName, final String password, final String dbName, final String sqlString, final int fetchSize) {
+        return QueryResultStream.of(runQuery(requestId, userName, password, dbName, sqlString));
+    }
+
+    /**
+     * Runs a prepared statement. The statement is parsed once and its parse tree reused by every later execution of
+     * the same statement, whatever the parameters.
+     *
+     * @param requestId the id of the request
+     * @param userName The username
+     * @param password The password
+     * @param dbName The database name (previously known as appId)
+     * @param sqlString The SQL statement to execute, with a <code>?</code> placeholder for every parameter
+     * @param parameters values of the placeholders in order of occurrence. Numbers, booleans, strings and
+     * <code>null</code> are supported
+     * @return The JSON response of the SQL query, which may be a scalar result, a resultSet, an error etc.
+     */
+    public String runPreparedQuery(final String requestId, final String userName, final String password, final String dbName, final String sqlString, final List<Object> parameters);
+
+    /**
+     * Runs a prepared statement and streams the response in chunks
+     *
+     * @param requestId the id of the request
+     * @param userName The username
+     * @param password The password
+     * @param dbName The database name (previously known as appId)
+     * @param sqlString The SQL statement to execute, with a <code>?</code> placeholder for every parameter
+     * @param parameters values of the placeholders in order of occurrence
+     * @param fetchSize maximum number of rows in a single chunk of the response
+     * @return the response as a stream of chunks, which must be closed by the caller
+     * @see #runPreparedQuery(java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.util.List)
+     */
+    public default QueryResultStream runPreparedQueryAsStream(final String requestId, final String userName, final String password, final String dbName, final String sqlString, final List<Object> parameters, final int fetchSize) {
+        return QueryResultStream.of(runPreparedQuery(requestId, userName, password, dbName, sqlString, parameters));
+    }
 }
@@ -23,6 +23,7 @@ package com.blobcity.lib.query;
  */
 public enum CollectionStorageType {
     ON_DISK("on-disk"),
+    ON_DISK_SEGMENTED("on-disk-segmented"),
     IN_MEMORY("in-memory"),
     IN_MEMORY_NON_DURABLE("in-memory-nd");
 
@@ -49,7 +49,9 @@ public enum QueryParams {
     TIME("time"),
     INTERPRETER("interpreter"),
     INTERCEPTOR("interceptor"),
-    SQL("sql");
+    SQL("sql"),
+    NODE_LOAD("node-load"),
+    BEFORE("before");
 
     final String param;
     QueryParams(final String param) {
@@ -0,0 +1,633 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.bitmap;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * <p>
+ * Compressed bitmap of non-negative <code>int</code> values in the layout of Roaring bitmaps. Values are partitioned
+ * by their high 16 bits into containers; a container holding up to <code>ARRAY_MAX</code> values stores them as a
+ * sorted <code>char[]</code> and a denser container stores them as a 65536 bit <code>long[]</code>. Sparse sets hence
+ * cost 2 bytes per value and dense sets 1 bit per value, and AND / OR / AND-NOT run container by container.
+ *
+ * <p>
+ * The class is not thread safe. Bitmaps returned by the set operations are new instances and leave the operands
+ * untouched.
+ *
+ * @author sanketsarang
+ */
+public class RoaringBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private char[] highs;
+    private Container[] containers;
+    private int size;
+
+    public RoaringBitmap() {
+        this.highs = new char[4];
+        this.containers = new Container[4];
+        this.size = 0;
+    }
+
+    public static RoaringBitmap of(final int... values) {
+        final RoaringBitmap bitmap = new RoaringBitmap();
+        for (int value : values) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    public void add(final int value) {
+        final char high = (char) (value >>> 16);
+        int index = indexOf(high);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, high, new ArrayContainer());
+        }
+        containers[index] = containers[index].add((char) value);
+    }
+
+    public void remove(final int value) {
+        final int index = indexOf((char) (value >>> 16));
+        if (index < 0) {
+            return;
+        }
+        final Container container = containers[index].remove((char) value);
+        if (container.cardinality() == 0) {
+            removeContainer(index);
+        } else {
+            containers[index] = container;
+        }
+    }
+
+    public boolean contains(final int value) {
+        final int index = indexOf((char) (value >>> 16));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    public long getCardinality() {
+        long cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the values present in both bitmaps
+     *
+     * @param other the other bitmap
+     * @return a new bitmap
+     */
+    public RoaringBitmap and(final RoaringBitmap other) {
+        final RoaringBitmap result = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (highs[i] < other.highs[j]) {
+                i++;
+            } else if (highs[i] > other.highs[j]) {
+                j++;
+            } else {
+                final Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.appendContainer(highs[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the values present in either bitmap
+     *
+     * @param other the other bitmap
+     * @return a new bitmap
+     */
+    public RoaringBitmap or(final RoaringBitmap other) {
+        final RoaringBitmap result = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j >= other.size || (i < size && highs[i] < other.highs[j])) {
+                result.appendContainer(highs[i], containers[i].copy());
+                i++;
+            } else if (i >= size || highs[i] > other.highs[j]) {
+                result.appendContainer(other.highs[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.appendContainer(highs[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the values present in this bitmap and absent from the other
+     *
+     * @param other the other bitmap
+     * @return a new bitmap
+     */
+    public RoaringBitmap andNot(final RoaringBitmap other) {
+        final RoaringBitmap result = new RoaringBitmap();
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.highs[j] < highs[i]) {
+                j++;
+            }
+            final Container container = j < other.size && other.highs[j] == highs[i]
+                    ? containers[i].andNot(other.containers[j])
+                    : containers[i].copy();
+            if (container.cardinality() > 0) {
+                result.appendContainer(highs[i], container);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Visits every value in ascending order
+     *
+     * @param consumer the consumer of values
+     */
+    public void forEach(final IntConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(highs[i] << 16, consumer);
+        }
+    }
+
+    /**
+     * Iterates over values in ascending order
+     *
+     * @return an iterator of values
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int containerIndex = 0;
+            private int position = 0;
+            private int next = advance();
+
+            private int advance() {
+                while (containerIndex < size) {
+                    final int low = containers[containerIndex].next(position);
+                    if (low >= 0) {
+                        position = low + 1;
+                        return (highs[containerIndex] << 16) | low;
+                    }
+                    containerIndex++;
+                    position = 0;
+                }
+                return -1;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return containerIndex < size;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final int value = next;
+                next = advance();
+                return value;
+            }
+        };
+    }
+
+    /**
+     * Estimates the heap held by the bitmap
+     *
+     * @return approximate size in bytes
+     */
+    public long estimatedBytes() {
+        long bytes = 16 + highs.length * 2L + containers.length * 8L;
+        for (int i = 0; i < size; i++) {
+            bytes += containers[i].estimatedBytes();
+        }
+        return bytes;
+    }
+
+    private int indexOf(final char high) {
+        return Arrays.binarySearch(highs, 0, size, high);
+    }
+
+    private void insertContainer(final int index, final char high, final Container container) {
+        ensureCapacity();
+        System.arraycopy(highs, index, highs, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        highs[index] = high;
+        containers[index] = container;
+        size++;
+    }
+
+    private void appendContainer(final char high, final Container container) {
+        ensureCapacity();
+        highs[size] = high;
+        containers[size] = container;
+        size++;
+    }
+
+    private void removeContainer(final int index) {
+        System.arraycopy(highs, index + 1, highs, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        containers[--size] = null;
+    }
+
+    private void ensureCapacity() {
+        if (size == highs.length) {
+            highs = Arrays.copyOf(highs, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (!(obj instanceof RoaringBitmap)) {
+            return false;
+        }
+        final RoaringBitmap other = (RoaringBitmap) obj;
+        if (size != other.size || getCardinality() != other.getCardinality()) {
+            return false;
+        }
+        final PrimitiveIterator.OfInt mine = iterator();
+        final PrimitiveIterator.OfInt theirs = other.iterator();
+        while (mine.hasNext()) {
+            if (mine.nextInt() != theirs.nextInt()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        final int[] hash = {1};
+        forEach(value -> hash[0] = 31 * hash[0] + value);
+        return hash[0];
+    }
+
+    /**
+     * Holds the low 16 bits of the values sharing the same high 16 bits. Mutating operations return the container
+     * to be kept, which differs from the receiver when the representation changes.
+     */
+    private static abstract class Container {
+
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        abstract Container and(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container andNot(Container other);
+
+        abstract Container copy();
+
+        /* Smallest value greater than or equal to from; -1 if none */
+        abstract int next(int from);
+
+        abstract void forEach(int base, IntConsumer consumer);
+
+        abstract long estimatedBytes();
+
+        BitmapContainer toBitmap() {
+            final BitmapContainer bitmap = new BitmapContainer();
+            forEach(0, value -> bitmap.set((char) value));
+            return bitmap;
+        }
+    }
+
+    private static final class ArrayContainer extends Container {
+
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(final char[] values, final int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(final char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (cardinality >= ARRAY_MAX) {
+                return toBitmap().add(value);
+            }
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(final char value) {
+            final int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(final char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container and(final Container other) {
+            final char[] result = new char[Math.min(cardinality, other.cardinality())];
+            int count = 0;
+            if (other instanceof ArrayContainer) {
+                final ArrayContainer array = (ArrayContainer) other;
+                int i = 0;
+                int j = 0;
+                while (i < cardinality && j < array.cardinality) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        result[count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) {
+                        result[count++] = values[i];
+                    }
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container or(final Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.or(this);
+            }
+            final ArrayContainer array = (ArrayContainer) other;
+            if (cardinality + array.cardinality > ARRAY_MAX) {
+                return toBitmap().or(other);
+            }
+            final char[] result = new char[cardinality + array.cardinality];
+            int i = 0;
+            int j = 0;
+            int count = 0;
+            while (i < cardinality || j < array.cardinality) {
+                if (j >= array.cardinality || (i < cardinality && values[i] < array.values[j])) {
+                    result[count++] = values[i++];
+                } else if (i >= cardinality || values[i] > array.values[j]) {
+                    result[count++] = array.values[j++];
+                } else {
+                    result[count++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container andNot(final Container other) {
+            final char[] result = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (!other.contains(values[i])) {
+                    result[count++] = values[i];
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(1, cardinality)), cardinality);
+        }
+
+        @Override
+        int next(final int from) {
+            if (from > Character.MAX_VALUE) {
+                return -1;
+            }
+            int index = Arrays.binarySearch(values, 0, cardinality, (char) from);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return index < cardinality ? values[index] : -1;
+        }
+
+        @Override
+        void forEach(final int base, final IntConsumer consumer) {
+            for (int i = 0; i < cardinality; i++) {
+                consumer.accept(base | values[i]);
+            }
+        }
+
+        @Override
+        long estimatedBytes() {
+            return 24 + values.length * 2L;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer() {
+            this(new long[BITMAP_WORDS], 0);
+        }
+
+        BitmapContainer(final long[] words, final int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        void set(final char value) {
+            final long before = words[value >>> 6];
+            final long after = before | (1L << value);
+            if (before != after) {
+                words[value >>> 6] = after;
+                cardinality++;
+            }
+        }
+
+        @Override
+        Container add(final char value) {
+            set(value);
+            return this;
+        }
+
+        @Override
+        Container remove(final char value) {
+            final long before = words[value >>> 6];
+            final long after = before & ~(1L << value);
+            if (before != after) {
+                words[value >>> 6] = after;
+                cardinality--;
+            }
+            return cardinality <= ARRAY_MAX ? toArray() : this;
+        }
+
+        @Override
+        boolean contains(final char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container and(final Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            final long[] otherWords = ((BitmapContainer) other).words;
+            final long[] result = new long[BITMAP_WORDS];
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                result[i] = words[i] & otherWords[i];
+            }
+            return normalize(result);
+        }
+
+        @Override
+        Container or(final Container other) {
+            final long[] result = Arrays.copyOf(words, BITMAP_WORDS);
+            if (other instanceof ArrayContainer) {
+                other.forEach(0, value -> result[value >>> 6] |= 1L << value);
+            } else {
+                final long[] otherWords = ((BitmapContainer) other).words;
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    result[i] |= otherWords[i];
+                }
+            }
+            return normalize(result);
+        }
+
+        @Override
+        Container andNot(final Container other) {
+            final long[] result = Arrays.copyOf(words, BITMAP_WORDS);
+            if (other instanceof ArrayContainer) {
+                other.forEach(0, value -> result[value >>> 6] &= ~(1L << value));
+            } else {
+                final long[] otherWords = ((BitmapContainer) other).words;
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    result[i] &= ~otherWords[i];
+                }
+            }
+            return normalize(result);
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(Arrays.copyOf(words, BITMAP_WORDS), cardinality);
+        }
+
+        @Override
+        int next(final int from) {
+            if (from > Character.MAX_VALUE) {
+                return -1;
+            }
+            int index = from >>> 6;
+            long word = words[index] & (-1L << from);
+            while (true) {
+                if (word != 0) {
+                    return (index << 6) + Long.numberOfTrailingZeros(word);
+                }
+                if (++index == BITMAP_WORDS) {
+                    return -1;
+                }
+                word = words[index];
+            }
+        }
+
+        @Override
+        void forEach(final int base, final IntConsumer consumer) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    consumer.accept(base | ((i << 6) + Long.numberOfTrailingZeros(word)));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        long estimatedBytes() {
+            return 24 + BITMAP_WORDS * 8L;
+        }
+
+        private ArrayContainer toArray() {
+            final char[] values = new char[cardinality];
+            final int[] count = {0};
+            forEach(0, value -> values[count[0]++] = (char) value);
+            return new ArrayContainer(values, cardinality);
+        }
+
+        private static Container normalize(final long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            final BitmapContainer bitmap = new BitmapContainer(words, cardinality);
+            return cardinality <= ARRAY_MAX ? bitmap.toArray() : bitmap;
+        }
+    }
+}
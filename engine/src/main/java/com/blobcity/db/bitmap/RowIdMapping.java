@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.bitmap;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * Dense row-id space of a single collection. Every primary key is assigned a stable <code>int</code> id on first
+ * sight, so that sets of records can be held as {@link RoaringBitmap}s instead of sets of keys. The id of a deleted key
+ * is released, and the key is assigned a new id if inserted again. Ids are never reused within the life of the mapping,
+ * so bitmaps built by a running query never resolve to keys of other records. Once most of its ids are released the
+ * {@link RowIdStore} replaces the mapping with a new one, while queries already running keep using the old one.
+ *
+ * <p>
+ * A mapping holds every key it has seen in both directions, which costs in the order of 100 bytes per key, or about
+ * 1 GB for 10 million keys. The {@link RowIdStore} therefore drops mappings that no query has used for a while.
+ *
+ * <p>
+ * Assigning and releasing ids is synchronized; resolving ids in either direction is lock free.
+ *
+ * @author sanketsarang
+ */
+public class RowIdMapping {
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[][] chunks = new String[1][];
+    private volatile int nextId = 0;
+    private int released = 0;
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    /**
+     * Gets the id of a key, assigning the next free id if the key has none
+     *
+     * @param key the primary key
+     * @return the row id of the key
+     */
+    public int idOf(final String key) {
+        final Integer id = ids.get(key);
+        return id != null ? id : assign(key);
+    }
+
+    private synchronized int assign(final String key) {
+        final Integer existing = ids.get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        final int id = nextId++;
+        final int chunk = id >>> CHUNK_BITS;
+        String[][] current = chunks;
+        if (chunk >= current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        if (current[chunk] == null) {
+            current[chunk] = new String[CHUNK_SIZE];
+        }
+        current[chunk][id & (CHUNK_SIZE - 1)] = key;
+        chunks = current;
+        ids.put(key, id);
+        return id;
+    }
+
+    /**
+     * Releases the id of a deleted key. The id is not assigned again, and resolves to no key from now on.
+     *
+     * @param key the primary key
+     * @return the number of ids released so far; <code>-1</code> if the key has no id
+     */
+    public synchronized int release(final String key) {
+        final Integer id = ids.remove(key);
+        if (id == null) {
+            return -1;
+        }
+
+        chunks[id >>> CHUNK_BITS][id & (CHUNK_SIZE - 1)] = null;
+        return ++released;
+    }
+
+    /**
+     * Gets the key of an id
+     *
+     * @param id the row id
+     * @return the primary key; <code>null</code> if the id has not been assigned or was released
+     */
+    public String keyOf(final int id) {
+        final String[][] current = chunks;
+        final int chunk = id >>> CHUNK_BITS;
+        if (id < 0 || chunk >= current.length || current[chunk] == null) {
+            return null;
+        }
+        return current[chunk][id & (CHUNK_SIZE - 1)];
+    }
+
+    /**
+     * Converts a stream of keys into a bitmap of their row ids, assigning ids to keys seen for the first time
+     *
+     * @param keys the primary keys
+     * @return bitmap of the row ids of the keys
+     */
+    public RoaringBitmap toBitmap(final Iterator<String> keys) {
+        final RoaringBitmap bitmap = new RoaringBitmap();
+        keys.forEachRemaining(key -> bitmap.add(idOf(key)));
+        return bitmap;
+    }
+
+    /**
+     * Lazily converts a bitmap of row ids back into primary keys. Ids released since the bitmap was built are
+     * skipped, as their records have been deleted.
+     *
+     * @param bitmap the row ids
+     * @return an iterator over the primary keys of the row ids, in row id order
+     */
+    public Iterator<String> toKeys(final RoaringBitmap bitmap) {
+        final PrimitiveIterator.OfInt iterator = bitmap.iterator();
+        return new Iterator<String>() {
+            private String next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && iterator.hasNext()) {
+                    next = keyOf(iterator.nextInt());
+                }
+                return next != null;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final String key = next;
+                next = null;
+                return key;
+            }
+        };
+    }
+
+    /* Called by the RowIdStore each time the mapping is handed to a query */
+    void touch() {
+        lastUsed = System.currentTimeMillis();
+    }
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * Gets the number of ids assigned so far. Every id of the mapping is less than this number.
+     *
+     * @return the number of ids ever assigned by this mapping, including released ids
+     */
+    public int size() {
+        return nextId;
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.bitmap;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the {@link RowIdMapping} of every collection. Mappings are created on first use and live in memory until the
+ * collection is dropped, renamed or truncated, its datastore is dropped, most of its ids are released by deletes, or
+ * no query has used it for {@value #IDLE_MILLIS} ms. A mapping holds every key of its collection, so only the
+ * mappings of collections queried through bitmaps of late are kept.
+ *
+ * @author sanketsarang
+ */
+@Component
+public class RowIdStore {
+
+    /* A mapping is replaced once this many of its ids, and at least half of all its ids, are released */
+    private static final int MIN_RELEASED_IDS = 65536;
+
+    private static final long IDLE_MILLIS = 10 * 60 * 1000;
+    private static final long EVICTION_INTERVAL = 60000;
+
+    /* ds -> collection -> mapping */
+    private final Map<String, Map<String, RowIdMapping>> map = new ConcurrentHashMap<>();
+
+    public RowIdMapping getMapping(final String ds, final String collection) {
+        final RowIdMapping mapping = map.computeIfAbsent(ds, key -> new ConcurrentHashMap<>()).computeIfAbsent(collection, key -> new RowIdMapping());
+        mapping.touch();
+        return mapping;
+    }
+
+    /**
+     * Releases the row id of a deleted record. A mapping with mostly released ids is dropped, so that the next query
+     * starts a dense mapping; queries already running keep the mapping they hold.
+     *
+     * @param ds name of datastore
+     * @param collection name of collection
+     * @param key primary key of the deleted record
+     */
+    public void release(final String ds, final String collection, final String key) {
+        final Map<String, RowIdMapping> collections = map.get(ds);
+        final RowIdMapping mapping = collections == null ? null : collections.get(collection);
+        if (mapping == null) {
+            return;
+        }
+
+        final int released = mapping.release(key);
+        if (released >= MIN_RELEASED_IDS && released * 2L >= mapping.size()) {
+            collections.remove(collection, mapping);
+        }
+    }
+
+    public void invalidate(final String ds, final String collection) {
+        final Map<String, RowIdMapping> collections = map.get(ds);
+        if (collections != null) {
+            collections.remove(collection);
+        }
+    }
+
+    public void invalidate(final String ds) {
+        map.remove(ds);
+    }
+
+    @Scheduled(fixedRate = EVICTION_INTERVAL)
+    private void evictIdle() {
+        evictUnusedSince(System.currentTimeMillis() - IDLE_MILLIS);
+    }
+
+    /**
+     * Drops the mappings last handed out before the specified time. Queries still holding such a mapping keep using
+     * it, while the next query starts a new one.
+     *
+     * @param time time in milliseconds
+     */
+    void evictUnusedSince(final long time) {
+        map.values().forEach(collections -> collections.values().removeIf(mapping -> mapping.getLastUsed() < time));
+    }
+}
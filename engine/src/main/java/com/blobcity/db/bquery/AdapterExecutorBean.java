@@ -104,14 +104,14 @@ public class AdapterExecutorBean implements Db {
      * @param collection: name of collection
      * @param filterName: name of filter
      * @param params: arguments to the filter
-     * @return: Iterator of keys to the rows which passed the filter criteria
+     * @return: Iterator of keys to the rows which passed the filter criteria, streamed as the filter runs
      * @throws InternalAdapterException
      */
     @Override
     public Iterator<String> runFilter(final String collection, final String filterName, Object... params) throws InternalAdapterException{
         verifyDCInfo(collection);
         try {
-            return codeExecutor.executeParallelFilter(datastore, collection, filterName, params).iterator();
+            return codeExecutor.streamParallelFilter(datastore, collection, filterName, params);
         } catch (OperationException ex) {
             logger.debug(null, ex);
             throw new InternalAdapterException(ex.getMessage());
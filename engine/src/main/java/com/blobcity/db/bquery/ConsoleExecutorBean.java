@@ -35,9 +35,9 @@ import com.blobcity.db.features.FeatureRules;
 import com.blobcity.db.mapreduce.MapReduceExecutor;
 import com.blobcity.db.mapreduce.MapReduceJobManager;
 import com.blobcity.db.mapreduce.MapReduceOutputImporter;
-import com.blobcity.db.memory.old.MemoryTableStore;
 import com.blobcity.db.olap.DataCubeManager;
 import com.blobcity.db.operations.OperationLogLevel;
+import com.blobcity.db.operations.OperationProperties;
 import com.blobcity.db.operations.OperationTypes;
 import com.blobcity.db.operations.OperationsManager;
 import com.blobcity.db.requests.RequestHandlingBean;
@@ -48,7 +48,7 @@ import com.blobcity.db.security.exceptions.BadPasswordException;
 import com.blobcity.db.security.exceptions.BadUsernameException;
 import com.blobcity.db.security.exceptions.InvalidCredentialsException;
 import com.blobcity.db.sql.util.PathUtil;
-import com.blobcity.db.storage.BSqlMemoryManagerOld;
+import com.blobcity.db.storage.BSqlMemoryManager;
 import com.blobcity.db.security.UserGroup;
 import com.blobcity.db.security.UserGroupManager;
 import com.blobcity.db.tableau.TableauCommands;
@@ -121,7 +121,7 @@ public class ConsoleExecutorBean implements ConsoleExecutor {
     @Autowired @Lazy
     private BSqlIndexManager indexManager;
     @Autowired @Lazy
-    private BSqlMemoryManagerOld memoryManager;
+    private BSqlMemoryManager memoryManager;
     @Autowired @Lazy
     private MapReduceExecutor mapReduceExecutor;
     @Autowired @Lazy
@@ -712,7 +712,7 @@ public class ConsoleExecutorBean implements ConsoleExecutor {
             storageType = CollectionStorageType.fromTypeCode(elements[2]);
 
             if(storageType == null) {
-                throw new OperationException(ErrorCode.INVALID_QUERY_FORMAT, "Parameter 2 should be storage type with value on off [on-disk,in-memory,in-memory-nd]");
+                throw new OperationException(ErrorCode.INVALID_QUERY_FORMAT, "Parameter 2 should be storage type with value on off [on-disk,on-disk-segmented,in-memory,in-memory-nd]");
             }
         }else {
             storageType = CollectionStorageType.ON_DISK;
@@ -822,15 +822,15 @@ public class ConsoleExecutorBean implements ConsoleExecutor {
             throw new OperationException(ErrorCode.INVALID_QUERY_FORMAT, "Database and table should be specified in format: databaseName.tableName");
         }
 
-        if (!MemoryTableStore.exists(databaseAndTable)) {
-            return "The specified table does not exist. This operation is only supported for in memory tables";
-        }
-
         final String database = databaseAndTable.substring(0, databaseAndTable.indexOf(".", 1)); //start searching dot from index 1 to handle case of .systemdb as datastore name
         final String table = databaseAndTable.substring(databaseAndTable.indexOf(".", 1) + 1, databaseAndTable.length());
+
+        if (!collectionManager.isInMemory(database, table)) {
+            return "The specified table does not exist. This operation is only supported for in memory tables";
+        }
         verifyDCInfo(database, table);
 
-        Collection<Object> allRecords = memoryManager.selectAll(database, table);
+        Collection<JSONObject> allRecords = memoryManager.selectAll(database, table);
         contents = allRecords.parallelStream().map((record) -> record.toString()).reduce(contents, String::concat);
         return contents;
     }
@@ -950,7 +950,8 @@ public class ConsoleExecutorBean implements ConsoleExecutor {
         final String exportFile = elements[3];
         JSONObject jsonObject = new JSONObject();
 
-        if (ExportType.fromString(type) == null) {
+        final ExportType exportType = ExportType.fromString(type);
+        if (exportType == null) {
             throw new OperationException(ErrorCode.INVALID_QUERY_FORMAT, "Invalid 'type' parameter in payload. Value: " + type + " does not match a valid export format");
         }
 
@@ -958,7 +959,10 @@ public class ConsoleExecutorBean implements ConsoleExecutor {
         try {
             jsonObject.put("file", exportFile);
             jsonObject.put("type", OperationTypes.EXPORT.getTypeCode());
-            jsonObject.put("export-type", type);
+            jsonObject.put("export-type", exportType.name());
+            if (elements.length > 4 && elements[4].equalsIgnoreCase("compress")) {
+                jsonObject.put(OperationProperties.COMPRESS, true);
+            }
             jsonObject.put("records", 0);
             jsonObject.put("time-started", -1);
         } catch (JSONException ex) {
@@ -1421,7 +1425,8 @@ public class ConsoleExecutorBean implements ConsoleExecutor {
     }
 
     /**
-     * import a CSV file in a table [1]: database.table [2]: Full path of file
+     * import a CSV file in a table [1]: database.table [2]: Full path of file [3]: optional <code>bulk</code> to load
+     * the file in bulk mode
      * <p>
      * It assumes that the column mapping is present in the first line. Also all the columns are assumed as string
      * unless the table already has a schema
@@ -1448,6 +1453,9 @@ public class ConsoleExecutorBean implements ConsoleExecutor {
         opSpecs.put("type", "IMP");
         opSpecs.put("import-type", "CSV");
         opSpecs.put("file", filePath);
+        if (elements.length > 3 && elements[3].equalsIgnoreCase("bulk")) {
+            opSpecs.put(OperationProperties.BULK, true);
+        }
 
         operationsManager.registerOperation(datastore, collection, OperationTypes.IMPORT, opSpecs);
 
@@ -1566,13 +1574,13 @@ public class ConsoleExecutorBean implements ConsoleExecutor {
             throw new OperationException(ErrorCode.INVALID_QUERY_FORMAT, "Database and table should be specified in format: databaseName.tableName");
         }
 
-        if (!MemoryTableStore.exists(databaseAndTable)) {
-            return "The specified table does not exist. This operation is only supported for in memory tables";
-        }
-
         final String database = databaseAndTable.substring(0, databaseAndTable.indexOf(".", 1)); //start searching dot from index 1 to handle case of .systemdb as datastore name
         final String table = databaseAndTable.substring(databaseAndTable.indexOf(".", 1) + 1, databaseAndTable.length());
 
+        if (!collectionManager.isInMemory(database, table)) {
+            return "The specified table does not exist. This operation is only supported for in memory tables";
+        }
+
         String dataFile = elements[2];
         String header = elements[3];
         boolean headerPresent = (header.equals("true"));
@@ -1587,13 +1595,13 @@ public class ConsoleExecutorBean implements ConsoleExecutor {
             throw new OperationException(ErrorCode.INVALID_QUERY_FORMAT, "Database and table should be specified in format: databaseName.tableName");
         }
 
-        if (!MemoryTableStore.exists(databaseAndTable)) {
-            return "The specified table does not exist. This operation is only supported for in memory tables";
-        }
-
         final String database = databaseAndTable.substring(0, databaseAndTable.indexOf(".", 1)); //start searching dot from index 1 to handle case of .systemdb as datastore name
         final String table = databaseAndTable.substring(databaseAndTable.indexOf(".", 1) + 1, databaseAndTable.length());
 
+        if (!collectionManager.isInMemory(database, table)) {
+            return "The specified table does not exist. This operation is only supported for in memory tables";
+        }
+
         String dataFile = elements[2];
         String header = elements[3];
         boolean headerPresent = (header.equals("true"));
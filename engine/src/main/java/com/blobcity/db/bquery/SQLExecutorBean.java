@@ -17,20 +17,25 @@
 package com.blobcity.db.bquery;
 
 import com.blobcity.db.billing.SelectActivityLog;
+import com.blobcity.db.cache.StatementCache;
 import com.blobcity.db.security.SecurityManagerBean;
 import com.blobcity.db.sql.statements.*;
 import com.blobcity.lib.database.bean.manager.interfaces.engine.QueryData;
+import com.blobcity.lib.database.bean.manager.interfaces.engine.QueryResultStream;
 import com.blobcity.lib.database.bean.manager.interfaces.engine.QueryStore;
 import com.blobcity.db.bsql.BSqlCollectionManager;
 import com.blobcity.db.exceptions.ErrorCode;
 import com.blobcity.db.exceptions.OperationException;
+import com.blobcity.db.sql.util.SqlText;
 import com.blobcity.db.util.JSONOperationException;
 import com.blobcity.lib.database.bean.manager.interfaces.engine.SqlExecutor;
 import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.parser.ExplainStatementNode;
 import com.foundationdb.sql.parser.NodeTypes;
-import com.foundationdb.sql.parser.SQLParser;
 import com.foundationdb.sql.parser.StatementNode;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -75,6 +80,8 @@ public class SQLExecutorBean implements SqlExecutor {
     private QueryStore requestStore;
     @Autowired
     private SelectActivityLog selectActivityLog;
+    @Autowired @Lazy
+    private StatementCache statementCache;
 
     @Override
     public String runQuery(final String requestId, final String username, final String password, final String datastore, final String sqlString) {
@@ -90,12 +97,85 @@ public class SQLExecutorBean implements SqlExecutor {
         }
     }
 
+    @Override
+    public String runPreparedQuery(final String requestId, final String username, final String password, final String datastore, final String sqlString, final List<Object> parameters) {
+        if(securityManager.verifyCredentials(username, password)) {
+            return runQuery(requestId, datastore, sqlString, parameters);
+        } else {
+            return JSONOperationException.create(new OperationException(ErrorCode.USER_CREDENTIALS_INVALID)).toString();
+        }
+    }
+
+    /**
+     * Runs the query and streams its response. SELECT statements that can be pipelined read records only as the
+     * response is consumed; all other statements are executed in full and returned as a single chunk.
+     */
+    @Override
+    public QueryResultStream runQueryAsStream(final String requestId, final String username, final String password, final String datastore, final String sqlString, final int fetchSize) {
+        return runPreparedQueryAsStream(requestId, username, password, datastore, sqlString, Collections.emptyList(), fetchSize);
+    }
+
+    @Override
+    public QueryResultStream runPreparedQueryAsStream(final String requestId, final String username, final String password, final String datastore, final String sqlString, final List<Object> parameters, final int fetchSize) {
+        if (!securityManager.verifyCredentials(username, password)) {
+            return QueryResultStream.of(JSONOperationException.create(new OperationException(ErrorCode.USER_CREDENTIALS_INVALID)).toString());
+        }
+        if (StringUtils.isBlank(datastore) || StringUtils.isBlank(sqlString)) {
+            return QueryResultStream.of(JSONOperationException.create(new OperationException(ErrorCode.INVALID_QUERY)).toString());
+        }
+
+        final StatementNode stmt;
+        final String boundSql;
+        try {
+            stmt = statementCache.get(datastore, sqlString, parameters);
+            boundSql = parameters.isEmpty() ? sqlString : SqlText.bind(sqlString, parameters);
+        } catch (StandardException ex) {
+            String msg = "Invalid SQL. ParseStatement failed: " + sqlString + ". " + ex.getMessage();
+            logger.info(msg, ex);
+            return QueryResultStream.of(new JSONObject().put("ack", "0").put("cause", msg).toString());
+        } catch (OperationException ex) {
+            return QueryResultStream.of(JSONOperationException.create(ex).toString());
+        }
+        if (stmt.getNodeType() != NodeTypes.CURSOR_NODE) {
+            return QueryResultStream.of(runQuery(requestId, datastore, sqlString, parameters));
+        }
+
+        final String tempRequestId = UUID.randomUUID().toString();
+        final long startTime = System.currentTimeMillis();
+        logger.debug("SQL Query ({}): {}", tempRequestId, sqlString);
+        requestStore.register(datastore, tempRequestId, new QueryData(sqlString, startTime));
+
+        /* The request remains registered until the response has been fully consumed or abandoned */
+        final Runnable onClose = () -> {
+            final long executionTime = System.currentTimeMillis() - startTime;
+            requestStore.unregister(datastore, tempRequestId);
+            if (!datastore.equals(".systemdb")) {
+                selectActivityLog.registerSelectQuery(datastore, "", sqlString, -1, executionTime);
+            }
+            logger.debug("SQL Query ({}, {}) Streamed in (ms): {} ", requestId, tempRequestId, executionTime);
+        };
+
+        try {
+            return selectExecutor.executeAsStream(datastore, stmt, boundSql, fetchSize, onClose);
+        } catch (OperationException e) {
+            return QueryResultStream.of(JSONOperationException.create(e).toString());
+        }
+    }
+
     public String executePrivileged(final String datastore, final String sql) {
         return runQuery("", datastore, sql);
     }
 
     //This method will be made private and renamed later
     private String runQuery(final String requestId, final String datastore, final String sqlString) {
+        return runQuery(requestId, datastore, sqlString, Collections.emptyList());
+    }
+
+    /**
+     * Runs a statement, with its <code>?</code> placeholders bound to the parameters if it is a prepared statement.
+     * Parse trees of statements are taken from the {@link StatementCache}, so a repeated statement is not parsed again.
+     */
+    private String runQuery(final String requestId, final String datastore, final String sqlString, final List<Object> parameters) {
         if (StringUtils.isBlank(datastore) || StringUtils.isBlank(sqlString)) {
             return JSONOperationException.create(new OperationException(ErrorCode.INVALID_QUERY)).toString();
         }
@@ -109,19 +189,24 @@ public class SQLExecutorBean implements SqlExecutor {
 
         try {
 
-            SQLParser parser = new SQLParser();
+            final String boundSql;
             try {
-                stmt = parser.parseStatement(sqlString);
+                stmt = statementCache.get(datastore, sqlString, parameters);
+                boundSql = parameters.isEmpty() ? sqlString : SqlText.bind(sqlString, parameters);
             } catch (StandardException ex) {
                 String msg = "Invalid SQL. ParseStatement failed: " + sqlString + ". " + ex.getMessage();
                 logger.info(msg, ex);
                 return new JSONObject().put("ack", "0").put("cause", msg).toString();
+            } catch (OperationException ex) {
+                return JSONOperationException.create(ex).toString();
             }
 
             try {
                 switch (stmt.getNodeType()) {
                     case NodeTypes.CURSOR_NODE:
-                        return selectExecutor.execute(datastore, stmt, sqlString);
+                        return selectExecutor.execute(datastore, stmt, boundSql);
+                    case NodeTypes.EXPLAIN_STATEMENT_NODE:
+                        return selectExecutor.explain(datastore, ((ExplainStatementNode) stmt).getStatement(), boundSql);
                     case NodeTypes.UPDATE_NODE:
                         return updateExecutor.execute(datastore, stmt);
                     case NodeTypes.DELETE_NODE:
@@ -138,7 +223,7 @@ public class SQLExecutorBean implements SqlExecutor {
                         throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "Unsupported statement type: "
                                 + stmt.getNodeType()
                                 + ". "
-                                + sqlString);
+                                + boundSql);
                 }
             } catch (OperationException e) {
                 return JSONOperationException.create(e).toString();
@@ -17,6 +17,9 @@
 package com.blobcity.db.bsql;
 
 import com.blobcity.db.constants.BSql;
+import com.blobcity.db.cache.DataCache;
+import com.blobcity.db.cache.IndexCache;
+import com.blobcity.db.cache.QueryResultCache;
 import com.blobcity.db.data.RowCountManager;
 import com.blobcity.db.exceptions.ErrorCode;
 import com.blobcity.db.exceptions.OperationException;
@@ -24,15 +27,19 @@ import com.blobcity.db.indexcache.OnDiskBtreeIndexCache;
 import com.blobcity.db.indexing.IndexFactory;
 import com.blobcity.db.indexing.IndexingStrategy;
 import com.blobcity.db.lang.columntypes.FieldType;
+import com.blobcity.db.bitmap.RowIdStore;
 import com.blobcity.db.lang.columntypes.FieldTypeFactory;
 import com.blobcity.db.memory.collection.MemCollection;
 import com.blobcity.db.memory.collection.MemCollectionStoreBean;
-import com.blobcity.db.memory.old.MemoryTableStore;
 import com.blobcity.db.operations.OperationLogLevel;
 import com.blobcity.db.schema.*;
 import com.blobcity.db.schema.beans.SchemaManager;
 import com.blobcity.db.schema.beans.SchemaStore;
+import com.blobcity.db.sql.planner.StatisticsStore;
 import com.blobcity.db.sql.util.PathUtil;
+import com.blobcity.db.indexing.OnDiskBPlusTreeIndex;
+import com.blobcity.db.storage.SegmentedRecordStore;
+import com.blobcity.db.transaction.CollectionCommitLogWriter;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.FileSystems;
@@ -81,6 +88,22 @@ public class BSqlCollectionManager {
     private MemCollectionStoreBean memCollectionStoreBean;
     @Autowired @Lazy
     private OnDiskBtreeIndexCache onDiskBtreeIndexCache;
+    @Autowired @Lazy
+    private SegmentedRecordStore segmentedRecordStore;
+    @Autowired @Lazy
+    private OnDiskBPlusTreeIndex bPlusTreeIndex;
+    @Autowired @Lazy
+    private CollectionCommitLogWriter collectionCommitLogWriter;
+    @Autowired @Lazy
+    private DataCache dataCache;
+    @Autowired @Lazy
+    private IndexCache indexCache;
+    @Autowired @Lazy
+    private QueryResultCache queryResultCache;
+    @Autowired @Lazy
+    private StatisticsStore statisticsStore;
+    @Autowired @Lazy
+    private RowIdStore rowIdStore;
     
     /**
      * Create a new table with the given name
@@ -182,12 +205,10 @@ public class BSqlCollectionManager {
             }
 
             TableType t = schema.getTableType();
-//            MemoryTable memTbl = null;
+            MemCollection memCollection = null;
             if((t == TableType.IN_MEMORY) || (t == TableType.IN_MEMORY_NON_DURABLE)) {
                 String tableName = datastore + "." + collection;
-                memCollectionStoreBean.add(tableName, new MemCollection(tableName));
-//                MemoryTableStore.add(tableName);
-//                memTbl = MemoryTableStore.getTable(tableName);
+                memCollection = memCollectionStoreBean.addIfAbsent(tableName);
             }
             /* Run initializeIndexing generation on columns that are indexed. This is mainly used to simply create the initializeIndexing folder.
              * In some cases if table creation was fired on an existing data set, then the initializeIndexing operation will
@@ -202,16 +223,12 @@ public class BSqlCollectionManager {
                 if (column.getIndexType() != IndexTypes.NONE) {
                     IndexingStrategy indexingStrategy = indexFactory.getStrategy(column.getIndexType());
                     indexingStrategy.initializeIndexing(datastore, collection, columnName);
+
+                    /* In-memory collections additionally keep an in-memory index for equality lookups */
+                    if (memCollection != null && MemCollection.supportsIndex(column.getIndexType())) {
+                        memCollection.createIndex(mapping.getInternalName(columnName), column.getIndexType());
+                    }
                 }
-                // create the data cube and columns in data cube for in memory tables
-//                if (memTbl != null) {
-//                    final FieldType colType = column.getFieldType();
-//                    String tableName = datastore + "." + collection;
-//                    memTbl.getDataCube().createColumn(columnName, tableName);
-//                    memTbl.getDataCube().getColumn(columnName).setColType(colType.getType());
-//                    memTbl.getDataCube().getColumn(columnName).setColInternalName(mapping.getInternalName(columnName));
-//                    memTbl.getDataCube().getColumn(columnName).setColViewableName(mapping.getViewableName(columnName));
-//                }
             }
         } catch (JSONException ex) {
             undoCreateTable(datastore, collection);
@@ -251,6 +268,11 @@ public class BSqlCollectionManager {
             throw new OperationException(ErrorCode.COLLECTION_INVALID, "Attempting to drop an inexistent table");
         }
 
+        /* Release any open segment, index and commit log files before the folder is moved */
+        segmentedRecordStore.close(datastore, collection);
+        bPlusTreeIndex.closeAll(datastore, collection);
+        collectionCommitLogWriter.close(datastore, collection);
+
         /* Move table to delete folder */
         long currentTime = System.currentTimeMillis();
         backupPath = BSql.BSQL_BASE_FOLDER + datastore + BSql.DELETE_FOLDER + collection + "." + currentTime;
@@ -269,14 +291,11 @@ public class BSqlCollectionManager {
         // remove schema from the memory
         schemaStore.invalidateSchema(datastore, collection);
         
-        String tableName = datastore + "." + collection;
-        if(MemoryTableStore.exists(tableName)) {
-            MemoryTableStore.delete(tableName);
-            // TODO: delete data cube from here
-        }
+        memCollectionStoreBean.remove(datastore + "." + collection);
 
         /* Invalidate any index caches */
         onDiskBtreeIndexCache.invalidate(datastore, collection);
+        invalidateCaches(datastore, collection);
     }
 
     /**
@@ -301,6 +320,9 @@ public class BSqlCollectionManager {
         absolutePath = PathUtil.tableFolderPath(datastore, collection);
         file = new File(absolutePath);
 
+        segmentedRecordStore.close(datastore, collection);
+        bPlusTreeIndex.closeAll(datastore, collection);
+        collectionCommitLogWriter.close(datastore, collection);
         try{
             Files.delete(FileSystems.getDefault().getPath(absolutePath));
         } catch (IOException ex) {
@@ -311,14 +333,11 @@ public class BSqlCollectionManager {
         // remove schema from the memory
         schemaStore.invalidateSchema(datastore, collection);
 
-        String tableName = datastore + "." + collection;
-        if(MemoryTableStore.exists(tableName)) {
-            MemoryTableStore.delete(tableName);
-            // TODO: delete data cube from here
-        }
+        memCollectionStoreBean.remove(datastore + "." + collection);
 
         /* Invalidate any index caches */
         onDiskBtreeIndexCache.invalidate(datastore, collection);
+        invalidateCaches(datastore, collection);
     }
 
     public void undoDropCollection(final String archiveCode) throws OperationException {
@@ -351,6 +370,7 @@ public class BSqlCollectionManager {
 
         /* Invalidate any index caches */
         onDiskBtreeIndexCache.invalidate(datastore, collection);
+        invalidateCaches(datastore, collection);
     }
 
     /**
@@ -393,21 +413,21 @@ public class BSqlCollectionManager {
                     + ", but a table with the name " + collectionNewName + " already isPresent");
         }
 
+        segmentedRecordStore.close(datastore, collectionOldName);
+        bPlusTreeIndex.closeAll(datastore, collectionOldName);
+        collectionCommitLogWriter.close(datastore, collectionOldName);
         if (!currentTableFile.renameTo(newTableFile)) {
             throw new OperationException(ErrorCode.RENAME_COLLECTION_ERROR, "Rename of table: " + collectionOldName + " to table: " + collectionNewName
                     + " failed with a file system error. Please contact system administrators");
         }
         
-        String oldTableName = datastore + "." + collectionOldName;
-        if(MemoryTableStore.exists(oldTableName)) {
-            String newTableName = datastore + "." + collectionNewName;
-            MemoryTableStore.rename(oldTableName, newTableName);
-            // TODO: update data cube here with column rename
-        }
+        memCollectionStoreBean.rename(datastore + "." + collectionOldName, datastore + "." + collectionNewName);
 
         /* Invalidate any index caches */
         onDiskBtreeIndexCache.invalidate(datastore, collectionOldName);
+        invalidateCaches(datastore, collectionOldName);
         onDiskBtreeIndexCache.invalidate(datastore, collectionNewName); //just in case someone screws up the code
+        invalidateCaches(datastore, collectionNewName);
     }
 
     /**
@@ -806,7 +826,7 @@ public class BSqlCollectionManager {
     public boolean isInMemory(final String datastore, final String collection) throws OperationException{
         
         // check if already added to memory store
-        if(MemoryTableStore.exists(datastore+"."+collection)) return true;
+        if(memCollectionStoreBean.contains(datastore+"."+collection)) return true;
         // check if table is present or not on disk (structure only)
         if(!exists(datastore, collection)) return false;
         
@@ -814,14 +834,12 @@ public class BSqlCollectionManager {
         //read schema and check type
         Schema schema = schemaManager.readSchema(datastore, collection);
         if(schema.getTableType().equals(TableType.IN_MEMORY)){
-            if(!MemoryTableStore.exists(datastore+"."+collection))
-                    MemoryTableStore.add(datastore+"."+collection);
+            memCollectionStoreBean.addIfAbsent(datastore+"."+collection);
             // TODO: put data back in memory here if is durable
             return true;
         }
         else if( schema.getTableType().equals(TableType.IN_MEMORY_NON_DURABLE)){
-            if(!MemoryTableStore.exists(datastore+"."+collection))
-                    MemoryTableStore.add(datastore+"."+collection);
+            memCollectionStoreBean.addIfAbsent(datastore+"."+collection);
             return true;
         }
         return false;
@@ -859,4 +877,11 @@ public class BSqlCollectionManager {
         //TODO: Start appropriate data sync operation in background
     }
 
+    private void invalidateCaches(final String datastore, final String collection) {
+        dataCache.invalidate(datastore, collection);
+        indexCache.invalidate(datastore, collection);
+        queryResultCache.invalidate(datastore, collection);
+        statisticsStore.invalidate(datastore, collection);
+        rowIdStore.invalidate(datastore, collection);
+    }
 }
@@ -16,6 +16,7 @@
 
 package com.blobcity.db.bsql;
 
+import com.blobcity.db.bitmap.RowIdStore;
 import com.blobcity.db.bsql.filefilters.EQFilenameFilter;
 import com.blobcity.db.bsql.filefilters.GTEQFilenameFilter;
 import com.blobcity.db.bsql.filefilters.GTFilenameFilter;
@@ -33,16 +34,14 @@ import com.blobcity.db.exceptions.ErrorCode;
 import com.blobcity.db.exceptions.OperationException;
 import com.blobcity.db.indexing.IndexFactory;
 import com.blobcity.db.indexing.IndexingStrategy;
+import com.blobcity.db.indexing.OnlineIndexBuilder;
 import com.blobcity.db.lang.Operators;
 import com.blobcity.db.lang.columntypes.FieldType;
 import com.blobcity.db.lang.columntypes.FieldTypeFactory;
 import com.blobcity.db.lang.datatypes.converters.TypeConverter;
 import com.blobcity.db.lang.datatypes.converters.TypeConverterFactory;
-import com.blobcity.db.memory.old.MemorySearch;
-import com.blobcity.db.memory.records.JsonRecord;
 import com.blobcity.db.operations.OperationLogLevel;
 import com.blobcity.db.storage.BSqlMemoryManager;
-import com.blobcity.db.storage.BSqlMemoryManagerOld;
 import com.blobcity.db.tableau.TableauPublishStore;
 import com.blobcity.db.util.ConsumerUtil;
 import com.blobcity.lib.data.Record;
@@ -54,7 +53,9 @@ import com.blobcity.db.schema.Schema;
 import com.blobcity.db.schema.Types;
 import com.blobcity.db.schema.beans.SchemaManager;
 import com.blobcity.db.schema.beans.SchemaStore;
+import com.blobcity.db.sql.planner.StatisticsStore;
 import com.blobcity.db.storage.BSqlFileManager;
+import com.blobcity.db.storage.JsonFieldReader;
 
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
@@ -63,6 +64,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -70,7 +72,9 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -104,8 +108,6 @@ public class BSqlDataManager {
     @Autowired
     private BSqlMemoryManager memoryManager;
     @Autowired
-    private BSqlMemoryManagerOld memoryManagerOld; //TODO: remove this implementation
-    @Autowired
     private SchemaManager schemaManager;
     @Autowired
     @Lazy
@@ -115,18 +117,25 @@ public class BSqlDataManager {
     private IndexFactory indexFactory;
     @Autowired
     @Lazy
+    private OnlineIndexBuilder onlineIndexBuilder;
+    @Autowired
+    @Lazy
     private TypeConverterFactory typeConverterFactory;
     @Autowired
     @Lazy
     private CodeExecutor codeExecutor;
-    @Autowired
-    private MemorySearch memorySearchExecutor;
     @Lazy
     @Autowired
     private TableauPublishStore tableauPublishStore;
     @Lazy
     @Autowired
     private QueryResultCache queryResultCache;
+    @Lazy
+    @Autowired
+    private StatisticsStore statisticsStore;
+    @Lazy
+    @Autowired
+    private RowIdStore rowIdStore;
 
     /**
      *
@@ -140,7 +149,7 @@ public class BSqlDataManager {
         if (!collectionManager.isInMemory(datastore, collection)) {
             return fileManager.exists(datastore, collection, _id);
         } else {
-            return memoryManagerOld.exists(datastore, collection, _id);
+            return memoryManager.exists(datastore, collection, _id);
         }
     }
 
@@ -151,7 +160,7 @@ public class BSqlDataManager {
             if (! collectionManager.isInMemory(datastore, collection)) {
                 fileJson = new JSONObject(fileManager.select(datastore, collection, _id));
             } else {
-                fileJson = new JSONObject(memoryManagerOld.select(datastore, collection, _id));
+                fileJson = memoryManager.select(datastore, collection, _id);
             }
 
         } catch (JSONException ex) {
@@ -173,34 +182,73 @@ public class BSqlDataManager {
     }
 
     public JSONObject select(final String datastore, final String collection, final String _id, final Set<String> columns) throws OperationException {
-        JSONObject fileJson;
-        //TODO: Optimize to load data from index only rather than from actual record
-        try {
-//            recordLockBean.acquireReadLock(account, collection, _id);
-            if (!collectionManager.isInMemory(datastore, collection)) {
-                fileJson = new JSONObject(fileManager.select(datastore, collection, _id));
-            } else {
-                fileJson = new JSONObject(memoryManagerOld.select(datastore, collection, _id));
+        return select(datastore, collection, _id, columns, null, null);
+    }
+
+    /**
+     * Selects the specified columns of a record, provided the record satisfies a predicate. For on-disk collections
+     * only the columns read by the predicate are decoded from the stored record to evaluate it, and the remaining
+     * projected columns are decoded only for records that pass. Records failing the predicate are never fully parsed.
+     *
+     * @param datastore name of datastore
+     * @param collection name of collection
+     * @param _id unique _id of the record
+     * @param columns viewable names of the columns to return; <code>null</code> for all columns
+     * @param predicate predicate the record must satisfy; <code>null</code> to select the record unconditionally
+     * @param predicateColumns viewable names of the columns read by the predicate
+     * @return the selected columns of the record; <code>null</code> if the record fails the predicate
+     * @throws OperationException if the record could not be read or is corrupted
+     */
+    public JSONObject select(final String datastore, final String collection, final String _id, final Set<String> columns,
+            final Predicate<JSONObject> predicate, final Set<String> predicateColumns) throws OperationException {
+        if (collectionManager.isInMemory(datastore, collection) || columns == null || (predicate != null && predicateColumns == null)) {
+            final JSONObject viewableResultJson = select(datastore, collection, _id);
+            if (predicate != null && !predicate.test(viewableResultJson)) {
+                return null;
+            }
+            if (columns != null) {
+                retainSelectedColumns(viewableResultJson, columns);
             }
+            return viewableResultJson;
+        }
 
-        } catch (JSONException ex) {
-            //TODO: Notify admin
-            logger.error(null, ex);
-            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "An internal operation error occurred. "
-                    + "Data for record with primary key: " + _id + " in collection: " + collection + " seems to be corrupted.");
+        final String recordJson = fileManager.select(datastore, collection, _id);
+        if (predicate != null && !predicate.test(readColumns(datastore, collection, _id, recordJson, predicateColumns))) {
+            return null;
+        }
+        return readColumns(datastore, collection, _id, recordJson, columns);
+    }
 
-        } finally {
-//            recordLockBean.releaseReadLock(account, collection, _id);
+    /**
+     * Decodes only the specified columns out of the stored JSON text of a record
+     *
+     * @param datastore name of datastore
+     * @param collection name of collection
+     * @param _id unique _id of the record, used for error reporting
+     * @param recordJson the record as stored, keyed by internal column names
+     * @param columns viewable names of the columns to decode
+     * @return the decoded columns keyed by viewable names
+     * @throws OperationException if the record is corrupted
+     */
+    private JSONObject readColumns(final String datastore, final String collection, final String _id, final String recordJson,
+            final Set<String> columns) throws OperationException {
+        final Schema schema = SchemaStore.getInstance().getSchema(datastore, collection);
+        final ColumnMapping mapping = SchemaStore.getInstance().getColumnMapping(datastore, collection);
+        final Map<String, String> fields = new HashMap<>();
+        for (String column : columns) {
+            final String internalName = mapping.getInternalName(column);
+            if (internalName != null && schema.getColumnMap().containsKey(column)) {
+                fields.put(internalName, column);
+            }
         }
 
-        try {
-            JSONObject viewableResultJson = schemaManager.internalToViewable(datastore, collection, fileJson);
-            retainSelectedColumns(viewableResultJson, columns);
-            return viewableResultJson;
-        } catch (OperationException ex) {
-            logger.error(null, ex);
-            throw ex;
+        final JSONObject viewableJson = JsonFieldReader.read(recordJson, fields);
+        if (viewableJson == null) {
+            //TODO: Notify admin
+            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "An internal operation error occurred. "
+                    + "Data for record with primary key: " + _id + " in collection: " + collection + " seems to be corrupted.");
         }
+        return viewableJson;
     }
 
     /**
@@ -218,7 +266,7 @@ public class BSqlDataManager {
             if (!collectionManager.isInMemory(datastore, collection)) {
                 fileJson = new JSONObject(fileManager.select(datastore, collection, _id));
             } else {
-                fileJson = new JSONObject(memoryManagerOld.select(datastore, collection, _id));
+                fileJson = memoryManager.select(datastore, collection, _id);
             }
         } catch (JSONException ex) {
             //TODO: Notify admin
@@ -270,7 +318,7 @@ public class BSqlDataManager {
         }
         long startTime = System.currentTimeMillis();
         List<Object> finalJsonObjectList;
-        Collection<Object> jsonObjectList = memoryManagerOld.selectAllFromCols(datastore, collection, colsToSelect);
+        Collection<Object> jsonObjectList = memoryManager.selectAllFromCols(datastore, collection, colsToSelect);
         long endTime = System.currentTimeMillis();
         logger.debug("Total time taken to get all records: " + (endTime - startTime));
 
@@ -369,7 +417,7 @@ public class BSqlDataManager {
             if (!collectionManager.isInMemory(datastore, collection)) {
                 return fileManager.selectAllKeysAsStream(datastore, collection);
             } else {
-                return memoryManagerOld.selectAllKeysAsStream(datastore, collection);
+                return memoryManager.selectAllKeysAsStream(datastore, collection);
             }
         } catch (IOException ex) {
             logger.error(null, ex);
@@ -381,7 +429,7 @@ public class BSqlDataManager {
         if (!collectionManager.isInMemory(datastore, collection)) {
             return fileManager.selectAll(datastore, collection);
         } else {
-            return memoryManagerOld.selectAllKeys(datastore, collection);
+            return memoryManager.selectAllKeys(datastore, collection);
         }
     }
 
@@ -399,11 +447,25 @@ public class BSqlDataManager {
                 logger.error("Error in reading data from filesystem", e);
             }
         } else {
-            throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "SELECT * with limit not supported yet for in-memory collections");
+            final List<String> allKeys = memoryManager.selectAllKeys(datastore, collection);
+            keys.addAll(allKeys.size() > limit ? allKeys.subList(0, limit) : allKeys);
         }
         return keys;
     }
     
+    /**
+     * Converts the reference value passed to pattern based selects into the array of values expected by in-memory
+     * searches. Collections are used for <code>IN</code> and <code>NOT IN</code> and arrays for <code>BETWEEN</code>.
+     */
+    private Object[] toReferenceValues(final Object referenceValue) {
+        if (referenceValue instanceof Collection) {
+            return ((Collection<?>) referenceValue).toArray();
+        } else if (referenceValue instanceof Object[]) {
+            return (Object[]) referenceValue;
+        }
+        return new Object[]{referenceValue};
+    }
+
     public Iterator<JSONObject> selectAllAsStream(final String datastore, final String collection) {
         //Iterator<Path> iterator = fileManager.selectAllAsStream(dsSet, collection);
         throw new UnsupportedOperationException("Not supported yet.");
@@ -418,8 +480,7 @@ public class BSqlDataManager {
         Set<Object> referenceValuesSet = null;
 
         if (collectionManager.isInMemory(datastore, collection)) {
-            List<Object> lst = memorySearchExecutor.search(operator, datastore, collection, colsToSelect, column, referenceValue.toString());
-            return lst.iterator();
+            return memoryManager.search(operator, datastore, collection, colsToSelect, column, toReferenceValues(referenceValue)).iterator();
         }
         return Collections.EMPTY_LIST.iterator();
     }
@@ -472,25 +533,12 @@ public class BSqlDataManager {
             return Collections.EMPTY_LIST.iterator();
         }
 
-        /* Check if column being searched is indexed and if not index it */
-        if(schema.getColumn(column).getIndexType() == IndexTypes.NONE) {
-//            System.out.println("Column field type: " + schema.getColumn(column).getFieldType());
-            indexManager.index(datastore, collection, column, IndexTypes.BTREE, OperationLogLevel.ERROR);
-        }
-
+        /* In-memory collections are filtered directly over their column vectors and need no index */
         if (collectionManager.isInMemory(datastore, collection)) {
-            // return memorySearchExecutor.search(app, table, column, referenceValue.toString(), operator);
-            List<Object> lst = memorySearchExecutor.search(operator, datastore, collection, colsToSelect, column, referenceValue.toString());
-            List<String> strings = new ArrayList<>();
-            lst.stream().forEach((object) -> {
-                strings.add(object != null ? object.toString() : null);
-            });
-            return strings.iterator();
+            return memoryManager.searchKeys(operator, datastore, collection, column, toReferenceValues(referenceValue)).iterator();
         }
 
-        if(schema.getColumn(column) == null) {
-            return Collections.EMPTY_LIST.iterator();
-        }
+        /* Unindexed columns are answered by the index manager off a parallel scan while an index is built online */
 
         /* Identify type of operation to perform and perform necessary init*/
         switch (operator) {
@@ -604,7 +652,7 @@ public class BSqlDataManager {
                                 listForIterator.add(keyToCheck);
                             }
                         } else {
-                            if (memoryManagerOld.exists(datastore, collection, keyToCheck)) {
+                            if (memoryManager.exists(datastore, collection, keyToCheck)) {
                                 listForIterator.add(keyToCheck);
                             }
                         }
@@ -618,7 +666,7 @@ public class BSqlDataManager {
                                     listForIterator.add(keyToCheck);
                                 }
                             } else {
-                                if (memoryManagerOld.exists(datastore, collection, keyToCheck)) {
+                                if (memoryManager.exists(datastore, collection, keyToCheck)) {
                                     listForIterator.add(keyToCheck);
                                 }
                             }
@@ -628,7 +676,7 @@ public class BSqlDataManager {
                 if (!collectionManager.isInMemory(datastore, collection)) {
                     return fileManager.selectWithFilterAsStream(datastore, collection, directoryStreamFilter);
                 }
-                return memoryManagerOld.selectWithFilterAsStream(datastore, collection, directoryStreamFilter);
+                return memoryManager.selectWithFilterAsStream(datastore, collection, directoryStreamFilter);
             } catch (IOException ex) {
                 logger.error(null, ex);
                 throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR);
@@ -692,8 +740,7 @@ public class BSqlDataManager {
                         return schemaManager.internalToViewable(datastore, collection, new JSONObject(selectJson));
                     }
 
-                    String selectJson = memoryManagerOld.select(datastore, collection, key);
-                    return schemaManager.internalToViewable(datastore, collection, new JSONObject(selectJson));
+                    return schemaManager.internalToViewable(datastore, collection, memoryManager.select(datastore, collection, key));
 
                 } catch (OperationException ex) {
                     logger.error(null, ex);
@@ -720,6 +767,93 @@ public class BSqlDataManager {
 
     public JSONObject insert(final String datastore, final String collection, final JSONObject jsonObject) throws OperationException {
         queryResultCache.invalidate(datastore, collection);
+        final PendingInsert pending = prepareInsert(datastore, collection, jsonObject);
+        codeExecutor.executeTrigger(datastore, collection, TriggerFunction.BEFORE_INSERT, pending.fileJson);
+        final JSONObject responseJson = writeInsert(datastore, collection, pending);
+        codeExecutor.executeTrigger(datastore, collection, TriggerFunction.AFTER_INSERT, pending.fileJson);
+        tableauPublishStore.notifyDataChange(datastore, collection);
+        return responseJson;
+    }
+
+    /**
+     * Inserts a batch of records. The insert triggers of the collection are executed once for the whole batch, so a
+     * trigger declaring a batch signature is called once rather than once per record. A record that cannot be inserted
+     * does not fail the rest of the batch. If the before insert trigger fails for the batch, it is executed again for
+     * each record on its own and only the records it fails for are not inserted. A failure of the after insert trigger
+     * is reported alongside the results, as the records are written by then.
+     *
+     * @param datastore name of the datastore
+     * @param collection name of the collection
+     * @param jsonObjects the records to insert
+     * @return the records written, in the order of <code>jsonObjects</code>, along with the failure of the after insert
+     * trigger if any
+     */
+    public BatchInsertResult insertAll(final String datastore, final String collection, final List<JSONObject> jsonObjects) {
+        queryResultCache.invalidate(datastore, collection);
+        final PendingInsert[] pending = new PendingInsert[jsonObjects.size()];
+        IntStream.range(0, pending.length).parallel().forEach(i -> {
+            try {
+                pending[i] = prepareInsert(datastore, collection, jsonObjects.get(i));
+            } catch (OperationException ex) {
+                logger.debug("Record not inserted into {}.{}: {}", datastore, collection, ex.getMessage());
+            }
+        });
+
+        final List<JSONObject> prepared = new ArrayList<>();
+        for (PendingInsert pendingInsert : pending) {
+            if (pendingInsert != null) {
+                prepared.add(pendingInsert.fileJson);
+            }
+        }
+        try {
+            codeExecutor.executeTrigger(datastore, collection, TriggerFunction.BEFORE_INSERT, prepared);
+        } catch (OperationException batchEx) {
+
+            /* Find the records the trigger rejects, so that the rest of the batch is still inserted */
+            for (int i = 0; i < pending.length; i++) {
+                if (pending[i] == null) {
+                    continue;
+                }
+                try {
+                    codeExecutor.executeTrigger(datastore, collection, TriggerFunction.BEFORE_INSERT, pending[i].fileJson);
+                } catch (OperationException ex) {
+                    logger.debug("Record not inserted into {}.{}: {}", datastore, collection, ex.getMessage());
+                    pending[i] = null;
+                }
+            }
+        }
+
+        final JSONObject[] responses = new JSONObject[pending.length];
+        IntStream.range(0, pending.length).parallel().filter(i -> pending[i] != null).forEach(i -> {
+            try {
+                responses[i] = writeInsert(datastore, collection, pending[i]);
+            } catch (OperationException ex) {
+                logger.debug("Record not inserted into {}.{}: {}", datastore, collection, ex.getMessage());
+            }
+        });
+
+        final List<JSONObject> inserted = new ArrayList<>();
+        for (int i = 0; i < pending.length; i++) {
+            if (responses[i] != null) {
+                inserted.add(pending[i].fileJson);
+            }
+        }
+        OperationException triggerFailure = null;
+        try {
+            codeExecutor.executeTrigger(datastore, collection, TriggerFunction.AFTER_INSERT, inserted);
+        } catch (OperationException ex) {
+            logger.warn("After insert trigger failed for " + inserted.size() + " records inserted into " + datastore + "." + collection, ex);
+            triggerFailure = ex;
+        }
+        tableauPublishStore.notifyDataChange(datastore, collection);
+        return new BatchInsertResult(responses, triggerFailure);
+    }
+
+    /**
+     * Completes a record for insert by applying the schema and auto defined columns, and converts it to internal form
+     */
+    private PendingInsert prepareInsert(final String datastore, final String collection, final JSONObject jsonObject) throws OperationException {
+        statisticsStore.recordModification(datastore, collection);
         Schema schema;
         String primaryKey;
         schema = SchemaStore.getInstance().getSchema(datastore, collection);
@@ -794,38 +928,39 @@ public class BSqlDataManager {
         /* Create JSON with internal columns names. Any columns passed in current JSON that are not in schema will be 
          * ignored and any columns present in schema but not in json will be insertes as empty String values */
         JSONObject fileJson = schemaManager.viewableToInternal(datastore, collection, jsonObject);
-        codeExecutor.executeTrigger(datastore, collection, TriggerFunction.BEFORE_INSERT, fileJson);
+        return new PendingInsert(primaryKey, fileJson);
+    }
+
+    /**
+     * Writes a prepared record and indexes it
+     */
+    private JSONObject writeInsert(final String datastore, final String collection, final PendingInsert pending) throws OperationException {
+        final String primaryKey = pending.primaryKey;
+        final JSONObject fileJson = pending.fileJson;
         JSONObject responseJson = null;
         try {
 //            recordLockBean.acquireWriteLock(account, collection, primaryKey);
             if (!collectionManager.isInMemory(datastore, collection)) {
                 fileManager.insert(datastore, collection, primaryKey, fileJson.toString());
             } else {
-                ColumnMapping map = schemaManager.readColumnMapping(datastore, collection);
-                //memoryManagerOld.insert(dsSet, collection, primaryKey, fileJson, map.getViewableNameMap());
-                //memoryManagerOld.insert(dsSet, collection, primaryKey, fileJson, jsonObject, map.getViewableNameMap());
-                memoryManager.insert(datastore, collection, new JsonRecord(fileJson));
-//                memoryManagerOld.insert(datastore, collection, primaryKey, fileJson);
+                memoryManager.insert(datastore, collection, primaryKey, fileJson);
             }
 //            rowCountStore.incrementRowCount(dsSet, collection);
             responseJson = schemaManager.internalToViewable(datastore, collection, fileJson);
 
-            /* Update indexes */
-            if (schema.isIndexingNeeded()) {
-                indexManager.addIndex(datastore, collection, primaryKey, responseJson);
-            }
+            /* Update indexes, including any index being built online */
+            indexManager.addIndex(datastore, collection, primaryKey, responseJson);
 
         } finally {
 //            recordLockBean.releaseWriteLock(account, collection, primaryKey);
         }
 
-        codeExecutor.executeTrigger(datastore, collection, TriggerFunction.AFTER_INSERT, fileJson);
-        tableauPublishStore.notifyDataChange(datastore, collection);
         return responseJson;
     }
 
     public JSONObject insert(String datastore, String database, String collection, JSONObject jsonObject) throws OperationException {
         queryResultCache.invalidate(datastore, collection);
+        statisticsStore.recordModification(datastore, collection);
         Schema schema;
         String primaryKey;
         schema = SchemaStore.getInstance().getSchema(datastore, collection);
@@ -898,16 +1033,13 @@ public class BSqlDataManager {
             if (!collectionManager.isInMemory(datastore, collection)) {
                 fileManager.insert(datastore, collection, primaryKey, fileJson.toString());
             } else {
-                ColumnMapping map = schemaManager.readColumnMapping(datastore, collection);
-                memoryManagerOld.insert(datastore, collection, primaryKey, fileJson, jsonObject, map.getViewableNameMap());
+                memoryManager.insert(datastore, collection, primaryKey, fileJson);
             }
 //            rowCountStore.incrementRowCount(dsSet, collection);
             responseJson = schemaManager.internalToViewable(datastore, collection, fileJson);
 
-            /* Update indexes */
-            if (schema.isIndexingNeeded()) {
-                indexManager.addIndex(datastore, collection, primaryKey, responseJson);
-            }
+            /* Update indexes, including any index being built online */
+            indexManager.addIndex(datastore, collection, primaryKey, responseJson);
 
         } finally {
 //            recordLockBean.releaseWriteLock(account, collection, primaryKey);
@@ -919,6 +1051,7 @@ public class BSqlDataManager {
 
     public void remove(final String datastore, final String collection, String _id) throws OperationException {
         queryResultCache.invalidate(datastore, collection);
+        statisticsStore.recordModification(datastore, collection);
         JSONObject fileJson;
         
         try {
@@ -927,7 +1060,7 @@ public class BSqlDataManager {
                 if (!collectionManager.isInMemory(datastore, collection)) {
                     fileJson = new JSONObject(fileManager.select(datastore, collection, _id));
                 } else {
-                    fileJson = new JSONObject(memoryManagerOld.select(datastore, collection, _id));
+                    fileJson = memoryManager.select(datastore, collection, _id);
                 }
             } catch (JSONException ex) {
 
@@ -945,8 +1078,9 @@ public class BSqlDataManager {
             if (!collectionManager.isInMemory(datastore, collection)) {
                 fileManager.remove(datastore, collection, _id);
             } else {
-                memoryManagerOld.remove(datastore, collection, _id);
+                memoryManager.remove(datastore, collection, _id);
             }
+            rowIdStore.release(datastore, collection, _id);
             // calling after delete trigger
             codeExecutor.executeTrigger(datastore, collection, TriggerFunction.AFTER_DELETE, fileJson);
             tableauPublishStore.notifyDataChange(datastore, collection);
@@ -966,7 +1100,16 @@ public class BSqlDataManager {
     }
 
     public void save(final String datastore, final String collection, final JSONObject newJsonObject) throws OperationException {
+
+        /* The schema read by the save must not go stale for an index build before the changes are captured */
+        try (OnlineIndexBuilder.Writer writer = onlineIndexBuilder.beginWrite()) {
+            saveRecord(datastore, collection, newJsonObject);
+        }
+    }
+
+    private void saveRecord(final String datastore, final String collection, final JSONObject newJsonObject) throws OperationException {
         queryResultCache.invalidate(datastore, collection);
+        statisticsStore.recordModification(datastore, collection);
         Schema schema;
         String primaryKey;
         JSONObject existingJsonObject = null;
@@ -1011,7 +1154,7 @@ public class BSqlDataManager {
         if (!collectionManager.isInMemory(datastore, collection)) {
             recordExists = fileManager.exists(datastore, collection, primaryKey);
         } else {
-            recordExists = memoryManagerOld.exists(datastore, collection, primaryKey);
+            recordExists = memoryManager.exists(datastore, collection, primaryKey);
         }
 
         /* Read existing column values for updating indexes */
@@ -1023,7 +1166,7 @@ public class BSqlDataManager {
                     if (!collectionManager.isInMemory(datastore, collection)) {
                         existingJsonObject = schemaManager.internalToViewable(datastore, collection, new JSONObject(fileManager.select(datastore, collection, primaryKey)));
                     } else {
-                        existingJsonObject = schemaManager.internalToViewable(datastore, collection, new JSONObject(memoryManagerOld.select(datastore, collection, primaryKey)));
+                        existingJsonObject = schemaManager.internalToViewable(datastore, collection, memoryManager.select(datastore, collection, primaryKey));
                     }
                 } catch (JSONException ex) {
                     logger.error("Failed to fetch existingJsonObject", ex);
@@ -1050,7 +1193,7 @@ public class BSqlDataManager {
             if (!collectionManager.isInMemory(datastore, collection)) {
                 fileManager.save(datastore, collection, primaryKey, fileJson.toString());
             } else {
-                memoryManagerOld.save(datastore, collection, primaryKey, fileJson.toString());
+                memoryManager.save(datastore, collection, primaryKey, fileJson);
             }
             codeExecutor.executeTrigger(datastore, collection, TriggerFunction.AFTER_UPDATE, existingJsonObject, fileJson);
 //            if (!recordExists) {
@@ -1078,6 +1221,9 @@ public class BSqlDataManager {
                     }
                 }
             }
+
+            /* Hand changes of unindexed columns to any index being built online */
+            indexManager.captureChanges(datastore, collection, schema, primaryKey, recordExists ? existingJsonObject : new JSONObject(), newJsonObject);
         } catch (JSONException ex) {
             logger.error("An internal operation error occurred while performing save operation for collection: " + collection + " inside dsSet: " + datastore + " for record: " + newJsonObject.toString(), ex);
             throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR);
@@ -1110,7 +1256,7 @@ public class BSqlDataManager {
 
     public void clearAllData(final String datastore, final String collection) throws OperationException {
         if (collectionManager.isInMemory(datastore, collection)) {
-            memoryManagerOld.clearContents(datastore, collection);
+            memoryManager.clearContents(datastore, collection);
         }
 
         tableauPublishStore.notifyDataChange(datastore, collection);
@@ -1268,8 +1414,8 @@ public class BSqlDataManager {
         
         logger.debug("dsSet: " + datastore + " collection: " + collection + " data: " + dataFileName + " colFileName: " + columnsFileName);
         if (collectionManager.isInMemory(datastore, collection)) {
-            logger.debug("Calling memoryManagerOld clearContents");
-            memoryManagerOld.clearContents(datastore, collection);
+            logger.debug("Calling memoryManager clearContents");
+            memoryManager.clearContents(datastore, collection);
             return populateTable(datastore, collection, dataFileName, header, columnsFileName);
         }
         return false;
@@ -1387,7 +1533,7 @@ public class BSqlDataManager {
     public List<JSONObject> selectAll(final String ds, final String collection) throws OperationException {
         final List<JSONObject> resultList = Collections.synchronizedList(new ArrayList<>());
         if(collectionManager.isInMemory(ds, collection)) {
-            throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "In-Memory select all records not yet supported");
+            return memoryManager.selectAll(ds, collection);
         } else {
             selectAllKeys(ds, collection).parallelStream()
                     .forEach(ConsumerUtil.throwsException(key -> resultList.add(select(ds, collection, key)), OperationException.class));
@@ -1398,7 +1544,8 @@ public class BSqlDataManager {
     public List<JSONObject> selectAll(final String ds, final String collection, final int limit) throws OperationException {
         final List<JSONObject> resultList = Collections.synchronizedList(new ArrayList<>());
         if(collectionManager.isInMemory(ds, collection)) {
-            throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "In-Memory select all records not yet supported");
+            final List<JSONObject> records = memoryManager.selectAll(ds, collection);
+            return records.size() > limit ? new ArrayList<>(records.subList(0, limit)) : records;
         } else {
             selectAllKeysWithLimit(ds, collection, limit).parallelStream()
                     .forEach(ConsumerUtil.throwsException(key -> resultList.add(select(ds, collection, key)), OperationException.class));
@@ -1408,9 +1555,53 @@ public class BSqlDataManager {
 
     public int getRowCount(final String ds, final String collection) throws OperationException {
         if(collectionManager.isInMemory(ds, collection)) {
-            throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "Operation not yet supported");
+            return memoryManager.rowCount(ds, collection);
         } else {
             return fileManager.rowCount(ds, collection);
         }
     }
+
+    /**
+     * Outcome of {@link #insertAll(String, String, List)}
+     */
+    public static class BatchInsertResult {
+
+        private final JSONObject[] inserted;
+        private final OperationException triggerFailure;
+
+        private BatchInsertResult(final JSONObject[] inserted, final OperationException triggerFailure) {
+            this.inserted = inserted;
+            this.triggerFailure = triggerFailure;
+        }
+
+        /**
+         * @return the written records in the order they were passed in, with <code>null</code> in place of any record
+         * that was not written
+         */
+        public JSONObject[] getInserted() {
+            return inserted;
+        }
+
+        /**
+         * @return the failure of the after insert trigger; <code>null</code> if it succeeded. The records were written
+         * irrespective of this failure
+         */
+        public OperationException getTriggerFailure() {
+            return triggerFailure;
+        }
+    }
+
+    /**
+     * A record ready to be written, in internal form
+     */
+    private static class PendingInsert {
+
+        private final String primaryKey;
+        private final JSONObject fileJson;
+
+        private PendingInsert(final String primaryKey, final JSONObject fileJson) {
+            this.primaryKey = primaryKey;
+            this.fileJson = fileJson;
+        }
+    }
 }
\ No newline at end of file
@@ -16,6 +16,7 @@
 
 package com.blobcity.db.bsql;
 
+import com.blobcity.db.bitmap.RowIdStore;
 import com.blobcity.db.code.CodeLoader;
 import com.blobcity.db.code.ManifestLang;
 import com.blobcity.db.constants.BSql;
@@ -49,6 +50,8 @@ public class BSqlDatastoreManager {
     
     @Autowired @Lazy
     private CodeLoader codeloader;
+    @Autowired @Lazy
+    private RowIdStore rowIdStore;
     
     Logger logger = LoggerFactory.getLogger(BSqlDatastoreManager.class);
     
@@ -97,6 +100,7 @@ public class BSqlDatastoreManager {
         }
         // remove entry for all custom codes by user
         codeloader.removeAllClasses(ds);
+        rowIdStore.invalidate(ds);
         // TODO: remove from other in-memory location like indexing and caching etc.
 
         final String absolutePath = BSql.BSQL_BASE_FOLDER + ds;
@@ -121,6 +125,7 @@ public class BSqlDatastoreManager {
         }
         // remove entry for all custom codes by user
         codeloader.removeAllClasses(ds);
+        rowIdStore.invalidate(ds);
         // TODO: remove from other in-memory location like indexing and caching etc.
 
         String absolutePath = BSql.BSQL_BASE_FOLDER + ds;
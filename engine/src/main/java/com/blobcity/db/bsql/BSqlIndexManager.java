@@ -17,12 +17,15 @@
 package com.blobcity.db.bsql;
 
 import com.blobcity.db.bsql.filefilters.OperatorFileFilter;
+import com.blobcity.db.config.ConfigProperties;
 import com.blobcity.db.constants.BSql;
 import com.blobcity.db.exceptions.ErrorCode;
 import com.blobcity.db.exceptions.OperationException;
 import com.blobcity.db.global.live.GlobalLiveStore;
 import com.blobcity.db.indexing.IndexFactory;
 import com.blobcity.db.indexing.IndexingStrategy;
+import com.blobcity.db.indexing.OnDiskBPlusTreeIndex;
+import com.blobcity.db.indexing.OnlineIndexBuilder;
 import com.blobcity.db.operations.OperationLogLevel;
 import com.blobcity.db.operations.OperationStatus;
 import com.blobcity.db.operations.OperationTypes;
@@ -39,6 +42,7 @@ import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.Iterator;
 
+import com.blobcity.db.sql.planner.StatisticsStore;
 import com.blobcity.db.sql.util.PathUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -69,7 +73,28 @@ public class BSqlIndexManager {
     @Autowired
     @Lazy
     private GlobalLiveStore globalLiveStore;
+    @Autowired
+    @Lazy
+    private OnDiskBPlusTreeIndex bPlusTreeIndex;
+    @Autowired
+    @Lazy
+    private StatisticsStore statisticsStore;
+    @Autowired
+    @Lazy
+    private OnlineIndexBuilder onlineIndexBuilder;
 
+    /**
+     * Starts an online build of an index on the column. The column remains unindexed in the schema, and is answered
+     * by scans, until the build completes and switches the index on.
+     *
+     * @param app The application id of the BlobCity application
+     * @param table name of table within the specified application
+     * @param columnName name of column within the specified table
+     * @param indexTypes type of index to build
+     * @param operationLogLevel the logging level for the indexing job
+     * @return the operation id of the asynchronous index operation
+     * @throws OperationException if the column is already indexed or an index build of the column is in progress
+     */
     public String index(final String app, final String table, final String columnName, final IndexTypes indexTypes, final OperationLogLevel operationLogLevel) throws OperationException {
         Schema schema = schemaManager.readSchema(app, table);
 
@@ -79,6 +104,35 @@ public class BSqlIndexManager {
             throw new OperationException(ErrorCode.ALREADY_INDEXED, "Cannot re-index an already indexed column. Execute drop-index before running the index command");
         }
 
+        if (!onlineIndexBuilder.begin(app, table, columnName)) {
+            throw new OperationException(ErrorCode.ALREADY_INDEXED, "An index build is already in progress for column: " + columnName);
+        }
+
+        try {
+            return indexRecords(app, table, columnName, indexTypes, operationLogLevel);
+        } catch (OperationException ex) {
+            onlineIndexBuilder.cancel(app, table, columnName);
+            throw ex;
+        }
+    }
+
+    /**
+     * Marks the column as indexed in the schema. Called by the {@link OnlineIndexBuilder} once an index build has
+     * caught up with all writes made while it was running.
+     *
+     * @param app The application id of the BlobCity application
+     * @param table name of table within the specified application
+     * @param columnName name of column within the specified table
+     * @param indexTypes type of the built index
+     * @throws OperationException if the schema could not be updated
+     */
+    public void switchOn(final String app, final String table, final String columnName, final IndexTypes indexTypes) throws OperationException {
+        Schema schema = schemaManager.readSchema(app, table);
+        Column column = schema.getColumn(columnName);
+        if (column == null || column.getIndexType() == indexTypes) {
+            return;
+        }
+
         column.setIndexType(indexTypes);
         try {
             schemaManager.writeSchema(app, table, schema, true);
@@ -88,7 +142,26 @@ public class BSqlIndexManager {
             throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "An internal operation error occurred.");
         }
 
-        return indexRecords(app, table, columnName, operationLogLevel);
+        /* Statistics of the column can now be read off the index */
+        statisticsStore.invalidate(app, table);
+    }
+
+    /**
+     * Starts a background build of a B-tree index on the column for queries that find it unindexed. Does nothing
+     * unless {@link ConfigProperties#INDEX_AUTO_BUILD} is set, or if a build of the column is already in progress.
+     */
+    private void indexInBackground(final String app, final String table, final String columnName) {
+        if (!onlineIndexBuilder.isAutoBuild() || onlineIndexBuilder.isBuilding(app, table, columnName)) {
+            return;
+        }
+
+        try {
+            index(app, table, columnName, IndexTypes.BTREE, OperationLogLevel.ERROR);
+        } catch (OperationException ex) {
+            if (ex.getErrorCode() != ErrorCode.ALREADY_INDEXED) {
+                logger.error("Could not start building index on column " + columnName + " of " + app + "." + table, ex);
+            }
+        }
     }
 
     public String indexOffline(final String app, final String table, final String columnName, final IndexTypes indexTypes, final OperationLogLevel operationLogLevel) throws OperationException {
@@ -127,8 +200,11 @@ public class BSqlIndexManager {
      */
     public String indexRecords(final String app, final String table, final String columnName, OperationLogLevel logLevel) throws OperationException {
         Schema schema = schemaManager.readSchema(app, table);
-        Column column = schema.getColumn(columnName);
-        IndexingStrategy indexingStrategy = indexFactory.getStrategy(column.getIndexType());
+        return indexRecords(app, table, columnName, schema.getColumn(columnName).getIndexType(), logLevel);
+    }
+
+    private String indexRecords(final String app, final String table, final String columnName, final IndexTypes indexType, OperationLogLevel logLevel) throws OperationException {
+        IndexingStrategy indexingStrategy = indexFactory.getStrategy(indexType);
         indexingStrategy.initializeIndexing(app, table, columnName);
 
         JSONObject jsonObject = new JSONObject();
@@ -139,7 +215,7 @@ public class BSqlIndexManager {
             jsonObject.put("time-started", -1);
             jsonObject.put("status", OperationStatus.NOT_STARTED.getStatusCode());
             jsonObject.put("column", columnName);
-            jsonObject.put("index-type", column.getIndexType().getText());
+            jsonObject.put("index-type", indexType.getText());
         } catch (JSONException ex) {
             logger.error(null, ex);
             throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Could not register long running indexing operation due to JSON error");
@@ -190,9 +266,16 @@ public class BSqlIndexManager {
         }
 
         if (column.getIndexType() == IndexTypes.NONE) {
+
+            /* An index still being built is dropped by aborting its build, which discards what was indexed so far */
+            if (onlineIndexBuilder.abort(app, table, columnName)) {
+                return;
+            }
             throw new OperationException(ErrorCode.NOT_INDEXED, "Column not indexed. No index to drop.");
         }
 
+        final IndexTypes droppedIndexType = column.getIndexType();
+        onlineIndexBuilder.cancel(app, table, columnName);
         column.setIndexType(IndexTypes.NONE);
         try {
             schemaManager.writeSchema(app, table, schema, true);
@@ -201,6 +284,12 @@ public class BSqlIndexManager {
             //TODO: Notify admin
             throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "An internal operation error occurred.");
         }
+        statisticsStore.invalidate(app, table);
+
+        /* B+tree indexes hold their index file open, which must be released before the folder is moved */
+        if (droppedIndexType == IndexTypes.BPLUSTREE) {
+            bPlusTreeIndex.close(app, table, columnName);
+        }
 
         /* Move index folder to del location */
 
@@ -274,7 +363,11 @@ public class BSqlIndexManager {
      * @throws OperationException if an operation error occurs
      */
     public void addIndex(final String app, final String table, final String pk, JSONObject jsonObject) throws OperationException {
-        final Schema schema = schemaManager.readSchema(app, table);
+        final Schema schema;
+        try (OnlineIndexBuilder.Writer writer = onlineIndexBuilder.beginWrite()) {
+            schema = schemaManager.readSchema(app, table);
+            captureUnindexed(app, table, schema, pk, jsonObject, true);
+        }
         if (schema.isIndexingNeeded()) {
 
             //new code start
@@ -324,8 +417,12 @@ public class BSqlIndexManager {
      * @param newValues
      */
     public void diffIndex(final String app, final String table, final String pk, JSONObject oldValues, JSONObject newValues) throws OperationException {
-        Schema schema = schemaManager.readSchema(app, table);
+        Schema schema;
         IndexingStrategy indexingStrategy;
+        try (OnlineIndexBuilder.Writer writer = onlineIndexBuilder.beginWrite()) {
+            schema = schemaManager.readSchema(app, table);
+            captureChanges(app, table, schema, pk, oldValues, newValues);
+        }
         if (schema.isIndexingNeeded()) {
             for (Column column : schema.getColumnMap().values()) {
                 if (column.getName().equals(schema.getPrimary())) {
@@ -356,7 +453,11 @@ public class BSqlIndexManager {
     }
 
     public void removeIndex(final String app, final String table, final String pk, final JSONObject jsonObject) throws OperationException {
-        Schema schema = schemaManager.readSchema(app, table);
+        final Schema schema;
+        try (OnlineIndexBuilder.Writer writer = onlineIndexBuilder.beginWrite()) {
+            schema = schemaManager.readSchema(app, table);
+            captureUnindexed(app, table, schema, pk, jsonObject, false);
+        }
         if (schema.isIndexingNeeded()) {
 
             schema.getColumnMap().values().parallelStream().forEach(column -> {
@@ -390,23 +491,71 @@ public class BSqlIndexManager {
         }
     }
 
+    /**
+     * Hands the changes made by an update to unindexed columns to the {@link OnlineIndexBuilder}, so that index builds
+     * in progress on those columns catch up with the update. The schema must have been read within the same
+     * {@link OnlineIndexBuilder#beginWrite()} as this call.
+     *
+     * @param app The application id of the BlobCity application
+     * @param table Name of table within the specified application
+     * @param schema schema of the table as read by the writer
+     * @param pk primary key of the updated record
+     * @param oldValues column values before the update, keyed on viewable column names
+     * @param newValues column values after the update, keyed on viewable column names
+     */
+    public void captureChanges(final String app, final String table, final Schema schema, final String pk, final JSONObject oldValues, final JSONObject newValues) {
+        if (!onlineIndexBuilder.hasBuilds()) {
+            return;
+        }
+
+        for (Column column : schema.getColumnMap().values()) {
+            final String name = column.getName();
+            if (column.getIndexType() != IndexTypes.NONE || name.equals(schema.getPrimary())) {
+                continue;
+            }
+
+            final String oldValue = oldValues.has(name) ? oldValues.get(name).toString() : null;
+            final String newValue = newValues.has(name) ? newValues.get(name).toString() : null;
+            if (oldValue != null && oldValue.equals(newValue)) {
+                continue;
+            }
+            if (oldValue != null) {
+                onlineIndexBuilder.capture(app, table, name, oldValue, pk, false);
+            }
+            if (newValue != null) {
+                onlineIndexBuilder.capture(app, table, name, newValue, pk, true);
+            }
+        }
+    }
+
+    /**
+     * Hands changes to unindexed columns to the {@link OnlineIndexBuilder}, so that index builds in progress on those
+     * columns catch up with writes made after their snapshot of keys was taken
+     */
+    private void captureUnindexed(final String app, final String table, final Schema schema, final String pk, final JSONObject jsonObject, final boolean insert) {
+        if (!onlineIndexBuilder.hasBuilds()) {
+            return;
+        }
+
+        for (Column column : schema.getColumnMap().values()) {
+            if (column.getIndexType() != IndexTypes.NONE || column.getName().equals(schema.getPrimary())) {
+                continue;
+            }
+
+            if (jsonObject.has(column.getName())) {
+                onlineIndexBuilder.capture(app, table, column.getName(), jsonObject.get(column.getName()).toString(), pk, insert);
+            }
+        }
+    }
+
     public Iterator<String> readIndexStream(final String app, final String table, final String columnName, final Object columnValue) throws OperationException {
         Schema schema = schemaStore.getSchema(app, table);
         Column column = schema.getColumn(columnName);
         IndexingStrategy strategy = indexFactory.getStrategy(column.getIndexType());
         if(strategy == null) {
-            final String opid = index(app, table, columnName, IndexTypes.BTREE, OperationLogLevel.ERROR);
-
-            /**
-             * The below semaphore mechanism is required in future when the operation is started in async manner
-             */
-//            Semaphore semaphore = new Semaphore(1);
-//            semaphore.acquireUninterruptibly();
-//            globalLiveStore.registerNotification(opid, semaphore);
-//            semaphore.acquireUninterruptibly();
-
-            column = schemaStore.getSchema(app, table).getColumn(columnName);
-            strategy = indexFactory.getStrategy(column.getIndexType());
+            /* Answer off a scan while the index is built in the background */
+            indexInBackground(app, table, columnName);
+            return onlineIndexBuilder.scan(app, table, columnName, columnValue.toString());
         }
         return strategy.loadIndexStream(app, table, columnName, columnValue.toString());
     }
@@ -416,18 +565,15 @@ public class BSqlIndexManager {
         Column column = schema.getColumn(columnName);
         IndexingStrategy strategy = indexFactory.getStrategy(column.getIndexType());
         if(strategy == null) {
-            final String opid = index(app, table, columnName, IndexTypes.BTREE, OperationLogLevel.ERROR);
-
-            /**
-             * The below semaphore mechanism is required in future when the operation is started in async manner
-             */
-//            Semaphore semaphore = new Semaphore(1);
-//            semaphore.acquireUninterruptibly();
-//            globalLiveStore.registerNotification(opid, semaphore);
-//            semaphore.acquireUninterruptibly();
-
-            column = schemaStore.getSchema(app, table).getColumn(columnName);
-            strategy = indexFactory.getStrategy(column.getIndexType());
+            /* Answer off a scan while the index is built in the background */
+            indexInBackground(app, table, columnName);
+            final Iterator<String> keys = onlineIndexBuilder.scan(app, table, columnName, columnValue.toString());
+            long count = 0;
+            while (keys.hasNext()) {
+                keys.next();
+                count++;
+            }
+            return count;
         }
         return strategy.getIndexCount(app, table, columnName, columnValue.toString());
     }
@@ -437,18 +583,9 @@ public class BSqlIndexManager {
         Column column = schema.getColumn(columnName);
         IndexingStrategy strategy = indexFactory.getStrategy(column.getIndexType());
         if(strategy == null) {
-            final String opid = index(app, table, columnName, IndexTypes.BTREE, OperationLogLevel.ERROR);
-
-            /**
-             * The below semaphore mechanism is required in future when the operation is started in async manner
-             */
-//            Semaphore semaphore = new Semaphore(1);
-//            semaphore.acquireUninterruptibly();
-//            globalLiveStore.registerNotification(opid, semaphore);
-//            semaphore.acquireUninterruptibly();
-
-            column = schemaStore.getSchema(app, table).getColumn(columnName);
-            strategy = indexFactory.getStrategy(column.getIndexType());
+            /* Answer off a scan while the index is built in the background */
+            indexInBackground(app, table, columnName);
+            return onlineIndexBuilder.scan(app, table, columnName, filter);
         }
         return strategy.loadIndexStream(app, table, columnName, filter);
     }
@@ -461,18 +598,9 @@ public class BSqlIndexManager {
         }
         IndexingStrategy strategy = indexFactory.getStrategy(column.getIndexType());
         if(strategy == null) {
-            final String opid = index(ds, collection, columnName, IndexTypes.BTREE, OperationLogLevel.ERROR);
-
-            /**
-             * The below semaphore mechanism is required in future when the operation is started in async manner
-             */
-//            Semaphore semaphore = new Semaphore(1);
-//            semaphore.acquireUninterruptibly();
-//            globalLiveStore.registerNotification(opid, semaphore);
-//            semaphore.acquireUninterruptibly();
-
-            column = schemaStore.getSchema(ds, collection).getColumn(columnName);
-            strategy = indexFactory.getStrategy(column.getIndexType());
+            /* Answer off a scan while the index is built in the background */
+            indexInBackground(ds, collection, columnName);
+            return onlineIndexBuilder.distinctValues(ds, collection, columnName);
         }
         return strategy.cardinality(ds, collection, columnName);
     }
@@ -487,18 +615,9 @@ public class BSqlIndexManager {
         Column column = schema.getColumn(columnName);
         IndexingStrategy strategy = indexFactory.getStrategy(column.getIndexType());
         if(strategy == null) {
-            final String opid = index(app, table, columnName, IndexTypes.BTREE, OperationLogLevel.ERROR);
-
-            /**
-             * The below semaphore mechanism is required in future when the operation is started in async manner
-             */
-//            Semaphore semaphore = new Semaphore(1);
-//            semaphore.acquireUninterruptibly();
-//            globalLiveStore.registerNotification(opid, semaphore);
-//            semaphore.acquireUninterruptibly();
-
-            column = schemaStore.getSchema(app, table).getColumn(columnName);
-            strategy = indexFactory.getStrategy(column.getIndexType());
+            /* Answer off a scan while the index is built in the background */
+            indexInBackground(app, table, columnName);
+            return onlineIndexBuilder.holds(app, table, columnName, columnValue.toString(), pk.toString());
         }
         return strategy.contains(app, table, columnName, columnValue.toString(), pk.toString());
     }
@@ -508,18 +627,13 @@ public class BSqlIndexManager {
         Column column = schema.getColumn(columnName);
         IndexingStrategy strategy = indexFactory.getStrategy(column.getIndexType());
         if(strategy == null) {
-            final String opid = index(ds, collection, columnName, IndexTypes.BTREE, OperationLogLevel.ERROR);
-
-            /**
-             * The below semaphore mechanism is required in future when the operation is started in async manner
-             */
-//            Semaphore semaphore = new Semaphore(1);
-//            semaphore.acquireUninterruptibly();
-//            globalLiveStore.registerNotification(opid, semaphore);
-//            semaphore.acquireUninterruptibly();
-
-            column = schemaStore.getSchema(ds, collection).getColumn(columnName);
-            strategy = indexFactory.getStrategy(column.getIndexType());
+            /* Answer off a scan while the index is built in the background */
+            indexInBackground(ds, collection, columnName);
+            final Iterator<String> keys = onlineIndexBuilder.scan(ds, collection, columnName, columnValue.toString());
+            if (!keys.hasNext()) {
+                throw new OperationException(ErrorCode.SELECT_ERROR, "No record found with value: " + columnValue + " for column: " + columnName);
+            }
+            return keys.next();
         }
         return strategy.getAnyCardinalEntry(ds, collection, columnName, columnValue.toString());
     }
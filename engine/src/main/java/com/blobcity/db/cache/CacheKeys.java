@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.cache;
+
+/**
+ * Builds the keys of the caches from datastore, collection and entry names
+ *
+ * @author sanketsarang
+ */
+class CacheKeys {
+
+    /* Datastore and collection names are folder names and never hold a NUL, unlike a '-'. A key prefix made of a
+     * datastore and a collection hence matches the keys of no other collection. */
+    static final char SEPARATOR = '\0';
+
+    private CacheKeys() {
+    }
+
+    /**
+     * Joins the parts of a key with {@link #SEPARATOR}
+     *
+     * @param parts parts of the key, outermost first
+     * @return the key
+     */
+    static String join(final String... parts) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                sb.append(SEPARATOR);
+            }
+            sb.append(parts[i]);
+        }
+        return sb.toString();
+    }
+}
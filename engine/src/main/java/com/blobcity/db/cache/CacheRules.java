@@ -17,16 +17,20 @@
 package com.blobcity.db.cache;
 
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.springframework.stereotype.Component;
 
 /**
+ * Decides which datastores and collections are eligible for caching. A rule set against a collection takes
+ * precedence over one set against its datastore, which in turn takes precedence over the rule set for all datastores.
+ * Caching is allowed when no rule applies.
  *
  * @author sanketsarang
  */
 @Component
 public class CacheRules {
-    private Set<String> allow;
-    private Set<String> deny;
+    private final Set<String> allow = ConcurrentHashMap.newKeySet();
+    private final Set<String> deny = ConcurrentHashMap.newKeySet();
     
     public void setAllow(final String app) {
         allow.add(getKey(app));
@@ -50,12 +54,12 @@ public class CacheRules {
     
     public void setDeny(final String app) {
         allow.remove(getKey(app));
-        deny.remove(getKey(app));
+        deny.add(getKey(app));
     }
     
     public void setDenyAll() {
         allow.remove(getAllKey());
-        deny.remove(getAllKey());
+        deny.add(getAllKey());
     }
     
     private String getKey(final String app) {
@@ -63,10 +67,7 @@ public class CacheRules {
     }
     
     private String getKey(final String app, final String table) {
-        StringBuilder sb = new StringBuilder(app);
-        sb.append("-");
-        sb.append(table);
-        return sb.toString();
+        return CacheKeys.join(app, table);
     }
     
     private String getAllKey() {
@@ -74,7 +75,22 @@ public class CacheRules {
     }
     
     public boolean shouldCache(final String app, final String table) {
-        //TODO: Implement this
-        return true;
+        final String tableKey = getKey(app, table);
+        if (deny.contains(tableKey)) {
+            return false;
+        }
+        if (allow.contains(tableKey)) {
+            return true;
+        }
+
+        final String appKey = getKey(app);
+        if (deny.contains(appKey)) {
+            return false;
+        }
+        if (allow.contains(appKey)) {
+            return true;
+        }
+
+        return !deny.contains(getAllKey());
     }
 }
@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.cache;
+
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Byte budget resolution and entry weight estimates shared by the caches
+ *
+ * @author sanketsarang
+ */
+class CacheSizing {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheSizing.class.getName());
+
+    /* Approximate retained size of a String object and its backing array, excluding the characters */
+    private static final long STRING_OVERHEAD = 40;
+    private static final long SET_OVERHEAD = 64;
+    private static final long SET_ENTRY_OVERHEAD = 32;
+    private static final long MAP_ENTRY_OVERHEAD = 64;
+
+    private CacheSizing() {
+    }
+
+    /**
+     * Resolves the byte budget of a cache from its configured value, falling back to a fraction of the maximum heap
+     * when the property is absent or invalid
+     *
+     * @param property name of the config property, used for logging
+     * @param configured the configured number of bytes, may be null
+     * @param heapFraction fraction of the maximum heap to use by default
+     * @return the byte budget of the cache
+     */
+    static long budget(final String property, final String configured, final double heapFraction) {
+        final long defaultBudget = (long) (Runtime.getRuntime().maxMemory() * heapFraction);
+        if (configured == null || configured.isEmpty()) {
+            return defaultBudget;
+        }
+
+        try {
+            final long bytes = Long.parseLong(configured);
+            if (bytes >= 0) {
+                return bytes;
+            }
+        } catch (NumberFormatException ex) {
+            //do nothing
+        }
+        logger.warn("Invalid value {} for {}. Using default of {} bytes", configured, property, defaultBudget);
+        return defaultBudget;
+    }
+
+    static long weigh(final String string) {
+        return string == null ? 0 : STRING_OVERHEAD + 2L * string.length();
+    }
+
+    static long weigh(final String key, final String value) {
+        return MAP_ENTRY_OVERHEAD + weigh(key) + weigh(value);
+    }
+
+    static long weigh(final String key, final Set<String> values) {
+        long weight = MAP_ENTRY_OVERHEAD + weigh(key) + SET_OVERHEAD;
+        if (values != null) {
+            for (String value : values) {
+                weight += SET_ENTRY_OVERHEAD + weigh(value);
+            }
+        }
+        return weight;
+    }
+}
@@ -16,48 +16,68 @@
 
 package com.blobcity.db.cache;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
-import org.json.JSONObject;
+import com.blobcity.db.config.ConfigBean;
+import com.blobcity.db.config.ConfigProperties;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 /**
+ * Caches records in their internal JSON string form. Bounded by the number of bytes configured against
+ * {@link ConfigProperties#DATA_CACHE_SIZE}, defaulting to 10% of the maximum heap.
  *
  * @author sanketsarang
  */
 @Component
 public class DataCache {
-    
-    /* appId-table-pk -> record in non-viewable json string form */
-    private final Map<String, String> map = createLruMap();
-    
+
+    private static final Logger logger = LoggerFactory.getLogger(DataCache.class.getName());
+    private static final double DEFAULT_HEAP_FRACTION = 0.10;
+
+    @Autowired
+    private ConfigBean configBean;
+
+    /* appId\0table\0pk -> record in non-viewable json string form */
+    private SegmentedLruCache<String, String> cache;
+
+    @PostConstruct
+    private void init() {
+        final long maxBytes = CacheSizing.budget(ConfigProperties.DATA_CACHE_SIZE,
+                configBean.getStringProperty(ConfigProperties.DATA_CACHE_SIZE), DEFAULT_HEAP_FRACTION);
+        cache = new SegmentedLruCache<>(maxBytes, CacheSizing::weigh);
+        logger.info("Data cache limited to {} bytes", maxBytes);
+    }
+
     public void cache(final String app, final String table, final String pk, final String internalJsonString) {
-        map.put(makeKey(app, table, pk), internalJsonString);
+        cache.put(makeKey(app, table, pk), internalJsonString);
     }
-    
+
     public void invalidate(final String app, final String table, final String pk) {
-        map.remove(makeKey(app, table, pk));
+        cache.remove(makeKey(app, table, pk));
     }
-    
+
+    /**
+     * Invalidates all cached records of the specified table
+     *
+     * @param app the datastore
+     * @param table the collection
+     */
+    public void invalidate(final String app, final String table) {
+        final String prefix = makeKey(app, table, "");
+        cache.removeIf(key -> key.startsWith(prefix));
+    }
+
     public String load(final String app, final String table, final String pk) {
-        return map.get(makeKey(app, table, pk));
+        return cache.get(makeKey(app, table, pk));
     }
-    
-    private String makeKey(final String app, final String table, final String pk) {
-        StringBuilder sb = new StringBuilder(app);
-        sb.append("-");
-        sb.append(table);
-        sb.append("-");
-        sb.append(pk);
-        return sb.toString();
+
+    public CacheStats getStats() {
+        return cache.getStats();
     }
-    
-    private LinkedHashMap<String, String> createLruMap() {
-        return new LinkedHashMap<String, String>() {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
-                return Runtime.getRuntime().totalMemory() > Runtime.getRuntime().maxMemory() * 0.98;
-            }
-        };
+
+    private String makeKey(final String app, final String table, final String pk) {
+        return CacheKeys.join(app, table, pk);
     }
 }
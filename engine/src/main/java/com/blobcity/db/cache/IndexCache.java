@@ -16,82 +16,70 @@
 
 package com.blobcity.db.cache;
 
-import com.blobcity.db.exceptions.ErrorCode;
-import com.blobcity.db.exceptions.OperationException;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.ObjectOutputStream;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import com.blobcity.db.config.ConfigBean;
+import com.blobcity.db.config.ConfigProperties;
 import java.util.Set;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-import java.util.zip.GZIPOutputStream;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 /**
+ * Caches the set of primary keys stored against a column value. Bounded by the number of bytes configured against
+ * {@link ConfigProperties#INDEX_CACHE_SIZE}, defaulting to 5% of the maximum heap. Cached sets must not be modified
+ * once handed to the cache.
  *
  * @author sanketsarang
  */
 @Component
 public class IndexCache {
 
-    /* appId-table-pk -> set of indexed values */
-    private final Map<String, Set<String>> map = createLruMap();
+    private static final Logger logger = LoggerFactory.getLogger(IndexCache.class.getName());
+    private static final double DEFAULT_HEAP_FRACTION = 0.05;
 
-    public void cache(final String app, final String table, final String columnValue, final Set<String> keys) {
-        map.put(makeKey(app, table, columnValue), keys);
+    @Autowired
+    private ConfigBean configBean;
+
+    /* appId\0table\0columnValue -> set of primary keys */
+    private SegmentedLruCache<String, Set<String>> cache;
+
+    @PostConstruct
+    private void init() {
+        final long maxBytes = CacheSizing.budget(ConfigProperties.INDEX_CACHE_SIZE,
+                configBean.getStringProperty(ConfigProperties.INDEX_CACHE_SIZE), DEFAULT_HEAP_FRACTION);
+        cache = new SegmentedLruCache<>(maxBytes, CacheSizing::weigh);
+        logger.info("Index cache limited to {} bytes", maxBytes);
     }
 
-    public void invalidate(final String app, final String table, final String columnValue) {
-        map.remove(makeKey(app, table, columnValue));
+    public void cache(final String app, final String table, final String columnValue, final Set<String> keys) {
+        cache.put(makeKey(app, table, columnValue), keys);
     }
 
-    public Set<String> load(final String app, final String table, final String columnValue) {
-        return map.get(makeKey(app, table, columnValue));
+    public void invalidate(final String app, final String table, final String columnValue) {
+        cache.remove(makeKey(app, table, columnValue));
     }
 
-    private String makeKey(final String app, final String table, final String columnValue) {
-        StringBuilder sb = new StringBuilder(app);
-        sb.append("-");
-        sb.append(table);
-        sb.append("-");
-        sb.append(columnValue);
-        return sb.toString();
+    /**
+     * Invalidates all cached index entries of the specified table
+     *
+     * @param app the datastore
+     * @param table the collection
+     */
+    public void invalidate(final String app, final String table) {
+        final String prefix = makeKey(app, table, "");
+        cache.removeIf(key -> key.startsWith(prefix));
     }
 
-    private LinkedHashMap<String, Set<String>> createLruMap() {
-        return new LinkedHashMap<String, Set<String>>() {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<String, Set<String>> eldest) {
-                return Runtime.getRuntime().totalMemory() > Runtime.getRuntime().maxMemory() * 0.98;
-            }
-        };
+    public Set<String> load(final String app, final String table, final String columnValue) {
+        return cache.get(makeKey(app, table, columnValue));
     }
 
-    private byte[] zip(Set<String> set) throws OperationException {
-        GZIPOutputStream gzipos = null;
-        try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            gzipos = new GZIPOutputStream(baos);
-            ObjectOutputStream oos = new ObjectOutputStream(gzipos);
-            oos.writeObject(set);
-            return baos.toByteArray();
-        } catch (IOException ex) {
-            Logger.getLogger(IndexCache.class.getName()).log(Level.SEVERE, null, ex);
-            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Index cache failed during in-memory data compression");
-        } finally {
-            try {
-                if (gzipos != null) {
-                    gzipos.close();
-                }
-            } catch (IOException ex) {
-                Logger.getLogger(IndexCache.class.getName()).log(Level.SEVERE, null, ex);
-            }
-        }
+    public CacheStats getStats() {
+        return cache.getStats();
     }
 
-    private Set<String> unzip(byte[] zippedData) {
-        throw new UnsupportedOperationException("Not supported yet.");
+    private String makeKey(final String app, final String table, final String columnValue) {
+        return CacheKeys.join(app, table, columnValue);
     }
 }
@@ -16,54 +16,73 @@
 
 package com.blobcity.db.cache;
 
-import org.json.JSONObject;
+import com.blobcity.db.config.ConfigBean;
+import com.blobcity.db.config.ConfigProperties;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.*;
-
 /**
+ * Caches the result of SQL queries. Bounded by the number of bytes configured against
+ * {@link ConfigProperties#QUERY_CACHE_SIZE}, defaulting to 5% of the maximum heap.
+ *
  * @author sanketsarang
  */
 @Component
 public class QueryResultCache {
 
+    private static final Logger logger = LoggerFactory.getLogger(QueryResultCache.class.getName());
+    private static final double DEFAULT_HEAP_FRACTION = 0.05;
+
+    @Autowired
+    private ConfigBean configBean;
+
     /* Maps SQL query to the result string */
-    private final LinkedHashMap<String, String> map = createLruMap();
+    private SegmentedLruCache<String, String> cache;
 
     /* Maintains a map of which tables correspond to which SQL queries that are cached. This is used for invalidating
     the cache when data in the corresponding tables changes.
      */
-    private final Map<String, Set<String>> tableToSqlMap = new HashMap<>();
+    private final Map<String, Set<String>> tableToSqlMap = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    private void init() {
+        final long maxBytes = CacheSizing.budget(ConfigProperties.QUERY_CACHE_SIZE,
+                configBean.getStringProperty(ConfigProperties.QUERY_CACHE_SIZE), DEFAULT_HEAP_FRACTION);
+        cache = new SegmentedLruCache<>(maxBytes, CacheSizing::weigh, this::onEviction);
+        logger.info("Query result cache limited to {} bytes", maxBytes);
+    }
 
     public void cache(final String ds, final String collection, final String sqlQuery, final String result) {
         final String dsCollection = ds + "." + collection;
-        if(!tableToSqlMap.containsKey(dsCollection)) {
-            tableToSqlMap.put(dsCollection, new HashSet<>());
-        }
-
-        tableToSqlMap.get(dsCollection).add(sqlQuery);
-        map.put(sqlQuery, result);
+        tableToSqlMap.computeIfAbsent(dsCollection, key -> ConcurrentHashMap.newKeySet()).add(sqlQuery);
+        cache.put(sqlQuery, result);
     }
 
     public void invalidate(final String ds, final String collection) {
         final String dsCollection = ds + "." + collection;
-        if(!tableToSqlMap.containsKey(dsCollection)) {
+        final Set<String> sqlQueries = tableToSqlMap.remove(dsCollection);
+        if (sqlQueries == null) {
             return;
         }
 
-        tableToSqlMap.get(dsCollection).forEach(sql -> map.remove(sql));
+        sqlQueries.forEach(sql -> cache.remove(sql));
     }
 
     public String get(final String sql) {
-        return map.get(sql);
+        return cache.get(sql);
+    }
+
+    public CacheStats getStats() {
+        return cache.getStats();
     }
 
-    private LinkedHashMap<String, String> createLruMap() {
-        return new LinkedHashMap<String, String>() {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
-                return Runtime.getRuntime().totalMemory() > Runtime.getRuntime().maxMemory() * 0.98;
-            }
-        };
+    private void onEviction(final String sql, final String result) {
+        tableToSqlMap.values().forEach(sqlQueries -> sqlQueries.remove(sql));
     }
 }
@@ -0,0 +1,324 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * Concurrent, byte bounded cache with segmented LRU eviction. The key space is hash partitioned across a fixed number
+ * of independently locked partitions, each holding an equal share of the byte budget. Within a partition new entries
+ * enter a probation segment and are promoted to a protected segment on their second hit, so a one-off scan cannot
+ * flush the frequently read entries out of the cache. The protected segment is capped at 80% of the partition budget;
+ * entries pushed out of it are demoted back to probation, and eviction always drains probation first.
+ *
+ * The size of each entry is estimated by the weigher supplied at construction, which must return an approximate
+ * retained size in bytes for a key value pair.
+ *
+ * @author sanketsarang
+ */
+public class SegmentedLruCache<K, V> {
+
+    private static final int PARTITIONS = 16;
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private final Partition[] partitions;
+    private final ToLongBiFunction<K, V> weigher;
+    private final BiConsumer<K, V> evictionListener;
+    private final long maxBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public SegmentedLruCache(final long maxBytes, final ToLongBiFunction<K, V> weigher) {
+        this(maxBytes, weigher, null);
+    }
+
+    /**
+     * @param maxBytes total byte budget of the cache across all partitions
+     * @param weigher estimates the retained size in bytes of a single entry
+     * @param evictionListener optional callback invoked for every entry evicted due to the byte budget. Not invoked
+     * for explicit removals. Called outside of any partition lock
+     */
+    @SuppressWarnings("unchecked")
+    public SegmentedLruCache(final long maxBytes, final ToLongBiFunction<K, V> weigher, final BiConsumer<K, V> evictionListener) {
+        this.maxBytes = maxBytes;
+        this.weigher = weigher;
+        this.evictionListener = evictionListener;
+        this.partitions = new SegmentedLruCache.Partition[PARTITIONS];
+        final long partitionBytes = Math.max(1, maxBytes / PARTITIONS);
+        for (int i = 0; i < PARTITIONS; i++) {
+            partitions[i] = new Partition(partitionBytes);
+        }
+    }
+
+    public V get(final K key) {
+        final V value = partitionFor(key).get(key);
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Caches the specified value, replacing any existing value for the key. Values heavier than the budget of a
+     * partition are not cached, and any older value for the key is dropped.
+     *
+     * @param key the key
+     * @param value the value to cache
+     */
+    public void put(final K key, final V value) {
+        final long weight = weigher.applyAsLong(key, value);
+        final List<Entry<K, V>> evicted = partitionFor(key).put(key, value, weight);
+        if (!evicted.isEmpty()) {
+            evictions.add(evicted.size());
+            if (evictionListener != null) {
+                evicted.forEach(entry -> evictionListener.accept(entry.key, entry.value));
+            }
+        }
+    }
+
+    public void remove(final K key) {
+        partitionFor(key).remove(key);
+    }
+
+    /**
+     * Removes all entries whose key matches the predicate. Each partition is locked in turn, so the operation is not
+     * atomic across the whole cache.
+     *
+     * @param predicate selects the keys to remove
+     */
+    public void removeIf(final Predicate<K> predicate) {
+        for (Partition partition : partitions) {
+            partition.removeIf(predicate);
+        }
+    }
+
+    public void clear() {
+        removeIf(key -> true);
+    }
+
+    public long size() {
+        long size = 0;
+        for (Partition partition : partitions) {
+            size += partition.size();
+        }
+        return size;
+    }
+
+    public long weightedSize() {
+        long bytes = 0;
+        for (Partition partition : partitions) {
+            bytes += partition.bytes();
+        }
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size(), weightedSize(), maxBytes);
+    }
+
+    private Partition partitionFor(final K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return partitions[h & (PARTITIONS - 1)];
+    }
+
+    private static final class Entry<K, V> {
+
+        private final K key;
+        private final V value;
+        private final long weight;
+
+        private Entry(final K key, final V value, final long weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private final class Partition {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final long maxBytes;
+        private final long maxProtectedBytes;
+
+        /* Both maps are kept in insertion order with the least recently used entry first; entries are moved to the
+        tail by removing and re-inserting them */
+        private final LinkedHashMap<K, Entry<K, V>> probation = new LinkedHashMap<>();
+        private final LinkedHashMap<K, Entry<K, V>> protectedEntries = new LinkedHashMap<>();
+        private long probationBytes = 0;
+        private long protectedBytes = 0;
+
+        private Partition(final long maxBytes) {
+            this.maxBytes = maxBytes;
+            this.maxProtectedBytes = (long) (maxBytes * PROTECTED_RATIO);
+        }
+
+        private V get(final K key) {
+            lock.lock();
+            try {
+                Entry<K, V> entry = protectedEntries.remove(key);
+                if (entry != null) {
+                    protectedEntries.put(key, entry);
+                    return entry.value;
+                }
+
+                entry = probation.remove(key);
+                if (entry == null) {
+                    return null;
+                }
+
+                /* Second hit, promote to protected and demote the protected LRU entries if over the cap */
+                probationBytes -= entry.weight;
+                protectedEntries.put(key, entry);
+                protectedBytes += entry.weight;
+                demoteProtected();
+                return entry.value;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private List<Entry<K, V>> put(final K key, final V value, final long weight) {
+            lock.lock();
+            try {
+                removeEntry(key);
+                if (weight > maxBytes) {
+                    return Collections.emptyList();
+                }
+
+                probation.put(key, new Entry<>(key, value, weight));
+                probationBytes += weight;
+                return evict();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void remove(final K key) {
+            lock.lock();
+            try {
+                removeEntry(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void removeIf(final Predicate<K> predicate) {
+            lock.lock();
+            try {
+                probationBytes -= removeIf(probation, predicate);
+                protectedBytes -= removeIf(protectedEntries, predicate);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private long size() {
+            lock.lock();
+            try {
+                return probation.size() + protectedEntries.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private long bytes() {
+            lock.lock();
+            try {
+                return probationBytes + protectedBytes;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private long removeIf(final Map<K, Entry<K, V>> map, final Predicate<K> predicate) {
+            long removedBytes = 0;
+            Iterator<Entry<K, V>> iterator = map.values().iterator();
+            while (iterator.hasNext()) {
+                Entry<K, V> entry = iterator.next();
+                if (predicate.test(entry.key)) {
+                    removedBytes += entry.weight;
+                    iterator.remove();
+                }
+            }
+            return removedBytes;
+        }
+
+        private void removeEntry(final K key) {
+            Entry<K, V> existing = probation.remove(key);
+            if (existing != null) {
+                probationBytes -= existing.weight;
+                return;
+            }
+
+            existing = protectedEntries.remove(key);
+            if (existing != null) {
+                protectedBytes -= existing.weight;
+            }
+        }
+
+        private void demoteProtected() {
+            while (protectedBytes > maxProtectedBytes && !protectedEntries.isEmpty()) {
+                Iterator<Entry<K, V>> iterator = protectedEntries.values().iterator();
+                Entry<K, V> eldest = iterator.next();
+                iterator.remove();
+                protectedBytes -= eldest.weight;
+                probation.put(eldest.key, eldest);
+                probationBytes += eldest.weight;
+            }
+        }
+
+        private List<Entry<K, V>> evict() {
+            List<Entry<K, V>> evicted = null;
+            while (probationBytes + protectedBytes > maxBytes) {
+                final boolean fromProbation = !probation.isEmpty();
+                Iterator<Entry<K, V>> iterator = (fromProbation ? probation : protectedEntries).values().iterator();
+                Entry<K, V> eldest = iterator.next();
+                iterator.remove();
+                if (fromProbation) {
+                    probationBytes -= eldest.weight;
+                } else {
+                    protectedBytes -= eldest.weight;
+                }
+
+                if (evicted == null) {
+                    evicted = new ArrayList<>();
+                }
+                evicted.add(eldest);
+            }
+            return evicted == null ? Collections.emptyList() : evicted;
+        }
+    }
+}
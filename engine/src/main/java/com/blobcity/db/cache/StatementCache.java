@@ -0,0 +1,266 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.cache;
+
+import com.blobcity.db.config.ConfigBean;
+import com.blobcity.db.config.ConfigProperties;
+import com.blobcity.db.exceptions.ErrorCode;
+import com.blobcity.db.exceptions.OperationException;
+import com.blobcity.db.sql.util.SqlText;
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.parser.FromBaseTable;
+import com.foundationdb.sql.parser.NodeFactory;
+import com.foundationdb.sql.parser.NodeTypes;
+import com.foundationdb.sql.parser.ParameterNode;
+import com.foundationdb.sql.parser.QueryTreeNode;
+import com.foundationdb.sql.parser.SQLParser;
+import com.foundationdb.sql.parser.StatementNode;
+import com.foundationdb.sql.parser.Visitable;
+import com.foundationdb.sql.parser.Visitor;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * <p>
+ * Caches parsed SQL statements by their normalized text, so that a statement run repeatedly is parsed only once.
+ * Bounded by the number of bytes configured against {@link ConfigProperties#STATEMENT_CACHE_SIZE}, defaulting to 1%
+ * of the maximum heap.
+ *
+ * <p>
+ * Cached parse trees are never handed out. Every lookup returns a copy of the cached tree, which the executors are
+ * free to modify, and with the <code>?</code> placeholders of a prepared statement bound to constants. Statements that
+ * change the schema are not cached, and statements reading a collection are dropped when the schema of the
+ * collection changes.
+ *
+ * @author sanketsarang
+ */
+@Component
+public class StatementCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatementCache.class.getName());
+    private static final double DEFAULT_HEAP_FRACTION = 0.01;
+
+    /* Approximate retained size of a parse tree per character of the statement */
+    private static final long TREE_BYTES_PER_CHAR = 48;
+
+    @Autowired
+    private ConfigBean configBean;
+
+    /* ds + normalized SQL -> parsed statement */
+    private SegmentedLruCache<String, CachedStatement> cache;
+
+    /* ds.collection -> keys of the cached statements reading the collection, used for invalidation */
+    private final Map<String, Set<String>> tableToKeyMap = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    private void init() {
+        final long maxBytes = CacheSizing.budget(ConfigProperties.STATEMENT_CACHE_SIZE,
+                configBean.getStringProperty(ConfigProperties.STATEMENT_CACHE_SIZE), DEFAULT_HEAP_FRACTION);
+        cache = new SegmentedLruCache<>(maxBytes, (key, statement) -> CacheSizing.weigh(key) + TREE_BYTES_PER_CHAR * key.length(),
+                this::onEviction);
+        logger.info("Statement cache limited to {} bytes", maxBytes);
+    }
+
+    /**
+     * Gets the parse tree of a statement, parsing the statement only if it is not already cached
+     *
+     * @param ds the datastore the statement runs against
+     * @param sql the SQL statement
+     * @return a private copy of the parse tree
+     * @throws StandardException if the statement is not valid SQL
+     * @throws OperationException if the statement has <code>?</code> placeholders
+     */
+    public StatementNode get(final String ds, final String sql) throws StandardException, OperationException {
+        return get(ds, sql, Collections.emptyList());
+    }
+
+    /**
+     * Gets the parse tree of a prepared statement with its <code>?</code> placeholders bound to the parameters,
+     * parsing the statement only if it is not already cached
+     *
+     * @param ds the datastore the statement runs against
+     * @param sql the SQL statement with <code>?</code> placeholders
+     * @param parameters values of the placeholders in order of occurrence
+     * @return a private copy of the parse tree, holding the parameters as constants
+     * @throws StandardException if the statement is not valid SQL
+     * @throws OperationException if the number of parameters does not match the number of placeholders
+     */
+    public StatementNode get(final String ds, final String sql, final List<Object> parameters) throws StandardException, OperationException {
+        final String key = ds + "\u0000" + SqlText.normalize(sql);
+        CachedStatement cachedStatement = cache.get(key);
+        if (cachedStatement == null) {
+            final SQLParser parser = new SQLParser();
+            final StatementNode stmt = parser.parseStatement(sql);
+            if (!isCacheable(stmt)) {
+                return bind(stmt, parser, parameters, parser.getParameterList().size());
+            }
+
+            cachedStatement = new CachedStatement(stmt, parser.getParameterList().size(), readTables(ds, stmt));
+            cachedStatement.tables.forEach(table -> tableToKeyMap.computeIfAbsent(table, k -> ConcurrentHashMap.newKeySet()).add(key));
+            cache.put(key, cachedStatement);
+        }
+
+        final SQLParser parser = new SQLParser();
+        final StatementNode copy = (StatementNode) parser.getNodeFactory().copyNode(cachedStatement.stmt, parser);
+        return bind(copy, parser, parameters, cachedStatement.parameterCount);
+    }
+
+    /**
+     * Drops all cached statements reading the specified collection. To be called on schema or index changes and when
+     * a collection is dropped or renamed.
+     *
+     * @param ds the datastore
+     * @param collection the collection
+     */
+    public void invalidate(final String ds, final String collection) {
+        final Set<String> keys = tableToKeyMap.remove(ds + "." + collection);
+        if (keys == null) {
+            return;
+        }
+
+        keys.forEach(key -> cache.remove(key));
+    }
+
+    public CacheStats getStats() {
+        return cache.getStats();
+    }
+
+    private void onEviction(final String key, final CachedStatement cachedStatement) {
+        cachedStatement.tables.forEach(table -> {
+            final Set<String> keys = tableToKeyMap.get(table);
+            if (keys != null) {
+                keys.remove(key);
+            }
+        });
+    }
+
+    /* Statements changing the schema run rarely, and their parse trees must not outlive the schema they change */
+    private boolean isCacheable(final StatementNode stmt) {
+        switch (stmt.getNodeType()) {
+            case NodeTypes.CREATE_TABLE_NODE:
+            case NodeTypes.ALTER_TABLE_NODE:
+            case NodeTypes.DROP_TABLE_NODE:
+            case NodeTypes.CREATE_SCHEMA_NODE:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private Set<String> readTables(final String ds, final StatementNode stmt) throws StandardException {
+        final Set<String> tables = new HashSet<>();
+        stmt.accept(new Visitor() {
+            @Override
+            public Visitable visit(final Visitable node) throws StandardException {
+                if (node instanceof FromBaseTable) {
+                    tables.add(ds + "." + ((FromBaseTable) node).getTableName().getTableName());
+                }
+                return node;
+            }
+
+            @Override
+            public boolean visitChildrenFirst(final Visitable node) {
+                return false;
+            }
+
+            @Override
+            public boolean stopTraversal() {
+                return false;
+            }
+
+            @Override
+            public boolean skipChildren(final Visitable node) {
+                return false;
+            }
+        });
+        return tables;
+    }
+
+    private StatementNode bind(final StatementNode stmt, final SQLParser parser, final List<Object> parameters, final int parameterCount) throws StandardException, OperationException {
+        if (parameters.size() != parameterCount) {
+            throw new OperationException(ErrorCode.INVALID_QUERY_PARAMETER, "Statement has " + parameterCount
+                    + " placeholders but " + parameters.size() + " parameters were provided");
+        }
+        if (parameterCount == 0) {
+            return stmt;
+        }
+
+        final NodeFactory nodeFactory = parser.getNodeFactory();
+        return (StatementNode) stmt.accept(new Visitor() {
+            @Override
+            public Visitable visit(final Visitable node) throws StandardException {
+                if (node instanceof ParameterNode) {
+                    return toConstant(nodeFactory, parser, parameters.get(((ParameterNode) node).getParameterNumber()));
+                }
+                return node;
+            }
+
+            @Override
+            public boolean visitChildrenFirst(final Visitable node) {
+                return false;
+            }
+
+            @Override
+            public boolean stopTraversal() {
+                return false;
+            }
+
+            @Override
+            public boolean skipChildren(final Visitable node) {
+                return false;
+            }
+        });
+    }
+
+    private QueryTreeNode toConstant(final NodeFactory nodeFactory, final SQLParser parser, final Object value) throws StandardException {
+        if (value == null) {
+            return nodeFactory.getNode(NodeTypes.UNTYPED_NULL_CONSTANT_NODE, parser);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return nodeFactory.getNode(NodeTypes.INT_CONSTANT_NODE, ((Number) value).intValue(), parser);
+        } else if (value instanceof Long || value instanceof BigInteger) {
+            return nodeFactory.getNode(NodeTypes.LONGINT_CONSTANT_NODE, ((Number) value).longValue(), parser);
+        } else if (value instanceof Number) {
+            return nodeFactory.getNode(NodeTypes.DOUBLE_CONSTANT_NODE, ((Number) value).doubleValue(), parser);
+        } else if (value instanceof Boolean) {
+            return nodeFactory.getNode(NodeTypes.BOOLEAN_CONSTANT_NODE, value, parser);
+        }
+        return nodeFactory.getNode(NodeTypes.CHAR_CONSTANT_NODE, value.toString(), parser);
+    }
+
+    private static class CachedStatement {
+
+        private final StatementNode stmt;
+        private final int parameterCount;
+        private final Set<String> tables;
+
+        private CachedStatement(final StatementNode stmt, final int parameterCount, final Set<String> tables) {
+            this.stmt = stmt;
+            this.parameterCount = parameterCount;
+            this.tables = tables;
+        }
+    }
+}
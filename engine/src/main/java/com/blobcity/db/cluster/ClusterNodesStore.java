@@ -18,9 +18,17 @@ package com.blobcity.db.cluster;
 
 import com.blobcity.db.config.ConfigBean;
 import com.blobcity.db.config.ConfigProperties;
+import com.blobcity.db.constants.BSql;
 import com.blobcity.db.exceptions.OperationException;
+import com.blobcity.db.processors.ProcessorExecutorService;
 
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 import javax.annotation.PostConstruct;
 
 //import com.blobcity.license.License;
@@ -29,6 +37,7 @@ import org.json.JSONArray;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 /**
@@ -42,6 +51,8 @@ public class ClusterNodesStore {
     public static String selfId = null;
     private Set<String> clusterNodes = new ConcurrentHashSet<>();
     private Set<String> onlineNodes = new ConcurrentHashSet<>();
+    private final Map<String, NodeLoad> nodeLoads = new ConcurrentHashMap<>();
+    private volatile ConsistentHashRing hashRing = new ConsistentHashRing(Collections.emptySet());
     private static ClusterNodesStore clusterBeanInstance;
     private static final Logger logger = LoggerFactory.getLogger(ClusterNodesStore.class.getName());
 
@@ -70,7 +81,9 @@ public class ClusterNodesStore {
      * @param nodeId the node-id of the node that was added to the cluster
      */
     public void notifyAddNode(final String nodeId) {
-        clusterNodes.add(nodeId);
+        if (clusterNodes.add(nodeId)) {
+            rebuildHashRing();
+        }
     }
 
     /**
@@ -80,7 +93,10 @@ public class ClusterNodesStore {
      * @param nodeId the node-id of the node that was removed from the cluster
      */
     public void notifyRemoveNode(final String nodeId) {
-        clusterNodes.remove(nodeId);
+        if (clusterNodes.remove(nodeId)) {
+            nodeLoads.remove(nodeId);
+            rebuildHashRing();
+        }
     }
 
     public boolean hasNode(String nodeId) throws OperationException {
@@ -108,13 +124,66 @@ public class ClusterNodesStore {
             return Collections.unmodifiableSet(clusterNodes);
         }
 
-        //TODO: For no replication, improve to send data to least loaded nodes than sending to self node
-        if(replicationFactor == 0) {
-            return new HashSet<>(Arrays.asList(getSelfId()));
+        return clusterNodes.stream()
+                .sorted(Comparator.comparingDouble(this::getLoadScore))
+                .limit(replicationFactor + 1)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * Gets the nodes that own the replicas of the specified key as per the consistent hash ring of the cluster
+     * @param key the key to be placed, typically the primary key of a record
+     * @param replicationFactor the replication factor. 0 means no replication, and -1 means full replication for
+     *                          mirrored type collections
+     * @return an ordered {@link Set} of node-id's owning the key, first being the primary owner
+     */
+    public Set<String> getReplicaNodes(final String key, final int replicationFactor) {
+        if(replicationFactor == -1) {
+            return Collections.unmodifiableSet(clusterNodes);
         }
 
-        //TODO: implement the load factor based return of nodes
-        throw new UnsupportedOperationException("not supported yet.");
+        return hashRing.getNodes(key, replicationFactor + 1);
+    }
+
+    public void updateNodeLoad(final String nodeId, final NodeLoad nodeLoad) {
+        nodeLoads.put(nodeId, nodeLoad);
+    }
+
+    public NodeLoad getNodeLoad(final String nodeId) {
+        return nodeLoads.get(nodeId);
+    }
+
+    /**
+     * Gets the load score of a node. Nodes with no known load are treated as idle so that they receive data.
+     */
+    private double getLoadScore(final String nodeId) {
+        NodeLoad nodeLoad = nodeLoads.get(nodeId);
+        return nodeLoad == null ? 0 : nodeLoad.score();
+    }
+
+    /**
+     * Samples the load on the current node
+     */
+    @Scheduled(fixedRate = 1000)
+    private void sampleSelfLoad() {
+        if (selfId == null) {
+            return;
+        }
+
+        long free = 0;
+        long total = 0;
+        try {
+            FileStore fileStore = Files.getFileStore(Paths.get(BSql.BSQL_BASE_FOLDER));
+            free = fileStore.getUsableSpace();
+            total = fileStore.getTotalSpace();
+        } catch (IOException ex) {
+            logger.debug("Unable to read disk usage of " + BSql.BSQL_BASE_FOLDER, ex);
+        }
+        nodeLoads.put(selfId, new NodeLoad(free, total, ProcessorExecutorService.getInstance().getQueueDepth()));
+    }
+
+    private void rebuildHashRing() {
+        hashRing = new ConsistentHashRing(new ArrayList<>(clusterNodes));
     }
 
     private void loadClusterNodes() {
@@ -141,5 +210,7 @@ public class ClusterNodesStore {
             clusterNodes.add(selfNodeId);
             this.selfId = selfNodeId;
         }
+
+        rebuildHashRing();
     }
 }
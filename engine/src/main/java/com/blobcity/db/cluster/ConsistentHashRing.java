@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Immutable consistent hash ring over the nodes of the cluster. Every node is placed on the ring at
+ * {@link #VIRTUAL_NODES} points so that keys spread evenly, and adding or removing a node only moves the keys adjacent
+ * to its points. The replicas of a key are the first distinct nodes found walking the ring clockwise from the hash of
+ * the key.
+ *
+ * @author sanketsarang
+ */
+public class ConsistentHashRing {
+
+    private static final int VIRTUAL_NODES = 128;
+
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+    private final int nodeCount;
+
+    public ConsistentHashRing(final Collection<String> nodeIds) {
+        for (String nodeId : nodeIds) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                ring.put(hash(nodeId + "#" + i), nodeId);
+            }
+        }
+        this.nodeCount = nodeIds.size();
+    }
+
+    /**
+     * Gets the nodes holding the replicas of a key
+     *
+     * @param key the key, typically the primary key of a record
+     * @param replicas number of replicas required
+     * @return the ordered set of nodes holding the key, first being the primary owner. Holds fewer nodes than requested
+     * if the cluster has fewer nodes
+     */
+    public Set<String> getNodes(final String key, final int replicas) {
+        if (ring.isEmpty() || replicas <= 0) {
+            return Collections.emptySet();
+        }
+
+        final int required = Math.min(replicas, nodeCount);
+        final Set<String> nodes = new LinkedHashSet<>(required);
+        final long hash = hash(key);
+        for (Map.Entry<Long, String> entry : ring.tailMap(hash, true).entrySet()) {
+            nodes.add(entry.getValue());
+            if (nodes.size() == required) {
+                return nodes;
+            }
+        }
+        for (Map.Entry<Long, String> entry : ring.headMap(hash, false).entrySet()) {
+            nodes.add(entry.getValue());
+            if (nodes.size() == required) {
+                return nodes;
+            }
+        }
+        return nodes;
+    }
+
+    public List<String> getNodeIds() {
+        return new ArrayList<>(new LinkedHashSet<>(ring.values()));
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the UTF-8 bytes of the key, followed by the MurmurHash3 finalizer to spread the
+     * similar keys across the ring
+     */
+    static long hash(final String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.cluster;
+
+import org.json.JSONObject;
+
+/**
+ * Point in time load sample of a node, used for load aware data placement. Samples of remote nodes arrive piggybacked
+ * on their responses to the master.
+ *
+ * @author sanketsarang
+ */
+public class NodeLoad {
+
+    /* Weight of a fully used disk relative to a single queued request in the load score */
+    private static final double DISK_WEIGHT = 100;
+    private static final long STALE_AFTER = 30000; //in milli-seconds
+
+    private static final String DISK_FREE = "disk-free";
+    private static final String DISK_TOTAL = "disk-total";
+    private static final String QUEUE_DEPTH = "queue-depth";
+
+    private final long diskFreeBytes;
+    private final long diskTotalBytes;
+    private final int queueDepth;
+    private final long sampledAt;
+
+    public NodeLoad(final long diskFreeBytes, final long diskTotalBytes, final int queueDepth) {
+        this(diskFreeBytes, diskTotalBytes, queueDepth, System.currentTimeMillis());
+    }
+
+    private NodeLoad(final long diskFreeBytes, final long diskTotalBytes, final int queueDepth, final long sampledAt) {
+        this.diskFreeBytes = diskFreeBytes;
+        this.diskTotalBytes = diskTotalBytes;
+        this.queueDepth = queueDepth;
+        this.sampledAt = sampledAt;
+    }
+
+    public long getDiskFreeBytes() {
+        return diskFreeBytes;
+    }
+
+    public long getDiskTotalBytes() {
+        return diskTotalBytes;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public boolean isStale() {
+        return System.currentTimeMillis() - sampledAt > STALE_AFTER;
+    }
+
+    /**
+     * Load score of the node, lower being less loaded. Combines the number of requests queued on the node with the
+     * fraction of its disk in use. Stale samples only contribute their disk usage as the queue may have drained.
+     *
+     * @return the load score
+     */
+    public double score() {
+        final double diskUsed = diskTotalBytes <= 0 ? 0 : 1 - ((double) diskFreeBytes / diskTotalBytes);
+        return (isStale() ? 0 : queueDepth) + DISK_WEIGHT * diskUsed;
+    }
+
+    public JSONObject toJson() {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put(DISK_FREE, diskFreeBytes);
+        jsonObject.put(DISK_TOTAL, diskTotalBytes);
+        jsonObject.put(QUEUE_DEPTH, queueDepth);
+        return jsonObject;
+    }
+
+    public static NodeLoad fromJson(final JSONObject jsonObject) {
+        return new NodeLoad(jsonObject.getLong(DISK_FREE), jsonObject.getLong(DISK_TOTAL), jsonObject.getInt(QUEUE_DEPTH));
+    }
+}
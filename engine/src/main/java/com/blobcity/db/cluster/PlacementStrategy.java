@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.cluster;
+
+/**
+ * Decides on which nodes of the cluster the records of distributed collections are stored. Configured through the
+ * <code>data-placement</code> property of the node config.
+ *
+ * @author sanketsarang
+ */
+public enum PlacementStrategy {
+
+    /**
+     * Each record is stored on the nodes that own its primary key on the consistent hash ring, so reads by primary key
+     * can be routed to the owning nodes only.
+     */
+    HASH("hash"),
+
+    /**
+     * All records of an insert are stored on the currently least loaded nodes, as per their queue depth and disk
+     * usage. Records can then be located only by querying every node.
+     */
+    LOAD("load");
+
+    private final String text;
+
+    PlacementStrategy(final String text) {
+        this.text = text;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Gets the placement strategy for the configured text
+     *
+     * @param text the configured value
+     * @return the matching strategy; {@link #HASH} if the value is missing or not recognised
+     */
+    public static PlacementStrategy fromString(final String text) {
+        if (text == null) {
+            return HASH;
+        }
+
+        for (PlacementStrategy strategy : values()) {
+            if (strategy.text.equalsIgnoreCase(text)) {
+                return strategy;
+            }
+        }
+
+        return HASH;
+    }
+}
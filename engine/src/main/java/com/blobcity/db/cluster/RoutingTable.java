@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.cluster;
+
+import com.blobcity.db.config.ConfigBean;
+import com.blobcity.db.config.ConfigProperties;
+import com.blobcity.db.exceptions.OperationException;
+import com.blobcity.db.schema.beans.SchemaStore;
+import com.blobcity.lib.data.Record;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Maps records of a collection to the nodes that store them. Writes use it to place records as per the configured
+ * {@link PlacementStrategy}.
+ *
+ * @author sanketsarang
+ */
+@Component
+public class RoutingTable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoutingTable.class.getName());
+
+    @Autowired @Lazy
+    private ClusterNodesStore clusterNodesStore;
+    @Autowired
+    private ConfigBean configBean;
+
+    private PlacementStrategy placementStrategy = PlacementStrategy.HASH;
+
+    @PostConstruct
+    private void init() {
+        placementStrategy = PlacementStrategy.fromString(configBean.getStringProperty(ConfigProperties.DATA_PLACEMENT));
+        logger.info("Data placement strategy is {}", placementStrategy.getText());
+    }
+
+    public PlacementStrategy getPlacementStrategy() {
+        return placementStrategy;
+    }
+
+    /**
+     * Decides the nodes on which each of the records is to be stored
+     *
+     * @param ds name of datastore
+     * @param collection name of collection
+     * @param records the records to be placed
+     * @return map of node-id to the records to be stored on that node, in the order of the passed records
+     * @throws OperationException if the schema of the collection cannot be read
+     */
+    public Map<String, List<Record>> place(final String ds, final String collection, final List<Record> records) throws OperationException {
+        final int replicationFactor = SchemaStore.getInstance().getReplicationFactor(ds, collection);
+        final Map<String, List<Record>> placement = new LinkedHashMap<>();
+
+        if (placementStrategy == PlacementStrategy.LOAD || replicationFactor == -1) {
+            for (String nodeId : clusterNodesStore.getLeastLoadedNodes(replicationFactor)) {
+                placement.put(nodeId, records);
+            }
+            return placement;
+        }
+
+        for (Record record : records) {
+            for (String nodeId : clusterNodesStore.getReplicaNodes(record.getId(), replicationFactor)) {
+                placement.computeIfAbsent(nodeId, id -> new ArrayList<>()).add(record);
+            }
+        }
+        return placement;
+    }
+}
@@ -22,27 +22,65 @@ import com.blobcity.db.exceptions.OperationException;
 import com.blobcity.db.processors.ProcessHandler;
 import com.blobcity.db.processors.ProcessorExecutorService;
 import com.blobcity.lib.query.Query;
-import com.blobcity.util.json.JsonMessages;
 import java.io.IOException;
-import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Represents a single cluster connection, connecting two nodes
+ * Represents a single cluster connection, connecting two nodes. A single non-blocking connection is held per remote
+ * node and all requests to that node are multiplexed over it as {@link Frames}.
+ *
+ * Senders encode their message on the calling thread and queue it; the {@link ClusterTransport} event loop then
+ * writes queued messages round-robin one frame at a time, gathering as many frames as fit into a single write. Senders
+ * block once more than {@link #MAX_PENDING_BYTES} are queued on the connection, which bounds memory when a remote node
+ * reads slower than it is written to.
  *
  * @author sanketsarang
  */
-public class ClusterConnection extends TcpConnectionClient {
+public class ClusterConnection {
 
     private static final Logger logger = LoggerFactory.getLogger(ClusterConnection.class.getName());
+    private static final long MAX_PENDING_BYTES = 64L * 1024 * 1024;
+    private static final long SEND_TIMEOUT = 30; //in seconds
+    private static final int MAX_GATHERED_BYTES = 256 * 1024;
 
+    private final SocketChannel channel;
+    private final ClusterTransport transport;
     private final String selfNodeId;
-    private final String remoteNodeId;
+    private volatile String remoteNodeId;
+    private SelectionKey selectionKey;
+
+    /* Outbound state. The queue is filled by senders; everything else is only touched by the event loop */
+    private final Queue<OutboundMessage> outbound = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock pendingLock = new ReentrantLock();
+    private final Condition pendingReleased = pendingLock.newCondition();
+    private long pendingBytes = 0;
+    private int nextStreamId = 1;
+    private ByteBuffer[] inFlight = null;
+    private long inFlightPayloadBytes = 0;
+
+    /* Inbound state, only touched by the event loop */
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(Frames.HEADER_SIZE + Frames.MAX_FRAME_PAYLOAD);
+    private final FrameAssembler assembler = new FrameAssembler();
 
-    public ClusterConnection(Socket socket, String selfNodeId, String remoteNodeId) {
-        super(socket);
+    private volatile boolean closed = false;
+    private boolean probe = false;
+
+    ClusterConnection(final SocketChannel channel, final ClusterTransport transport, final String selfNodeId, final String remoteNodeId) {
+        this.channel = channel;
+        this.transport = transport;
         this.selfNodeId = selfNodeId;
         this.remoteNodeId = remoteNodeId;
     }
@@ -55,60 +93,258 @@ public class ClusterConnection extends TcpConnectionClient {
         return remoteNodeId;
     }
 
-    public void sendMessage(final String requestId, final String type, final JSONObject payloadJson) throws OperationException {
-        try {
-            writeMessage(JsonMessages.clusterCommandRequestMessage(requestId, selfNodeId, type, payloadJson).toString());
-        } catch (IOException ex) {
-            logger.error("Cluster communication error", ex);
-            throw new OperationException(ErrorCode.CLUSTER_CONNECTION_ERROR);
+    public boolean isConnected() {
+        return !closed && channel.isConnected();
+    }
+
+    public void disconnect() throws IOException {
+        close();
+    }
+
+    public void sendMessage(final Query query) throws OperationException {
+        enqueue(Frames.QUERY, QueryCodec.encode(query));
+    }
+
+    public void sendMessage(final Message message) throws OperationException {
+        enqueue(Frames.TEXT, message.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void enqueue(final byte type, final byte[] payload) throws OperationException {
+        if (closed) {
+            throw new OperationException(ErrorCode.CLUSTER_CONNECTION_ERROR, "Cluster connection to " + remoteNodeId + " is closed");
+        }
+        if (payload.length > Frames.MAX_MESSAGE_SIZE) {
+            throw new OperationException(ErrorCode.CLUSTER_CONNECTION_ERROR, "Message of " + payload.length
+                    + " bytes exceeds the maximum of " + Frames.MAX_MESSAGE_SIZE + " bytes for node " + remoteNodeId);
         }
+
+        awaitCapacity(payload.length);
+        outbound.add(new OutboundMessage(type, payload));
+        transport.requestWrite(this);
     }
 
-    public void sendMessage(Message message) throws OperationException {
+    private void awaitCapacity(final int bytes) throws OperationException {
+        pendingLock.lock();
         try {
-            writeMessage(message.toString());
-        } catch (IOException ex) {
-            logger.error("Cluster communication error", ex);
-            throw new OperationException(ErrorCode.CLUSTER_CONNECTION_ERROR);
+            long nanos = TimeUnit.SECONDS.toNanos(SEND_TIMEOUT);
+            while (pendingBytes > 0 && pendingBytes + bytes > MAX_PENDING_BYTES && !closed) {
+                if (nanos <= 0) {
+                    throw new OperationException(ErrorCode.CLUSTER_CONNECTION_ERROR, "Timed out waiting to send to node " + remoteNodeId);
+                }
+                nanos = pendingReleased.awaitNanos(nanos);
+            }
+            pendingBytes += bytes;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new OperationException(ErrorCode.CLUSTER_CONNECTION_ERROR, "Interrupted while sending to node " + remoteNodeId);
+        } finally {
+            pendingLock.unlock();
         }
     }
 
-    public void sendSuccessMessage(final String requestId, final String type) throws OperationException {
+    private void releaseCapacity(final long bytes) {
+        pendingLock.lock();
         try {
-            writeMessage(JsonMessages.clusterCommandResponseAck(requestId, selfNodeId, type, true).toString());
-        } catch (IOException ex) {
-            logger.error("Cluster communication error", ex);
-            throw new OperationException(ErrorCode.CLUSTER_CONNECTION_ERROR);
+            pendingBytes -= bytes;
+            pendingReleased.signalAll();
+        } finally {
+            pendingLock.unlock();
         }
     }
 
-    public void sendFailureMessage(final String requestId, final String type) throws OperationException {
-        try {
-            writeMessage(JsonMessages.clusterCommandResponseAck(requestId, selfNodeId, type, false).toString());
-        } catch (IOException ex) {
-            logger.error("Cluster communication error", ex);
-            throw new OperationException(ErrorCode.CLUSTER_CONNECTION_ERROR);
+    SocketChannel channel() {
+        return channel;
+    }
+
+    void setSelectionKey(final SelectionKey selectionKey) {
+        this.selectionKey = selectionKey;
+    }
+
+    boolean hasPendingWrites() {
+        return inFlight != null || !outbound.isEmpty();
+    }
+
+    /**
+     * Called by the event loop when the channel is writable. Writes the frames in flight and keeps gathering new frames
+     * until the socket buffer is full or nothing is left to write.
+     *
+     * @throws IOException if the write fails
+     */
+    void onWritable() throws IOException {
+        while (true) {
+            if (inFlight == null && !gatherFrames()) {
+                selectionKey.interestOps(selectionKey.interestOps() & ~SelectionKey.OP_WRITE);
+
+                /* A sender may have queued a message after the last gather */
+                if (!outbound.isEmpty()) {
+                    selectionKey.interestOps(selectionKey.interestOps() | SelectionKey.OP_WRITE);
+                }
+                return;
+            }
+
+            channel.write(inFlight);
+            if (inFlight[inFlight.length - 1].hasRemaining()) {
+                return; //socket buffer full, wait till writable again
+            }
+
+            inFlight = null;
+            releaseCapacity(inFlightPayloadBytes);
+        }
+    }
+
+    /**
+     * Takes one frame from each queued message in turn until {@link #MAX_GATHERED_BYTES} are gathered. Messages that
+     * are not fully framed go back to the tail of the queue.
+     *
+     * @return <code>true</code> if any frame was gathered; <code>false</code> if nothing is queued
+     */
+    private boolean gatherFrames() {
+        List<ByteBuffer> buffers = new ArrayList<>();
+        List<OutboundMessage> unfinished = new ArrayList<>();
+        long gathered = 0;
+        long payloadBytes = 0;
+        OutboundMessage message;
+        while (gathered < MAX_GATHERED_BYTES && (message = outbound.poll()) != null) {
+            if (message.streamId == 0) {
+                message.streamId = nextStreamId++;
+                if (nextStreamId == Integer.MAX_VALUE) {
+                    nextStreamId = 1;
+                }
+            }
+
+            final int length = Math.min(Frames.MAX_FRAME_PAYLOAD, message.payload.length - message.offset);
+            final boolean end = message.offset + length == message.payload.length;
+            buffers.add(Frames.header(length, message.streamId, message.type, end ? Frames.FLAG_END : 0));
+            buffers.add(ByteBuffer.wrap(message.payload, message.offset, length));
+            message.offset += length;
+            gathered += Frames.HEADER_SIZE + length;
+            if (end) {
+                payloadBytes += message.payload.length;
+            } else {
+                unfinished.add(message);
+            }
         }
+        outbound.addAll(unfinished);
+
+        if (buffers.isEmpty()) {
+            return false;
+        }
+
+        inFlight = buffers.toArray(new ByteBuffer[buffers.size()]);
+        inFlightPayloadBytes = payloadBytes;
+        return true;
     }
 
     /**
-     * Method is called when a new message is received from the remote node
+     * Called by the event loop when the channel is readable. Reads all complete frames available and dispatches
+     * completed messages for processing.
      *
-     * @param message the received message
+     * @throws IOException if the read fails or the remote node violates the frame format
      */
-    @Override
-    protected void processMessage(String message) {
+    void onReadable() throws IOException {
+        final int read = channel.read(readBuffer);
+        if (read < 0) {
+            throw new IOException("Cluster connection closed by remote node " + remoteNodeId);
+        }
 
-        ProcessHandler processHandler = new ProcessHandler(remoteNodeId, new Query(new JSONObject(message)));
-        ProcessorExecutorService.getInstance().submit(processHandler);
+        readBuffer.flip();
+        assembler.read(readBuffer, this::onMessage);
+        readBuffer.compact();
+    }
 
+    private void onMessage(final byte type, final byte flags, final byte[] payload) throws IOException {
+        switch (type) {
+            case Frames.HANDSHAKE:
+                onHandshake(new String(payload, StandardCharsets.UTF_8), (flags & Frames.FLAG_PROBE) != 0);
+                break;
+            case Frames.QUERY:
+            case Frames.TEXT:
+                if (remoteNodeId == null) {
+                    throw new IOException("Cluster message received before handshake");
+                }
+                if (probe) {
+                    throw new IOException("Cluster message received on probe connection from node " + remoteNodeId);
+                }
+                dispatch(type, payload);
+                break;
+            default:
+                logger.warn("Ignoring frame of unknown type {} from node {}", type, remoteNodeId);
+        }
+    }
 
-//        RequestProcessor requestExecutor = applicationContext.getBean(RequestProcessor.class);
-//        try {
-//            requestExecutor.processMessage(message);
-//            return JsonMessages.SUCCESS_ACKNOWLEDGEMENT;
-//        } catch (OperationException ex) {
-//            return JsonMessages.ERROR_ACKNOWLEDGEMENT;
-//        }
+    /**
+     * Handshake received on a connection accepted from a remote node. Identifies the remote node and replies with the
+     * node id of this node. A probe connection is answered but not made available for sending, as the remote node
+     * closes it right after the handshake.
+     */
+    private void onHandshake(final String nodeId, final boolean probe) throws IOException {
+        if (remoteNodeId != null) {
+            throw new IOException("Duplicate handshake received from node " + remoteNodeId);
+        }
+
+        remoteNodeId = nodeId;
+        this.probe = probe;
+        try {
+            enqueue(Frames.HANDSHAKE, selfNodeId.getBytes(StandardCharsets.UTF_8));
+        } catch (OperationException ex) {
+            throw new IOException(ex.getMessage());
+        }
+        if (!probe) {
+            transport.onConnected(this);
+        }
+    }
+
+    /**
+     * Decodes and processes a message off the event loop
+     */
+    private void dispatch(final byte type, final byte[] payload) {
+        final String nodeId = remoteNodeId;
+        ProcessorExecutorService.getInstance().submit(() -> {
+            try {
+                final Query query = type == Frames.QUERY ? QueryCodec.decode(payload)
+                        : new Query(new JSONObject(new String(payload, StandardCharsets.UTF_8)));
+                new ProcessHandler(nodeId, query).run();
+            } catch (OperationException ex) {
+                logger.error("Discarding malformed message from node " + nodeId, ex);
+            }
+        });
+    }
+
+    /**
+     * Closes the connection and fails any sender waiting for queue capacity
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            logger.debug("Error closing cluster connection to " + remoteNodeId, ex);
+        }
+
+        outbound.clear();
+        pendingLock.lock();
+        try {
+            pendingReleased.signalAll();
+        } finally {
+            pendingLock.unlock();
+        }
+        transport.onClosed(this);
+    }
+
+    private static class OutboundMessage {
+
+        private final byte type;
+        private final byte[] payload;
+        private int streamId = 0;
+        private int offset = 0;
+
+        private OutboundMessage(final byte type, final byte[] payload) {
+            this.type = type;
+            this.payload = payload;
+        }
     }
 }
@@ -0,0 +1,229 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.cluster.connection;
+
+import com.blobcity.db.cluster.ClusterNodesStore;
+import com.blobcity.db.constants.ClusterConstants;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Non-blocking transport for inter node communication. A single event loop thread accepts connections on the cluster
+ * port and performs all reads and writes of every {@link ClusterConnection} of this node. Received messages are
+ * decoded and processed on the processor pool, never on the event loop.
+ *
+ * @author sanketsarang
+ */
+@Component
+public class ClusterTransport implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterTransport.class.getName());
+
+    @Autowired @Lazy
+    private ClusterNodesStore clusterNodesStore;
+    @Autowired
+    private ConnectionStore connectionStore;
+
+    private final Queue<ClusterConnection> pendingRegistrations = new ConcurrentLinkedQueue<>();
+    private final Queue<ClusterConnection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread eventLoop;
+    private volatile boolean running = false;
+
+    @PostConstruct
+    private void init() throws IOException {
+        selector = Selector.open();
+        try {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.configureBlocking(false);
+            serverChannel.bind(new InetSocketAddress(ClusterConstants.CLUSTER_PORT));
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException ex) {
+            logger.error("Unable to listen for cluster connections on port " + ClusterConstants.CLUSTER_PORT, ex);
+            serverChannel = null;
+        }
+
+        running = true;
+        eventLoop = new Thread(this, "cluster-transport");
+        eventLoop.setDaemon(true);
+        eventLoop.start();
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        running = false;
+        selector.wakeup();
+        try {
+            eventLoop.join(1000);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hands over a connected channel whose handshake has completed to the event loop
+     *
+     * @param channel the connected channel
+     * @param remoteNodeId node id of the remote node, as received in its handshake
+     * @return the registered connection
+     * @throws IOException if the channel cannot be switched to non-blocking mode
+     */
+    public ClusterConnection register(final SocketChannel channel, final String remoteNodeId) throws IOException {
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        ClusterConnection connection = new ClusterConnection(channel, this, clusterNodesStore.getSelfId(), remoteNodeId);
+        pendingRegistrations.add(connection);
+        selector.wakeup();
+        onConnected(connection);
+        return connection;
+    }
+
+    void requestWrite(final ClusterConnection connection) {
+        pendingWrites.add(connection);
+        selector.wakeup();
+    }
+
+    void onConnected(final ClusterConnection connection) {
+        logger.info("Cluster connection established with node {}", connection.getRemoteNodeId());
+        connectionStore.addConnection(connection.getRemoteNodeId(), connection);
+    }
+
+    void onClosed(final ClusterConnection connection) {
+        if (connection.getRemoteNodeId() != null) {
+            logger.info("Cluster connection closed with node {}", connection.getRemoteNodeId());
+            connectionStore.removeConnection(connection.getRemoteNodeId(), connection);
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select();
+                registerPending();
+                Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    handle(key);
+                }
+            } catch (ClosedSelectorException ex) {
+                break;
+            } catch (IOException ex) {
+                logger.error("Cluster transport event loop error", ex);
+            }
+        }
+
+        closeAll();
+    }
+
+    private void registerPending() throws IOException {
+        ClusterConnection connection;
+        while ((connection = pendingRegistrations.poll()) != null) {
+            connection.setSelectionKey(connection.channel().register(selector, SelectionKey.OP_READ, connection));
+            if (connection.hasPendingWrites()) {
+                pendingWrites.add(connection);
+            }
+        }
+
+        while ((connection = pendingWrites.poll()) != null) {
+            SelectionKey key = connection.channel().keyFor(selector);
+            if (key == null) {
+                continue; //not registered yet, handled on registration
+            }
+            if (key.isValid()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    private void handle(final SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+
+        ClusterConnection connection = (ClusterConnection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                connection.onReadable();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.onWritable();
+            }
+        } catch (IOException | RuntimeException ex) {
+            logger.warn("Dropping cluster connection with node " + connection.getRemoteNodeId() + ": " + ex.getMessage());
+            connection.close();
+        }
+    }
+
+    /**
+     * Accepts a connection from a remote node. The connection is identified once the handshake frame of the remote
+     * node is received.
+     */
+    private void accept() {
+        try {
+            SocketChannel channel = serverChannel.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            ClusterConnection connection = new ClusterConnection(channel, this, clusterNodesStore.getSelfId(), null);
+            connection.setSelectionKey(channel.register(selector, SelectionKey.OP_READ, connection));
+        } catch (IOException ex) {
+            logger.error("Failed to accept cluster connection", ex);
+        }
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof ClusterConnection) {
+                ((ClusterConnection) key.attachment()).close();
+            }
+        }
+        try {
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+            selector.close();
+        } catch (IOException ex) {
+            logger.debug("Error closing cluster transport", ex);
+        }
+    }
+}
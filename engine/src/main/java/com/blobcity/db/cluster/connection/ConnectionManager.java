@@ -17,20 +17,13 @@
 package com.blobcity.db.cluster.connection;
 
 import com.blobcity.db.cluster.ClusterNodesStore;
-import com.blobcity.db.cluster.messaging.messages.Message;
-import com.blobcity.db.cluster.messaging.messages.NodeConnectionHeaderMessage;
 import com.blobcity.db.constants.ClusterConstants;
 import com.blobcity.db.exceptions.OperationException;
 import com.blobcity.db.startup.StorageStartup;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.net.InetSocketAddress;
-import java.net.Socket;
-import java.net.SocketAddress;
 import java.net.SocketTimeoutException;
+import java.nio.channels.SocketChannel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -52,56 +45,42 @@ public class ConnectionManager {
     private ClusterNodesStore clusterNodesStore;
     @Autowired
     private ConnectionStore connectionStore;
+    @Autowired
+    private ClusterTransport clusterTransport;
 
     public boolean validateConnection(final String nodeId, final String ipAddress) throws OperationException {
         logger.info("Validating connection to " + nodeId + " at ip " + ipAddress);
 
-        Socket socket = null;
+        SocketChannel channel = null;
         try {
             try {
-                socket = connect(ipAddress, ClusterConstants.CLUSTER_PORT);
+                channel = connect(ipAddress, ClusterConstants.CLUSTER_PORT);
             } catch (IOException ex) {
                 logger.error("Failed to open cluster connection to ip " + ipAddress + " on port " + ClusterConstants.CLUSTER_PORT);
                 return false;
             }
 
-            /* Write nodeId of the self node so that the remote node understands who is connecting */
-            final String selfNodeId = clusterNodesStore.getSelfId();
+            /* Read nodeId of remote node and ensure that is same as the node to which the connection is being opened */
+            final String remoteNodeId;
             try {
-                writeConnectionHeader(socket, selfNodeId);
+                remoteNodeId = handshake(channel, true);
             } catch (IOException ex) {
-                logger.error("Error writing connect-node command on connection to ip " + ipAddress + " on port "
+                logger.error("Error in connect-node handshake on connection to ip " + ipAddress + " on port "
                         + ClusterConstants.CLUSTER_PORT + ". The connection will now be closed.");
                 return false;
             }
 
-            /* Read nodeId of remote node and ensure that is same as the node to which the connection is being opened */
-            final String remoteNodeId;
-            try {
-                remoteNodeId = readConnectionHeader(socket);
-
-                /* If actual connected node id does not match expected node id, then the connection must be disconnected */
-                if (!nodeId.equals(remoteNodeId)) {
-                    logger.error("Cluster connection validation established to incorrect node or the node ip addresses "
-                            + "has changed. Expected node id " + nodeId + " at ip " + ipAddress + " but node with nodeId "
-                            + remoteNodeId + " found. The connection will be disconnected.");
-                    return false;
-                }
-            } catch (IOException ex) {
-                logger.error("Error reading connect-node command on connection to ip " + ipAddress + " on port "
-                        + ClusterConstants.CLUSTER_PORT + ". The connection will now be closed.");
+            /* If actual connected node id does not match expected node id, then the connection must be disconnected */
+            if (!nodeId.equals(remoteNodeId)) {
+                logger.error("Cluster connection validation established to incorrect node or the node ip addresses "
+                        + "has changed. Expected node id " + nodeId + " at ip " + ipAddress + " but node with nodeId "
+                        + remoteNodeId + " found. The connection will be disconnected.");
                 return false;
             }
 
             return true;
         } finally {
-            if (socket != null && socket.isConnected()) {
-                try {
-                    socket.close();
-                } catch (IOException ex) {
-                    logger.error(ex.getMessage());
-                }
-            }
+            close(channel);
         }
     }
 
@@ -109,119 +88,96 @@ public class ConnectionManager {
     public void connect(final String nodeId, final String ipAddress) throws OperationException {
         logger.info("Attempting connection to " + nodeId + " at ip " + ipAddress);
 
-        Socket socket = null;
-        try {
-            socket = connect(ipAddress, ClusterConstants.CLUSTER_PORT);
-        } catch (IOException ex) {
-            if (socket != null && socket.isConnected()) {
-                try {
-                    socket.close();
-                } catch (IOException ex1) {
-                    //do nothing
-                }
-            }
-            logger.error("Failed to open cluster connection to ip " + ipAddress + " on port " + ClusterConstants.CLUSTER_PORT);
+        if (connectionStore.getConnection(nodeId) != null) {
+            logger.info("Cluster connection to " + nodeId + " is already open");
             return;
         }
 
-        /* Write nodeId of the self node so that the remote node understands who is connecting */
-        final String selfNodeId = clusterNodesStore.getSelfId();
+        SocketChannel channel;
         try {
-            writeConnectionHeader(socket, selfNodeId);
+            channel = connect(ipAddress, ClusterConstants.CLUSTER_PORT);
         } catch (IOException ex) {
-            logger.error("Error writing connect-node command on connection to ip " + ipAddress + " on port "
-                    + ClusterConstants.CLUSTER_PORT + ". The connection will now be closed.");
-            try {
-                socket.close();
-            } catch (IOException ex1) {
-                logger.error(ex1.getMessage(), ex1);
-            }
+            logger.error("Failed to open cluster connection to ip " + ipAddress + " on port " + ClusterConstants.CLUSTER_PORT);
             return;
         }
 
-        /* Read nodeId of remote node and ensure that is same as the node to which the connection is being opened */
+        /* Exchange node ids so that both nodes understand who is connected */
         final String remoteNodeId;
         try {
-            remoteNodeId = readConnectionHeader(socket);
-
-            /* If actual connected node id does not match expected node id, then the connection must be disconnected */
-            if (!nodeId.equals(remoteNodeId)) {
-                logger.error("Cluster connection established to incorrect node or the node ip addresses has changed. "
-                        + "Expected node id " + nodeId + " at ip " + ipAddress + " but node with nodeId "
-                        + remoteNodeId + " found. The connection will be disconnected.");
-                try {
-                    socket.close();
-                } catch (IOException ex) {
-                    logger.error(ex.getMessage(), ex);
-                }
-            }
+            remoteNodeId = handshake(channel, false);
         } catch (IOException ex) {
-            logger.error("Error reading connect-node command on connection to ip " + ipAddress + " on port "
+            logger.error("Error in connect-node handshake on connection to ip " + ipAddress + " on port "
                     + ClusterConstants.CLUSTER_PORT + ". The connection will now be closed.");
-            try {
-                socket.close();
-            } catch (IOException ex1) {
-                logger.error(ex1.getMessage(), ex1);
-            }
+            close(channel);
             return;
         }
 
-        /* Create a new connection pool */
-        for (int i = 0; i < ClusterConstants.DEFAULT_CONNECTION_POOL; i++) {
-            ClusterConnection clusterConnection = new ClusterConnection(socket, selfNodeId, remoteNodeId);
-            connectionStore.addConnection(remoteNodeId, clusterConnection);
+        /* If actual connected node id does not match expected node id, then the connection must be disconnected */
+        if (!nodeId.equals(remoteNodeId)) {
+            logger.error("Cluster connection established to incorrect node or the node ip addresses has changed. "
+                    + "Expected node id " + nodeId + " at ip " + ipAddress + " but node with nodeId "
+                    + remoteNodeId + " found. The connection will be disconnected.");
+            close(channel);
+            return;
+        }
+
+        /* A single connection is sufficient as all requests to the node are multiplexed over it */
+        try {
+            clusterTransport.register(channel, remoteNodeId);
+        } catch (IOException ex) {
+            logger.error("Failed to register cluster connection to ip " + ipAddress, ex);
+            close(channel);
+            return;
         }
 
         logger.info("Cluster connection successfully opened to ip " + ipAddress + " on port " + ClusterConstants.CLUSTER_PORT);
     }
 
     /**
-     * Opens a new socket connection on the specified IP address on the specified port. This function is a blocking call
-     * until the connection is established.
+     * Opens a new channel to the specified IP address on the specified port. This function is a blocking call until
+     * the connection is established.
      *
      * @param ipAddress the IP address to connect to
      * @param port the port on which the socket is to be opened
-     * @return a connected instance of {@link Socket}
+     * @return a connected {@link SocketChannel} in blocking mode
      * @throws IOException if an error occurs during the connection
      * @throws SocketTimeoutException if timeout occurs before the connection is set
      */
-    private Socket connect(final String ipAddress, final int port) throws IOException, SocketTimeoutException {
-        Socket socket = new Socket();
-        SocketAddress socketAddress = new InetSocketAddress(ipAddress, port);
-        socket.connect(socketAddress, CONNECTION_TIMEOUT);
-        return socket;
+    private SocketChannel connect(final String ipAddress, final int port) throws IOException, SocketTimeoutException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.socket().connect(new InetSocketAddress(ipAddress, port), CONNECTION_TIMEOUT);
+            channel.socket().setSoTimeout(CONNECTION_TIMEOUT);
+        } catch (IOException ex) {
+            close(channel);
+            throw ex;
+        }
+        return channel;
     }
 
     /**
-     * Writes the NodeConnectionHeaderMessagenHeader} {@link Message} on the specified socket
+     * Writes the node id of the self node on the channel and reads back the node id of the remote node
      *
-     * @param socket the socket on which the cluster command is to be written
-     * @param selfNodeId the self node id of the current node, used NodeConnectionHeaderMessagennectionHeader}
-     * @throws IOException if an error occurs in writing the message
+     * @param channel a connected channel in blocking mode
+     * @param probe <code>true</code> if the channel is closed after the handshake, so the remote node does not offer
+     * it for sending
+     * @return the nodeId of the remote node on which the channel is connected
+     * @throws IOException if an error occurs in writing or reading the handshake
      */
-    private void writeConnectionHeader(final Socket socket, final String selfNodeId) throws IOException {
-        Message message = new NodeConnectionHeaderMessage(selfNodeId);
-        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()))) {
-            writer.write(message.toString());
-            writer.newLine();
-            writer.flush();
-        }
+    private String handshake(final SocketChannel channel, final boolean probe) throws IOException {
+        Frames.writeHandshake(channel, clusterNodesStore.getSelfId(), probe);
+        return Frames.readHandshake(channel);
     }
 
-    /**
-     * NodeConnectionHeaderMessage {@link NodeConnectionHeader} {@link Message} on the specified socket
-     *
-     * @param socket the socket on which the cluster command is to be read
-     * @return the nodeId of the remote node on which the socket is connected
-     * @throws IOException if an error occurs in reading the message
-     * @throws OperationException if message parsing failed
-     */
-    private String readConnectionHeader(final Socket socket) throws IOException, OperationException {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
-            String message = reader.readLine();
-            NodeConnectionHeaderMessage nodeConnectionHeaderMessage = new NodeConnectionHeaderMessage();
-            nodeConnectionHeaderMessage.init(message);
-            return nodeConnectionHeaderMessage.getNodeId();
+    private void close(final SocketChannel channel) {
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            logger.error(ex.getMessage());
         }
     }
 }
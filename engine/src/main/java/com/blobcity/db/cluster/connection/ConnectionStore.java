@@ -16,12 +16,11 @@
 
 package com.blobcity.db.cluster.connection;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
 import org.springframework.stereotype.Component;
 
 /**
@@ -34,24 +33,19 @@ import org.springframework.stereotype.Component;
 @Component
 public class ConnectionStore {
 
-    private final Random random = new Random();
-    private final Map<String, List<ClusterConnection>> map = new HashMap<>();
-    private final Map<String, List<ClusterConnection>> inUseMap = new HashMap<>();
+    private final Map<String, List<ClusterConnection>> map = new ConcurrentHashMap<>();
 
     public void addConnection(final String nodeId, final ClusterConnection clusterConnection) {
-        if (!map.containsKey(nodeId)) {
-            map.put(nodeId, new ArrayList<ClusterConnection>());
-        }
-
-        map.get(nodeId).add(clusterConnection);
+        map.computeIfAbsent(nodeId, key -> new CopyOnWriteArrayList<>()).add(clusterConnection);
     }
 
     public void removeConnection(final String nodeId, final ClusterConnection clusterConnection) {
-        if (!map.containsKey(nodeId)) {
+        List<ClusterConnection> connectionList = map.get(nodeId);
+        if (connectionList == null) {
             return;
         }
 
-        map.get(nodeId).remove(clusterConnection);
+        connectionList.remove(clusterConnection);
     }
 
     public void removeNode(final String nodeId) {
@@ -59,11 +53,15 @@ public class ConnectionStore {
     }
 
     public ClusterConnection getConnection(final String nodeId) {
-        if (!map.containsKey(nodeId)) {
+        List<ClusterConnection> connectionList = map.get(nodeId);
+        if (connectionList == null) {
             return null;
         }
 
-        List<ClusterConnection> connectionList = map.get(nodeId);
-        return connectionList.get(random.nextInt(connectionList.size()));
+        Object[] connections = connectionList.toArray();
+        if (connections.length == 0) {
+            return null;
+        }
+        return (ClusterConnection) connections[ThreadLocalRandom.current().nextInt(connections.length)];
     }
 }
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.cluster.connection;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reassembles the messages of a cluster connection from the {@link Frames} read off it. Frames of a message that is
+ * split over several frames are held per stream id until its last frame arrives, so messages of different streams may
+ * interleave freely. Not thread safe; each connection reads through its own assembler on the event loop.
+ *
+ * @author sanketsarang
+ */
+class FrameAssembler {
+
+    /**
+     * Receives every message once all its frames have been read
+     */
+    @FunctionalInterface
+    interface MessageHandler {
+
+        void onMessage(byte type, byte flags, byte[] payload) throws IOException;
+    }
+
+    private final Map<Integer, ByteArrayOutputStream> partialMessages = new HashMap<>();
+
+    /**
+     * Consumes all complete frames of a buffer. A trailing incomplete frame is left in the buffer, to be read again
+     * once the rest of it has been received.
+     *
+     * @param buffer a buffer ready for reading
+     * @param handler receives the completed messages in the order their last frames were read
+     * @throws IOException if a frame violates the frame format, a message grows beyond
+     * {@link Frames#MAX_MESSAGE_SIZE}, or as thrown by the handler
+     */
+    void read(final ByteBuffer buffer, final MessageHandler handler) throws IOException {
+        while (buffer.remaining() >= Frames.HEADER_SIZE) {
+            final int start = buffer.position();
+            final int length = buffer.getInt(start);
+            if (length < 0 || length > Frames.MAX_FRAME_PAYLOAD) {
+                throw new IOException("Invalid frame length " + length);
+            }
+            if (buffer.remaining() < Frames.HEADER_SIZE + length) {
+                break;
+            }
+
+            final int streamId = buffer.getInt(start + 4);
+            final byte type = buffer.get(start + 8);
+            final byte flags = buffer.get(start + 9);
+            byte[] payload = new byte[length];
+            buffer.position(start + Frames.HEADER_SIZE);
+            buffer.get(payload);
+
+            ByteArrayOutputStream partial = partialMessages.get(streamId);
+            if (partial != null && partial.size() + length > Frames.MAX_MESSAGE_SIZE) {
+                throw new IOException("Message of stream " + streamId + " exceeds " + Frames.MAX_MESSAGE_SIZE + " bytes");
+            }
+
+            if ((flags & Frames.FLAG_END) == 0) {
+                if (partial == null) {
+                    partial = new ByteArrayOutputStream();
+                    partialMessages.put(streamId, partial);
+                }
+                partial.write(payload);
+                continue;
+            }
+
+            if (partial != null) {
+                partialMessages.remove(streamId);
+                partial.write(payload);
+                payload = partial.toByteArray();
+            }
+            handler.onMessage(type, flags, payload);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.cluster.connection;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Layout of the length prefixed frames exchanged on cluster connections. Every frame carries a 10 byte header:
+ * <code>[int payload-length][int stream-id][byte type][byte flags]</code>, followed by the payload. A message larger
+ * than {@link #MAX_FRAME_PAYLOAD} is split into multiple frames of the same stream id, the last of which has the
+ * {@link #FLAG_END} flag set. Frames of different streams may interleave on a connection, so one large message does not
+ * hold back the smaller messages queued behind it. A message may not exceed {@link #MAX_MESSAGE_SIZE} bytes in all.
+ *
+ * @author sanketsarang
+ */
+public class Frames {
+
+    public static final int HEADER_SIZE = 10;
+    public static final int MAX_FRAME_PAYLOAD = 64 * 1024;
+    public static final int MAX_MESSAGE_SIZE = 64 * 1024 * 1024;
+
+    /* Frame types */
+    public static final byte HANDSHAKE = 1;
+    public static final byte QUERY = 2;
+    public static final byte TEXT = 3;
+
+    /* Frame flags */
+    public static final byte FLAG_END = 1;
+    /* Set on the handshake of a connection that only validates the remote node and is closed right after */
+    public static final byte FLAG_PROBE = 2;
+
+    private Frames() {
+    }
+
+    public static ByteBuffer header(final int payloadLength, final int streamId, final byte type, final byte flags) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(payloadLength);
+        header.putInt(streamId);
+        header.put(type);
+        header.put(flags);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Writes a handshake frame carrying the node id on a blocking channel
+     *
+     * @param channel a channel in blocking mode
+     * @param nodeId the node id to write
+     * @param probe <code>true</code> if the connection is only opened to validate the remote node
+     * @throws IOException if the write fails
+     */
+    public static void writeHandshake(final SocketChannel channel, final String nodeId, final boolean probe) throws IOException {
+        final byte[] payload = nodeId.getBytes(StandardCharsets.UTF_8);
+        final byte flags = probe ? FLAG_END | FLAG_PROBE : FLAG_END;
+        ByteBuffer[] buffers = new ByteBuffer[]{header(payload.length, 0, HANDSHAKE, flags), ByteBuffer.wrap(payload)};
+        while (buffers[1].hasRemaining()) {
+            channel.write(buffers);
+        }
+    }
+
+    /**
+     * Reads a handshake frame from a blocking channel. The read honours the socket timeout of the channel.
+     *
+     * @param channel a channel in blocking mode
+     * @return the node id carried by the handshake
+     * @throws IOException if the read fails or times out, or the frame is not a handshake
+     */
+    public static String readHandshake(final SocketChannel channel) throws IOException {
+        DataInputStream inputStream = new DataInputStream(channel.socket().getInputStream());
+        final int length = inputStream.readInt();
+        inputStream.readInt();
+        final byte type = inputStream.readByte();
+        inputStream.readByte();
+        if (type != HANDSHAKE || length < 0 || length > MAX_FRAME_PAYLOAD) {
+            throw new IOException("Expected handshake frame on cluster connection");
+        }
+
+        byte[] payload = new byte[length];
+        inputStream.readFully(payload);
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+}
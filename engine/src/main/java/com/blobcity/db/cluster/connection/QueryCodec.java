@@ -0,0 +1,292 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.cluster.connection;
+
+import com.blobcity.db.exceptions.ErrorCode;
+import com.blobcity.db.exceptions.OperationException;
+import com.blobcity.lib.query.Query;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Compact binary encoding of a {@link Query} for transfer between cluster nodes. The JSON tree backing the query is
+ * written as tagged values: integers as zig-zag varints, doubles as 8 bytes and strings as length prefixed UTF-8.
+ * Object keys are interned per message, so the column names of a batch of records are written once and referenced by
+ * index thereafter.
+ *
+ * @author sanketsarang
+ */
+public class QueryCodec {
+
+    private static final byte NULL = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+    private static final byte INTEGER = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte STRING = 5;
+    private static final byte ARRAY = 6;
+    private static final byte OBJECT = 7;
+    private static final byte DECIMAL = 8;
+
+    private QueryCodec() {
+    }
+
+    public static byte[] encode(final Query query) {
+        Encoder encoder = new Encoder();
+        encoder.writeObject(query.toJson());
+        return encoder.toByteArray();
+    }
+
+    public static Query decode(final byte[] bytes) throws OperationException {
+        try {
+            Decoder decoder = new Decoder(ByteBuffer.wrap(bytes));
+            Object value = decoder.readValue();
+            if (!(value instanceof JSONObject)) {
+                throw new OperationException(ErrorCode.CLUSTER_CONNECTION_ERROR, "Cluster message is not a query");
+            }
+            return new Query((JSONObject) value);
+        } catch (BufferUnderflowException | IllegalArgumentException ex) {
+            throw new OperationException(ErrorCode.CLUSTER_CONNECTION_ERROR, "Malformed cluster message");
+        }
+    }
+
+    private static class Encoder {
+
+        private byte[] buffer = new byte[256];
+        private int position = 0;
+        private final Map<String, Integer> keys = new HashMap<>();
+
+        private void writeValue(final Object value) {
+            if (value == null || value == JSONObject.NULL) {
+                writeByte(NULL);
+            } else if (value instanceof Boolean) {
+                writeByte((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                writeByte(INTEGER);
+                writeVarLong(zigZag(((Number) value).longValue()));
+            } else if (value instanceof Double || value instanceof Float) {
+                writeByte(DOUBLE);
+                writeLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+            } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+                writeByte(DECIMAL);
+                writeString(value.toString());
+            } else if (value instanceof JSONObject) {
+                writeObject((JSONObject) value);
+            } else if (value instanceof JSONArray) {
+                JSONArray jsonArray = (JSONArray) value;
+                writeByte(ARRAY);
+                writeVarLong(jsonArray.length());
+                for (int i = 0; i < jsonArray.length(); i++) {
+                    writeValue(jsonArray.opt(i));
+                }
+            } else if (value instanceof Collection) {
+                Collection<?> collection = (Collection<?>) value;
+                writeByte(ARRAY);
+                writeVarLong(collection.size());
+                collection.forEach(this::writeValue);
+            } else if (value instanceof Object[]) {
+                writeValue(Arrays.asList((Object[]) value));
+            } else if (value instanceof Map) {
+                writeObject(new JSONObject((Map<?, ?>) value));
+            } else if (value instanceof Enum) {
+                writeByte(STRING);
+                writeString(((Enum<?>) value).name());
+            } else {
+                writeByte(STRING);
+                writeString(value.toString());
+            }
+        }
+
+        private void writeObject(final JSONObject jsonObject) {
+            writeByte(OBJECT);
+            writeVarLong(jsonObject.length());
+            for (String key : jsonObject.keySet()) {
+                writeKey(key);
+                writeValue(jsonObject.opt(key));
+            }
+        }
+
+        /**
+         * Keys are written as a varint: 0 followed by the key string for the first occurrence of a key in the message,
+         * or the index of the key plus one for repeat occurrences
+         */
+        private void writeKey(final String key) {
+            Integer index = keys.get(key);
+            if (index != null) {
+                writeVarLong(index + 1L);
+                return;
+            }
+
+            keys.put(key, keys.size());
+            writeVarLong(0);
+            writeString(key);
+        }
+
+        private void writeString(final String string) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        private void writeByte(final byte value) {
+            ensureCapacity(1);
+            buffer[position++] = value;
+        }
+
+        private void writeLong(final long value) {
+            ensureCapacity(8);
+            for (int i = 7; i >= 0; i--) {
+                buffer[position++] = (byte) (value >>> (i * 8));
+            }
+        }
+
+        private void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        private void ensureCapacity(final int bytes) {
+            if (position + bytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+            }
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+    }
+
+    private static class Decoder {
+
+        private final ByteBuffer buffer;
+        private final List<String> keys = new ArrayList<>();
+
+        private Decoder(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private Object readValue() {
+            final byte tag = buffer.get();
+            switch (tag) {
+                case NULL:
+                    return JSONObject.NULL;
+                case FALSE:
+                    return Boolean.FALSE;
+                case TRUE:
+                    return Boolean.TRUE;
+                case INTEGER:
+                    final long value = unZigZag(readVarLong());
+                    if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                        return (int) value;
+                    }
+                    return value;
+                case DOUBLE:
+                    return Double.longBitsToDouble(buffer.getLong());
+                case DECIMAL:
+                    return new BigDecimal(readString());
+                case STRING:
+                    return readString();
+                case ARRAY:
+                    final int length = readLength();
+                    JSONArray jsonArray = new JSONArray();
+                    for (int i = 0; i < length; i++) {
+                        jsonArray.put(readValue());
+                    }
+                    return jsonArray;
+                case OBJECT:
+                    final int size = readLength();
+                    JSONObject jsonObject = new JSONObject();
+                    for (int i = 0; i < size; i++) {
+                        final String key = readKey();
+                        jsonObject.put(key, readValue());
+                    }
+                    return jsonObject;
+                default:
+                    throw new IllegalArgumentException("Unknown value tag " + tag);
+            }
+        }
+
+        private String readKey() {
+            final long reference = readVarLong();
+            if (reference == 0) {
+                final String key = readString();
+                keys.add(key);
+                return key;
+            }
+
+            if (reference > keys.size()) {
+                throw new IllegalArgumentException("Invalid key reference " + reference);
+            }
+            return keys.get((int) reference - 1);
+        }
+
+        private String readString() {
+            final int length = readLength();
+            if (length > buffer.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            final String string = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return string;
+        }
+
+        private int readLength() {
+            final long length = readVarLong();
+            if (length < 0 || length > buffer.remaining()) {
+                throw new IllegalArgumentException("Invalid length " + length);
+            }
+            return (int) length;
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                final byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+    }
+
+    private static long zigZag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
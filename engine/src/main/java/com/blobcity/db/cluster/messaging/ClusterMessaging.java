@@ -20,9 +20,9 @@ import com.blobcity.db.cluster.ClusterNodesStore;
 import com.blobcity.db.cluster.connection.ClusterConnection;
 import com.blobcity.db.cluster.connection.ConnectionStore;
 import com.blobcity.db.exceptions.OperationException;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.blobcity.db.processors.ProcessHandler;
 import com.blobcity.db.processors.ProcessorExecutorService;
@@ -56,7 +56,7 @@ public class ClusterMessaging {
      * <code>null</code> if the specific node could not be reached
      */
     public Map<String, Boolean> sendMessage(Query query) {
-        Map<String, Boolean> sendStatusMap = new HashMap<>();
+        Map<String, Boolean> sendStatusMap = new ConcurrentHashMap<>();
         Set<String> nodeIds = clusterNodesStore.getAllNodes();
         nodeIds.parallelStream().forEach((nodeId) -> {
             boolean success = sendMessage(query, nodeId);
@@ -90,7 +90,7 @@ public class ClusterMessaging {
             return false;
         }
         try {
-            clusterConnection.sendMessage(query.getRequestId(), query.getQueryType().getQueryCode(), query.toJson());
+            clusterConnection.sendMessage(query);
             return true;
         } catch (OperationException ex) {
             logger.error(ex.getMessage(), ex);
@@ -106,7 +106,7 @@ public class ClusterMessaging {
      * @return {@link Map} containing success / failure status of sending to each of the nodes
      */
     public Map<String, Boolean> sendMessage(Query query, Set<String> nodeIds) {
-        Map<String, Boolean> sendStatusMap = new HashMap<>();
+        Map<String, Boolean> sendStatusMap = new ConcurrentHashMap<>();
         nodeIds.parallelStream().forEach((nodeId) -> {
             boolean success = sendMessage(query, nodeId);
             sendStatusMap.put(nodeId, success);
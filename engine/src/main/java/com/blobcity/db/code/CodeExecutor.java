@@ -16,27 +16,26 @@
 
 package com.blobcity.db.code;
 
-import com.blobcity.db.code.filters.ThreadRun;
 import com.blobcity.db.code.filters.FilterParallelExecutor;
+import com.blobcity.db.code.filters.FilterScan;
 import com.blobcity.db.bsql.BSqlDataManager;
 import com.blobcity.db.code.datainterpreter.InterpreterExecutorBean;
 import com.blobcity.db.code.filters.FilterExecutorBean;
 import com.blobcity.db.code.procedures.ProcedureExecutorBean;
 import com.blobcity.db.code.triggers.TriggerExecutorBean;
 import com.blobcity.db.code.triggers.TriggerFunction;
+import com.blobcity.db.config.ConfigBean;
+import com.blobcity.db.config.ConfigProperties;
 import com.blobcity.db.exceptions.ErrorCode;
 import com.blobcity.db.exceptions.OperationException;
 
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
 
 import com.blobcity.db.code.webservices.WebServiceStore;
+import com.blobcity.db.sql.pipeline.ScanExecutor;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
@@ -71,6 +70,26 @@ public class CodeExecutor {
     private TriggerExecutorBean triggerExecutor;
     @Autowired
     private WebServiceStore webServiceStore;
+    @Autowired
+    @Lazy
+    private ConfigBean configBean;
+    @Autowired
+    @Lazy
+    private ScanExecutor scanExecutor;
+
+    private long filterResultLimit = 0;
+
+    @PostConstruct
+    private void init() {
+        final String limit = configBean.getStringProperty(ConfigProperties.FILTER_RESULT_LIMIT);
+        if (limit != null) {
+            try {
+                filterResultLimit = Long.parseLong(limit);
+            } catch (NumberFormatException ex) {
+                logger.warn("Invalid filter result limit {}. Filter results will not be limited", limit);
+            }
+        }
+    }
     
     /**
      * Execute the specified filter on given collection.
@@ -105,62 +124,66 @@ public class CodeExecutor {
      * @param filterName : name of filter as defined in annotation
      * @param params : parameters for loadCriteria function
      * @return : list of primary keys which passed the filter criteria
-     * @throws OperationException
+     * @throws OperationException with {@link ErrorCode#FILTER_RESULT_LIMIT_EXCEEDED} if more records passed the filter
+     * than {@link ConfigProperties#FILTER_RESULT_LIMIT} permits
      */
     public List<String> executeParallelFilter(final String datastore, final String collection,
             final String filterName, Object[] params) throws OperationException{
-
-        /** Initialize the thread pool and stuff **/
-        int nProcessors = Runtime.getRuntime().availableProcessors();
-        ExecutorService executorService = Executors.newFixedThreadPool(nProcessors);
-        parallelFilterExecutor.createNewInstance(datastore, filterName, nProcessors, params);
-
-        List<Future> futures = new ArrayList<>();
-
-        /** Select all keys from the table **/
-        // TODO: this method needs to store all keys. In future, let's try to remove this.
-        List<String> keys = dataManager.selectAllKeys(datastore, collection);
-        int ptr = 0; int cnt =0;
         StopWatch stopWatch = new StopWatch();
         stopWatch.start();
-        Iterator<String> keyItr = keys.iterator();
-        while(keyItr.hasNext()){
-            JSONObject rowJson =  dataManager.select(datastore, collection, keyItr.next());
-            ThreadRun tmp1 = new ThreadRun(parallelFilterExecutor, datastore, filterName, rowJson, ptr);
-            futures.add(executorService.submit(tmp1));
-            ptr++; ptr %= nProcessors; cnt++;
-        }
-        /** Waiting for executor service to finish **/
-        executorService.shutdown();
-        while(!executorService.isShutdown()) {
-            try {
-                executorService.awaitTermination(5, TimeUnit.SECONDS);
-            } catch (InterruptedException ex) {
-                logger.error("Timeout happened during execution of filter {}.{}, {}", new Object[]{datastore, collection, filterName});
-                logger.error(ex.getMessage(), ex);
-                throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR);
-            }
-        }
-        /** assemble the output **/
+
         List<String> filteredKeys = new ArrayList<>();
-        try {
-            for(int i=0;i<futures.size();i++){
-                if((Boolean)futures.get(i).get()){
-                    filteredKeys.add(keys.get(i));
-                }
+        try (FilterScan scan = streamParallelFilter(datastore, collection, filterName, params)) {
+            scan.forEachRemaining(filteredKeys::add);
+            if (scan.isLimitReached()) {
+                logger.warn("Filter {} on {}.{} stopped at the result limit of {} keys", new Object[]{filterName, datastore, collection, filterResultLimit});
+                throw new OperationException(ErrorCode.FILTER_RESULT_LIMIT_EXCEEDED, "Filter " + filterName + " on "
+                        + datastore + "." + collection + " matched more than the result limit of " + filterResultLimit + " records");
+            }
+        } catch (IllegalStateException ex) {
+            if (ex.getCause() instanceof OperationException) {
+                throw (OperationException) ex.getCause();
             }
-        } catch (InterruptedException | ExecutionException ex) {
-            logger.error("Error during execution of filter {}.{} , {}", new Object[]{datastore, collection, filterName});
-            logger.error(ex.getMessage(), ex);
-            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR);
+            throw ex;
         }
 
         stopWatch.stop();
-        logger.debug("Filtering data for collection {}.{}, {}, total count: {}", new Object[]{datastore, collection, filterName, cnt});
+        logger.debug("Filtering data for collection {}.{}, {}, total count: {}", new Object[]{datastore, collection, filterName, filteredKeys.size()});
         logger.debug("time taken {} : ", new Object[]{stopWatch.getTotalTimeSeconds()} );
         return filteredKeys;
     }
 
+    /**
+     * Execute the filter on given collection in a parallel manner, streaming out the keys of matching records as they
+     * are found. The workers run on the {@link ScanExecutor} and each tests records with an instance of the filter no
+     * other worker is using at the time. The scan must be closed if it is not read to the end
+     *
+     * @param datastore : dsSet name
+     * @param collection : collection name
+     * @param filterName : name of filter as defined in annotation
+     * @param params : parameters for loadCriteria function
+     * @return : the running scan, producing primary keys of rows which passed the filter criteria in no particular order
+     * @throws OperationException if the filter could not be instantiated or the collection could not be read
+     */
+    public FilterScan streamParallelFilter(final String datastore, final String collection,
+            final String filterName, Object[] params) throws OperationException{
+        final List<FilterScan.RecordFilter> filters = parallelFilterExecutor.createFilters(datastore, filterName, scanExecutor.parallelism(0), params);
+        final Iterator<String> keys = dataManager.selectAllKeysAsStream(datastore, collection);
+        return new FilterScan(keys, key -> load(datastore, collection, key), filters, filterResultLimit, scanExecutor);
+    }
+
+    /* A record deleted while the filter runs is skipped */
+    private JSONObject load(final String datastore, final String collection, final String key) throws OperationException {
+        try {
+            return dataManager.select(datastore, collection, key);
+        } catch (OperationException ex) {
+            if (!dataManager.exists(datastore, collection, key)) {
+                return null;
+            }
+            throw ex;
+        }
+    }
+
     /**
      * Execute a stored procedure
      *
@@ -205,6 +228,21 @@ public class CodeExecutor {
         triggerExecutor.executeTrigger(datastore, collection, function, oldObj, newObj);
     }
 
+    /**
+     * Execute a given trigger for a batch of rows with operations which require only one version of a row (INSERT,
+     * DELETE). Triggers declaring the function with a <code>List</code> parameter are called once for the batch
+     *
+     * @param datastore: dsSet name
+     * @param collection: collection name
+     * @param function: which trigger function to execute (BEFORE or AFTER)
+     * @param rows: jsonObjects of the rows
+     * @throws OperationException
+     */
+    public void executeTrigger( final String datastore, final String collection,
+            final TriggerFunction function, List<JSONObject> rows) throws OperationException{
+        triggerExecutor.executeTrigger(datastore, collection, function, rows);
+    }
+
     /**
      * Execute a data interpreter on a single row of unstructured data
      *
@@ -0,0 +1,153 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.code;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+/**
+ * <p>
+ * A method of a user class bound to {@link MethodHandle}s once, so that calling it costs no more than a regular
+ * interface call instead of a class lookup, instantiation and reflective method lookup per call.
+ *
+ * <p>
+ * Classes carrying a runtime annotation named <code>ThreadSafe</code> (such as
+ * <code>net.jcip.annotations.ThreadSafe</code>) are instantiated once and the instance is shared by all callers. Any
+ * other class gets a new instance for every {@link #instance()}, as the user code may keep state in its fields.
+ *
+ * @author sanketsarang
+ */
+public class CodeInvocation {
+
+    private static final String THREAD_SAFE_ANNOTATION = "ThreadSafe";
+
+    private final Class<?> declaringClass;
+    private final MethodHandle constructor;
+    private final MethodHandle method;
+    private final Object sharedInstance;
+
+    private CodeInvocation(final Class<?> declaringClass, final MethodHandle constructor, final MethodHandle method,
+            final Object sharedInstance) {
+        this.declaringClass = declaringClass;
+        this.constructor = constructor;
+        this.method = method;
+        this.sharedInstance = sharedInstance;
+    }
+
+    /**
+     * Binds a method of a class
+     *
+     * @param clazz the user class, which must have a no argument constructor
+     * @param methodName name of the method
+     * @param parameterTypes parameter types of the method; at most two parameters are supported
+     * @return the bound method
+     * @throws NoSuchMethodException if the class declares no such method or no default constructor
+     * @throws ReflectiveOperationException if the method or constructor could not be accessed, or a shared instance
+     * could not be created
+     */
+    public static CodeInvocation compile(final Class<?> clazz, final String methodName, final Class<?>... parameterTypes)
+            throws ReflectiveOperationException {
+        if (parameterTypes.length > 2) {
+            throw new NoSuchMethodException("Methods of user code may take at most two parameters");
+        }
+
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        final Constructor<?> declaredConstructor = clazz.getDeclaredConstructor();
+        declaredConstructor.setAccessible(true);
+        final MethodHandle constructor = lookup.unreflectConstructor(declaredConstructor)
+                .asType(MethodType.methodType(Object.class));
+
+        final Method declaredMethod = findMethod(clazz, methodName, parameterTypes);
+        declaredMethod.setAccessible(true);
+        final MethodHandle method = lookup.unreflect(declaredMethod)
+                .asType(MethodType.genericMethodType(parameterTypes.length + 1));
+
+        Object sharedInstance = null;
+        if (isThreadSafe(clazz)) {
+            try {
+                sharedInstance = constructor.invokeExact();
+            } catch (Throwable t) {
+                throw new InstantiationException("Could not instantiate " + clazz.getName() + ": " + t);
+            }
+        }
+        return new CodeInvocation(clazz, constructor, method, sharedInstance);
+    }
+
+    private static Method findMethod(final Class<?> clazz, final String methodName, final Class<?>... parameterTypes)
+            throws NoSuchMethodException {
+        try {
+            return clazz.getMethod(methodName, parameterTypes);
+        } catch (NoSuchMethodException ex) {
+            return clazz.getDeclaredMethod(methodName, parameterTypes);
+        }
+    }
+
+    /**
+     * Checks whether the user has marked a class as safe to be used by several threads at once
+     *
+     * @param clazz the user class
+     * @return <code>true</code> if the class carries an annotation named <code>ThreadSafe</code>
+     */
+    public static boolean isThreadSafe(final Class<?> clazz) {
+        for (Annotation annotation : clazz.getAnnotations()) {
+            if (THREAD_SAFE_ANNOTATION.equals(annotation.annotationType().getSimpleName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets an instance to call the method on
+     *
+     * @return the shared instance for thread safe classes, a new instance otherwise
+     * @throws Throwable anything thrown by the constructor of the user class
+     */
+    public Object instance() throws Throwable {
+        return sharedInstance != null ? sharedInstance : (Object) constructor.invokeExact();
+    }
+
+    /**
+     * Creates a new instance irrespective of whether the class is thread safe, for code that is configured per use
+     *
+     * @return a new instance of the class
+     * @throws Throwable anything thrown by the constructor of the user class
+     */
+    public Object newInstance() throws Throwable {
+        return (Object) constructor.invokeExact();
+    }
+
+    public Object invoke(final Object instance, final Object argument) throws Throwable {
+        return (Object) method.invokeExact(instance, argument);
+    }
+
+    public Object invoke(final Object instance, final Object first, final Object second) throws Throwable {
+        return (Object) method.invokeExact(instance, first, second);
+    }
+
+    public Class<?> getDeclaringClass() {
+        return declaringClass;
+    }
+
+    public boolean isShared() {
+        return sharedInstance != null;
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.code;
+
+import com.blobcity.db.exceptions.ErrorCode;
+import com.blobcity.db.exceptions.OperationException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * <p>
+ * Holds the {@link CodeInvocation}s of the user code of every datastore, so that a class is resolved and its methods
+ * bound once per class version rather than on every call. Entries are keyed on the class name and method signature,
+ * and all entries of a datastore are dropped whenever its code is reloaded, which is what makes a new version of a
+ * class visible. Callers that already hold a class look methods up by the class itself, and are never handed a method
+ * bound on another version of it.
+ *
+ * <p>
+ * Methods a class does not declare are remembered as well, so probing for optional signatures such as batch methods
+ * is equally cheap.
+ *
+ * @author sanketsarang
+ */
+@Component
+public class CodeInvocationCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(CodeInvocationCache.class.getName());
+
+    private final Map<String, Map<String, Entry>> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Resolves a class of the user code, invoked only when the class is not yet in the cache
+     */
+    @FunctionalInterface
+    public interface ClassResolver {
+
+        Class<?> resolve() throws ClassNotFoundException, OperationException;
+    }
+
+    /**
+     * Gets a method of a user class, binding it on first use
+     *
+     * @param datastore name of the datastore the code belongs to
+     * @param className fully qualified name of the class, or any other name the class is uniquely known by in the
+     * datastore
+     * @param resolver resolves the class on a cache miss
+     * @param methodName name of the method
+     * @param parameterTypes parameter types of the method
+     * @return the bound method
+     * @throws OperationException if the class could not be loaded or does not declare the method
+     */
+    public CodeInvocation get(final String datastore, final String className, final ClassResolver resolver,
+            final String methodName, final Class<?>... parameterTypes) throws OperationException {
+        final CodeInvocation invocation = find(datastore, className, resolver, methodName, parameterTypes);
+        if (invocation == null) {
+            throw new OperationException(ErrorCode.CODE_LOAD_ERROR, "Class " + className + " in datastore " + datastore
+                    + " does not declare method " + methodName + " with " + parameterTypes.length + " parameter(s)");
+        }
+        return invocation;
+    }
+
+    /**
+     * Gets a method of a user class if the class declares it, binding it on first use
+     *
+     * @param datastore name of the datastore the code belongs to
+     * @param className name the class is uniquely known by in the datastore
+     * @param resolver resolves the class on a cache miss
+     * @param methodName name of the method
+     * @param parameterTypes parameter types of the method
+     * @return the bound method; <code>null</code> if the class does not declare the method
+     * @throws OperationException if the class could not be loaded
+     */
+    public CodeInvocation find(final String datastore, final String className, final ClassResolver resolver,
+            final String methodName, final Class<?>... parameterTypes) throws OperationException {
+        final Map<String, Entry> entries = cache.computeIfAbsent(datastore, ds -> new ConcurrentHashMap<>());
+        final String key = key(className, methodName, parameterTypes);
+        final Entry cached = entries.get(key);
+        if (cached != null) {
+            return cached.invocation;
+        }
+
+        final Class<?> clazz;
+        try {
+            clazz = resolver.resolve();
+        } catch (ClassNotFoundException ex) {
+            throw new OperationException(ErrorCode.CLASS_LOAD_ERROR, "Could not load class " + className + " in datastore " + datastore, ex);
+        }
+        if (clazz == null) {
+            throw new OperationException(ErrorCode.CLASS_LOAD_ERROR, "Could not load class " + className + " in datastore " + datastore);
+        }
+
+        final Entry entry = bind(datastore, className, clazz, methodName, parameterTypes);
+        entries.putIfAbsent(key, entry);
+        return entries.get(key).invocation;
+    }
+
+    /**
+     * Gets a method of an already loaded user class, binding it on first use. The cached method is only used if it was
+     * bound on the same class, so a caller holding a class of an older or newer class loader than other callers of the
+     * datastore never invokes a method of another version of the class
+     *
+     * @param datastore name of the datastore the code belongs to
+     * @param clazz the class
+     * @param methodName name of the method
+     * @param parameterTypes parameter types of the method
+     * @return the bound method
+     * @throws OperationException if the class does not declare the method
+     */
+    public CodeInvocation get(final String datastore, final Class<?> clazz, final String methodName,
+            final Class<?>... parameterTypes) throws OperationException {
+        final Map<String, Entry> entries = cache.computeIfAbsent(datastore, ds -> new ConcurrentHashMap<>());
+        final String key = key(clazz.getName(), methodName, parameterTypes);
+        Entry entry = entries.get(key);
+        if (entry == null || entry.clazz != clazz) {
+            entry = bind(datastore, clazz.getName(), clazz, methodName, parameterTypes);
+            entries.put(key, entry);
+        }
+        if (entry.invocation == null) {
+            throw new OperationException(ErrorCode.CODE_LOAD_ERROR, "Class " + clazz.getName() + " in datastore " + datastore
+                    + " does not declare method " + methodName + " with " + parameterTypes.length + " parameter(s)");
+        }
+        return entry.invocation;
+    }
+
+    /**
+     * Drops all bound methods of a datastore. Must be called whenever code of the datastore is loaded or reloaded
+     *
+     * @param datastore name of the datastore
+     */
+    public void invalidate(final String datastore) {
+        if (cache.remove(datastore) != null) {
+            logger.debug("Invalidated compiled code of datastore {}", datastore);
+        }
+    }
+
+    private static Entry bind(final String datastore, final String className, final Class<?> clazz,
+            final String methodName, final Class<?>... parameterTypes) throws OperationException {
+        try {
+            return new Entry(clazz, CodeInvocation.compile(clazz, methodName, parameterTypes));
+        } catch (NoSuchMethodException ex) {
+            return new Entry(clazz, null); //remembered, so the class is not probed again
+        } catch (ReflectiveOperationException | SecurityException ex) {
+            logger.error("Could not bind " + className + "." + methodName + " in datastore " + datastore, ex);
+            throw new OperationException(ErrorCode.CODE_LOAD_ERROR, "Could not bind method " + methodName + " of class "
+                    + className + " in datastore " + datastore, ex);
+        }
+    }
+
+    private static String key(final String className, final String methodName, final Class<?>... parameterTypes) {
+        final StringBuilder sb = new StringBuilder(className).append('#').append(methodName);
+        for (Class<?> parameterType : parameterTypes) {
+            sb.append(',').append(parameterType.getName());
+        }
+        return sb.toString();
+    }
+
+    private static class Entry {
+
+        private final Class<?> clazz;
+        private final CodeInvocation invocation;
+
+        private Entry(final Class<?> clazz, final CodeInvocation invocation) {
+            this.clazz = clazz;
+            this.invocation = invocation;
+        }
+    }
+}
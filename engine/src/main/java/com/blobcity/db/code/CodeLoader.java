@@ -78,6 +78,8 @@ public class CodeLoader {
     private WebServiceStore webServiceStore;
     @Autowired
     private ExportProcedureStore exportProcedureStore;
+    @Autowired
+    private CodeInvocationCache codeInvocationCache;
 
     /**
      * activate trigger/triggers specified related to specified dsSet and collection
@@ -316,6 +318,8 @@ public class CodeLoader {
             throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Error in loading code for datastore " + datastore + " from jar " + jarFilePath);
         }
 
+        /* Methods bound to classes of a previously loaded version of the jar must not be called any more */
+        codeInvocationCache.invalidate(datastore);
         logger.debug("Stored Procedures JAR loaded");
     }
     
@@ -334,6 +338,7 @@ public class CodeLoader {
         filterStore.removeAll(datastore);
         interpreterStore.removeAll(datastore);
         webServiceStore.unregisterWs(datastore);
+        codeInvocationCache.invalidate(datastore);
     }
 
 }
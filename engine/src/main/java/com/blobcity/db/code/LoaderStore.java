@@ -17,8 +17,9 @@
 package com.blobcity.db.code;
 
 import com.blobcity.db.constants.BSql;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 /**
@@ -28,7 +29,10 @@ import org.springframework.stereotype.Component;
 @Component
 public class LoaderStore {
 
-    private final Map<String, RestrictedClassLoader> loaderMap = new HashMap<>();
+    @Autowired
+    private CodeInvocationCache codeInvocationCache;
+
+    private final Map<String, RestrictedClassLoader> loaderMap = new ConcurrentHashMap<>();
 
     /**
      * Gets an instance of the RestrictedClassLoader if already present in the map
@@ -48,18 +52,30 @@ public class LoaderStore {
      * @return
      */
     public RestrictedClassLoader getLoaderWithCreate(String appId) {
-        if (!loaderMap.containsKey(appId)) {
-            final RestrictedClassLoader restrictedClassLoader = new RestrictedClassLoader(appId + BSql.DB_HOT_DEPLOY_FOLDER);
-            loaderMap.put(appId, restrictedClassLoader);
+        return loaderMap.computeIfAbsent(appId, id -> new RestrictedClassLoader(id + BSql.DB_HOT_DEPLOY_FOLDER));
+    }
 
-            return restrictedClassLoader;
+    /**
+     * Gets the loader of the datastore to load the specified class with. The existing loader is kept unless the class
+     * file changed after the loader loaded it, in which case a new loader is created as by {@link #getNewLoader(String)}
+     *
+     * @param appId
+     * @param className name of the class about to be loaded
+     * @return
+     */
+    public RestrictedClassLoader getLoaderForClass(String appId, String className) {
+        final RestrictedClassLoader restrictedClassLoader = getLoaderWithCreate(appId);
+        if (restrictedClassLoader.isReloadRequired(className)) {
+            return getNewLoader(appId);
         }
 
-        return loaderMap.get(appId);
+        return restrictedClassLoader;
     }
 
     /**
-     * Creates a new loader and returns it with every request
+     * Creates a new loader and returns it with every request. Classes of the new loader are new versions of the
+     * classes, so all methods bound for the datastore are invalidated. To be used only when code of the datastore has
+     * changed, see {@link #getLoaderForClass(String, String)}
      *
      * @param appId
      * @return
@@ -67,12 +83,14 @@ public class LoaderStore {
     public RestrictedClassLoader getNewLoader(String appId) {
         final RestrictedClassLoader restrictedClassLoader = new RestrictedClassLoader(appId + BSql.DB_HOT_DEPLOY_FOLDER);
         loaderMap.put(appId, restrictedClassLoader);
+        codeInvocationCache.invalidate(appId);
 
         return restrictedClassLoader;
     }
 
     public void remove(String appId) {
         loaderMap.remove(appId);
+        codeInvocationCache.invalidate(appId);
     }
 }
 
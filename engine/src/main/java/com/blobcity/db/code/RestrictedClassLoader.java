@@ -24,8 +24,8 @@ import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,7 +39,7 @@ public class RestrictedClassLoader extends ClassLoader {
 
     private static final Logger logger = LoggerFactory.getLogger(RestrictedClassLoader.class.getName());
     private static final String ROOT = BSql.BSQL_BASE_FOLDER;
-    private final Map<String, Long> lastModifiedTimestamp = new HashMap<>();
+    private final Map<String, Long> lastModifiedTimestamp = new ConcurrentHashMap<>();
     private final String codeBase;
 
     public RestrictedClassLoader(final String codeBase) {
@@ -73,8 +73,9 @@ public class RestrictedClassLoader extends ClassLoader {
         return result;
     }
 
+    /* Synchronized as one loader is shared by all callers of a datastore, and a class must only be defined once */
     @Override
-    public Class loadClass(String className, boolean resolve)
+    public synchronized Class loadClass(String className, boolean resolve)
             throws ClassNotFoundException {
 
         Class cls = findLoadedClass(className);
@@ -17,13 +17,11 @@
 package com.blobcity.db.code.datainterpreter;
 
 import com.blobcity.db.bsql.ClusterDataManager;
-import com.blobcity.db.code.LoaderStore;
-import com.blobcity.db.code.RestrictedClassLoader;
+import com.blobcity.db.code.CodeInvocation;
+import com.blobcity.db.code.CodeInvocationCache;
 import com.blobcity.db.exceptions.ErrorCode;
 import com.blobcity.db.exceptions.OperationException;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
@@ -48,11 +46,12 @@ import org.springframework.stereotype.Component;
 @Component
 public class InterpreterExecutorBean {
     private static final Logger logger = LoggerFactory.getLogger(InterpreterExecutorBean.class);
+    private static final String INTERPRET = "interpret";
     
     @Autowired
     private InterpreterStoreBean interpreterStore;
     @Autowired
-    private LoaderStore loaderStore;
+    private CodeInvocationCache codeInvocationCache;
     @Autowired(required = false)
     @Lazy
     private ClusterDataManager clusterDataManager;
@@ -88,23 +87,19 @@ public class InterpreterExecutorBean {
             throw new OperationException(ErrorCode.DATAINTERPRETER_NOT_LOADED);
         }
 
+        final CodeInvocation invocation = getInvocation(datastore, interpreter, String.class);
         try{
-            Class interpreterClass = interpreterStore.getClass(datastore, interpreter);
-            Object instance = interpreterClass.newInstance();
-            Method method = interpreterClass.getDeclaredMethod("interpret", String.class);
-            JSONObject interpretedJson = (JSONObject) method.invoke(instance, row);
-            return interpretedJson;
-        } catch (InstantiationException | IllegalAccessException |
-                NoSuchMethodException | SecurityException | IllegalArgumentException | InvocationTargetException ex) {
-            logger.error(null, ex);
-            throw new OperationException(ErrorCode.DATAINTERPRETER_EXECUTION_ERROR, "Error in executing data interpreter. Check logs for more info");
+            return (JSONObject) invocation.invoke(invocation.instance(), row);
+        } catch (Throwable t) {
+            throw executionError(t);
         }
     }
     
 
     /**
      * Execute the interpreter on given rows. 
-     * Conversion is sequential and only one object of given interpreter class is used to convert all rows
+     * An interpreter that declares <code>interpret(List)</code> converts all rows in a single call, otherwise
+     * conversion is sequential and only one object of given interpreter class is used to convert all rows
      * 
      * @param datastore: dsSet name
      * @param interpreter: name of the interpreter
@@ -116,12 +111,27 @@ public class InterpreterExecutorBean {
         if( !interpreterStore.isPresent(datastore, interpreter) )
             throw new OperationException(ErrorCode.DATAINTERPRETER_NOT_LOADED);
 
-        List<JSONObject> responseList = new ArrayList<>();
+        final List<String> rows = new ArrayList<>(inputRows.length());
         for(int i = 0; i < inputRows.length(); i ++) {
-            responseList.add(convert(datastore, interpreter, inputRows.get(i).toString()));
+            rows.add(inputRows.get(i).toString());
         }
 
-        return responseList;
+        final CodeInvocation batch = codeInvocationCache.find(datastore, interpreter, () -> interpreterStore.getClass(datastore, interpreter), INTERPRET, List.class);
+        try{
+            if(batch != null) {
+                return (List<JSONObject>) batch.invoke(batch.instance(), rows);
+            }
+
+            final CodeInvocation invocation = getInvocation(datastore, interpreter, String.class);
+            final Object instance = invocation.instance();
+            final List<JSONObject> responseList = new ArrayList<>(rows.size());
+            for(String row : rows) {
+                responseList.add((JSONObject) invocation.invoke(instance, row));
+            }
+            return responseList;
+        } catch (Throwable t) {
+            throw executionError(t);
+        }
     }
     
     /**
@@ -140,22 +150,25 @@ public class InterpreterExecutorBean {
         if( !interpreterStore.isPresent(datastore, interpreter) )
             throw new OperationException(ErrorCode.DATAINTERPRETER_NOT_LOADED);
         
+        final CodeInvocation invocation = getInvocation(datastore, interpreter, String.class);
+        final Object instance;
         try{
-            Class interpreterClass = interpreterStore.getClass(datastore, interpreter);
-            Object instance = interpreterClass.newInstance();
-            Method method = interpreterClass.getDeclaredMethod("interpret", String.class);
-            
-            List<JSONObject> tmp = new ArrayList<>();
-            for(int i=0; i<inputRows.length();i++){
-                JSONObject converted = (JSONObject) method.invoke(instance, inputRows.get(i).toString());
-                insertIntoDatabase(datastore, collection, converted);
+            instance = invocation.instance();
+        } catch (Throwable t) {
+            throw executionError(t);
+        }
+
+        List<JSONObject> tmp = new ArrayList<>();
+        for(int i=0; i<inputRows.length();i++){
+            final JSONObject converted;
+            try{
+                converted = (JSONObject) invocation.invoke(instance, inputRows.get(i).toString());
+            } catch (Throwable t) {
+                throw executionError(t);
             }
-            return tmp;
-        } catch (InstantiationException | IllegalAccessException |
-                NoSuchMethodException | SecurityException | IllegalArgumentException | InvocationTargetException ex) {
-            logger.error(null, ex);
-            throw new OperationException(ErrorCode.DATAINTERPRETER_EXECUTION_ERROR, "Error in executing data interpreter. Check logs for more info");
+            insertIntoDatabase(datastore, collection, converted);
         }
+        return tmp;
     }
     
     /**
@@ -172,7 +185,6 @@ public class InterpreterExecutorBean {
     public JSONArray insertParallel(final String datastore, final String collection, final String interpreter, final JSONArray inputRows) throws OperationException{
         if( !interpreterStore.isPresent(datastore, interpreter) )
             throw new OperationException(ErrorCode.DATAINTERPRETER_NOT_LOADED);
-        RestrictedClassLoader blobCityLoader =  loaderStore.getNewLoader(datastore);
         ExecutorService  executorService = Executors.newFixedThreadPool(Performance.THREAD_POOL_SIZE);
         
         List<Callable<Object>> callableList  = new ArrayList<>();
@@ -186,4 +198,13 @@ public class InterpreterExecutorBean {
         return null;
     }
 
+    private CodeInvocation getInvocation(final String datastore, final String interpreter, final Class<?> parameterType) throws OperationException {
+        return codeInvocationCache.get(datastore, interpreter, () -> interpreterStore.getClass(datastore, interpreter), INTERPRET, parameterType);
+    }
+
+    private OperationException executionError(final Throwable t) {
+        logger.error(null, t);
+        return new OperationException(ErrorCode.DATAINTERPRETER_EXECUTION_ERROR, "Error in executing data interpreter. Check logs for more info");
+    }
+
 }
@@ -16,6 +16,8 @@
 
 package com.blobcity.db.code.filters;
 
+import com.blobcity.db.code.CodeInvocation;
+import com.blobcity.db.code.CodeInvocationCache;
 import com.blobcity.db.code.LoaderStore;
 import com.blobcity.db.code.RestrictedClassLoader;
 import com.blobcity.db.exceptions.ErrorCode;
@@ -44,6 +46,8 @@ public class FilterExecutorBean {
     private FilterStoreBean filterStore;
     @Autowired
     private LoaderStore loaderStore;
+    @Autowired
+    private CodeInvocationCache codeInvocationCache;
     // this is used to store instance of a filterClass with filterName so that we don't create a new filter everytime.
     private Map<String, Object> instanceMap;
     // this is used to store class of filterClass with filterName
@@ -68,9 +72,9 @@ public class FilterExecutorBean {
         }
         if( !filterStore.isPresent(appId, filterName) )
             throw new OperationException(ErrorCode.FILTER_NOT_LOADED, "No such filter found for given database");
-        RestrictedClassLoader blobCityLoader =  loaderStore.getNewLoader(appId);
+        String filterClassName = filterStore.getClass(appId, filterName);
+        RestrictedClassLoader blobCityLoader =  loaderStore.getLoaderForClass(appId, filterClassName);
         try {
-            String filterClassName = filterStore.getClass(appId, filterName);
             Class filterClass = blobCityLoader.loadClass(filterClassName);
             
             Object instance = filterClass.newInstance();
@@ -151,28 +155,11 @@ public class FilterExecutorBean {
         if( !instanceMap.containsKey(filterName) )
             createNewInstance(appId, filterName, null);
         else{
+            final CodeInvocation invocation = codeInvocationCache.get(appId, classMap.get(filterName), FilterFunction.MATCH.getName(), JSONObject.class);
             try {
-                Class filterClass = classMap.get(filterName);
-                Object instance = instanceMap.get(filterName);
-                Method method = filterClass.getDeclaredMethod(FilterFunction.MATCH.getName(), JSONObject.class);
-                return (Boolean) method.invoke(instance, rowObject);
-            } 
-            catch (NoSuchMethodException ex) {
-                logger.error(null, ex);
-                throw new OperationException(ErrorCode.FILTER_EXECUTION_ERROR, "No such method is defined for given filter");
-            }
-            catch(SecurityException ex){
-                logger.error(null, ex);
-                throw new OperationException(ErrorCode.FILTER_EXECUTION_ERROR, "Internal security error occured while executing filter");
-            }
-            catch (IllegalAccessException ex) {
-                logger.error(null, ex);
-                throw new OperationException(ErrorCode.FILTER_EXECUTION_ERROR, "Specified method does not have public access");
-            } catch (IllegalArgumentException ex) {
-                logger.error(null, ex);
-                throw new OperationException(ErrorCode.FILTER_INCORRECT_PARAMS, "Illegal arguments passed to method " + FilterFunction.MATCH.getName() );
-            } catch (InvocationTargetException ex) {
-                logger.error(null, ex);
+                return (Boolean) invocation.invoke(instanceMap.get(filterName), rowObject);
+            } catch (Throwable t) {
+                logger.error(null, t);
                 throw new OperationException(ErrorCode.FILTER_EXECUTION_ERROR, "Execution of filter method "+ FilterFunction.MATCH.getName() +" failed");
             }
         }
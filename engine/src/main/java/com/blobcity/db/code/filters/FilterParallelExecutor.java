@@ -16,14 +16,16 @@
 
 package com.blobcity.db.code.filters;
 
+import com.blobcity.db.code.CodeInvocation;
+import com.blobcity.db.code.CodeInvocationCache;
 import com.blobcity.db.code.LoaderStore;
 import com.blobcity.db.code.RestrictedClassLoader;
 import com.blobcity.db.exceptions.ErrorCode;
 import com.blobcity.db.exceptions.OperationException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,25 +44,44 @@ public class FilterParallelExecutor {
     private FilterStoreBean filterStore;
     @Autowired
     private LoaderStore loaderStore;
-    private Map<String, Object[]> classMap = new HashMap<>();
-    private Map<String, Object[]> instanceMap = new HashMap<>();
-    
-    
+    @Autowired
+    private CodeInvocationCache codeInvocationCache;
+
     /**
-     * this will create a new instance of a filter class and call method loadCriteria on the instance with given parameters
-     * 
+     * creates instances of a filter class for the workers of a parallel filter scan, with loadCriteria called on
+     * each of them. The instances are returned rather than stored, so any number of scans may run at once
+     *
      * @param appId : database id
      * @param filterName : filter name as defined in annotation
-     * @param number : no of instances to create for parallel processing
-     * @param params : arguments of function loadCriteria provided by user (type: varargs) 
+     * @param number : no of instances to create, one per worker
+     * @param params : arguments of function loadCriteria provided by user (type: varargs)
+     * @return one filter per instance, calling the match function of the instance
      * @throws OperationException : when there is some issue with either loading the class or running the methods inside it
      */
-    public void createNewInstance(String appId, String filterName, int number, Object[] params) throws OperationException{
+    public List<FilterScan.RecordFilter> createFilters(final String appId, final String filterName, final int number, final Object[] params) throws OperationException{
+        final Object[] instances = newInstances(appId, filterName, number, params);
+
+        final CodeInvocation invocation = codeInvocationCache.get(appId, instances[0].getClass(), FilterFunction.MATCH.getName(), JSONObject.class);
+        final List<FilterScan.RecordFilter> filters = new ArrayList<>(number);
+        for(Object instance : instances){
+            filters.add(record -> {
+                try {
+                    return (Boolean) invocation.invoke(instance, record);
+                } catch (Throwable t) {
+                    logger.error(null, t);
+                    throw new OperationException(ErrorCode.FILTER_EXECUTION_ERROR, "Execution of filter method "+ FilterFunction.MATCH.getName() +" failed");
+                }
+            });
+        }
+        return filters;
+    }
+
+    private Object[] newInstances(String appId, String filterName, int number, Object[] params) throws OperationException{
         if( !filterStore.isPresent(appId, filterName) )
             throw new OperationException(ErrorCode.FILTER_NOT_LOADED, "No such filter found for given database");
-        RestrictedClassLoader blobCityLoader =  loaderStore.getNewLoader(appId);
+        final String filterClassName = filterStore.getClass(appId, filterName);
+        RestrictedClassLoader blobCityLoader =  loaderStore.getLoaderForClass(appId, filterClassName);
         try {
-            Object[] classes = new Object[number];
             Object[] instances = new Object[number];
             // this is a work around when no parameters are passed by user for loadCriteria argument 
             // TODO: improve in future to accept null arguments
@@ -69,15 +90,13 @@ public class FilterParallelExecutor {
                 params[0] = 1;    
             }
             for(int i=0; i<number; i++){
-                Class filterClass = blobCityLoader.loadClass(filterStore.getClass(appId, filterName));
+                Class filterClass = blobCityLoader.loadClass(filterClassName);
                 Object instance = filterClass.newInstance();
                 Method method = filterClass.getDeclaredMethod( FilterFunction.LOAD.getName(), Object[].class);
                 method.invoke(instance, new Object[]{params});
-                classes[i] = filterClass;
                 instances[i] = instance;
             }
-            classMap.put(appId, classes);
-            instanceMap.put(appId, instances);
+            return instances;
         } catch (NoSuchMethodException ex) {
             logger.error(null, ex);
             throw new OperationException(ErrorCode.FILTER_EXECUTION_ERROR, "No such method is defined for given filter");
@@ -101,43 +120,4 @@ public class FilterParallelExecutor {
             throw new OperationException(ErrorCode.FILTER_EXECUTION_ERROR, "Error while creating instance of class");
         }
     }
-    
-    /**
-     * this function will call the match function of given filter for given record.
-     * 
-     * @param appId : database id
-     * @param filterName: filter name as defined in annotation
-     * @param rowObject : JSONObject of row which to be tested against the filter
-     * @param seq
-     * @return 
-     * @throws OperationException 
-     */
-    public boolean executeCheckMethod(final String appId, final String filterName, final JSONObject rowObject, final int seq) throws OperationException{
-        try {
-            Class filterClass = (Class) classMap.get(appId)[seq];
-            Object instance  = instanceMap.get(appId)[seq];
-            Method method = filterClass.getDeclaredMethod(FilterFunction.MATCH.getName(), JSONObject.class);
-            return (Boolean) method.invoke(instance, rowObject);
-        } 
-        catch (NoSuchMethodException ex) {
-            logger.error(null, ex);
-            throw new OperationException(ErrorCode.FILTER_EXECUTION_ERROR, "No such method is defined for given filter");
-        }
-        catch(SecurityException ex){
-            logger.error(null, ex);
-            throw new OperationException(ErrorCode.FILTER_EXECUTION_ERROR, "Internal security error occured while executing filter");
-        }
-        catch (IllegalAccessException ex) {
-            logger.error(null, ex);
-            throw new OperationException(ErrorCode.FILTER_EXECUTION_ERROR, "Specified method does not have public access");
-        } catch (IllegalArgumentException ex) {
-            logger.error(null, ex);
-            throw new OperationException(ErrorCode.FILTER_INCORRECT_PARAMS, "Illegal arguments passed to method " + FilterFunction.MATCH.getName() );
-        } catch (InvocationTargetException ex) {
-            logger.error(null, ex);
-            throw new OperationException(ErrorCode.FILTER_EXECUTION_ERROR, "Execution of filter method "+ FilterFunction.MATCH.getName() +" failed");
-        }
-    }
-    
-    
 }
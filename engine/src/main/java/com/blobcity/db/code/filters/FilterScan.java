@@ -0,0 +1,175 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.code.filters;
+
+import com.blobcity.db.exceptions.DbRuntimeException;
+import com.blobcity.db.exceptions.ErrorCode;
+import com.blobcity.db.exceptions.OperationException;
+import com.blobcity.db.sql.pipeline.ParallelScan;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Runs a filter over the records of a collection with several workers and streams out the primary keys of matching
+ * records as they are found. The records are read by a {@link ParallelScan}, and each record is tested by a filter
+ * instance no other worker is using at the time. Neither the keys of the collection nor the matching keys are ever
+ * held in full, and the scan is held back whenever the consumer falls behind.
+ *
+ * <p>
+ * Keys are produced in no particular order. The scan stops once the result limit is reached or when it is closed.
+ *
+ * @author sanketsarang
+ */
+public class FilterScan implements Iterator<String>, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(FilterScan.class.getName());
+
+    /* Most matching keys held while the consumer is behind */
+    private static final int QUEUE_CAPACITY = 4096;
+
+    /* Filter instances not in use by a worker. The scan runs no more workers than there are filters */
+    private final Queue<RecordFilter> filters;
+    private final RecordLoader loader;
+    private final long limit;
+    private final ParallelScan<String> scan;
+    private long count = 0;
+    private boolean limitReached = false;
+
+    /**
+     * Loads a record for a filter to test
+     */
+    @FunctionalInterface
+    public interface RecordLoader {
+
+        /**
+         * @param key primary key of the record
+         * @return the record; <code>null</code> if it no longer exists
+         * @throws OperationException if the record could not be read
+         */
+        JSONObject load(String key) throws OperationException;
+    }
+
+    /**
+     * A single instance of the filter, only ever called by one worker at a time
+     */
+    @FunctionalInterface
+    public interface RecordFilter {
+
+        boolean test(JSONObject record) throws OperationException;
+    }
+
+    /**
+     * Starts the workers of the scan
+     *
+     * @param keys primary keys of the records to test
+     * @param loader loads the record of a key
+     * @param filters filter instances; as many workers as there are instances run at once
+     * @param limit maximum number of keys to produce; 0 or less for no limit
+     * @param executor executor to run the workers on; may be shared with other scans
+     */
+    public FilterScan(final Iterator<String> keys, final RecordLoader loader, final List<RecordFilter> filters,
+            final long limit, final Executor executor) {
+        this.filters = new ConcurrentLinkedQueue<>(filters);
+        this.loader = loader;
+        this.limit = limit;
+        this.scan = new ParallelScan<>(keys, this::test, null, filters.size(), QUEUE_CAPACITY, executor);
+    }
+
+    /* Returns the key if the record matches, null otherwise */
+    private String test(final String key) {
+        final RecordFilter filter = filters.poll();
+        try {
+            final JSONObject record = loader.load(key);
+            return record != null && filter.test(record) ? key : null;
+        } catch (OperationException ex) {
+            throw new DbRuntimeException(ex);
+        } finally {
+            filters.add(filter);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException with the causing {@link OperationException} if the filter or the reading of
+     * records failed
+     */
+    @Override
+    public boolean hasNext() {
+        final boolean hasNext;
+        try {
+            hasNext = scan.hasNext();
+        } catch (DbRuntimeException ex) {
+            if (ex.getCause() instanceof OperationException) {
+                throw new IllegalStateException(ex.getCause().getMessage(), ex.getCause());
+            }
+            throw failure(ex);
+        } catch (RuntimeException ex) {
+            throw failure(ex);
+        }
+
+        if (hasNext && limit > 0 && count >= limit) {
+            limitReached = true;
+            close();
+            return false;
+        }
+        return hasNext;
+    }
+
+    private IllegalStateException failure(final RuntimeException ex) {
+        logger.error("Filter scan failed", ex);
+        final OperationException failure = new OperationException(ErrorCode.FILTER_EXECUTION_ERROR,
+                "Filter execution failed: " + ex.getMessage(), ex);
+        return new IllegalStateException(failure.getMessage(), failure);
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        count++;
+        return scan.next();
+    }
+
+    /**
+     * Checks whether the scan was stopped by the result limit, which is only the case if more records qualified than
+     * the limit permits
+     *
+     * @return <code>true</code> if the result limit was exceeded
+     */
+    public boolean isLimitReached() {
+        return limitReached;
+    }
+
+    /**
+     * Stops the scan. Workers stop after the record each is testing
+     */
+    @Override
+    public void close() {
+        scan.close();
+    }
+}
@@ -16,28 +16,34 @@
 
 package com.blobcity.db.code.triggers;
 
+import com.blobcity.db.code.CodeInvocation;
+import com.blobcity.db.code.CodeInvocationCache;
 import com.blobcity.db.code.LoaderStore;
-import com.blobcity.db.code.RestrictedClassLoader;
 import com.blobcity.db.exceptions.ErrorCode;
 import com.blobcity.db.exceptions.OperationException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.List;
 import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 /**
- * this class is used to execute various trigger specified by appId && triggerName
+ * this class is used to execute various trigger specified by appId && triggerName.
+ * Trigger methods are bound once through the {@link CodeInvocationCache} instead of being looked up on every record.
  * 
  * @author sanketsarang
  */
 @Component
 public class TriggerExecutorBean {
+    private static final Logger logger = LoggerFactory.getLogger(TriggerExecutorBean.class);
+
     @Autowired
     private TriggerStoreBean triggerStore;
     @Autowired
     private LoaderStore loaderStore;
+    @Autowired
+    private CodeInvocationCache codeInvocationCache;
     
     /**
      * execute the specified function of all triggers related to given app and table.
@@ -69,6 +75,35 @@ public class TriggerExecutorBean {
         List<String> activatedTriggers = triggerStore.getTriggers(appId, table, Boolean.TRUE);
         for(String trigger: activatedTriggers) executeTrigger(appId, table, trigger, function, oldObj, newObj);
     }
+
+    /**
+     * execute the specified function of all triggers related to given app and table for a batch of records
+     * (INSERT or DELETE). A trigger that declares the function with a single <code>List</code> parameter is called
+     * once for the whole batch, any other trigger once per record.
+     *
+     * @param appId : id of database, trigger is related to.
+     * @param table: table to which trigger is related.
+     * @param function: which trigger function to execute.
+     * @param jsonObjects: jsonObjects of the records being inserted or deleted
+     * @throws OperationException
+     */
+    public void executeTrigger( final String appId, final String table, final TriggerFunction function, List<JSONObject> jsonObjects) throws OperationException{
+        if(jsonObjects.isEmpty()) return;
+        List<String> activatedTriggers = triggerStore.getTriggers(appId, table, Boolean.TRUE);
+        for(String trigger: activatedTriggers) {
+            if( !triggerStore.isActivated(appId, trigger)) continue;
+            final CodeInvocation batch = codeInvocationCache.find(appId, trigger, () -> loadClass(appId, trigger), function.getFunctionName(), List.class);
+            if(batch != null) {
+                try {
+                    batch.invoke(batch.instance(), jsonObjects);
+                } catch (Throwable t) {
+                    throw executionError(trigger, t);
+                }
+            } else {
+                for(JSONObject jsonObj : jsonObjects) executeTrigger(appId, table, trigger, function, jsonObj);
+            }
+        }
+    }
     
     /**
      * 
@@ -80,20 +115,11 @@ public class TriggerExecutorBean {
      */
     private void executeTrigger( final String appId, final String table, final String triggerName, final TriggerFunction function, JSONObject jsonObj) throws OperationException{
         if( !triggerStore.isActivated(appId, triggerName)) return ;
-        RestrictedClassLoader blobCityClassLoader = loaderStore.getLoaderWithCreate(appId);
+        final CodeInvocation invocation = codeInvocationCache.get(appId, triggerName, () -> loadClass(appId, triggerName), function.getFunctionName(), JSONObject.class);
         try {
-            Class triggerClass = blobCityClassLoader.loadClass(triggerName);
-            // two ways to do this
-            // 1. loading directly from className
-            Object object = triggerClass.newInstance();
-            // loading from triggerStroreBean (basically doing the same thing)
-            //Object object = triggerStoreBean.getNewInstance(app, trigger);
-            Method method = triggerClass.getDeclaredMethod(function.getFunctionName(), JSONObject.class);
-            method.invoke(object, jsonObj);
-        } catch (ClassNotFoundException ex) {
-            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Could not load class for trigger: " + triggerName);
-        } catch (InstantiationException |  NoSuchMethodException | SecurityException | IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
-            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Internal error occured while loading triger: " + triggerName);
+            invocation.invoke(invocation.instance(), jsonObj);
+        } catch (Throwable t) {
+            throw executionError(triggerName, t);
         }
     }
     
@@ -108,22 +134,21 @@ public class TriggerExecutorBean {
      */
     private void executeTrigger( final String appId, final String table, final String triggerName, final TriggerFunction function, JSONObject oldObj, JSONObject newObj) throws OperationException{
         if( !triggerStore.isActivated(appId, triggerName)) return ;
-        RestrictedClassLoader blobCityClassLoader = loaderStore.getLoaderWithCreate(appId);
-        // get all activated triggers
+        final CodeInvocation invocation = codeInvocationCache.get(appId, triggerName, () -> loadClass(appId, triggerName), function.getFunctionName(), JSONObject.class, JSONObject.class);
         try {
-            Class triggerClass = blobCityClassLoader.loadClass(triggerName);
-            // two ways to do this
-            // 1. loading directly from className
-            Object object = triggerClass.newInstance();
-            // loading from triggerStroreBean (basically doing the same thing)
-            //Object object = triggerStoreBean.getNewInstance(app, trigger);
-            Method method = triggerClass.getDeclaredMethod(function.getFunctionName(), JSONObject.class, JSONObject.class );
-            method.invoke(object, oldObj, newObj);
-        } catch (ClassNotFoundException ex) {
-            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Could not load class for trigger: "+ triggerName);
-        } catch (InstantiationException | NoSuchMethodException | SecurityException | IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
-            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Internal error occured while loading triger: "+ triggerName);
-        } 
+            invocation.invoke(invocation.instance(), oldObj, newObj);
+        } catch (Throwable t) {
+            throw executionError(triggerName, t);
+        }
+    }
+
+    private Class<?> loadClass(final String appId, final String triggerName) throws ClassNotFoundException {
+        return loaderStore.getLoaderWithCreate(appId).loadClass(triggerName);
+    }
+
+    private OperationException executionError(final String triggerName, final Throwable t) {
+        logger.error("Trigger " + triggerName + " failed", t);
+        return new OperationException(ErrorCode.TRIGGER_EXECUTION_ERROR, "Error occured while executing trigger: " + triggerName);
     }
     
 }
@@ -26,4 +26,16 @@ public class ConfigProperties {
     public static final String LICENSE = "license";
     public static final String CLUSTER_NODES = "cluster-nodes";
     public static final String VERSION = "version";
+    public static final String COMMIT_LOG_SYNC_MODE = "commit-log-sync-mode";
+    public static final String COMMIT_LOG_SYNC_INTERVAL = "commit-log-sync-interval";
+    public static final String DATA_CACHE_SIZE = "data-cache-size";
+    public static final String INDEX_CACHE_SIZE = "index-cache-size";
+    public static final String QUERY_CACHE_SIZE = "query-cache-size";
+    public static final String STATEMENT_CACHE_SIZE = "statement-cache-size";
+    public static final String DATA_PLACEMENT = "data-placement";
+    public static final String INDEX_BUILD_THREADS = "index-build-threads";
+    public static final String INDEX_BUILD_RATE = "index-build-rate";
+    public static final String INDEX_AUTO_BUILD = "index-auto-build";
+    public static final String SCAN_PARALLELISM = "scan-parallelism";
+    public static final String FILTER_RESULT_LIMIT = "filter-result-limit";
 }
@@ -41,6 +41,7 @@ public final class BSql {
     public static final String CURRENT_COMMIT_LOG_FILENAME = "commit.log";
     public static final String CURRENT_COMMIT_LOG_FILE = COMMIT_LOGS_FOLDER + "commit.log";
     public static final String INDEX_FOLDER = SEPERATOR + "index" + SEPERATOR;
+    public static final String SEGMENT_FOLDER = SEPERATOR + "segments" + SEPERATOR;
     public static final String META_FOLDER = SEPERATOR + "meta" + SEPERATOR;
     public static final String OPERATION_FOLDER = SEPERATOR + "ops" + SEPERATOR;
     public static final String DB_HOT_DEPLOY_FOLDER = SEPERATOR + "deploy-db-hot" + SEPERATOR;
@@ -52,6 +53,9 @@ public final class BSql {
     public static final String COLUMN_MAPPING_FILE = SEPERATOR + "meta" + SEPERATOR + "column-mapping.bdb";
     public static final String GLOBAL_DELETE_FOLDER = BSQL_BASE_FOLDER + "global-del" + SEPERATOR;
     public static final String GLOBAL_LIVE_FOLDER = BSQL_BASE_FOLDER + "global-live" + SEPERATOR;
+    public static final String JOIN_SPILL_FOLDER = BSQL_BASE_FOLDER + "join-spill" + SEPERATOR;
+    public static final String IMPORT_SPILL_FOLDER = BSQL_BASE_FOLDER + "import-spill" + SEPERATOR;
+    public static final String INDEX_SPILL_FOLDER = BSQL_BASE_FOLDER + "index-spill" + SEPERATOR;
     public static final String CONFIF_FILE = BSQL_BASE_FOLDER + "config.json";
     public static final String SERVER_STATUS_FILE = BSQL_BASE_FOLDER + "status.conf";
     public static final String MANIFEST_FILE_NAME = "db-code.mf";
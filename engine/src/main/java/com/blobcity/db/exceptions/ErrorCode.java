@@ -55,6 +55,7 @@ public enum ErrorCode {
     FILTER_INCORRECT_PARAMS("FILTER_INCORRECT_PARAMS", "Incorrect params provided"),
     FILTER_LOAD_ERROR("FILTER_LOAD_ERROR", "Filter Load Error"),
     FILTER_NOT_LOADED("FILTER_NOT_LOADED", "Specified filter is not loaded"),
+    FILTER_RESULT_LIMIT_EXCEEDED("FILTER_RESULT_LIMIT_EXCEEDED", "Filter matched more records than the result limit permits"),
     IMPORT_FILE_NOT_AVAILABLE("IMPORT_FILE_NOT_AVAILABLE", "Import file not available"),
     IMPORT_FILE_HEADER_MISSING("IMPORT_FILE_HEADER_MISSING", "Header row missing in import file"),
     INADEQUATE_FILE_SYSTEM_PERMISSION("DBIEX", "Internal error: Inadequate file system permission"),
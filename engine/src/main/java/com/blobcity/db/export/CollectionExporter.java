@@ -0,0 +1,218 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.export;
+
+import au.com.bytecode.opencsv.CSVWriter;
+import com.blobcity.db.bsql.BSqlDataManager;
+import com.blobcity.db.exceptions.ErrorCode;
+import com.blobcity.db.exceptions.OperationException;
+import com.blobcity.db.schema.Schema;
+import com.blobcity.db.schema.beans.SchemaStore;
+import com.blobcity.db.sql.pipeline.ParallelScan;
+import com.blobcity.db.sql.pipeline.ScanExecutor;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPOutputStream;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * <p>
+ * Writes out all records of a collection as CSV or newline delimited JSON. The records are read by a
+ * {@link ParallelScan} on the {@link ScanExecutor}, whose workers encode each record into its line of output text. The
+ * lines are written by the calling thread, which is the only one to write to the output stream. Neither keys nor
+ * records are therefore ever collected in full, and memory use is bounded by the queue capacity of the scan
+ * irrespective of the size of the collection.
+ *
+ * <p>
+ * Records are written in no particular order. A record that cannot be read, such as one deleted while the export
+ * runs, is skipped and reported to the caller on the calling thread.
+ *
+ * @author sanketsarang
+ */
+@Component
+public class CollectionExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(CollectionExporter.class.getName());
+
+    /* Most encoded lines held while the writer is behind */
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long PROGRESS_INTERVAL = 100000;
+
+    @Autowired
+    private BSqlDataManager dataManager;
+    @Autowired
+    private SchemaStore schemaStore;
+    @Autowired
+    @Lazy
+    private ScanExecutor scanExecutor;
+
+    /**
+     * Notified of every record that could not be exported
+     */
+    @FunctionalInterface
+    public interface FailureListener {
+
+        /**
+         * @param key primary key of the record
+         * @param cause why the record could not be read
+         */
+        void onFailure(String key, OperationException cause);
+    }
+
+    /**
+     * Exports all records of a collection
+     *
+     * @param datastore name of the datastore
+     * @param collection name of the collection
+     * @param exportType format to write; {@link ExportType#CSV} starts with a line of column names, with the primary
+     * key as the first column
+     * @param compress <code>true</code> to gzip the output
+     * @param outputStream stream to write to. Is flushed but not closed
+     * @param progress notified of the number of records written every {@value #PROGRESS_INTERVAL} records;
+     * <code>null</code> if not required
+     * @param failures notified of each record that is skipped as it could not be read; <code>null</code> if not
+     * required
+     * @return the number of records written
+     * @throws OperationException if the collection could not be read
+     * @throws IOException if writing to the output stream fails
+     */
+    public long export(final String datastore, final String collection, final ExportType exportType, final boolean compress,
+            final OutputStream outputStream, final LongConsumer progress, final FailureListener failures)
+            throws OperationException, IOException {
+        final List<String> columns = exportType == ExportType.CSV ? columnOrder(datastore, collection) : null;
+        final Set<String> columnSet = columns == null ? null : new HashSet<>(columns);
+        final Iterator<String> keys = dataManager.selectAllKeysAsStream(datastore, collection);
+
+        final GZIPOutputStream gzipOutputStream = compress ? new GZIPOutputStream(outputStream, BUFFER_SIZE) : null;
+        final OutputStream out = new BufferedOutputStream(compress ? gzipOutputStream : outputStream, BUFFER_SIZE);
+        if (columns != null) {
+            out.write(encodeCsv(columns.toArray(new String[columns.size()])).getBytes(StandardCharsets.UTF_8));
+        }
+
+        long count = 0;
+        final ParallelScan<Line> scan = new ParallelScan<>(keys, key -> encode(datastore, collection, key, columns, columnSet),
+                null, scanExecutor.parallelism(0), QUEUE_CAPACITY, scanExecutor);
+        try {
+            while (scan.hasNext()) {
+                final Line line = scan.next();
+                if (line.failure != null) {
+                    if (failures != null) {
+                        failures.onFailure(line.key, line.failure);
+                    }
+                    continue;
+                }
+
+                out.write(line.text.getBytes(StandardCharsets.UTF_8));
+                count++;
+                if (progress != null && count % PROGRESS_INTERVAL == 0) {
+                    progress.accept(count);
+                }
+            }
+        } catch (RuntimeException ex) {
+            logger.error("Export of " + datastore + "." + collection + " failed", ex);
+            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR,
+                    "Export of " + datastore + "." + collection + " failed: " + ex.getMessage(), ex);
+        } finally {
+            scan.close();
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Export of " + datastore + "." + collection + " was interrupted");
+        }
+
+        out.flush();
+        if (gzipOutputStream != null) {
+            gzipOutputStream.finish();
+        }
+        outputStream.flush();
+        if (progress != null) {
+            progress.accept(count);
+        }
+        return count;
+    }
+
+    private List<String> columnOrder(final String datastore, final String collection) throws OperationException {
+        final Schema schema = schemaStore.getSchema(datastore, collection);
+        final List<String> columnOrder = new ArrayList<>();
+
+        /* Make primary key first column */
+        columnOrder.add(schema.getPrimary());
+        for (String columnName : schema.getColumnMap().keySet()) {
+            if (!columnOrder.contains(columnName)) {
+                columnOrder.add(columnName);
+            }
+        }
+        return columnOrder;
+    }
+
+    /* Called by the workers of the scan. Columns are null for NDJSON */
+    private Line encode(final String datastore, final String collection, final String key, final List<String> columns,
+            final Set<String> columnSet) {
+        final JSONObject record;
+        try {
+            record = dataManager.select(datastore, collection, key, columnSet, null, null);
+        } catch (OperationException ex) {
+            logger.warn("Record with pk " + key + " in " + datastore + "." + collection + " could not be exported", ex);
+            return new Line(key, null, ex);
+        }
+
+        if (columns == null) {
+            return new Line(key, record.toString() + '\n', null);
+        }
+        final String[] values = new String[columns.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = record.has(columns.get(i)) ? record.get(columns.get(i)).toString() : "";
+        }
+        return new Line(key, encodeCsv(values), null);
+    }
+
+    private static String encodeCsv(final String[] values) {
+        final StringWriter stringWriter = new StringWriter();
+        new CSVWriter(stringWriter).writeNext(values);
+        return stringWriter.toString();
+    }
+
+    /**
+     * Encoded text of a record, or why the record could not be read
+     */
+    private static class Line {
+
+        private final String key;
+        private final String text;
+        private final OperationException failure;
+
+        private Line(final String key, final String text, final OperationException failure) {
+            this.key = key;
+            this.text = text;
+            this.failure = failure;
+        }
+    }
+}
@@ -16,14 +16,10 @@
 
 package com.blobcity.db.export;
 
-import au.com.bytecode.opencsv.CSVWriter;
-import com.blobcity.db.bsql.BSqlDataManager;
 import com.blobcity.db.exceptions.ErrorCode;
 import com.blobcity.db.exceptions.OperationException;
 import com.blobcity.db.importer.CsvImporter;
 import com.blobcity.db.operations.*;
-import com.blobcity.db.schema.Schema;
-import com.blobcity.db.schema.beans.SchemaStore;
 import com.blobcity.db.sql.util.PathUtil;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -36,9 +32,8 @@ import org.springframework.scheduling.annotation.AsyncResult;
 import org.springframework.stereotype.Component;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.concurrent.Future;
 
 /**
@@ -53,9 +48,7 @@ public class CsvExporter implements Operable {
     @Autowired
     private OperationsFileStore operationsFileStore;
     @Autowired
-    private BSqlDataManager dataManager;
-    @Autowired
-    private SchemaStore schemaStore;
+    private CollectionExporter collectionExporter;
     @Autowired
     private OperationLogger operationLogger;
 
@@ -74,6 +67,7 @@ public class CsvExporter implements Operable {
     @Async
     public Future<OperationStatus> start(String app, String table, String opid, OperationLogLevel logLevel) throws OperationException {
         String exportFileLocation;
+        ExportType exportType;
         JSONObject jsonObject;
         operationsFileStore.load(app, table, opid);
         jsonObject = operationsFileStore.getAsJson(opid);
@@ -82,6 +76,7 @@ public class CsvExporter implements Operable {
 
             /* Export file location */
             exportFileLocation = PathUtil.exportFile(app, jsonObject.getString("file"));
+            exportType = ExportType.fromString(jsonObject.optString("export-type", ExportType.CSV.getTypeCode()));
         } catch (JSONException ex) {
             LoggerFactory.getLogger(CsvImporter.class.getName()).error(null, ex);
             throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR);
@@ -91,7 +86,8 @@ public class CsvExporter implements Operable {
         updateField(opid, OperationProperties.STATUS, OperationStatus.RUNNING.getStatusCode());
         updateField(opid, OperationProperties.TIME_STARTED, System.currentTimeMillis());
         updateField(opid, OperationProperties.TIME_STOPPED, -1);
-        return run(app, table, opid, exportFileLocation);
+        return run(app, table, opid, exportFileLocation, exportType == null ? ExportType.CSV : exportType,
+                jsonObject.optBoolean(OperationProperties.COMPRESS, false));
     }
 
     @Override
@@ -136,98 +132,27 @@ public class CsvExporter implements Operable {
         operationsFileStore.update(opid, key, value, true);
     }
 
-    private Future<OperationStatus> run(final String app, final String table, final String opid, final String exportFilePath) {
-        return run(app, table, opid, exportFilePath, false);
-    }
-    
-    private Future<OperationStatus> run(final String app, final String table, final String opid, final String exportFilePath, boolean inMemory) {
-        String key;
-        Schema schema;
-        List<String> columnOrder = new ArrayList<>();
-        List<String> values;
-        File file = new File(exportFilePath);
-
-        /* Read and proces schema */
-        try {
-            schema = schemaStore.getSchema(app, table);
-
-            /* Make primary key first column */
-            columnOrder.add(schema.getPrimary());
-
-            /* Add all other columns in any arbitrary order */
-            for (String columnName : schema.getColumnMap().keySet()) {
-                if (!columnOrder.contains(columnName)) {
-                    columnOrder.add(columnName);
-                }
-            }
-        } catch (OperationException ex) {
-            try {
-                operationLogger.delayedLog(OperationLogLevel.ERROR, opid, ex.getMessage());
-            } catch (OperationException ex1) {
-                logger.error(null, ex);
-            }
-            onError(opid);
-            return new AsyncResult<>(OperationStatus.ERROR);
-        }
-
-        try (CSVWriter writer = new CSVWriter(new FileWriter(file))) {
+    private Future<OperationStatus> run(final String app, final String table, final String opid, final String exportFilePath,
+            final ExportType exportType, final boolean compress) {
 
-            /* Write file line for column names */
-            writer.writeNext(columnOrder.toArray(new String[columnOrder.size()]));
-
-            /* Iterate through all records in the table */
-            long count = 0;
-            Iterator<String> iterator = dataManager.selectAllKeysAsStream(app, table);
-            List<JSONObject> dataCache = new ArrayList<>(10000);
-            values = new ArrayList<>(columnOrder.size());
-            while (iterator.hasNext()) {
-                key = iterator.next();
+        /* Records are encoded in parallel and streamed to the file, with progress recorded once every 100000 records */
+        try (OutputStream outputStream = Files.newOutputStream(Paths.get(exportFilePath))) {
+            final long count = collectionExporter.export(app, table, exportType, compress, outputStream, records -> {
                 try {
-                    dataCache.add(dataManager.select(app, table, key));
+                    operationsFileStore.update(opid, OperationProperties.RECORDS, records, false);
                 } catch (OperationException ex) {
+                    logger.error(null, ex);
+                }
+            }, (key, cause) -> {
+                try {
                     operationLogger.delayedLog(OperationLogLevel.ERROR, opid, "Record with pk " + key
                             + " could not be exported due to the following cause:");
-                    logException(OperationLogLevel.ERROR, opid, ex);
-                    continue;
-                }
-
-                /* Periodically dump data to file */
-                if (dataCache.size() == 10000) {
-                    for (JSONObject jsonObject : dataCache) {
-                        /* Populate values array */
-                        values.clear();
-                        for (String column : columnOrder) {
-                            if (jsonObject.has(column)) {
-                                values.add(jsonObject.get(column).toString());
-                            } else {
-                                values.add("");
-                            }
-                        }
-
-                        writer.writeNext(values.toArray(new String[values.size()]));
-                        count++;
-                        operationsFileStore.update(opid, OperationProperties.RECORDS, count, false);
-                    }
-                    dataCache.clear();
-                }
-            }
-
-            /* dump any remaining cached records */
-            for (JSONObject jsonObject : dataCache) {
-                /* Populate values array */
-                values = new ArrayList<>(columnOrder.size());
-                for (String column : columnOrder) {
-                    if (jsonObject.has(column)) {
-                        values.add(jsonObject.get(column).toString());
-                    } else {
-                        values.add("");
-                    }
+                } catch (OperationException ex) {
+                    logger.error(null, ex);
                 }
-
-                writer.writeNext(values.toArray(new String[values.size()]));
-                count++;
-                operationsFileStore.update(opid, OperationProperties.RECORDS, count, false);
-            }
+                logException(OperationLogLevel.ERROR, opid, cause);
+            });
+            logger.info("Exported {} records of {}.{} to {}", count, app, table, exportFilePath);
 
             onComplete(opid);
             return new AsyncResult<>(OperationStatus.COMPLETED);
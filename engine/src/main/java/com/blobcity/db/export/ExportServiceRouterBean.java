@@ -28,6 +28,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * @author sanketsarang
@@ -36,6 +37,8 @@ public class ExportServiceRouterBean implements ExportServiceRouter{
 
     @Autowired
     private ExportProcedureStore exportProcedureStore;
+    @Autowired
+    private CollectionExporter collectionExporter;
 
     @Override
     public GenericExportResponse export(final String ds, final String spName, final ExportType exportType, final String paramString) {
@@ -71,4 +74,26 @@ public class ExportServiceRouterBean implements ExportServiceRouter{
 
         return new GenericExportResponse("error.txt", new ByteArrayInputStream("Nothing to export".getBytes()));
     }
+
+    @Override
+    public void exportCollection(final String ds, final String collection, final ExportType exportType, final boolean compress,
+            final OutputStream outputStream) throws IOException {
+        final com.blobcity.db.export.ExportType format;
+        switch (exportType) {
+            case CSV:
+                format = com.blobcity.db.export.ExportType.CSV;
+                break;
+            case JSON:
+                format = com.blobcity.db.export.ExportType.NDJSON;
+                break;
+            default:
+                throw new IOException("Collections cannot be exported as " + exportType);
+        }
+
+        try {
+            collectionExporter.export(ds, collection, format, compress, outputStream, null, null);
+        } catch (OperationException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
 }
@@ -22,7 +22,8 @@ package com.blobcity.db.export;
  */
 public enum ExportType {
 
-    CSV("CSV");
+    CSV("CSV"),
+    NDJSON("NDJSON");
     private String typeCode;
 
     ExportType(String typeCode) {
@@ -0,0 +1,503 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.importer;
+
+import au.com.bytecode.opencsv.CSVReader;
+import com.blobcity.db.bsql.BSqlCollectionManager;
+import com.blobcity.db.cache.QueryResultCache;
+import com.blobcity.db.code.CodeExecutor;
+import com.blobcity.db.code.triggers.TriggerFunction;
+import com.blobcity.db.constants.BSql;
+import com.blobcity.db.exceptions.ErrorCode;
+import com.blobcity.db.exceptions.OperationException;
+import com.blobcity.db.indexing.IndexFactory;
+import com.blobcity.db.indexing.OnlineIndexBuilder;
+import com.blobcity.db.lang.columntypes.FieldTypeFactory;
+import com.blobcity.db.operations.OperationLogLevel;
+import com.blobcity.db.operations.OperationLogger;
+import com.blobcity.db.operations.OperationProperties;
+import com.blobcity.db.operations.OperationsFileStore;
+import com.blobcity.db.schema.AutoDefineTypes;
+import com.blobcity.db.schema.Column;
+import com.blobcity.db.schema.ColumnMapping;
+import com.blobcity.db.schema.IndexTypes;
+import com.blobcity.db.schema.Schema;
+import com.blobcity.db.schema.beans.SchemaManager;
+import com.blobcity.db.schema.beans.SchemaStore;
+import com.blobcity.db.sql.planner.StatisticsStore;
+import com.blobcity.db.storage.BSqlFileManager;
+import com.blobcity.db.tableau.TableauPublishStore;
+import com.blobcity.db.util.Performance;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * <p>
+ * Bulk loads a CSV file into an on-disk collection. The file is read sequentially and split into chunks of complete
+ * records, which are parsed by a pool of workers in parallel with the reading of the next chunks. Each worker converts
+ * the rows of its chunk directly to the internal record format and writes them to storage, bypassing the per record
+ * insert path.
+ *
+ * <p>
+ * Index entries are not written as records are loaded. They are collected per indexed column, sorted externally, and
+ * applied to the index in value order in a single pass once the load ends, including when it fails or is stopped,
+ * so that every record written is indexed. Progress is reported to the operation at a coarse interval rather than per
+ * row.
+ *
+ * <p>
+ * Values of columns without an index are handed to the {@link OnlineIndexBuilder} as records are written, so that an
+ * index build started while the load is running catches up with records loaded after its snapshot of keys was taken.
+ * Insert triggers are executed once per chunk of rows rather than once per row, so a trigger declaring a batch
+ * signature is called with all rows of the chunk.
+ *
+ * @author sanketsarang
+ */
+@Component
+public class CsvBulkLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(CsvBulkLoader.class.getName());
+
+    /* Number of characters of the file parsed together by a worker */
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+
+    /* Number of index entries of a column held in memory before being spilled to disk as a sorted run */
+    private static final int INDEX_RUN_SIZE = 1000000;
+
+    /* Minimum interval in milliseconds between progress updates of the operation */
+    private static final long PROGRESS_INTERVAL = 5000;
+
+    /* Maximum number of row errors written to the operation log */
+    private static final int MAX_LOGGED_ERRORS = 1000;
+
+    @Autowired
+    @Lazy
+    private BSqlCollectionManager collectionManager;
+    @Autowired
+    private BSqlFileManager fileManager;
+    @Autowired
+    private SchemaManager schemaManager;
+    @Autowired
+    @Lazy
+    private IndexFactory indexFactory;
+    @Autowired
+    @Lazy
+    private OnlineIndexBuilder onlineIndexBuilder;
+    @Autowired
+    private OperationsFileStore operationsFileStore;
+    @Autowired
+    private OperationLogger operationLogger;
+    @Autowired
+    @Lazy
+    private StatisticsStore statisticsStore;
+    @Lazy
+    @Autowired
+    private QueryResultCache queryResultCache;
+    @Lazy
+    @Autowired
+    private TableauPublishStore tableauPublishStore;
+    @Lazy
+    @Autowired
+    private CodeExecutor codeExecutor;
+
+    /**
+     * Loads all rows of a CSV file into a collection. The first row of the file must hold the column names. Columns not
+     * present in the schema of the collection are added as string columns.
+     *
+     * @param ds name of datastore
+     * @param collection name of collection
+     * @param opid id of the import operation, to which progress is reported
+     * @param fileLocation absolute path of the CSV file
+     * @return <code>true</code> if all rows were loaded; <code>false</code> if the load was stopped by interrupting
+     * the calling thread
+     * @throws OperationException if the collection is in-memory, or the file or storage cannot be read or written
+     */
+    public boolean load(final String ds, final String collection, final String opid, final String fileLocation) throws OperationException {
+        if (collectionManager.isInMemory(ds, collection)) {
+            throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "Bulk load is supported only for on-disk collections");
+        }
+
+        /* Unindexed columns are resolved once for the whole load, so the load is a single write to index builds */
+        try (OnlineIndexBuilder.Writer writer = onlineIndexBuilder.beginWrite()) {
+            return loadFile(ds, collection, opid, fileLocation);
+        }
+    }
+
+    private boolean loadFile(final String ds, final String collection, final String opid, final String fileLocation) throws OperationException {
+
+        final long startTime = System.currentTimeMillis();
+        final int threads = Performance.THREAD_POOL_SIZE;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final Load load = new Load(ds, collection);
+        boolean completed = false;
+        boolean indexed = false;
+        try (Reader reader = new FileReader(fileLocation)) {
+            final CsvChunkReader chunkReader = new CsvChunkReader(reader, CHUNK_SIZE);
+            final String[] header = parseHeader(chunkReader.nextRecord());
+            prepare(load, header);
+            logger.debug("Bulk loading {} into {}.{} with {} workers", fileLocation, ds, collection, threads);
+
+            /* At most two chunks per worker are held in memory, so reading waits for parsing to catch up */
+            final int maxInFlight = threads * 2;
+            final Semaphore inFlight = new Semaphore(maxInFlight);
+            final AtomicReference<OperationException> failure = new AtomicReference<>();
+            long lastProgress = startTime;
+            try {
+                String chunk;
+                while (failure.get() == null && (chunk = chunkReader.next()) != null) {
+                    inFlight.acquire();
+                    final String records = chunk;
+                    executor.execute(() -> {
+                        try {
+                            loadChunk(load, records);
+                        } catch (OperationException ex) {
+                            failure.compareAndSet(null, ex);
+                        } catch (RuntimeException ex) {
+                            failure.compareAndSet(null, new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Bulk load failed", ex));
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+
+                    if (System.currentTimeMillis() - lastProgress >= PROGRESS_INTERVAL) {
+                        reportProgress(opid, load);
+                        lastProgress = System.currentTimeMillis();
+                    }
+                }
+                inFlight.acquire(maxInFlight);
+            } catch (InterruptedException ex) {
+                logger.info("Bulk load of {}.{} (opid={}) stopped after {} records", ds, collection, opid, load.loaded.get());
+                return false;
+            }
+
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+            reportProgress(opid, load);
+            logger.debug("Loaded {} records into {}.{} in {} ms. Building indexes", load.loaded.get(), ds, collection,
+                    System.currentTimeMillis() - startTime);
+
+            indexed = true;
+            buildIndexes(load);
+            completed = true;
+            logger.info("Bulk load of {} records into {}.{} completed in {} ms ({} rows failed)", load.loaded.get(), ds,
+                    collection, System.currentTimeMillis() - startTime, load.failed.get());
+            return true;
+        } catch (FileNotFoundException ex) {
+            throw new OperationException(ErrorCode.IMPORT_FILE_NOT_AVAILABLE, "Import file not found: " + fileLocation);
+        } catch (IOException ex) {
+            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Could not read import file: " + fileLocation, ex);
+        } finally {
+            awaitWorkers(executor);
+            if (!indexed && load.loaded.get() > 0) {
+                /* Records written before the load failed or was stopped stay in the collection, so they must be indexed */
+                try {
+                    buildIndexes(load);
+                } catch (OperationException ex) {
+                    logger.error("Failed to index records loaded into " + ds + "." + collection + " before the load stopped", ex);
+                }
+            }
+            load.sorters.values().forEach(IndexEntrySorter::close);
+            if (load.loaded.get() > 0) {
+                statisticsStore.invalidate(ds, collection);
+                queryResultCache.invalidate(ds, collection);
+                tableauPublishStore.notifyDataChange(ds, collection);
+            }
+            if (!completed) {
+                reportProgress(opid, load);
+            }
+        }
+    }
+
+    /**
+     * Lets the workers finish the chunks they were handed, as interrupting a worker could leave a record half written
+     */
+    private static void awaitWorkers(final ExecutorService executor) {
+        executor.shutdown();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    break;
+                }
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String[] parseHeader(final String headerRecord) throws OperationException {
+        if (headerRecord == null) {
+            throw new OperationException(ErrorCode.IMPORT_FILE_HEADER_MISSING);
+        }
+        try (CSVReader csvReader = new CSVReader(new StringReader(headerRecord))) {
+            final String[] header = csvReader.readNext();
+            if (header == null || header.length == 0) {
+                throw new OperationException(ErrorCode.IMPORT_FILE_HEADER_MISSING);
+            }
+            return header;
+        } catch (IOException ex) {
+            throw new OperationException(ErrorCode.IMPORT_FILE_HEADER_MISSING);
+        }
+    }
+
+    /**
+     * Adds the columns of the file missing in the schema with a single schema write, and resolves the internal names of
+     * the columns, the auto-defined columns and the indexed columns once for all rows
+     */
+    private void prepare(final Load load, final String[] header) throws OperationException {
+        final Schema schema = SchemaStore.getInstance().getSchema(load.ds, load.collection);
+        boolean schemaChanged = false;
+        for (String columnName : header) {
+            if (!schema.getColumnMap().containsKey(columnName)) {
+                schema.getColumnMap().put(columnName, new Column(columnName, FieldTypeFactory.fromString("string"),
+                        IndexTypes.NONE, AutoDefineTypes.NONE));
+                schemaChanged = true;
+            }
+        }
+        if (schemaChanged) {
+            try {
+                schemaManager.writeSchema(load.ds, load.collection, schema, true);
+            } catch (JSONException ex) {
+                logger.error(null, ex);
+                throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "An internal operation error occurred");
+            }
+        }
+
+        final ColumnMapping mapping = SchemaStore.getInstance().getColumnMapping(load.ds, load.collection);
+        load.internalNames = new String[header.length];
+        for (int i = 0; i < header.length; i++) {
+            load.internalNames[i] = mapping.getInternalName(header[i]);
+        }
+        load.primary = mapping.getInternalName(schema.getPrimary());
+
+        for (Column column : schema.getColumnMap().values()) {
+            final String internalName = mapping.getInternalName(column.getName());
+            if (column.getAutoDefineType() != AutoDefineTypes.NONE) {
+                load.autoDefined.put(internalName, column.getAutoDefineType());
+            }
+            if (column.getName().equals(schema.getPrimary())) {
+                continue;
+            }
+            if (column.getIndexType() != IndexTypes.NONE || onlineIndexBuilder.isBuilding(load.ds, load.collection, column.getName())) {
+                load.sorters.put(internalName, new IndexEntrySorter(column.getName(), INDEX_RUN_SIZE, Paths.get(BSql.IMPORT_SPILL_FOLDER)));
+                load.indexedNames.put(internalName, column.getName());
+            } else {
+                load.unindexedNames.put(internalName, column.getName());
+            }
+        }
+    }
+
+    /**
+     * Parses a chunk of rows, writes every row as a record and hands the index entries of the chunk to the sorters
+     */
+    private void loadChunk(final Load load, final String chunk) throws OperationException {
+        final List<JSONObject> records = new ArrayList<>();
+        try (CSVReader csvReader = new CSVReader(new StringReader(chunk))) {
+            String[] items;
+            while ((items = csvReader.readNext()) != null) {
+                if (items.length == 1 && items[0].isEmpty()) {
+                    continue; //blank line
+                }
+                records.add(toInternal(load, items));
+            }
+        } catch (IOException ex) {
+            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Could not parse CSV rows", ex);
+        }
+
+        codeExecutor.executeTrigger(load.ds, load.collection, TriggerFunction.BEFORE_INSERT, records);
+
+        final Map<String, List<String[]>> entries = new HashMap<>();
+        final List<JSONObject> written = new ArrayList<>(records.size());
+        for (JSONObject record : records) {
+            final String pk = record.optString(load.primary, null);
+            if (pk == null || pk.isEmpty()) {
+                load.fail("Row " + record + " has an empty primary key");
+                continue;
+            }
+
+            try {
+                fileManager.insert(load.ds, load.collection, pk, record.toString());
+            } catch (OperationException ex) {
+                load.fail("Row with primary key " + pk + " not imported: " + ex.getMessage());
+                continue;
+            }
+
+            if (onlineIndexBuilder.hasBuilds()) {
+                captureUnindexed(load, record, pk);
+            }
+            for (String internalName : load.sorters.keySet()) {
+                if (record.has(internalName)) {
+                    entries.computeIfAbsent(internalName, name -> new ArrayList<>())
+                            .add(new String[]{record.get(internalName).toString(), pk});
+                }
+            }
+            written.add(record);
+            load.loaded.incrementAndGet();
+        }
+
+        for (Map.Entry<String, List<String[]>> entry : entries.entrySet()) {
+            load.sorters.get(entry.getKey()).add(entry.getValue());
+        }
+
+        codeExecutor.executeTrigger(load.ds, load.collection, TriggerFunction.AFTER_INSERT, written);
+    }
+
+    /**
+     * Hands the values of unindexed columns of a written record to any index build started after the load began. The
+     * record is written first, so a build registered before the write sees the value here and a build registered
+     * after it finds the record in its snapshot.
+     */
+    private void captureUnindexed(final Load load, final JSONObject record, final String pk) {
+        for (Map.Entry<String, String> entry : load.unindexedNames.entrySet()) {
+            if (record.has(entry.getKey())) {
+                onlineIndexBuilder.capture(load.ds, load.collection, entry.getValue(), record.get(entry.getKey()).toString(), pk, true);
+            }
+        }
+    }
+
+    private JSONObject toInternal(final Load load, final String[] items) {
+        final JSONObject record = new JSONObject();
+        final int columns = Math.min(items.length, load.internalNames.length);
+        for (int i = 0; i < columns; i++) {
+            record.put(load.internalNames[i], items[i]);
+        }
+
+        for (Map.Entry<String, AutoDefineTypes> entry : load.autoDefined.entrySet()) {
+            switch (entry.getValue()) {
+                case UUID:
+                    record.put(entry.getKey(), UUID.randomUUID().toString());
+                    break;
+                case TIMESTAMP:
+                    record.put(entry.getKey(), System.currentTimeMillis());
+                    break;
+            }
+        }
+
+        if (!record.has(load.primary)) {
+            record.put(load.primary, UUID.randomUUID().toString());
+        }
+        return record;
+    }
+
+    /**
+     * Applies the sorted index entries of every indexed column, one column per worker. The index type of a column is
+     * read again, so that entries of a column whose online index build completed during the load go to the index.
+     */
+    private void buildIndexes(final Load load) throws OperationException {
+        final AtomicReference<OperationException> failure = new AtomicReference<>();
+        load.sorters.entrySet().parallelStream().forEach(entry -> {
+            final String column = load.indexedNames.get(entry.getKey());
+            final long start = System.currentTimeMillis();
+            final AtomicLong count = new AtomicLong();
+            try {
+                final Column schemaColumn = SchemaStore.getInstance().getSchema(load.ds, load.collection).getColumn(column);
+                final IndexTypes indexType = schemaColumn == null ? IndexTypes.NONE : schemaColumn.getIndexType();
+                entry.getValue().forEachSorted((value, pk) -> {
+                    count.incrementAndGet();
+                    if (indexType == IndexTypes.NONE) {
+                        onlineIndexBuilder.capture(load.ds, load.collection, column, value, pk, true);
+                        return;
+                    }
+                    try {
+                        indexFactory.getStrategy(indexType).index(load.ds, load.collection, column, value, pk);
+                    } catch (OperationException ex) {
+                        logger.debug("Could not index value {} of column {} for record {}", value, column, pk);
+                    }
+                });
+                logger.debug("Indexed {} entries of column {} of {}.{} in {} ms", count.get(), column, load.ds,
+                        load.collection, System.currentTimeMillis() - start);
+            } catch (OperationException ex) {
+                failure.compareAndSet(null, ex);
+            }
+        });
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    private void reportProgress(final String opid, final Load load) {
+        try {
+            String message;
+            while ((message = load.errors.poll()) != null) {
+                operationLogger.delayedLog(OperationLogLevel.ERROR, opid, message);
+            }
+            operationLogger.delayedLog(OperationLogLevel.INFO, opid, "Imported " + load.loaded.get() + " records");
+            operationsFileStore.update(opid, OperationProperties.RECORDS, load.loaded.get(), true);
+        } catch (OperationException ex) {
+            logger.error(null, ex);
+        }
+    }
+
+    /**
+     * State of a single bulk load, shared by the reading thread and the workers
+     */
+    private static class Load {
+
+        private final String ds;
+        private final String collection;
+        private final AtomicLong loaded = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final Queue<String> errors = new ConcurrentLinkedQueue<>();
+        private final Map<String, AutoDefineTypes> autoDefined = new HashMap<>();
+        private final Map<String, IndexEntrySorter> sorters = new LinkedHashMap<>();
+        private final Map<String, String> indexedNames = new HashMap<>();
+        private final Map<String, String> unindexedNames = new HashMap<>();
+        private String[] internalNames;
+        private String primary;
+
+        private Load(final String ds, final String collection) {
+            this.ds = ds;
+            this.collection = collection;
+        }
+
+        private void fail(final String message) {
+            logger.debug(message);
+            if (failed.incrementAndGet() <= MAX_LOGGED_ERRORS) {
+                errors.add(message);
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.importer;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits CSV text into chunks of complete records, so that chunks can be parsed independently of each other. A chunk
+ * ends at the first line break after <code>chunkSize</code> characters that is not inside a quoted field, which keeps
+ * quoted fields spanning multiple lines within a single chunk.
+ *
+ * @author sanketsarang
+ */
+public class CsvChunkReader {
+
+    private static final char QUOTE = '"';
+
+    private final Reader reader;
+    private final int chunkSize;
+    private final char[] buffer = new char[64 * 1024];
+    private int position = 0;
+    private int limit = 0;
+    private boolean endOfInput = false;
+
+    /**
+     * @param reader the CSV text, positioned at the start of a record
+     * @param chunkSize minimum number of characters per chunk, except for the last chunk
+     */
+    public CsvChunkReader(final Reader reader, final int chunkSize) {
+        this.reader = reader;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Reads the next chunk of complete records
+     *
+     * @return the records including their line breaks; <code>null</code> if the input is exhausted
+     * @throws IOException if the input cannot be read
+     */
+    public String next() throws IOException {
+        final StringBuilder chunk = new StringBuilder(chunkSize + 1024);
+        boolean quoted = false;
+        while (fill()) {
+            final int start = position;
+            while (position < limit) {
+                final char c = buffer[position++];
+                if (c == QUOTE) {
+                    quoted = !quoted; //an escaped quote toggles twice
+                } else if (c == '\n' && !quoted && chunk.length() + position - start >= chunkSize) {
+                    chunk.append(buffer, start, position - start);
+                    return chunk.toString();
+                }
+            }
+            chunk.append(buffer, start, position - start);
+        }
+        return chunk.length() == 0 ? null : chunk.toString();
+    }
+
+    /**
+     * Reads the first record, which in a CSV file with a header row holds the column names
+     *
+     * @return the first record including its line break; <code>null</code> if the input is empty
+     * @throws IOException if the input cannot be read
+     */
+    public String nextRecord() throws IOException {
+        final StringBuilder record = new StringBuilder();
+        boolean quoted = false;
+        while (fill()) {
+            final char c = buffer[position++];
+            record.append(c);
+            if (c == QUOTE) {
+                quoted = !quoted;
+            } else if (c == '\n' && !quoted) {
+                return record.toString();
+            }
+        }
+        return record.length() == 0 ? null : record.toString();
+    }
+
+    private boolean fill() throws IOException {
+        if (position < limit) {
+            return true;
+        }
+        if (endOfInput) {
+            return false;
+        }
+        final int read = reader.read(buffer, 0, buffer.length);
+        if (read < 0) {
+            endOfInput = true;
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+}
@@ -68,6 +68,9 @@ public class CsvImporter implements Operable {
     @Autowired
     @Lazy
     private InternalQueryBean internalQueryBean;
+    @Autowired
+    @Lazy
+    private CsvBulkLoader csvBulkLoader;
 
     @Override
     @Async
@@ -81,6 +84,7 @@ public class CsvImporter implements Operable {
         Map<String, String> columnMapping;
         String importFileLocation;
         JSONObject jsonObject;
+        boolean bulk;
         operationsFileStore.load(app, table, opid);
         jsonObject = operationsFileStore.getAsJson(opid);
 
@@ -91,6 +95,9 @@ public class CsvImporter implements Operable {
 
             logger.trace("Importing file: " + importFileLocation);
 
+            /* Bulk mode writes records directly to storage and builds indexes after all records are loaded */
+            bulk = jsonObject.optBoolean(OperationProperties.BULK, false);
+
             /* Load column mapping */
             columnMapping = new HashMap<>();
 
@@ -122,6 +129,9 @@ public class CsvImporter implements Operable {
         updateField(opid, OperationProperties.STATUS, OperationStatus.RUNNING.getStatusCode());
         updateField(opid, OperationProperties.TIME_STARTED, System.currentTimeMillis());
         updateField(opid, OperationProperties.TIME_STOPPED, -1);
+        if (bulk) {
+            return runBulk(app, table, opid, importFileLocation);
+        }
         return run(app, table, opid, importFileLocation, columnMapping);
     }
 
@@ -162,6 +172,22 @@ public class CsvImporter implements Operable {
         operationsFileStore.update(opid, key, value, true);
     }
 
+    private Future<OperationStatus> runBulk(final String app, final String table, final String opid, final String fileLocation) {
+        logger.trace("CsvImporter.runBulk(ds={}, collection={}, opid={}, fileLocation={})", app, table, opid, fileLocation);
+        try {
+            if (!csvBulkLoader.load(app, table, opid, fileLocation)) {
+                return ConcurrentUtils.constantFuture(OperationStatus.STOPPED);
+            }
+        } catch (OperationException ex) {
+            logger.error("CsvImport (" + opid + ") in bulk mode failed", ex);
+            onError(opid);
+            return ConcurrentUtils.constantFuture(OperationStatus.ERROR);
+        }
+
+        onComplete(opid);
+        return ConcurrentUtils.constantFuture(OperationStatus.COMPLETED);
+    }
+
     @Async
     private Future<OperationStatus> run(final String app, final String table, final String opid, final String fileLocation, final Map<String, String> columnMapping) {
 
@@ -0,0 +1,222 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.importer;
+
+import com.blobcity.db.exceptions.ErrorCode;
+import com.blobcity.db.exceptions.OperationException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.BiConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * External sort of the <code>(value, pk)</code> index entries of a single column. Entries are collected in memory and
+ * spilled to disk as sorted runs of <code>runSize</code> entries, which are merged when the entries are consumed. This
+ * lets an index be built in value order once all records are loaded, rather than entry by entry as records are
+ * inserted.
+ *
+ * @author sanketsarang
+ */
+public class IndexEntrySorter implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexEntrySorter.class.getName());
+
+    private static final Comparator<String[]> ORDER = Comparator.<String[], String>comparing(entry -> entry[0])
+            .thenComparing(entry -> entry[1]);
+
+    private final String column;
+    private final int runSize;
+    private final Path spillFolder;
+    private final List<Path> runs = new ArrayList<>();
+    private List<String[]> buffer = new ArrayList<>();
+
+    /**
+     * @param column name of the column, used to name the spill files
+     * @param runSize number of entries held in memory before they are spilled to disk
+     * @param spillFolder folder under which spill files are created
+     */
+    public IndexEntrySorter(final String column, final int runSize, final Path spillFolder) {
+        this.column = column;
+        this.runSize = Math.max(1, runSize);
+        this.spillFolder = spillFolder;
+    }
+
+    /**
+     * Adds entries to be sorted. Safe to be called from multiple threads.
+     *
+     * @param entries entries as <code>{value, pk}</code> pairs
+     * @throws OperationException if a run cannot be spilled to disk
+     */
+    public void add(final Collection<String[]> entries) throws OperationException {
+        final List<String[]> full;
+        synchronized (this) {
+            buffer.addAll(entries);
+            if (buffer.size() < runSize) {
+                return;
+            }
+            full = buffer;
+            buffer = new ArrayList<>();
+        }
+
+        /* Sorting and writing the run happens outside the lock, so other threads keep adding */
+        full.sort(ORDER);
+        final Path run = spill(full);
+        synchronized (this) {
+            runs.add(run);
+        }
+    }
+
+    /**
+     * Passes all entries added so far to a consumer, in the order of their values
+     *
+     * @param consumer consumer of the value and the pk of every entry
+     * @throws OperationException if a spilled run cannot be read
+     */
+    public synchronized void forEachSorted(final BiConsumer<String, String> consumer) throws OperationException {
+        buffer.sort(ORDER);
+        final List<RunCursor> cursors = new ArrayList<>();
+        try {
+            cursors.add(new RunCursor(buffer.iterator()));
+            for (Path run : runs) {
+                cursors.add(new RunCursor(run));
+            }
+
+            final PriorityQueue<RunCursor> queue = new PriorityQueue<>(Math.max(1, cursors.size()),
+                    (a, b) -> ORDER.compare(a.head, b.head));
+            for (RunCursor cursor : cursors) {
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+
+            while (!queue.isEmpty()) {
+                final RunCursor cursor = queue.poll();
+                consumer.accept(cursor.head[0], cursor.head[1]);
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+        } catch (IOException ex) {
+            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Could not read sorted index entries of column " + column, ex);
+        } finally {
+            cursors.forEach(RunCursor::close);
+        }
+    }
+
+    /**
+     * Releases the entries held in memory and deletes all spilled runs
+     */
+    @Override
+    public synchronized void close() {
+        buffer = new ArrayList<>();
+        for (Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException ex) {
+                logger.warn("Could not delete index run " + run, ex);
+            }
+        }
+        runs.clear();
+    }
+
+    private Path spill(final List<String[]> entries) throws OperationException {
+        try {
+            Files.createDirectories(spillFolder);
+            final Path run = Files.createTempFile(spillFolder, "index", ".run");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)))) {
+                out.writeInt(entries.size());
+                for (String[] entry : entries) {
+                    write(out, entry[0]);
+                    write(out, entry[1]);
+                }
+            }
+            logger.debug("Spilled {} index entries of column {} to {}", entries.size(), column, run);
+            return run;
+        } catch (IOException ex) {
+            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Could not spill index entries of column " + column + " under " + spillFolder, ex);
+        }
+    }
+
+    private static void write(final DataOutputStream out, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String read(final DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the entries of a single sorted run, either held in memory or spilled to disk
+     */
+    private static class RunCursor {
+
+        private final Iterator<String[]> iterator;
+        private final DataInputStream in;
+        private int remaining;
+        private String[] head;
+
+        private RunCursor(final Iterator<String[]> iterator) {
+            this.iterator = iterator;
+            this.in = null;
+        }
+
+        private RunCursor(final Path run) throws IOException {
+            this.iterator = null;
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run)));
+            this.remaining = in.readInt();
+        }
+
+        private boolean advance() throws IOException {
+            if (iterator != null) {
+                head = iterator.hasNext() ? iterator.next() : null;
+            } else if (remaining > 0) {
+                remaining--;
+                head = new String[]{read(in), read(in)};
+            } else {
+                head = null;
+            }
+            return head != null;
+        }
+
+        private void close() {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ex) {
+                    logger.warn("Could not close index run", ex);
+                }
+            }
+        }
+    }
+}
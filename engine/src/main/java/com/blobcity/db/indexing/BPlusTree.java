@@ -0,0 +1,972 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.indexing;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A page based B+tree stored inside a single file. Every entry is a (value, pk) pair, so a value may map to any
+ * number of primary keys while every (value, pk) pair is unique. Entries are ordered by value and then by pk, both
+ * compared as unsigned byte strings; values are expected to be encoded with a {@link BPlusTreeKeyType}.<br/><br/>
+ *
+ * The file is made up of fixed size pages. Page 0 holds the tree header, every other page is either a leaf or an
+ * internal node. Leaves are chained through next pointers so that range scans read leaves in key order without going
+ * back up the tree. Deletes remove entries from leaves without merging under-full pages, which keeps every separator
+ * key valid and is sufficient for the insert heavy workloads of secondary indexes.<br/><br/>
+ *
+ * Pages are written in place. The header records whether the tree was closed cleanly: it is marked dirty and forced
+ * to disk before the first page is modified, and marked clean again only once all pages are forced by a sync or a
+ * close. A tree found dirty on open may hold torn pages or a stale entry count, and must be rebuilt by its
+ * owner; see {@link #isClean()}.<br/><br/>
+ *
+ * Readers share a read lock while writers take the write lock. Iterators returned by the scan functions do not hold
+ * any lock between calls; they re-seek from the last returned entry for every leaf they read and so are weakly
+ * consistent with concurrent writes.
+ *
+ * @author sanketsarang
+ */
+public final class BPlusTree implements Closeable {
+
+    public static final int PAGE_SIZE = 4096;
+    /* Largest (value, pk) pair accepted; keeps at-least four entries in every page */
+    public static final int MAX_ENTRY_SIZE = (PAGE_SIZE - NodeLayout.HEADER_SIZE) / 4 - NodeLayout.ENTRY_OVERHEAD - NodeLayout.CHILD_SIZE;
+
+    private static final int MAGIC = 0x42505431; // BPT1
+    private static final int VERSION = 1;
+    private static final byte STATE_CLEAN = 1;
+    private static final byte STATE_DIRTY = 2;
+    private static final int CACHE_PAGES = 4096;
+    private static final double BULK_FILL_FACTOR = 0.9;
+
+    private final FileChannel channel;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Node> cache = new LinkedHashMap<Integer, Node>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Node> eldest) {
+            return size() > CACHE_PAGES;
+        }
+    };
+
+    private BPlusTreeKeyType keyType;
+    private int rootPage;
+    private int pageCount;
+    private long size;
+    private boolean inserted;
+    private boolean dirty = false;
+    private boolean clean = true;
+
+    private BPlusTree(final FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Opens the tree stored in the specified file, creating an empty tree if the file does not exist
+     *
+     * @param path location of the tree file
+     * @param keyType encoding of values within the tree; only used when a new tree is created
+     * @return an open {@link BPlusTree}
+     * @throws IOException if the file cannot be opened or is not a tree file
+     */
+    public static BPlusTree open(final Path path, final BPlusTreeKeyType keyType) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final BPlusTree tree = new BPlusTree(channel);
+        try {
+            if (channel.size() == 0) {
+                tree.keyType = keyType;
+                tree.pageCount = 1;
+                final Node root = tree.allocate(true);
+                tree.rootPage = root.page;
+                tree.writeNode(root);
+                tree.markClean();
+            } else {
+                tree.readHeader();
+            }
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+        return tree;
+    }
+
+    public BPlusTreeKeyType getKeyType() {
+        return keyType;
+    }
+
+    /**
+     * Checks whether the tree was closed cleanly the last time it was open. A tree that was not, for instance because
+     * the process crashed while it was being written, may be corrupt and has to be rebuilt.
+     *
+     * @return <code>true</code> if the contents of the tree can be trusted; <code>false</code> otherwise
+     */
+    public boolean isClean() {
+        return clean;
+    }
+
+    /**
+     * @return number of entries in the tree
+     */
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a (value, pk) entry to the tree
+     *
+     * @param value encoded column value
+     * @param pk primary key bytes
+     * @return true if the entry was added; false if the entry was already present
+     * @throws IOException if a page could not be read or written
+     * @throws IllegalArgumentException if the entry is larger than {@link #MAX_ENTRY_SIZE}
+     */
+    public boolean insert(final byte[] value, final byte[] pk) throws IOException {
+        if (value.length + pk.length > MAX_ENTRY_SIZE) {
+            throw new IllegalArgumentException("Index entry of " + (value.length + pk.length) + " bytes exceeds maximum of " + MAX_ENTRY_SIZE + " bytes");
+        }
+
+        lock.writeLock().lock();
+        try {
+            markDirty();
+            inserted = false;
+            final Split split = insert(readNode(rootPage), value, pk);
+            if (split != null) {
+                final Node newRoot = allocate(false);
+                newRoot.children.add(rootPage);
+                newRoot.values.add(split.value);
+                newRoot.pks.add(split.pk);
+                newRoot.children.add(split.rightPage);
+                writeNode(newRoot);
+                rootPage = newRoot.page;
+                writeHeader();
+            }
+            if (inserted) {
+                size++;
+            }
+            return inserted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a (value, pk) entry from the tree
+     *
+     * @param value encoded column value
+     * @param pk primary key bytes
+     * @return true if an entry was removed; false if no such entry was present
+     * @throws IOException if a page could not be read or written
+     */
+    public boolean remove(final byte[] value, final byte[] pk) throws IOException {
+        lock.writeLock().lock();
+        try {
+            final Node leaf = findLeaf(value, pk);
+            final int position = search(leaf, value, pk);
+            if (position < 0) {
+                return false;
+            }
+            markDirty();
+            leaf.values.remove(position);
+            leaf.pks.remove(position);
+            writeNode(leaf);
+            size--;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(final byte[] value, final byte[] pk) throws IOException {
+        lock.readLock().lock();
+        try {
+            return search(findLeaf(value, pk), value, pk) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts entries having the specified value. Cost is proportional to the number of matching entries.
+     *
+     * @param value encoded column value
+     * @return number of primary keys mapped to the value
+     * @throws IOException if a page could not be read
+     */
+    public long count(final byte[] value) throws IOException {
+        long count = 0;
+        final Iterator<Entry> iterator = range(value, true, value, true);
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Gets an iterator over all entries with values within the specified bounds, in key order
+     *
+     * @param lower encoded lower bound, or <code>null</code> for no lower bound
+     * @param lowerInclusive whether entries equal to the lower bound are included
+     * @param upper encoded upper bound, or <code>null</code> for no upper bound
+     * @param upperInclusive whether entries equal to the upper bound are included
+     * @return a weakly consistent iterator over matching entries
+     */
+    public Iterator<Entry> range(final byte[] lower, final boolean lowerInclusive, final byte[] upper, final boolean upperInclusive) {
+        return new RangeIterator(lower, lowerInclusive, upper, upperInclusive);
+    }
+
+    /**
+     * Gets an iterator over all entries of the tree, in reverse key order
+     *
+     * @return a weakly consistent iterator over all entries, largest first
+     */
+    public Iterator<Entry> descending() {
+        return new DescendingIterator();
+    }
+
+    /**
+     * Gets an iterator over all distinct values present in the tree, in key order
+     *
+     * @return a weakly consistent iterator over encoded values
+     */
+    public Iterator<byte[]> distinctValues() {
+        final Iterator<Entry> iterator = range(null, true, null, true);
+        return new Iterator<byte[]>() {
+            private byte[] next = advance(null);
+
+            private byte[] advance(final byte[] previous) {
+                while (iterator.hasNext()) {
+                    final byte[] value = iterator.next().getValue();
+                    if (previous == null || compare(value, previous) != 0) {
+                        return value;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public byte[] next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                final byte[] current = next;
+                next = advance(current);
+                return current;
+            }
+        };
+    }
+
+    /**
+     * Builds the tree bottom up from entries that are already sorted in key order. Leaves and internal nodes are
+     * filled sequentially, so the tree is written with a single pass over the file. Bulk loading is only possible
+     * on a newly created tree; for any other tree the entries are inserted one at a time instead.
+     *
+     * @param sortedEntries entries sorted with {@link #compare(Entry, Entry)} and free of duplicates
+     * @throws IOException if a page could not be written
+     */
+    public void bulkLoad(final List<Entry> sortedEntries) throws IOException {
+        lock.writeLock().lock();
+        try {
+            markDirty();
+            if (size > 0 || pageCount > 2) {
+                for (Entry entry : sortedEntries) {
+                    insert(entry.value, entry.pk);
+                }
+                return;
+            }
+
+            final int fillLimit = (int) (PAGE_SIZE * BULK_FILL_FACTOR);
+
+            /* Build leaf level */
+            List<Node> level = new ArrayList<>();
+            Node leaf = readNode(rootPage);
+            level.add(leaf);
+            int leafBytes = NodeLayout.HEADER_SIZE;
+            for (Entry entry : sortedEntries) {
+                final int entryBytes = NodeLayout.ENTRY_OVERHEAD + entry.value.length + entry.pk.length;
+                if (leaf.values.size() >= 2 && leafBytes + entryBytes > fillLimit) {
+                    final Node next = allocate(true);
+                    leaf.next = next.page;
+                    writeNode(leaf);
+                    leaf = next;
+                    level.add(leaf);
+                    leafBytes = NodeLayout.HEADER_SIZE;
+                }
+                leaf.values.add(entry.value);
+                leaf.pks.add(entry.pk);
+                leafBytes += entryBytes;
+            }
+            writeNode(leaf);
+            size = sortedEntries.size();
+
+            /* Build internal levels till a single root remains */
+            while (level.size() > 1) {
+                final List<Node> parents = new ArrayList<>();
+                Node parent = allocate(false);
+                parents.add(parent);
+                parent.children.add(level.get(0).page);
+                int parentBytes = NodeLayout.HEADER_SIZE;
+                for (int i = 1; i < level.size(); i++) {
+                    final Node child = level.get(i);
+                    final byte[] separatorValue = firstValue(child);
+                    final byte[] separatorPk = firstPk(child);
+                    final int entryBytes = NodeLayout.ENTRY_OVERHEAD + NodeLayout.CHILD_SIZE + separatorValue.length + separatorPk.length;
+                    if (parent.values.size() >= 2 && parentBytes + entryBytes > fillLimit) {
+                        writeNode(parent);
+                        parent = allocate(false);
+                        parents.add(parent);
+                        parent.children.add(child.page);
+                        parentBytes = NodeLayout.HEADER_SIZE;
+                        continue;
+                    }
+                    parent.values.add(separatorValue);
+                    parent.pks.add(separatorPk);
+                    parent.children.add(child.page);
+                    parentBytes += entryBytes;
+                }
+                writeNode(parent);
+                level = parents;
+            }
+
+            rootPage = level.get(0).page;
+            writeHeader();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Forces all written pages to the storage device and marks the tree clean. Does nothing if no page was modified
+     * since the tree was last synced.
+     *
+     * @throws IOException if the sync fails
+     */
+    public void sync() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (dirty) {
+                markClean();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (channel.isOpen()) {
+                markClean();
+                channel.close();
+            }
+            synchronized (cache) {
+                cache.clear();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Compares two byte strings as unsigned bytes
+     */
+    public static int compare(final byte[] a, final byte[] b) {
+        final int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            final int diff = (a[i] & 0xff) - (b[i] & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    /**
+     * Orders entries by value and then by pk. This is the order in which entries are stored in the tree.
+     */
+    public static int compare(final Entry a, final Entry b) {
+        final int result = compare(a.value, b.value);
+        return result != 0 ? result : compare(a.pk, b.pk);
+    }
+
+    private static int compare(final byte[] value, final byte[] pk, final byte[] otherValue, final byte[] otherPk) {
+        final int result = compare(value, otherValue);
+        return result != 0 ? result : compare(pk, otherPk);
+    }
+
+    /* Tree operations. Callers must hold the appropriate lock */
+
+    /**
+     * Marks the tree dirty on disk before the first page is modified after opening or syncing the tree
+     */
+    private void markDirty() throws IOException {
+        if (!dirty) {
+            dirty = true;
+            writeHeader();
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Forces all pages to disk ahead of the header that marks the tree clean, along with the current entry count
+     */
+    private void markClean() throws IOException {
+        channel.force(false);
+        dirty = false;
+        writeHeader();
+        channel.force(false);
+    }
+
+    private Split insert(final Node node, final byte[] value, final byte[] pk) throws IOException {
+        if (node.leaf) {
+            final int position = search(node, value, pk);
+            if (position >= 0) {
+                return null;
+            }
+            node.values.add(-position - 1, value);
+            node.pks.add(-position - 1, pk);
+            inserted = true;
+            if (node.byteSize() <= PAGE_SIZE) {
+                writeNode(node);
+                return null;
+            }
+            return splitLeaf(node);
+        }
+
+        final int childIndex = childIndex(node, value, pk);
+        final Split childSplit = insert(readNode(node.children.get(childIndex)), value, pk);
+        if (childSplit == null) {
+            return null;
+        }
+
+        node.values.add(childIndex, childSplit.value);
+        node.pks.add(childIndex, childSplit.pk);
+        node.children.add(childIndex + 1, childSplit.rightPage);
+        if (node.byteSize() <= PAGE_SIZE) {
+            writeNode(node);
+            return null;
+        }
+        return splitInternal(node);
+    }
+
+    private Split splitLeaf(final Node node) throws IOException {
+        final int mid = splitPoint(node);
+        final Node right = allocate(true);
+        right.values.addAll(node.values.subList(mid, node.values.size()));
+        right.pks.addAll(node.pks.subList(mid, node.pks.size()));
+        node.values.subList(mid, node.values.size()).clear();
+        node.pks.subList(mid, node.pks.size()).clear();
+        right.next = node.next;
+        node.next = right.page;
+        writeNode(right);
+        writeNode(node);
+        return new Split(right.values.get(0), right.pks.get(0), right.page);
+    }
+
+    private Split splitInternal(final Node node) throws IOException {
+        final int mid = splitPoint(node);
+        final Node right = allocate(false);
+        final Split split = new Split(node.values.get(mid), node.pks.get(mid), right.page);
+        right.values.addAll(node.values.subList(mid + 1, node.values.size()));
+        right.pks.addAll(node.pks.subList(mid + 1, node.pks.size()));
+        right.children.addAll(node.children.subList(mid + 1, node.children.size()));
+        node.values.subList(mid, node.values.size()).clear();
+        node.pks.subList(mid, node.pks.size()).clear();
+        node.children.subList(mid + 1, node.children.size()).clear();
+        writeNode(right);
+        writeNode(node);
+        return split;
+    }
+
+    /**
+     * Finds the entry index at which the serialized size of the node is split roughly in half
+     */
+    private int splitPoint(final Node node) {
+        final int half = node.byteSize() / 2;
+        int bytes = NodeLayout.HEADER_SIZE;
+        for (int i = 0; i < node.values.size(); i++) {
+            bytes += node.entrySize(i);
+            if (bytes >= half) {
+                return Math.max(1, Math.min(i + 1, node.values.size() - 1));
+            }
+        }
+        return node.values.size() / 2;
+    }
+
+    private Node findLeaf(final byte[] value, final byte[] pk) throws IOException {
+        Node node = readNode(rootPage);
+        while (!node.leaf) {
+            node = readNode(node.children.get(childIndex(node, value, pk)));
+        }
+        return node;
+    }
+
+    /**
+     * Index of the child to descend into: the number of separator keys less than or equal to the searched key
+     */
+    private int childIndex(final Node node, final byte[] value, final byte[] pk) {
+        int low = 0;
+        int high = node.values.size();
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (compare(node.values.get(mid), node.pks.get(mid), value, pk) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Binary search within a leaf
+     *
+     * @return index of the entry if found; otherwise <code>-(insertionPoint) - 1</code>
+     */
+    private int search(final Node leaf, final byte[] value, final byte[] pk) {
+        int low = 0;
+        int high = leaf.values.size() - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int result = compare(leaf.values.get(mid), leaf.pks.get(mid), value, pk);
+            if (result < 0) {
+                low = mid + 1;
+            } else if (result > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private byte[] firstValue(final Node node) throws IOException {
+        Node current = node;
+        while (!current.leaf) {
+            current = readNode(current.children.get(0));
+        }
+        return current.values.get(0);
+    }
+
+    private byte[] firstPk(final Node node) throws IOException {
+        Node current = node;
+        while (!current.leaf) {
+            current = readNode(current.children.get(0));
+        }
+        return current.pks.get(0);
+    }
+
+    /**
+     * Reads the entries less than the specified key, limited to the nearest non-empty leaf holding such entries.
+     * Leaves are only chained forward, so the leaf preceding the search path is found by descending into the nearest
+     * subtree to the left of the path, along its last children.
+     *
+     * @param value value of the key; <code>null</code> to read the last non-empty leaf of the tree
+     * @param pk pk of the key
+     * @return the batch of entries, largest first; empty if the start of the tree has been reached
+     */
+    private List<Entry> readBatchBefore(final byte[] value, final byte[] pk) throws IOException {
+        final List<Entry> batch = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            /* Subtrees to the left of the search path, the nearest one on top */
+            final Deque<Integer> leftPages = new ArrayDeque<>();
+            Node node = readNode(rootPage);
+            while (!node.leaf) {
+                final int childIndex = value == null ? node.children.size() - 1 : childIndex(node, value, pk);
+                for (int i = 0; i < childIndex; i++) {
+                    leftPages.push(node.children.get(i));
+                }
+                node = readNode(node.children.get(childIndex));
+            }
+
+            int end = node.values.size();
+            if (value != null) {
+                final int position = search(node, value, pk);
+                end = position >= 0 ? position : -position - 1;
+            }
+
+            while (end == 0 && !leftPages.isEmpty()) {
+                node = readNode(leftPages.pop());
+                while (!node.leaf) {
+                    for (int i = 0; i < node.children.size() - 1; i++) {
+                        leftPages.push(node.children.get(i));
+                    }
+                    node = readNode(node.children.get(node.children.size() - 1));
+                }
+                end = node.values.size();
+            }
+
+            for (int i = end - 1; i >= 0; i--) {
+                batch.add(new Entry(node.values.get(i), node.pks.get(i)));
+            }
+            return batch;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads a batch of entries starting at the specified key, limited to the remainder of the leaf holding the key
+     * plus any directly following empty leaves
+     *
+     * @return the batch of entries; empty if the end of the tree has been reached
+     */
+    private List<Entry> readBatch(final byte[] fromValue, final byte[] fromPk, final boolean exclusive) throws IOException {
+        final List<Entry> batch = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Node leaf = findLeaf(fromValue, fromPk);
+            int position = search(leaf, fromValue, fromPk);
+            if (position >= 0) {
+                position = exclusive ? position + 1 : position;
+            } else {
+                position = -position - 1;
+            }
+
+            while (true) {
+                for (int i = position; i < leaf.values.size(); i++) {
+                    batch.add(new Entry(leaf.values.get(i), leaf.pks.get(i)));
+                }
+                if (!batch.isEmpty() || leaf.next == 0) {
+                    return batch;
+                }
+                leaf = readNode(leaf.next);
+                position = 0;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* Page I/O */
+
+    private Node allocate(final boolean leaf) {
+        final Node node = new Node(pageCount++, leaf);
+        synchronized (cache) {
+            cache.put(node.page, node);
+        }
+        return node;
+    }
+
+    private Node readNode(final int page) throws IOException {
+        synchronized (cache) {
+            final Node cached = cache.get(page);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        final ByteBuffer buffer = readPage(page);
+        final Node node = new Node(page, buffer.get() == NodeLayout.TYPE_LEAF);
+        final int count = buffer.getShort() & 0xffff;
+        if (node.leaf) {
+            node.next = buffer.getInt();
+        } else {
+            node.children.add(buffer.getInt());
+        }
+        for (int i = 0; i < count; i++) {
+            final byte[] value = new byte[buffer.getShort() & 0xffff];
+            final byte[] pk = new byte[buffer.getShort() & 0xffff];
+            buffer.get(value);
+            buffer.get(pk);
+            node.values.add(value);
+            node.pks.add(pk);
+            if (!node.leaf) {
+                node.children.add(buffer.getInt());
+            }
+        }
+
+        synchronized (cache) {
+            cache.put(page, node);
+        }
+        return node;
+    }
+
+    private void writeNode(final Node node) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        buffer.put(node.leaf ? NodeLayout.TYPE_LEAF : NodeLayout.TYPE_INTERNAL);
+        buffer.putShort((short) node.values.size());
+        buffer.putInt(node.leaf ? node.next : node.children.get(0));
+        for (int i = 0; i < node.values.size(); i++) {
+            buffer.putShort((short) node.values.get(i).length);
+            buffer.putShort((short) node.pks.get(i).length);
+            buffer.put(node.values.get(i));
+            buffer.put(node.pks.get(i));
+            if (!node.leaf) {
+                buffer.putInt(node.children.get(i + 1));
+            }
+        }
+        buffer.clear();
+        writePage(node.page, buffer);
+    }
+
+    private void readHeader() throws IOException {
+        final ByteBuffer buffer = readPage(0);
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a B+tree index file");
+        }
+        if (buffer.getInt() != VERSION) {
+            throw new IOException("Unsupported B+tree index file version");
+        }
+        keyType = BPlusTreeKeyType.fromCode(buffer.get());
+        rootPage = buffer.getInt();
+        pageCount = buffer.getInt();
+        size = buffer.getLong();
+        clean = buffer.get() == STATE_CLEAN;
+    }
+
+    private void writeHeader() throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.put(keyType.getCode());
+        buffer.putInt(rootPage);
+        buffer.putInt(pageCount);
+        buffer.putLong(size);
+        buffer.put(dirty || !clean ? STATE_DIRTY : STATE_CLEAN); //a tree opened dirty stays dirty until rebuilt
+        buffer.clear();
+        writePage(0, buffer);
+    }
+
+    private ByteBuffer readPage(final int page) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        long position = (long) page * PAGE_SIZE;
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Page " + page + " is beyond the end of the index file");
+            }
+            position += read;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private void writePage(final int page, final ByteBuffer buffer) throws IOException {
+        long position = (long) page * PAGE_SIZE;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * A single (value, pk) entry of the tree
+     */
+    public static final class Entry {
+
+        private final byte[] value;
+        private final byte[] pk;
+
+        public Entry(final byte[] value, final byte[] pk) {
+            this.value = value;
+            this.pk = pk;
+        }
+
+        public byte[] getValue() {
+            return value;
+        }
+
+        public byte[] getPk() {
+            return pk;
+        }
+    }
+
+    private static final class NodeLayout {
+
+        static final byte TYPE_LEAF = 1;
+        static final byte TYPE_INTERNAL = 2;
+        /* type, entry count, next leaf or first child */
+        static final int HEADER_SIZE = 1 + 2 + 4;
+        /* value length, pk length */
+        static final int ENTRY_OVERHEAD = 2 + 2;
+        static final int CHILD_SIZE = 4;
+    }
+
+    private static final class Node {
+
+        final int page;
+        final boolean leaf;
+        final List<byte[]> values = new ArrayList<>();
+        final List<byte[]> pks = new ArrayList<>();
+        final List<Integer> children = new ArrayList<>();
+        int next;
+
+        Node(final int page, final boolean leaf) {
+            this.page = page;
+            this.leaf = leaf;
+        }
+
+        int entrySize(final int index) {
+            return NodeLayout.ENTRY_OVERHEAD + values.get(index).length + pks.get(index).length + (leaf ? 0 : NodeLayout.CHILD_SIZE);
+        }
+
+        int byteSize() {
+            int bytes = NodeLayout.HEADER_SIZE;
+            for (int i = 0; i < values.size(); i++) {
+                bytes += entrySize(i);
+            }
+            return bytes;
+        }
+    }
+
+    private static final class Split {
+
+        final byte[] value;
+        final byte[] pk;
+        final int rightPage;
+
+        Split(final byte[] value, final byte[] pk, final int rightPage) {
+            this.value = value;
+            this.pk = pk;
+            this.rightPage = rightPage;
+        }
+    }
+
+    private final class RangeIterator implements Iterator<Entry> {
+
+        private final byte[] lower;
+        private final boolean lowerInclusive;
+        private final byte[] upper;
+        private final boolean upperInclusive;
+        private List<Entry> batch = new ArrayList<>();
+        private int position;
+        private Entry last;
+        private boolean lastBatch;
+
+        RangeIterator(final byte[] lower, final boolean lowerInclusive, final byte[] upper, final boolean upperInclusive) {
+            this.lower = lower;
+            this.lowerInclusive = lowerInclusive;
+            this.upper = upper;
+            this.upperInclusive = upperInclusive;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (position >= batch.size() && !lastBatch) {
+                fetch();
+            }
+            return position < batch.size();
+        }
+
+        @Override
+        public Entry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = batch.get(position++);
+            return last;
+        }
+
+        private void fetch() {
+            try {
+                if (last == null) {
+                    batch = readBatch(lower == null ? new byte[0] : lower, new byte[0], false);
+                } else {
+                    batch = readBatch(last.value, last.pk, true);
+                }
+            } catch (IOException ex) {
+                throw new IllegalStateException("Failed to read B+tree index page", ex);
+            }
+            position = 0;
+
+            if (batch.isEmpty()) {
+                lastBatch = true;
+                return;
+            }
+
+            /* Skip values equal to an exclusive lower bound; they can only appear at the start of the range */
+            if (lower != null && !lowerInclusive) {
+                while (position < batch.size() && compare(batch.get(position).value, lower) == 0) {
+                    last = batch.get(position++);
+                }
+            }
+
+            /* Truncate the batch at the upper bound */
+            if (upper != null) {
+                for (int i = position; i < batch.size(); i++) {
+                    final int result = compare(batch.get(i).value, upper);
+                    if (result > 0 || (result == 0 && !upperInclusive)) {
+                        batch = batch.subList(0, i);
+                        lastBatch = true;
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private final class DescendingIterator implements Iterator<Entry> {
+
+        private List<Entry> batch = new ArrayList<>();
+        private int position;
+        private Entry last;
+        private boolean lastBatch;
+
+        @Override
+        public boolean hasNext() {
+            while (position >= batch.size() && !lastBatch) {
+                fetch();
+            }
+            return position < batch.size();
+        }
+
+        @Override
+        public Entry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = batch.get(position++);
+            return last;
+        }
+
+        private void fetch() {
+            try {
+                batch = last == null ? readBatchBefore(null, null) : readBatchBefore(last.value, last.pk);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Failed to read B+tree index page", ex);
+            }
+            position = 0;
+            lastBatch = batch.isEmpty();
+        }
+    }
+}
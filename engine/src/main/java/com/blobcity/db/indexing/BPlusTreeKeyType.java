@@ -0,0 +1,140 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.indexing;
+
+import com.blobcity.db.schema.Types;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Order preserving binary encodings of column values used as keys within a {@link BPlusTree}. Encoded keys compare
+ * as unsigned byte strings in the same order as the typed values they represent, so the tree never needs to know the
+ * type of the column it indexes.
+ *
+ * @author sanketsarang
+ */
+public enum BPlusTreeKeyType {
+
+    LONG((byte) 1) {
+        @Override
+        public byte[] encode(final String value) {
+            long longValue;
+            try {
+                longValue = Long.parseLong(value.trim());
+            } catch (NumberFormatException ex) {
+                final double doubleValue = Double.parseDouble(value.trim());
+                if (doubleValue != Math.rint(doubleValue)) {
+                    throw new NumberFormatException("Not an integral value: " + value);
+                }
+                longValue = (long) doubleValue;
+            }
+            return ByteBuffer.allocate(8).putLong(longValue ^ Long.MIN_VALUE).array();
+        }
+
+        @Override
+        public String decode(final byte[] key) {
+            return Long.toString(ByteBuffer.wrap(key).getLong() ^ Long.MIN_VALUE);
+        }
+    },
+    DOUBLE((byte) 2) {
+        @Override
+        public byte[] encode(final String value) {
+            final long bits = Double.doubleToLongBits(Double.parseDouble(value.trim()));
+            return ByteBuffer.allocate(8).putLong(bits < 0 ? ~bits : bits ^ Long.MIN_VALUE).array();
+        }
+
+        @Override
+        public String decode(final byte[] key) {
+            final long bits = ByteBuffer.wrap(key).getLong();
+            return Double.toString(Double.longBitsToDouble(bits < 0 ? bits ^ Long.MIN_VALUE : ~bits));
+        }
+    },
+    STRING((byte) 3) {
+        @Override
+        public byte[] encode(final String value) {
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(final byte[] key) {
+            return new String(key, StandardCharsets.UTF_8);
+        }
+    };
+
+    private final byte code;
+
+    BPlusTreeKeyType(final byte code) {
+        this.code = code;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    /**
+     * Encodes the string form of a column value
+     *
+     * @param value the column value in string form, as stored inside records
+     * @return the order preserving encoding of the value
+     * @throws NumberFormatException if the key type is numeric and the value is not a number, or if the key type is
+     * integral and the value has a fractional part
+     */
+    public abstract byte[] encode(String value);
+
+    public abstract String decode(byte[] key);
+
+    public static BPlusTreeKeyType fromCode(final byte code) {
+        for (BPlusTreeKeyType keyType : values()) {
+            if (keyType.code == code) {
+                return keyType;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the key encoding to use for a column of the specified data type. Integral types are stored as signed
+     * longs, decimal types as doubles and every other type is compared as a string.
+     *
+     * @param type data type of the indexed column
+     * @return the matching {@link BPlusTreeKeyType}
+     */
+    public static BPlusTreeKeyType fromType(final Types type) {
+        if (type == null) {
+            return STRING;
+        }
+
+        switch (type) {
+            case SMALLINT:
+            case INT:
+            case INTEGER:
+            case BIGINT:
+            case LONG:
+                return LONG;
+            case FLOAT:
+            case REAL:
+            case DOUBLE:
+            case DOUBLE_PRECISION:
+            case DECIMAL:
+            case DEC:
+            case NUMERIC:
+                return DOUBLE;
+            default:
+                return STRING;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.indexing;
+
+import com.blobcity.db.exceptions.OperationException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implemented by an {@link IndexingStrategy} that can build an index for many records in a single pass, which is
+ * considerably faster than indexing each record individually when an index is created on an existing collection.
+ *
+ * @author sanketsarang
+ */
+public interface BulkLoadableIndex {
+
+    /**
+     * Adds index entries for all specified records
+     *
+     * @param app the application id of the BlobCity application
+     * @param table name of table within the application
+     * @param column name of column within the table
+     * @param entries entries mapping the column value of a record (key) to the primary key of the record (value)
+     * @throws OperationException if an error occurs in writing the index
+     */
+    public void bulkIndex(String app, String table, String column, List<Map.Entry<String, String>> entries) throws OperationException;
+}
@@ -16,13 +16,11 @@
 
 package com.blobcity.db.indexing;
 
-import com.blobcity.db.util.AtomicCounter;
-import com.blobcity.db.exceptions.ErrorCode;
 import com.blobcity.db.exceptions.OperationException;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import org.slf4j.LoggerFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import org.springframework.stereotype.Component;
 
 /**
@@ -32,7 +30,16 @@ import org.springframework.stereotype.Component;
  * when running "AND" clause based search operations.
  *
  * <p>
- * This store performs lazy load of index size information, hence first time fetch for any index maybe a slow operation
+ * This store performs lazy load of index size information, hence first time fetch for any index maybe a slow operation.
+ * Counts are held in memory only and are loaded by counting the entries of the cardinal through the respective
+ * {@link IndexingStrategy}. Increments and decrements are applied only to cardinals whose count is already loaded, so a
+ * cardinal that is never read costs nothing on the write path. Counts of a column are bounded to an LRU of
+ * <code>LRU_SIZE</code> cardinals.
+ *
+ * <p>
+ * Entries are counted without holding the lock of the column, so that a slow count does not hold up reads and writes
+ * of other cardinals. A count is only cached if no entry of the column was added or removed while it was taken, as
+ * such a change would otherwise be missing from the cached count.
  *
  * @author sanketsarang
  */
@@ -41,175 +48,128 @@ public class IndexCountStore {
 
     private static final int LRU_SIZE = 10000;
 
-    /* AppId-table-column -> columnValue -> indexCount */
-    private final Map<String, Map<String, AtomicCounter>> map = new HashMap<>();
+    /* AppId-table -> column -> counts of the column */
+    private final Map<String, Map<String, ColumnCounts>> map = new ConcurrentHashMap<>();
 
     /**
      * Gets the size of the specified index cardinal. -1 if an entry cannot be found for the specified cardinal. The
      * function will check for the value in its local in-memory cache. If value is not found in cache it will
-     * automatically attempt loading the corresponding value from the respective index count file.
+     * automatically attempt loading the corresponding value by counting the entries of the cardinal.
      *
      * @param app the id of the BlobCity application
      * @param table name of table within the application
      * @param column name of indexed column within the specified table
      * @param columnValue the cardinal value of the index
-     * @param indexingStrategy an instance of indexing strategy corresponding to the type of index, which can be used to
-     * read from the index count file
+     * @param indexingStrategy an instance of indexing strategy corresponding to the type of index, which is used to
+     * count the entries of the cardinal on a cache miss
      * @return current size of the index for all entries under the specified cardinal. -1 if an entry is not found for
      * the specified index.
-     * @throws com.blobcity.db.exceptions.OperationException
+     * @throws com.blobcity.db.exceptions.OperationException if the entries of the cardinal could not be counted
      */
     public long getIndexSize(String app, String table, String column, String columnValue, IndexingStrategy indexingStrategy) throws OperationException {
-//        long count;
-//        final String mapKey = getKey(app, table, column);
-//        final AtomicCounter indexCount;
-//
-//        if (map.containsKey(mapKey) && map.get(mapKey).containsKey(columnValue)) {
-//            indexCount = map.get(mapKey).get(columnValue);
-//            try {
-//                indexCount.getSemaphore().acquireReadLock();
-//                count = indexCount.getValue();
-//                return count;
-//            } catch (InterruptedException ex) {
-//                LoggerFactory.getLogger(IndexCountStore.class.getName()).error(null, ex);
-//                throw new OperationException(ErrorCode.INDEX_COUNT_ERROR);
-//            } finally {
-//                indexCount.getSemaphore().releaseReadLock();
-//            }
-//        } else if (!map.containsKey(mapKey)) {
-//            synchronized (map) {
-//                count = indexingStrategy.readIndexCount(app, table, column, columnValue);
-//                if (count == -1) {
-//                    return -1;
-//                }
-//
-//                map.put(mapKey, newLruMap());
-//                indexCount = new AtomicCounter(count);
-//                map.get(mapKey).put(columnValue, indexCount);
-//                return count;
-//            }
-//        } else {
-//            synchronized (map.get(mapKey)) {
-//                count = indexingStrategy.readIndexCount(app, table, column, columnValue);
-//                if (count == -1) {
-//                    return -1;
-//                }
-//
-//                indexCount = new AtomicCounter(count);
-//                map.get(mapKey).put(columnValue, indexCount);
-//                return count;
-//            }
-//        }
-        
-        return 1;
+        final ColumnCounts counts = map.computeIfAbsent(getKey(app, table), key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(column, key -> new ColumnCounts());
+        final long modifications;
+        synchronized (counts) {
+            final AtomicLong indexCount = counts.cardinals.get(columnValue);
+            if (indexCount != null) {
+                return indexCount.get();
+            }
+            modifications = counts.modifications;
+        }
+
+        final long count = indexingStrategy.getIndexCount(app, table, column, columnValue);
+        if (count <= 0) {
+            return -1;
+        }
+
+        synchronized (counts) {
+            if (counts.modifications != modifications) {
+                return count; //not cached, as a change made while counting may be missing from the count
+            }
+            return counts.cardinals.computeIfAbsent(columnValue, key -> new AtomicLong(count)).get();
+        }
     }
 
     public void incrementCount(final String app, final String table, final String column, final String columnValue, final IndexingStrategy indexingStrategy) throws OperationException {
-//        AtomicCounter indexCount;
-//        final String mapKey = getKey(app, table, column);
-//
-//        /* Create entry for column if one not already present */
-//        synchronized (map) {
-//            if (!map.containsKey(mapKey)) {
-//                map.put(mapKey, newLruMap());
-//            }
-//        }
-//
-//        /* Add entry for columnValue if one not already present */
-//        synchronized (map.get(mapKey)) {
-//            if (!map.get(mapKey).containsKey(columnValue)) {
-//                long value = indexingStrategy.readIndexCount(app, table, column, columnValue);
-//
-//                /* short-circuit optimisation. Directly adding entry with incremented value */
-//                if (value == -1) {
-//                    value = 1;
-//                }
-//                indexCount = new AtomicCounter(value);
-//                map.get(mapKey).put(columnValue, indexCount);
-//                indexingStrategy.writeIndexCount(app, table, column, columnValue, indexCount.getValue());
-//                return;
-//            }
-//        }
-//
-//        /* Increment and write new value to index count file */
-//        indexCount = map.get(mapKey).get(columnValue);
-//        try {
-//            indexCount.getSemaphore().acquireWriteLock();
-//            indexingStrategy.writeIndexCount(app, table, column, columnValue, indexCount.incrementAndGet());
-//            indexCount.getSemaphore().releaseWriteLock();
-//        } catch (InterruptedException ex) {
-//            LoggerFactory.getLogger(IndexCountStore.class.getName()).error(null, ex);
-//            throw new OperationException(ErrorCode.INDEX_COUNT_ERROR);
-//        }
+        final ColumnCounts counts = getCounts(app, table, column);
+        if (counts == null) {
+            return;
+        }
+
+        synchronized (counts) {
+            counts.modifications++;
+            final AtomicLong indexCount = counts.cardinals.get(columnValue);
+            if (indexCount != null) {
+                indexCount.incrementAndGet();
+            }
+        }
     }
 
     public void decrementCount(final String app, final String table, final String column, final String columnValue, final IndexingStrategy indexingStrategy) throws OperationException {
-//        AtomicCounter indexCount;
-//        final String mapKey = getKey(app, table, column);
-//
-//        /* Create entry for column if one not already present */
-//        synchronized (map) {
-//            if (!map.containsKey(mapKey)) {
-//                map.put(mapKey, newLruMap());
-//            }
-//        }
-//
-//        /* Add entry for columnValue if one not already present */
-//        synchronized (map.get(mapKey)) {
-//            if (!map.get(mapKey).containsKey(columnValue)) {
-//                long value = indexingStrategy.readIndexCount(app, table, column, columnValue);
-//
-//                /* If no current entry formed, then the requested decrement is erroneous*/
-//                if (value == -1) {
-//                    throw new OperationException(ErrorCode.INDEX_COUNT_ERROR);
-//                }
-//
-//                indexCount = new AtomicCounter(value - 1);//initialize with decrement value for faster operation
-//                map.get(mapKey).put(columnValue, indexCount);
-//                indexingStrategy.writeIndexCount(app, table, column, columnValue, indexCount.getValue());
-//                return;
-//            }
-//        }
-//
-//        /* Decrement and write new value to index count file */
-//        indexCount = map.get(mapKey).get(columnValue);
-//        try {
-//            indexCount.getSemaphore().acquireWriteLock();
-//
-//            /* Updates new index value. Passing a value of zero or negative will result in the corresponding index 
-//             count file getting deleted */
-//            indexingStrategy.writeIndexCount(app, table, column, columnValue, indexCount.decrementAndGet());
-//
-//            /* Remove entry from map if new value is 0 */
-//            if (indexCount.getValue() <= 0) {
-//                map.get(mapKey).remove(columnValue);
-//                if (map.get(mapKey).isEmpty()) {
-//                    map.remove(mapKey);
-//                }
-//            }
-//
-//            indexCount.getSemaphore().releaseWriteLock();
-//        } catch (InterruptedException ex) {
-//            LoggerFactory.getLogger(IndexCountStore.class.getName()).error(null, ex);
-//            throw new OperationException(ErrorCode.INDEX_COUNT_ERROR);
-//        }
+        final ColumnCounts counts = getCounts(app, table, column);
+        if (counts == null) {
+            return;
+        }
+
+        synchronized (counts) {
+            counts.modifications++;
+            final AtomicLong indexCount = counts.cardinals.get(columnValue);
+            if (indexCount != null && indexCount.decrementAndGet() <= 0) {
+                counts.cardinals.remove(columnValue);
+            }
+        }
     }
 
-    private String getKey(String app, String table, String column) {
+    /**
+     * Drops all loaded counts of the specified column. Must be called when the index on the column is dropped.
+     *
+     * @param app the id of the BlobCity application
+     * @param table name of table within the application
+     * @param column name of the column
+     */
+    public void invalidate(final String app, final String table, final String column) {
+        final Map<String, ColumnCounts> columns = map.get(getKey(app, table));
+        if (columns != null) {
+            columns.remove(column);
+        }
+    }
+
+    /**
+     * Drops all loaded counts of all columns within the specified table
+     *
+     * @param app the id of the BlobCity application
+     * @param table name of table within the application
+     */
+    public void invalidate(final String app, final String table) {
+        map.remove(getKey(app, table));
+    }
+
+    private ColumnCounts getCounts(final String app, final String table, final String column) {
+        final Map<String, ColumnCounts> columns = map.get(getKey(app, table));
+        return columns == null ? null : columns.get(column);
+    }
+
+    private String getKey(String app, String table) {
         final StringBuilder sb = new StringBuilder(app);
         sb.append("-");
         sb.append(table);
-        sb.append("-");
-        sb.append(column);
         return sb.toString();
     }
 
-    private LinkedHashMap<String, AtomicCounter> newLruMap() {
-        return new LinkedHashMap<String, AtomicCounter>() {
+    /**
+     * Loaded counts of the cardinals of a column. Guarded by its own lock
+     */
+    private static class ColumnCounts {
+
+        private final Map<String, AtomicLong> cardinals = new LinkedHashMap<String, AtomicLong>(16, 0.75f, true) {
             @Override
-            protected boolean removeEldestEntry(Map.Entry<String, AtomicCounter> eldest) {
+            protected boolean removeEldestEntry(Map.Entry<String, AtomicLong> eldest) {
                 return size() > LRU_SIZE;
             }
         };
+
+        /* Number of entries added to or removed from the column so far */
+        private long modifications = 0;
     }
 }
@@ -33,6 +33,9 @@ public class IndexFactory {
     @Qualifier("OnDiskBTreeIndex")
     private IndexingStrategy bTreeIndexingStrategy;
     @Autowired
+    @Qualifier("OnDiskBPlusTreeIndex")
+    private IndexingStrategy bPlusTreeIndexingStrategy;
+    @Autowired
     @Qualifier("OnDiskHashedIndex")
     private IndexingStrategy hashedIndexingStrategy;
     @Autowired
@@ -43,6 +46,8 @@ public class IndexFactory {
         switch (indexType) {
             case BTREE:
                 return bTreeIndexingStrategy;
+            case BPLUSTREE:
+                return bPlusTreeIndexingStrategy;
             case HASHED:
                 return hashedIndexingStrategy;
             case UNIQUE:
@@ -58,6 +63,8 @@ public class IndexFactory {
         switch (indexType) {
             case BTREE:
                 return new OnDiskBTreeIndex();
+            case BPLUSTREE:
+                return bPlusTreeIndexingStrategy; //open trees are shared and must have a single owner
             case HASHED:
                 return new OnDiskHashedIndex();
             case UNIQUE:
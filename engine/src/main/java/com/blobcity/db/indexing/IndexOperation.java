@@ -32,8 +32,12 @@ import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.AsyncResult;
 import org.springframework.stereotype.Component;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Future;
 
 /**
@@ -55,6 +59,9 @@ public class IndexOperation implements Operable {
     @Autowired
     @Lazy
     private OperationsManager operationsManager;
+    @Autowired
+    @Lazy
+    private OnlineIndexBuilder onlineIndexBuilder;
 
     @Override
     public OperationTypes getType() {
@@ -109,6 +116,18 @@ public class IndexOperation implements Operable {
         }
     }
 
+    private void onStopped(final String opid) {
+        try {
+            updateField(opid, "status", OperationStatus.STOPPED.getStatusCode());
+            updateField(opid, OperationProperties.TIME_STOPPED, System.currentTimeMillis());
+            operationsFileStore.unload(opid);
+            operationLogger.stop(opid);
+            operationsManager.notifyComplete(opid);
+        } catch (OperationException ex) {
+            logger.error(null, ex);
+        }
+    }
+
     private void onComplete(final String opid) {
         try {
             updateField(opid, "status", OperationStatus.COMPLETED.getStatusCode());
@@ -132,45 +151,136 @@ public class IndexOperation implements Operable {
 
     /**
      * TEMPORARY IMPLEMENTATION - Should be replaced with the original DirectoryStream function
+     *
+     * Builds the index online. The keys are read only after the build is registered with the
+     * {@link OnlineIndexBuilder}, so every write not seen by the snapshot is in the catch-up log of the build. Records
+     * are indexed in batches on the index build pool and at the configured rate, with progress reported after every
+     * batch. The catch-up log is then replayed and the index switched on.
      */
     @Async
     private Future<OperationStatus> run(final String app, final String table, final String opid, final String column, final IndexTypes indexType, boolean inMemory) {
         List<String> keysList;
         IndexingStrategy indexingStrategy = indexFactory.getStrategy(indexType);
+        if (!onlineIndexBuilder.isBuilding(app, table, column)) {
+            /* Builds queued for the next boot or resumed after a restart are not registered by BSqlIndexManager.index */
+            onlineIndexBuilder.begin(app, table, column);
+        }
         try {
             keysList = dataManager.selectAllKeys(app, table);
         } catch (OperationException ex) {
             logger.error(null, ex);
+            onlineIndexBuilder.cancel(app, table, column);
             onError(opid);
             return new AsyncResult<>(OperationStatus.ERROR);
         }
 
-        keysList.parallelStream().forEach(key -> {
-            try {
-                JSONObject jsonObject = dataManager.select(app, table, key);
-                Object value = jsonObject.get(column);
-                operationLogger.delayedLog(OperationLogLevel.FINE, opid, "Indexing: " + key);
-                indexingStrategy.index(app, table, column, value.toString(), key);
-                operationLogger.delayedLog(OperationLogLevel.INFO, opid, "Indexed: " + key);
-            } catch (OperationException | JSONException ex) {
-                try {
-                    operationLogger.delayedLog(OperationLogLevel.ERROR, opid, ex.getMessage());
-                } catch (OperationException ex1) {
-                    logger.error(null, ex1);
-                }
+        try {
+            if (indexingStrategy instanceof BulkLoadableIndex) {
+                runBulk(app, table, opid, column, (BulkLoadableIndex) indexingStrategy, keysList);
+            } else {
+                runBatched(app, table, opid, column, indexingStrategy, keysList);
             }
-        });
 
-        try {
-            operationsFileStore.update(opid, OperationProperties.RECORDS, keysList.size(), false);
-        } catch (OperationException e) {
-            logger.error(null, e);
+            final long replayed = onlineIndexBuilder.complete(app, table, column, indexType);
+            operationLogger.delayedLog(OperationLogLevel.INFO, opid, "Replayed " + replayed + " changes made while indexing");
+        } catch (OperationException ex) {
+            if (onlineIndexBuilder.isAborted(app, table, column)) {
+                discard(app, table, column, indexingStrategy);
+                onlineIndexBuilder.cancel(app, table, column);
+                onStopped(opid);
+                return new AsyncResult<>(OperationStatus.STOPPED);
+            }
+            logger.error(null, ex);
+            onlineIndexBuilder.cancel(app, table, column);
+            onError(opid);
+            return new AsyncResult<>(OperationStatus.ERROR);
         }
 
         onComplete(opid);
         return ConcurrentUtils.constantFuture(OperationStatus.COMPLETED);
     }
 
+    private void runBatched(final String app, final String table, final String opid, final String column, final IndexingStrategy indexingStrategy, final List<String> keysList) throws OperationException {
+        final long startTime = System.currentTimeMillis();
+        for (int from = 0; from < keysList.size(); from += OnlineIndexBuilder.BATCH_SIZE) {
+            checkInterrupted();
+            checkAborted(app, table, column);
+            final List<String> batch = keysList.subList(from, Math.min(keysList.size(), from + OnlineIndexBuilder.BATCH_SIZE));
+            onlineIndexBuilder.execute(() -> batch.parallelStream().forEach(key -> {
+                try {
+                    JSONObject jsonObject = dataManager.select(app, table, key);
+                    Object value = jsonObject.get(column);
+                    operationLogger.delayedLog(OperationLogLevel.FINE, opid, "Indexing: " + key);
+                    indexingStrategy.index(app, table, column, value.toString(), key);
+                    operationLogger.delayedLog(OperationLogLevel.INFO, opid, "Indexed: " + key);
+                } catch (OperationException | JSONException ex) {
+                    logError(opid, ex);
+                }
+            }));
+
+            final long processed = from + batch.size();
+            operationsFileStore.update(opid, OperationProperties.RECORDS, processed, false);
+            onlineIndexBuilder.throttle(startTime, processed);
+        }
+    }
+
+    /**
+     * Reads the column value of every record and hands all entries to the index in a single bulk load, so that the
+     * index is built with sequential writes instead of one random insert per record. Records are read in throttled
+     * batches, the same as for an incremental build.
+     */
+    private void runBulk(final String app, final String table, final String opid, final String column, final BulkLoadableIndex indexingStrategy, final List<String> keysList) throws OperationException {
+        final List<Map.Entry<String, String>> entries = Collections.synchronizedList(new ArrayList<>(keysList.size()));
+        final long startTime = System.currentTimeMillis();
+        for (int from = 0; from < keysList.size(); from += OnlineIndexBuilder.BATCH_SIZE) {
+            checkInterrupted();
+            checkAborted(app, table, column);
+            final List<String> batch = keysList.subList(from, Math.min(keysList.size(), from + OnlineIndexBuilder.BATCH_SIZE));
+            onlineIndexBuilder.execute(() -> batch.parallelStream().forEach(key -> {
+                try {
+                    JSONObject jsonObject = dataManager.select(app, table, key);
+                    Object value = jsonObject.get(column);
+                    entries.add(new AbstractMap.SimpleImmutableEntry<>(value.toString(), key));
+                } catch (OperationException | JSONException ex) {
+                    logError(opid, ex);
+                }
+            }));
+            onlineIndexBuilder.throttle(startTime, from + batch.size());
+        }
+
+        indexingStrategy.bulkIndex(app, table, column, entries);
+        operationsFileStore.update(opid, OperationProperties.RECORDS, entries.size(), false);
+    }
+
+    private void checkInterrupted() throws OperationException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Index build interrupted");
+        }
+    }
+
+    /* Set when the index is dropped while it is being built */
+    private void checkAborted(final String app, final String table, final String column) throws OperationException {
+        if (onlineIndexBuilder.isAborted(app, table, column)) {
+            throw new OperationException(ErrorCode.INDEXING_ERROR, "Index build aborted as the index was dropped");
+        }
+    }
+
+    /* Removes what an aborted build has indexed so far */
+    private void discard(final String app, final String table, final String column, final IndexingStrategy indexingStrategy) {
+        try {
+            indexingStrategy.dropIndex(app, table, column);
+        } catch (OperationException ex) {
+            logger.error("Could not discard partially built index of column " + column + " in " + app + "." + table, ex);
+        }
+    }
+
+    private void logError(final String opid, final Exception ex) {
+        try {
+            operationLogger.delayedLog(OperationLogLevel.ERROR, opid, ex.getMessage());
+        } catch (OperationException ex1) {
+            logger.error(null, ex1);
+        }
+    }
 
     /**
      * ORIGINAL IMPLEMENTATION: Uses the recommended iterator to read the keys. The DirectoryStream for reading all keys
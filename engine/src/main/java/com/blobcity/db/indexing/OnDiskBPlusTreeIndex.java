@@ -0,0 +1,639 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.indexing;
+
+import com.blobcity.db.bsql.BSqlDataManager;
+import com.blobcity.db.bsql.filefilters.EQFilenameFilter;
+import com.blobcity.db.bsql.filefilters.GTEQFilenameFilter;
+import com.blobcity.db.bsql.filefilters.GTFilenameFilter;
+import com.blobcity.db.bsql.filefilters.InFilenameFilter;
+import com.blobcity.db.bsql.filefilters.LTEQFilenameFilter;
+import com.blobcity.db.bsql.filefilters.LTFilenameFilter;
+import com.blobcity.db.bsql.filefilters.OperatorFileFilter;
+import com.blobcity.db.exceptions.DbRuntimeException;
+import com.blobcity.db.exceptions.ErrorCode;
+import com.blobcity.db.exceptions.OperationException;
+import com.blobcity.db.schema.Column;
+import com.blobcity.db.schema.Schema;
+import com.blobcity.db.schema.beans.SchemaStore;
+import com.blobcity.db.sql.util.PathUtil;
+import com.blobcity.db.util.FileNameEncoding;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PreDestroy;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * <p>
+ * Index strategy that stores each indexed column inside a single page based {@link BPlusTree} file, as opposed to
+ * the folder per value and file per record layout of {@link OnDiskBTreeIndex}. Column values are encoded based on the
+ * data type of the column so that range conditions (&lt;, &lt;=, &gt;, &gt;=) are answered with a single ordered scan
+ * of the matching leaves instead of listing and filtering every value folder.</p>
+ *
+ * <p>
+ * Index counts are derived from the tree itself and {@link IndexCountStore} is not used by this strategy.</p>
+ *
+ * <p>
+ * Tree pages are updated in place, so a tree that was not closed cleanly is rebuilt from the records of the
+ * collection when it is next opened. Open trees are synced every {@link #CHECKPOINT_INTERVAL} milliseconds, which
+ * marks them clean again, so only trees written to since the last checkpoint need a rebuild after a crash.</p>
+ *
+ * @author sanketsarang
+ */
+@Component
+public class OnDiskBPlusTreeIndex implements IndexingStrategy, BulkLoadableIndex, OrderedIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(OnDiskBPlusTreeIndex.class.getName());
+    private static final String TREE_FILE = "tree.bpt";
+    private static final long CHECKPOINT_INTERVAL = 30000;
+
+    @Autowired
+    @Lazy
+    private BSqlDataManager dataManager;
+
+    private final Map<String, BPlusTree> trees = new ConcurrentHashMap<>();
+    private final Map<String, Object> openLocks = new ConcurrentHashMap<>();
+
+    @Override
+    public void index(String app, String table, String column, String columnValue, String pk) throws OperationException {
+        /* Ignore indexing of null or empty values */
+        if (columnValue == null || columnValue.isEmpty()) {
+            return;
+        }
+
+        final BPlusTree tree = getTree(app, table, column);
+        try {
+            tree.insert(encode(tree, column, columnValue), pk.getBytes(StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException ex) {
+            throw new OperationException(ErrorCode.INDEXING_ERROR, "Value of column: " + column + " in table: " + table
+                    + " is too long to be indexed for record with primary key: " + pk);
+        } catch (IOException ex) {
+            logger.error(null, ex);
+            throw new OperationException(ErrorCode.INDEXING_ERROR, "The index for column: " + column + " in table: "
+                    + table + " could not be created for column value: " + columnValue
+                    + " mapping to a record with primary key: " + pk);
+        }
+    }
+
+    /**
+     * Indexes all specified records by sorting them in index order and bulk loading the sorted entries into the tree.
+     * Bulk loading writes fully packed leaves sequentially and is only used when the tree is empty, which is the case
+     * when an index is first created on an existing collection.
+     *
+     * @param app the application id of the BlobCity application
+     * @param table name of table within the application
+     * @param column name of column within the table
+     * @param entries entries mapping the column value of a record (key) to the primary key of the record (value)
+     * @throws OperationException if an error occurs in writing the index
+     */
+    @Override
+    public void bulkIndex(String app, String table, String column, List<Map.Entry<String, String>> entries) throws OperationException {
+        load(getTree(app, table, column), table, column, entries);
+    }
+
+    private void load(final BPlusTree tree, final String table, final String column, final List<Map.Entry<String, String>> entries) throws OperationException {
+        final List<BPlusTree.Entry> treeEntries = new ArrayList<>(entries.size());
+        for (Map.Entry<String, String> entry : entries) {
+            if (entry.getKey() == null || entry.getKey().isEmpty()) {
+                continue;
+            }
+            final BPlusTree.Entry treeEntry = new BPlusTree.Entry(encode(tree, column, entry.getKey()), entry.getValue().getBytes(StandardCharsets.UTF_8));
+            if (treeEntry.getValue().length + treeEntry.getPk().length > BPlusTree.MAX_ENTRY_SIZE) {
+                throw new OperationException(ErrorCode.INDEXING_ERROR, "Value of column: " + column + " in table: " + table
+                        + " is too long to be indexed for record with primary key: " + entry.getValue());
+            }
+            treeEntries.add(treeEntry);
+        }
+
+        Collections.sort(treeEntries, BPlusTree::compare);
+
+        /* Primary keys are unique, so duplicates can only arise from the same record being listed twice */
+        final List<BPlusTree.Entry> distinctEntries = new ArrayList<>(treeEntries.size());
+        for (BPlusTree.Entry entry : treeEntries) {
+            if (distinctEntries.isEmpty() || BPlusTree.compare(distinctEntries.get(distinctEntries.size() - 1), entry) != 0) {
+                distinctEntries.add(entry);
+            }
+        }
+
+        try {
+            tree.bulkLoad(distinctEntries);
+            tree.sync();
+        } catch (IOException ex) {
+            logger.error(null, ex);
+            throw new OperationException(ErrorCode.INDEXING_ERROR, "The index for column: " + column + " in table: "
+                    + table + " could not be created");
+        }
+    }
+
+    @Override
+    public Set<String> loadIndex(String app, String table, String column, String columnValue) throws OperationException {
+        final Set<String> set = new HashSet<>();
+        loadIndexStream(app, table, column, columnValue).forEachRemaining(set::add);
+        return set;
+    }
+
+    @Override
+    public Set<String> loadIndex(String app, String table, String column, OperatorFileFilter filter) throws OperationException {
+        final Set<String> set = new HashSet<>();
+        loadIndexStream(app, table, column, filter).forEachRemaining(set::add);
+        return set;
+    }
+
+    @Override
+    public Iterator<String> loadIndexStream(String app, String table, String column, String columnValue) throws OperationException {
+        final BPlusTree tree = getTree(app, table, column);
+        final byte[] key = encodeSearchValue(tree, columnValue);
+        if (key == null) {
+            return Collections.emptyIterator();
+        }
+        return pkIterator(tree.range(key, true, key, true));
+    }
+
+    /**
+     * Loads an iterator over pk's for all index values matching the specified filter criteria. Equality, IN and range
+     * filters are answered by seeking into the tree; all other filters are evaluated against every indexed value.
+     *
+     * @param app the BlobCity application id
+     * @param table the name of the table within the BlobCity application
+     * @param column the name of the column within the specified table
+     * @param filter a file filter to select only values that match the specified condition
+     * @return <code>Iterator<String></code> over all pk's that match the filter criteria
+     * @throws OperationException if an I/O error occurs when opening the index
+     */
+    @Override
+    public Iterator<String> loadIndexStream(String app, String table, String column, OperatorFileFilter filter) throws OperationException {
+        final BPlusTree tree = getTree(app, table, column);
+
+        if (filter instanceof EQFilenameFilter) {
+            return loadIndexStream(app, table, column, filter.getTypeConvertedReferenceValue().toString());
+        } else if (filter instanceof InFilenameFilter) {
+            return inOperatorIterator(tree, (Set<?>) filter.getReferenceValue());
+        } else if (filter instanceof GTFilenameFilter || filter instanceof GTEQFilenameFilter) {
+            final Iterator<String> iterator = rangeIterator(tree, filter.getTypeConvertedReferenceValue().toString(),
+                    true, filter instanceof GTEQFilenameFilter);
+            if (iterator != null) {
+                return iterator;
+            }
+        } else if (filter instanceof LTFilenameFilter || filter instanceof LTEQFilenameFilter) {
+            final Iterator<String> iterator = rangeIterator(tree, filter.getTypeConvertedReferenceValue().toString(),
+                    false, filter instanceof LTEQFilenameFilter);
+            if (iterator != null) {
+                return iterator;
+            }
+        }
+
+        return genericFilterIterator(tree, filter);
+    }
+
+    @Override
+    public long getIndexCount(String app, String table, String column, String columnValue) throws OperationException {
+        final BPlusTree tree = getTree(app, table, column);
+        final byte[] key = encodeSearchValue(tree, columnValue);
+        if (key == null) {
+            return 0;
+        }
+        try {
+            return tree.count(key);
+        } catch (IOException ex) {
+            logger.error(null, ex);
+            throw new OperationException(ErrorCode.INDEX_COUNT_ERROR, "Could not read index for column: " + column
+                    + " in table: " + table);
+        }
+    }
+
+    @Override
+    public void initializeIndexing(String app, String table, String column) throws OperationException {
+        final Path path = Paths.get(PathUtil.indexColumnFolder(app, table, column));
+        try {
+            Files.createDirectories(path);
+        } catch (IOException ex) {
+            logger.error(null, ex);
+            throw new OperationException(ErrorCode.INDEXING_ERROR, "The index for column: " + column + " in table: "
+                    + table + " could not be created");
+        }
+        getTree(app, table, column);
+    }
+
+    @Override
+    public boolean contains(String app, String table, String column, String columnValue, String pk) throws OperationException {
+        final BPlusTree tree = getTree(app, table, column);
+        final byte[] key = encodeSearchValue(tree, columnValue);
+        if (key == null) {
+            return false;
+        }
+        try {
+            return tree.contains(key, pk.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            logger.error(null, ex);
+            throw new OperationException(ErrorCode.INDEXING_ERROR, "Could not read index for column: " + column
+                    + " in table: " + table);
+        }
+    }
+
+    @Override
+    public void remove(String app, String table, String column, String columnValue, String pk) throws OperationException {
+        final BPlusTree tree = getTree(app, table, column);
+        final byte[] key = encodeSearchValue(tree, columnValue);
+        if (key == null) {
+            return;
+        }
+        try {
+            tree.remove(key, pk.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            logger.error(null, ex);
+            throw new OperationException(ErrorCode.INDEXING_ERROR, "Unable to remove indexed value for column: "
+                    + column + " in table: " + table + " when attempting to deleted index value: " + columnValue);
+        }
+    }
+
+    @Override
+    public void dropIndex(String app, String table, String column) throws OperationException {
+        close(app, table, column);
+        Path sourcePath = Paths.get(PathUtil.indexColumnFolder(app, table, column));
+        Path destinationPath = Paths.get(PathUtil.globalDeleteFolder(app + "_" + table + "_" + column + "_" + System.currentTimeMillis()));
+        try {
+            Files.move(sourcePath, destinationPath, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            logger.error(null, ex);
+            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Could not drop index for column: "
+                    + column + " in table: " + table);
+        }
+    }
+
+    @Override
+    public Iterator<String> cardinality(String app, String table, String column) throws OperationException {
+        final BPlusTree tree = getTree(app, table, column);
+        final Iterator<byte[]> iterator = tree.distinctValues();
+        return new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public String next() {
+                return tree.getKeyType().decode(iterator.next());
+            }
+        };
+    }
+
+    @Override
+    public long readIndexCount(String app, String table, String column, String columnValue) throws OperationException {
+        final long count = getIndexCount(app, table, column, columnValue);
+        return count > 0 ? count : -1;
+    }
+
+    /**
+     * Counts are computed from the tree on every read, so there is nothing to persist
+     */
+    @Override
+    public void writeIndexCount(String app, String table, String column, String columnValue, long count) throws OperationException {
+        /* do nothing */
+    }
+
+    @Override
+    public String getAnyCardinalEntry(String ds, String collection, String column, String columnValue) throws OperationException {
+        final Iterator<String> iterator = loadIndexStream(ds, collection, column, columnValue);
+        if (!iterator.hasNext()) {
+            throw new OperationException(ErrorCode.INDEXING_ERROR, "No entry found for value " + columnValue
+                    + " in index of column " + column);
+        }
+        return iterator.next();
+    }
+
+    @Override
+    public Iterator<String> loadOrderedStream(String app, String table, String column, boolean ascending) throws OperationException {
+        final BPlusTree tree = getTree(app, table, column);
+        return pkIterator(ascending ? tree.range(null, true, null, true) : tree.descending());
+    }
+
+    @Override
+    public long getIndexedCount(String app, String table, String column) throws OperationException {
+        return getTree(app, table, column).size();
+    }
+
+    /**
+     * Closes the open index file of the specified column if one is open. Must be called before the index folder is
+     * moved or deleted.
+     *
+     * @param app the application id of the BlobCity application
+     * @param table name of table within the application
+     * @param column name of column within the table
+     */
+    public void close(final String app, final String table, final String column) {
+        final BPlusTree tree = trees.remove(treeKey(app, table, column));
+        if (tree != null) {
+            try {
+                tree.close();
+            } catch (IOException ex) {
+                logger.error("Failed to close index of column " + column + " in " + app + "." + table, ex);
+            }
+        }
+    }
+
+    /**
+     * Closes all open index files of the specified table
+     *
+     * @param app the application id of the BlobCity application
+     * @param table name of table within the application
+     */
+    public void closeAll(final String app, final String table) {
+        final String prefix = app + "." + table + ".";
+        new ArrayList<>(trees.keySet()).stream().filter(key -> key.startsWith(prefix)).forEach(key -> {
+            final BPlusTree tree = trees.remove(key);
+            if (tree != null) {
+                try {
+                    tree.close();
+                } catch (IOException ex) {
+                    logger.error("Failed to close index " + key, ex);
+                }
+            }
+        });
+    }
+
+    @Scheduled(fixedRate = CHECKPOINT_INTERVAL)
+    private void checkpoint() {
+        trees.forEach((key, tree) -> {
+            try {
+                tree.sync();
+            } catch (IOException ex) {
+                logger.error("Failed to checkpoint index " + key, ex);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        new ArrayList<>(trees.keySet()).forEach(key -> {
+            final BPlusTree tree = trees.remove(key);
+            try {
+                tree.close();
+            } catch (IOException ex) {
+                logger.error("Failed to close index " + key, ex);
+            }
+        });
+    }
+
+    private BPlusTree getTree(final String app, final String table, final String column) throws OperationException {
+        final String key = treeKey(app, table, column);
+        BPlusTree tree = trees.get(key);
+        if (tree != null) {
+            return tree;
+        }
+
+        /* Opening a tree may rebuild it, so only callers of the same tree wait for the open */
+        synchronized (openLocks.computeIfAbsent(key, k -> new Object())) {
+            tree = trees.get(key);
+            if (tree == null) {
+                try {
+                    final Path folder = Paths.get(PathUtil.indexColumnFolder(app, table, column));
+                    Files.createDirectories(folder);
+                    tree = BPlusTree.open(folder.resolve(TREE_FILE), keyType(app, table, column));
+                    if (!tree.isClean()) {
+                        tree = rebuild(app, table, column, folder.resolve(TREE_FILE), tree);
+                    }
+                } catch (IOException ex) {
+                    logger.error(null, ex);
+                    throw new OperationException(ErrorCode.INDEXING_ERROR, "Could not open index for column: " + column
+                            + " in table: " + table);
+                }
+                trees.put(key, tree);
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Replaces a tree that was not closed cleanly, and so may hold torn pages or a wrong entry count, with a tree built
+     * afresh from the records of the collection. Writes to the column wait for the rebuild, as the tree is not
+     * published before it completes.
+     */
+    private BPlusTree rebuild(final String app, final String table, final String column, final Path file,
+            final BPlusTree uncleanTree) throws IOException, OperationException {
+        logger.warn("Index of column {} in {}.{} was not closed cleanly. Rebuilding it", column, app, table);
+        uncleanTree.close();
+        Files.delete(file);
+
+        final BPlusTree tree = BPlusTree.open(file, keyType(app, table, column));
+        try {
+            final Set<String> columns = Collections.singleton(column);
+            final List<Map.Entry<String, String>> entries = new ArrayList<>();
+            for (String pk : dataManager.selectAllKeys(app, table)) {
+                final Object value;
+                try {
+                    value = dataManager.select(app, table, pk, columns).opt(column);
+                } catch (OperationException ex) {
+                    continue; //record deleted since the keys were read
+                }
+                if (value != null && value != JSONObject.NULL) {
+                    entries.add(new AbstractMap.SimpleEntry<>(value.toString(), pk));
+                }
+            }
+            load(tree, table, column, entries);
+        } catch (OperationException | RuntimeException ex) {
+            tree.close();
+            throw ex;
+        }
+        logger.info("Rebuilt index of column {} in {}.{} with {} entries", column, app, table, tree.size());
+        return tree;
+    }
+
+    private BPlusTreeKeyType keyType(final String app, final String table, final String column) throws OperationException {
+        final Schema schema = SchemaStore.getInstance().getSchema(app, table);
+        final Column schemaColumn = schema.getColumn(column);
+        if (schemaColumn == null || schemaColumn.getFieldType() == null) {
+            return BPlusTreeKeyType.STRING;
+        }
+        return BPlusTreeKeyType.fromType(schemaColumn.getFieldType().getType());
+    }
+
+    private String treeKey(final String app, final String table, final String column) {
+        return app + "." + table + "." + column;
+    }
+
+    private byte[] encode(final BPlusTree tree, final String column, final String columnValue) throws OperationException {
+        try {
+            return tree.getKeyType().encode(columnValue);
+        } catch (NumberFormatException ex) {
+            throw new OperationException(ErrorCode.DATATYPE_MISMATCH, "Value " + columnValue
+                    + " cannot be indexed as a number in column: " + column);
+        }
+    }
+
+    /**
+     * Encodes a value being searched for. A value that cannot be encoded for the key type of the tree can never be
+     * present within the tree.
+     *
+     * @return the encoded value; <code>null</code> if the value is not valid for the key type of the tree
+     */
+    private byte[] encodeSearchValue(final BPlusTree tree, final String columnValue) {
+        try {
+            return tree.getKeyType().encode(columnValue);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets an iterator over the pk's of a range condition with a single bound. Trees of integral values cannot hold
+     * the fractional part of a decimal bound, so such a bound is rounded towards the inside of the range, up for a
+     * lower bound and down for an upper bound, after which the rounded bound itself is part of the range.
+     *
+     * @return the iterator; <code>null</code> if the bound is not valid for the key type of the tree
+     */
+    private Iterator<String> rangeIterator(final BPlusTree tree, final String bound, final boolean lowerBound, final boolean inclusive) {
+        String value = bound;
+        boolean valueInclusive = inclusive;
+        if (tree.getKeyType() == BPlusTreeKeyType.LONG) {
+            try {
+                Long.parseLong(bound.trim());
+            } catch (NumberFormatException ex) {
+                final double doubleValue;
+                try {
+                    doubleValue = Double.parseDouble(bound.trim());
+                } catch (NumberFormatException nex) {
+                    return null;
+                }
+                if (doubleValue != Math.rint(doubleValue)) {
+                    value = Long.toString((long) (lowerBound ? Math.ceil(doubleValue) : Math.floor(doubleValue)));
+                    valueInclusive = true;
+                }
+            }
+        }
+
+        final byte[] key = encodeSearchValue(tree, value);
+        if (key == null) {
+            return null;
+        }
+        return pkIterator(lowerBound ? tree.range(key, valueInclusive, null, true) : tree.range(null, true, key, valueInclusive));
+    }
+
+    private Iterator<String> pkIterator(final Iterator<BPlusTree.Entry> iterator) {
+        return new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public String next() {
+                return new String(iterator.next().getPk(), StandardCharsets.UTF_8);
+            }
+        };
+    }
+
+    private Iterator<String> inOperatorIterator(final BPlusTree tree, final Set<?> values) {
+        if (values == null) {
+            return Collections.emptyIterator();
+        }
+
+        final Iterator<?> valueIterator = values.iterator();
+        return new Iterator<String>() {
+            private Iterator<String> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && valueIterator.hasNext()) {
+                    final byte[] key = encodeSearchValue(tree, valueIterator.next().toString());
+                    if (key != null) {
+                        current = pkIterator(tree.range(key, true, key, true));
+                    }
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    /**
+     * Scans all entries of the tree, passing each distinct value through the filter in the form of a path whose file
+     * name is the encoded value, which is the form the filter classes accept.
+     */
+    private Iterator<String> genericFilterIterator(final BPlusTree tree, final OperatorFileFilter filter) {
+        final Iterator<BPlusTree.Entry> iterator = tree.range(null, true, null, true);
+        return new Iterator<String>() {
+            private byte[] lastValue = null;
+            private boolean lastAccepted = false;
+            private String next = advance();
+
+            private String advance() {
+                while (iterator.hasNext()) {
+                    final BPlusTree.Entry entry = iterator.next();
+                    if (lastValue == null || BPlusTree.compare(lastValue, entry.getValue()) != 0) {
+                        lastValue = entry.getValue();
+                        lastAccepted = accept(tree.getKeyType().decode(lastValue));
+                    }
+                    if (lastAccepted) {
+                        return new String(entry.getPk(), StandardCharsets.UTF_8);
+                    }
+                }
+                return null;
+            }
+
+            private boolean accept(final String value) {
+                try {
+                    return filter.accept(Paths.get(FileNameEncoding.encode(value)));
+                } catch (IOException | OperationException ex) {
+                    logger.error("Failed to apply filter on indexed value: " + value, ex);
+                    throw new DbRuntimeException(ex);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public String next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                final String current = next;
+                next = advance();
+                return current;
+            }
+        };
+    }
+}
@@ -0,0 +1,720 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.indexing;
+
+import com.blobcity.db.bsql.BSqlDataManager;
+import com.blobcity.db.bsql.BSqlIndexManager;
+import com.blobcity.db.config.ConfigBean;
+import com.blobcity.db.config.ConfigProperties;
+import com.blobcity.db.constants.BSql;
+import com.blobcity.db.exceptions.ErrorCode;
+import com.blobcity.db.exceptions.OperationException;
+import com.blobcity.db.schema.IndexTypes;
+import com.blobcity.db.sql.pipeline.ParallelScan;
+import com.blobcity.db.sql.pipeline.ScanExecutor;
+import com.blobcity.db.util.FileNameEncoding;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * <p>
+ * Coordinates online index builds. A column being indexed stays unindexed in the schema until its index is complete,
+ * so queries on the column are answered with a parallel scan in the meantime rather than off a half built index.
+ *
+ * <p>
+ * A build registers itself before the snapshot of keys is taken. From then on every insert, update and delete on the
+ * column is captured into the catch-up log of the build. Once the snapshot is indexed the log is replayed, and the
+ * final entries of the log are applied under the lock of the build while the index is switched on in the schema, so
+ * that no write is lost between the end of the build and the switch. A record may be both in the snapshot and in the
+ * log, so a change is only applied if the index does not already reflect it: an entry is added only if missing and
+ * removed only if present, which keeps the counts of the index right. Once the log holds more than
+ * {@link #MAX_LOG_CHANGES} changes it is spilled to disk, so a long build under heavy writes does not exhaust memory.
+ *
+ * <p>
+ * Writers bracket the reading of the schema and the capturing of their changes with {@link #beginWrite()}. A writer
+ * that read the schema just before an index was switched on still hands its changes to the build, which applies them
+ * directly to the index. The build is only forgotten once every writer that began before the switch has finished.
+ *
+ * <p>
+ * Builds run on a dedicated pool of {@link ConfigProperties#INDEX_BUILD_THREADS} threads and are throttled to
+ * {@link ConfigProperties#INDEX_BUILD_RATE} records per second, so that a build does not starve foreground queries of
+ * CPU and disk. Dropping the index of a column while it is being built aborts the build.
+ *
+ * <p>
+ * Queries on an unindexed column are answered with a {@link ParallelScan} that streams the keys of the collection.
+ * Such queries only start building an index on the column if {@link ConfigProperties#INDEX_AUTO_BUILD} is set.
+ *
+ * @author sanketsarang
+ */
+@Component
+public class OnlineIndexBuilder {
+
+    private static final Logger logger = LoggerFactory.getLogger(OnlineIndexBuilder.class.getName());
+
+    /* Number of records indexed between progress updates and throttle checks */
+    public static final int BATCH_SIZE = 1000;
+
+    /* Number of changes held in memory by the catch-up log of a build before they are spilled to disk */
+    public static final int MAX_LOG_CHANGES = 100000;
+
+    /* Most results a scan of an unindexed column holds while its consumer is behind */
+    private static final int SCAN_QUEUE_CAPACITY = 4096;
+
+    @Autowired
+    private ConfigBean configBean;
+    @Autowired
+    private IndexFactory indexFactory;
+    @Autowired
+    @Lazy
+    private BSqlDataManager dataManager;
+    @Autowired
+    @Lazy
+    private BSqlIndexManager indexManager;
+    @Autowired
+    @Lazy
+    private ScanExecutor scanExecutor;
+
+    private final Map<String, Build> builds = new ConcurrentHashMap<>();
+    private volatile Epoch epoch = new Epoch(null);
+    private Path spillFolder = Paths.get(BSql.INDEX_SPILL_FOLDER);
+    private int maxLogChanges = MAX_LOG_CHANGES;
+    private ForkJoinPool pool;
+    private long rate = 0;
+    private boolean autoBuild = false;
+
+    @PostConstruct
+    private void init() {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        final String threadsProperty = configBean.getStringProperty(ConfigProperties.INDEX_BUILD_THREADS);
+        if (threadsProperty != null) {
+            try {
+                threads = Math.max(1, Integer.parseInt(threadsProperty));
+            } catch (NumberFormatException ex) {
+                logger.warn("Invalid index build thread count {}. Using default of {}", threadsProperty, threads);
+            }
+        }
+
+        final String rateProperty = configBean.getStringProperty(ConfigProperties.INDEX_BUILD_RATE);
+        if (rateProperty != null) {
+            try {
+                rate = Math.max(0, Long.parseLong(rateProperty));
+            } catch (NumberFormatException ex) {
+                logger.warn("Invalid index build rate {}. Index builds will not be throttled", rateProperty);
+            }
+        }
+
+        autoBuild = Boolean.parseBoolean(configBean.getStringProperty(ConfigProperties.INDEX_AUTO_BUILD));
+
+        pool = new ForkJoinPool(threads);
+        logger.info("Index builds will use {} threads at {} records per second", threads, rate == 0 ? "unlimited" : rate);
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Registers a build for the column. Writes to the column are captured from this point on, so this must be called
+     * before the snapshot of keys to index is taken.
+     *
+     * @param ds name of datastore
+     * @param collection name of collection
+     * @param column name of column being indexed
+     * @return <code>true</code> if a new build was registered; <code>false</code> if a build of the column is already
+     * in progress
+     */
+    public synchronized boolean begin(final String ds, final String collection, final String column) {
+        final String key = key(ds, collection, column);
+        final Build existing = builds.get(key);
+        if (existing != null && !existing.isSwitched()) {
+            return false;
+        }
+        builds.put(key, new Build(spillFolder, maxLogChanges));
+        return true;
+    }
+
+    /**
+     * Marks the start of a write that reads the schema and then captures its changes. Must be closed once the changes
+     * are captured, typically with a try-with-resources block.
+     *
+     * @return the write, to be closed when done
+     */
+    public Writer beginWrite() {
+        while (true) {
+            final Epoch current = epoch;
+            current.writers.incrementAndGet();
+            if (current == epoch) {
+                return new Writer(current);
+            }
+            current.writers.decrementAndGet(); //an index was switched on meanwhile, so join the new epoch instead
+        }
+    }
+
+    /**
+     * Checks whether writes need to be captured for any build. Builds that were switched on before every write still
+     * in progress began are forgotten here.
+     *
+     * @return <code>true</code> if at least one build is in progress or has writers that read the schema before it
+     * was switched on
+     */
+    public boolean hasBuilds() {
+        if (builds.isEmpty()) {
+            return false;
+        }
+
+        builds.values().removeIf(build -> build.isSwitched() && build.before.isDrained());
+        return !builds.isEmpty();
+    }
+
+    public boolean isBuilding(final String ds, final String collection, final String column) {
+        final Build build = builds.get(key(ds, collection, column));
+        return build != null && !build.isSwitched() && !build.aborted;
+    }
+
+    /**
+     * Checks whether queries on an unindexed column should start building an index on it
+     *
+     * @return the value of {@link ConfigProperties#INDEX_AUTO_BUILD}; <code>false</code> if not set
+     */
+    public boolean isAutoBuild() {
+        return autoBuild;
+    }
+
+    /**
+     * Aborts the build of the column on behalf of a drop of its index. Changes are no longer captured and the build
+     * can no longer switch the index on. The build stays registered until the index operation running it notices the
+     * abort, discards what it has indexed and calls {@link #cancel(String, String, String)}.
+     *
+     * @param ds name of datastore
+     * @param collection name of collection
+     * @param column name of column
+     * @return <code>true</code> if a build was aborted; <code>false</code> if no build of the column is in progress,
+     * including when it has already switched the index on
+     */
+    public boolean abort(final String ds, final String collection, final String column) {
+        final Build build = builds.get(key(ds, collection, column));
+        if (build == null) {
+            return false;
+        }
+
+        synchronized (build) {
+            if (build.isSwitched()) {
+                return false;
+            }
+            build.aborted = true;
+        }
+        build.discard();
+        return true;
+    }
+
+    public boolean isAborted(final String ds, final String collection, final String column) {
+        final Build build = builds.get(key(ds, collection, column));
+        return build != null && build.aborted;
+    }
+
+    /**
+     * Abandons the build of the column, discarding its catch-up log. Called when a build fails or the index is
+     * dropped.
+     *
+     * @param ds name of datastore
+     * @param collection name of collection
+     * @param column name of column
+     */
+    public void cancel(final String ds, final String collection, final String column) {
+        final Build build = builds.remove(key(ds, collection, column));
+        if (build != null) {
+            build.discard();
+        }
+    }
+
+    /**
+     * Captures a change to the value of an unindexed column. The change is logged if the column is being indexed, and
+     * applied directly to the index if the build has switched the index on after the caller read the schema.
+     *
+     * @param ds name of datastore
+     * @param collection name of collection
+     * @param column name of column
+     * @param value the column value added or removed
+     * @param pk primary key of the record
+     * @param insert <code>true</code> if the value was added to the record; <code>false</code> if removed
+     */
+    public void capture(final String ds, final String collection, final String column, final String value,
+            final String pk, final boolean insert) {
+        final Build build = builds.get(key(ds, collection, column));
+        if (build == null) {
+            return;
+        }
+
+        final Change change = new Change(value, pk, insert);
+        synchronized (build) {
+            if (build.aborted) {
+                return;
+            }
+            if (!build.isSwitched()) {
+                build.add(change);
+                return;
+            }
+
+            /* Applied under the lock, as checking for an entry and changing it must not interleave with another write */
+            try {
+                apply(ds, collection, column, build.strategy, change);
+            } catch (OperationException ex) {
+                logger.error("Failed to index value of column " + column + " in " + ds + "." + collection + " for record " + pk, ex);
+            }
+        }
+    }
+
+    /**
+     * Replays the catch-up log of the build and switches the index on. The log is drained outside the lock for as
+     * long as it has changes spilled to disk or keeps filling faster than a batch, and the remainder is applied under
+     * the lock together with the schema change, which makes the switch atomic with respect to concurrent writes.
+     *
+     * @param ds name of datastore
+     * @param collection name of collection
+     * @param column name of column
+     * @param indexType type of the index being built
+     * @return the number of changes replayed from the catch-up log
+     * @throws OperationException if the build is not registered or was aborted, or if replaying or switching the index
+     * on fails
+     */
+    public long complete(final String ds, final String collection, final String column, final IndexTypes indexType) throws OperationException {
+        final Build build = builds.get(key(ds, collection, column));
+        if (build == null) {
+            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "No index build in progress for column "
+                    + column + " in " + ds + "." + collection);
+        }
+        final IndexingStrategy strategy = indexFactory.getStrategy(indexType);
+
+        long replayed = 0;
+        List<Change> changes;
+        do {
+            changes = build.drain();
+            for (Change change : changes) {
+                apply(ds, collection, column, strategy, change);
+            }
+            replayed += changes.size();
+        } while (changes.size() > BATCH_SIZE || build.hasSpilled());
+
+        synchronized (build) {
+            if (build.aborted) {
+                throw new OperationException(ErrorCode.INDEXING_ERROR, "Index build of column " + column + " in " + ds
+                        + "." + collection + " was aborted");
+            }
+            while (!(changes = build.drain()).isEmpty()) {
+                for (Change change : changes) {
+                    apply(ds, collection, column, strategy, change);
+                }
+                replayed += changes.size();
+            }
+
+            build.strategy = strategy;
+            build.before = switchOn(ds, collection, column, indexType);
+            build.switched = true;
+        }
+
+        return replayed;
+    }
+
+    /**
+     * Runs the task on the index build pool and waits for it to complete
+     *
+     * @param task the task to run, typically a parallel stream over a batch of keys
+     * @throws OperationException if the task fails or the wait is interrupted
+     */
+    public void execute(final Runnable task) throws OperationException {
+        try {
+            pool.submit(task).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Index build interrupted");
+        } catch (ExecutionException ex) {
+            logger.error(null, ex);
+            throw new OperationException(ErrorCode.INDEXING_ERROR, "Index build failed: " + ex.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Sleeps for as long as is needed to hold the build to the configured rate
+     *
+     * @param startTime time at which the build started, in milliseconds
+     * @param processed number of records processed so far
+     */
+    public void throttle(final long startTime, final long processed) {
+        if (rate == 0) {
+            return;
+        }
+
+        final long delay = startTime + processed * 1000 / rate - System.currentTimeMillis();
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Finds the keys of all records whose value of the column is accepted by the filter, by reading the column off
+     * every record in parallel. Used in place of an index that is not yet built; the filter sees each value exactly
+     * as it would see the corresponding index entry.
+     *
+     * @param ds name of datastore
+     * @param collection name of collection
+     * @param column name of column
+     * @param filter filter over encoded column values, as used for reading an index
+     * @return iterator over the primary keys of matching records
+     * @throws OperationException if the records could not be read
+     */
+    public Iterator<String> scan(final String ds, final String collection, final String column,
+            final DirectoryStream.Filter<Object> filter) throws OperationException {
+        return scanValues(ds, collection, column, value -> {
+            try {
+                return filter.accept(Paths.get(FileNameEncoding.encode(value)));
+            } catch (OperationException | IOException ex) {
+                return false; //values the index cannot hold are not returned by the index either
+            }
+        });
+    }
+
+    /**
+     * Scans for the keys of records holding exactly the specified value for the column
+     *
+     * @param ds name of datastore
+     * @param collection name of collection
+     * @param column name of column
+     * @param columnValue the value to look for
+     * @return iterator over the primary keys of matching records
+     * @throws OperationException if the records could not be read
+     */
+    public Iterator<String> scan(final String ds, final String collection, final String column, final String columnValue) throws OperationException {
+        return scanValues(ds, collection, column, columnValue::equals);
+    }
+
+    /**
+     * Reads the distinct values held by the column across all records, in place of the cardinals of an index that is
+     * not yet built
+     *
+     * @param ds name of datastore
+     * @param collection name of collection
+     * @param column name of column
+     * @return iterator over the distinct non empty values of the column
+     * @throws OperationException if the records could not be read
+     */
+    public Iterator<String> distinctValues(final String ds, final String collection, final String column) throws OperationException {
+        final Iterator<String> values = scanRecords(ds, collection, column, (key, value) -> value);
+        final Set<String> seen = new HashSet<>();
+        return new Iterator<String>() {
+
+            private String next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && values.hasNext()) {
+                    final String value = values.next();
+                    if (seen.add(value)) {
+                        next = value;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final String value = next;
+                next = null;
+                return value;
+            }
+        };
+    }
+
+    /**
+     * Checks whether the record holds the specified value for the column, in place of a lookup on an index that is
+     * not yet built
+     *
+     * @param ds name of datastore
+     * @param collection name of collection
+     * @param column name of column
+     * @param columnValue the value to look for
+     * @param pk primary key of the record
+     * @return <code>true</code> if the record exists and holds the value; <code>false</code> otherwise
+     */
+    public boolean holds(final String ds, final String collection, final String column, final String columnValue, final String pk) {
+        try {
+            final Object value = dataManager.select(ds, collection, pk, Collections.singleton(column)).opt(column);
+            return value != null && columnValue.equals(value.toString());
+        } catch (OperationException ex) {
+            return false;
+        }
+    }
+
+    private Iterator<String> scanValues(final String ds, final String collection, final String column,
+            final Predicate<String> predicate) throws OperationException {
+        return scanRecords(ds, collection, column, (key, value) -> predicate.test(value) ? key : null);
+    }
+
+    /**
+     * Reads the column off every record with a {@link ParallelScan} over the streamed keys of the collection. Records
+     * without a value for the column, and records deleted since their key was read, are skipped. A scan that is not
+     * read to the end stops once its queue is full and holds no threads.
+     *
+     * @param mapper maps the key and column value of a record to the item to return; <code>null</code> to skip it
+     */
+    private Iterator<String> scanRecords(final String ds, final String collection, final String column,
+            final BiFunction<String, String, String> mapper) throws OperationException {
+        final Set<String> columns = Collections.singleton(column);
+        return new ParallelScan<>(dataManager.selectAllKeysAsStream(ds, collection), key -> {
+            try {
+                final Object value = dataManager.select(ds, collection, key, columns).opt(column);
+                return value == null || value == JSONObject.NULL || value.toString().isEmpty() ? null
+                        : mapper.apply(key, value.toString());
+            } catch (OperationException ex) {
+                return null; //record deleted since the keys were read
+            }
+        }, null, scanExecutor.parallelism(0), SCAN_QUEUE_CAPACITY, scanExecutor);
+    }
+
+    /**
+     * Switches the index on and starts a new epoch, so that writes beginning from now on see the index in the schema
+     *
+     * @return the epoch of the writes that may have read the schema before the switch
+     */
+    private synchronized Epoch switchOn(final String ds, final String collection, final String column, final IndexTypes indexType) throws OperationException {
+        indexManager.switchOn(ds, collection, column, indexType);
+        final Epoch before = epoch;
+        epoch = new Epoch(before);
+        return before;
+    }
+
+    /**
+     * Applies a change unless the index already reflects it, as the change may also be in the snapshot
+     */
+    private void apply(final String ds, final String collection, final String column, final IndexingStrategy strategy,
+            final Change change) throws OperationException {
+        final boolean indexed = strategy.contains(ds, collection, column, change.value, change.pk);
+        if (change.insert && !indexed) {
+            strategy.index(ds, collection, column, change.value, change.pk);
+        } else if (!change.insert && indexed) {
+            strategy.remove(ds, collection, column, change.value, change.pk);
+        }
+    }
+
+    private String key(final String ds, final String collection, final String column) {
+        return ds + "." + collection + "." + column;
+    }
+
+    /**
+     * A write in progress, as started by {@link #beginWrite()}
+     */
+    public static class Writer implements AutoCloseable {
+
+        private final Epoch epoch;
+        private boolean closed = false;
+
+        private Writer(final Epoch epoch) {
+            this.epoch = epoch;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                epoch.writers.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * The writes begun between two index switches. Writes of older epochs may still be in progress, so an epoch only
+     * counts as drained once all epochs before it are drained too.
+     */
+    private static class Epoch {
+
+        private final AtomicInteger writers = new AtomicInteger();
+        private volatile Epoch previous;
+
+        private Epoch(final Epoch previous) {
+            this.previous = previous;
+        }
+
+        private boolean isDrained() {
+            for (Epoch e = this; e != null; e = e.previous) {
+                if (e.writers.get() > 0) {
+                    return false;
+                }
+            }
+            previous = null; //closed epochs never gain writers again
+            return true;
+        }
+    }
+
+    private static class Build {
+
+        private final Path spillFolder;
+        private final int maxLogChanges;
+        private final List<Change> log = new ArrayList<>();
+        private final Deque<Path> spilled = new ArrayDeque<>();
+        private volatile boolean switched = false;
+        private volatile boolean aborted = false;
+        private IndexingStrategy strategy;
+        private Epoch before;
+
+        private Build(final Path spillFolder, final int maxLogChanges) {
+            this.spillFolder = spillFolder;
+            this.maxLogChanges = maxLogChanges;
+        }
+
+        private boolean isSwitched() {
+            return switched;
+        }
+
+        private synchronized void add(final Change change) {
+            log.add(change);
+            if (log.size() >= maxLogChanges) {
+                spill();
+            }
+        }
+
+        private synchronized boolean hasSpilled() {
+            return !spilled.isEmpty();
+        }
+
+        /**
+         * Takes the oldest changes off the log, reading back spilled changes before those still in memory
+         *
+         * @return the changes in the order they were captured; empty if the log is empty
+         * @throws OperationException if spilled changes could not be read back
+         */
+        private synchronized List<Change> drain() throws OperationException {
+            if (!spilled.isEmpty()) {
+                return readBack(spilled.poll());
+            }
+
+            final List<Change> changes = new ArrayList<>(log);
+            log.clear();
+            return changes;
+        }
+
+        private synchronized void discard() {
+            log.clear();
+            while (!spilled.isEmpty()) {
+                try {
+                    Files.deleteIfExists(spilled.poll());
+                } catch (IOException ex) {
+                    logger.warn("Could not delete spilled catch-up log of an index build", ex);
+                }
+            }
+        }
+
+        private void spill() {
+            try {
+                Files.createDirectories(spillFolder);
+                final Path file = Files.createTempFile(spillFolder, "index", ".log");
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                    out.writeInt(log.size());
+                    for (Change change : log) {
+                        write(out, change.value);
+                        write(out, change.pk);
+                        out.writeBoolean(change.insert);
+                    }
+                }
+                spilled.add(file);
+                log.clear();
+            } catch (IOException ex) {
+                logger.error("Could not spill catch-up log of an index build. Holding " + log.size() + " changes in memory", ex);
+            }
+        }
+
+        private List<Change> readBack(final Path file) throws OperationException {
+            try {
+                final List<Change> changes;
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                    final int count = in.readInt();
+                    changes = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        changes.add(new Change(read(in), read(in), in.readBoolean()));
+                    }
+                }
+                Files.deleteIfExists(file);
+                return changes;
+            } catch (IOException ex) {
+                logger.error(null, ex);
+                throw new OperationException(ErrorCode.INDEXING_ERROR, "Could not read spilled catch-up log of index build");
+            }
+        }
+
+        private static void write(final DataOutputStream out, final String value) throws IOException {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private static String read(final DataInputStream in) throws IOException {
+            final byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+    private static class Change {
+
+        private final String value;
+        private final String pk;
+        private final boolean insert;
+
+        private Change(final String value, final String pk, final boolean insert) {
+            this.value = value;
+            this.pk = pk;
+            this.insert = insert;
+        }
+    }
+}
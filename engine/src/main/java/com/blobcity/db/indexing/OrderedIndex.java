@@ -0,0 +1,53 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.indexing;
+
+import com.blobcity.db.exceptions.OperationException;
+import java.util.Iterator;
+
+/**
+ * Implemented by an {@link IndexingStrategy} that keeps the values of a column in sorted order, so that records can
+ * be read in the order of the column without sorting them. Used to answer <code>ORDER BY ... LIMIT</code> by
+ * reading only as many records as required.
+ *
+ * @author sanketsarang
+ */
+public interface OrderedIndex {
+
+    /**
+     * Loads an iterator over the pk's of all indexed records in the order of their column values
+     *
+     * @param app the application id of the BlobCity application
+     * @param table name of table within the application
+     * @param column name of column within the table
+     * @param ascending <code>true</code> for the smallest value first; <code>false</code> for the largest value first
+     * @return a weakly consistent iterator over pk's
+     * @throws OperationException if an I/O error occurs when opening the index
+     */
+    public Iterator<String> loadOrderedStream(String app, String table, String column, boolean ascending) throws OperationException;
+
+    /**
+     * Gets the number of records held by the index of a column
+     *
+     * @param app the application id of the BlobCity application
+     * @param table name of table within the application
+     * @param column name of column within the table
+     * @return number of indexed records
+     * @throws OperationException if an I/O error occurs when opening the index
+     */
+    public long getIndexedCount(String app, String table, String column) throws OperationException;
+}
@@ -31,8 +31,8 @@ public final class ReadWriteSemaphore {
 
     private final Semaphore semaphore;
     private final int readPermits;
-    private LockType lockType;
-    private long lastOperatedAt = System.currentTimeMillis();
+    private volatile LockType lockType = LockType.NONE;
+    private volatile long lastOperatedAt = System.currentTimeMillis();
 
     /**
      * Construct used to consider the semaphore with the permitted read concurrency or in other words with the number of
@@ -141,6 +141,7 @@ public final class ReadWriteSemaphore {
     public void releaseWriteLock() {
         lastOperatedAt = System.currentTimeMillis();
         if (lockType == LockType.WRITE && semaphore.availablePermits() == 0) {
+            lockType = LockType.NONE; // cleared before the permits are handed to the next holder
             semaphore.release(readPermits);
         }
     }
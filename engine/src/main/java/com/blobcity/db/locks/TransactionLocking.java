@@ -16,90 +16,183 @@
 
 package com.blobcity.db.locks;
 
-import com.blobcity.db.exceptions.OperationException;
-
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import org.springframework.scheduling.annotation.Scheduled;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.springframework.stereotype.Component;
 
 /**
+ * <p>
+ * Record level read/write locks, held in a fixed size table of lock stripes. A record maps to a stripe by hashing its
+ * datastore, collection and primary key, so acquiring a lock neither builds a key nor allocates a lock object, and
+ * the table never needs cleaning up. Records that hash to the same stripe share a lock; this only adds contention
+ * between unrelated records and never lets two conflicting holders in.</p>
+ *
+ * <p>
+ * Stripes are fair {@link ReentrantReadWriteLock}s, so waiting writers are not starved by a stream of readers. Locks
+ * are owned by the acquiring thread and must be released by the same thread. A thread may take a read lock while
+ * holding a write lock, but must not take a write lock while holding a read lock on any record, as the two records may
+ * share a stripe. Every storage operation locks a single record, as two threads locking several records of shared
+ * stripes in opposing order could deadlock.</p>
  *
  * @author sanketsarang
  */
-
 @Component
 public class TransactionLocking {
 
-    /* Keyed on {appId}-{table}-{pk} */
-    private final Map<String, ReadWriteSemaphore> map = new ConcurrentHashMap<>();
+    private static final int STRIPES = 1024; // must be a power of two
+
+    private final ReentrantReadWriteLock[] stripes = new ReentrantReadWriteLock[STRIPES];
+    private final AtomicLongArray writeAcquiredAt = new AtomicLongArray(STRIPES);
+
+    /* Metrics */
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contendedAcquisitions = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder totalWriteHoldNanos = new LongAdder();
 
+    public TransactionLocking() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantReadWriteLock(true);
+        }
+    }
+
+    /**
+     * Checks whether the stripe of the specified record is currently locked. As records share stripes, a return value
+     * of <code>true</code> does not guarantee that the record itself is locked.
+     */
     public boolean isLocked(String app, String table, String pk) {
-        return map.containsKey(generateKey(app, table, pk));
+        return getLockType(app, table, pk) != LockType.NONE;
     }
 
     public LockType getLockType(String app, String table, String pk) {
-        final String key = generateKey(app, table, pk);
-        ReadWriteSemaphore rwSemaphore = map.get(key);
-        return rwSemaphore == null ? LockType.NONE : rwSemaphore.getLockType();
-
+        final ReentrantReadWriteLock lock = stripes[stripe(app, table, pk)];
+        if (lock.isWriteLocked()) {
+            return LockType.WRITE;
+        }
+        return lock.getReadLockCount() > 0 ? LockType.READ : LockType.NONE;
     }
 
     public void acquireLock(String app, String table, String pk, LockType lockType) {
-        final String key = generateKey(app, table, pk);
+        acquireStripe(stripe(app, table, pk), lockType);
+    }
+
+    public void releaseLock(String app, String table, String pk, LockType lockType) {
+        releaseStripe(stripe(app, table, pk), lockType);
+    }
+
+    /**
+     * @return total number of lock acquisitions
+     */
+    public long getAcquisitionCount() {
+        return acquisitions.sum();
+    }
+
+    /**
+     * @return number of lock acquisitions that had to wait for another holder
+     */
+    public long getContendedAcquisitionCount() {
+        return contendedAcquisitions.sum();
+    }
+
+    /**
+     * @return total time in nanoseconds spent waiting for contended locks
+     */
+    public long getTotalWaitNanos() {
+        return totalWaitNanos.sum();
+    }
+
+    /**
+     * @return the longest time in nanoseconds any single acquisition waited for a lock
+     */
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
 
+    /**
+     * @return total time in nanoseconds for which write locks were held
+     */
+    public long getTotalWriteHoldNanos() {
+        return totalWriteHoldNanos.sum();
+    }
+
+    private void acquireStripe(final int stripe, final LockType lockType) {
+        final ReentrantReadWriteLock lock = stripes[stripe];
         switch (lockType) {
             case READ:
-                map.compute(key, (k, value)-> {
-                    if(value == null) {
-                        return new ReadWriteSemaphore(1);
-                    }
-                   return value;
-                });
-                map.get(key).acquireReadLock();
+                if (!tryLockFairly(lock.readLock())) {
+                    final long start = System.nanoTime();
+                    lock.readLock().lock();
+                    recordWait(System.nanoTime() - start);
+                }
                 break;
             case WRITE:
-                map.compute(key, (k, value)-> {
-                    if(value == null) {
-                        return new ReadWriteSemaphore(1);
-                    }
-                    return value;
-                });
-                map.get(key).acquireWriteLock();
+                if (!tryLockFairly(lock.writeLock())) {
+                    final long start = System.nanoTime();
+                    lock.writeLock().lock();
+                    recordWait(System.nanoTime() - start);
+                }
+                if (lock.getWriteHoldCount() == 1) {
+                    writeAcquiredAt.set(stripe, System.nanoTime());
+                }
                 break;
+            default:
+                return;
         }
+        acquisitions.increment();
     }
 
-    public void releaseLock(String app, String table, String pk, LockType lockType) {
-        final String key = generateKey(app, table, pk);
-        ReadWriteSemaphore rwSemaphore = map.get(key);
-        if(rwSemaphore == null) {
-            return;
-        }
-
-        switch(lockType) {
+    private void releaseStripe(final int stripe, final LockType lockType) {
+        final ReentrantReadWriteLock lock = stripes[stripe];
+        switch (lockType) {
             case READ:
-                rwSemaphore.releaseReadLock();
+                if (lock.getReadHoldCount() > 0) {
+                    lock.readLock().unlock();
+                }
                 break;
             case WRITE:
-                rwSemaphore.releaseWriteLock();
+                if (lock.isWriteLockedByCurrentThread()) {
+                    if (lock.getWriteHoldCount() == 1) {
+                        totalWriteHoldNanos.add(System.nanoTime() - writeAcquiredAt.get(stripe));
+                    }
+                    lock.writeLock().unlock();
+                }
                 break;
         }
     }
 
-    private String generateKey(String app, String table, String pk) {
-        StringBuilder sb = new StringBuilder(app);
-        sb.append("-");
-        sb.append(table);
-        sb.append("-");
-        sb.append(pk);
-        return sb.toString();
+    /**
+     * Unlike <code>tryLock()</code>, a timed try lock honours the fairness of the lock and does not barge ahead of
+     * waiting threads
+     */
+    private boolean tryLockFairly(final Lock lock) {
+        try {
+            return lock.tryLock(0, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void recordWait(final long waitNanos) {
+        contendedAcquisitions.increment();
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulate(waitNanos);
     }
 
-    @Scheduled(cron = "0 * * * * *")
-    private void cleanUp() {
-        final long removeBefore = System.currentTimeMillis() - 30000; //30 seconds
-        map.entrySet().removeIf(item -> item.getValue().getLockType() == LockType.NONE && item.getValue().getLastOperatedAt() < removeBefore);
+    /**
+     * Maps a record to its stripe. String hash codes are cached by the strings themselves, so this neither allocates
+     * nor rehashes the key strings on repeated calls.
+     */
+    private static int stripe(final String app, final String table, final String pk) {
+        int hash = (app.hashCode() * 31 + table.hashCode()) * 31 + pk.hashCode();
+        hash ^= (hash >>> 16);
+        hash *= 0x85ebca6b;
+        hash ^= (hash >>> 13);
+        return hash & (STRIPES - 1);
     }
 }
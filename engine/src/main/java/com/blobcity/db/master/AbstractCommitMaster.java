@@ -19,6 +19,7 @@ package com.blobcity.db.master;
 import com.blobcity.db.cluster.ClusterNodesStore;
 import com.blobcity.db.cluster.messaging.ClusterMessaging;
 import com.blobcity.db.exceptions.ErrorCode;
+import com.blobcity.db.exceptions.OperationException;
 import com.blobcity.db.features.FeatureRules;
 import com.blobcity.db.transaction.TransactionPhase;
 import com.blobcity.lib.database.bean.manager.factory.BeanConfigFactory;
@@ -26,8 +27,9 @@ import com.blobcity.lib.query.Query;
 import com.blobcity.lib.query.QueryParams;
 import com.blobcity.pom.database.engine.factory.EngineBeanConfig;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import org.apache.mina.util.ConcurrentHashSet;
 import org.json.JSONObject;
@@ -48,14 +50,13 @@ public abstract class AbstractCommitMaster implements MasterExecutable {
 
     protected final Query query;
     protected final ApplicationContext applicationContext;
-    protected final Semaphore semaphore = new Semaphore(0);
-    protected boolean completed = false;
-    protected Query response;
-    protected TransactionPhase transactionPhase = TransactionPhase.SOFT_COMMIT;
+    protected final CompletableFuture<Query> responseFuture = new CompletableFuture<>();
+    protected volatile TransactionPhase transactionPhase = TransactionPhase.SOFT_COMMIT;
     protected Map<String, Boolean> successMap = new ConcurrentHashMap<>();
     protected Map<String, ErrorCode> errorCodeMap = new ConcurrentHashMap<>();
     protected Map<String, Long> pingMap = null;
     protected Set<String> nodeIds = null;
+    private volatile ScheduledFuture<?> timeout;
 
     public AbstractCommitMaster(Query query) {
         this.query = query;
@@ -71,52 +72,45 @@ public abstract class AbstractCommitMaster implements MasterExecutable {
         return this.applicationContext.getBean(ClusterMessaging.class);
     }
 
-//    protected void awaitCompletion() {
-//        semaphore.acquireUninterruptibly(); //waits till a release occurs externally
-//        semaphore.release(); // release the immediately last acquire, as the semaphore is no longer required
-//    }
-
-    protected void awaitCompletion() {
-        try {
-            boolean acquired = semaphore.tryAcquire(FeatureRules.COMMIT_OP_TIMEOUT, TimeUnit.SECONDS); //waits 60 seconds
-            if(!acquired) {
-                logger.warn("Request (" + query.getRequestId() + ") timed out while attempting to commit transaction");
-                rollback();
-                try {
-                    semaphore.tryAcquire(FeatureRules.COMMIT_OP_TIMEOUT, TimeUnit.SECONDS); //waits another 60 seconds for rollback
-                } catch (InterruptedException e1) {
-                    logger.warn("Request (" + query.getRequestId() + ") rollback interrupted after commit timeout");
-                    complete(new Query().ack("0").errorCode("INTERNAL-ERROR with transaction handling"));
-                }
-            }
-        } catch (InterruptedException e) {
-            logger.warn("Request (" + query.getRequestId() + ") interrupted while waiting for commit");
-            rollback();
-            try {
-                semaphore.tryAcquire(FeatureRules.COMMIT_OP_TIMEOUT, TimeUnit.SECONDS); //waits another 60 seconds for rollback
-            } catch (InterruptedException e1) {
-                logger.warn("Request (" + query.getRequestId() + ") rollback interrupted after commit interruption");
-                complete(new Query().ack("0").errorCode("INTERNAL-ERROR with transaction handling"));
-            }
-        } finally {
-            semaphore.release();
+    /**
+     * Registers the commit timeout of the request and returns the future that completes with its response. No thread
+     * is held while the request waits for the cluster. If the commit does not finish within
+     * {@link FeatureRules#COMMIT_OP_TIMEOUT} seconds the request is rolled back, and if the rollback does not finish
+     * within another timeout period the request is failed.
+     *
+     * @return future holding the response of the request
+     */
+    protected CompletableFuture<Query> awaitCompletion() {
+        timeout = MasterExecutorService.getInstance().schedule(this::onCommitTimeout, FeatureRules.COMMIT_OP_TIMEOUT, TimeUnit.SECONDS);
+        responseFuture.whenComplete((result, ex) -> timeout.cancel(false));
+        return responseFuture;
+    }
+
+    private void onCommitTimeout() {
+        if(responseFuture.isDone()) {
+            return;
+        }
+
+        logger.warn("Request (" + query.getRequestId() + ") timed out while attempting to commit transaction");
+        timeout = MasterExecutorService.getInstance().schedule(this::onRollbackTimeout, FeatureRules.COMMIT_OP_TIMEOUT, TimeUnit.SECONDS);
+        MasterExecutorService.getInstance().execute(this::rollback); //rollback messages the cluster, so keep it off the timer thread
+    }
+
+    private void onRollbackTimeout() {
+        if(responseFuture.isDone()) {
+            return;
         }
+
+        logger.warn("Request (" + query.getRequestId() + ") timed out while attempting to rollback transaction");
+        complete(new Query().ack("0").errorCode("INTERNAL-ERROR with transaction handling"));
     }
 
     protected void complete(Query query) {
-        this.response = query;
-        this.completed = true;
-        this.semaphore.release();
+        this.responseFuture.complete(query);
     }
 
     protected void complete(JSONObject responseJson) {
-        this.response = new Query(responseJson);
-        this.completed = true;
-        this.semaphore.release();
-    }
-
-    protected Query getResponse() {
-        return this.response;
+        this.responseFuture.complete(new Query(responseJson));
     }
 
     protected void ping(final String nodeId) {
@@ -169,10 +163,9 @@ public abstract class AbstractCommitMaster implements MasterExecutable {
     }
 
     @Override
-    public Query call() throws Exception {
+    public CompletableFuture<Query> execute() throws OperationException {
         this.messageAllConcernedNodes(this.query);
-        this.awaitCompletion(); //TODO: Might want to have a timeout to prevent indefinite waiting
-        return this.getResponse();
+        return this.awaitCompletion();
     }
 
     @Override
@@ -19,6 +19,7 @@ package com.blobcity.db.master;
 import com.blobcity.db.cluster.ClusterNodesStore;
 import com.blobcity.db.cluster.messaging.ClusterMessaging;
 import com.blobcity.db.exceptions.ErrorCode;
+import com.blobcity.db.exceptions.OperationException;
 import com.blobcity.db.features.FeatureRules;
 import com.blobcity.db.master.aggregators.Aggregator;
 import com.blobcity.lib.database.bean.manager.factory.BeanConfigFactory;
@@ -30,8 +31,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContext;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -43,9 +45,7 @@ public abstract class AbstractReadMaster implements MasterExecutable {
 
     protected final Query query;
     protected final ApplicationContext applicationContext;
-    protected final Semaphore semaphore = new Semaphore(0);
-    protected boolean completed = false;
-    protected Query response;
+    protected final CompletableFuture<Query> responseFuture = new CompletableFuture<>();
     protected Map<String, ErrorCode> errorCodeMap = new ConcurrentHashMap<>(0);
     protected Map<String, Long> pingMap = null;
     protected Set<String> nodeIds = null;
@@ -67,40 +67,34 @@ public abstract class AbstractReadMaster implements MasterExecutable {
         return this.applicationContext.getBean(ClusterMessaging.class);
     }
 
-//    protected void awaitCompletion() {
-//        semaphore.acquireUninterruptibly(); //waits till a release occurs externally
-//        semaphore.release();
-//    }
+    /**
+     * Registers the read timeout of the request and returns the future that completes with its response. No thread is
+     * held while the request waits for the cluster. Reads that do not finish within
+     * {@link FeatureRules#READ_OP_TIMEOUT} seconds are failed.
+     *
+     * @return future holding the response of the request
+     */
+    protected CompletableFuture<Query> awaitCompletion() {
+        final ScheduledFuture<?> timeout = MasterExecutorService.getInstance().schedule(this::onReadTimeout, FeatureRules.READ_OP_TIMEOUT, TimeUnit.SECONDS);
+        responseFuture.whenComplete((result, ex) -> timeout.cancel(false));
+        return responseFuture;
+    }
 
-    protected void awaitCompletion() {
-        try {
-            boolean acquired = semaphore.tryAcquire(60, TimeUnit.SECONDS); //waits 60 seconds
-            if(acquired) {
-                semaphore.release(); // release the immediately last acquire, as the semaphore is no longer required
-            } else {
-                logger.warn("Request (" + query.getRequestId() + ") timed out while waiting for read to finish. Consider increasing READ_OP_TIMEOUT. Current value is: " + FeatureRules.READ_OP_TIMEOUT + " seconds");
-                rollback();
-            }
-        } catch (InterruptedException e) {
-            logger.warn("Request (" + query.getRequestId() + ") interrupted while waiting for read to finish");
-            rollback();
+    private void onReadTimeout() {
+        if(responseFuture.isDone()) {
+            return;
         }
+
+        logger.warn("Request (" + query.getRequestId() + ") timed out while waiting for read to finish. Consider increasing READ_OP_TIMEOUT. Current value is: " + FeatureRules.READ_OP_TIMEOUT + " seconds");
+        MasterExecutorService.getInstance().execute(this::rollback);
     }
 
     protected void complete(Query query) {
-        this.response = query;
-        this.completed = true;
-        this.semaphore.release();
+        this.responseFuture.complete(query);
     }
 
     protected void complete(JSONObject responseJson) {
-        this.response = new Query(responseJson);
-        this.completed = true;
-        this.semaphore.release();
-    }
-
-    protected Query getResponse() {
-        return this.response;
+        this.responseFuture.complete(new Query(responseJson));
     }
 
     protected void ping(final String nodeId) {
@@ -142,10 +136,9 @@ public abstract class AbstractReadMaster implements MasterExecutable {
     }
 
     @Override
-    public Query call() throws Exception {
+    public CompletableFuture<Query> execute() throws OperationException {
         this.messageAllConcernedNodes(this.query);
-        this.awaitCompletion(); //TODO: Might want to have a timeout to prevent indefinite waiting
-        return this.getResponse();
+        return this.awaitCompletion();
     }
 
     protected boolean allSuccess() {
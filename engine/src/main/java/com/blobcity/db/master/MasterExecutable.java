@@ -16,21 +16,24 @@
 
 package com.blobcity.db.master;
 
-import com.blobcity.db.cluster.messaging.messages.Message;
 import com.blobcity.db.exceptions.OperationException;
-
-import java.util.concurrent.Callable;
-import java.util.concurrent.Future;
-
 import com.blobcity.lib.query.Query;
-import org.json.JSONObject;
-import org.springframework.scheduling.annotation.AsyncResult;
+import java.util.concurrent.CompletableFuture;
 
 /**
  *
  * @author sanketsarang
  */
-public interface MasterExecutable extends Callable<Query>{
+public interface MasterExecutable {
+
+    /**
+     * Starts execution of the request. The method returns as soon as the request is dispatched to the cluster; the
+     * returned future completes when all concerned nodes have responded or the request times out.
+     *
+     * @return future holding the response of the request
+     * @throws OperationException if the request could not be dispatched
+     */
+    public CompletableFuture<Query> execute() throws OperationException;
 
     /**
      * Notifies of a message received for accumulation process
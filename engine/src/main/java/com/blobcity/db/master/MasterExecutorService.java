@@ -16,15 +16,18 @@
 
 package com.blobcity.db.master;
 
-import com.blobcity.lib.query.Query;
-import org.json.JSONObject;
-
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * Drives the timeouts of in-flight master requests. Masters do not occupy a thread while waiting for cluster
+ * responses; they only register a timeout here, so the number of requests in flight is bounded by memory rather than
+ * by the size of a thread pool. Work triggered by a timeout that messages the cluster, such as a rollback, is handed
+ * to a separate pool so that a slow node cannot hold up the timeouts of other requests.
+ *
  * @author sanketsarang
  */
 public class MasterExecutorService {
@@ -34,13 +37,40 @@ public class MasterExecutorService {
         return ourInstance;
     }
 
-    private final ExecutorService executorService;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService executor;
 
     private MasterExecutorService() {
-        executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "master-timeouts");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "master-executor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Schedules a timeout task. Tasks must be short and non-blocking as all timeouts share a single thread.
+     *
+     * @param task the task to run on timeout
+     * @param delay the delay after which the task runs
+     * @param unit unit of the delay
+     * @return handle that may be used to cancel the timeout
+     */
+    public ScheduledFuture<?> schedule(final Runnable task, final long delay, final TimeUnit unit) {
+        return scheduler.schedule(task, delay, unit);
     }
 
-    public Future<Query> submit(Callable<Query> callable) {
-        return executorService.submit(callable);
+    /**
+     * Runs a task that may block, such as messaging the cluster on behalf of a timed out request
+     *
+     * @param task the task to run
+     */
+    public void execute(final Runnable task) {
+        executor.execute(task);
     }
 }
@@ -18,6 +18,8 @@ package com.blobcity.db.master.executors.data;
 
 import com.blobcity.db.bsql.BSqlCollectionManager;
 import com.blobcity.db.cluster.ClusterNodesStore;
+import com.blobcity.db.cluster.NodeLoad;
+import com.blobcity.db.cluster.RoutingTable;
 import com.blobcity.db.code.CodeExecutor;
 import com.blobcity.db.code.datainterpreter.InterpreterExecutorBean;
 import com.blobcity.db.exceptions.ErrorCode;
@@ -28,8 +30,6 @@ import com.blobcity.db.memory.records.*;
 import com.blobcity.db.schema.Schema;
 import com.blobcity.db.schema.beans.SchemaStore;
 import com.blobcity.lib.data.Record;
-import com.blobcity.lib.database.bean.manager.interfaces.engine.QueryStore;
-import com.blobcity.lib.database.bean.manager.interfaces.engine.RequestStore;
 import com.blobcity.lib.query.Query;
 import com.blobcity.lib.query.QueryParams;
 import com.blobcity.lib.query.QueryType;
@@ -40,9 +40,9 @@ import com.google.common.base.Function;
 import com.google.common.collect.Collections2;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.expression.Operation;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Master that manages the data insert requests
@@ -52,14 +52,13 @@ import java.util.*;
 public class InsertMaster extends ExecuteSelectedNodesCommitMaster implements MasterExecutable {
 
     private static final Logger logger = LoggerFactory.getLogger(InsertMaster.class.getName());
-//    private static final Random random = new Random();
 
     private final InsertStatusHolder insertStatusHolder = new InsertStatusHolder();
     private final List<com.blobcity.lib.data.Record> toInsertList = new ArrayList<>();
     private long startTime;
 
     public InsertMaster(Query query) throws OperationException {
-        super(query, ClusterNodesStore.getInstance().getLeastLoadedNodes(SchemaStore.getInstance().getReplicationFactor(query.getDs(), query.getCollection())));
+        super(query, new HashSet<>()); //nodes are decided once the records are placed
 
         if(query.getQueryType() != QueryType.INSERT) {
             logger.debug(query.getRequestId() + " : " + ErrorCode.INTERNAL_OPERATION_ERROR.getErrorCode() + " - " + "Incorrect query passed to insert master");
@@ -68,25 +67,19 @@ public class InsertMaster extends ExecuteSelectedNodesCommitMaster implements Ma
     }
 
     @Override
-    public Query call() throws Exception {
+    public CompletableFuture<Query> execute() throws OperationException {
         startTime = System.currentTimeMillis();
 
         final String ds = super.query.getString(QueryParams.DATASTORE);
         final String collection = super.query.getString(QueryParams.COLLECTION);
 
-        QueryStore queryStore = super.getBean(QueryStore.class);
-        RequestStore requestStore = super.getBean(RequestStore.class);
-
         BSqlCollectionManager collectionManager = super.getBean(BSqlCollectionManager.class);
         if(!collectionManager.exists(ds, collection)) {
             logger.debug(query.getRequestId() + " : " + "No collection found with name " + ds + "." + collection);
-            return new Query().ackFailure().errorCode(ErrorCode.COLLECTION_INVALID.getErrorCode());
+            return CompletableFuture.completedFuture(new Query().ackFailure().errorCode(ErrorCode.COLLECTION_INVALID.getErrorCode()));
         }
 
-        insertStatusHolder.setReplicationFactor(SchemaStore.getInstance().getReplicationFactor(ds, collection));
-
         final JSONObject payloadJson = super.query.getJSONObject(QueryParams.PAYLOAD);
-//        final RecordType recordType = RecordType.fromTypeCode(payloadJson.getString(QueryParams.TYPE.getParam()));
         final JSONArray recordsArray = payloadJson.getJSONArray(QueryParams.DATA.getParam());
         List<Object> records = new ArrayList<>();
         for(int i = 0; i < recordsArray.length(); i++) {
@@ -105,32 +98,20 @@ public class InsertMaster extends ExecuteSelectedNodesCommitMaster implements Ma
             csvColumnNames = (List<String>) payloadJson.get(QueryParams.COLS.getParam());
         }
 
-        /* Check for specified interpreter if insert is of text type */
-//        String interpreterName = null;
-//        if(recordType == RecordType.TEXT && super.query.contains(QueryParams.INTERPRETER)) {
-//            interpreterName = super.query.getString(QueryParams.INTERPRETER);
-//        }
-
         /* Run interpreter if defined when inserted text records */
         if(interpreterName != null) { //this will always be null if record type is not text
             try {
                 records = runInterpreter(interpreterName, records);
             } catch (OperationException ex) {
-                return produceErrorResponse(ex.getErrorCode());
+                return CompletableFuture.completedFuture(produceErrorResponse(ex.getErrorCode()));
             }
         }
 
-        /* Check for specified interceptor */
-//        String interceptorName = null;
-//        if(super.query.contains(QueryParams.INTERCEPTOR)) {
-//            interceptorName = super.query.getString(QueryParams.INTERCEPTOR);
-//        }
-
         if(interceptorName != null) {
             try {
                 records = runInterceptor(interceptorName, records);
             } catch(OperationException ex) {
-                return produceErrorResponse(ex.getErrorCode());
+                return CompletableFuture.completedFuture(produceErrorResponse(ex.getErrorCode()));
             }
         }
 
@@ -168,56 +149,23 @@ public class InsertMaster extends ExecuteSelectedNodesCommitMaster implements Ma
             }
         });
 
-//        for(Object r : records) {
-//            RecordType rt;
-//            if(recordType == RecordType.AUTO) {
-//                rt = RecordInterpreter.getBestMatchedType(r);
-//            } else {
-//                rt = recordType;
-//            }
-//
-//            switch (rt) {
-//                case JSON:
-//                    toInsertList.add(new JsonRecord(r.toString()));
-//                    break;
-//                case XML:
-//                    toInsertList.add(new XmlRecord(r.toString()));
-//                    break;
-//                case SQL:
-//                    toInsertList.add(new SqlRecord(r.toString()));
-//                    break;
-//                case TEXT:
-//                    toInsertList.add(new TextRecord(r.toString()));
-//                    break;
-//                case CSV:
-//                    if(csvColumnNames == null) {
-//                        toInsertList.add(new CsvRecord(r.toString(), schema));
-//                    } else {
-//                        toInsertList.add(new CsvRecord(csvColumnNames, Arrays.asList(r.toString().split(","))));
-//                    }
-//                    break;
-//            }
-//        }
-
         //TODO: Create missing columns here
 
-//        for(Record record : toInsertList) {
-//            record.asJson().keys().forEachRemaining(key -> {
-//
-//            });
-//        }
+        final Map<String, List<com.blobcity.lib.data.Record>> placement = super.getBean(RoutingTable.class).place(ds, collection, toInsertList);
+        if(placement.isEmpty()) {
+            return CompletableFuture.completedFuture(produceFinalResponse()); //nothing to insert
+        }
+        super.nodeIds = new HashSet<>(placement.keySet());
+        super.query.insertQuery(ds, collection, toInsertList, recordType);
+        placement.forEach((nodeId, nodeRecords) -> insertStatusHolder.addRecords(nodeId, nodeRecords));
 
+        /* Each node receives only the records placed on it */
+        placement.forEach((nodeId, nodeRecords) -> {
+            final Query nodeQuery = copyQuery().insertQuery(ds, collection, nodeRecords, recordType);
+            super.clusterMessagingBeanInstance().sendMessage(nodeQuery, nodeId);
+        });
 
-        insertStatusHolder.addRecords(ClusterNodesStore.getInstance().getSelfId(), toInsertList); //this needs to change for smart sharding
-        super.query.insertQuery(ds, collection, toInsertList, recordType);
-//        this.acquireSemaphore();
-        this.messageAllConcernedNodes(super.query);
-
-//        int num = random.nextInt(1000);
-//        System.out.println("A: " + num + " " + queryStore.size("test") +  " " + requestStore.size());
-        this.awaitCompletion(); //TODO: Might want to have a timeout to prevent indefinite waiting
-//        System.out.println("C: " + num + " " + queryStore.size("test") + " " +  requestStore.size());
-        return this.getResponse();
+        return this.awaitCompletion();
     }
 
     public void notifyMessage(final String nodeId, final Query query) {
@@ -225,6 +173,10 @@ public class InsertMaster extends ExecuteSelectedNodesCommitMaster implements Ma
             case SOFT_COMMIT_SUCCESS:
                 registerSuccessStatus(nodeId, query);
 
+                if(query.contains(QueryParams.NODE_LOAD)) {
+                    ClusterNodesStore.getInstance().updateNodeLoad(nodeId, NodeLoad.fromJson((JSONObject) query.get(QueryParams.NODE_LOAD)));
+                }
+
                 if(query.isAckSuccess()) {
                     Object statusArray = query.get(QueryParams.STATUS);
                     List<Integer> statusList;
@@ -281,6 +233,19 @@ public class InsertMaster extends ExecuteSelectedNodesCommitMaster implements Ma
         }
     }
 
+    /**
+     * Creates a shallow copy of the request query, carrying the request id, master node and all other request
+     * parameters, to which the records of a single node can be set
+     */
+    private Query copyQuery() {
+        final JSONObject queryJson = super.query.toJson();
+        final JSONObject copyJson = new JSONObject();
+        for(String key : queryJson.keySet()) {
+            copyJson.put(key, queryJson.get(key));
+        }
+        return new Query(copyJson);
+    }
+
     private Query produceFinalResponse() {
         Query responseQuery = new Query().ackSuccess();
         responseQuery.payload(insertStatusHolder.produceResponsePayload(toInsertList));
@@ -20,56 +20,58 @@ import com.blobcity.lib.data.Record;
 import com.blobcity.lib.query.QueryParams;
 import org.json.JSONArray;
 import org.json.JSONObject;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * Tracks the per node status of the records of an insert request, and decides whether the insert is consistent across
+ * the nodes that each record was placed on
+ *
  * @author sanketsarang
  */
 public class InsertStatusHolder {
-    private Integer replicas;
     private final Map<String, List<Record>> recordMap = new ConcurrentHashMap<>();
     private final Map<String, List<Integer>> statusMap = new ConcurrentHashMap<>();
-    private final Map<Record, Integer> successMap = new ConcurrentHashMap<>();
 
-//    public InsertStatusHolder(int replicationFactor) {
-//        this.replicas = replicationFactor + 1;
-//    }
+    /* Record id -> number of nodes the record was sent to */
+    private final Map<String, Integer> expectedMap = new ConcurrentHashMap<>();
 
-    public void setReplicationFactor(final int replicationFactor) {
-        this.replicas = replicationFactor + 1;
-    }
+    /* Record id -> number of nodes that inserted the record successfully */
+    private final Map<String, Integer> successMap = new ConcurrentHashMap<>();
 
     public void addRecords(final String nodeId, final List<Record> recordList) {
         recordMap.put(nodeId, recordList);
+        recordList.forEach(record -> expectedMap.merge(record.getId(), 1, Integer::sum));
     }
 
     public void addStatus(final String nodeId, final List<Integer> statusList) {
         statusMap.put(nodeId, statusList);
     }
 
+    /**
+     * An insert is consistent if every record was inserted either on all of its nodes or on none of them
+     *
+     * @return <code>true</code> if the insert is consistent across the nodes; <code>false</code> otherwise
+     */
     public boolean allInsertsConsistent() {
-        recordMap.forEach((nodeId, records) -> {
-            List<Integer> statusList = statusMap.get(nodeId);
+        successMap.clear();
+        for(Map.Entry<String, List<Record>> entry : recordMap.entrySet()) {
+            List<Record> records = entry.getValue();
+            List<Integer> statusList = statusMap.get(entry.getKey());
+            if(statusList == null || statusList.size() != records.size()) {
+                return false;
+            }
 
             for(int i = 0; i < records.size(); i++) {
-                Record record = records.get(i);
-                int status = statusList.get(i);
-
-                if(status == 1) {
-                    if(!successMap.containsKey(record)) {
-                        successMap.put(record, 0);
-                    }
-
-                    successMap.put(record, successMap.get(record) + 1);
+                if(statusList.get(i) == 1) {
+                    successMap.merge(records.get(i).getId(), 1, Integer::sum);
                 }
             }
-        });
+        }
 
-        return !successMap.values().stream()
-                .filter(value -> value != 0 && value != replicas).findFirst()
+        return !successMap.entrySet().stream()
+                .filter(entry -> !entry.getValue().equals(expectedMap.get(entry.getKey()))).findFirst()
                 .isPresent();
     }
 
@@ -81,7 +83,8 @@ public class InsertStatusHolder {
         int failedCount = 0;
 
         for(Record record : recordOrderList) {
-            if(successMap.get(record) == replicas) {
+            Integer successes = successMap.get(record.getId());
+            if(successes != null && successes.equals(expectedMap.get(record.getId()))) {
                 statusArray.put(1);
                 idArray.put(record.getId());
                 successCount ++;
@@ -103,6 +106,7 @@ public class InsertStatusHolder {
     public void invalidate() {
         recordMap.clear();
         statusMap.clear();
+        expectedMap.clear();
         successMap.clear();
     }
 }
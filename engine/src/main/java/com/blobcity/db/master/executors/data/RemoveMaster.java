@@ -26,7 +26,7 @@ import com.blobcity.lib.query.Query;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Semaphore;
 import org.json.JSONObject;
 
@@ -61,7 +61,8 @@ public class RemoveMaster extends AbstractCommitMaster implements MasterExecutab
     }
 
 
-    public Future<Object> execute() throws OperationException {
+    @Override
+    public CompletableFuture<Query> execute() throws OperationException {
         return null;
 //        if (bQueryRemoveStatement == null) {
 //            return new AsyncResult<>(executeSQL());
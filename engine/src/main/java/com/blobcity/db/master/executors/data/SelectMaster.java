@@ -34,6 +34,7 @@ import org.json.JSONObject;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Master that manages the data insert requests
@@ -51,7 +52,7 @@ public class SelectMaster extends ExecuteSelectedNodesCommitMaster implements Ma
     }
 
     @Override
-    public Query call() throws Exception {
+    public CompletableFuture<Query> execute() throws OperationException {
         List<com.blobcity.lib.data.Record> toInsertList = new ArrayList<>();
 
         final String ds = super.query.getString(QueryParams.DATASTORE);
@@ -59,7 +60,7 @@ public class SelectMaster extends ExecuteSelectedNodesCommitMaster implements Ma
 
         BSqlCollectionManager collectionManager = super.getBean(BSqlCollectionManager.class);
         if(!collectionManager.exists(ds, collection)) {
-            return new Query().ackFailure().errorCode(ErrorCode.COLLECTION_INVALID.getErrorCode());
+            return CompletableFuture.completedFuture(new Query().ackFailure().errorCode(ErrorCode.COLLECTION_INVALID.getErrorCode()));
         }
 
         final JSONObject payloadJson = super.query.getJSONObject(QueryParams.PAYLOAD);
@@ -114,7 +115,6 @@ public class SelectMaster extends ExecuteSelectedNodesCommitMaster implements Ma
 
         super.query.insertQuery(ds, collection, toInsertList, recordType);
         this.messageAllConcernedNodes(super.query);
-        this.awaitCompletion(); //TODO: Might want to have a timeout to prevent indefinite waiting
-        return this.getResponse();
+        return this.awaitCompletion();
     }
 }
@@ -26,7 +26,7 @@ import com.blobcity.lib.query.Query;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Semaphore;
 import org.json.JSONObject;
 
@@ -60,7 +60,8 @@ public class UpdateMaster extends AbstractCommitMaster implements MasterExecutab
         this.bQueryUpdateStatement = null;
     }
 
-    public Future<Object> execute() throws OperationException {
+    @Override
+    public CompletableFuture<Query> execute() throws OperationException {
         return null;
 //        if (bQueryUpdateStatement == null) {
 //            return new AsyncResult<>(executeSQL());
@@ -20,12 +20,10 @@ import com.blobcity.db.master.AbstractCommitMaster;
 import com.blobcity.db.master.MasterExecutable;
 import com.blobcity.lib.query.Query;
 
-import java.util.concurrent.Callable;
-
 /**
  * @author sanketsarang
  */
-public class ExecuteAllNodesCommitMaster extends AbstractCommitMaster implements MasterExecutable, Callable<Query> {
+public class ExecuteAllNodesCommitMaster extends AbstractCommitMaster implements MasterExecutable {
 
     public ExecuteAllNodesCommitMaster(Query query) {
         super(query);
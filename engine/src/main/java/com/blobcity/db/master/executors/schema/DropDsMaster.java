@@ -50,8 +50,6 @@ public class DropDsMaster extends ExecuteAllNodesCommitMaster implements MasterE
     @Override
     protected void complete(final Query query) {
         query.put(QueryParams.ARCHIVE_CODE, this.archiveCode);
-        super.response = query;
-        super.completed = true;
-        super.semaphore.release();
+        super.responseFuture.complete(query);
     }
 }
@@ -18,138 +18,243 @@ package com.blobcity.db.memory.collection;
 
 import com.blobcity.db.exceptions.ErrorCode;
 import com.blobcity.db.exceptions.OperationException;
-import com.blobcity.db.memory.columns.BTreeColumn;
-import com.blobcity.db.memory.columns.Column;
-import com.blobcity.db.memory.columns.GeospatialColumn;
-import com.blobcity.db.memory.columns.TimeseriesColumn;
-import com.blobcity.db.memory.records.JsonRecord;
+import com.blobcity.db.lang.Operators;
+import com.blobcity.db.memory.columnar.ColumnarTable;
 import com.blobcity.db.schema.IndexTypes;
-import com.blobcity.db.util.Performance;
 import com.blobcity.lib.data.Record;
+import org.json.JSONObject;
 
-import java.io.*;
-import java.util.*;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Holds records for a single in-memory collection. Same implementation and use for durable and non-durable in-memory
- * collections
+ * collections. Records are stored column wise in a {@link ColumnarTable}, keyed by their primary key.
  *
  * @author sanketsarang
  */
-public class MemCollection implements Serializable {
+public class MemCollection {
 
     private final String ds;
     private final String collection;
 
     private final String collectionName; //must be fully qualified collection name: "ds.collection"
-//    private final Set<Record> insertSet = new HashSet<>(5000000); //5 million, arbitrary value. Should be configurable at collection creation
-//    private final THashSet<Record> insertSet = new THashSet<>(180000000);//180 million
-    private RecordSet insertSet;
-    private final List<RecordSet> sets;
-    private Map<String, Column> indexMap = new HashMap<>();
+    private final ColumnarTable table;
 
     public MemCollection(final String collectionName) {
+        this(collectionName, new ColumnarTable());
+    }
+
+    private MemCollection(final String collectionName, final ColumnarTable table) {
+        this.table = table;
         this.collectionName = collectionName;
 
-        String[] parts = collectionName.split(".");
-        this.ds = parts[0];
-        this.collection = parts[1];
+        /* Start searching dot from index 1 to handle case of .systemdb as datastore name */
+        final int separator = collectionName.indexOf('.', 1);
+        if(separator < 0) {
+            throw new IllegalArgumentException("Collection name must be fully qualified as ds.collection: " + collectionName);
+        }
+        this.ds = collectionName.substring(0, separator);
+        this.collection = collectionName.substring(separator + 1);
+    }
+
+    /**
+     * Creates a collection under a new name holding the same records as this collection
+     * @param newCollectionName fully qualified collection name: "ds.collection"
+     * @return the renamed collection
+     */
+    public MemCollection renameTo(final String newCollectionName) {
+        return new MemCollection(newCollectionName, table);
+    }
 
-        sets = new ArrayList<>();
-        insertSet = new RecordSet(ds, collection);
-        sets.add(insertSet);
+    public String getDs() {
+        return ds;
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    public String getCollectionName() {
+        return collectionName;
     }
 
     public void add(Record record) throws OperationException {
-        if(record.uniqueCheckRequired() && sets.parallelStream().anyMatch(set -> set.contains(record))) {
-            throw new OperationException(ErrorCode.PRIMARY_KEY_CONFLICT,"A record with the given primary key already exists");
-        }
+        table.insert(record.getId(), record.asJson());
+    }
 
-        insertSet.add(record);
+    public void add(final String _id, final JSONObject json) throws OperationException {
+        table.insert(_id, json);
     }
 
     public void add(List<Record> records) throws OperationException {
-        if(records.parallelStream().anyMatch(record ->
-                record.uniqueCheckRequired() && sets.parallelStream().anyMatch(set -> set.contains(record)))){
-            throw new OperationException(ErrorCode.PRIMARY_KEY_CONFLICT,"A record with the given primary key already exists");
+        final Map<String, JSONObject> map = new LinkedHashMap<>();
+        for(Record record : records) {
+            if(map.put(record.getId(), record.asJson()) != null) {
+                throw new OperationException(ErrorCode.PRIMARY_KEY_CONFLICT,"A record with the given primary key already exists");
+            }
         }
 
-        insertSet.addAll(records);
+        table.insertAll(map);
+    }
 
-        if(insertSet.size() >= Performance.HASH_BUCKET) {
-//            insertSet = new HashSet<>(Performance.HASH_BUCKET * 2);
-            insertSet = new RecordSet(this.ds, this.collection);
-            sets.add(insertSet);
-        }
+    public boolean contains(final String _id) {
+        return table.contains(_id);
+    }
+
+    public JSONObject get(final String _id) {
+        return table.get(_id);
+    }
+
+    public int size() {
+        return table.size();
+    }
+
+    public List<String> getKeys() {
+        return table.keys(null);
     }
 
-    public List<Record> getRecords() {
-        List<Record> list = Collections.synchronizedList(new ArrayList<>(Performance.HASH_BUCKET * sets.size()));
-        sets.parallelStream().forEach(set -> list.addAll(set.getCompleteSet()));
-        return list;
+    /**
+     * Gets all records of the collection
+     * @param columns the columns to include in each record, or <code>null</code> for all columns
+     * @return list of records
+     */
+    public List<JSONObject> getRecords(final Collection<String> columns) {
+        return table.select(table.rows(), columns);
+    }
+
+    /**
+     * Selects records whose value for the column satisfies the operator. Evaluated over the column vectors, so that
+     * only matching records are materialized.
+     *
+     * @param column the column to filter on
+     * @param operator the comparison operator
+     * @param values the reference values as required by the operator
+     * @param columns the columns to include in each record, or <code>null</code> for all columns
+     * @return list of matching records
+     */
+    public List<JSONObject> search(final String column, final Operators operator, final Object[] values, final Collection<String> columns) {
+        return table.select(table.filter(column, operator, values), columns);
+    }
+
+    /**
+     * Selects primary keys of records whose value for the column satisfies the operator
+     * @param column the column to filter on
+     * @param operator the comparison operator
+     * @param values the reference values as required by the operator
+     * @return list of matching primary keys
+     */
+    public List<String> searchKeys(final String column, final Operators operator, final Object... values) {
+        final BitSet rows = table.filter(column, operator, values);
+        return table.keys(rows);
+    }
+
+    /**
+     * Gets the rows currently holding a record. Rows identify records only within this collection, and only until
+     * the records are removed.
+     * @return a new bit set of rows
+     */
+    public BitSet rows() {
+        return table.rows();
+    }
+
+    /**
+     * Selects the rows whose value for the column satisfies the operator
+     * @param column the column to filter on
+     * @param operator the comparison operator
+     * @param values the reference values as required by the operator
+     * @return a new bit set of matching rows
+     */
+    public BitSet filter(final String column, final Operators operator, final Object... values) {
+        return table.filter(column, operator, values);
+    }
+
+    /**
+     * Materializes the records held in the given rows
+     * @param rows rows obtained from {@link #rows()} or {@link #filter(String, Operators, Object...)}
+     * @param columns the columns to include in each record, or <code>null</code> for all columns
+     * @return list of records in row order
+     */
+    public List<JSONObject> select(final BitSet rows, final Collection<String> columns) {
+        return table.select(rows, columns);
     }
 
     public void remove(Record record) {
-        insertSet.remove(record);
-        sets.forEach(set -> set.remove(record));
+        table.remove(record.getId());
     }
 
-    public void remove(final String _id) {
-        Record removeRecord = new JsonRecord("{\"_id\":\"" + _id + "\"");
-        insertSet.remove(removeRecord);
-        sets.forEach(set -> set.remove(removeRecord));
+    public boolean remove(final String _id) {
+        return table.remove(_id);
     }
 
     /**
      * Update or insert. Updates previous records or inserts a new one
      * @param _id the unique _id of the record to update
-     * @param record new record to insert, or update as required
+     * @param json complete contents of the record to insert or update
      */
-    public void upsert(final String _id, final Record record) throws OperationException {
-        remove(_id);
-        add(record);
+    public void upsert(final String _id, final JSONObject json) {
+        table.upsert(_id, json);
+    }
+
+    public void clear() {
+        table.clear();
     }
 
     /**
-     * Used to passivate data in the table to disk
+     * Approximate heap consumed by the records of this collection
+     * @return size in bytes
      */
-    public void passivate() {
-        try(ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(new File("")))) {
-            oos.writeObject(insertSet);
-        }catch (IOException ex){
+    public long getMemoryUsage() {
+        return table.estimatedBytes();
+    }
 
-        }
+    /**
+     * Used to passivate data in the table to disk
+     */
+    public void passivate() throws OperationException {
+        throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "Operation not supported yet.");
     }
 
     /**
      * Used to load data from disk into this table
      */
-    public void loadFromDisk() {
-
+    public void loadFromDisk() throws OperationException {
+        throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "Operation not supported yet.");
     }
 
-    public void createIndex(final String columnName, IndexTypes indexTypes) throws OperationException {
-        if(indexMap.containsKey(columnName)) {
-            throw new OperationException(ErrorCode.INDEXING_ERROR, "Attempting to index an an inexistent column");
+    /**
+     * Creates an index on the column. Equality based index types are backed by an in-memory hash index over the
+     * column; other index types are not supported for in-memory collections.
+     *
+     * @param columnName internal name of the column to index
+     * @param indexType the type of index to create
+     * @throws OperationException if the column is already indexed or the index type is not supported
+     */
+    public void createIndex(final String columnName, IndexTypes indexType) throws OperationException {
+        if(indexType == IndexTypes.NONE) {
+            table.dropIndex(columnName);
+        } else if(supportsIndex(indexType)) {
+            table.createIndex(columnName);
+        } else {
+            throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "Index type " + indexType.getText()
+                    + " is not supported for in-memory collections");
         }
+    }
 
-        Column column;
-
-        //TODO: implement this
-
-//        switch(indexTypes) {
-//            case BITMAP:
-//            case HASHED:
-//            case BTREE:
-//                indexMap.put(column, new BTreeColumn());
-//                break;
-//            case TIMESERIES:
-//                indexMap.put(column, new TimeseriesColumn());
-//                break;
-//            case GEO:
-//                indexMap.put(column, new GeospatialColumn());
-//
-//        }
+    public static boolean supportsIndex(final IndexTypes indexType) {
+        switch(indexType) {
+            case UNIQUE:
+            case BTREE:
+            case BPLUSTREE:
+            case HASHED:
+            case BITMAP:
+                return true;
+            default:
+                return false;
+        }
     }
 
 }
@@ -17,8 +17,8 @@
 package com.blobcity.db.memory.collection;
 
 import org.springframework.stereotype.Component;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author sanketsarang
@@ -27,17 +27,37 @@ import java.util.Map;
 @Component
 public class MemCollectionStoreBean {
 
-    private Map<String, MemCollection> map = new HashMap<>();
+    private final Map<String, MemCollection> map = new ConcurrentHashMap<>();
 
     public void add(final String collectionName, final MemCollection memCollection) {
         map.put(collectionName, memCollection);
     }
 
+    /**
+     * Adds the collection unless one is already registered under the same name
+     * @param collectionName fully qualified collection name: "ds.collection"
+     * @return the collection registered under the name
+     */
+    public MemCollection addIfAbsent(final String collectionName) {
+        return map.computeIfAbsent(collectionName, MemCollection::new);
+    }
+
     public MemCollection get(final String collectionName) {
         return map.get(collectionName);
     }
 
+    public boolean contains(final String collectionName) {
+        return map.containsKey(collectionName);
+    }
+
     public void remove(final String collectionName) {
         map.remove(collectionName);
     }
+
+    public void rename(final String oldCollectionName, final String newCollectionName) {
+        final MemCollection memCollection = map.remove(oldCollectionName);
+        if(memCollection != null) {
+            map.put(newCollectionName, memCollection.renameTo(newCollectionName));
+        }
+    }
 }
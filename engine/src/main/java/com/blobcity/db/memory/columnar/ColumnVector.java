@@ -0,0 +1,295 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.memory.columnar;
+
+import com.blobcity.db.lang.Operators;
+import org.json.JSONObject;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+import java.util.regex.Pattern;
+
+/**
+ * Stores the values of a single column of an in-memory collection, indexed by row number. Implementations hold values
+ * in primitive arrays wherever the column type permits, and track nulls in a presence bitmap so that absent values do
+ * not occupy any object on heap.
+ *
+ * <p>Instances are not thread safe. Access is guarded by the owning {@link ColumnarTable}.</p>
+ *
+ * @author sanketsarang
+ */
+public abstract class ColumnVector {
+
+    private static final IntPredicate NONE = row -> false;
+    private static final long MAX_EXACT_DOUBLE = 1L << 53;
+
+    /* Bit set for every row that holds a non-null value in this column */
+    protected final BitSet present = new BitSet();
+
+    /**
+     * Creates the most compact vector capable of holding the given value
+     * @param value the first non-null value being stored in a column
+     * @return a new empty vector
+     */
+    public static ColumnVector forValue(final Object value) {
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return new IntVector();
+        } else if (value instanceof Long) {
+            return new LongVector();
+        } else if (value instanceof Double || value instanceof Float) {
+            return new DoubleVector();
+        } else if (value instanceof String) {
+            return new StringVector();
+        }
+
+        return new ObjectVector();
+    }
+
+    /**
+     * Creates a vector that can hold all values currently held in this vector along with the passed value, and copies
+     * all present values into it. Called when a value arrives that this vector cannot store natively.
+     * @param value the value that could not be accepted by this vector
+     * @return a new vector holding the contents of this vector
+     */
+    public ColumnVector widen(final Object value) {
+        final ColumnVector widened;
+        if (this instanceof IntVector && value instanceof Long) {
+            widened = new LongVector();
+        } else if ((this instanceof IntVector || this instanceof LongVector) && (value instanceof Double || value instanceof Float)
+                && !exceedsExactDouble()) {
+            widened = new DoubleVector();
+        } else {
+            widened = new ObjectVector();
+        }
+
+        for (int row = present.nextSetBit(0); row >= 0; row = present.nextSetBit(row + 1)) {
+            widened.set(row, getValue(row));
+        }
+        return widened;
+    }
+
+    /**
+     * Checks if the value can be stored natively by this vector without widening
+     * @param value a non-null value
+     * @return <code>true</code> if the value can be stored; <code>false</code> otherwise
+     */
+    public abstract boolean accepts(Object value);
+
+    public void set(final int row, final Object value) {
+        if (value == null || value == JSONObject.NULL) {
+            clear(row);
+            return;
+        }
+
+        ensureCapacity(row + 1);
+        setValue(row, value);
+        present.set(row);
+    }
+
+    public void clear(final int row) {
+        if (present.get(row)) {
+            present.clear(row);
+            clearValue(row);
+        }
+    }
+
+    public boolean isNull(final int row) {
+        return !present.get(row);
+    }
+
+    public Object get(final int row) {
+        return present.get(row) ? getValue(row) : null;
+    }
+
+    /**
+     * Selects the rows that satisfy the operator against the reference values. Only rows present in the candidate set
+     * are evaluated. Rows holding a null value never satisfy any operator, in line with SQL semantics.
+     *
+     * @param operator the comparison operator
+     * @param values the reference values. One value for comparison operators, two for <code>BETWEEN</code> and any
+     * number for <code>IN</code> and <code>NOT IN</code>
+     * @param candidates the rows to evaluate
+     * @return a new bit set of matching rows
+     */
+    public BitSet filter(final Operators operator, final Object[] values, final BitSet candidates) {
+        final BitSet rows = (BitSet) candidates.clone();
+        rows.and(present);
+
+        final IntPredicate predicate = predicate(operator, values);
+        if (predicate == NONE) {
+            rows.clear();
+            return rows;
+        }
+
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            if (!predicate.test(row)) {
+                rows.clear(row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Approximate heap consumed by this vector, excluding object values that are shared with other structures
+     * @return size in bytes
+     */
+    public abstract long estimatedBytes();
+
+    protected abstract void setValue(int row, Object value);
+
+    protected abstract Object getValue(int row);
+
+    protected abstract void clearValue(int row);
+
+    protected abstract void ensureCapacity(int rows);
+
+    /**
+     * Builds a predicate over row numbers for the given operator. Implementations override this to evaluate directly
+     * against their primitive storage, and fall back to this implementation for operators they do not specialise.
+     */
+    protected IntPredicate predicate(final Operators operator, final Object[] values) {
+        final ValueTest test = valueTest(operator, values);
+        return test == null ? NONE : row -> test.test(getValue(row));
+    }
+
+    protected static IntPredicate none() {
+        return NONE;
+    }
+
+    /**
+     * Generic comparison of a single value against the reference values. Values are compared numerically when both
+     * sides are numeric and lexicographically otherwise.
+     * @return the test, or <code>null</code> if no value can satisfy the operator
+     */
+    protected static ValueTest valueTest(final Operators operator, final Object[] values) {
+        switch (operator) {
+            case EQ:
+                return value -> compare(value, values[0]) == 0;
+            case NEQ:
+                return value -> compare(value, values[0]) != 0;
+            case LT:
+                return value -> compare(value, values[0]) < 0;
+            case LTEQ:
+                return value -> compare(value, values[0]) <= 0;
+            case GT:
+                return value -> compare(value, values[0]) > 0;
+            case GTEQ:
+                return value -> compare(value, values[0]) >= 0;
+            case BETWEEN:
+                return value -> compare(value, values[0]) >= 0 && compare(value, values[1]) <= 0;
+            case NOT_BETWEEN:
+                return value -> compare(value, values[0]) < 0 || compare(value, values[1]) > 0;
+            case IN:
+                return value -> Arrays.stream(values).anyMatch(reference -> compare(value, reference) == 0);
+            case NOT_IN:
+                return value -> Arrays.stream(values).noneMatch(reference -> compare(value, reference) == 0);
+            case LIKE:
+                final Pattern pattern = likePattern(values[0].toString());
+                return value -> pattern.matcher(value.toString()).matches();
+            default:
+                return null;
+        }
+    }
+
+    protected static int compare(final Object value, final Object reference) {
+        final Double numericValue = toDouble(value);
+        final Double numericReference = numericValue == null ? null : toDouble(reference);
+        if (numericReference != null) {
+            return Double.compare(numericValue, numericReference);
+        }
+
+        return value.toString().compareTo(reference.toString());
+    }
+
+    /**
+     * Converts a reference value to a double for numeric comparisons
+     * @return the numeric value, or <code>null</code> if the value is not numeric
+     */
+    protected static Double toDouble(final Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+
+        if (value instanceof String) {
+            try {
+                return Double.parseDouble(((String) value).trim());
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+
+        return null;
+    }
+
+    protected static double[] toSortedDoubles(final Object[] values) {
+        return Arrays.stream(values).map(ColumnVector::toDouble).filter(value -> value != null)
+                .mapToDouble(Double::doubleValue).sorted().toArray();
+    }
+
+    protected static boolean isExactDouble(final long value) {
+        return value <= MAX_EXACT_DOUBLE && value >= -MAX_EXACT_DOUBLE;
+    }
+
+    protected static boolean isExactDouble(final Number value) {
+        if (value instanceof BigDecimal || value instanceof BigInteger) {
+            return false;
+        }
+
+        return !(value instanceof Long) || isExactDouble(value.longValue());
+    }
+
+    /**
+     * Converts an SQL LIKE expression into a regular expression. <code>%</code> matches any sequence of characters and
+     * <code>_</code> matches any single character. All other characters match literally.
+     */
+    static Pattern likePattern(final String expression) {
+        final StringBuilder regex = new StringBuilder();
+        final StringBuilder literal = new StringBuilder();
+        for (char ch : expression.toCharArray()) {
+            if (ch == '%' || ch == '_') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(ch == '%' ? ".*" : ".");
+            } else {
+                literal.append(ch);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    private boolean exceedsExactDouble() {
+        for (int row = present.nextSetBit(0); row >= 0; row = present.nextSetBit(row + 1)) {
+            if (!isExactDouble((Number) getValue(row))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @FunctionalInterface
+    protected interface ValueTest {
+        boolean test(Object value);
+    }
+}
@@ -0,0 +1,427 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.memory.columnar;
+
+import com.blobcity.db.exceptions.ErrorCode;
+import com.blobcity.db.exceptions.OperationException;
+import com.blobcity.db.lang.Operators;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Column oriented storage for the records of a single in-memory collection. Each column is held in a
+ * {@link ColumnVector} indexed by row number, and each record occupies one row across all vectors. Rows freed by
+ * removals are reused by subsequent inserts.
+ *
+ * <p>Filters run directly over the column vectors and produce a {@link BitSet} of matching rows. Records are
+ * materialized into {@link JSONObject}s only for the rows and columns that are finally selected.</p>
+ *
+ * <p>Columns may optionally be indexed for equality lookups. An index maps each distinct value to the rows holding it
+ * and is used to narrow the rows evaluated by <code>EQ</code> and <code>IN</code> filters.</p>
+ *
+ * @author sanketsarang
+ */
+public class ColumnarTable {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> rowsById = new HashMap<>();
+    private final Map<String, ColumnVector> columns = new LinkedHashMap<>();
+    private final Map<String, Map<Object, BitSet>> indexes = new HashMap<>();
+    private final BitSet live = new BitSet();
+    private String[] ids = new String[16];
+    private int freeHint = 0;
+
+    /**
+     * Inserts a new record
+     * @param id the primary key of the record
+     * @param json the record contents
+     * @throws OperationException with {@link ErrorCode#PRIMARY_KEY_CONFLICT} if a record with the same id exists
+     */
+    public void insert(final String id, final JSONObject json) throws OperationException {
+        lock.writeLock().lock();
+        try {
+            if (rowsById.containsKey(id)) {
+                throw new OperationException(ErrorCode.PRIMARY_KEY_CONFLICT, "A record with the given primary key already exists");
+            }
+            write(allocateRow(id), json);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Inserts a batch of records. Either all records are inserted, or none are if any record conflicts with an
+     * existing record or with another record of the batch.
+     * @param records map of primary key to record contents
+     * @throws OperationException with {@link ErrorCode#PRIMARY_KEY_CONFLICT} if any primary key already exists
+     */
+    public void insertAll(final Map<String, JSONObject> records) throws OperationException {
+        lock.writeLock().lock();
+        try {
+            if (records.keySet().stream().anyMatch(rowsById::containsKey)) {
+                throw new OperationException(ErrorCode.PRIMARY_KEY_CONFLICT, "A record with the given primary key already exists");
+            }
+            records.forEach((id, json) -> write(allocateRow(id), json));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Inserts the record, replacing any existing record with the same id
+     * @param id the primary key of the record
+     * @param json the complete record contents
+     */
+    public void upsert(final String id, final JSONObject json) {
+        lock.writeLock().lock();
+        try {
+            final Integer row = rowsById.get(id);
+            if (row != null) {
+                clearRow(row);
+                write(row, json);
+            } else {
+                write(allocateRow(id), json);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean remove(final String id) {
+        lock.writeLock().lock();
+        try {
+            final Integer row = rowsById.remove(id);
+            if (row == null) {
+                return false;
+            }
+
+            clearRow(row);
+            ids[row] = null;
+            live.clear(row);
+            freeHint = Math.min(freeHint, row);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            rowsById.clear();
+            columns.clear();
+            indexes.replaceAll((column, index) -> new HashMap<>());
+            live.clear();
+            ids = new String[16];
+            freeHint = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(final String id) {
+        lock.readLock().lock();
+        try {
+            return rowsById.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return rowsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets a single record
+     * @param id the primary key of the record
+     * @return the materialized record, or <code>null</code> if no record exists with the given id
+     */
+    public JSONObject get(final String id) {
+        lock.readLock().lock();
+        try {
+            final Integer row = rowsById.get(id);
+            return row == null ? null : materialize(row, columns.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets all rows currently holding a record
+     * @return a new bit set of rows
+     */
+    public BitSet rows() {
+        lock.readLock().lock();
+        try {
+            return (BitSet) live.clone();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Selects the rows whose value for the column satisfies the operator. Rows without a value for the column never
+     * match.
+     *
+     * @param column the column to filter on
+     * @param operator the comparison operator
+     * @param values the reference values as required by the operator
+     * @return a new bit set of matching rows
+     */
+    public BitSet filter(final String column, final Operators operator, final Object... values) {
+        return filter(column, operator, values, null);
+    }
+
+    /**
+     * Selects the rows among the candidates whose value for the column satisfies the operator. Used to evaluate
+     * conjunctions by narrowing the result of a previous filter.
+     *
+     * @param candidates rows to evaluate, or <code>null</code> to evaluate all rows
+     */
+    public BitSet filter(final String column, final Operators operator, final Object[] values, final BitSet candidates) {
+        lock.readLock().lock();
+        try {
+            final ColumnVector vector = columns.get(column);
+            if (vector == null || values.length == 0) {
+                return new BitSet();
+            }
+
+            BitSet rows = candidates == null ? live : candidates;
+            final Map<Object, BitSet> index = indexes.get(column);
+            if (index != null && (operator == Operators.EQ || operator == Operators.IN)) {
+                final BitSet indexed = new BitSet();
+                Arrays.stream(values).map(value -> index.get(indexKey(value))).filter(set -> set != null).forEach(indexed::or);
+                indexed.and(rows);
+                rows = indexed;
+            }
+            return vector.filter(operator, values, rows);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Materializes records for the given rows
+     * @param rows rows to materialize
+     * @param selectColumns columns to include, or <code>null</code> for all columns
+     * @return records in row order
+     */
+    public List<JSONObject> select(final BitSet rows, final Collection<String> selectColumns) {
+        lock.readLock().lock();
+        try {
+            final Collection<String> projection = selectColumns == null ? columns.keySet() : selectColumns;
+            final List<JSONObject> list = new ArrayList<>(rows.cardinality());
+            for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                if (live.get(row)) {
+                    list.add(materialize(row, projection));
+                }
+            }
+            return list;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the primary keys of records in the given rows
+     * @param rows rows to read, or <code>null</code> for all rows
+     * @return primary keys in row order
+     */
+    public List<String> keys(final BitSet rows) {
+        lock.readLock().lock();
+        try {
+            final BitSet selected = rows == null ? live : rows;
+            final List<String> list = new ArrayList<>(selected.cardinality());
+            for (int row = selected.nextSetBit(0); row >= 0; row = selected.nextSetBit(row + 1)) {
+                if (live.get(row)) {
+                    list.add(ids[row]);
+                }
+            }
+            return list;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Creates an equality index on the column and populates it from existing records
+     * @param column name of the column to index
+     * @throws OperationException with {@link ErrorCode#INDEXING_ERROR} if the column is already indexed
+     */
+    public void createIndex(final String column) throws OperationException {
+        lock.writeLock().lock();
+        try {
+            if (indexes.containsKey(column)) {
+                throw new OperationException(ErrorCode.INDEXING_ERROR, "Column " + column + " is already indexed");
+            }
+
+            final Map<Object, BitSet> index = new HashMap<>();
+            final ColumnVector vector = columns.get(column);
+            if (vector != null) {
+                for (int row = live.nextSetBit(0); row >= 0; row = live.nextSetBit(row + 1)) {
+                    final Object value = vector.get(row);
+                    if (value != null) {
+                        index.computeIfAbsent(indexKey(value), key -> new BitSet()).set(row);
+                    }
+                }
+            }
+            indexes.put(column, index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void dropIndex(final String column) {
+        lock.writeLock().lock();
+        try {
+            indexes.remove(column);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isIndexed(final String column) {
+        lock.readLock().lock();
+        try {
+            return indexes.containsKey(column);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Set<String> getColumnNames() {
+        lock.readLock().lock();
+        try {
+            return new LinkedHashSet<>(columns.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Approximate heap consumed by the column vectors and row bookkeeping of this table
+     * @return size in bytes
+     */
+    public long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = (long) ids.length * 8 + rowsById.size() * 48L + live.size() / 8;
+            for (ColumnVector vector : columns.values()) {
+                bytes += vector.estimatedBytes();
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* Should be called only under the write lock */
+    private int allocateRow(final String id) {
+        final int row = live.nextClearBit(freeHint);
+        freeHint = row + 1;
+        if (row >= ids.length) {
+            ids = Arrays.copyOf(ids, NumericVector.grow(ids.length, row + 1));
+        }
+        ids[row] = id;
+        live.set(row);
+        rowsById.put(id, row);
+        return row;
+    }
+
+    /* Should be called only under the write lock */
+    private void write(final int row, final JSONObject json) {
+        final Iterator<String> keys = json.keys();
+        while (keys.hasNext()) {
+            final String column = keys.next();
+            final Object value = json.get(column);
+            if (value == null || value == JSONObject.NULL) {
+                continue;
+            }
+
+            ColumnVector vector = columns.get(column);
+            if (vector == null) {
+                vector = ColumnVector.forValue(value);
+                columns.put(column, vector);
+            } else if (!vector.accepts(value)) {
+                vector = vector.widen(value);
+                columns.put(column, vector);
+            }
+            vector.set(row, value);
+
+            final Map<Object, BitSet> index = indexes.get(column);
+            if (index != null) {
+                index.computeIfAbsent(indexKey(value), key -> new BitSet()).set(row);
+            }
+        }
+    }
+
+    /* Should be called only under the write lock */
+    private void clearRow(final int row) {
+        columns.forEach((column, vector) -> {
+            final Map<Object, BitSet> index = indexes.get(column);
+            if (index != null && !vector.isNull(row)) {
+                final Object key = indexKey(vector.get(row));
+                final BitSet indexed = index.get(key);
+                if (indexed != null) {
+                    indexed.clear(row);
+                    if (indexed.isEmpty()) {
+                        index.remove(key);
+                    }
+                }
+            }
+            vector.clear(row);
+        });
+    }
+
+    private JSONObject materialize(final int row, final Collection<String> projection) {
+        final JSONObject json = new JSONObject();
+        for (String column : projection) {
+            final ColumnVector vector = columns.get(column);
+            if (vector != null && !vector.isNull(row)) {
+                json.put(column, vector.get(row));
+            }
+        }
+        return json;
+    }
+
+    /**
+     * Normalizes values for index lookups, so that numerically equal values of different types share an entry.
+     * Candidates found through the index are always verified against the column vector.
+     */
+    private static Object indexKey(final Object value) {
+        final Double numeric = ColumnVector.toDouble(value);
+        return numeric != null ? numeric : value.toString();
+    }
+}
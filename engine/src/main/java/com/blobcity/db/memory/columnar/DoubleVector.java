@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.memory.columnar;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Column vector holding floating point values in a primitive array. Integral values that share the column, as is
+ * common in JSON where <code>1</code> and <code>1.5</code> may both appear, are stored as doubles and flagged so that
+ * they are read back as integral values.
+ *
+ * @author sanketsarang
+ */
+class DoubleVector extends NumericVector {
+
+    private double[] data = new double[16];
+    private final BitSet integral = new BitSet();
+
+    @Override
+    public boolean accepts(final Object value) {
+        return value instanceof Double || value instanceof Float || value instanceof Integer || value instanceof Short
+                || value instanceof Byte || (value instanceof Long && isExactDouble((Long) value));
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return (long) data.length * 8 + (present.size() + integral.size()) / 8;
+    }
+
+    @Override
+    protected void setValue(final int row, final Object value) {
+        data[row] = ((Number) value).doubleValue();
+        integral.set(row, !(value instanceof Double || value instanceof Float));
+    }
+
+    @Override
+    protected Object getValue(final int row) {
+        if (integral.get(row)) {
+            return (long) data[row];
+        }
+        return data[row];
+    }
+
+    @Override
+    protected void clearValue(final int row) {
+        data[row] = 0;
+        integral.clear(row);
+    }
+
+    @Override
+    protected void ensureCapacity(final int rows) {
+        if (rows > data.length) {
+            data = Arrays.copyOf(data, grow(data.length, rows));
+        }
+    }
+
+    @Override
+    protected double doubleAt(final int row) {
+        return data[row];
+    }
+}
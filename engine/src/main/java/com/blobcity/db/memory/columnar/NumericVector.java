@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.memory.columnar;
+
+import com.blobcity.db.lang.Operators;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Base for vectors holding numeric values in primitive arrays. Comparison operators are evaluated directly against
+ * the primitive values, with the reference values converted to a double once per filter.
+ *
+ * @author sanketsarang
+ */
+abstract class NumericVector extends ColumnVector {
+
+    protected abstract double doubleAt(int row);
+
+    @Override
+    protected IntPredicate predicate(final Operators operator, final Object[] values) {
+        switch (operator) {
+            case EQ:
+            case NEQ:
+            case LT:
+            case LTEQ:
+            case GT:
+            case GTEQ:
+                final Double reference = toDouble(values[0]);
+                if (reference == null) {
+                    return none();
+                }
+                return comparison(operator, reference);
+            case BETWEEN:
+            case NOT_BETWEEN:
+                final Double from = toDouble(values[0]);
+                final Double to = toDouble(values[1]);
+                if (from == null || to == null) {
+                    return none();
+                }
+                final double low = from;
+                final double high = to;
+                return operator == Operators.BETWEEN
+                        ? row -> doubleAt(row) >= low && doubleAt(row) <= high
+                        : row -> doubleAt(row) < low || doubleAt(row) > high;
+            case IN:
+            case NOT_IN:
+                final double[] references = toSortedDoubles(values);
+                return operator == Operators.IN
+                        ? row -> Arrays.binarySearch(references, doubleAt(row)) >= 0
+                        : row -> Arrays.binarySearch(references, doubleAt(row)) < 0;
+            default:
+                return super.predicate(operator, values);
+        }
+    }
+
+    private IntPredicate comparison(final Operators operator, final double reference) {
+        switch (operator) {
+            case EQ:
+                return row -> doubleAt(row) == reference;
+            case NEQ:
+                return row -> doubleAt(row) != reference;
+            case LT:
+                return row -> doubleAt(row) < reference;
+            case LTEQ:
+                return row -> doubleAt(row) <= reference;
+            case GT:
+                return row -> doubleAt(row) > reference;
+            default:
+                return row -> doubleAt(row) >= reference;
+        }
+    }
+
+    protected static int grow(final int current, final int required) {
+        int capacity = Math.max(current, 16);
+        while (capacity < required) {
+            capacity = capacity + (capacity >> 1);
+        }
+        return capacity;
+    }
+}
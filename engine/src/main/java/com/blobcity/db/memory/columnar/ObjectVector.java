@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.memory.columnar;
+
+import java.util.Arrays;
+
+/**
+ * Column vector for values without a primitive representation, such as booleans, decimals, nested objects and arrays,
+ * and for columns that hold values of mixed types
+ *
+ * @author sanketsarang
+ */
+class ObjectVector extends ColumnVector {
+
+    private Object[] data = new Object[16];
+
+    @Override
+    public boolean accepts(final Object value) {
+        return true;
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return (long) data.length * 8 + present.size() / 8;
+    }
+
+    @Override
+    protected void setValue(final int row, final Object value) {
+        data[row] = value;
+    }
+
+    @Override
+    protected Object getValue(final int row) {
+        return data[row];
+    }
+
+    @Override
+    protected void clearValue(final int row) {
+        data[row] = null;
+    }
+
+    @Override
+    protected void ensureCapacity(final int rows) {
+        if (rows > data.length) {
+            data = Arrays.copyOf(data, NumericVector.grow(data.length, rows));
+        }
+    }
+}
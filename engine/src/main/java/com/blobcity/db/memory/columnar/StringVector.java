@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.memory.columnar;
+
+import com.blobcity.db.lang.Operators;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+
+/**
+ * Dictionary encoded column vector for string values. Every distinct string is held once in the dictionary and rows
+ * hold an <code>int</code> code into it. Filters are evaluated once per distinct value and then applied to rows by
+ * code, so that a scan never compares strings per row. Equality operators match strings exactly, while range operators
+ * compare numerically when both sides are numeric.
+ *
+ * <p>Dictionary entries are not reclaimed when the rows referring to them are removed. The dictionary is reset when
+ * the owning table is cleared.</p>
+ *
+ * @author sanketsarang
+ */
+class StringVector extends ColumnVector {
+
+    private int[] codes = new int[16];
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> lookup = new HashMap<>();
+
+    @Override
+    public boolean accepts(final Object value) {
+        return value instanceof String;
+    }
+
+    @Override
+    public long estimatedBytes() {
+        long bytes = (long) codes.length * 4 + present.size() / 8;
+        for (String value : dictionary) {
+            bytes += 56 + value.length() * 2L; // string, its backing array and the lookup entry
+        }
+        return bytes;
+    }
+
+    public int getDictionarySize() {
+        return dictionary.size();
+    }
+
+    @Override
+    protected void setValue(final int row, final Object value) {
+        codes[row] = lookup.computeIfAbsent((String) value, key -> {
+            dictionary.add(key);
+            return dictionary.size() - 1;
+        });
+    }
+
+    @Override
+    protected Object getValue(final int row) {
+        return dictionary.get(codes[row]);
+    }
+
+    @Override
+    protected void clearValue(final int row) {
+        codes[row] = 0;
+    }
+
+    @Override
+    protected void ensureCapacity(final int rows) {
+        if (rows > codes.length) {
+            codes = Arrays.copyOf(codes, NumericVector.grow(codes.length, rows));
+        }
+    }
+
+    @Override
+    protected IntPredicate predicate(final Operators operator, final Object[] values) {
+        if (operator == Operators.EQ) {
+            final Integer code = lookup.get(values[0].toString());
+            if (code == null) {
+                return none();
+            }
+            final int match = code;
+            return row -> codes[row] == match;
+        }
+
+        final ValueTest test;
+        switch (operator) {
+            case NEQ:
+                final String reference = values[0].toString();
+                test = value -> !reference.equals(value);
+                break;
+            case IN:
+            case NOT_IN:
+                final Set<String> references = Arrays.stream(values).map(Object::toString).collect(Collectors.toSet());
+                test = operator == Operators.IN ? references::contains : value -> !references.contains(value);
+                break;
+            default:
+                test = valueTest(operator, values);
+        }
+        if (test == null) {
+            return none();
+        }
+
+        final boolean[] matches = new boolean[dictionary.size()];
+        boolean any = false;
+        for (int code = 0; code < matches.length; code++) {
+            matches[code] = test.test(dictionary.get(code));
+            any |= matches[code];
+        }
+        return any ? row -> matches[codes[row]] : none();
+    }
+}
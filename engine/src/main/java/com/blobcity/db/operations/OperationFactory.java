@@ -75,6 +75,7 @@ public class OperationFactory {
     private Operable getExportOperation(final ExportType exportType) {
         switch (exportType) {
             case CSV:
+            case NDJSON:
                 return csvExporter;
         }
 
@@ -25,4 +25,6 @@ public class OperationProperties {
     public static final String TIME_STARTED = "time-started";
     public static final String TIME_STOPPED = "time-stopped";
     public static final String RECORDS = "records";
+    public static final String BULK = "bulk";
+    public static final String COMPRESS = "compress";
 }
@@ -231,7 +231,7 @@ public class OperationsManager {
                 case EXPORT:
                     table = jsonObject.getString("t");
                     operationFileJson = new JSONObject(readOperationFile(app, table, opid));
-                    final ExportType exportType = ExportType.valueOf(operationFileJson.getString("export-type"));
+                    final ExportType exportType = ExportType.fromString(operationFileJson.getString("export-type"));
                     futureResponse = operationExecutor.startOperation(app, table, opid, OperationTypes.EXPORT, new String[]{exportType.getTypeCode()});
                     activeOperationStore.add(app, opid, futureResponse);
                     break;
@@ -75,6 +75,10 @@ public class ProcessHandler implements Runnable {
             case QUERY_RESPONSE:
                 masterStore = getBean(MasterStore.class);
                 MasterExecutable me = masterStore.get(query.getRequestId());
+                if(me == null) {
+                    logger.debug("Ignoring " + query.getQueryType() + " from node " + nodeId + " for completed request " + query.getRequestId());
+                    return;
+                }
                 me.notifyMessage(nodeId, query);
                 return;
 
@@ -16,8 +16,8 @@
 
 package com.blobcity.db.processors;
 
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * @author sanketsarang
@@ -30,13 +30,26 @@ public class ProcessorExecutorService {
         return ourInstance;
     }
 
-    private final ExecutorService executorService;
+    private final ThreadPoolExecutor executorService;
 
     private ProcessorExecutorService() {
-        executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        executorService = (ThreadPoolExecutor) Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
     }
 
     public void submit(ProcessHandler processHandler) {
         executorService.submit(processHandler);
     }
+
+    public void submit(Runnable task) {
+        executorService.submit(task);
+    }
+
+    /**
+     * Gets the number of messages waiting to be processed, used as a measure of load on this node
+     *
+     * @return number of queued messages
+     */
+    public int getQueueDepth() {
+        return executorService.getQueue().size();
+    }
 }
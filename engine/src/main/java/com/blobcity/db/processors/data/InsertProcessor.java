@@ -18,6 +18,8 @@ package com.blobcity.db.processors.data;
 
 import com.blobcity.db.bsql.BSqlCollectionManager;
 import com.blobcity.db.bsql.BSqlDataManager;
+import com.blobcity.db.cluster.ClusterNodesStore;
+import com.blobcity.db.cluster.NodeLoad;
 import com.blobcity.db.exceptions.OperationException;
 import com.blobcity.db.memory.records.*;
 import com.blobcity.db.processors.AbstractCommitProcessor;
@@ -33,6 +35,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.stream.IntStream;
 
 /**
  * @author sanketsarang
@@ -85,25 +88,48 @@ public class InsertProcessor extends AbstractCommitProcessor implements Processo
 
         BSqlDataManager dataManager = super.getBean(BSqlDataManager.class);
 
-        records.parallelStream().forEach(record -> {
-            pkList.add(record.getId());
+        /* Statuses are reported in the order of the received records, as the master correlates them by position */
+        final Integer[] statuses = new Integer[records.size()];
+        IntStream.range(0, records.size()).parallel().forEach(i -> {
+            final JsonRecord record = records.get(i);
+            statuses[i] = super.transientStore.acquireRecordPermit(ds, collection, record.getId()) ? 1 : 0; //permit will be released post commit or rollback
+        });
 
-            try {
-                if(super.transientStore.acquireRecordPermit(ds, collection, record.getId())) { //permit will be released post commit or rollback
-                    dataManager.insert(this.ds, this.collection, record);
-                    statusList.add(1);
-                    super.setRollbackNeedsAction();
-                } else {
-                    statusList.add(0);
-                }
-            } catch (OperationException e) {
-                logger.debug(query.getRequestId() + " : " + e.getErrorCode().getErrorCode() + " - " + e.getErrorCode().getErrorMessage());
-                statusList.add(0);
+        /* Permitted records are inserted as one batch, so that triggers are called once for the batch */
+        final List<Integer> permitted = new ArrayList<>();
+        final List<JSONObject> permittedJson = new ArrayList<>();
+        for(int i = 0; i < statuses.length; i++) {
+            if(statuses[i] == 1) {
+                permitted.add(i);
+                permittedJson.add(records.get(i).asJson());
             }
-        });
+        }
+        final BSqlDataManager.BatchInsertResult result = dataManager.insertAll(this.ds, this.collection, permittedJson);
+        if(result.getTriggerFailure() != null) {
+
+            /* The records are written by the time the after insert trigger runs, so they are reported as inserted */
+            final OperationException e = result.getTriggerFailure();
+            logger.debug(query.getRequestId() + " : " + e.getErrorCode().getErrorCode() + " - " + e.getErrorCode().getErrorMessage());
+        }
+        final JSONObject[] inserted = result.getInserted();
+        for(int j = 0; j < inserted.length; j++) {
+            if(inserted[j] != null) {
+                super.setRollbackNeedsAction();
+            } else {
+                statuses[permitted.get(j)] = 0;
+            }
+        }
+        records.forEach(record -> pkList.add(record.getId()));
+        statusList.addAll(Arrays.asList(statuses));
 
         responseQuery = new Query().requestId(query.getRequestId()).softCommitSuccessQuery().ackSuccess();
         responseQuery.put(QueryParams.STATUS, statusList);
+
+        /* Report the load of this node for use in load aware data placement by the master */
+        final NodeLoad nodeLoad = ClusterNodesStore.getInstance().getNodeLoad(ClusterNodesStore.getInstance().getSelfId());
+        if(nodeLoad != null) {
+            responseQuery.put(QueryParams.NODE_LOAD, nodeLoad.toJson());
+        }
         try {
             commitLogWriter.write(ds, collection, responseQuery);
             super.getClusterMessagingBean().sendMessage(responseQuery, query.getMasterNodeId());
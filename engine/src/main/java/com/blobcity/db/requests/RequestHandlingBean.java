@@ -21,7 +21,6 @@ import com.blobcity.db.cluster.messaging.ClusterMessaging;
 import com.blobcity.db.exceptions.ErrorCode;
 import com.blobcity.db.exceptions.OperationException;
 import com.blobcity.db.master.MasterExecutable;
-import com.blobcity.db.master.MasterExecutorService;
 import com.blobcity.db.master.MasterStore;
 import com.blobcity.db.master.executors.data.InsertMaster;
 import com.blobcity.db.master.executors.schema.*;
@@ -32,8 +31,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author sanketsarang
@@ -52,61 +50,54 @@ public class RequestHandlingBean {
     @Autowired
     private ClusterMessaging clusterMessaging;
 
+    /**
+     * Executes a new request and waits for its response. The master of the request completes it from the cluster
+     * responses, so only the calling thread waits. Failures are reported as failure responses.
+     *
+     * @param query the query to execute
+     * @return the response of the request
+     */
     public Query newRequest(Query query) {
-        String requestId = null;
 
-        try {
-
-            /**
-             * Creates a new request registered only on current node. The query object will contain the the requestId of
-             * the new request after the operation.
-             */
-            requestId = requestStore.registerRequest(query);
-            query.requestId(requestId);
+        /**
+         * Creates a new request registered only on current node. The query object will contain the the requestId of
+         * the new request after the operation.
+         */
+        final String requestId = requestStore.registerRequest(query);
+        query.requestId(requestId);
 
 //        logger.info("New Request: " + query.toJsonString());
 
-            /* Set the masterNodeId on the query to the current node */
-            query.masterNodeId(ClusterNodesStore.selfId);
+        /* Set the masterNodeId on the query to the current node */
+        query.masterNodeId(ClusterNodesStore.selfId);
 
-            return processRequest(query);
-
-        } finally {
-            requestStore.unregisterRequest(requestId);
-        }
+        return processRequest(query).whenComplete((response, ex) -> requestStore.unregisterRequest(requestId)).join();
     }
 
     public Query newSubRequest(final String parentRequestId, final Query query) {
 
-        String requestId = null;
+        /**
+         * Sets the id of the parent request
+         */
+        query.parentRequestId(parentRequestId);
 
-        try {
-
-            /**
-             * Sets the id of the parent request
-             */
-            query.parentRequestId(parentRequestId);
+        /**
+         * Creates a new request registered only on current node. The query object will contain the the requestId of
+         * the new request after the operation.
+         */
+        final String requestId = requestStore.registerRequest(query);
+        query.requestId(requestId);
 
-            /**
-             * Creates a new request registered only on current node. The query object will contain the the requestId of
-             * the new request after the operation.
-             */
-            requestId = requestStore.registerRequest(query);
-            query.requestId(requestId);
 
+        logger.info("New Sub Request for (" + parentRequestId + "): " + query.toJsonString());
 
-            logger.info("New Sub Request for (" + parentRequestId + "): " + query.toJsonString());
+        /* Set the masterNodeId on the query to the current node */
+        query.masterNodeId(ClusterNodesStore.selfId);
 
-            /* Set the masterNodeId on the query to the current node */
-            query.masterNodeId(ClusterNodesStore.selfId);
-
-            return processRequest(query);
-        }finally {
-            requestStore.unregisterRequest(requestId);
-        }
+        return processRequest(query).whenComplete((response, ex) -> requestStore.unregisterRequest(requestId)).join();
     }
 
-    private Query processRequest(final Query query) {
+    private CompletableFuture<Query> processRequest(final Query query) {
         MasterExecutable masterExecutable;
 
         try {
@@ -268,33 +259,40 @@ public class RequestHandlingBean {
 //            case ROLLBACK_SUCCESS:
 //                break;
                 default:
-                    return new Query().errorCode(ErrorCode.INVALID_QUERY.getErrorCode())
+                    return CompletableFuture.completedFuture(new Query().errorCode(ErrorCode.INVALID_QUERY.getErrorCode())
                             .message(ErrorCode.INVALID_QUERY.getErrorMessage())
-                            .ackFailure();
+                            .ackFailure());
             }
         }catch(OperationException ex) {
             logger.error("Error occurred " + ex.getErrorCode() + " " + ex.getMessage());
-            return new Query().ackFailure().errorCode(ex.getErrorCode().getErrorCode());
+            return CompletableFuture.completedFuture(new Query().ackFailure().errorCode(ex.getErrorCode().getErrorCode()));
         }
 
+        final MasterExecutable master = masterExecutable;
+        masterStore.register(query.getRequestId(), master);
+
+        CompletableFuture<Query> futureResponse;
         try {
-            masterStore.register(query.getRequestId(), masterExecutable);
-            Future<Query> futureResponse = MasterExecutorService.getInstance().submit(masterExecutable);
+            futureResponse = master.execute();
+        } catch (OperationException | RuntimeException ex) {
+            futureResponse = new CompletableFuture<>();
+            futureResponse.completeExceptionally(ex);
+        }
 
-            Query response = futureResponse.get();
+        return futureResponse.handle((response, ex) -> {
+            masterStore.unregister(query.getRequestId());
+            if(ex != null) {
+                logger.warn("Request (" + query.getRequestId() + ") failed on an internal exception", ex);
+                master.rollback();
+                return new Query().ackFailure();
+            }
             if(response == null) {
                 logger.warn("Request (" + query.getRequestId() + ") failed with unknown cause");
-                masterExecutable.rollback();
+                master.rollback();
                 return new Query().ackFailure();
             }
             logger.info("Response for requestId: {}, response: {}", query.getRequestId(), response.toJsonString());
             return response;
-        } catch (InterruptedException | ExecutionException e) {
-            logger.warn("Request (" + query.getRequestId() + ") failed on an internal exception");
-            masterExecutable.rollback();
-            return new Query().ackFailure();
-        } finally {
-            masterStore.unregister(query.getRequestId());
-        }
+        });
     }
 }
@@ -28,6 +28,7 @@ public enum IndexTypes {
     NONE("none"),
     UNIQUE("unique"),
     BTREE("btree"),
+    BPLUSTREE("bplustree"),
     HASHED("hashed"),
     BITMAP("bitmap"),
     ARRAY("array"),
@@ -25,6 +25,9 @@ public enum TableType {
 
     /* All data is stored on-disk and committed instantly to the storage system */
     ON_DISK("on-disk"),
+    /* All data is stored on-disk, packed into large append-only segment files instead of one file per record. Best
+     suited for large collections where the number of files on the file system becomes the bottleneck */
+    ON_DISK_SEGMENTED("on-disk-segmented"),
     /* All data is stored in-memory and commits happen in memory. The data is written in bulk to the disk periodically,
      with full roll-back capabilities supported. All writes are ensured to be durable */
     IN_MEMORY("in-memory"),
@@ -45,6 +48,8 @@ public enum TableType {
         switch(type.toLowerCase()) {
             case "on-disk":
                 return ON_DISK;
+            case "on-disk-segmented":
+                return ON_DISK_SEGMENTED;
             case "in-memory":
                 return IN_MEMORY;
             case "in-memory-nd":
@@ -16,6 +16,7 @@
 
 package com.blobcity.db.schema.beans;
 
+import com.blobcity.db.cache.StatementCache;
 import com.blobcity.db.exceptions.ErrorCode;
 import com.blobcity.db.exceptions.OperationException;
 import com.blobcity.db.schema.ColumnMapping;
@@ -42,6 +43,9 @@ public class SchemaStore {
     @Autowired(required = false)
     @Lazy
     private SchemaManager schemaManager;
+    @Autowired
+    @Lazy
+    private StatementCache statementCache;
     /**
      * AppId -> Table name -> Schema
      */
@@ -142,6 +146,9 @@ public class SchemaStore {
                 schemaMap.remove(appId);
             }
         }
+
+        /* Cached statements were parsed against the schema being replaced */
+        statementCache.invalidate(appId, table);
     }
 
     /**
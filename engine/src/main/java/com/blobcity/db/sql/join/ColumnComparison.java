@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.join;
+
+import com.blobcity.db.lang.Operators;
+import com.blobcity.db.sql.planner.Comparison;
+import org.json.JSONObject;
+
+/**
+ * A <code>column operator column</code> predicate between a column of the left and a column of the right collection
+ * of a join. The value of one side is used as the reference value of a {@link Comparison} evaluated on the other
+ * side, so that values compare exactly as they do in single collection predicates.
+ *
+ * @author sanketsarang
+ */
+public class ColumnComparison implements JoinPredicate {
+
+    private final String leftColumn;
+    private final Operators operator;
+    private final String rightColumn;
+    private final boolean leftOperand;
+
+    /**
+     * @param leftColumn column of the left collection
+     * @param operator the comparison operator, as written
+     * @param rightColumn column of the right collection
+     * @param leftOperand <code>true</code> if the column of the left collection is written before the operator
+     */
+    public ColumnComparison(final String leftColumn, final Operators operator, final String rightColumn, final boolean leftOperand) {
+        this.leftColumn = leftColumn;
+        this.operator = operator;
+        this.rightColumn = rightColumn;
+        this.leftOperand = leftOperand;
+    }
+
+    @Override
+    public boolean test(final JSONObject left, final JSONObject right) {
+        if (left == null || right == null) {
+            return false;
+        }
+        if (leftOperand) {
+            return new Comparison(leftColumn, operator, valueOf(right.opt(rightColumn))).test(left);
+        }
+        return new Comparison(rightColumn, operator, valueOf(left.opt(leftColumn))).test(right);
+    }
+
+    private Object valueOf(final Object value) {
+        return value == JSONObject.NULL ? null : value;
+    }
+
+    @Override
+    public JSONObject toJson() {
+        final JSONObject jsonObject = new JSONObject();
+        jsonObject.put("left", leftColumn);
+        jsonObject.put("operator", operator.getCode());
+        jsonObject.put("right", rightColumn);
+        return jsonObject;
+    }
+}
@@ -0,0 +1,467 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.join;
+
+import com.blobcity.db.exceptions.ErrorCode;
+import com.blobcity.db.exceptions.OperationException;
+import com.blobcity.db.sql.planner.ColumnStatistics;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Equi-join of two record streams on a single column, bounded in memory.
+ *
+ * <p>
+ * Records of the build side are held in a hash table keyed on the join column until more than
+ * <code>memoryRows</code> records have been read. From then on the join runs as a grace hash join: the build side is
+ * spilled to <code>PARTITIONS</code> files by the hash of the join key, the probe side is partitioned the same way,
+ * and every pair of partitions is then joined in memory on its own. A build partition that itself holds more than
+ * <code>memoryRows</code> records is split again, together with its probe partition, by a hash with a different seed,
+ * up to <code>MAX_DEPTH</code> levels. Beyond that the partition is joined in memory regardless, as its records then
+ * mostly share a few join keys that no hash can separate. Spill files are written as one JSON record per line and are
+ * deleted once joined or when the join is closed.
+ *
+ * <p>
+ * Join keys are compared in their normalized form, so that <code>5</code> and <code>5.0</code> match. Null keys
+ * never match. Pairs are produced in probe order as long as nothing is spilled, and partition by partition otherwise.
+ *
+ * @author sanketsarang
+ */
+public class HashJoin implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(HashJoin.class.getName());
+
+    public static final int PARTITIONS = 16;
+
+    /* Maximum number of times a partition is split again */
+    public static final int MAX_DEPTH = 4;
+
+    private final String buildColumn;
+    private final String probeColumn;
+    private final int memoryRows;
+    private final Path spillFolder;
+
+    private final Map<String, List<JSONObject>> table = new HashMap<>();
+    private int tableRows = 0;
+    private Path spillDirectory = null;
+    private BufferedWriter[] buildWriters = null;
+    private int depth = 0;
+
+    /**
+     * @param buildColumn join column of the build side
+     * @param probeColumn join column of the probe side
+     * @param memoryRows maximum number of build records held in memory
+     * @param spillFolder folder under which spill files are created
+     */
+    public HashJoin(final String buildColumn, final String probeColumn, final int memoryRows, final Path spillFolder) {
+        this.buildColumn = buildColumn;
+        this.probeColumn = probeColumn;
+        this.memoryRows = memoryRows;
+        this.spillFolder = spillFolder;
+    }
+
+    /**
+     * Gets the form in which a value of a join column is matched
+     *
+     * @param value the column value
+     * @return the join key; <code>null</code> if the value is null and hence matches nothing
+     */
+    public static String key(final Object value) {
+        if (value == null || value == JSONObject.NULL) {
+            return null;
+        }
+        return ColumnStatistics.normalize(value.toString());
+    }
+
+    /**
+     * Gets the forms under which a column value with the same join key as the specified value may be stored, for
+     * looking up matches through a primary key or an index, which hold values as they were written. A numeric value is
+     * looked up as written, as its join key, as an integer if integral, and in the form Java writes doubles, so that
+     * 5 finds 5.0 the same as in a hash join.
+     *
+     * @param value the column value
+     * @return the forms to look up, without duplicates; empty if the value is null and hence matches nothing
+     */
+    public static Set<String> lookupForms(final Object value) {
+        final String key = key(value);
+        if (key == null) {
+            return Collections.emptySet();
+        }
+
+        final Set<String> forms = new LinkedHashSet<>();
+        forms.add(value.toString());
+        forms.add(key);
+        final double number = number(key);
+        if (!Double.isNaN(number) && !Double.isInfinite(number)) {
+            forms.add(Double.toString(number));
+            if (number == Math.rint(number) && Math.abs(number) < Long.MAX_VALUE) {
+                forms.add(Long.toString((long) number));
+            }
+        }
+        return forms;
+    }
+
+    /* NaN if the value is not a number */
+    private static double number(final String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException ex) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Reads the complete build side
+     *
+     * @param rows records of the build side
+     * @throws OperationException if spilling to disk fails
+     */
+    public void build(final Iterator<JSONObject> rows) throws OperationException {
+        while (rows.hasNext()) {
+            final JSONObject row = rows.next();
+            final String key = key(row.opt(buildColumn));
+            if (key == null) {
+                continue;
+            }
+
+            if (buildWriters != null) {
+                write(buildWriters[partition(key, 0)], row);
+            } else {
+                table.computeIfAbsent(key, k -> new ArrayList<>()).add(row);
+                if (++tableRows > memoryRows) {
+                    spill();
+                }
+            }
+        }
+
+        if (buildWriters != null) {
+            closeAll(buildWriters);
+        }
+    }
+
+    /**
+     * Streams the probe side through the join. Must be called once, after {@link #build(Iterator)}.
+     *
+     * @param rows records of the probe side
+     * @param matchable probe records that may match at all; <code>null</code> if every record may match
+     * @param residual further condition on a <code>(probe, build)</code> pair with equal keys; <code>null</code> if
+     * equal keys suffice
+     * @param outer <code>true</code> to also produce every probe record that matched nothing, paired with
+     * <code>null</code>
+     * @param sink receives the <code>(probe, build)</code> pairs
+     * @return <code>false</code> if the sink stopped the join; <code>true</code> otherwise
+     * @throws OperationException if spill files cannot be written or read
+     */
+    public boolean probe(final Iterator<JSONObject> rows, final Predicate<JSONObject> matchable,
+            final BiPredicate<JSONObject, JSONObject> residual, final boolean outer, final JoinSink sink) throws OperationException {
+        if (buildWriters == null) {
+            while (rows.hasNext()) {
+                final JSONObject row = rows.next();
+                final String key = matchable == null || matchable.test(row) ? key(row.opt(probeColumn)) : null;
+                if (!match(row, key, residual, outer, sink)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        final BufferedWriter[] probeWriters = open("probe", null);
+        try {
+            while (rows.hasNext()) {
+                final JSONObject row = rows.next();
+                final String key = matchable == null || matchable.test(row) ? key(row.opt(probeColumn)) : null;
+                if (key != null) {
+                    write(probeWriters[partition(key, 0)], row);
+                } else if (outer && !sink.accept(row, null)) {
+                    return false;
+                }
+            }
+        } finally {
+            closeAll(probeWriters);
+        }
+
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            if (!join(String.valueOf(partition), 0, residual, outer, sink)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the build side exceeded the memory bound and was spilled to disk
+     *
+     * @return <code>true</code> if the join runs partition by partition
+     */
+    public boolean isSpilled() {
+        return spillDirectory != null;
+    }
+
+    /**
+     * Gets the number of times the most split partition of a spilled join was split again
+     *
+     * @return <code>0</code> if every partition fit in memory as first spilled
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Joins a pair of spilled partitions, splitting it further if its build side does not fit in memory
+     *
+     * @param name name of the partition
+     * @param level number of times the partition was already split
+     * @return <code>false</code> if the sink stopped the join; <code>true</code> otherwise
+     */
+    private boolean join(final String name, final int level, final BiPredicate<JSONObject, JSONObject> residual,
+            final boolean outer, final JoinSink sink) throws OperationException {
+        final Path buildFile = partitionFile("build", name);
+        final Path probeFile = partitionFile("probe", name);
+        try {
+            if (Files.size(probeFile) == 0) {
+                return true;
+            }
+        } catch (IOException ex) {
+            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Could not read join spill file " + probeFile, ex);
+        }
+
+        table.clear();
+        tableRows = 0;
+        final boolean fits = read(buildFile, row -> {
+            table.computeIfAbsent(key(row.opt(buildColumn)), k -> new ArrayList<>()).add(row);
+            return level >= MAX_DEPTH || ++tableRows <= memoryRows;
+        });
+        if (fits) {
+            if (level >= MAX_DEPTH && tableRows > memoryRows) {
+                logger.warn("Hash join partition of {} records exceeds {} records after {} splits. Joining it in memory", tableRows, memoryRows, MAX_DEPTH);
+            }
+            final boolean completed = read(probeFile, row -> match(row, key(row.opt(probeColumn)), residual, outer, sink));
+            table.clear();
+            delete(buildFile, probeFile);
+            return completed;
+        }
+
+        table.clear();
+        depth = Math.max(depth, level + 1);
+        split(buildFile, name, "build", buildColumn, level + 1);
+        split(probeFile, name, "probe", probeColumn, level + 1);
+        delete(buildFile, probeFile);
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            if (!join(name + "-" + partition, level + 1, residual, outer, sink)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Splits a spill file into <code>PARTITIONS</code> files by the hash of the join key at the given level
+     */
+    private void split(final Path file, final String name, final String side, final String column, final int level) throws OperationException {
+        final BufferedWriter[] writers = open(side, name);
+        try {
+            /* Held here, as the consumer of the spill file cannot throw checked exceptions */
+            final OperationException[] failure = new OperationException[1];
+            read(file, row -> {
+                try {
+                    write(writers[partition(key(row.opt(column)), level)], row);
+                    return true;
+                } catch (OperationException ex) {
+                    failure[0] = ex;
+                    return false;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        } finally {
+            closeAll(writers);
+        }
+    }
+
+    private void delete(final Path... files) {
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ex) {
+                logger.warn("Could not delete join spill file " + file, ex);
+            }
+        }
+    }
+
+    private boolean match(final JSONObject row, final String key, final BiPredicate<JSONObject, JSONObject> residual,
+            final boolean outer, final JoinSink sink) {
+        boolean matched = false;
+        final List<JSONObject> matches = key == null ? null : table.get(key);
+        if (matches != null) {
+            for (JSONObject match : matches) {
+                if (residual != null && !residual.test(row, match)) {
+                    continue;
+                }
+                matched = true;
+                if (!sink.accept(row, match)) {
+                    return false;
+                }
+            }
+        }
+        return matched || !outer || sink.accept(row, null);
+    }
+
+    private void spill() throws OperationException {
+        try {
+            Files.createDirectories(spillFolder);
+            spillDirectory = Files.createTempDirectory(spillFolder, "join");
+        } catch (IOException ex) {
+            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Could not create join spill folder under " + spillFolder, ex);
+        }
+        logger.debug("Hash join build side exceeded {} records. Spilling to {}", memoryRows, spillDirectory);
+
+        buildWriters = open("build", null);
+        for (Map.Entry<String, List<JSONObject>> entry : table.entrySet()) {
+            final BufferedWriter writer = buildWriters[partition(entry.getKey(), 0)];
+            for (JSONObject row : entry.getValue()) {
+                write(writer, row);
+            }
+        }
+        table.clear();
+        tableRows = 0;
+    }
+
+    /**
+     * Gets the partition of a join key. Each level hashes with its own seed, so that keys of one partition are spread
+     * over all partitions of the next level
+     */
+    private static int partition(final String key, final int level) {
+        int hash = key.hashCode() ^ (level * 0x9E3779B9);
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, PARTITIONS);
+    }
+
+    private Path partitionFile(final String side, final String name) {
+        return spillDirectory.resolve(side + "-" + name + ".json");
+    }
+
+    /**
+     * Creates the spill files of one side of the join
+     *
+     * @param side the side of the join
+     * @param parent name of the partition being split; <code>null</code> for the first spill
+     */
+    private BufferedWriter[] open(final String side, final String parent) throws OperationException {
+        final BufferedWriter[] writers = new BufferedWriter[PARTITIONS];
+        try {
+            for (int partition = 0; partition < PARTITIONS; partition++) {
+                final String name = parent == null ? String.valueOf(partition) : parent + "-" + partition;
+                writers[partition] = Files.newBufferedWriter(partitionFile(side, name), StandardCharsets.UTF_8);
+            }
+        } catch (IOException ex) {
+            closeAll(writers);
+            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Could not create join spill file", ex);
+        }
+        return writers;
+    }
+
+    private void write(final BufferedWriter writer, final JSONObject row) throws OperationException {
+        try {
+            writer.write(row.toString());
+            writer.newLine();
+        } catch (IOException ex) {
+            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Could not write join spill file", ex);
+        }
+    }
+
+    /**
+     * @return <code>false</code> if the consumer stopped reading; <code>true</code> otherwise
+     */
+    private boolean read(final Path file, final Predicate<JSONObject> consumer) throws OperationException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!consumer.test(new JSONObject(line))) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException ex) {
+            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Could not read join spill file " + file, ex);
+        }
+    }
+
+    private void closeAll(final BufferedWriter[] writers) {
+        for (BufferedWriter writer : writers) {
+            if (writer == null) {
+                continue;
+            }
+            try {
+                writer.close();
+            } catch (IOException ex) {
+                logger.warn("Could not close join spill file", ex);
+            }
+        }
+    }
+
+    /**
+     * Releases the hash table and deletes all spill files
+     */
+    @Override
+    public void close() {
+        table.clear();
+        if (buildWriters != null) {
+            closeAll(buildWriters);
+        }
+        if (spillDirectory == null) {
+            return;
+        }
+
+        try (Stream<Path> paths = Files.walk(spillDirectory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException ex) {
+                    logger.warn("Could not delete join spill file " + path, ex);
+                }
+            });
+        } catch (IOException ex) {
+            logger.warn("Could not delete join spill folder " + spillDirectory, ex);
+        }
+        spillDirectory = null;
+    }
+}
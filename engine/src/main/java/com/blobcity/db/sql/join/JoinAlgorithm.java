@@ -0,0 +1,37 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.join;
+
+/**
+ * Physical algorithms used to execute a join
+ *
+ * @author sanketsarang
+ */
+public enum JoinAlgorithm {
+
+    /**
+     * Builds a hash table over one collection and probes it with the records of the other, spilling partitions to
+     * disk when the build side does not fit in memory
+     */
+    HASH,
+
+    /**
+     * Looks up the matching records of the inner collection through its primary key or an index on the join column,
+     * once for every record of the outer collection
+     */
+    INDEX_NESTED_LOOP
+}
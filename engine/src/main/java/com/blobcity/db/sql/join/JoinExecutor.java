@@ -0,0 +1,552 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.join;
+
+import com.blobcity.db.bsql.BSqlCollectionManager;
+import com.blobcity.db.bsql.BSqlDataManager;
+import com.blobcity.db.bsql.BSqlIndexManager;
+import com.blobcity.db.constants.BSql;
+import com.blobcity.db.exceptions.ErrorCode;
+import com.blobcity.db.exceptions.OperationException;
+import com.blobcity.db.lang.Operators;
+import com.blobcity.db.schema.Column;
+import com.blobcity.db.schema.IndexTypes;
+import com.blobcity.db.schema.beans.SchemaStore;
+import com.blobcity.db.sql.pipeline.Operator;
+import com.blobcity.db.sql.planner.ColumnStatistics;
+import com.blobcity.db.sql.planner.Condition;
+import com.blobcity.db.sql.planner.QueryPlanner;
+import com.blobcity.db.sql.planner.StatisticsStore;
+import com.blobcity.db.sql.util.OperatorMapper;
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.parser.*;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * <p>
+ * Plans and executes SELECT statements over two joined collections. Supported are <code>INNER</code>,
+ * <code>LEFT</code> and <code>RIGHT</code> joins written with <code>JOIN ... ON</code>, and inner joins written as a
+ * comma separated <code>FROM</code> list with the join condition in the <code>WHERE</code> clause.
+ *
+ * <p>
+ * The <code>ON</code> and <code>WHERE</code> clauses are split into their AND-ed predicates. Predicates that
+ * reference a single collection are pushed down to the {@link QueryPlanner} of that collection, so that each side is
+ * read through its own index or primary key plan. The first equality between a column of each collection is the join
+ * key, while other predicates across the collections are evaluated on the matching pairs. For a <code>LEFT</code>
+ * join, <code>WHERE</code> predicates on the right collection are evaluated after the join, as they must also reject
+ * the rows that found no match.
+ *
+ * <p>
+ * The join is executed as an index nested loop join when the join column of the inner side is its primary key or is
+ * indexed and the driving side is estimated to be small enough for the lookups to be cheaper than reading the inner
+ * side in full, and as a {@link HashJoin} otherwise. The hash join builds on the smaller side and spills to disk
+ * beyond <code>HASH_JOIN_MEMORY_ROWS</code> records.
+ *
+ * @author sanketsarang
+ */
+@Component
+public class JoinExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(JoinExecutor.class.getName());
+
+    /* Number of build side records held in memory before a hash join spills to disk */
+    private static final int HASH_JOIN_MEMORY_ROWS = 100000;
+
+    /* Number of records loaded together from either side of a join */
+    private static final int BATCH_SIZE = 256;
+
+    @Autowired
+    @Lazy
+    private BSqlCollectionManager tableManager;
+    @Autowired
+    @Lazy
+    private BSqlDataManager dataManager;
+    @Autowired
+    @Lazy
+    private BSqlIndexManager indexManager;
+    @Autowired
+    @Lazy
+    private SchemaStore schemaStore;
+    @Autowired
+    @Lazy
+    private QueryPlanner queryPlanner;
+    @Autowired
+    @Lazy
+    private StatisticsStore statisticsStore;
+
+    /**
+     * Checks if a SELECT reads more than one collection
+     *
+     * @param selectNode the SELECT
+     * @return <code>true</code> if the <code>FROM</code> clause holds a join or more than one collection
+     */
+    public static boolean isJoin(final SelectNode selectNode) {
+        final FromList fromList = selectNode.getFromList();
+        return fromList.size() > 1 || fromList.get(0) instanceof JoinNode;
+    }
+
+    /**
+     * Plans a SELECT over two joined collections
+     *
+     * @param ds the datastore
+     * @param node the SELECT statement
+     * @param limit maximum number of rows required; -1 if unlimited
+     * @return the plan
+     * @throws OperationException if the statement uses constructs that are not supported on joins, or if a
+     * collection or column referenced by it does not exist
+     */
+    public JoinPlan plan(final String ds, final CursorNode node, final int limit) throws OperationException {
+        final SelectNode selectNode = (SelectNode) node.getResultSetNode();
+        if (selectNode.getGroupByList() != null || selectNode.getHavingClause() != null || node.getOrderByList() != null) {
+            throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "GROUP BY, HAVING and ORDER BY are not supported on joins at present");
+        }
+
+        final FromList fromList = selectNode.getFromList();
+        final JoinPlan plan;
+        ValueNode onClause = null;
+        if (fromList.size() == 2) {
+            plan = new JoinPlan(JoinType.INNER, side(ds, fromList.get(0)), side(ds, fromList.get(1)));
+        } else if (fromList.size() == 1 && fromList.get(0) instanceof JoinNode) {
+            final JoinNode joinNode = (JoinNode) fromList.get(0);
+            if (joinNode.isNaturalJoin() || joinNode.getUsingClause() != null) {
+                throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "NATURAL joins and JOIN ... USING are not supported. Use JOIN ... ON instead");
+            }
+
+            ResultSetNode leftNode = joinNode.getLeftResultSet();
+            ResultSetNode rightNode = joinNode.getRightResultSet();
+            JoinType type = JoinType.INNER;
+            if (joinNode instanceof HalfOuterJoinNode) {
+                type = JoinType.LEFT;
+
+                /* a RIGHT JOIN b is b LEFT JOIN a */
+                if (((HalfOuterJoinNode) joinNode).isRightOuterJoin()) {
+                    leftNode = joinNode.getRightResultSet();
+                    rightNode = joinNode.getLeftResultSet();
+                }
+            }
+            plan = new JoinPlan(type, side(ds, leftNode), side(ds, rightNode));
+            onClause = joinNode.getJoinClause();
+        } else {
+            throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "Joins of more than two collections are not supported at present");
+        }
+
+        if (plan.getLeft().getName().equals(plan.getRight().getName())) {
+            throw new OperationException(ErrorCode.INVALID_QUERY, "Collection " + plan.getLeft().getName()
+                    + " is joined with itself. Use an alias for one of the two");
+        }
+
+        final List<ValueNode> matchable = new ArrayList<>();
+        for (ValueNode conjunct : conjuncts(onClause)) {
+            classify(plan, conjunct, true, matchable);
+        }
+        for (ValueNode conjunct : conjuncts(selectNode.getWhereClause())) {
+            classify(plan, conjunct, false, matchable);
+        }
+        if (plan.getLeft().getJoinColumn() == null) {
+            throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "Joins require an equality between a column of each collection");
+        }
+        plan.setMatchable(queryPlanner.toCondition(matchable));
+
+        project(plan, selectNode.getResultColumns());
+
+        /* DISTINCT is applied on the complete result, so the join cannot stop early */
+        plan.setLimit(selectNode.isDistinct() ? -1 : limit);
+        choose(ds, plan);
+        return plan;
+    }
+
+    /**
+     * Executes a join plan
+     *
+     * @param plan the plan
+     * @return the output rows
+     * @throws OperationException if records cannot be read or if spilling to disk fails
+     */
+    public List<JSONObject> execute(final JoinPlan plan) throws OperationException {
+        final List<JSONObject> rows = new ArrayList<>();
+        final int limit = plan.getLimit();
+        if (limit == 0) {
+            return rows;
+        }
+
+        final boolean leftDriving = plan.isLeftDriving();
+        final JoinSink sink = (row, match) -> {
+            final JSONObject left = leftDriving ? row : match;
+            final JSONObject right = leftDriving ? match : row;
+            for (JoinPredicate filter : plan.getFilters()) {
+                if (!filter.test(left, right)) {
+                    return true;
+                }
+            }
+            rows.add(plan.project(left, right));
+            return limit < 0 || rows.size() < limit;
+        };
+        final BiPredicate<JSONObject, JSONObject> residual = plan.getJoinPredicates().isEmpty() ? null : (row, match) -> {
+            final JSONObject left = leftDriving ? row : match;
+            final JSONObject right = leftDriving ? match : row;
+            for (JoinPredicate predicate : plan.getJoinPredicates()) {
+                if (!predicate.test(left, right)) {
+                    return false;
+                }
+            }
+            return true;
+        };
+        final Predicate<JSONObject> matchable = plan.getMatchable() == null ? null : plan.getMatchable()::test;
+        final boolean outer = plan.getType() == JoinType.LEFT;
+
+        switch (plan.getAlgorithm()) {
+            case INDEX_NESTED_LOOP:
+                indexNestedLoopJoin(plan, matchable, residual, outer, sink);
+                break;
+            case HASH:
+                hashJoin(plan, matchable, residual, outer, sink);
+                break;
+        }
+        return rows;
+    }
+
+    private void hashJoin(final JoinPlan plan, final Predicate<JSONObject> matchable, final BiPredicate<JSONObject, JSONObject> residual,
+            final boolean outer, final JoinSink sink) throws OperationException {
+        final JoinSide driving = plan.getDriving();
+        final JoinSide inner = plan.getInner();
+        try (HashJoin hashJoin = new HashJoin(inner.getJoinColumn(), driving.getJoinColumn(), HASH_JOIN_MEMORY_ROWS, Paths.get(BSql.JOIN_SPILL_FOLDER))) {
+            try (Operator buildRows = queryPlanner.open(inner.getPlan(), BATCH_SIZE)) {
+                hashJoin.build(buildRows);
+            }
+            try (Operator probeRows = queryPlanner.open(driving.getPlan(), BATCH_SIZE)) {
+                hashJoin.probe(probeRows, matchable, residual, outer, sink);
+            }
+            if (hashJoin.isSpilled()) {
+                logger.debug("Hash join of {} and {} spilled to disk", driving.getCollection(), inner.getCollection());
+            }
+        }
+    }
+
+    /**
+     * Reads the inner side only through its join column, once for every record of the driving side. Records of the
+     * inner side are read through the primary key or index instead of the plan of the inner side, so the predicates
+     * pushed down to the inner side are evaluated on the looked up records.
+     */
+    private void indexNestedLoopJoin(final JoinPlan plan, final Predicate<JSONObject> matchable, final BiPredicate<JSONObject, JSONObject> residual,
+            final boolean outer, final JoinSink sink) throws OperationException {
+        final JoinSide driving = plan.getDriving();
+        final JoinSide inner = plan.getInner();
+        final Condition innerCondition = plan.getInnerCondition();
+        final boolean primary = inner.isPrimary(inner.getJoinColumn());
+
+        try (Operator rows = queryPlanner.open(driving.getPlan(), BATCH_SIZE)) {
+            while (rows.hasNext()) {
+                final JSONObject row = rows.next();
+                final Set<String> values = matchable == null || matchable.test(row)
+                        ? HashJoin.lookupForms(row.opt(driving.getJoinColumn())) : Collections.emptySet();
+                boolean matched = false;
+
+                /* Every stored form of the join key is looked up, so that matches are the same as for a hash join */
+                for (String value : values) {
+                    final Iterator<String> keys = primary
+                            ? Collections.singleton(value).iterator()
+                            : indexManager.readIndexStream(inner.getDs(), inner.getCollection(), inner.getJoinColumn(), value);
+                    while (keys.hasNext()) {
+                        final JSONObject match = load(inner, keys.next(), primary);
+                        if (match == null || (innerCondition != null && !innerCondition.test(match))
+                                || (residual != null && !residual.test(row, match))) {
+                            continue;
+                        }
+                        matched = true;
+                        if (!sink.accept(row, match)) {
+                            return;
+                        }
+                    }
+                }
+                if (!matched && outer && !sink.accept(row, null)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the record; <code>null</code> if no record has the key
+     */
+    private JSONObject load(final JoinSide side, final String key, final boolean probe) throws OperationException {
+        if (probe && !dataManager.exists(side.getDs(), side.getCollection(), key)) {
+            return null;
+        }
+        try {
+            return dataManager.select(side.getDs(), side.getCollection(), key);
+        } catch (OperationException ex) {
+            return null; //record deleted after the key was read
+        }
+    }
+
+    /**
+     * Plans both sides and picks the cheapest of a hash join and an index nested loop join in either direction
+     */
+    private void choose(final String ds, final JoinPlan plan) throws OperationException {
+        final JoinSide left = plan.getLeft();
+        final JoinSide right = plan.getRight();
+        left.setPlan(queryPlanner.plan(ds, left.getCollection(), left.getConjuncts(), -1, false));
+        right.setPlan(queryPlanner.plan(ds, right.getCollection(), right.getConjuncts(), -1, false));
+
+        final double leftRows = left.getPlan().getEstimatedRows();
+        final double rightRows = right.getPlan().getEstimatedRows();
+        final long distinct = Math.max(distinctCount(ds, left), distinctCount(ds, right));
+        double joinRows = distinct > 0 ? leftRows * rightRows / distinct : Math.max(leftRows, rightRows);
+        if (plan.getType() == JoinType.LEFT) {
+            joinRows = Math.max(joinRows, leftRows);
+        }
+        plan.setEstimatedRows(joinRows);
+
+        /* A hash join reads both sides once and builds on the smaller one. Only the right side can be built on for a LEFT join */
+        JoinAlgorithm algorithm = JoinAlgorithm.HASH;
+        boolean leftDriving = plan.getType() == JoinType.LEFT || leftRows >= rightRows;
+        double cost = left.getPlan().getCost() + right.getPlan().getCost();
+
+        final boolean[] directions = plan.getType() == JoinType.LEFT ? new boolean[]{true} : new boolean[]{true, false};
+        for (boolean leftOuter : directions) {
+            final double loopCost = indexNestedLoopCost(ds, leftOuter ? left : right, leftOuter ? right : left);
+            if (loopCost < cost) {
+                cost = loopCost;
+                algorithm = JoinAlgorithm.INDEX_NESTED_LOOP;
+                leftDriving = leftOuter;
+            }
+        }
+
+        plan.setAlgorithm(algorithm);
+        plan.setLeftDriving(leftDriving);
+        plan.setCost(cost);
+        if (algorithm == JoinAlgorithm.INDEX_NESTED_LOOP) {
+            plan.setInnerCondition(queryPlanner.toCondition(plan.getInner().getConjuncts()));
+        }
+        logger.debug("Join of {} and {} planned as {} with cost {}", left.getCollection(), right.getCollection(), algorithm, cost);
+    }
+
+    /**
+     * @return the estimated cost; <code>Double.MAX_VALUE</code> if the join column of the inner side can only be read
+     * by scanning
+     */
+    private double indexNestedLoopCost(final String ds, final JoinSide outer, final JoinSide inner) throws OperationException {
+        final String joinColumn = inner.getJoinColumn();
+        final boolean primary = inner.isPrimary(joinColumn);
+        final Column column = inner.getSchema().getColumn(joinColumn);
+        if (!primary && (column == null || column.getIndexType() == IndexTypes.NONE)) {
+            return Double.MAX_VALUE;
+        }
+
+        double matchesPerValue = 1;
+        if (!primary) {
+            final ColumnStatistics statistics = statisticsStore.getColumnStatistics(ds, inner.getCollection(), joinColumn);
+            final long nonNull = Math.max(0, statistics.getRowCount() - statistics.getNullCount());
+            matchesPerValue = statistics.getDistinctCount() > 0
+                    ? (double) nonNull / statistics.getDistinctCount()
+                    : nonNull * ColumnStatistics.DEFAULT_EQ_SELECTIVITY;
+        }
+        return outer.getPlan().getCost() + outer.getPlan().getEstimatedRows()
+                * (QueryPlanner.INDEX_PROBE_COST + matchesPerValue * QueryPlanner.RECORD_READ_COST);
+    }
+
+    private long distinctCount(final String ds, final JoinSide side) throws OperationException {
+        if (side.isPrimary(side.getJoinColumn())) {
+            return statisticsStore.getRowCount(ds, side.getCollection());
+        }
+        return statisticsStore.getColumnStatistics(ds, side.getCollection(), side.getJoinColumn()).getDistinctCount();
+    }
+
+    /**
+     * Assigns a predicate of the <code>ON</code> or <code>WHERE</code> clause to the collection it is evaluated on, or
+     * makes it the join key, a join predicate or a filter of the joined pairs
+     *
+     * @param matchable collects the <code>ON</code> predicates of a <code>LEFT</code> join that reference only the left
+     * collection
+     */
+    private void classify(final JoinPlan plan, final ValueNode conjunct, final boolean on, final List<ValueNode> matchable) throws OperationException {
+        final Set<JoinSide> sides = new HashSet<>();
+        referencedSides(plan, conjunct, sides);
+        final boolean leftJoin = plan.getType() == JoinType.LEFT;
+
+        if (sides.size() == 1) {
+            final JoinSide side = sides.iterator().next();
+            if (!leftJoin || (on && side == plan.getRight()) || (!on && side == plan.getLeft())) {
+                side.getConjuncts().add(conjunct);
+            } else if (on) {
+                matchable.add(conjunct);
+            } else {
+                plan.getFilters().add(new SideCondition(queryPlanner.toCondition(Collections.singletonList(conjunct)), true));
+            }
+            return;
+        }
+
+        if (sides.size() == 2 && conjunct instanceof BinaryRelationalOperatorNode) {
+            final BinaryRelationalOperatorNode relation = (BinaryRelationalOperatorNode) conjunct;
+            if (relation.getLeftOperand() instanceof ColumnReference && relation.getRightOperand() instanceof ColumnReference) {
+                final ColumnReference first = (ColumnReference) relation.getLeftOperand();
+                final ColumnReference second = (ColumnReference) relation.getRightOperand();
+                final boolean firstLeft = resolve(plan, first) == plan.getLeft();
+                final String leftColumn = (firstLeft ? first : second).getColumnName();
+                final String rightColumn = (firstLeft ? second : first).getColumnName();
+                final Operators operator = OperatorMapper.map(relation.getOperator());
+
+                /* WHERE predicates across the collections of a LEFT join only filter the joined pairs */
+                final boolean matching = on || !leftJoin;
+                if (matching && operator == Operators.EQ && plan.getLeft().getJoinColumn() == null) {
+                    plan.getLeft().setJoinColumn(leftColumn);
+                    plan.getRight().setJoinColumn(rightColumn);
+                } else {
+                    final ColumnComparison comparison = new ColumnComparison(leftColumn, operator, rightColumn, firstLeft);
+                    (matching ? plan.getJoinPredicates() : plan.getFilters()).add(comparison);
+                }
+                return;
+            }
+        }
+
+        throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "Unsupported join condition : " + conjunct.toString());
+    }
+
+    private void referencedSides(final JoinPlan plan, final ValueNode node, final Set<JoinSide> sides) throws OperationException {
+        if (node instanceof ColumnReference) {
+            sides.add(resolve(plan, (ColumnReference) node));
+        } else if (node instanceof InListOperatorNode) {
+            final InListOperatorNode inListOperatorNode = (InListOperatorNode) node;
+            for (ValueNode valueNode : inListOperatorNode.getLeftOperand().getNodeList()) {
+                referencedSides(plan, valueNode, sides);
+            }
+            for (ValueNode valueNode : inListOperatorNode.getRightOperandList().getNodeList()) {
+                referencedSides(plan, valueNode, sides);
+            }
+        } else if (node instanceof BinaryOperatorNode) {
+            referencedSides(plan, ((BinaryOperatorNode) node).getLeftOperand(), sides);
+            referencedSides(plan, ((BinaryOperatorNode) node).getRightOperand(), sides);
+        } else if (node instanceof UnaryOperatorNode) {
+            referencedSides(plan, ((UnaryOperatorNode) node).getOperand(), sides);
+        } else if (!(node instanceof ConstantNode)) {
+            throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "Unsupported join condition : " + node.toString());
+        }
+    }
+
+    /**
+     * Finds the collection a column belongs to, by its qualifier if it has one and by the schemas of the collections
+     * otherwise
+     */
+    private JoinSide resolve(final JoinPlan plan, final ColumnReference columnReference) throws OperationException {
+        final String qualifier = columnReference.getTableName();
+        if (qualifier != null) {
+            return sideNamed(plan, qualifier);
+        }
+
+        final String column = columnReference.getColumnName();
+        final boolean inLeft = plan.getLeft().hasColumn(column);
+        final boolean inRight = plan.getRight().hasColumn(column);
+        if (inLeft && inRight) {
+            throw new OperationException(ErrorCode.INVALID_QUERY, "Column " + column + " is present in both "
+                    + plan.getLeft().getName() + " and " + plan.getRight().getName() + ". Qualify it with the collection name");
+        } else if (inLeft) {
+            return plan.getLeft();
+        } else if (inRight) {
+            return plan.getRight();
+        }
+        throw new OperationException(ErrorCode.UNKNOWN_COLUMN, "Unknown column " + column);
+    }
+
+    private JoinSide sideNamed(final JoinPlan plan, final String name) throws OperationException {
+        if (plan.getLeft().getName().equals(name)) {
+            return plan.getLeft();
+        } else if (plan.getRight().getName().equals(name)) {
+            return plan.getRight();
+        }
+        throw new OperationException(ErrorCode.INVALID_QUERY, "Unknown collection " + name + " referenced in query");
+    }
+
+    private JoinSide side(final String ds, final ResultSetNode node) throws OperationException {
+        if (!(node instanceof FromBaseTable)) {
+            throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "Only collections can be joined at present");
+        }
+
+        final FromTable fromTable = (FromTable) node;
+        final String collection;
+        try {
+            collection = fromTable.getTableName().getTableName();
+        } catch (StandardException ex) {
+            throw new OperationException(ErrorCode.INVALID_QUERY, ex.getMessage());
+        }
+        if (tableManager.isInMemory(ds, collection)) {
+            throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "In-memory operations temporarily suspended");
+        }
+
+        final String name = fromTable.getCorrelationName() == null ? collection : fromTable.getCorrelationName();
+        return new JoinSide(ds, collection, name, schemaStore.getSchema(ds, collection));
+    }
+
+    private void project(final JoinPlan plan, final ResultColumnList resultColumns) throws OperationException {
+        for (ResultColumn resultColumn : resultColumns) {
+            if (resultColumn instanceof AllResultColumn) {
+                final String qualifier = ((AllResultColumn) resultColumn).getFullTableName();
+                if (qualifier == null) {
+                    plan.addAllColumns(plan.getLeft());
+                    plan.addAllColumns(plan.getRight());
+                } else {
+                    plan.addAllColumns(sideNamed(plan, qualifier));
+                }
+            } else if (resultColumn.getExpression() instanceof ColumnReference) {
+                final ColumnReference columnReference = (ColumnReference) resultColumn.getExpression();
+                final String column = columnReference.getColumnName();
+                final String name;
+                if (resultColumn.getName() != null && !resultColumn.getName().equals(column)) {
+                    name = resultColumn.getName(); //aliased with AS
+                } else if (columnReference.getTableName() != null) {
+                    name = columnReference.getTableName() + "." + column;
+                } else {
+                    name = column;
+                }
+                plan.addColumn(resolve(plan, columnReference), column, name);
+            } else {
+                throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "Only columns can be selected from joins at present");
+            }
+        }
+    }
+
+    /* Splits a clause into its AND-ed predicates */
+    private List<ValueNode> conjuncts(final ValueNode clause) {
+        final List<ValueNode> conjuncts = new ArrayList<>();
+        if (clause != null) {
+            addConjuncts(clause, conjuncts);
+        }
+        return conjuncts;
+    }
+
+    private void addConjuncts(final ValueNode node, final List<ValueNode> conjuncts) {
+        if (node.getNodeType() == NodeTypes.AND_NODE) {
+            addConjuncts(((AndNode) node).getLeftOperand(), conjuncts);
+            addConjuncts(((AndNode) node).getRightOperand(), conjuncts);
+        } else {
+            conjuncts.add(node);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.join;
+
+import com.blobcity.db.sql.planner.Condition;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * <p>
+ * Physical plan of a SELECT over two joined collections.
+ *
+ * <p>
+ * Both sides carry a plan of their own for the predicates pushed down to them. The driving side is the probe side of
+ * a hash join or the outer side of an index nested loop join, and is always the left collection of a
+ * <code>LEFT</code> join. Join predicates decide which pairs match, while filters are evaluated on the joined pairs,
+ * including the unmatched rows of a <code>LEFT</code> join.
+ *
+ * <p>
+ * Output rows hold the selected columns keyed as written in the query, and all columns keyed as
+ * <code>collection.column</code> for <code>*</code>.
+ *
+ * @author sanketsarang
+ */
+public class JoinPlan {
+
+    private final JoinType type;
+    private final JoinSide left;
+    private final JoinSide right;
+    private final List<JoinPredicate> joinPredicates = new ArrayList<>();
+    private final List<JoinPredicate> filters = new ArrayList<>();
+    private final List<OutputColumn> columns = new ArrayList<>();
+    private JoinAlgorithm algorithm;
+    private boolean leftDriving = true;
+    private Condition matchable;
+    private Condition innerCondition;
+    private int limit = -1;
+    private double estimatedRows;
+    private double cost;
+
+    public JoinPlan(final JoinType type, final JoinSide left, final JoinSide right) {
+        this.type = type;
+        this.left = left;
+        this.right = right;
+    }
+
+    /**
+     * Builds an output row out of a joined pair
+     *
+     * @param leftRecord record of the left collection
+     * @param rightRecord record of the right collection; <code>null</code> for an unmatched row of a
+     * <code>LEFT</code> join
+     * @return the output row
+     */
+    public JSONObject project(final JSONObject leftRecord, final JSONObject rightRecord) {
+        final JSONObject row = new JSONObject();
+        for (OutputColumn column : columns) {
+            final JSONObject record = column.side == left ? leftRecord : rightRecord;
+            if (column.column == null) {
+                if (record != null) {
+                    for (Object key : record.keySet()) {
+                        row.put(column.side.getName() + "." + key, record.get(key.toString()));
+                    }
+                }
+            } else {
+                final Object value = record == null ? null : record.opt(column.column);
+                row.put(column.name, value == null ? JSONObject.NULL : value);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Selects all columns of a collection
+     *
+     * @param side the collection
+     */
+    public void addAllColumns(final JoinSide side) {
+        columns.add(new OutputColumn(side, null, null));
+    }
+
+    /**
+     * Selects a single column
+     *
+     * @param side the collection holding the column
+     * @param column the column
+     * @param name the key of the column in output rows
+     */
+    public void addColumn(final JoinSide side, final String column, final String name) {
+        columns.add(new OutputColumn(side, column, name));
+    }
+
+    public JoinType getType() {
+        return type;
+    }
+
+    public JoinSide getLeft() {
+        return left;
+    }
+
+    public JoinSide getRight() {
+        return right;
+    }
+
+    public JoinSide getDriving() {
+        return leftDriving ? left : right;
+    }
+
+    public JoinSide getInner() {
+        return leftDriving ? right : left;
+    }
+
+    public boolean isLeftDriving() {
+        return leftDriving;
+    }
+
+    public void setLeftDriving(final boolean leftDriving) {
+        this.leftDriving = leftDriving;
+    }
+
+    public JoinAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(final JoinAlgorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Gets the predicates, other than equality of the join columns, that a pair must satisfy to match
+     *
+     * @return predicates on <code>(left, right)</code> pairs
+     */
+    public List<JoinPredicate> getJoinPredicates() {
+        return joinPredicates;
+    }
+
+    /**
+     * Gets the predicates evaluated on joined pairs
+     *
+     * @return predicates on <code>(left, right)</code> pairs
+     */
+    public List<JoinPredicate> getFilters() {
+        return filters;
+    }
+
+    /**
+     * Gets the condition a record of the driving side must satisfy to match any record. Holds the <code>ON</code>
+     * predicates of a <code>LEFT</code> join that reference only the left collection.
+     *
+     * @return the condition; <code>null</code> if every record may match
+     */
+    public Condition getMatchable() {
+        return matchable;
+    }
+
+    public void setMatchable(final Condition matchable) {
+        this.matchable = matchable;
+    }
+
+    /**
+     * Gets the condition evaluated on the records of the inner side looked up by an index nested loop join, which
+     * are read through the join column instead of the plan of the inner side
+     *
+     * @return the condition; <code>null</code> if no predicate is pushed down to the inner side
+     */
+    public Condition getInnerCondition() {
+        return innerCondition;
+    }
+
+    public void setInnerCondition(final Condition innerCondition) {
+        this.innerCondition = innerCondition;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(final int limit) {
+        this.limit = limit;
+    }
+
+    public double getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    public void setEstimatedRows(final double estimatedRows) {
+        this.estimatedRows = estimatedRows;
+    }
+
+    public double getCost() {
+        return cost;
+    }
+
+    public void setCost(final double cost) {
+        this.cost = cost;
+    }
+
+    public JSONObject toJson() {
+        final JSONObject jsonObject = new JSONObject();
+        jsonObject.put("join", type.name());
+        jsonObject.put("algorithm", algorithm.name());
+        jsonObject.put("rows", Math.round(estimatedRows));
+        jsonObject.put("cost", Math.round(cost * 100) / 100.0);
+        jsonObject.put("driving", getDriving().toJson());
+        jsonObject.put("inner", getInner().toJson());
+        if (matchable != null) {
+            jsonObject.put("matchable", matchable.toJson());
+        }
+        if (!joinPredicates.isEmpty()) {
+            final JSONArray jsonArray = new JSONArray();
+            joinPredicates.forEach(predicate -> jsonArray.put(predicate.toJson()));
+            jsonObject.put("joinPredicates", jsonArray);
+        }
+        if (!filters.isEmpty()) {
+            final JSONArray jsonArray = new JSONArray();
+            filters.forEach(predicate -> jsonArray.put(predicate.toJson()));
+            jsonObject.put("filters", jsonArray);
+        }
+        if (limit >= 0) {
+            jsonObject.put("limit", limit);
+        }
+        return jsonObject;
+    }
+
+    private static class OutputColumn {
+
+        private final JoinSide side;
+        private final String column;
+        private final String name;
+
+        private OutputColumn(final JoinSide side, final String column, final String name) {
+            this.side = side;
+            this.column = column;
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.join;
+
+import org.json.JSONObject;
+
+/**
+ * A predicate of a join that is evaluated on a pair of records, one from each side of the join
+ *
+ * @author sanketsarang
+ */
+public interface JoinPredicate {
+
+    /**
+     * Evaluates the predicate
+     *
+     * @param left record of the left collection
+     * @param right record of the right collection; <code>null</code> for the unmatched rows of a <code>LEFT</code> join
+     * @return <code>true</code> if the pair satisfies the predicate
+     */
+    public boolean test(final JSONObject left, final JSONObject right);
+
+    public JSONObject toJson();
+}
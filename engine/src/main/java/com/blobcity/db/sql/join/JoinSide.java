@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.join;
+
+import com.blobcity.db.schema.Schema;
+import com.blobcity.db.sql.planner.QueryPlan;
+import com.foundationdb.sql.parser.ValueNode;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.JSONObject;
+
+/**
+ * One of the two collections of a join, along with the predicates pushed down to it and its plan
+ *
+ * @author sanketsarang
+ */
+public class JoinSide {
+
+    private final String ds;
+    private final String collection;
+    private final String name;
+    private final Schema schema;
+    private final List<ValueNode> conjuncts = new ArrayList<>();
+    private String joinColumn;
+    private QueryPlan plan;
+
+    /**
+     * @param ds the datastore
+     * @param collection the collection
+     * @param name the name by which the collection is referenced in the query: its alias if it has one
+     * @param schema schema of the collection
+     */
+    public JoinSide(final String ds, final String collection, final String name, final Schema schema) {
+        this.ds = ds;
+        this.collection = collection;
+        this.name = name;
+        this.schema = schema;
+    }
+
+    public boolean hasColumn(final String column) {
+        return schema.getColumn(column) != null;
+    }
+
+    public boolean isPrimary(final String column) {
+        return column.equals(schema.getPrimary());
+    }
+
+    public String getDs() {
+        return ds;
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Gets the predicates that reference only this collection and are evaluated before the join
+     *
+     * @return the pushed down predicates
+     */
+    public List<ValueNode> getConjuncts() {
+        return conjuncts;
+    }
+
+    public String getJoinColumn() {
+        return joinColumn;
+    }
+
+    public void setJoinColumn(final String joinColumn) {
+        this.joinColumn = joinColumn;
+    }
+
+    public QueryPlan getPlan() {
+        return plan;
+    }
+
+    public void setPlan(final QueryPlan plan) {
+        this.plan = plan;
+    }
+
+    public JSONObject toJson() {
+        final JSONObject jsonObject = new JSONObject();
+        jsonObject.put("name", name);
+        jsonObject.put("joinColumn", joinColumn);
+        if (plan != null) {
+            jsonObject.put("plan", plan.toJson());
+        }
+        return jsonObject;
+    }
+}
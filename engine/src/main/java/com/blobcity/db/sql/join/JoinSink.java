@@ -0,0 +1,37 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.join;
+
+import org.json.JSONObject;
+
+/**
+ * Receives the joined pairs of records produced by a join algorithm
+ *
+ * @author sanketsarang
+ */
+@FunctionalInterface
+public interface JoinSink {
+
+    /**
+     * Accepts a joined pair of records
+     *
+     * @param row record of the driving side of the join
+     * @param match the matching record of the other side; <code>null</code> for an unmatched row of an outer join
+     * @return <code>true</code> to continue the join; <code>false</code> if no further pairs are required
+     */
+    public boolean accept(final JSONObject row, final JSONObject match);
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.join;
+
+import com.blobcity.db.sql.planner.Condition;
+import org.json.JSONObject;
+
+/**
+ * A predicate on the columns of one side of a join that cannot be pushed down to that side. This is the case for
+ * WHERE predicates on the right collection of a <code>LEFT</code> join, which must also reject the rows that found no
+ * match.
+ *
+ * @author sanketsarang
+ */
+public class SideCondition implements JoinPredicate {
+
+    private final Condition condition;
+    private final boolean right;
+
+    public SideCondition(final Condition condition, final boolean right) {
+        this.condition = condition;
+        this.right = right;
+    }
+
+    /**
+     * A missing record has only null values, which never satisfy a comparison
+     */
+    @Override
+    public boolean test(final JSONObject left, final JSONObject right) {
+        final JSONObject record = this.right ? right : left;
+        return record != null && condition.test(record);
+    }
+
+    @Override
+    public JSONObject toJson() {
+        final JSONObject jsonObject = new JSONObject();
+        jsonObject.put("side", right ? "right" : "left");
+        jsonObject.put("condition", condition.toJson());
+        return jsonObject;
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.pipeline;
+
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+import org.json.JSONObject;
+
+/**
+ * Passes on only the rows of its input that satisfy a predicate
+ *
+ * @author sanketsarang
+ */
+public class FilterOperator implements Operator {
+
+    private final Operator input;
+    private final Predicate<JSONObject> predicate;
+    private JSONObject next;
+
+    public FilterOperator(final Operator input, final Predicate<JSONObject> predicate) {
+        this.input = input;
+        this.predicate = predicate;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && input.hasNext()) {
+            final JSONObject row = input.next();
+            if (predicate.test(row)) {
+                next = row;
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public JSONObject next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final JSONObject row = next;
+        next = null;
+        return row;
+    }
+
+    @Override
+    public void close() {
+        next = null;
+        input.close();
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.pipeline;
+
+import java.util.NoSuchElementException;
+import org.json.JSONObject;
+
+/**
+ * Passes on at most <code>limit</code> rows of its input. The input is closed as soon as the limit is reached, so
+ * that no further records are read.
+ *
+ * @author sanketsarang
+ */
+public class LimitOperator implements Operator {
+
+    private final Operator input;
+    private final long limit;
+    private long produced = 0;
+
+    public LimitOperator(final Operator input, final long limit) {
+        this.input = input;
+        this.limit = limit;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (produced >= limit) {
+            input.close();
+            return false;
+        }
+        return input.hasNext();
+    }
+
+    @Override
+    public JSONObject next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        produced++;
+        return input.next();
+    }
+
+    @Override
+    public void close() {
+        input.close();
+    }
+}
@@ -14,33 +14,25 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
-package com.blobcity.db.cluster.connection;
+package com.blobcity.db.sql.pipeline;
 
-import com.blobcity.db.constants.Ports;
-import java.net.Socket;
-import javax.annotation.PostConstruct;
-import org.springframework.stereotype.Component;
+import java.util.Iterator;
+import org.json.JSONObject;
 
 /**
+ * <p>
+ * A pull based operator of the SELECT execution pipeline. Every operator produces rows only when its consumer asks
+ * for the next row, and pulls rows from its input as needed to do so. A pipeline of <code>scan -> filter -> project
+ * -> limit</code> hence holds only the rows that are in flight, and stops reading records as soon as the consumer
+ * stops pulling.
+ *
+ * <p>
+ * Operators are not thread safe and must be closed once consumed or abandoned. Closing an operator closes its input.
  *
  * @author sanketsarang
  */
-@Component
-public class ClusterConnectionListener extends ConnectionEndpoint {
-
-    public ClusterConnectionListener() {
-        super(Ports.CLUSTER_PORT);
-    }
-
-    @PostConstruct
-    private void init() {
-
-        /* Starts a thread that listens to incoming TCP connections for inter node connection on cluster */
-        start();
-    }
+public interface Operator extends Iterator<JSONObject>, AutoCloseable {
 
     @Override
-    protected void processNewClient(Socket socket) {
-        //TODO: Start a new ClusterConnection and add it to the ClusterStore
-    }
+    public void close();
 }
@@ -0,0 +1,227 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Loads the items named by a stream of primary keys with several workers at once. Keys are pulled off the stream in
+ * chunks as the scan progresses, so the keys of a collection are never all held in memory. Each chunk is sorted and
+ * loaded by a single worker in key order. Workers evaluate the filter on the items they load and hand only qualifying
+ * items to the consumer.
+ *
+ * <p>
+ * Keys are taken in the order of the stream rather than split into key ranges up front, as splitting the keys of a
+ * collection into ranges requires all of them to be read and sorted before the first record is loaded. Sorting each
+ * chunk keeps the reads of a worker in key order.
+ *
+ * <p>
+ * Workers never block. A chunk is only handed to a worker while the items already waiting to be consumed, together
+ * with the items the chunks being loaded can add, fit within the queue capacity, so a consumer that falls behind holds
+ * back the scan without holding on to threads. This makes it safe to run the workers of any number of scans on one
+ * bounded pool, such as the {@link ScanExecutor}.
+ *
+ * <p>
+ * Items are produced in no particular order. Closing the scan stops the workers after the item each is loading. A
+ * failure of the key stream, the loader or the filter stops the scan and is thrown to the consumer.
+ *
+ * @author sanketsarang
+ * @param <T> type of the loaded items
+ */
+public class ParallelScan<T> implements Iterator<T>, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelScan.class.getName());
+
+    /* Largest number of keys loaded by a worker in one go */
+    private static final int MAX_CHUNK_SIZE = 1024;
+    private static final long WAIT_MILLIS = 100;
+
+    private final Iterator<String> keys;
+    private final Function<String, T> loader;
+    private final Predicate<T> filter;
+    private final int parallelism;
+    private final int queueCapacity;
+    private final int chunkSize;
+    private final Executor executor;
+
+    private final Queue<T> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Object lock = new Object();
+    private int running = 0;
+    private boolean exhausted = false;
+    private volatile boolean closed = false;
+    private volatile RuntimeException failure;
+    private T next;
+
+    /**
+     * Starts the workers of the scan
+     *
+     * @param keys primary keys of the items to load
+     * @param loader loads the item of a key; returns <code>null</code> if there is no item for the key, such as when
+     * the record no longer exists
+     * @param filter the condition items must satisfy; <code>null</code> if every item qualifies
+     * @param parallelism maximum number of workers loading items of the scan at once
+     * @param queueCapacity maximum number of loaded items waiting to be consumed, exceeded by at most one chunk
+     * @param executor executor to run the workers on; may be shared with other scans and bound its number of threads
+     */
+    public ParallelScan(final Iterator<String> keys, final Function<String, T> loader,
+            final Predicate<T> filter, final int parallelism, final int queueCapacity, final Executor executor) {
+        this.keys = keys;
+        this.loader = loader;
+        this.filter = filter;
+        this.parallelism = Math.max(1, parallelism);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.chunkSize = Math.max(1, Math.min(MAX_CHUNK_SIZE, this.queueCapacity / this.parallelism));
+        this.executor = executor;
+        schedule();
+    }
+
+    /**
+     * Hands chunks of keys to workers while there are free workers and room for the items they may load
+     */
+    private void schedule() {
+        synchronized (lock) {
+            while (!closed && !exhausted && running < parallelism
+                    && queued.get() + (running + 1) * chunkSize <= queueCapacity) {
+                final List<String> chunk = new ArrayList<>(chunkSize);
+                try {
+                    while (chunk.size() < chunkSize && keys.hasNext()) {
+                        chunk.add(keys.next());
+                    }
+                } catch (RuntimeException ex) {
+                    logger.error("Parallel scan could not read keys", ex);
+                    failure = ex;
+                    exhausted = true;
+                    break;
+                }
+                if (chunk.size() < chunkSize) {
+                    exhausted = true;
+                }
+                if (chunk.isEmpty()) {
+                    break;
+                }
+
+                running++;
+                try {
+                    executor.execute(() -> scan(chunk));
+                } catch (RejectedExecutionException ex) {
+                    running--;
+                    failure = ex;
+                    exhausted = true;
+                }
+            }
+            lock.notifyAll();
+        }
+    }
+
+    private void scan(final List<String> chunk) {
+        try {
+            Collections.sort(chunk);
+            for (String key : chunk) {
+                if (closed) {
+                    return;
+                }
+
+                final T item = loader.apply(key);
+                if (item != null && (filter == null || filter.test(item))) {
+                    queue.add(item);
+                    queued.incrementAndGet();
+                }
+            }
+        } catch (RuntimeException ex) {
+            logger.error("Parallel scan worker failed", ex);
+            failure = ex;
+        } finally {
+            synchronized (lock) {
+                running--;
+            }
+            schedule();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && !closed) {
+            final T item = queue.poll();
+            if (item != null) {
+                queued.decrementAndGet();
+                next = item;
+                if (queued.get() <= queueCapacity / 2) {
+                    schedule();
+                }
+                break;
+            }
+
+            if (failure != null) {
+                close();
+                throw failure;
+            }
+
+            synchronized (lock) {
+                if (exhausted && running == 0 && queue.isEmpty()) {
+                    break;
+                }
+                if (queue.isEmpty()) {
+                    if (running == 0) {
+                        schedule();
+                        continue;
+                    }
+                    try {
+                        lock.wait(WAIT_MILLIS);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        close();
+                        break;
+                    }
+                }
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final T item = next;
+        next = null;
+        return item;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        next = null;
+        queue.clear();
+        queued.set(0);
+    }
+}
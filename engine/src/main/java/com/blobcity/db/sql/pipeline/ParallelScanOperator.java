@@ -0,0 +1,47 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.pipeline;
+
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import org.json.JSONObject;
+
+/**
+ * A {@link ParallelScan} over the records of a collection, as the source of a SELECT pipeline. Rows are produced in no
+ * particular order.
+ *
+ * @author sanketsarang
+ */
+public class ParallelScanOperator extends ParallelScan<JSONObject> implements Operator {
+
+    /**
+     * Starts the workers of the scan
+     *
+     * @param keys primary keys of the records to load
+     * @param loader loads the record of a key; returns <code>null</code> if the record no longer exists
+     * @param filter the condition records must satisfy; <code>null</code> if every record qualifies
+     * @param parallelism maximum number of workers loading records of the scan at once
+     * @param queueCapacity maximum number of loaded records waiting to be consumed, exceeded by at most one chunk
+     * @param executor executor to run the workers on; may be shared with other scans and bound its number of threads
+     */
+    public ParallelScanOperator(final Iterator<String> keys, final Function<String, JSONObject> loader,
+            final Predicate<JSONObject> filter, final int parallelism, final int queueCapacity, final Executor executor) {
+        super(keys, loader, filter, parallelism, queueCapacity, executor);
+    }
+}
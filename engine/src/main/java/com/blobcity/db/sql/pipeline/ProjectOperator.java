@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.pipeline;
+
+import java.util.NoSuchElementException;
+import java.util.Set;
+import org.json.JSONObject;
+
+/**
+ * Keeps only the selected columns of every row. Rows left without any of the selected columns are dropped.
+ *
+ * @author sanketsarang
+ */
+public class ProjectOperator implements Operator {
+
+    private final Operator input;
+    private final Set<String> columns;
+    private JSONObject next;
+
+    /**
+     * @param input the input operator
+     * @param columns viewable names of the columns to keep; an empty set keeps all columns
+     */
+    public ProjectOperator(final Operator input, final Set<String> columns) {
+        this.input = input;
+        this.columns = columns;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && input.hasNext()) {
+            final JSONObject row = input.next();
+            if (!columns.isEmpty()) {
+                row.keySet().retainAll(columns);
+            }
+            if (row.length() > 0) {
+                next = row;
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public JSONObject next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final JSONObject row = next;
+        next = null;
+        return row;
+    }
+
+    @Override
+    public void close() {
+        next = null;
+        input.close();
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.pipeline;
+
+import com.blobcity.db.constants.BQueryParameters;
+import com.blobcity.lib.database.bean.manager.interfaces.engine.QueryResultStream;
+import java.util.NoSuchElementException;
+import java.util.function.LongConsumer;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Serializes the rows of an {@link Operator} pipeline into the standard SELECT response, one chunk of at most
+ * <code>fetchSize</code> rows at a time. The first chunk opens the response and the last chunk closes it with the
+ * execution time and row count, so that the concatenation of all chunks is identical in form to a response produced
+ * as a single string.
+ *
+ * <p>
+ * Rows are read from the pipeline only as chunks are pulled. If the pipeline fails after the first chunk has been
+ * produced, the response is still closed and carries the cause of the failure.
+ *
+ * @author sanketsarang
+ */
+public class ResultStream implements QueryResultStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResultStream.class.getName());
+
+    private final Operator operator;
+    private final int fetchSize;
+    private final long startTime;
+    private final LongConsumer onClose;
+    private boolean started = false;
+    private boolean finished = false;
+    private boolean closed = false;
+    private long rows = 0;
+
+    /**
+     * @param operator the root of the pipeline
+     * @param fetchSize maximum number of rows per chunk
+     * @param startTime time at which execution of the query started, used to report the execution time
+     * @param onClose invoked once with the number of rows produced when the stream is closed
+     */
+    public ResultStream(final Operator operator, final int fetchSize, final long startTime, final LongConsumer onClose) {
+        this.operator = operator;
+        this.fetchSize = Math.max(1, fetchSize);
+        this.startTime = startTime;
+        this.onClose = onClose;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !finished;
+    }
+
+    @Override
+    public String next() {
+        if (finished) {
+            throw new NoSuchElementException();
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        if (!started) {
+            sb.append('{').append(JSONObject.quote(BQueryParameters.ACK)).append(":\"1\",")
+                    .append(JSONObject.quote(BQueryParameters.PAYLOAD)).append(":[");
+            started = true;
+        }
+
+        try {
+            int count = 0;
+            while (count < fetchSize && operator.hasNext()) {
+                if (rows > 0) {
+                    sb.append(',');
+                }
+                sb.append(operator.next().toString());
+                rows++;
+                count++;
+            }
+            if (!operator.hasNext()) {
+                finish(sb, null);
+            }
+        } catch (RuntimeException ex) {
+            logger.error("Streaming of query result failed after " + rows + " rows", ex);
+            finish(sb, ex.getMessage() == null ? ex.toString() : ex.getMessage());
+        }
+        return sb.toString();
+    }
+
+    private void finish(final StringBuilder sb, final String cause) {
+        sb.append("],").append(JSONObject.quote(BQueryParameters.TIME)).append(':').append(System.currentTimeMillis() - startTime)
+                .append(',').append(JSONObject.quote(BQueryParameters.ROWS)).append(':').append(rows);
+        if (cause != null) {
+            sb.append(",\"cause\":").append(JSONObject.quote(cause));
+        }
+        sb.append('}');
+        close();
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    @Override
+    public void close() {
+        finished = true;
+        if (closed) {
+            return;
+        }
+        closed = true;
+        operator.close();
+        if (onClose != null) {
+            onClose.accept(rows);
+        }
+    }
+}
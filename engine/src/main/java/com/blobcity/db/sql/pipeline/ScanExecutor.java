@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.pipeline;
+
+import com.blobcity.db.config.ConfigBean;
+import com.blobcity.db.config.ConfigProperties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * The pool that runs the workers of every {@link ParallelScan}, be it of a SELECT, an export or a filter. Scans add
+ * no threads of their own, so concurrent scans queue for threads of this pool. The default degree of parallelism of a
+ * scan is {@link ConfigProperties#SCAN_PARALLELISM}, or the number of cores, and the pool has as many threads as the
+ * default degree, or the number of cores if more. No scan can run more workers at once than the pool has threads.
+ *
+ * @author sanketsarang
+ */
+@Component
+public class ScanExecutor implements Executor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScanExecutor.class.getName());
+
+    @Autowired
+    @Lazy
+    private ConfigBean configBean;
+
+    private int defaultParallelism = Runtime.getRuntime().availableProcessors();
+    private int threads;
+    private ExecutorService executorService;
+
+    @PostConstruct
+    private void init() {
+        final String parallelism = configBean.getStringProperty(ConfigProperties.SCAN_PARALLELISM);
+        if (parallelism != null) {
+            try {
+                defaultParallelism = Math.max(1, Integer.parseInt(parallelism));
+            } catch (NumberFormatException ex) {
+                logger.warn("Invalid scan parallelism {}. Using default of {}", parallelism, defaultParallelism);
+            }
+        }
+
+        threads = Math.max(defaultParallelism, Runtime.getRuntime().availableProcessors());
+        final AtomicInteger threadCount = new AtomicInteger();
+        executorService = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "scan-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        executorService.execute(command);
+    }
+
+    public int getDefaultParallelism() {
+        return defaultParallelism;
+    }
+
+    /**
+     * Gets the degree of parallelism a scan actually runs with
+     *
+     * @param requested the degree asked for; 0 or less for the default
+     * @return the requested degree, or the default, capped at the number of threads of the pool
+     */
+    public int parallelism(final int requested) {
+        return Math.min(threads, requested > 0 ? requested : defaultParallelism);
+    }
+}
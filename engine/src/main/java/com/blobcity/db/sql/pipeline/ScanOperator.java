@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.json.JSONObject;
+
+/**
+ * Loads the records named by a stream of primary keys. Keys are consumed in batches and the records of a batch are
+ * loaded in parallel, so that at most one batch of records is held in memory at any time. Keys for which the loader
+ * returns <code>null</code>, such as records deleted after their key was read or records failing a filter pushed
+ * down into the loader, are skipped.
+ *
+ * @author sanketsarang
+ */
+public class ScanOperator implements Operator {
+
+    private final Iterator<String> keys;
+    private final Function<String, JSONObject> loader;
+    private final int batchSize;
+    private Iterator<JSONObject> batch = Collections.emptyIterator();
+    private boolean closed = false;
+
+    public ScanOperator(final Iterator<String> keys, final Function<String, JSONObject> loader, final int batchSize) {
+        this.keys = keys;
+        this.loader = loader;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!batch.hasNext() && !closed && keys.hasNext()) {
+            batch = nextBatch().iterator();
+        }
+        return batch.hasNext();
+    }
+
+    @Override
+    public JSONObject next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return batch.next();
+    }
+
+    private List<JSONObject> nextBatch() {
+        final List<String> batchKeys = new ArrayList<>(batchSize);
+        while (batchKeys.size() < batchSize && keys.hasNext()) {
+            batchKeys.add(keys.next());
+        }
+
+        return batchKeys.parallelStream()
+                .map(loader)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        batch = Collections.emptyIterator();
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import org.json.JSONObject;
+
+/**
+ * Produces the first <code>n</code> rows of its input in the order of a comparator. The input is consumed in full on
+ * the first pull, while holding at most <code>n</code> rows in a bounded heap whose top is the worst row kept so far.
+ * A row better than the top replaces it, so ordering <code>r</code> rows costs <code>O(r log n)</code> and never holds
+ * more than <code>n</code> rows, as opposed to sorting every row and dropping all but the first <code>n</code>.
+ *
+ * @author sanketsarang
+ */
+public class TopNOperator implements Operator {
+
+    /* Caps the initial heap allocation for large values of n */
+    private static final int MAX_INITIAL_CAPACITY = 4096;
+
+    private final Operator input;
+    private final Comparator<JSONObject> comparator;
+    private final int n;
+    private Iterator<JSONObject> ordered = null;
+
+    public TopNOperator(final Operator input, final Comparator<JSONObject> comparator, final int n) {
+        this.input = input;
+        this.comparator = comparator;
+        this.n = n;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (ordered == null) {
+            ordered = top().iterator();
+            input.close();
+        }
+        return ordered.hasNext();
+    }
+
+    @Override
+    public JSONObject next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return ordered.next();
+    }
+
+    private List<JSONObject> top() {
+        if (n <= 0) {
+            return Collections.emptyList();
+        }
+
+        final PriorityQueue<JSONObject> heap = new PriorityQueue<>(Math.min(n, MAX_INITIAL_CAPACITY), comparator.reversed());
+        while (input.hasNext()) {
+            final JSONObject row = input.next();
+            if (heap.size() < n) {
+                heap.add(row);
+            } else if (comparator.compare(row, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(row);
+            }
+        }
+
+        final List<JSONObject> list = new ArrayList<>(heap);
+        list.sort(comparator);
+        return list;
+    }
+
+    @Override
+    public void close() {
+        input.close();
+    }
+}
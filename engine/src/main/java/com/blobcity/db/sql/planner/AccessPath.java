@@ -0,0 +1,36 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.planner;
+
+/**
+ * The ways in which the keys of records satisfying a predicate can be read
+ *
+ * @author sanketsarang
+ */
+public enum AccessPath {
+
+    /* Direct existence check of the keys named by an EQ or IN predicate on the primary key */
+    PRIMARY_KEY_LOOKUP,
+    /* Filtered listing of all primary keys */
+    PRIMARY_KEY_SCAN,
+    /* Read of the index cardinals named by an EQ or IN predicate */
+    INDEX_LOOKUP,
+    /* Filtered listing of the cardinals of an index followed by a read of the matching cardinals */
+    INDEX_SCAN,
+    /* Read of every record of the collection */
+    FULL_SCAN
+}
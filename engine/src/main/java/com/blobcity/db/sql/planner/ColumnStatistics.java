@@ -0,0 +1,317 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.planner;
+
+import com.blobcity.db.lang.Operators;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.json.JSONObject;
+
+/**
+ * <p>
+ * Statistics of a single column used by the {@link QueryPlanner} to estimate the selectivity of predicates. Holds the
+ * row count, null count, number of distinct values (NDV), min / max and an equi-depth histogram for numeric columns,
+ * along with the fractions of the most frequent values.
+ *
+ * <p>
+ * Statistics are immutable and built either from exact per-value counts (read off an index) or from a sample of
+ * records, in which case the NDV is estimated with the GEE estimator.
+ *
+ * @author sanketsarang
+ */
+public class ColumnStatistics {
+
+    /* Selectivities used when nothing better is known, as per the classic System R defaults */
+    public static final double DEFAULT_EQ_SELECTIVITY = 0.1;
+    public static final double DEFAULT_RANGE_SELECTIVITY = 1.0 / 3;
+    public static final double DEFAULT_LIKE_SELECTIVITY = 0.1;
+
+    private static final int HISTOGRAM_BUCKETS = 32;
+    private static final int MOST_FREQUENT_VALUES = 32;
+
+    private final String column;
+    private final long rowCount;
+    private final long nullCount;
+    private final long distinctCount;
+    private final Double min;
+    private final Double max;
+    private final EquiDepthHistogram histogram;
+    private final Map<String, Double> frequentValues;
+    private final boolean exact;
+
+    private ColumnStatistics(final String column, final long rowCount, final long nullCount, final long distinctCount,
+            final Double min, final Double max, final EquiDepthHistogram histogram, final Map<String, Double> frequentValues,
+            final boolean exact) {
+        this.column = column;
+        this.rowCount = rowCount;
+        this.nullCount = nullCount;
+        this.distinctCount = distinctCount;
+        this.min = min;
+        this.max = max;
+        this.histogram = histogram;
+        this.frequentValues = frequentValues;
+        this.exact = exact;
+    }
+
+    /**
+     * Statistics of a column about which nothing is known except the row count of the collection
+     *
+     * @param column name of the column
+     * @param rowCount number of rows in the collection
+     * @return statistics that resolve to the default selectivities
+     */
+    public static ColumnStatistics unknown(final String column, final long rowCount) {
+        return new ColumnStatistics(column, rowCount, 0, -1, null, null, null, Collections.emptyMap(), false);
+    }
+
+    /**
+     * Builds statistics from the frequencies of the values of a column.
+     *
+     * @param column name of the column
+     * @param rowCount number of rows in the collection
+     * @param nullCount number of rows not holding a value for the column
+     * @param distinctCount number of distinct non-null values of the column
+     * @param frequencies value to number of rows holding the value. Either exact, or drawn from a sample in which case
+     * they are scaled to <code>rowCount - nullCount</code>
+     * @param exact <code>true</code> if the frequencies cover all values of the column
+     * @return the column statistics
+     */
+    public static ColumnStatistics fromFrequencies(final String column, final long rowCount, final long nullCount,
+            final long distinctCount, final Map<String, Long> frequencies, final boolean exact) {
+        final long total = frequencies.values().stream().mapToLong(Long::longValue).sum();
+
+        final long nonNull = Math.max(0, rowCount - nullCount);
+        final Map<Double, Long> numeric = new HashMap<>();
+        boolean isNumeric = !frequencies.isEmpty();
+        for (Map.Entry<String, Long> entry : frequencies.entrySet()) {
+            final Double value = toDouble(entry.getKey());
+            if (value == null) {
+                isNumeric = false;
+                break;
+            }
+            numeric.merge(value, entry.getValue(), Long::sum);
+        }
+
+        /* Only values seen more than once in a sample say anything about the frequency of the value */
+        final Map<String, Double> frequentValues = new HashMap<>();
+        if (total > 0 && rowCount > 0) {
+            frequencies.entrySet().stream()
+                    .filter(entry -> exact || entry.getValue() > 1)
+                    .sorted((a, b) -> Long.compare(b.getValue(), a.getValue()))
+                    .limit(MOST_FREQUENT_VALUES)
+                    .forEach(entry -> frequentValues.put(normalize(entry.getKey()),
+                            (double) entry.getValue() / total * nonNull / rowCount));
+        }
+
+        Double min = null;
+        Double max = null;
+        EquiDepthHistogram histogram = null;
+        if (isNumeric) {
+            min = Collections.min(numeric.keySet());
+            max = Collections.max(numeric.keySet());
+            histogram = EquiDepthHistogram.build(numeric, HISTOGRAM_BUCKETS);
+        }
+
+        return new ColumnStatistics(column, rowCount, nullCount, distinctCount, min, max, histogram, frequentValues, exact);
+    }
+
+    /**
+     * Estimates the fraction of rows of the collection that satisfy <code>column operator value</code>
+     *
+     * @param operator the comparison operator
+     * @param value the reference value, a {@link Collection} of reference values for <code>IN</code> and
+     * <code>NOT_IN</code>
+     * @return a fraction between 0 and 1
+     */
+    public double selectivity(final Operators operator, final Object value) {
+        final double selectivity;
+        switch (operator) {
+            case EQ:
+                selectivity = equalsSelectivity(value);
+                break;
+            case NEQ:
+                selectivity = nonNullFraction() - equalsSelectivity(value);
+                break;
+            case IN:
+                selectivity = inSelectivity(value);
+                break;
+            case NOT_IN:
+                selectivity = nonNullFraction() - inSelectivity(value);
+                break;
+            case LT:
+                selectivity = belowSelectivity(value, false);
+                break;
+            case LTEQ:
+                selectivity = belowSelectivity(value, true);
+                break;
+            case GT:
+                selectivity = aboveSelectivity(value, false);
+                break;
+            case GTEQ:
+                selectivity = aboveSelectivity(value, true);
+                break;
+            case LIKE:
+                selectivity = DEFAULT_LIKE_SELECTIVITY * nonNullFraction();
+                break;
+            default:
+                selectivity = DEFAULT_RANGE_SELECTIVITY;
+        }
+        return clamp(selectivity);
+    }
+
+    private double equalsSelectivity(final Object value) {
+        if (value == null) {
+            return 0;
+        }
+
+        final Double frequency = frequentValues.get(normalize(value.toString()));
+        if (frequency != null) {
+            return frequency;
+        }
+
+        final Double numeric = toDouble(value.toString());
+        if (numeric != null && min != null && (numeric < min || numeric > max)) {
+            return 0;
+        }
+        if (exact && frequentValues.size() >= distinctCount) {
+            return 0; //every value is known and this is not one of them
+        }
+        if (distinctCount <= 0) {
+            return DEFAULT_EQ_SELECTIVITY;
+        }
+
+        double frequentFraction = 0;
+        for (double fraction : frequentValues.values()) {
+            frequentFraction += fraction;
+        }
+        final long remainingValues = Math.max(1, distinctCount - frequentValues.size());
+        return Math.max(0, nonNullFraction() - frequentFraction) / remainingValues;
+    }
+
+    private double inSelectivity(final Object value) {
+        if (!(value instanceof Collection)) {
+            return equalsSelectivity(value);
+        }
+
+        double selectivity = 0;
+        for (Object item : (Collection) value) {
+            selectivity += equalsSelectivity(item);
+        }
+        return Math.min(nonNullFraction(), selectivity);
+    }
+
+    private double belowSelectivity(final Object value, final boolean inclusive) {
+        final Double numeric = value == null ? null : toDouble(value.toString());
+        if (numeric == null || histogram == null) {
+            return DEFAULT_RANGE_SELECTIVITY;
+        }
+
+        double selectivity = histogram.fractionBelow(numeric) * nonNullFraction();
+        if (inclusive) {
+            selectivity += equalsSelectivity(value);
+        }
+        return Math.min(nonNullFraction(), selectivity);
+    }
+
+    private double aboveSelectivity(final Object value, final boolean inclusive) {
+        if (value == null || histogram == null || toDouble(value.toString()) == null) {
+            return DEFAULT_RANGE_SELECTIVITY;
+        }
+        return nonNullFraction() - belowSelectivity(value, !inclusive);
+    }
+
+    private double nonNullFraction() {
+        return rowCount <= 0 ? 1 : (double) (rowCount - nullCount) / rowCount;
+    }
+
+    private static double clamp(final double selectivity) {
+        return Math.max(0, Math.min(1, selectivity));
+    }
+
+    static Double toDouble(final String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    /* 25, 25.0 and 2.5E1 are the same value for the purpose of frequency lookups and join keys */
+    public static String normalize(final String value) {
+        if (toDouble(value) == null) {
+            return value;
+        }
+        try {
+            return new BigDecimal(value.trim()).stripTrailingZeros().toPlainString();
+        } catch (NumberFormatException ex) {
+            return value; //NaN and Infinity
+        }
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getNullCount() {
+        return nullCount;
+    }
+
+    /**
+     * Gets the number of distinct non-null values of the column
+     *
+     * @return the number of distinct values; -1 if not known
+     */
+    public long getDistinctCount() {
+        return distinctCount;
+    }
+
+    public Double getMin() {
+        return min;
+    }
+
+    public Double getMax() {
+        return max;
+    }
+
+    public boolean isExact() {
+        return exact;
+    }
+
+    public JSONObject toJson() {
+        final JSONObject jsonObject = new JSONObject();
+        jsonObject.put("column", column);
+        jsonObject.put("rows", rowCount);
+        jsonObject.put("nulls", nullCount);
+        jsonObject.put("ndv", distinctCount);
+        jsonObject.put("exact", exact);
+        if (min != null) {
+            jsonObject.put("min", min);
+            jsonObject.put("max", max);
+        }
+        if (histogram != null) {
+            jsonObject.put("histogram", histogram.toJson());
+        }
+        return jsonObject;
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.planner;
+
+import com.blobcity.db.lang.Operators;
+import java.util.Collection;
+import java.util.Set;
+import org.json.JSONObject;
+
+/**
+ * A single <code>column operator value</code> predicate of a WHERE clause. For <code>IN</code> and
+ * <code>NOT_IN</code> the value is a {@link java.util.Set} of reference values.
+ *
+ * @author sanketsarang
+ */
+public class Comparison extends Condition {
+
+    private final String column;
+    private final Operators operator;
+    private final Object value;
+
+    public Comparison(final String column, final Operators operator, final Object value) {
+        this.column = column;
+        this.operator = operator;
+        this.value = value;
+    }
+
+    /**
+     * Values are compared numerically when both sides are numeric and as strings otherwise. A missing or null column
+     * value never satisfies a comparison.
+     */
+    @Override
+    public boolean test(final JSONObject record) {
+        final Object actual = record.opt(column);
+        if (actual == null || actual == JSONObject.NULL || value == null) {
+            return false;
+        }
+
+        switch (operator) {
+            case EQ:
+                return compare(actual, value) == 0;
+            case NEQ:
+                return compare(actual, value) != 0;
+            case LT:
+                return compare(actual, value) < 0;
+            case LTEQ:
+                return compare(actual, value) <= 0;
+            case GT:
+                return compare(actual, value) > 0;
+            case GTEQ:
+                return compare(actual, value) >= 0;
+            case IN:
+                return contains((Collection) value, actual);
+            case NOT_IN:
+                return !contains((Collection) value, actual);
+            default:
+                return false;
+        }
+    }
+
+    private boolean contains(final Collection values, final Object actual) {
+        for (Object item : values) {
+            if (item != null && compare(actual, item) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int compare(final Object actual, final Object reference) {
+        final Double actualNumber = toDouble(actual);
+        final Double referenceNumber = toDouble(reference);
+        if (actualNumber != null && referenceNumber != null) {
+            return Double.compare(actualNumber, referenceNumber);
+        }
+        return actual.toString().compareTo(reference.toString());
+    }
+
+    private Double toDouble(final Object object) {
+        if (object instanceof Number) {
+            return ((Number) object).doubleValue();
+        }
+        return ColumnStatistics.toDouble(object.toString());
+    }
+
+    @Override
+    public void collectColumns(final Set<String> columns) {
+        columns.add(column);
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public Operators getOperator() {
+        return operator;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    @Override
+    public JSONObject toJson() {
+        final JSONObject jsonObject = new JSONObject();
+        jsonObject.put("column", column);
+        jsonObject.put("operator", operator.getCode());
+        jsonObject.put("value", value);
+        jsonObject.put("selectivity", getSelectivity());
+        return jsonObject;
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.planner;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.json.JSONObject;
+
+/**
+ * Node of the logical form of a WHERE clause. A condition can be evaluated against a loaded record and carries the
+ * fraction of rows of the collection that are estimated to satisfy it.
+ *
+ * @author sanketsarang
+ */
+public abstract class Condition {
+
+    private double selectivity = 1;
+
+    /**
+     * Evaluates the condition against a record
+     *
+     * @param record the record in viewable form
+     * @return <code>true</code> if the record satisfies the condition; <code>false</code> otherwise
+     */
+    public abstract boolean test(final JSONObject record);
+
+    public abstract JSONObject toJson();
+
+    /**
+     * Adds the names of all columns the condition reads to a set
+     *
+     * @param columns the set to add to
+     */
+    public abstract void collectColumns(final Set<String> columns);
+
+    /**
+     * Gets the names of all columns the condition reads, which are the only columns of a record that need to be
+     * decoded to evaluate the condition
+     *
+     * @return the column names
+     */
+    public Set<String> getColumns() {
+        final Set<String> columns = new HashSet<>();
+        collectColumns(columns);
+        return columns;
+    }
+
+    public double getSelectivity() {
+        return selectivity;
+    }
+
+    void setSelectivity(final double selectivity) {
+        this.selectivity = selectivity;
+    }
+}
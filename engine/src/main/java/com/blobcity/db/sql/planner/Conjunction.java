@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.planner;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * AND of two or more conditions. Children are kept in ascending order of selectivity so that evaluation against a
+ * record short-circuits on the condition most likely to reject it.
+ *
+ * @author sanketsarang
+ */
+public class Conjunction extends Condition {
+
+    private final List<Condition> children;
+
+    public Conjunction(final List<Condition> children) {
+        this.children = new ArrayList<>(children);
+    }
+
+    /**
+     * Estimates the selectivity of the conjunction assuming its children are independent and orders the children by
+     * their selectivity. Selectivities of the children must already be set.
+     */
+    void orderBySelectivity() {
+        children.sort(Comparator.comparingDouble(Condition::getSelectivity));
+        double selectivity = 1;
+        for (Condition child : children) {
+            selectivity *= child.getSelectivity();
+        }
+        setSelectivity(selectivity);
+    }
+
+    @Override
+    public boolean test(final JSONObject record) {
+        for (Condition child : children) {
+            if (!child.test(record)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void collectColumns(final Set<String> columns) {
+        children.forEach(child -> child.collectColumns(columns));
+    }
+
+    public List<Condition> getChildren() {
+        return children;
+    }
+
+    @Override
+    public JSONObject toJson() {
+        final JSONArray jsonArray = new JSONArray();
+        children.forEach(child -> jsonArray.put(child.toJson()));
+        final JSONObject jsonObject = new JSONObject();
+        jsonObject.put("and", jsonArray);
+        jsonObject.put("selectivity", getSelectivity());
+        return jsonObject;
+    }
+}
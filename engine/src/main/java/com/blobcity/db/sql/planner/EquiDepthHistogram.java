@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.planner;
+
+import java.util.Map;
+import java.util.TreeMap;
+import org.json.JSONArray;
+
+/**
+ * Equi-depth histogram over the non-null values of a numeric column. Every bucket holds approximately the same number
+ * of rows, so that bucket boundaries are dense where the data is dense. Positions inside a bucket are interpolated
+ * linearly.
+ *
+ * @author sanketsarang
+ */
+public class EquiDepthHistogram {
+
+    private final double[] bounds;
+
+    private EquiDepthHistogram(final double[] bounds) {
+        this.bounds = bounds;
+    }
+
+    /**
+     * Builds a histogram from a weighted value distribution
+     *
+     * @param distribution value to number of rows holding the value
+     * @param buckets the maximum number of buckets
+     * @return a histogram; <code>null</code> if the distribution is empty
+     */
+    public static EquiDepthHistogram build(final Map<Double, Long> distribution, final int buckets) {
+        final TreeMap<Double, Long> sorted = new TreeMap<>(distribution);
+        sorted.values().removeIf(weight -> weight == null || weight <= 0);
+        if (sorted.isEmpty()) {
+            return null;
+        }
+
+        long total = 0;
+        for (long weight : sorted.values()) {
+            total += weight;
+        }
+
+        final int bucketCount = (int) Math.max(1, Math.min(buckets, sorted.size()));
+        final double[] bounds = new double[bucketCount + 1];
+        bounds[0] = sorted.firstKey();
+        bounds[bucketCount] = sorted.lastKey();
+
+        int bucket = 1;
+        long cumulative = 0;
+        for (Map.Entry<Double, Long> entry : sorted.entrySet()) {
+            cumulative += entry.getValue();
+            while (bucket < bucketCount && cumulative >= (double) total * bucket / bucketCount) {
+                bounds[bucket++] = entry.getKey();
+            }
+        }
+        while (bucket < bucketCount) {
+            bounds[bucket++] = bounds[bucketCount];
+        }
+
+        return new EquiDepthHistogram(bounds);
+    }
+
+    /**
+     * Estimates the fraction of non-null rows whose value is strictly less than the passed value
+     *
+     * @param value the reference value
+     * @return a fraction between 0 and 1
+     */
+    public double fractionBelow(final double value) {
+        final int buckets = bounds.length - 1;
+        if (value <= bounds[0]) {
+            return 0;
+        }
+        if (value > bounds[buckets]) {
+            return 1;
+        }
+
+        for (int i = 0; i < buckets; i++) {
+            if (value <= bounds[i + 1]) {
+                final double width = bounds[i + 1] - bounds[i];
+                final double within = width > 0 ? (value - bounds[i]) / width : 0;
+                return (i + within) / buckets;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Estimates the fraction of non-null rows whose value lies within the passed range, both ends inclusive
+     *
+     * @param low lower end of the range
+     * @param high upper end of the range
+     * @return a fraction between 0 and 1
+     */
+    public double fractionBetween(final double low, final double high) {
+        if (high < low) {
+            return 0;
+        }
+        return Math.max(0, fractionBelow(high) - fractionBelow(low));
+    }
+
+    public int getBuckets() {
+        return bounds.length - 1;
+    }
+
+    public JSONArray toJson() {
+        final JSONArray jsonArray = new JSONArray();
+        for (double bound : bounds) {
+            jsonArray.put(bound);
+        }
+        return jsonArray;
+    }
+}
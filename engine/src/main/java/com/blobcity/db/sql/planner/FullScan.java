@@ -14,40 +14,32 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
-package com.blobcity.db.code.filters;
+package com.blobcity.db.sql.planner;
 
+import com.blobcity.db.bitmap.RowIdMapping;
+import com.blobcity.db.bsql.BSqlDataManager;
 import com.blobcity.db.exceptions.OperationException;
-import java.util.concurrent.Callable;
+import java.util.Iterator;
 import org.json.JSONObject;
-import org.springframework.stereotype.Component;
 
 /**
+ * Produces the key of every record of the collection
  *
  * @author sanketsarang
  */
-@Component
-public class ThreadRun implements Callable{
-    private FilterParallelExecutor executor;
-    private JSONObject row;
-    private String app;
-    private String filter;
-    private int seq;
-    
-    public ThreadRun(FilterParallelExecutor executor, String app, String filter, JSONObject row, int seq){
-        this.app = app;
-        this.filter = filter;
-        this.row = row;
-        this.seq = seq;
-        this.executor = executor;
+public class FullScan extends PlanNode {
+
+    public FullScan(final double estimatedRows, final double cost) {
+        super(estimatedRows, cost);
     }
 
-    public ThreadRun() {
+    @Override
+    public Iterator<String> keys(final BSqlDataManager dataManager, final RowIdMapping rowIds, final String ds, final String collection) throws OperationException {
+        return dataManager.selectAllKeysAsStream(ds, collection);
     }
-    
+
     @Override
-    public Object call() throws OperationException{
-        Object abc1 = executor.executeCheckMethod(app, filter, row, seq) ;
-        return abc1;
+    public JSONObject toJson() {
+        return toJson(AccessPath.FULL_SCAN.name());
     }
-    
 }
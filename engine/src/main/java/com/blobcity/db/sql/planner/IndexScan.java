@@ -0,0 +1,56 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.planner;
+
+import com.blobcity.db.bitmap.RowIdMapping;
+import com.blobcity.db.bsql.BSqlDataManager;
+import com.blobcity.db.exceptions.OperationException;
+import java.util.Collections;
+import java.util.Iterator;
+import org.json.JSONObject;
+
+/**
+ * Reads the keys satisfying a single {@link Comparison} off the primary key or off the index of the compared column
+ *
+ * @author sanketsarang
+ */
+public class IndexScan extends PlanNode {
+
+    private final Comparison comparison;
+    private final AccessPath accessPath;
+
+    public IndexScan(final Comparison comparison, final AccessPath accessPath, final double estimatedRows, final double cost) {
+        super(estimatedRows, cost);
+        this.comparison = comparison;
+        this.accessPath = accessPath;
+    }
+
+    @Override
+    public Iterator<String> keys(final BSqlDataManager dataManager, final RowIdMapping rowIds, final String ds, final String collection) throws OperationException {
+        return dataManager.selectKeysWithPattern(ds, collection, Collections.emptyList(), comparison.getColumn(),
+                comparison.getValue(), comparison.getOperator());
+    }
+
+    public AccessPath getAccessPath() {
+        return accessPath;
+    }
+
+    @Override
+    public JSONObject toJson() {
+        return toJson(accessPath.name()).put("predicate", comparison.toJson());
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.planner;
+
+import com.blobcity.db.bitmap.RoaringBitmap;
+import com.blobcity.db.bitmap.RowIdMapping;
+import com.blobcity.db.bsql.BSqlDataManager;
+import com.blobcity.db.exceptions.OperationException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Unions the row ids of its children
+ *
+ * @author sanketsarang
+ */
+public class KeyUnion extends PlanNode {
+
+    private final List<PlanNode> children;
+
+    public KeyUnion(final List<PlanNode> children, final double estimatedRows, final double cost) {
+        super(estimatedRows, cost);
+        this.children = new ArrayList<>(children);
+    }
+
+    @Override
+    public Iterator<String> keys(final BSqlDataManager dataManager, final RowIdMapping rowIds, final String ds, final String collection) throws OperationException {
+        return rowIds.toKeys(rows(dataManager, rowIds, ds, collection));
+    }
+
+    @Override
+    public RoaringBitmap rows(final BSqlDataManager dataManager, final RowIdMapping rowIds, final String ds, final String collection) throws OperationException {
+        RoaringBitmap rows = new RoaringBitmap();
+        for (PlanNode child : children) {
+            rows = rows.or(child.rows(dataManager, rowIds, ds, collection));
+        }
+        return rows;
+    }
+
+    @Override
+    public JSONObject toJson() {
+        final JSONArray jsonArray = new JSONArray();
+        children.forEach(child -> jsonArray.put(child.toJson()));
+        return toJson("UNION").put("inputs", jsonArray);
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.planner;
+
+import java.util.Set;
+import org.json.JSONObject;
+
+/**
+ * NOT of a condition. Evaluated as the plain complement of the child, so that evaluation on records agrees with the
+ * complement of row ids computed through indexes: records without a value for the compared column satisfy the
+ * negation.
+ *
+ * @author sanketsarang
+ */
+public class Negation extends Condition {
+
+    private final Condition child;
+
+    public Negation(final Condition child) {
+        this.child = child;
+    }
+
+    @Override
+    public boolean test(final JSONObject record) {
+        return !child.test(record);
+    }
+
+    @Override
+    public void collectColumns(final Set<String> columns) {
+        child.collectColumns(columns);
+    }
+
+    public Condition getChild() {
+        return child;
+    }
+
+    @Override
+    public JSONObject toJson() {
+        final JSONObject jsonObject = new JSONObject();
+        jsonObject.put("not", child.toJson());
+        jsonObject.put("selectivity", getSelectivity());
+        return jsonObject;
+    }
+}
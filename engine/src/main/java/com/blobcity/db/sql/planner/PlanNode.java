@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.planner;
+
+import com.blobcity.db.bitmap.RoaringBitmap;
+import com.blobcity.db.bitmap.RowIdMapping;
+import com.blobcity.db.bsql.BSqlDataManager;
+import com.blobcity.db.exceptions.OperationException;
+import java.util.Iterator;
+import org.json.JSONObject;
+
+/**
+ * Node of a physical plan. Every node produces the primary keys of candidate records, either as a stream of keys or
+ * as a {@link RoaringBitmap} of their row ids, and carries the estimated number of keys it produces along with the
+ * estimated cost of producing them in the units of the {@link QueryPlanner} cost model.
+ *
+ * @author sanketsarang
+ */
+public abstract class PlanNode {
+
+    private final double estimatedRows;
+    private final double cost;
+
+    protected PlanNode(final double estimatedRows, final double cost) {
+        this.estimatedRows = estimatedRows;
+        this.cost = cost;
+    }
+
+    /**
+     * Produces the keys of the candidate records
+     *
+     * @param dataManager the data manager to read keys through
+     * @param rowIds the row id mapping of the collection
+     * @param ds the datastore
+     * @param collection the collection
+     * @return an iterator over primary keys. Keys are produced lazily where the access path allows it.
+     * @throws OperationException if the keys cannot be read
+     */
+    public abstract Iterator<String> keys(final BSqlDataManager dataManager, final RowIdMapping rowIds, final String ds, final String collection) throws OperationException;
+
+    /**
+     * Produces the row ids of the candidate records
+     *
+     * @param dataManager the data manager to read keys through
+     * @param rowIds the row id mapping of the collection
+     * @param ds the datastore
+     * @param collection the collection
+     * @return bitmap of row ids
+     * @throws OperationException if the keys cannot be read
+     */
+    public RoaringBitmap rows(final BSqlDataManager dataManager, final RowIdMapping rowIds, final String ds, final String collection) throws OperationException {
+        return rowIds.toBitmap(keys(dataManager, rowIds, ds, collection));
+    }
+
+    public abstract JSONObject toJson();
+
+    public double getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    public double getCost() {
+        return cost;
+    }
+
+    protected JSONObject toJson(final String type) {
+        final JSONObject jsonObject = new JSONObject();
+        jsonObject.put("type", type);
+        jsonObject.put("rows", Math.round(estimatedRows));
+        jsonObject.put("cost", Math.round(cost * 100) / 100.0);
+        return jsonObject;
+    }
+}
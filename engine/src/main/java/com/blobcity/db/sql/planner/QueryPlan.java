@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.planner;
+
+import java.util.Set;
+import org.json.JSONObject;
+
+/**
+ * Physical plan of the WHERE clause of a SELECT on a single collection. The access node produces candidate keys, the
+ * residual condition is evaluated on the loaded candidate records and, when the limit is pushed down, loading stops as
+ * soon as <code>limit</code> records have qualified.
+ *
+ * @author sanketsarang
+ */
+public class QueryPlan {
+
+    private final String ds;
+    private final String collection;
+    private final PlanNode access;
+    private final Condition condition;
+    private final Condition residual;
+    private final int limit;
+    private final boolean limitPushedDown;
+    private final double estimatedRows;
+    private final double cost;
+    private int parallelism = 0;
+    private Set<String> projection = null;
+
+    public QueryPlan(final String ds, final String collection, final PlanNode access, final Condition condition,
+            final Condition residual, final int limit, final boolean limitPushedDown, final double estimatedRows, final double cost) {
+        this.ds = ds;
+        this.collection = collection;
+        this.access = access;
+        this.condition = condition;
+        this.residual = residual;
+        this.limit = limit;
+        this.limitPushedDown = limitPushedDown;
+        this.estimatedRows = estimatedRows;
+        this.cost = cost;
+    }
+
+    public String getDs() {
+        return ds;
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    public PlanNode getAccess() {
+        return access;
+    }
+
+    /**
+     * Gets the complete WHERE condition, of which the access node and the residual condition each cover a part
+     *
+     * @return the condition; <code>null</code> if every record qualifies
+     */
+    public Condition getCondition() {
+        return condition;
+    }
+
+    /**
+     * Gets the condition to be evaluated on loaded records
+     *
+     * @return the residual condition; <code>null</code> if every candidate produced by the access node qualifies
+     */
+    public Condition getResidual() {
+        return residual;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean isLimitPushedDown() {
+        return limitPushedDown;
+    }
+
+    public double getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    public double getCost() {
+        return cost;
+    }
+
+    /**
+     * Gets the number of workers the qualifying records are to be loaded with, as requested by the query
+     *
+     * @return the requested degree of parallelism; 0 to use the configured default
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(final int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Gets the columns the records are to be loaded with. Only these columns, and the columns read by the conditions
+     * evaluated on the records, are decoded from the stored records.
+     *
+     * @return viewable names of the projected columns; <code>null</code> to load all columns
+     */
+    public Set<String> getProjection() {
+        return projection;
+    }
+
+    public void setProjection(final Set<String> projection) {
+        this.projection = projection;
+    }
+
+    public JSONObject toJson() {
+        final JSONObject jsonObject = new JSONObject();
+        jsonObject.put("collection", ds + "." + collection);
+        jsonObject.put("rows", Math.round(estimatedRows));
+        jsonObject.put("cost", Math.round(cost * 100) / 100.0);
+        jsonObject.put("access", access.toJson());
+        if (residual != null) {
+            jsonObject.put("filter", residual.toJson());
+        }
+        if (limit >= 0) {
+            jsonObject.put("limit", limit);
+            jsonObject.put("limitPushedDown", limitPushedDown);
+        }
+        return jsonObject;
+    }
+}
@@ -0,0 +1,660 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.planner;
+
+import com.blobcity.db.bitmap.RowIdMapping;
+import com.blobcity.db.bitmap.RowIdStore;
+import com.blobcity.db.bsql.BSqlDataManager;
+import com.blobcity.db.config.ConfigProperties;
+import com.blobcity.db.exceptions.ErrorCode;
+import com.blobcity.db.exceptions.OperationException;
+import com.blobcity.db.indexing.IndexFactory;
+import com.blobcity.db.indexing.IndexingStrategy;
+import com.blobcity.db.indexing.OrderedIndex;
+import com.blobcity.db.lang.Operators;
+import com.blobcity.db.schema.Column;
+import com.blobcity.db.schema.IndexTypes;
+import com.blobcity.db.schema.Schema;
+import com.blobcity.db.schema.beans.SchemaStore;
+import com.blobcity.db.sql.pipeline.LimitOperator;
+import com.blobcity.db.sql.pipeline.Operator;
+import com.blobcity.db.sql.pipeline.ParallelScanOperator;
+import com.blobcity.db.sql.pipeline.ScanExecutor;
+import com.blobcity.db.sql.pipeline.ScanOperator;
+import com.blobcity.db.sql.util.OperatorMapper;
+import com.blobcity.db.util.ConsumerUtil;
+import com.foundationdb.sql.parser.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * <p>
+ * Cost based planner for the WHERE clause of SELECT statements on a single collection.
+ *
+ * <p>
+ * The WHERE clause is first turned into its logical form of {@link Conjunction}, {@link Disjunction},
+ * {@link Negation} and {@link Comparison} nodes, and every node is assigned a selectivity from the {@link StatisticsStore}. The physical
+ * plan then picks, for every predicate, between reading keys off the primary key or an index, and evaluating the
+ * predicate on loaded records. AND predicates are ordered by selectivity: the cheapest index access drives the plan,
+ * further indexed predicates are intersected only while the index read costs less than the records it saves loading,
+ * and everything else is evaluated on the loaded records. A full scan is chosen whenever it is estimated to be cheaper
+ * than the best index plan, which is also the case for predicates on columns that are not indexed.
+ *
+ * <p>
+ * Index accesses combined through AND, OR and NOT are evaluated as {@link com.blobcity.db.bitmap.RoaringBitmap}
+ * operations over the row ids of the collection, and only the final bitmap is turned back into primary keys.
+ *
+ * <p>
+ * Costs are expressed in units of reading one record. Reading a key off a listing or an index costs
+ * <code>KEY_READ_COST</code>, and opening a single index cardinal or checking existence of a single primary key costs
+ * <code>INDEX_PROBE_COST</code>.
+ *
+ * <p>
+ * Plans that read every qualifying record are executed with a {@link ParallelScanOperator}, streaming the candidate
+ * keys to as many workers as the degree of parallelism of the plan. The degree defaults to
+ * {@link ConfigProperties#SCAN_PARALLELISM}, or the number of cores, and can be set per query with a
+ * <code>PARALLEL(n)</code> hint. Workers of all scans share the threads of the {@link ScanExecutor}, so a hint is
+ * capped at the number of threads of that pool.
+ *
+ * @author sanketsarang
+ */
+@Component
+public class QueryPlanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryPlanner.class.getName());
+
+    public static final double RECORD_READ_COST = 1.0;
+    public static final double KEY_READ_COST = 0.05;
+    public static final double INDEX_PROBE_COST = 0.5;
+
+    /* Maximum number of loaded records waiting to be consumed by select(QueryPlan) */
+    private static final int SELECT_QUEUE_CAPACITY = 4096;
+
+    @Autowired
+    @Lazy
+    private BSqlDataManager dataManager;
+    @Autowired
+    @Lazy
+    private SchemaStore schemaStore;
+    @Autowired
+    @Lazy
+    private StatisticsStore statisticsStore;
+    @Autowired
+    @Lazy
+    private RowIdStore rowIdStore;
+    @Autowired
+    @Lazy
+    private IndexFactory indexFactory;
+    @Autowired
+    @Lazy
+    private ScanExecutor scanExecutor;
+
+    /**
+     * Plans a WHERE clause
+     *
+     * @param ds the datastore
+     * @param collection the collection
+     * @param whereClause the WHERE clause; <code>null</code> to select all records
+     * @param limit maximum number of records required; -1 if unlimited
+     * @param limitPushdown <code>true</code> if the caller consumes records in no particular order and requires only
+     * the first <code>limit</code> records, allowing execution to stop early
+     * @return the plan
+     * @throws OperationException if the WHERE clause uses unsupported constructs or if statistics cannot be read
+     */
+    public QueryPlan plan(final String ds, final String collection, final ValueNode whereClause, final int limit,
+            final boolean limitPushdown) throws OperationException {
+        return planCondition(ds, collection, whereClause == null ? null : toCondition(whereClause), limit, limitPushdown);
+    }
+
+    /**
+     * Plans the AND of a list of predicates. Used for the predicates of a join that reference a single collection.
+     *
+     * @param ds the datastore
+     * @param collection the collection
+     * @param conjuncts predicates that must all hold; an empty list to select all records
+     * @param limit maximum number of records required; -1 if unlimited
+     * @param limitPushdown <code>true</code> if the caller requires only the first <code>limit</code> records
+     * @return the plan
+     * @throws OperationException if a predicate uses unsupported constructs or if statistics cannot be read
+     */
+    public QueryPlan plan(final String ds, final String collection, final List<ValueNode> conjuncts, final int limit,
+            final boolean limitPushdown) throws OperationException {
+        return planCondition(ds, collection, toCondition(conjuncts), limit, limitPushdown);
+    }
+
+    /**
+     * Turns the AND of a list of predicates into its logical form, without estimating selectivities
+     *
+     * @param conjuncts predicates that must all hold
+     * @return the condition; <code>null</code> if the list is empty
+     * @throws OperationException if a predicate uses unsupported constructs
+     */
+    public Condition toCondition(final List<ValueNode> conjuncts) throws OperationException {
+        if (conjuncts.isEmpty()) {
+            return null;
+        }
+        if (conjuncts.size() == 1) {
+            return toCondition(conjuncts.get(0));
+        }
+
+        final List<Condition> children = new ArrayList<>();
+        for (ValueNode conjunct : conjuncts) {
+            children.add(toCondition(conjunct));
+        }
+        return new Conjunction(children);
+    }
+
+    private QueryPlan planCondition(final String ds, final String collection, final Condition condition, final int limit,
+            final boolean limitPushdown) throws OperationException {
+        final long rowCount = statisticsStore.getRowCount(ds, collection);
+        final double fullScanCost = rowCount * (KEY_READ_COST + RECORD_READ_COST);
+        final boolean pushLimit = limitPushdown && limit >= 0;
+
+        if (condition == null) {
+            return new QueryPlan(ds, collection, new FullScan(rowCount, fullScanCost), null, null, limit, pushLimit,
+                    rowCount, fullScanCost);
+        }
+
+        final Schema schema = schemaStore.getSchema(ds, collection);
+        estimate(ds, collection, condition);
+        final double estimatedRows = condition.getSelectivity() * rowCount;
+
+        final Access access = access(ds, collection, schema, condition, rowCount);
+        if (access == null || access.totalCost() >= fullScanCost) {
+            return new QueryPlan(ds, collection, new FullScan(rowCount, fullScanCost), condition, condition, limit, pushLimit,
+                    estimatedRows, fullScanCost);
+        }
+
+        final Condition residual;
+        if (access.residual.isEmpty()) {
+            residual = null;
+        } else if (access.residual.size() == 1) {
+            residual = access.residual.get(0);
+        } else {
+            final Conjunction conjunction = new Conjunction(access.residual);
+            conjunction.orderBySelectivity();
+            residual = conjunction;
+        }
+        return new QueryPlan(ds, collection, access.node, condition, residual, limit, pushLimit, estimatedRows, access.totalCost());
+    }
+
+    /**
+     * Executes a plan and loads the qualifying records
+     *
+     * @param plan the plan to execute
+     * @return the qualifying records in viewable form
+     * @throws OperationException if the keys or records cannot be read
+     */
+    public List<JSONObject> select(final QueryPlan plan) throws OperationException {
+        if (plan.isLimitPushedDown()) {
+            final Iterator<String> keys = keys(plan);
+            final Condition residual = plan.getResidual();
+            final Set<String> residualColumns = residual == null ? null : residual.getColumns();
+            final List<JSONObject> list = new ArrayList<>();
+            while (list.size() < plan.getLimit() && keys.hasNext()) {
+                final JSONObject record = dataManager.select(plan.getDs(), plan.getCollection(), keys.next(),
+                        plan.getProjection(), residual == null ? null : residual::test, residualColumns);
+                if (record != null) {
+                    list.add(record);
+                }
+            }
+            return list;
+        }
+
+        final List<JSONObject> list = new ArrayList<>();
+        try (Operator operator = openParallel(plan, SELECT_QUEUE_CAPACITY)) {
+            operator.forEachRemaining(list::add);
+        }
+        return list;
+    }
+
+    /**
+     * Opens a plan as a pull based {@link Operator} pipeline instead of loading all qualifying records at once.
+     * Records are loaded <code>batchSize</code> at a time as rows are pulled. Unless the limit is pushed down, records
+     * are instead loaded by parallel workers holding at most <code>batchSize</code> records ahead of the consumer. The
+     * residual condition is evaluated while loading, so that records failing it are never decoded in full.
+     *
+     * @param plan the plan to execute
+     * @param batchSize number of records loaded together
+     * @return the operator producing the qualifying records in viewable form
+     * @throws OperationException if the keys cannot be read
+     */
+    public Operator open(final QueryPlan plan, final int batchSize) throws OperationException {
+        if (!plan.isLimitPushedDown() && parallelism(plan) > 1) {
+            return openParallel(plan, batchSize);
+        }
+
+        Operator operator = new ScanOperator(keys(plan), loader(plan, plan.getResidual()), batchSize);
+        if (plan.isLimitPushedDown()) {
+            operator = new LimitOperator(operator, plan.getLimit());
+        }
+        return operator;
+    }
+
+    /**
+     * Gets the number of workers a plan that reads every qualifying record is executed with
+     *
+     * @param plan the plan
+     * @return the degree of parallelism requested by the plan, or the configured default, capped at the threads of
+     * the {@link ScanExecutor}
+     */
+    public int parallelism(final QueryPlan plan) {
+        return scanExecutor.parallelism(plan.getParallelism());
+    }
+
+    /**
+     * Loads every candidate record of a plan with several workers, evaluating the residual condition on the workers as
+     * the records are loaded
+     */
+    private Operator openParallel(final QueryPlan plan, final int queueCapacity) throws OperationException {
+        return new ParallelScanOperator(keys(plan), loader(plan, plan.getResidual()), null, parallelism(plan),
+                queueCapacity, scanExecutor);
+    }
+
+    /**
+     * Creates a loader of the projected columns of the records of a plan that qualify a condition. Only the columns
+     * read by the condition are decoded to evaluate it, and the loader returns <code>null</code> for records that do
+     * not qualify or can no longer be read.
+     */
+    private Function<String, JSONObject> loader(final QueryPlan plan, final Condition condition) {
+        final Set<String> conditionColumns = condition == null ? null : condition.getColumns();
+        return _id -> {
+            try {
+                return dataManager.select(plan.getDs(), plan.getCollection(), _id, plan.getProjection(),
+                        condition == null ? null : condition::test, conditionColumns);
+            } catch (OperationException ex) {
+                logger.debug("Record {} of {}.{} could not be loaded and is skipped", _id, plan.getDs(), plan.getCollection());
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Checks if the first <code>limit</code> qualifying records in the order of a column are cheaper to find by
+     * walking an ordered index of the column, evaluating the complete WHERE condition on every record read, than by
+     * executing the plan and ordering every qualifying record. Qualifying records are assumed to be spread evenly over
+     * the order of the column. The index must hold every record of the collection, as records without a value for the
+     * column would otherwise be missed.
+     *
+     * @param plan plan of the WHERE clause
+     * @param column the ORDER BY column
+     * @param limit number of records required
+     * @return <code>true</code> if {@link #openInIndexOrder(QueryPlan, String, boolean, int)} is the cheaper
+     * execution
+     * @throws OperationException if the schema, index or statistics cannot be read
+     */
+    public boolean preferIndexOrder(final QueryPlan plan, final String column, final int limit) throws OperationException {
+        final OrderedIndex orderedIndex = orderedIndex(plan.getDs(), plan.getCollection(), column);
+        if (orderedIndex == null) {
+            return false;
+        }
+
+        final long rowCount = dataManager.getRowCount(plan.getDs(), plan.getCollection());
+        if (rowCount == 0 || orderedIndex.getIndexedCount(plan.getDs(), plan.getCollection(), column) < rowCount) {
+            return false;
+        }
+
+        final double selectivity = Math.max(1, plan.getEstimatedRows()) / rowCount;
+        final double recordsRead = Math.min(rowCount, limit / selectivity);
+        final double cost = recordsRead * (KEY_READ_COST + RECORD_READ_COST);
+        logger.debug("Ordered scan of {}.{} on {} estimated at cost {} against plan cost {}", plan.getDs(),
+                plan.getCollection(), column, cost, plan.getCost());
+        return cost < plan.getCost();
+    }
+
+    /**
+     * Opens a plan reading candidate keys off an ordered index of a column instead of through the access node of the
+     * plan, so that qualifying records are produced in the order of the column. The complete WHERE condition is
+     * evaluated on the loaded records.
+     *
+     * @param plan plan of the WHERE clause
+     * @param column the ORDER BY column, which must have an ordered index
+     * @param ascending <code>true</code> for the smallest value first
+     * @param batchSize number of records loaded together
+     * @return the operator producing the qualifying records in order
+     * @throws OperationException if the column has no ordered index or the index cannot be read
+     */
+    public Operator openInIndexOrder(final QueryPlan plan, final String column, final boolean ascending, final int batchSize) throws OperationException {
+        final OrderedIndex orderedIndex = orderedIndex(plan.getDs(), plan.getCollection(), column);
+        if (orderedIndex == null) {
+            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Column " + column + " of " + plan.getCollection()
+                    + " does not have an ordered index");
+        }
+
+        final Iterator<String> keys = orderedIndex.loadOrderedStream(plan.getDs(), plan.getCollection(), column, ascending);
+        return new ScanOperator(keys, loader(plan, plan.getCondition()), batchSize);
+    }
+
+    private OrderedIndex orderedIndex(final String ds, final String collection, final String column) throws OperationException {
+        final Column schemaColumn = schemaStore.getSchema(ds, collection).getColumn(column);
+        if (schemaColumn == null || schemaColumn.getIndexType() == IndexTypes.NONE) {
+            return null;
+        }
+        final IndexingStrategy strategy = indexFactory.getStrategy(schemaColumn.getIndexType());
+        return strategy instanceof OrderedIndex ? (OrderedIndex) strategy : null;
+    }
+
+    /**
+     * Executes a plan and returns only the keys of the qualifying records. Records are loaded only if the plan has a
+     * residual condition.
+     *
+     * @param plan the plan to execute
+     * @return keys of the qualifying records
+     * @throws OperationException if the keys or records cannot be read
+     */
+    public Set<String> selectKeys(final QueryPlan plan) throws OperationException {
+        final Iterator<String> keys = keys(plan);
+        final Set<String> keySet = new HashSet<>();
+        keys.forEachRemaining(keySet::add);
+
+        final Condition residual = plan.getResidual();
+        if (residual == null) {
+            return keySet;
+        }
+
+        /* Only the columns read by the residual condition are decoded */
+        final Set<String> residualColumns = residual.getColumns();
+        final Set<String> qualified = Collections.synchronizedSet(new HashSet<>());
+        keySet.parallelStream().forEach(ConsumerUtil.throwsException(_id -> {
+            if (dataManager.select(plan.getDs(), plan.getCollection(), _id, Collections.emptySet(), residual::test, residualColumns) != null) {
+                qualified.add(_id);
+            }
+        }, OperationException.class));
+        return qualified;
+    }
+
+    private Iterator<String> keys(final QueryPlan plan) throws OperationException {
+        final RowIdMapping rowIds = rowIdStore.getMapping(plan.getDs(), plan.getCollection());
+        return plan.getAccess().keys(dataManager, rowIds, plan.getDs(), plan.getCollection());
+    }
+
+    private Condition toCondition(final ValueNode node) throws OperationException {
+        switch (node.getNodeType()) {
+            case NodeTypes.NOT_NODE:
+                return new Negation(toCondition(((NotNode) node).getOperand()));
+            case NodeTypes.AND_NODE: {
+                final List<Condition> children = new ArrayList<>();
+                flatten(node, NodeTypes.AND_NODE, children);
+                return new Conjunction(children);
+            }
+            case NodeTypes.OR_NODE: {
+                final List<Condition> children = new ArrayList<>();
+                flatten(node, NodeTypes.OR_NODE, children);
+                return new Disjunction(children);
+            }
+            case NodeTypes.BINARY_LESS_EQUALS_OPERATOR_NODE:
+            case NodeTypes.BINARY_LESS_THAN_OPERATOR_NODE:
+            case NodeTypes.BINARY_GREATER_EQUALS_OPERATOR_NODE:
+            case NodeTypes.BINARY_GREATER_THAN_OPERATOR_NODE:
+            case NodeTypes.BINARY_EQUALS_OPERATOR_NODE:
+            case NodeTypes.BINARY_NOT_EQUALS_OPERATOR_NODE:
+                return toComparison((BinaryRelationalOperatorNode) node);
+            case NodeTypes.IN_LIST_OPERATOR_NODE:
+                final InListOperatorNode inListOperatorNode = (InListOperatorNode) node;
+                final String column = inListOperatorNode.getLeftOperand().getNodeList().get(0).getColumnName();
+                final Set<Object> inValues = new HashSet<>();
+                for (ValueNode valueNode : inListOperatorNode.getRightOperandList().getNodeList()) {
+                    final Object value = constantValue(valueNode);
+                    if (value == null) {
+                        throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "Unsupported value in IN list : " + valueNode.toString());
+                    }
+                    inValues.add(value);
+                }
+                return new Comparison(column, inListOperatorNode.isNegated() ? Operators.NOT_IN : Operators.IN, inValues);
+            default:
+                throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "Unsupported clause : " + node.toString());
+        }
+    }
+
+    /* Nested ANDs (or ORs) are flattened into a single node so that all their predicates are ordered together */
+    private void flatten(final ValueNode node, final int nodeType, final List<Condition> children) throws OperationException {
+        if (node.getNodeType() == nodeType) {
+            final BinaryLogicalOperatorNode logicalNode = (BinaryLogicalOperatorNode) node;
+            flatten(logicalNode.getLeftOperand(), nodeType, children);
+            flatten(logicalNode.getRightOperand(), nodeType, children);
+        } else {
+            children.add(toCondition(node));
+        }
+    }
+
+    private Comparison toComparison(final BinaryRelationalOperatorNode node) throws OperationException {
+        ValueNode columnOperand = node.getLeftOperand();
+        ValueNode valueOperand = node.getRightOperand();
+        Operators operator = OperatorMapper.map(node.getOperator());
+
+        /* 10 < col is the same as col > 10 */
+        if (columnOperand instanceof ConstantNode && valueOperand.getNodeType() == NodeTypes.COLUMN_REFERENCE) {
+            columnOperand = node.getRightOperand();
+            valueOperand = node.getLeftOperand();
+            operator = mirror(operator);
+        }
+
+        final Object value = constantValue(valueOperand);
+        if (columnOperand.getNodeType() != NodeTypes.COLUMN_REFERENCE || value == null) {
+            throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "Unsupported binary relation : " + node.toString());
+        }
+
+        return new Comparison(((ColumnReference) columnOperand).getColumnName(), operator, value);
+    }
+
+    private Object constantValue(final ValueNode node) {
+        if (node instanceof NumericConstantNode) {
+            return ((NumericConstantNode) node).getValue();
+        } else if (node instanceof CharConstantNode) {
+            return ((CharConstantNode) node).getValue();
+        } else if (node instanceof BooleanConstantNode) {
+            return ((BooleanConstantNode) node).getBooleanValue();
+        } else if (node instanceof BitConstantNode) {
+            return ((BitConstantNode) node).getValue();
+        }
+        return null;
+    }
+
+    private Operators mirror(final Operators operator) {
+        switch (operator) {
+            case LT:
+                return Operators.GT;
+            case LTEQ:
+                return Operators.GTEQ;
+            case GT:
+                return Operators.LT;
+            case GTEQ:
+                return Operators.LTEQ;
+            default:
+                return operator;
+        }
+    }
+
+    private void estimate(final String ds, final String collection, final Condition condition) throws OperationException {
+        if (condition instanceof Comparison) {
+            final Comparison comparison = (Comparison) condition;
+            final ColumnStatistics statistics = statisticsStore.getColumnStatistics(ds, collection, comparison.getColumn());
+            comparison.setSelectivity(statistics.selectivity(comparison.getOperator(), comparison.getValue()));
+        } else if (condition instanceof Conjunction) {
+            for (Condition child : ((Conjunction) condition).getChildren()) {
+                estimate(ds, collection, child);
+            }
+            ((Conjunction) condition).orderBySelectivity();
+        } else if (condition instanceof Disjunction) {
+            for (Condition child : ((Disjunction) condition).getChildren()) {
+                estimate(ds, collection, child);
+            }
+            ((Disjunction) condition).orderBySelectivity();
+        } else if (condition instanceof Negation) {
+            final Condition child = ((Negation) condition).getChild();
+            estimate(ds, collection, child);
+            condition.setSelectivity(1 - child.getSelectivity());
+        }
+    }
+
+    /**
+     * Finds the cheapest way of reading candidate keys for a condition
+     *
+     * @return the access; <code>null</code> if the condition can only be evaluated by loading every record
+     */
+    private Access access(final String ds, final String collection, final Schema schema, final Condition condition,
+            final long rowCount) throws OperationException {
+        if (condition instanceof Comparison) {
+            return access(ds, collection, schema, (Comparison) condition, rowCount);
+        } else if (condition instanceof Conjunction) {
+            return access(ds, collection, schema, (Conjunction) condition, rowCount);
+        } else if (condition instanceof Disjunction) {
+            return access(ds, collection, schema, (Disjunction) condition, rowCount);
+        } else if (condition instanceof Negation) {
+            return access(ds, collection, schema, (Negation) condition, rowCount);
+        }
+        return null;
+    }
+
+    private Access access(final String ds, final String collection, final Schema schema, final Comparison comparison,
+            final long rowCount) throws OperationException {
+        final Column column = schema.getColumn(comparison.getColumn());
+        final boolean primary = schema.getPrimary().equals(comparison.getColumn());
+        if (column == null || comparison.getOperator() == Operators.LIKE || (!primary && column.getIndexType() == IndexTypes.NONE)) {
+            return null;
+        }
+
+        final double rows = comparison.getSelectivity() * rowCount;
+        final int probes = comparison.getValue() instanceof Collection ? ((Collection) comparison.getValue()).size() : 1;
+        final boolean lookup = comparison.getOperator() == Operators.EQ || comparison.getOperator() == Operators.IN;
+        final AccessPath accessPath;
+        final double cost;
+        if (primary) {
+            accessPath = lookup ? AccessPath.PRIMARY_KEY_LOOKUP : AccessPath.PRIMARY_KEY_SCAN;
+            cost = lookup ? probes * INDEX_PROBE_COST : rowCount * KEY_READ_COST;
+        } else if (lookup) {
+            accessPath = AccessPath.INDEX_LOOKUP;
+            cost = probes * INDEX_PROBE_COST + rows * KEY_READ_COST;
+        } else {
+            /* every cardinal name is read and filtered, then the matching cardinals are opened */
+            final long distinct = statisticsStore.getColumnStatistics(ds, collection, comparison.getColumn()).getDistinctCount();
+            accessPath = AccessPath.INDEX_SCAN;
+            final double cardinals = distinct < 0 ? rowCount : distinct;
+            cost = cardinals * KEY_READ_COST + comparison.getSelectivity() * cardinals * INDEX_PROBE_COST + rows * KEY_READ_COST;
+        }
+
+        return new Access(new IndexScan(comparison, accessPath, rows, cost), Collections.emptyList());
+    }
+
+    private Access access(final String ds, final String collection, final Schema schema, final Conjunction conjunction,
+            final long rowCount) throws OperationException {
+        final List<Condition> children = conjunction.getChildren();
+        final List<Access> accesses = new ArrayList<>();
+        Access driving = null;
+        for (Condition child : children) {
+            final Access access = access(ds, collection, schema, child, rowCount);
+            accesses.add(access);
+            if (access != null && (driving == null || access.totalCost() < driving.totalCost())) {
+                driving = access;
+            }
+        }
+        if (driving == null) {
+            return null;
+        }
+
+        final List<PlanNode> nodes = new ArrayList<>();
+        final List<Condition> residual = new ArrayList<>(driving.residual);
+        nodes.add(driving.node);
+        double rows = driving.node.getEstimatedRows();
+        double cost = driving.node.getCost();
+
+        /* Children are in ascending order of selectivity, so the most selective indexes are intersected first */
+        for (int i = 0; i < children.size(); i++) {
+            final Condition child = children.get(i);
+            final Access access = accesses.get(i);
+            if (access == driving) {
+                continue;
+            }
+
+            final double recordsSaved = rows * (1 - child.getSelectivity()) * RECORD_READ_COST;
+            if (access != null && access.residual.isEmpty() && access.node.getCost() < recordsSaved) {
+                nodes.add(access.node);
+                cost += access.node.getCost();
+                rows *= child.getSelectivity();
+            } else {
+                residual.add(child);
+            }
+        }
+
+        final PlanNode node = nodes.size() == 1 ? nodes.get(0) : new KeyIntersection(nodes, rows, cost);
+        return new Access(node, residual);
+    }
+
+    private Access access(final String ds, final String collection, final Schema schema, final Disjunction disjunction,
+            final long rowCount) throws OperationException {
+        final List<PlanNode> nodes = new ArrayList<>();
+        boolean exact = true;
+        double rows = 0;
+        double cost = 0;
+        for (Condition child : disjunction.getChildren()) {
+            final Access access = access(ds, collection, schema, child, rowCount);
+            if (access == null) {
+                return null;
+            }
+            nodes.add(access.node);
+            exact &= access.residual.isEmpty();
+            rows += access.node.getEstimatedRows();
+            cost += access.node.getCost();
+        }
+
+        /* The union of the children is a superset of the result if any child needs filtering on loaded records */
+        final PlanNode node = new KeyUnion(nodes, Math.min(rows, rowCount), cost);
+        return new Access(node, exact ? Collections.emptyList() : Collections.singletonList(disjunction));
+    }
+
+    /* NOT is the complement of its child within the listing of all primary keys */
+    private Access access(final String ds, final String collection, final Schema schema, final Negation negation,
+            final long rowCount) throws OperationException {
+        final Access access = access(ds, collection, schema, negation.getChild(), rowCount);
+        if (access == null || !access.residual.isEmpty()) {
+            return null;
+        }
+
+        final double listingCost = rowCount * KEY_READ_COST;
+        final PlanNode all = new FullScan(rowCount, listingCost);
+        final double cost = listingCost + access.node.getCost();
+        return new Access(new KeyComplement(all, access.node, negation.getSelectivity() * rowCount, cost), Collections.emptyList());
+    }
+
+    private static class Access {
+
+        private final PlanNode node;
+        private final List<Condition> residual;
+
+        private Access(final PlanNode node, final List<Condition> residual) {
+            this.node = node;
+            this.residual = residual;
+        }
+
+        /* Producing the keys plus loading every record they name */
+        private double totalCost() {
+            return node.getCost() + node.getEstimatedRows() * RECORD_READ_COST;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.planner;
+
+import com.blobcity.db.bsql.BSqlDataManager;
+import com.blobcity.db.bsql.BSqlIndexManager;
+import com.blobcity.db.exceptions.OperationException;
+import com.blobcity.db.indexing.IndexCountStore;
+import com.blobcity.db.indexing.IndexFactory;
+import com.blobcity.db.indexing.IndexingStrategy;
+import com.blobcity.db.schema.Column;
+import com.blobcity.db.schema.IndexTypes;
+import com.blobcity.db.schema.Schema;
+import com.blobcity.db.schema.beans.SchemaStore;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * <p>
+ * Maintains per collection and per column statistics for use by the {@link QueryPlanner}.
+ *
+ * <p>
+ * Statistics are built lazily on first use. Statistics of indexed columns are read off the index: every cardinal is a
+ * distinct value and the count of the cardinal is its frequency, taken through the {@link IndexCountStore}. Statistics
+ * of columns that are not indexed are drawn from a sample of records. Statistics of a collection are dropped and
+ * rebuilt once the number of records inserted, updated or deleted since they were built exceeds
+ * <code>STALE_FRACTION</code> of the row count.
+ *
+ * @author sanketsarang
+ */
+@Component
+public class StatisticsStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatisticsStore.class.getName());
+
+    private static final int SAMPLE_SIZE = 1000;
+    private static final int MAX_COUNTED_CARDINALS = 4096;
+    private static final double STALE_FRACTION = 0.2;
+    private static final long MIN_STALE_MODIFICATIONS = 1000;
+
+    @Autowired
+    @Lazy
+    private BSqlDataManager dataManager;
+    @Autowired
+    @Lazy
+    private BSqlIndexManager indexManager;
+    @Autowired
+    @Lazy
+    private IndexFactory indexFactory;
+    @Autowired
+    @Lazy
+    private IndexCountStore indexCountStore;
+    @Autowired
+    @Lazy
+    private SchemaStore schemaStore;
+
+    /* ds.collection -> statistics */
+    private final Map<String, CollectionStatistics> map = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the number of records in the collection as of the time statistics were last built
+     *
+     * @param ds the datastore
+     * @param collection the collection
+     * @return the number of records in the collection
+     * @throws OperationException if the collection cannot be read
+     */
+    public long getRowCount(final String ds, final String collection) throws OperationException {
+        return getCollectionStatistics(ds, collection).rowCount;
+    }
+
+    /**
+     * Gets the statistics of the specified column, building them if not already built
+     *
+     * @param ds the datastore
+     * @param collection the collection
+     * @param column viewable name of the column
+     * @return statistics of the column
+     * @throws OperationException if the collection cannot be read
+     */
+    public ColumnStatistics getColumnStatistics(final String ds, final String collection, final String column) throws OperationException {
+        final CollectionStatistics collectionStatistics = getCollectionStatistics(ds, collection);
+        ColumnStatistics columnStatistics = collectionStatistics.columns.get(column);
+        if (columnStatistics == null) {
+            columnStatistics = build(ds, collection, column, collectionStatistics.rowCount);
+            final ColumnStatistics existing = collectionStatistics.columns.putIfAbsent(column, columnStatistics);
+            if (existing != null) {
+                columnStatistics = existing;
+            }
+        }
+        return columnStatistics;
+    }
+
+    /**
+     * Registers a record level change on the collection. Used to decide when statistics are stale.
+     *
+     * @param ds the datastore
+     * @param collection the collection
+     */
+    public void recordModification(final String ds, final String collection) {
+        final CollectionStatistics collectionStatistics = map.get(key(ds, collection));
+        if (collectionStatistics != null) {
+            collectionStatistics.modifications.incrementAndGet();
+        }
+    }
+
+    /**
+     * Drops all statistics of the collection. To be called on schema or index changes and when a collection is
+     * dropped, renamed or truncated.
+     *
+     * @param ds the datastore
+     * @param collection the collection
+     */
+    public void invalidate(final String ds, final String collection) {
+        map.remove(key(ds, collection));
+        indexCountStore.invalidate(ds, collection);
+    }
+
+    public JSONObject toJson(final String ds, final String collection) throws OperationException {
+        final CollectionStatistics collectionStatistics = getCollectionStatistics(ds, collection);
+        final JSONObject jsonObject = new JSONObject();
+        jsonObject.put("rows", collectionStatistics.rowCount);
+        jsonObject.put("modifications", collectionStatistics.modifications.get());
+        final JSONObject columnsJson = new JSONObject();
+        collectionStatistics.columns.forEach((column, statistics) -> columnsJson.put(column, statistics.toJson()));
+        jsonObject.put("columns", columnsJson);
+        return jsonObject;
+    }
+
+    private CollectionStatistics getCollectionStatistics(final String ds, final String collection) throws OperationException {
+        final String key = key(ds, collection);
+        CollectionStatistics collectionStatistics = map.get(key);
+        if (collectionStatistics == null || collectionStatistics.isStale()) {
+            collectionStatistics = new CollectionStatistics(dataManager.getRowCount(ds, collection));
+            map.put(key, collectionStatistics);
+            logger.debug("Statistics of {}.{} (re)built with row count {}", ds, collection, collectionStatistics.rowCount);
+        }
+        return collectionStatistics;
+    }
+
+    private ColumnStatistics build(final String ds, final String collection, final String columnName, final long rowCount) throws OperationException {
+        final Schema schema = schemaStore.getSchema(ds, collection);
+        final Column column = schema.getColumn(columnName);
+        if (column == null || rowCount == 0) {
+            return ColumnStatistics.unknown(columnName, rowCount);
+        }
+
+        if (schema.getPrimary().equals(columnName)) {
+            return buildForPrimaryKey(ds, collection, columnName, rowCount);
+        }
+
+        if (column.getIndexType() != IndexTypes.NONE) {
+            try {
+                return buildFromIndex(ds, collection, columnName, column.getIndexType(), rowCount);
+            } catch (OperationException ex) {
+                logger.debug("Could not read index of " + ds + "." + collection + "." + columnName + ". Falling back to sampling", ex);
+            }
+        }
+
+        return buildFromSample(ds, collection, columnName, rowCount);
+    }
+
+    /**
+     * Every primary key is unique, so only the value range is sampled
+     */
+    private ColumnStatistics buildForPrimaryKey(final String ds, final String collection, final String column, final long rowCount) throws OperationException {
+        final Map<String, Long> frequencies = new HashMap<>();
+        final Iterator<String> keys = dataManager.selectAllKeysAsStream(ds, collection);
+        while (keys.hasNext() && frequencies.size() < SAMPLE_SIZE) {
+            frequencies.put(keys.next(), 1L);
+        }
+        return ColumnStatistics.fromFrequencies(column, rowCount, 0, rowCount, frequencies, frequencies.size() >= rowCount);
+    }
+
+    /**
+     * Every cardinal of the index is a distinct value. Counts are read for all cardinals when there are few of them,
+     * and for an evenly spread subset otherwise.
+     */
+    private ColumnStatistics buildFromIndex(final String ds, final String collection, final String column, final IndexTypes indexType, final long rowCount) throws OperationException {
+        final List<String> cardinals = new ArrayList<>();
+        indexManager.getCardinals(ds, collection, column).forEachRemaining(cardinals::add);
+
+        final IndexingStrategy strategy = indexFactory.getStrategy(indexType);
+        final boolean maintainedCounts = indexType == IndexTypes.BTREE || indexType == IndexTypes.HASHED;
+        final int step = Math.max(1, cardinals.size() / MAX_COUNTED_CARDINALS);
+        final Map<String, Long> frequencies = new HashMap<>();
+        long counted = 0;
+        for (int i = 0; i < cardinals.size(); i += step) {
+            final String cardinal = cardinals.get(i);
+            final long count = maintainedCounts
+                    ? indexCountStore.getIndexSize(ds, collection, column, cardinal, strategy)
+                    : strategy.getIndexCount(ds, collection, column, cardinal);
+            if (count > 0) {
+                frequencies.put(cardinal, count);
+                counted += count;
+            }
+        }
+
+        final boolean exact = step == 1;
+        final long nonNull = exact || frequencies.isEmpty() ? counted : counted * cardinals.size() / frequencies.size();
+        final long nullCount = Math.max(0, rowCount - nonNull);
+        return ColumnStatistics.fromFrequencies(column, rowCount, nullCount, cardinals.size(), frequencies, exact);
+    }
+
+    /**
+     * Reads up to <code>SAMPLE_SIZE</code> records and estimates the number of distinct values with the GEE estimator
+     * <code>D = sqrt(N/n) * f1 + sum(fj, j >= 2)</code>, where <code>fj</code> is the number of values seen exactly
+     * <code>j</code> times in a sample of <code>n</code> out of <code>N</code> values.
+     */
+    private ColumnStatistics buildFromSample(final String ds, final String collection, final String column, final long rowCount) throws OperationException {
+        final Map<String, Long> frequencies = new HashMap<>();
+        final Iterator<String> keys = dataManager.selectAllKeysAsStream(ds, collection);
+        long sampled = 0;
+        long nulls = 0;
+        while (keys.hasNext() && sampled < SAMPLE_SIZE) {
+            final JSONObject record;
+            try {
+                record = dataManager.select(ds, collection, keys.next());
+            } catch (OperationException ex) {
+                continue; //record deleted after the key was read
+            }
+
+            sampled++;
+            final Object value = record.opt(column);
+            if (value == null || value == JSONObject.NULL) {
+                nulls++;
+            } else {
+                frequencies.merge(value.toString(), 1L, Long::sum);
+            }
+        }
+
+        if (sampled == 0) {
+            return ColumnStatistics.unknown(column, rowCount);
+        }
+
+        final long nullCount = Math.round((double) nulls / sampled * rowCount);
+        final long nonNullSampled = sampled - nulls;
+        final long nonNullRows = Math.max(0, rowCount - nullCount);
+        final long distinctCount;
+        if (nonNullSampled == 0) {
+            distinctCount = 0;
+        } else if (nonNullSampled >= nonNullRows) {
+            distinctCount = frequencies.size();
+        } else {
+            long singletons = 0;
+            long repeated = 0;
+            for (long count : frequencies.values()) {
+                if (count == 1) {
+                    singletons++;
+                } else {
+                    repeated++;
+                }
+            }
+            final double estimate = Math.sqrt((double) nonNullRows / nonNullSampled) * singletons + repeated;
+            distinctCount = Math.max(frequencies.size(), Math.min(nonNullRows, Math.round(estimate)));
+        }
+
+        return ColumnStatistics.fromFrequencies(column, rowCount, nullCount, distinctCount, frequencies, sampled >= rowCount);
+    }
+
+    private String key(final String ds, final String collection) {
+        return ds + "." + collection;
+    }
+
+    private static class CollectionStatistics {
+
+        private final long rowCount;
+        private final AtomicLong modifications = new AtomicLong();
+        private final Map<String, ColumnStatistics> columns = new ConcurrentHashMap<>();
+
+        private CollectionStatistics(final long rowCount) {
+            this.rowCount = rowCount;
+        }
+
+        private boolean isStale() {
+            return modifications.get() > Math.max(MIN_STALE_MODIFICATIONS, (long) (rowCount * STALE_FRACTION));
+        }
+    }
+}
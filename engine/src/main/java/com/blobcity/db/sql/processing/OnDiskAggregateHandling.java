@@ -101,25 +101,4 @@ public class OnDiskAggregateHandling {
 
         throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED);
     }
-
-    public Object computeAggOnResult(final String ds, final String collection, final AggregateNode aggregateNode, final Map<String, List<JSONObject>> resultMap) throws OperationException {
-        if("count(*)".equalsIgnoreCase(aggregateNode.getAggregateName())
-                || "count".equalsIgnoreCase(aggregateNode.getAggregateName())) {
-            countHandling.computeCountOnResult(ds, collection, aggregateNode, resultMap);
-
-        } else if("max".equalsIgnoreCase(aggregateNode.getAggregateName())) {
-            maxHandling.computeMaxOnResult(ds, collection, aggregateNode, resultMap);
-
-        } else if("min".equalsIgnoreCase(aggregateNode.getAggregateName())) {
-            minHandling.computeMinOnResult(ds, collection, aggregateNode, resultMap);
-
-        } else if("avg".equalsIgnoreCase(aggregateNode.getAggregateName())) {
-            avgHandling.computeAvgOnResult(ds, collection, aggregateNode, resultMap);
-
-        } else if("sum".equalsIgnoreCase(aggregateNode.getAggregateName())) {
-            sumHandling.computeSumOnResult(ds, collection, aggregateNode, resultMap);
-        }
-
-        throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED);
-    }
 }
@@ -16,11 +16,14 @@
 
 package com.blobcity.db.sql.processing;
 
+import com.blobcity.db.bitmap.RoaringBitmap;
+import com.blobcity.db.bitmap.RowIdMapping;
+import com.blobcity.db.bitmap.RowIdStore;
 import com.blobcity.db.bsql.BSqlDataManager;
 import com.blobcity.db.bsql.BSqlIndexManager;
 import com.blobcity.db.exceptions.ErrorCode;
 import com.blobcity.db.exceptions.OperationException;
-import com.blobcity.db.sql.statements.SelectExecutor;
+import com.blobcity.db.sql.vector.LongIntHashMap;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
@@ -45,6 +48,8 @@ public class OnDiskGroupByHandling {
     private BSqlDataManager dataManager;
     @Autowired @Lazy
     private BSqlIndexManager indexManager;
+    @Autowired @Lazy
+    private RowIdStore rowIdStore;
 
 
     public Map<String, List<JSONObject>> fullGroupedRecords(final String ds, final String collection, final List<String> columnNames) throws OperationException {
@@ -64,46 +69,86 @@ public class OnDiskGroupByHandling {
         return groupedMap;
     }
 
+    /**
+     * Groups all keys of the collection on the values of the specified columns, reading the values off the column
+     * indexes. Every key is given a row id and every column an <code>int[]</code> from row id to the ordinal of the
+     * cardinal holding the key, so groups are formed by combining the ordinals of each row through primitive hash
+     * tables. Only combinations of values that occur in the data are visited. Keys without a value for a column are
+     * grouped under <code>null</code> for that column.
+     *
+     * @param ds the datastore
+     * @param collection the collection
+     * @param columnNames the GROUP BY columns, each of which must be indexed
+     * @return JSON array of the column values of the group to the keys in the group
+     * @throws OperationException if an index cannot be read
+     */
     public Map<String, List<String>> fullGroupedKeys(final String ds, final String collection, final List<String> columnNames) throws OperationException {
-        Map<String, List<String>> groupedKeys = new HashMap<>();
+        if (columnNames.isEmpty()) {
+            throw new OperationException(ErrorCode.GROUP_BY, "No GROUP BY columns specified");
+        }
 
-        Map<String, Set<String>> columnCardinalsMaps = new HashMap<>();
-        columnNames.parallelStream().forEach(columName -> {
-            try {
-                Set<String> cardinalsSet = new HashSet<>();
-                Iterator<String> iterator = indexManager.getCardinals(ds, collection, columName);
-                iterator.forEachRemaining(cardinal -> cardinalsSet.add(cardinal));
-                columnCardinalsMaps.put(columName, cardinalsSet);
-            } catch (OperationException e) {
-                logger.error(e.getMessage(), e);
+        final RowIdMapping rowIds = rowIdStore.getMapping(ds, collection);
+        final RoaringBitmap rows = rowIds.toBitmap(dataManager.selectAllKeysAsStream(ds, collection));
+        final int rowIdLimit = rowIds.size();
+
+        /* column -> row id -> cardinal ordinal, 0 being no value */
+        final int[][] ordinals = new int[columnNames.size()][];
+        final List<List<String>> cardinals = new ArrayList<>();
+        for (int column = 0; column < columnNames.size(); column++) {
+            final String columnName = columnNames.get(column);
+            final int[] columnOrdinals = new int[rowIdLimit];
+            final List<String> columnCardinals = new ArrayList<>();
+            columnCardinals.add(null);
+
+            final Iterator<String> iterator = indexManager.getCardinals(ds, collection, columnName);
+            while (iterator.hasNext()) {
+                final String cardinal = iterator.next();
+                final int ordinal = columnCardinals.size();
+                columnCardinals.add(cardinal);
+                indexManager.readIndexStream(ds, collection, columnName, cardinal).forEachRemaining(key -> {
+                    final int rowId = rowIds.idOf(key);
+                    if (rowId < rowIdLimit) {
+                        columnOrdinals[rowId] = ordinal;
+                    }
+                });
             }
-        });
-
-        if(columnCardinalsMaps.size() != columnNames.size()) {
-            /* Indicates OperationException was thrown in previous loop */
-            throw new OperationException(ErrorCode.GROUP_BY);
+            ordinals[column] = columnOrdinals;
+            cardinals.add(columnCardinals);
         }
 
-        if(columnCardinalsMaps.size() == 1) {
-            /* Short circuit if group by on single column */
-            columnCardinalsMaps.forEach((columnName, columnValue) -> {
-                JSONArray array = new JSONArray();
-                array.put(columnValue);
-                try {
-                    List<String> keys = new ArrayList<>();
-                    keys.add(indexManager.getAnyCardinalEntry(ds, collection, columnName, columnValue));
-                    groupedKeys.put(array.toString(), keys);
-                } catch (OperationException e) {
-                    logger.error(e.getMessage(), e);
+        final LongIntHashMap[] levels = new LongIntHashMap[columnNames.size()];
+        for (int column = 0; column < levels.length; column++) {
+            levels[column] = new LongIntHashMap(1024);
+        }
+        final List<int[]> groupValues = new ArrayList<>();
+        final List<List<String>> groupKeys = new ArrayList<>();
+        rows.forEach(rowId -> {
+            int group = 0;
+            for (int column = 0; column < levels.length; column++) {
+                group = levels[column].idOf(((long) group << 32) | ordinals[column][rowId]);
+            }
+            if (group == groupKeys.size()) {
+                final int[] values = new int[levels.length];
+                for (int column = 0; column < levels.length; column++) {
+                    values[column] = ordinals[column][rowId];
                 }
-            });
-
-            return groupedKeys;
-        } else {
-            /* Execute multiple columnes GROUP BY */
+                groupValues.add(values);
+                groupKeys.add(new ArrayList<>());
+            }
+            groupKeys.get(group).add(rowIds.keyOf(rowId));
+        });
 
-            throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "GROUP BY on multiple columns currently not supported");
+        final Map<String, List<String>> groupedKeys = new HashMap<>();
+        for (int group = 0; group < groupKeys.size(); group++) {
+            final JSONArray array = new JSONArray();
+            final int[] values = groupValues.get(group);
+            for (int column = 0; column < values.length; column++) {
+                final String cardinal = cardinals.get(column).get(values[column]);
+                array.put(cardinal == null ? JSONObject.NULL : cardinal);
+            }
+            groupedKeys.put(array.toString(), groupKeys.get(group));
         }
+        return groupedKeys;
     }
 
     public Map<String, List<JSONObject>> fullGroupRecordsWithFilter(final String ds, final String collection, final List<String> columnNames, final List<String> keys) throws OperationException {
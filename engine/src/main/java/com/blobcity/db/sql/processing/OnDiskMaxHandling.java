@@ -26,18 +26,14 @@ import com.blobcity.db.bsql.BSqlIndexManager;
 import com.blobcity.db.schema.beans.SchemaManager;
 import com.blobcity.db.sql.lang.Aggregate;
 import com.google.common.collect.Iterators;
-import org.json.JSONObject;
 import org.springframework.stereotype.Component;
 import com.blobcity.db.lang.columntypes.FieldType;
-import java.util.List;
-import java.util.Map;
 import java.util.Iterator;
 import java.lang.String;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.beans.factory.annotation.Autowired;
 import ucar.nc2.util.HashMapLRU;
 import java.util.HashMap;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author sanketsarang
@@ -78,59 +74,6 @@ public class OnDiskMaxHandling {
 	        throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED);
 	}
 
-    public Map<String, Object> computeMaxOnResult(final String ds, final String collection, final AggregateNode aggregateNode, final Map<String, List<JSONObject>> resultMap) throws OperationException {
-        final Map<String, Object> aggregateMap = new ConcurrentHashMap<>();
-
-        ValueNode operand = aggregateNode.getOperand();
-        if (operand instanceof ColumnReference) {
-            final String columnName = ((ColumnReference) operand).getColumnName();
-            Column column = schemaManager.readSchema(ds, collection).getColumn(columnName);
-            if(column == null) {
-                throw new OperationException(ErrorCode.UNKNOWN_COLUMN, "No column found with name " + columnName);
-            }
-            FieldType fieldType = column.getFieldType();
-            validateNumeric(fieldType);
-            resultMap.forEach((key, records) -> {
-                final Aggregate maximum = new Aggregate();
-                records.parallelStream().forEach(record -> 
-                    {
-                        if(record != null && columnName != null && record.has(columnName)) {
-                            maximum.setInitialMax(new Double(record.get(columnName).toString()));
-                        }
-                    });
-                records.parallelStream().forEach(record -> {
-                    if(record != null && columnName != null && record.has(columnName) && !record.get(columnName).toString().isEmpty()) {
-                        maximum.findMax(new Double(record.get(columnName).toString()));
-                    }
-                });
-                try {
-                    aggregateMap.put(key, fieldType.convert(maximum.getMax()));
-                } catch (OperationException e) {
-                    e.printStackTrace();
-                }
-            });
-
-            if(aggregateMap.size() != resultMap.size()) {
-                throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Could not produce aggregate result for column "
-                        + columnName + " for at least one aggregate group");
-            }
-
-            final String aggregateName = aggregateNode.getAggregateName() + "(" + ((ColumnReference) aggregateNode.getOperand()).getColumnName() + ")";
-            resultMap.forEach((key, records) -> {
-                final Object value = aggregateMap.get(key);
-                records.parallelStream().forEach(record -> {
-                    if(record != null) {
-                        record.put(aggregateName, value);
-                    }
-                });
-            });
-        } else if (operand instanceof ConstantNode) {
-            throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "MAX(" + ((ConstantNode) operand).getValue() + ") not supported");
-        }
-
-        throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED);
-    }
-
 	private void validateNumeric(FieldType fieldType) throws OperationException {
         switch (fieldType.getType()) {
             case NUMERIC:
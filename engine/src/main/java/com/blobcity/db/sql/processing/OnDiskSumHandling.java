@@ -35,7 +35,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Iterator;
 import java.lang.String;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.springframework.context.annotation.Lazy;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -88,53 +87,6 @@ public class OnDiskSumHandling {
         throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED);
     }
 
-    public void computeSumOnResult(final String ds, final String collection, final AggregateNode aggregateNode, final Map<String, List<JSONObject>> resultMap) throws OperationException {
-        final Map<String, Object> aggregateMap = new ConcurrentHashMap<>();
-
-        ValueNode operand = aggregateNode.getOperand();
-        if (operand instanceof ColumnReference) {
-            final String columnName = ((ColumnReference) operand).getColumnName();
-            Column column = schemaManager.readSchema(ds, collection).getColumn(columnName);
-            if(column == null) {
-                throw new OperationException(ErrorCode.UNKNOWN_COLUMN, "No column found with name " + columnName);
-            }
-            FieldType fieldType = column.getFieldType();
-            validateNumeric(fieldType);
-            resultMap.forEach((key, records) -> {
-                final Aggregate aggregate = new Aggregate();
-                records.parallelStream().forEach(record -> {
-                    if(record != null && columnName != null && record.has(columnName) && !record.get(columnName).toString().isEmpty()) {
-                        aggregate.add(new Double(record.get(columnName).toString()));
-                    }
-                });
-                try {
-                    aggregateMap.put(key, fieldType.convert(aggregate.getAggregate()));
-                } catch (OperationException e) {
-                    e.printStackTrace();
-                }
-            });
-
-            if(aggregateMap.size() != resultMap.size()) {
-                throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Could not produce aggregate result for column "
-                        + columnName + " for at least one aggregate group");
-            }
-
-            final String aggregateName = aggregateNode.getAggregateName() + "(" + ((ColumnReference) aggregateNode.getOperand()).getColumnName() + ")";
-            resultMap.forEach((key, records) -> {
-                final Object value = aggregateMap.get(key);
-                records.parallelStream().forEach(record -> {
-                    if(record != null) {
-                        record.put(aggregateName, value);
-                    }
-                });
-            });
-        } else if (operand instanceof ConstantNode) {
-            throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "SUM(" + ((ConstantNode) operand).getValue() + ") not supported");
-        }
-
-        throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED);
-    }
-
     private void validateNumeric(FieldType fieldType) throws OperationException {
         switch (fieldType.getType()) {
             case NUMERIC:
@@ -23,7 +23,7 @@ import com.blobcity.db.exceptions.OperationException;
 import com.blobcity.db.schema.beans.SchemaStore;
 import com.blobcity.db.sql.util.OperatorMapper;
 import com.blobcity.db.storage.BSqlFileManager;
-import com.blobcity.db.storage.BSqlMemoryManagerOld;
+import com.blobcity.db.storage.BSqlMemoryManager;
 import com.foundationdb.sql.StandardException;
 import com.foundationdb.sql.parser.*;
 import com.foundationdb.sql.unparser.NodeToString;
@@ -50,7 +50,7 @@ public class DeleteExecutor {
     @Autowired
     private BSqlFileManager fileManager;
     @Autowired
-    private BSqlMemoryManagerOld memoryManager;
+    private BSqlMemoryManager memoryManager;
     @Autowired
     private BSqlDataManager dataManager;
     @Autowired
@@ -22,21 +22,35 @@ import com.blobcity.db.bsql.BSqlCollectionManager;
 import com.blobcity.db.bsql.BSqlIndexManager;
 import com.blobcity.db.cache.QueryResultCache;
 import com.blobcity.db.features.FeatureRules;
+import com.blobcity.db.lang.Operators;
 import com.blobcity.db.lang.columntypes.FieldType;
+import com.blobcity.db.schema.Column;
 import com.blobcity.db.schema.beans.SchemaManager;
 import com.blobcity.db.schema.beans.SchemaStore;
+import com.blobcity.db.sql.join.JoinExecutor;
 import com.blobcity.db.sql.processing.OnDiskAggregateHandling;
 import com.blobcity.db.sql.processing.OnDiskGroupByHandling;
 import com.blobcity.db.sql.processing.OnDiskSumHandling;
-import com.blobcity.db.sql.processing.OnDiskWhereHandling;
+import com.blobcity.db.sql.pipeline.LimitOperator;
+import com.blobcity.db.sql.pipeline.Operator;
+import com.blobcity.db.sql.pipeline.ProjectOperator;
+import com.blobcity.db.sql.pipeline.ResultStream;
+import com.blobcity.db.sql.pipeline.TopNOperator;
+import com.blobcity.db.sql.planner.QueryPlan;
+import com.blobcity.db.sql.planner.QueryPlanner;
+import com.blobcity.db.sql.vector.AggregateFunction;
+import com.blobcity.db.sql.vector.AggregateSpec;
+import com.blobcity.db.sql.vector.GroupAggregator;
 import com.blobcity.db.storage.BSqlFileManager;
-import com.blobcity.db.storage.BSqlMemoryManagerOld;
+import com.blobcity.db.storage.BSqlMemoryManager;
 import com.blobcity.db.constants.BQueryParameters;
 import com.blobcity.db.exceptions.ErrorCode;
 import com.blobcity.db.exceptions.OperationException;
 import com.blobcity.db.sql.util.OperatorMapper;
+import com.blobcity.db.sql.util.SqlText;
 import com.blobcity.db.util.ConsumerUtil;
 import com.blobcity.json.JSON;
+import com.blobcity.lib.database.bean.manager.interfaces.engine.QueryResultStream;
 import com.foundationdb.sql.StandardException;
 import com.foundationdb.sql.parser.*;
 import com.foundationdb.sql.unparser.NodeToString;
@@ -66,6 +80,12 @@ public class SelectExecutor {
 
     private static final Logger logger = LoggerFactory.getLogger(SelectExecutor.class.getName());
 
+    /* Number of records decoded together by vectorized GROUP BY and aggregates */
+    private static final int AGGREGATION_BATCH_SIZE = 4096;
+
+    /* Number of records loaded together by ORDER BY ... LIMIT */
+    private static final int TOP_N_BATCH_SIZE = 256;
+
     @Autowired
     @Lazy
     private BSqlCollectionManager tableManager;
@@ -74,7 +94,7 @@ public class SelectExecutor {
     private BSqlFileManager fileManager;
     @Autowired
     @Lazy
-    private BSqlMemoryManagerOld memoryManager;
+    private BSqlMemoryManager memoryManager;
     @Autowired
     @Lazy
     private BSqlDataManager dataManager;
@@ -100,7 +120,10 @@ public class SelectExecutor {
     private OnDiskGroupByHandling onDiskGroupByHandling;
     @Autowired
     @Lazy
-    private OnDiskWhereHandling onDiskWhereHandling;
+    private QueryPlanner queryPlanner;
+    @Autowired
+    @Lazy
+    private JoinExecutor joinExecutor;
     @Autowired
     @Lazy
     private QueryResultCache queryResultCache;
@@ -109,6 +132,19 @@ public class SelectExecutor {
 
     private boolean inMemory = false;
 
+    /**
+     * Shapes of SELECT statements that are answered directly off indexes without loading records
+     */
+    private enum ShortCircuit {
+        COUNT_STAR,
+        DISTINCT_COLUMN,
+        DISTINCT_COLUMN_WITH_WHERE,
+        SINGLE_COLUMN,
+        ALL_RECORDS,
+        COLUMN_AGGREGATES,
+        COLUMNS
+    }
+
     public String execute(final String appId, final StatementNode stmt, final String sqlString) throws OperationException {
         return execute(appId, stmt, false, sqlString);
     }
@@ -118,20 +154,138 @@ public class SelectExecutor {
         return select(appId, (CursorNode) stmt, sqlString);
     }
 
+    /**
+     * Executes a SELECT statement and streams the response in chunks of at most <code>fetchSize</code> rows.
+     *
+     * <p>
+     * Statements that only filter, project and limit the records of a single on-disk collection are executed as a
+     * pull based <code>scan -> filter -> project -> limit</code> pipeline, so that the memory used is bounded by the
+     * fetch size and not by the size of the result, and records are read only as fast as the response is consumed.
+     * All other statements need to see the complete result before producing the first row; they are executed in full
+     * and returned as a single chunk.
+     *
+     * @param appId the datastore
+     * @param stmt the SELECT statement
+     * @param sqlString the SQL query as a string
+     * @param fetchSize maximum number of rows per chunk
+     * @param onClose invoked once execution of the statement is complete and the stream has been closed
+     * @return the response stream
+     * @throws OperationException if the statement cannot be executed
+     */
+    public QueryResultStream executeAsStream(final String appId, final StatementNode stmt, final String sqlString, final int fetchSize, final Runnable onClose) throws OperationException {
+        final long startTime = System.currentTimeMillis();
+        final CursorNode node = (CursorNode) stmt;
+        final SelectNode selectNode = (SelectNode) node.getResultSetNode();
+
+        final String tableName = streamableCollection(appId, node, selectNode);
+        if (tableName == null) {
+            try {
+                return QueryResultStream.of(execute(appId, stmt, sqlString));
+            } finally {
+                onClose.run();
+            }
+        }
+
+        if (FeatureRules.QUERY_RESULT_CACHING) {
+            final String result = queryResultCache.get(sqlString);
+            if (result != null) {
+                logger.trace("Returning cached response for SQL query: " + sqlString);
+                onClose.run();
+                return QueryResultStream.of(result);
+            }
+        }
+
+        Operator operator;
+        try {
+            final int limit = limitOf(node);
+            final QueryPlan plan = queryPlanner.plan(appId, tableName, selectNode.getWhereClause(), limit, true);
+            plan.setParallelism(SqlText.parallelism(sqlString));
+            final Set<String> projectedColumns = projectedColumns(selectNode.getResultColumns());
+            if (!projectedColumns.isEmpty()) {
+                plan.setProjection(projectedColumns);
+            }
+            operator = new ProjectOperator(queryPlanner.open(plan, fetchSize), projectedColumns);
+            if (limit >= 0) {
+                operator = new LimitOperator(operator, limit);
+            }
+        } catch (OperationException | RuntimeException ex) {
+            onClose.run();
+            throw ex;
+        }
+
+        return new ResultStream(operator, fetchSize, startTime, rows -> {
+            /* Register the number of rows selected for cloud billing purposes */
+            if (!appId.equals(".systemdb")) {
+                selectActivityLog.registerActivity(appId, rows);
+            }
+            onClose.run();
+        });
+    }
+
+    /**
+     * Checks if a statement can be executed as a pipeline, which is the case if it reads a single on-disk collection
+     * and has no clause that requires the complete result to be seen before the first row is produced
+     *
+     * @return name of the collection if the statement is streamable; <code>null</code> otherwise
+     */
+    private String streamableCollection(final String appId, final CursorNode node, final SelectNode selectNode) throws OperationException {
+        if (selectNode.getFromList().size() != 1 || !(selectNode.getFromList().get(0) instanceof FromBaseTable)
+                || selectNode.getGroupByList() != null || selectNode.getHavingClause() != null
+                || node.getOrderByList() != null || selectNode.isDistinct()) {
+            return null;
+        }
+
+        final List<AggregateNode> aggOperations = aggregateNodes(selectNode.getResultColumns());
+        if (!aggOperations.isEmpty()) {
+            return null;
+        }
+
+        for (ResultColumn resultColumn : selectNode.getResultColumns()) {
+            if (resultColumn.getExpression() != null && !(resultColumn.getExpression() instanceof ColumnReference)) {
+                return null;
+            }
+        }
+
+        /* Index only short circuits remain faster than reading records */
+        final ShortCircuit shortCircuit = shortCircuit(selectNode, aggOperations);
+        if (shortCircuit != null && shortCircuit != ShortCircuit.ALL_RECORDS) {
+            return null;
+        }
+
+        final String tableName;
+        try {
+            tableName = selectNode.getFromList().get(0).getTableName().getTableName();
+        } catch (StandardException ex) {
+            return null;
+        }
+        return tableManager.isInMemory(appId, tableName) ? null : tableName;
+    }
+
+    /**
+     * Gets the viewable names of the selected columns
+     *
+     * @return the selected columns; an empty set if all columns are selected
+     */
+    private Set<String> projectedColumns(final ResultColumnList resultColumns) {
+        final Set<String> columns = new HashSet<>();
+        for (ResultColumn resultColumn : resultColumns) {
+            if (resultColumn.getExpression() instanceof ColumnReference && resultColumn.getExpression().getColumnName() != null) {
+                columns.add(resultColumn.getExpression().getColumnName());
+            }
+        }
+        return columns.size() == resultColumns.getColumnNames().length ? columns : Collections.emptySet();
+    }
+
     private String select(final String appId, CursorNode node, final String sqlString) throws OperationException {
         final long startTime = System.currentTimeMillis();
         try {
             SelectNode selectNode = (SelectNode) node.getResultSetNode();
             ResultColumnList resultColumns = selectNode.getResultColumns();
 
-            int limit = -1;
-            if(sqlString.contains("limit")) {
-                limit = Integer.parseInt(sqlString.substring(sqlString.indexOf("limit") + 6));
-            }
+            final int limit = limitOf(node);
 
-            //Supporting only a single table
-            if (selectNode.getFromList().size() > 1) {
-                throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "SELECT from multiple tables is not supported at present");
+            if (JoinExecutor.isJoin(selectNode)) {
+                return selectJoin(appId, node, selectNode, limit, startTime);
             }
             String tableName = selectNode.getFromList().get(0).getTableName().getTableName();
             if (tableManager.isInMemory(appId, tableName)) {
@@ -174,21 +328,7 @@ public class SelectExecutor {
              * 5. SELECT _ from table limit 10
              */
 
-            /* Populate group by columns */
-            final List<String> groupByColumns = new ArrayList<>();
-            if (groupByList != null) {
-                groupByList.forEach(groupByColumn -> {
-                    groupByColumns.add(groupByColumn.getColumnName());
-                });
-            }
-
-            /* Populate aggregate conditions */
-            final List<AggregateNode> aggOperations = new ArrayList<>();
-            resultColumns.forEach(column -> {
-                if (column.getExpression() instanceof AggregateNode) {
-                    aggOperations.add((AggregateNode) column.getExpression());
-                }
-            });
+            final List<AggregateNode> aggOperations = aggregateNodes(resultColumns);
 
             final Set<String> columnNames = new HashSet<>(); //names of columns selected. Only these columns to be included in result
             final Map<ValueNode, String> columnMap = new HashMap<>(); //ResultColumn object to column mapping
@@ -210,138 +350,304 @@ public class SelectExecutor {
                 schema = appId;
             }
 
-            /* Special case handling */
-            if (!inMemory) {
-                /* OnDisk special case handling */
+            /* ORDER BY ... LIMIT keeps only the first records in order, which the record reading short circuits cannot do */
+            final boolean topN = !inMemory && isTopN(node, selectNode, aggOperations, limit);
 
-                /* SELECT COUNT(*) from table */
-                if (sqlString.trim().toLowerCase().startsWith("select count(*) from") && whereClause == null && groupByColumns.size() == 0) {
-                    return produceCountStarResult((int)onDiskAggregateHandling.computeAgg(appId, tableName, aggOperations.get(0)), startTime).toString();
-                }
-
-                /* SELECT DISTINCT Col1 FROM table */
-                else if (selectNode.isDistinct() && whereClause == null && aggOperations.size() == 0 && resultColumns.size() == 1
-                        && resultColumns.getColumnNames()[0] != null && groupByColumns.size() == 0) {
-                    populateSingleColumnDistinct(appId, tableName, resultColumns.getColumnNames()[0], resultMap);
-                    if(orderByList != null) {
-                        orderResult(appId, tableName, orderByList, resultMap);
-                    }
-                    return produceResult(appId, tableName, sqlString, resultMap, limit, startTime);
+            /* Special case handling */
+            final ShortCircuit shortCircuit = inMemory || topN ? null : shortCircuit(selectNode, aggOperations);
+            if (shortCircuit != null) {
+                switch (shortCircuit) {
+                    case COUNT_STAR:
+                        return produceCountStarResult((int) onDiskAggregateHandling.computeAgg(appId, tableName, aggOperations.get(0)), startTime).toString();
+                    case DISTINCT_COLUMN:
+                        populateSingleColumnDistinct(appId, tableName, resultColumns.getColumnNames()[0], resultMap);
+                        break;
+                    case DISTINCT_COLUMN_WITH_WHERE:
+                        populateSingleColumnDistinctWithWhere(appId, tableName, resultColumns.getColumnNames()[0], whereClause, resultMap);
+                        break;
+                    case SINGLE_COLUMN:
+                        populateSingleColumn(appId, tableName, resultColumns.getColumnNames()[0], resultMap, limit);
+                        break;
+                    case ALL_RECORDS:
+                        populateSelectAll(appId, tableName, resultMap, limit);
+                        break;
+                    case COLUMN_AGGREGATES:
+                        return produceOnlyAggregateResult(computeFullColumnAggregates(appId, tableName, aggOperations), startTime).toString();
+                    case COLUMNS:
+                        populateOnlyColumnsResult(appId, tableName, columnNames, resultMap);
+                        if(selectNode.isDistinct()) {
+                            keepDistinct(resultMap);
+                        }
+                        break;
                 }
 
-                /* SELECT DISTINCT Col1 FROM table where <conditions> */
-                else if (selectNode.isDistinct() && whereClause != null && aggOperations.size() == 0 && resultColumns.size() == 1
-                        && resultColumns.getColumnNames()[0] != null && groupByColumns.size() == 0) {
-                    populateSingleColumnDistinctWithWhere(appId, tableName, resultColumns.getColumnNames()[0], resultColumns, whereClause, resultMap);
-                    if(orderByList != null) {
-                        orderResult(appId, tableName, orderByList, resultMap);
-                    }
-                    return produceResult(appId, tableName, sqlString, resultMap, limit, startTime);
+                if(orderByList != null) {
+                    orderResult(appId, tableName, orderByList, resultMap);
                 }
+                return produceResult(appId, tableName, sqlString, resultMap, limit, startTime);
+            }
 
-                /* SELECT col1 FROM table */
-                if (!selectNode.isDistinct() && whereClause == null && aggOperations.size() == 0 && resultColumns.size() == 1
-                        && resultColumns.getColumnNames()[0] != null && groupByColumns.size() == 0) {
-                    populateSingleColumn(appId, tableName, resultColumns.getColumnNames()[0], resultMap, limit);
-                    if(orderByList != null) {
-                        orderResult(appId, tableName, orderByList, resultMap);
-                    }
-                    return produceResult(appId, tableName, sqlString, resultMap, limit, startTime);
-                }
+            if(!inMemory) {
+                /* Records can stop loading at the limit only if nothing downstream needs to see every record */
+                final boolean limitPushdown = groupByList == null && aggOperations.isEmpty() && orderByList == null
+                        && !selectNode.isDistinct();
+                final QueryPlan plan = queryPlanner.plan(appId, tableName, whereClause, limit, limitPushdown);
+                plan.setParallelism(SqlText.parallelism(sqlString));
 
-                /* SELECT DISTINCT * FROM table */
-                /* SELECT * FROM table */
-                else if (whereClause == null && aggOperations.size() == 0 && resultColumns.size() == 1
-                        && resultColumns.getColumnNames()[0] == null && groupByColumns.size() == 0) {
-                    populateSelectAll(appId, tableName, resultMap, limit);
-                    if(orderByList != null) {
-                        orderResult(appId, tableName, orderByList, resultMap);
+                if(groupByList != null || !aggOperations.isEmpty()) {
+                    if(havingClause != null) {
+//                        runHaving()
                     }
-                    return produceResult(appId, tableName, sqlString, resultMap, limit, startTime);
+                    /* One row per group, holding the aggregate values */
+                    resultMap.put("_master_", aggregate(appId, tableName, plan, groupByList, aggOperations));
+                } else if (topN) {
+                    resultMap.put("_ordered_", topN(appId, tableName, plan, orderByList, limit));
+                } else {
+                    resultMap.put("_master_", queryPlanner.select(plan));
                 }
+            } else {
 
-                /* SELECT SUM(col1) from table */
-                /* SELECT SUM(col1),SUM(col2) from table */
-                /* SELECT SUM(col1),MIN(col2) from table */
-                /* Only aggregates combinations thereof */
-                else if (whereClause == null && aggOperations.size() > 0 && resultColumns.size() == aggOperations.size()
-                        && groupByColumns.size() == 0) {
-                    return produceOnlyAggregateResult(computeFullColumnAggregates(appId, tableName, aggOperations), startTime).toString();
+                /* The WHERE clause runs over the column vectors, and only qualifying records are materialized */
+                final BitSet rows = whereClause == null ? memoryManager.selectAllRows(appId, tableName) : filterInMemory(appId, tableName, whereClause);
+                final List<JSONObject> records = memoryManager.selectRows(appId, tableName, rows);
+                if(groupByList != null || !aggOperations.isEmpty()) {
+                    resultMap.put("_master_", aggregate(appId, tableName, records.iterator(), groupByList, aggOperations));
+                } else {
+                    resultMap.put("_master_", records);
                 }
+            }
 
-                /* SELECT col2 FROM table GROUP BY col2 */
-                /* SELECT col2 FROM table WHERE col1 > 10 GROUP BY col2 */
-                /* SELECT SUM(col2) FROM table GROUP BY col2 */
-                /* SELECT SUM(col2) FROM table WHERE col1 > 10 GROUP BY col2 */
-                //TODO: Implement this
-
+            if(orderByList != null && !topN) {
+                orderResult(appId, tableName, orderByList, resultMap);
+            }
 
-                /* SELECT col1, col2, coln FROM table -> will use only column index */
-                /* SELECT DISTINCT col1, col2, coln FROM table -> will use only column index and then perform distinct */
-                else if(whereClause == null && aggOperations.isEmpty() && resultColumns.size() > 1 && groupByColumns.size() == 0) {
-                    populateOnlyColumnsResult(appId, tableName, columnNames, resultMap);
-                    if(selectNode.isDistinct()) {
-                        keepDistinct(resultMap);
-                    }
-                    if(orderByList != null) {
-                        orderResult(appId, tableName, orderByList, resultMap);
-                    }
-                    return produceResult(appId, tableName, sqlString, resultMap, limit, startTime);
-                }
+            /* Keeps only the requested columns and does not touch if * is present */
+            controlColumns(resultColumns, resultMap);
 
-            } else {
-                /* InMemory special case handling */
+            if(selectNode.isDistinct()) {
+                keepDistinct(resultMap);
             }
 
-            if(!inMemory) {
-                Set<String> keys = whereClause == null ? new HashSet<>(dataManager.selectAllKeys(appId, tableName)) : onDiskWhereHandling.executeWhere(appId, tableName, resultColumns, whereClause);
-                List<JSONObject> filteredData = loadData(appId, tableName, keys);
-
-                if(groupByList != null) {
-                    resultMap.putAll(groupBy(filteredData, groupByList));
-                    resultMap.remove(""); //remove empty group
-                } else {
-                    resultMap.put("_master_", filteredData);
-                }
+            return produceResult(appId, tableName, sqlString, resultMap, limit, startTime);
+        } catch (StandardException ex) {
+            logger.error("Invalid SQL. ParseStatement failed: " + node.toString(), ex);
+            return new JSONObject().put("ack", "0").put("cause", ex.getMessage()).toString();
+        }
+    }
 
-                runAggregates(appId, tableName, aggOperations, resultMap);
+    /**
+     * Runs a SELECT over two joined collections. Results of joins are not cached, as cached results are invalidated
+     * on changes to a single collection.
+     */
+    private String selectJoin(final String appId, final CursorNode node, final SelectNode selectNode, final int limit, final long startTime) throws OperationException {
+        final Map<String, List<JSONObject>> resultMap = new HashMap<>();
+        resultMap.put("_master_", joinExecutor.execute(joinExecutor.plan(appId, node, limit)));
+        if (selectNode.isDistinct()) {
+            keepDistinct(resultMap);
+        }
+        return produceResult(appId, null, null, resultMap, limit, startTime);
+    }
 
-                /* Keep only single result per group if results is a grouped by result */
-                if(groupByList != null) {
-                    if(havingClause != null) {
-//                        runHaving()
-                    }
-                    keepSingleRecordsPerGroup(resultMap);
-                } else if(resultColumns.size() == aggOperations.size()) {
-                    keepSingleRecordsPerGroup(resultMap);
-                }
+    /**
+     * Checks if a statement is an <code>ORDER BY ... LIMIT</code> whose ordered records can be cut at the limit,
+     * which is not the case if records are grouped, aggregated or made distinct after ordering
+     */
+    private boolean isTopN(final CursorNode node, final SelectNode selectNode, final List<AggregateNode> aggOperations, final int limit) {
+        return node.getOrderByList() != null && limit >= 0 && selectNode.getGroupByList() == null
+                && aggOperations.isEmpty() && !selectNode.isDistinct();
+    }
 
-                if(orderByList != null) {
-                    orderResult(appId, tableName, orderByList, resultMap);
-                }
+    /**
+     * Runs <code>ORDER BY ... LIMIT</code> keeping only the first <code>limit</code> records. Walks an ordered index
+     * of the ORDER BY column and stops after <code>limit</code> qualifying records when the planner estimates this to
+     * be cheaper, and otherwise streams the qualifying records through a bounded heap of <code>limit</code> records.
+     *
+     * @return the first <code>limit</code> qualifying records in order
+     */
+    private List<JSONObject> topN(final String ds, final String collection, final QueryPlan plan, final OrderByList orderByList, final int limit) throws OperationException {
+        final OrderingComparator comparator = orderingComparator(ds, collection, orderByList);
+        if (comparator == null) {
+            return queryPlanner.select(plan);
+        }
 
-                /* Keeps only the requested columns and does not touch if * is present */
-                controlColumns(resultColumns, resultMap);
+        final OrderingColumn orderColumn = comparator.getOrderingColumn();
+        final Operator operator;
+        if (queryPlanner.preferIndexOrder(plan, orderColumn.getColumnName(), limit)) {
+            final int batchSize = Math.max(1, Math.min(limit, TOP_N_BATCH_SIZE));
+            operator = new LimitOperator(queryPlanner.openInIndexOrder(plan, orderColumn.getColumnName(), orderColumn.isAscending(), batchSize), limit);
+        } else {
+            operator = new TopNOperator(queryPlanner.open(plan, TOP_N_BATCH_SIZE), comparator, limit);
+        }
 
-                if(selectNode.isDistinct()) {
-                    keepDistinct(resultMap);
-                }
+        final List<JSONObject> list = new ArrayList<>();
+        try (Operator rows = operator) {
+            rows.forEachRemaining(list::add);
+        }
+        return list;
+    }
 
-                return produceResult(appId, tableName, sqlString, resultMap, limit, startTime);
+    /**
+     * Describes how a SELECT statement is executed, without executing it
+     *
+     * @param appId the datastore
+     * @param stmt the statement being explained
+     * @param sqlString the text of the EXPLAIN statement, read for query hints
+     * @return the plan of the statement in the standard JSON response format
+     * @throws OperationException if the statement is not a SELECT or if it cannot be planned
+     */
+    public String explain(final String appId, final StatementNode stmt, final String sqlString) throws OperationException {
+        if (stmt.getNodeType() != NodeTypes.CURSOR_NODE) {
+            throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "EXPLAIN is supported only for SELECT statements");
+        }
 
-            } else {
-                throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "In-memory operations temporarily suspended");
-            }
+        final CursorNode node = (CursorNode) stmt;
+        final SelectNode selectNode = (SelectNode) node.getResultSetNode();
+        if (JoinExecutor.isJoin(selectNode)) {
+            return new JSONObject()
+                    .put(BQueryParameters.ACK, "1")
+                    .put(BQueryParameters.PAYLOAD, joinExecutor.plan(appId, node, limitOf(node)).toJson())
+                    .toString();
+        }
+        final String tableName;
+        try {
+            tableName = selectNode.getFromList().get(0).getTableName().getTableName();
         } catch (StandardException ex) {
             logger.error("Invalid SQL. ParseStatement failed: " + node.toString(), ex);
             return new JSONObject().put("ack", "0").put("cause", ex.getMessage()).toString();
         }
+        final int limit = limitOf(node);
+        if (tableManager.isInMemory(appId, tableName)) {
+
+            /* In-memory collections are filtered over their column vectors and are not planned */
+            final JSONObject planJson = new JSONObject()
+                    .put("collection", appId + "." + tableName)
+                    .put("strategy", "IN_MEMORY");
+            if (limit >= 0) {
+                planJson.put("limit", limit);
+            }
+            return new JSONObject()
+                    .put(BQueryParameters.ACK, "1")
+                    .put(BQueryParameters.PAYLOAD, planJson)
+                    .toString();
+        }
+
+        final List<AggregateNode> aggOperations = aggregateNodes(selectNode.getResultColumns());
+        final boolean topN = isTopN(node, selectNode, aggOperations, limit);
+        final ShortCircuit shortCircuit = topN ? null : shortCircuit(selectNode, aggOperations);
+        final JSONObject planJson = new JSONObject();
+        planJson.put("collection", appId + "." + tableName);
+        planJson.put("strategy", shortCircuit == null ? "PLANNED" : shortCircuit.name());
+
+        if (shortCircuit == null || shortCircuit == ShortCircuit.DISTINCT_COLUMN_WITH_WHERE) {
+            final boolean limitPushdown = shortCircuit == null && selectNode.getGroupByList() == null
+                    && aggOperations.isEmpty() && node.getOrderByList() == null && !selectNode.isDistinct();
+            final QueryPlan plan = queryPlanner.plan(appId, tableName, selectNode.getWhereClause(),
+                    shortCircuit == null ? limit : -1, limitPushdown);
+            plan.setParallelism(SqlText.parallelism(sqlString));
+            planJson.put("plan", plan.toJson());
+            if (!plan.isLimitPushedDown()) {
+                planJson.put("parallelism", queryPlanner.parallelism(plan));
+            }
+
+            final OrderingComparator comparator = topN ? orderingComparator(appId, tableName, node.getOrderByList()) : null;
+            if (comparator != null) {
+                final boolean indexOrder = queryPlanner.preferIndexOrder(plan, comparator.getOrderingColumn().getColumnName(), limit);
+                planJson.put("order", indexOrder ? "INDEX_ORDER" : "TOP_N");
+            }
+        }
+        if (limit >= 0) {
+            planJson.put("limit", limit);
+        }
+
+        return new JSONObject()
+                .put(BQueryParameters.ACK, "1")
+                .put(BQueryParameters.PAYLOAD, planJson)
+                .toString();
     }
 
-    private List<JSONObject> loadData(final String ds, final String collection, final Set<String> keys) throws OperationException {
-        final List<JSONObject> list = Collections.synchronizedList(new ArrayList<>());
-        keys.parallelStream().forEach(ConsumerUtil.throwsException(_id -> list.add(dataManager.select(ds, collection, _id)), OperationException.class));
-        return list;
+    /**
+     * Identifies statements that can be answered directly off indexes
+     *
+     * @return the matching {@link ShortCircuit}; <code>null</code> if the statement must be planned
+     */
+    private ShortCircuit shortCircuit(final SelectNode selectNode, final List<AggregateNode> aggOperations) {
+        final ResultColumnList resultColumns = selectNode.getResultColumns();
+        final ValueNode whereClause = selectNode.getWhereClause();
+        if (selectNode.getGroupByList() != null) {
+            return null;
+        }
+
+        final boolean singleColumn = resultColumns.size() == 1 && resultColumns.getColumnNames()[0] != null;
+
+        /* SELECT COUNT(*) from table */
+        if (whereClause == null && aggOperations.size() == 1 && resultColumns.size() == 1
+                && aggOperations.get(0).getOperand() == null
+                && "count(*)".equalsIgnoreCase(aggOperations.get(0).getAggregateName())) {
+            return ShortCircuit.COUNT_STAR;
+        }
+
+        /* SELECT DISTINCT Col1 FROM table */
+        /* SELECT DISTINCT Col1 FROM table where <conditions> */
+        if (selectNode.isDistinct() && aggOperations.isEmpty() && singleColumn) {
+            return whereClause == null ? ShortCircuit.DISTINCT_COLUMN : ShortCircuit.DISTINCT_COLUMN_WITH_WHERE;
+        }
+
+        if (whereClause != null) {
+            return null;
+        }
+
+        /* SELECT col1 FROM table */
+        if (aggOperations.isEmpty() && singleColumn) {
+            return ShortCircuit.SINGLE_COLUMN;
+        }
+
+        /* SELECT DISTINCT * FROM table */
+        /* SELECT * FROM table */
+        if (aggOperations.isEmpty() && resultColumns.size() == 1 && resultColumns.getColumnNames()[0] == null) {
+            return ShortCircuit.ALL_RECORDS;
+        }
+
+        /* SELECT SUM(col1) from table */
+        /* SELECT SUM(col1),SUM(col2) from table */
+        /* SELECT SUM(col1),MIN(col2) from table */
+        /* Only aggregates combinations thereof */
+        if (aggOperations.size() > 0 && resultColumns.size() == aggOperations.size()) {
+            return ShortCircuit.COLUMN_AGGREGATES;
+        }
+
+        /* SELECT col1, col2, coln FROM table -> will use only column index */
+        /* SELECT DISTINCT col1, col2, coln FROM table -> will use only column index and then perform distinct */
+        if (aggOperations.isEmpty() && resultColumns.size() > 1) {
+            return ShortCircuit.COLUMNS;
+        }
+
+        return null;
+    }
+
+    private List<AggregateNode> aggregateNodes(final ResultColumnList resultColumns) {
+        final List<AggregateNode> aggOperations = new ArrayList<>();
+        resultColumns.forEach(column -> {
+            if (column.getExpression() instanceof AggregateNode) {
+                aggOperations.add((AggregateNode) column.getExpression());
+            }
+        });
+        return aggOperations;
+    }
+
+    /**
+     * Reads the LIMIT (FETCH FIRST) clause of the statement
+     *
+     * @return the limit; -1 if the statement has no limit
+     */
+    private int limitOf(final CursorNode node) throws OperationException {
+        final ValueNode fetchFirst = node.getFetchFirstClause();
+        if (fetchFirst == null) {
+            return -1;
+        }
+        if (!(fetchFirst instanceof NumericConstantNode)) {
+            throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "LIMIT must be a numeric constant");
+        }
+        return ((Number) ((NumericConstantNode) fetchFirst).getValue()).intValue();
     }
 
     private String produceResult(final String ds, final String collection, final String sqlQuery, final Map<String, List<JSONObject>> resultMap, final int limit, final long startTime) throws OperationException {
@@ -350,7 +656,7 @@ public class SelectExecutor {
         resultMap.forEach((key, value) -> resultList.addAll(value));
 
         List<JSONObject> result = resultList;
-        if(limit != -1){
+        if(limit >= 0 && result.size() > limit){
             result = result.subList(0, limit);
         }
 
@@ -360,7 +666,7 @@ public class SelectExecutor {
                 .put(BQueryParameters.TIME, executionTime)
                 .put(BQueryParameters.ROWS, result.size()).toString();
 
-        if(FeatureRules.QUERY_RESULT_CACHING) {
+        if(FeatureRules.QUERY_RESULT_CACHING && collection != null) {
             queryResultCache.cache(ds, collection, sqlQuery, resultString);
         }
 
@@ -372,21 +678,109 @@ public class SelectExecutor {
         return resultString;
     }
 
-    private void runAggregates(final String ds, final String collection, final List<AggregateNode> aggregateNodes, final Map<String, List<JSONObject>> resultMap) {
-        aggregateNodes.forEach(ConsumerUtil.throwsException(aggregateNode -> onDiskAggregateHandling.computeAggOnResult(ds, collection, aggregateNode, resultMap), OperationException.class));
+    /**
+     * Runs GROUP BY and aggregates over the records qualified by the plan. Records are streamed through a
+     * {@link GroupAggregator} in batches of <code>AGGREGATION_BATCH_SIZE</code>, so that only the current batch and
+     * one row per group are held in memory.
+     *
+     * @return one row per group: the first record of the group with the aggregate values added to it
+     */
+    private List<JSONObject> aggregate(final String ds, final String collection, final QueryPlan plan, final GroupByList groupByList, final List<AggregateNode> aggOperations) throws OperationException {
+        try (Operator operator = queryPlanner.open(plan, AGGREGATION_BATCH_SIZE)) {
+            return aggregate(ds, collection, operator, groupByList, aggOperations);
+        }
+    }
+
+    private List<JSONObject> aggregate(final String ds, final String collection, final Iterator<JSONObject> records, final GroupByList groupByList, final List<AggregateNode> aggOperations) throws OperationException {
+        final List<String> groupColumns = new ArrayList<>();
+        if (groupByList != null) {
+            groupByList.forEach(groupByColumn -> groupColumns.add(groupByColumn.getColumnName()));
+        }
+
+        final List<AggregateSpec> specs = new ArrayList<>();
+        for (AggregateNode aggregateNode : aggOperations) {
+            specs.add(aggregateSpec(ds, collection, aggregateNode));
+        }
+
+        final GroupAggregator aggregator = new GroupAggregator(groupColumns, specs);
+        final List<JSONObject> batch = new ArrayList<>(AGGREGATION_BATCH_SIZE);
+        while (records.hasNext()) {
+            batch.add(records.next());
+            if (batch.size() == AGGREGATION_BATCH_SIZE) {
+                aggregator.add(batch);
+                batch.clear();
+            }
+        }
+        aggregator.add(batch);
+
+        logger.trace("Aggregated {}.{} into {} groups", ds, collection, aggregator.getGroupCount());
+        return aggregator.result();
     }
 
-    private void keepSingleRecordsPerGroup(final Map<String, List<JSONObject>> resultMap) {
-        resultMap.forEach((key, value) -> {
-            if(!value.isEmpty()) {
-                JSONObject jsonObject = value.get(0);
-                value.clear();
-                value.add(jsonObject);
+    private AggregateSpec aggregateSpec(final String ds, final String collection, final AggregateNode aggregateNode) throws OperationException {
+        final AggregateFunction function = AggregateFunction.fromName(aggregateNode.getAggregateName());
+        final String outputName = aggregateDisplayName(aggregateNode);
+        if (function == AggregateFunction.COUNT_STAR) {
+            return new AggregateSpec(function, null, outputName, null);
+        }
+
+        final ValueNode operand = aggregateNode.getOperand();
+        if (!(operand instanceof ColumnReference)) {
+            throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, outputName + " not supported");
+        }
+        final String columnName = operand.getColumnName();
+        if (!function.isNumeric()) {
+            return new AggregateSpec(function, columnName, outputName, null);
+        }
+
+        final Column column = schemaStore.getSchema(ds, collection).getColumn(columnName);
+        if (column == null) {
+            throw new OperationException(ErrorCode.UNKNOWN_COLUMN, "No column found with name " + columnName);
+        }
+        final FieldType fieldType = column.getFieldType();
+        OrderingComparator.validateNumeric(fieldType);
+        return new AggregateSpec(function, columnName, outputName, value -> {
+            try {
+                return fieldType.convert(value);
+            } catch (OperationException ex) {
+                return value;
             }
         });
     }
 
+    /**
+     * Name under which the value of an aggregate is placed in result records, such as <code>sum(col1)</code>
+     */
+    private String aggregateDisplayName(final AggregateNode aggregateNode) {
+        if (aggregateNode.getOperand() == null) {
+            return aggregateNode.getAggregateName();
+        }
+        return aggregateNode.getAggregateName() + "(" + aggregateNode.getOperand().getColumnName() + ")";
+    }
+
     private void orderResult(final String ds, final String collection, final OrderByList orderByList, final Map<String, List<JSONObject>> resultMap) throws OperationException {
+        final OrderingComparator orderingComparator = orderingComparator(ds, collection, orderByList);
+        if(orderingComparator == null) {
+            return;
+        }
+
+        List<JSONObject> data = new ArrayList<>();
+        resultMap.forEach((key, value) -> data.addAll(value));
+
+        JSONObject []jsonArr = new JSONObject[data.size()];
+        jsonArr = data.toArray(jsonArr);
+        Arrays.parallelSort(jsonArr, orderingComparator);
+
+        resultMap.clear();
+        resultMap.put("_ordered_", Arrays.asList(jsonArr));
+    }
+
+    /**
+     * Gets the comparator for the ORDER BY clause. Only the first column of the clause is ordered on.
+     *
+     * @return the comparator; <code>null</code> if the clause does not order on a column
+     */
+    private OrderingComparator orderingComparator(final String ds, final String collection, final OrderByList orderByList) throws OperationException {
         final List<OrderingColumn> orderingColumnList = new ArrayList<>();
         orderByList.forEach(orderByColumn -> {
             if(orderByColumn.getExpression() instanceof ColumnReference) {
@@ -395,7 +789,7 @@ public class SelectExecutor {
         });
 
         if(orderingColumnList.isEmpty()) {
-            return;
+            return null;
         }
 
         final OrderingColumn orderColumn = orderingColumnList.get(0);
@@ -404,18 +798,8 @@ public class SelectExecutor {
             logger.warn("ORDER BY on more than one column not supported. Default to ordering on first column only");
         }
 
-        List<JSONObject> data = new ArrayList<>();
-        resultMap.forEach((key, value) -> data.addAll(value));
-
-        final FieldType fieldType = schemaStore.getSchema(ds, collection).getColumn(orderColumn.getColumnName()).getFieldType();
-        final OrderingComparator orderingComparator = new OrderingComparator(orderColumn, fieldType);
-
-        JSONObject []jsonArr = new JSONObject[data.size()];
-        jsonArr = data.toArray(jsonArr);
-        Arrays.parallelSort(jsonArr, orderingComparator);
-
-        resultMap.clear();
-        resultMap.put("_ordered_", Arrays.asList(jsonArr));
+        final Column column = schemaStore.getSchema(ds, collection).getColumn(orderColumn.getColumnName());
+        return new OrderingComparator(orderColumn, column == null ? null : column.getFieldType());
     }
 
     /**
@@ -433,8 +817,7 @@ public class SelectExecutor {
                     displayNames.add(columnName);
                 }
             } else if (resultColumn.getExpression() instanceof AggregateNode) {
-                AggregateNode aggNode = (AggregateNode) resultColumn.getExpression();
-                displayNames.add(aggNode.getAggregateName() + "(" + ((ColumnReference) aggNode.getOperand()).getColumnName() + ")");
+                displayNames.add(aggregateDisplayName((AggregateNode) resultColumn.getExpression()));
             }
         }
 
@@ -444,7 +827,7 @@ public class SelectExecutor {
         }
 
         resultMap.forEach((key, records) -> {
-            List<JSONObject> toRemoveList = new ArrayList<>();
+            List<JSONObject> toRemoveList = Collections.synchronizedList(new ArrayList<>());
             records.parallelStream().forEach(record -> {
                 if (record != null) {
                     record.keySet().retainAll(displayNames);
@@ -508,35 +891,30 @@ public class SelectExecutor {
         resultMap.put("_master_", jsonList);
     }
 
-    private void populateSingleColumnDistinctWithWhere(final String ds, final String collection, final String columnName, final ResultColumnList resultColumnList, final ValueNode whereClause, final Map<String, List<JSONObject>> resultMap) throws OperationException {
-        try {
-            final Set<String> keys = onDiskWhereHandling.executeWhere(ds, collection, resultColumnList, whereClause);
-            final Iterator<String> cardinals = indexManager.getCardinals(ds, collection, columnName);
-            final Set<String> selectedCardinals = new HashSet<>();
-
-            cardinals.forEachRemaining(ConsumerUtil.throwsException(cardinal -> {
-                Iterator<String> indexStream = indexManager.readIndexStream(ds, collection, columnName, cardinal);
-                while(indexStream.hasNext()) {
-                    if(keys.contains(indexStream.next())) {
-                        selectedCardinals.add(cardinal);
-                        return;
-                    }
+    private void populateSingleColumnDistinctWithWhere(final String ds, final String collection, final String columnName, final ValueNode whereClause, final Map<String, List<JSONObject>> resultMap) throws OperationException {
+        final Set<String> keys = queryPlanner.selectKeys(queryPlanner.plan(ds, collection, whereClause, -1, false));
+        final Iterator<String> cardinals = indexManager.getCardinals(ds, collection, columnName);
+        final Set<String> selectedCardinals = new HashSet<>();
+
+        cardinals.forEachRemaining(ConsumerUtil.throwsException(cardinal -> {
+            Iterator<String> indexStream = indexManager.readIndexStream(ds, collection, columnName, cardinal);
+            while(indexStream.hasNext()) {
+                if(keys.contains(indexStream.next())) {
+                    selectedCardinals.add(cardinal);
+                    return;
                 }
-            }, OperationException.class));
-
-            final FieldType fieldType = schemaStore.getSchema(ds, collection).getColumn(columnName).getFieldType();
-
-            if (resultMap.containsKey("_master_")) {
-                throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "SELECT query execution encountered an internal error. SelectExecutor.populateSingleColumnDistinct() wrongly invoked");
             }
+        }, OperationException.class));
+
+        final FieldType fieldType = schemaStore.getSchema(ds, collection).getColumn(columnName).getFieldType();
 
-            final List<JSONObject> jsonList = new ArrayList<>();
-            selectedCardinals.forEach(ConsumerUtil.throwsException(cardinal -> jsonList.add(new JSONObject().put(columnName, fieldType.convert(cardinal))), OperationException.class));
-            resultMap.put("_master_", jsonList);
-        } catch (StandardException e) {
-            e.printStackTrace();
-            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Error in executing WHERE condition");
+        if (resultMap.containsKey("_master_")) {
+            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "SELECT query execution encountered an internal error. SelectExecutor.populateSingleColumnDistinct() wrongly invoked");
         }
+
+        final List<JSONObject> jsonList = new ArrayList<>();
+        selectedCardinals.forEach(ConsumerUtil.throwsException(cardinal -> jsonList.add(new JSONObject().put(columnName, fieldType.convert(cardinal))), OperationException.class));
+        resultMap.put("_master_", jsonList);
     }
 
     private void populateSingleColumn(final String ds, final String collection, final String columnName, final Map<String, List<JSONObject>> resultMap, final int limit) throws OperationException {
@@ -575,10 +953,10 @@ public class SelectExecutor {
             throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "SELECT query execution encountered an internal error. SelectExecutor.populateSingleColumnDistinct() wrongly invoked");
         }
 
-        final Map<String, Map<String, String>> columnResultMap = new HashMap<>();
+        final Map<String, Map<String, String>> columnResultMap = new ConcurrentHashMap<>();
         final Set<String> keysSet = new ConcurrentHashSet<>();
-        final Map<String, FieldType> fieldTypeMap = new HashMap<>();
-        final List<JSONObject> jsonList = new ArrayList<>();
+        final Map<String, FieldType> fieldTypeMap = new ConcurrentHashMap<>();
+        final List<JSONObject> jsonList = Collections.synchronizedList(new ArrayList<>());
 
         columnNames.parallelStream().forEach(ConsumerUtil.throwsException(columnName -> {
             Map<String, String> keyValueMap = new HashMap<>();
@@ -690,27 +1068,26 @@ public class SelectExecutor {
         }
     }
 
-    private Set<Object> filterInMemory(final String appId, final String tableName, final ResultColumnList columns, ValueNode whereClause) throws OperationException, StandardException {
-        logger.debug("filter({}, {}, {}, {})", new Object[]{appId, tableName, columns.toString(), new NodeToString().toString(whereClause)});
+    /**
+     * Evaluates a WHERE clause over the column vectors of an in-memory collection
+     *
+     * @return rows of the records that satisfy the clause
+     */
+    private BitSet filterInMemory(final String appId, final String tableName, final ValueNode whereClause) throws OperationException, StandardException {
+        logger.debug("filterInMemory({}, {}, {})", new Object[]{appId, tableName, new NodeToString().toString(whereClause)});
 
-        Set<Object> leftResult;
-        Set<Object> rightResult;
-        ValueNode leftOperand;
-        ValueNode rightOperand;
-        boolean leftSupported;
-        boolean rightSupported;
-        String column;
+        final BitSet rows;
         switch (whereClause.getNodeType()) {
             case NodeTypes.AND_NODE:
                 AndNode andNode = (AndNode) whereClause;
-                leftResult = filterInMemory(appId, tableName, columns, andNode.getLeftOperand());
-                rightResult = filterInMemory(appId, tableName, columns, andNode.getRightOperand());
-                return intersectObject(leftResult, rightResult);
+                rows = filterInMemory(appId, tableName, andNode.getLeftOperand());
+                rows.and(filterInMemory(appId, tableName, andNode.getRightOperand()));
+                return rows;
             case NodeTypes.OR_NODE:
                 OrNode orNode = (OrNode) whereClause;
-                leftResult = filterInMemory(appId, tableName, columns, orNode.getLeftOperand());
-                rightResult = filterInMemory(appId, tableName, columns, orNode.getRightOperand());
-                return unionObject(leftResult, rightResult);
+                rows = filterInMemory(appId, tableName, orNode.getLeftOperand());
+                rows.or(filterInMemory(appId, tableName, orNode.getRightOperand()));
+                return rows;
             case NodeTypes.BINARY_LESS_EQUALS_OPERATOR_NODE:
             case NodeTypes.BINARY_LESS_THAN_OPERATOR_NODE:
             case NodeTypes.BINARY_GREATER_EQUALS_OPERATOR_NODE:
@@ -719,46 +1096,25 @@ public class SelectExecutor {
             case NodeTypes.BINARY_NOT_EQUALS_OPERATOR_NODE:
                 BinaryRelationalOperatorNode binaryRelationalOperatorNode = (BinaryRelationalOperatorNode) whereClause;
                 //TODO support nested select clauses
-                leftOperand = binaryRelationalOperatorNode.getLeftOperand();
-                rightOperand = binaryRelationalOperatorNode.getRightOperand();
-                leftSupported = leftOperand.getNodeType() == NodeTypes.COLUMN_REFERENCE || (leftOperand instanceof ConstantNode);
-                rightSupported = rightOperand.getNodeType() == NodeTypes.COLUMN_REFERENCE || (rightOperand instanceof ConstantNode);
-                if (!(leftSupported && rightSupported)) {
+                if (!(binaryRelationalOperatorNode.getLeftOperand() instanceof ColumnReference)
+                        || !(binaryRelationalOperatorNode.getRightOperand() instanceof ConstantNode)) {
                     throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED,
                             "Unsupported binary relation : " + binaryRelationalOperatorNode.toString());
                 }
-                //TODO call different overloaded method based on operand type
-                column = ((ColumnReference) leftOperand).getColumnName();
-                Object refValue = null;
-                if (rightOperand instanceof NumericConstantNode) {
-                    refValue = ((NumericConstantNode) rightOperand).getValue();
-                } else if (rightOperand instanceof CharConstantNode) {
-                    refValue = ((CharConstantNode) rightOperand).getValue();
-                } else {
-                    // if unknown make it CharConstantNode
-                    if (tableManager.isInMemory(appId, tableName)) {
-                        logger.debug("rightOperand: " + rightOperand.toString() + ", val: " + rightOperand.getNodeType());
-                        refValue = rightOperand.getColumnName();
-                    }
-                }
-                logger.debug("calling selectMemoryRecordsWithPattern({}, {}, {}, {}, {})",
-                        new Object[]{appId, tableName, column, refValue, binaryRelationalOperatorNode.getOperator()});
-
-                List<String> resultColList = new ArrayList<>();
-                String[] resultColNames = columns.getColumnNames();
-                for (String resultColName : resultColNames) {
-                    if (resultColName != null) {
-                        logger.debug("resultCol: " + resultColName);
-                        resultColList.add(resultColName);
+                return memoryManager.filterRows(OperatorMapper.map(binaryRelationalOperatorNode.getOperator()), appId, tableName,
+                        binaryRelationalOperatorNode.getLeftOperand().getColumnName(),
+                        ((ConstantNode) binaryRelationalOperatorNode.getRightOperand()).getValue());
+            case NodeTypes.IN_LIST_OPERATOR_NODE:
+                InListOperatorNode inListOperatorNode = (InListOperatorNode) whereClause;
+                final String column = inListOperatorNode.getLeftOperand().getNodeList().get(0).getColumnName();
+                final List<Object> inValues = new ArrayList<>();
+                for (ValueNode valueNode : inListOperatorNode.getRightOperandList().getNodeList()) {
+                    if (!(valueNode instanceof ConstantNode)) {
+                        throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "Unsupported IN list value : " + valueNode.toString());
                     }
+                    inValues.add(((ConstantNode) valueNode).getValue());
                 }
-
-                Iterator<Object> records = dataManager.selectMemoryRecordsWithPattern(appId, tableName, resultColList, column, refValue,
-                        OperatorMapper.map(binaryRelationalOperatorNode.getOperator()));
-
-                return toSetOfObjects(records);
-            case NodeTypes.IN_LIST_OPERATOR_NODE:
-                return processInOnMemoryTable(appId, tableName, columns, whereClause);
+                return memoryManager.filterRows(Operators.IN, appId, tableName, column, inValues.toArray());
             default:
                 throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "Unsupported clause : " + whereClause.toString());
         }
@@ -774,16 +1130,6 @@ public class SelectExecutor {
         return resultSet1;
     }
 
-    private Set<Object> intersectObject(Set<Object> resultSet1, Set<Object> resultSet2) {
-        resultSet1.retainAll(resultSet2);
-        return resultSet1;
-    }
-
-    private Set<Object> unionObject(Set<Object> resultSet1, Set<Object> resultSet2) {
-        resultSet1.addAll(resultSet2);
-        return resultSet1;
-    }
-
     private List<JSONObject> bulkSelect(final String appId, final String table, Collection<String> keys) throws OperationException {
         List<JSONObject> list = Collections.synchronizedList(new ArrayList<>(keys.size()));
 
@@ -821,15 +1167,6 @@ public class SelectExecutor {
         return set;
     }
 
-    private Set<Object> toSetOfObjects(Iterator<Object> iterator) {
-        if (iterator == null) {
-            return Collections.EMPTY_SET;
-        }
-        Set<Object> set = new HashSet<>();
-        iterator.forEachRemaining(item -> set.add(item));
-        return set;
-    }
-
     private Set<String> processIn(final String appId, final String tableName, final ResultColumnList columns, ValueNode whereClause) throws OperationException {
         InListOperatorNode inListOperatorNode = (InListOperatorNode) whereClause;
         RowConstructorNode leftOperand = inListOperatorNode.getLeftOperand();
@@ -850,26 +1187,6 @@ public class SelectExecutor {
         return toSet(dataManager.selectKeysWithPattern(appId, tableName, resultColList, column, inValues, OperatorMapper.map("IN")));
     }
 
-    private Set<Object> processInOnMemoryTable(final String appId, final String tableName, final ResultColumnList columns, ValueNode whereClause) throws OperationException {
-        InListOperatorNode inListOperatorNode = (InListOperatorNode) whereClause;
-        RowConstructorNode leftOperand = inListOperatorNode.getLeftOperand();
-        ValueNodeList valueNodeList = inListOperatorNode.getRightOperandList().getNodeList();
-        String column = leftOperand.getNodeList().get(0).getColumnName();//inListOperatorNode.getLeftOperand().getColumnName();
-        logger.debug("selectKeysWithPattern({}, {}, {}, {})",
-                new Object[]{appId, tableName, column, "IN"});
-        Set<Object> inValues = new HashSet<>();
-        valueNodeList.iterator().forEachRemaining(valueNode -> inValues.add(((CharConstantNode) valueNode).getValue()));
-        int numResultCols = columns.size();
-        List<String> resultColList = new ArrayList<>();
-        for (int index = 0; index < numResultCols; index++) {
-            /* ResultColumns are 1-based */
-            String colName = columns.get(index).getColumnName();
-            resultColList.add(colName);
-            logger.debug("resultCol: " + colName);
-        }
-        return toSetOfObjects(dataManager.selectMemoryRecordsWithPattern(appId, tableName, resultColList, column, inValues, OperatorMapper.map("IN")));
-    }
-
     private String produceResultForMemoryRecords(final Collection<Object> records, final ResultColumnList columns) throws OperationException {
 
         //TODO: Temporary code handling select * and select count(*) only
@@ -981,40 +1298,6 @@ public class SelectExecutor {
         }
     }
 
-    /**
-     * Used to group select or select with where data into the specified groups. GROUP BY is run immediately
-     * after the WHERE clause. Data must be selected for the GROUP BY to execute.
-     *
-     * @param data        the data from SELECT * or SELECT * with WHERE
-     * @param groupByList the list of columns to group on. Cannot be null or empty list
-     * @return data grouped by the column values
-     */
-    private Map<String, List<JSONObject>> groupBy(final List<JSONObject> data, GroupByList groupByList) {
-        final List<String> groupByColumns = new ArrayList<>();
-        groupByList.forEach(groupByColumn -> groupByColumns.add(groupByColumn.getColumnName()));
-
-        final Map<String, List<JSONObject>> groupedMap = new ConcurrentHashMap<>();
-
-        logger.trace("groupBy - started processing individual data records");
-        data.parallelStream().forEach(jsonObject -> {
-            if(jsonObject != null) {
-                StringBuilder sb = new StringBuilder();
-                groupByColumns.forEach(columnName -> {
-                    if (!jsonObject.has(columnName)) sb.append("-");
-                    else sb.append(jsonObject.get(columnName));
-                });
-
-                String key = sb.toString();
-                if (!groupedMap.containsKey(key)) {
-                    groupedMap.put(key, Collections.synchronizedList(new ArrayList<>()));
-                }
-                groupedMap.get(key).add(jsonObject);
-            }
-        });
-
-        return groupedMap;
-    }
-
     /**
      * Creates a new JSONObject with ack:1 as the only parameter in it
      *
@@ -1091,45 +1374,60 @@ class OrderingComparator implements Comparator<JSONObject> {
 
     private final OrderingColumn orderingColumn;
     private final FieldType fieldType;
+    private final boolean numeric;
 
     public OrderingComparator(final OrderingColumn orderingColumn, final FieldType fieldType) {
         this.orderingColumn = orderingColumn;
         this.fieldType = fieldType;
+        this.numeric = isNumeric(fieldType);
+    }
+
+    public OrderingColumn getOrderingColumn() {
+        return orderingColumn;
     }
 
+    /**
+     * Values of numeric columns are compared as numbers and all other values as strings. Records without a value for
+     * the column are placed last in either direction, so that the ordering is total.
+     */
     public int compare(JSONObject obj1, JSONObject obj2) {
-        if(!obj1.has(orderingColumn.getColumnName()) || !obj2.has(orderingColumn.getColumnName())) {
-            return 0;
+        final Object value1 = obj1.opt(orderingColumn.getColumnName());
+        final Object value2 = obj2.opt(orderingColumn.getColumnName());
+        final boolean missing1 = value1 == null || value1 == JSONObject.NULL;
+        final boolean missing2 = value2 == null || value2 == JSONObject.NULL;
+        if (missing1 || missing2) {
+            return missing1 == missing2 ? 0 : (missing1 ? 1 : -1);
         }
 
-        try {
-            validateNumeric(fieldType);
-            final Double value1 = Double.valueOf(fieldType.convert(obj1.get(orderingColumn.getColumnName())).toString());
-            final Double value2 = Double.valueOf(fieldType.convert(obj2.get(orderingColumn.getColumnName())).toString());
-
-            if(value1 == value2) {
-                return 0;
-            } else if(orderingColumn.isAscending()) {
-                if(value1 > value2) {
-                    return 1;
-                } else {
-                    return -1;
-                }
-            } else {
-                if(value1 > value2) {
-                    return -1;
-                } else {
-                    return 1;
-                }
+        final int result = compareValues(value1, value2);
+        return orderingColumn.isAscending() ? result : -result;
+    }
+
+    private int compareValues(final Object value1, final Object value2) {
+        if (numeric) {
+            try {
+                return Double.compare(Double.parseDouble(fieldType.convert(value1).toString()),
+                        Double.parseDouble(fieldType.convert(value2).toString()));
+            } catch (OperationException | NumberFormatException ex) {
+                //not a number, compared as a string
             }
-        } catch (OperationException e) {
-            e.printStackTrace();
-            return 0;
         }
+        return value1.toString().compareTo(value2.toString());
+    }
 
+    private static boolean isNumeric(final FieldType fieldType) {
+        if (fieldType == null) {
+            return false;
+        }
+        try {
+            validateNumeric(fieldType);
+            return true;
+        } catch (OperationException ex) {
+            return false;
+        }
     }
 
-    private void validateNumeric(FieldType fieldType) throws OperationException {
+    static void validateNumeric(FieldType fieldType) throws OperationException {
         switch (fieldType.getType()) {
             case NUMERIC:
             case DECIMAL:
@@ -18,7 +18,7 @@ package com.blobcity.db.sql.statements;
 
 import com.blobcity.db.bsql.BSqlDataManager;
 import com.blobcity.db.storage.BSqlFileManager;
-import com.blobcity.db.storage.BSqlMemoryManagerOld;
+import com.blobcity.db.storage.BSqlMemoryManager;
 import com.blobcity.db.constants.BQueryParameters;
 import com.blobcity.db.exceptions.ErrorCode;
 import com.blobcity.db.exceptions.OperationException;
@@ -57,7 +57,7 @@ public class UpdateExecutor {
     @Autowired
     private BSqlFileManager fileManager;
     @Autowired
-    private BSqlMemoryManagerOld memoryManager;
+    private BSqlMemoryManager memoryManager;
     @Autowired
     private BSqlDataManager dataManager;
     @Autowired
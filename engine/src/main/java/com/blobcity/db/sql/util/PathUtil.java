@@ -101,6 +101,25 @@ public class PathUtil {
         return path.toString();
     }
 
+    /**
+     * Gets the absolute location of the folder holding the record segments of a collection that uses segmented
+     * storage. The returned path is to the folder located at BC_HOME/{app}/db/{table}/segments/
+     *
+     * @param appId the application id of the BlobCity application
+     * @param table name of table within the application
+     * @return absolute location of the segment folder of the specified table
+     */
+    public static String segmentFolderPath(final String appId, final String table) {
+        StringBuilder path = new StringBuilder(BSql.BSQL_BASE_FOLDER);
+        path.append(appId);
+        path.append(BSql.SEPERATOR);
+        path.append(BSql.DATABASE_FOLDER_NAME);
+        path.append(BSql.SEPERATOR);
+        path.append(table);
+        path.append(BSql.SEGMENT_FOLDER);
+        return path.toString();
+    }
+
     public static String indexFolder(final String appId, final String table) {
         StringBuilder path = new StringBuilder(BSql.BSQL_BASE_FOLDER);
         path.append(appId);
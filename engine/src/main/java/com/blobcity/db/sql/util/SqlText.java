@@ -0,0 +1,166 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.util;
+
+import com.blobcity.db.exceptions.ErrorCode;
+import com.blobcity.db.exceptions.OperationException;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Text level operations on SQL statements that need to tell quoted literals and identifiers apart from the rest of
+ * the statement
+ *
+ * @author sanketsarang
+ */
+public class SqlText {
+
+    private static final Pattern PARALLEL_HINT = Pattern.compile("\\bPARALLEL\\s*\\(\\s*(\\d+)\\s*\\)", Pattern.CASE_INSENSITIVE);
+
+    private SqlText() {
+        //static utility
+    }
+
+    /**
+     * Normalizes a statement such that statements differing only in white space outside of quotes map to the same
+     * text. Runs of white space are collapsed to a single space and leading and trailing white space is removed.
+     *
+     * @param sql the SQL statement
+     * @return the normalized statement
+     */
+    public static String normalize(final String sql) {
+        final StringBuilder sb = new StringBuilder(sql.length());
+        char quote = 0;
+        boolean space = false;
+        for (int i = 0; i < sql.length(); i++) {
+            final char c = sql.charAt(i);
+            if (quote != 0) {
+                sb.append(c);
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (Character.isWhitespace(c)) {
+                space = sb.length() > 0;
+            } else {
+                if (space) {
+                    sb.append(' ');
+                    space = false;
+                }
+                if (c == '\'' || c == '"') {
+                    quote = c;
+                }
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Substitutes the <code>?</code> placeholders of a statement with the SQL literals of the parameters, giving the
+     * text of the statement as it executes
+     *
+     * @param sql the SQL statement with <code>?</code> placeholders
+     * @param parameters values of the placeholders in order of occurrence
+     * @return the statement with every placeholder replaced by a literal
+     * @throws OperationException if the number of parameters does not match the number of placeholders
+     */
+    public static String bind(final String sql, final List<Object> parameters) throws OperationException {
+        final StringBuilder sb = new StringBuilder(sql.length() + 16 * parameters.size());
+        char quote = 0;
+        int bound = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            final char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+                sb.append(c);
+            } else if (c == '?') {
+                if (bound == parameters.size()) {
+                    throw new OperationException(ErrorCode.INVALID_QUERY_PARAMETER, "Statement has more placeholders than the "
+                            + parameters.size() + " parameters provided");
+                }
+                sb.append(toLiteral(parameters.get(bound++)));
+            } else {
+                if (c == '\'' || c == '"') {
+                    quote = c;
+                }
+                sb.append(c);
+            }
+        }
+
+        if (bound != parameters.size()) {
+            throw new OperationException(ErrorCode.INVALID_QUERY_PARAMETER, "Statement has " + bound
+                    + " placeholders but " + parameters.size() + " parameters were provided");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Gets the SQL literal of a parameter value
+     *
+     * @param value a {@link Number}, {@link Boolean}, <code>null</code> or any other value, which is taken as a
+     * string
+     * @return the SQL literal
+     */
+    public static String toLiteral(final Object value) {
+        if (value == null) {
+            return "NULL";
+        } else if (value instanceof Number) {
+            return value.toString();
+        } else if (value instanceof Boolean) {
+            return ((Boolean) value) ? "TRUE" : "FALSE";
+        }
+        return "'" + value.toString().replace("'", "''") + "'";
+    }
+
+    /**
+     * Reads the degree of parallelism requested by a <code>/*+ PARALLEL(n) *&#47;</code> hint comment of a statement
+     *
+     * @param sql the SQL statement
+     * @return the requested degree of parallelism; 0 if the statement has no such hint
+     */
+    public static int parallelism(final String sql) {
+        char quote = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            final char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (sql.startsWith("/*+", i)) {
+                final int end = sql.indexOf("*/", i + 3);
+                final Matcher matcher = PARALLEL_HINT.matcher(end < 0 ? sql.substring(i + 3) : sql.substring(i + 3, end));
+                if (matcher.find()) {
+                    try {
+                        return Integer.parseInt(matcher.group(1));
+                    } catch (NumberFormatException ex) {
+                        return 0;
+                    }
+                }
+                if (end < 0) {
+                    return 0;
+                }
+                i = end + 1;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.vector;
+
+import com.blobcity.db.exceptions.ErrorCode;
+import com.blobcity.db.exceptions.OperationException;
+
+/**
+ * Aggregate functions supported by the {@link GroupAggregator}
+ *
+ * @author sanketsarang
+ */
+public enum AggregateFunction {
+    COUNT_STAR,
+    COUNT,
+    SUM,
+    AVG,
+    MIN,
+    MAX;
+
+    /**
+     * Maps the name of an SQL aggregate to the function
+     *
+     * @param aggregateName name of the aggregate as reported by the parser, <code>COUNT(*)</code> for counting rows
+     * @return the function
+     * @throws OperationException if the aggregate is not supported
+     */
+    public static AggregateFunction fromName(final String aggregateName) throws OperationException {
+        switch (aggregateName.toLowerCase()) {
+            case "count(*)":
+                return COUNT_STAR;
+            case "count":
+                return COUNT;
+            case "sum":
+                return SUM;
+            case "avg":
+                return AVG;
+            case "min":
+                return MIN;
+            case "max":
+                return MAX;
+            default:
+                throw new OperationException(ErrorCode.OPERATION_NOT_SUPPORTED, "Aggregate " + aggregateName + " not supported");
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the function operates on the numeric values of its column
+     */
+    public boolean isNumeric() {
+        return this == SUM || this == AVG || this == MIN || this == MAX;
+    }
+}
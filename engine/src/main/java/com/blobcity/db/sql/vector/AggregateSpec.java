@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.vector;
+
+import java.util.function.DoubleFunction;
+
+/**
+ * An aggregate to be computed by the {@link GroupAggregator}
+ *
+ * @author sanketsarang
+ */
+public class AggregateSpec {
+
+    private final AggregateFunction function;
+    private final String column;
+    private final String outputName;
+    private final DoubleFunction<Object> converter;
+
+    /**
+     * @param function the aggregate function
+     * @param column viewable name of the column aggregated; <code>null</code> for {@link AggregateFunction#COUNT_STAR}
+     * @param outputName name under which the aggregate value is placed in result rows
+     * @param converter converts SUM, AVG, MIN and MAX values into the type of the column
+     */
+    public AggregateSpec(final AggregateFunction function, final String column, final String outputName,
+            final DoubleFunction<Object> converter) {
+        this.function = function;
+        this.column = column;
+        this.outputName = outputName;
+        this.converter = converter;
+    }
+
+    public AggregateFunction getFunction() {
+        return function;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public String getOutputName() {
+        return outputName;
+    }
+
+    public Object convert(final double value) {
+        return converter == null ? value : converter.apply(value);
+    }
+}
@@ -0,0 +1,251 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.json.JSONObject;
+
+/**
+ * <p>
+ * Vectorized hash GROUP BY with SUM, AVG, MIN, MAX and COUNT aggregates. Rows are consumed in batches; every batch is
+ * decoded once into column vectors, grouping values are mapped to dictionary ids, and rows are assigned to groups
+ * through primitive hash tables. Aggregates are then accumulated into per group <code>long[]</code> and
+ * <code>double[]</code> state, so no value is boxed and no intermediate object is created per row.
+ *
+ * <p>
+ * A multi column group key is resolved one column at a time: the group of the first <code>j</code> columns and the
+ * dictionary id of column <code>j + 1</code> are packed into a <code>long</code> and looked up in the table of level
+ * <code>j + 1</code>. Only groups that occur in the data are ever created.
+ *
+ * <p>
+ * The first row seen for every group is kept as the representative of the group, and the aggregate values are added
+ * to it in the result. Without grouping columns all rows form a single group, which exists even if no row is added.
+ * The class is not thread safe.
+ *
+ * @author sanketsarang
+ */
+public class GroupAggregator {
+
+    private static final int INITIAL_GROUPS = 64;
+
+    private final List<String> groupColumns;
+    private final List<AggregateSpec> aggregates;
+    private final ValueDictionary[] dictionaries;
+    private final LongIntHashMap[] levels;
+    private final List<JSONObject> representatives = new ArrayList<>();
+    private final Accumulator[] accumulators;
+    private int groups = 0;
+
+    public GroupAggregator(final List<String> groupColumns, final List<AggregateSpec> aggregates) {
+        this.groupColumns = groupColumns;
+        this.aggregates = aggregates;
+        this.dictionaries = new ValueDictionary[groupColumns.size()];
+        this.levels = new LongIntHashMap[groupColumns.size()];
+        for (int i = 0; i < groupColumns.size(); i++) {
+            dictionaries[i] = new ValueDictionary();
+            levels[i] = new LongIntHashMap(INITIAL_GROUPS);
+        }
+        this.accumulators = new Accumulator[aggregates.size()];
+        for (int i = 0; i < aggregates.size(); i++) {
+            accumulators[i] = new Accumulator(aggregates.get(i));
+        }
+
+        if (groupColumns.isEmpty()) {
+            newGroup(null);
+        }
+    }
+
+    /**
+     * Adds a batch of rows
+     *
+     * @param rows the rows in viewable form
+     */
+    public void add(final List<JSONObject> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        final VectorBatch batch = new VectorBatch(rows);
+        final int[] groupOf = groupIds(batch);
+        for (Accumulator accumulator : accumulators) {
+            accumulator.accumulate(batch, groupOf);
+        }
+    }
+
+    private int[] groupIds(final VectorBatch batch) {
+        final int size = batch.size();
+        final int[] groupOf = new int[size];
+        if (groupColumns.isEmpty()) {
+            if (representatives.get(0) == null) {
+                representatives.set(0, batch.row(0));
+            }
+            return groupOf; //every row in group 0
+        }
+
+        for (int level = 0; level < groupColumns.size(); level++) {
+            final int[] ids = batch.ids(groupColumns.get(level), dictionaries[level]);
+            final LongIntHashMap table = levels[level];
+            for (int i = 0; i < size; i++) {
+                groupOf[i] = table.idOf(((long) groupOf[i] << 32) | (ids[i] & 0xFFFFFFFFL));
+            }
+        }
+
+        /* Ids of the last level are the group ids, assigned densely in the order groups are first seen */
+        for (int i = 0; i < size; i++) {
+            if (groupOf[i] == groups) {
+                newGroup(batch.row(i));
+            }
+        }
+        return groupOf;
+    }
+
+    private void newGroup(final JSONObject representative) {
+        representatives.add(representative);
+        groups++;
+        for (Accumulator accumulator : accumulators) {
+            accumulator.ensureCapacity(groups);
+        }
+    }
+
+    public int getGroupCount() {
+        return groups;
+    }
+
+    /**
+     * Produces one row per group: the representative row of the group with the value of every aggregate added under
+     * its output name. Aggregates over no values are <code>null</code>, except counts which are 0.
+     *
+     * @return the result rows, in the order groups were first seen
+     */
+    public List<JSONObject> result() {
+        final List<JSONObject> result = new ArrayList<>(groups);
+        for (int group = 0; group < groups; group++) {
+            final JSONObject row = representatives.get(group) == null ? new JSONObject() : representatives.get(group);
+            for (Accumulator accumulator : accumulators) {
+                final Object value = accumulator.value(group);
+                row.put(accumulator.spec.getOutputName(), value == null ? JSONObject.NULL : value);
+            }
+            result.add(row);
+        }
+        return result;
+    }
+
+    /**
+     * Per group state of a single aggregate
+     */
+    private static class Accumulator {
+
+        private final AggregateSpec spec;
+        private long[] counts = new long[INITIAL_GROUPS];
+        private double[] values = new double[INITIAL_GROUPS];
+
+        private Accumulator(final AggregateSpec spec) {
+            this.spec = spec;
+            initialize(0);
+        }
+
+        private void ensureCapacity(final int groups) {
+            if (groups <= counts.length) {
+                return;
+            }
+            final int from = counts.length;
+            final int capacity = Math.max(groups, counts.length << 1);
+            counts = Arrays.copyOf(counts, capacity);
+            values = Arrays.copyOf(values, capacity);
+            initialize(from);
+        }
+
+        private void initialize(final int from) {
+            if (spec.getFunction() == AggregateFunction.MIN) {
+                Arrays.fill(values, from, values.length, Double.POSITIVE_INFINITY);
+            } else if (spec.getFunction() == AggregateFunction.MAX) {
+                Arrays.fill(values, from, values.length, Double.NEGATIVE_INFINITY);
+            }
+        }
+
+        private void accumulate(final VectorBatch batch, final int[] groupOf) {
+            final int size = batch.size();
+            final long[] counts = this.counts;
+            final double[] values = this.values;
+            switch (spec.getFunction()) {
+                case COUNT_STAR:
+                    for (int i = 0; i < size; i++) {
+                        counts[groupOf[i]]++;
+                    }
+                    return;
+                case COUNT: {
+                    final boolean[] present = batch.numeric(spec.getColumn()).present;
+                    for (int i = 0; i < size; i++) {
+                        if (present[i]) {
+                            counts[groupOf[i]]++;
+                        }
+                    }
+                    return;
+                }
+                default:
+                    break;
+            }
+
+            final VectorBatch.NumericVector vector = batch.numeric(spec.getColumn());
+            final double[] column = vector.values;
+            final boolean[] present = vector.present;
+            switch (spec.getFunction()) {
+                case SUM:
+                case AVG:
+                    for (int i = 0; i < size; i++) {
+                        if (present[i] && !Double.isNaN(column[i])) {
+                            values[groupOf[i]] += column[i];
+                            counts[groupOf[i]]++;
+                        }
+                    }
+                    break;
+                case MIN:
+                    for (int i = 0; i < size; i++) {
+                        if (present[i] && !Double.isNaN(column[i])) {
+                            values[groupOf[i]] = Math.min(values[groupOf[i]], column[i]);
+                            counts[groupOf[i]]++;
+                        }
+                    }
+                    break;
+                case MAX:
+                    for (int i = 0; i < size; i++) {
+                        if (present[i] && !Double.isNaN(column[i])) {
+                            values[groupOf[i]] = Math.max(values[groupOf[i]], column[i]);
+                            counts[groupOf[i]]++;
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private Object value(final int group) {
+            switch (spec.getFunction()) {
+                case COUNT_STAR:
+                case COUNT:
+                    return counts[group];
+                case AVG:
+                    return counts[group] == 0 ? null : spec.convert(values[group] / counts[group]);
+                default:
+                    return counts[group] == 0 ? null : spec.convert(values[group]);
+            }
+        }
+    }
+}
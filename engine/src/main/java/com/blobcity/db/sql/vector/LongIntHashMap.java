@@ -0,0 +1,149 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.vector;
+
+/**
+ * Open addressing hash map from primitive <code>long</code> keys to non-negative <code>int</code> values, with linear
+ * probing. Used as the group table of vectorized GROUP BY so that neither keys nor values are boxed.
+ *
+ * <p>
+ * The class is not thread safe.
+ *
+ * @author sanketsarang
+ */
+public class LongIntHashMap {
+
+    private static final long FREE = 0L;
+    private static final double LOAD_FACTOR = 0.5;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    /* The key 0 marks free slots, so its value is held separately */
+    private boolean hasFreeKey = false;
+    private int freeKeyValue;
+
+    public LongIntHashMap(final int expectedSize) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Gets the value mapped to the key
+     *
+     * @param key the key
+     * @return the value; -1 if the key is not present
+     */
+    public int get(final long key) {
+        if (key == FREE) {
+            return hasFreeKey ? freeKeyValue : -1;
+        }
+        int slot = slot(key);
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Maps the key to the value unless the key is already present
+     *
+     * @param key the key
+     * @param value a non-negative value
+     * @return the value already mapped to the key; -1 if the key was not present and has now been mapped to
+     * <code>value</code>
+     */
+    public int putIfAbsent(final long key, final int value) {
+        if (key == FREE) {
+            if (hasFreeKey) {
+                return freeKeyValue;
+            }
+            hasFreeKey = true;
+            freeKeyValue = value;
+            size++;
+            return -1;
+        }
+
+        int slot = slot(key);
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size >= resizeAt) {
+            rehash();
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the value mapped to the key, mapping the key to the current size of the map if not present. Assigns dense
+     * ids <code>0..size-1</code> to keys in the order they are first seen.
+     *
+     * @param key the key
+     * @return the id of the key
+     */
+    public int idOf(final long key) {
+        final int id = size;
+        final int existing = putIfAbsent(key, id);
+        return existing < 0 ? id : existing;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int slot(final long key) {
+        final long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void allocate(final int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash() {
+        final long[] oldKeys = keys;
+        final int[] oldValues = values;
+        allocate(keys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = slot(oldKeys[i]);
+                while (keys[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.vector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONObject;
+
+/**
+ * Assigns dense <code>int</code> ids to the distinct values of a column. Numbers are keyed on the bits of their
+ * <code>double</code> value so that looking them up allocates nothing, and all other values on their string form. Id
+ * 0 is reserved for missing and <code>null</code> values.
+ *
+ * @author sanketsarang
+ */
+public class ValueDictionary {
+
+    public static final int NULL_ID = 0;
+
+    private final LongIntHashMap numbers = new LongIntHashMap(64);
+    private final Map<String, Integer> strings = new HashMap<>();
+    private final List<Object> values = new ArrayList<>();
+
+    public ValueDictionary() {
+        values.add(null);
+    }
+
+    public int idOf(final Object value) {
+        if (value == null || value == JSONObject.NULL) {
+            return NULL_ID;
+        }
+
+        if (value instanceof Number) {
+            final long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+            final int id = numbers.putIfAbsent(bits, values.size());
+            if (id >= 0) {
+                return id;
+            }
+            values.add(value);
+            return values.size() - 1;
+        }
+
+        final String string = value.toString();
+        final Integer id = strings.get(string);
+        if (id != null) {
+            return id;
+        }
+        strings.put(string, values.size());
+        values.add(value);
+        return values.size() - 1;
+    }
+
+    /**
+     * Gets the first value seen with the id
+     *
+     * @param id the id
+     * @return the value; <code>null</code> for {@link #NULL_ID}
+     */
+    public Object valueOf(final int id) {
+        return values.get(id);
+    }
+
+    public int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.vector;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONObject;
+
+/**
+ * A batch of rows decoded into typed column vectors. Every column used by an operation is read out of the JSON rows
+ * exactly once per batch: numeric columns into a <code>double[]</code> with a presence mask, and grouping columns into
+ * an <code>int[]</code> of dictionary ids. Operations then run as tight loops over the vectors.
+ *
+ * @author sanketsarang
+ */
+public class VectorBatch {
+
+    private final List<JSONObject> rows;
+    private final Map<String, NumericVector> numeric = new HashMap<>();
+
+    public VectorBatch(final List<JSONObject> rows) {
+        this.rows = rows;
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    public JSONObject row(final int index) {
+        return rows.get(index);
+    }
+
+    /**
+     * Decodes a column as numbers. Values that are neither numbers nor numeric strings, including empty strings, decode
+     * to <code>NaN</code>. They are present values, so they count towards COUNT(col), while numeric aggregates skip
+     * them.
+     *
+     * @param column viewable name of the column
+     * @return the decoded column
+     */
+    public NumericVector numeric(final String column) {
+        NumericVector vector = numeric.get(column);
+        if (vector == null) {
+            vector = decodeNumeric(column);
+            numeric.put(column, vector);
+        }
+        return vector;
+    }
+
+    /**
+     * Decodes a column as dictionary ids
+     *
+     * @param column viewable name of the column
+     * @param dictionary dictionary shared across all batches of the operation
+     * @return the id of the value of the column for every row, {@link ValueDictionary#NULL_ID} where missing
+     */
+    public int[] ids(final String column, final ValueDictionary dictionary) {
+        final int[] ids = new int[rows.size()];
+        for (int i = 0; i < ids.length; i++) {
+            final JSONObject row = rows.get(i);
+            ids[i] = row == null ? ValueDictionary.NULL_ID : dictionary.idOf(row.opt(column));
+        }
+        return ids;
+    }
+
+    private NumericVector decodeNumeric(final String column) {
+        final int size = rows.size();
+        final double[] values = new double[size];
+        final boolean[] present = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            final JSONObject row = rows.get(i);
+            final Object value = row == null ? null : row.opt(column);
+            if (value == null || value == JSONObject.NULL) {
+                continue;
+            }
+
+            if (value instanceof Number) {
+                present[i] = true;
+                values[i] = ((Number) value).doubleValue();
+                continue;
+            }
+
+            present[i] = true;
+            try {
+                values[i] = Double.parseDouble(value.toString().trim());
+            } catch (NumberFormatException ex) {
+                values[i] = Double.NaN;
+            }
+        }
+        return new NumericVector(values, present);
+    }
+
+    /**
+     * A decoded numeric column. <code>present[i]</code> is <code>false</code> where the row has no value for the
+     * column, in which case <code>values[i]</code> is undefined.
+     */
+    public static class NumericVector {
+
+        public final double[] values;
+        public final boolean[] present;
+
+        private NumericVector(final double[] values, final boolean[] present) {
+            this.values = values;
+            this.present = present;
+        }
+    }
+}
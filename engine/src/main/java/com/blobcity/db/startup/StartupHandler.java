@@ -25,6 +25,7 @@ import com.blobcity.db.global.live.GlobalLiveStore;
 import com.blobcity.db.home.HomeReportingBean;
 import com.blobcity.db.schema.beans.SchemaStore;
 import com.blobcity.db.sql.util.PathUtil;
+import com.blobcity.db.transaction.CommitLogReader;
 import com.blobcity.db.util.SystemInputUtil;
 import com.blobcity.db.versioning.VersionUpgradeFactory;
 import com.blobcity.db.versioning.VersionUpgrader;
@@ -63,6 +64,8 @@ public class StartupHandler {
     private VersionUpgradeFactory versionUpgradeFactory;
     @Autowired
     private HomeReportingBean homeReportingBean;
+    @Autowired
+    private CommitLogReader commitLogReader;
     
     /* For Singleton initialization purpose on startup */
     @Autowired
@@ -112,7 +115,8 @@ public class StartupHandler {
             case RUNNING:
                 logger.debug("Old DB status was running. Starting with recovery");
 
-                //TODO: Execute any uncompleted tasks that need to be completed before a startup
+                /* Resolve transactions left open by the crash, rolling each back or forward by the sync mode of its log */
+                commitLogReader.replayLogs();
                 writeStatus(RUNNING);
                 ready = true;
                 logger.debug("DB status set to RUNNING");
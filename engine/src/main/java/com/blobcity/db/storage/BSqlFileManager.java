@@ -65,6 +65,8 @@ public class BSqlFileManager {
     private CacheRules cacheRules;
     @Autowired
     private TransactionLocking transactionLocking;
+    @Autowired
+    private SegmentedRecordStore segmentedRecordStore;
 
     /**
      * <p>
@@ -87,6 +89,14 @@ public class BSqlFileManager {
         }
         transactionLocking.acquireLock(app, table, key, LockType.READ);
         try {
+            if (segmentedRecordStore.isSegmented(app, table)) {
+                result = segmentedRecordStore.select(app, table, key);
+                if (FeatureRules.DATA_CACHING && cacheRules.shouldCache(app, table)) {
+                    dataCache.cache(app, table, key, result);
+                }
+                return result;
+            }
+
             Path path = Paths.get(PathUtil.dataFile(app, table, key));
             try {
                 result = new String(Files.readAllBytes(path), "UTF-8");
@@ -118,6 +128,11 @@ public class BSqlFileManager {
 
     public List<String> selectAll(final String app, final String table) throws OperationException {
         List<String> list = new ArrayList<>();
+        if (segmentedRecordStore.isSegmented(app, table)) {
+            segmentedRecordStore.selectAllKeysAsStream(app, table).forEachRemaining(list::add);
+            return list;
+        }
+
         try (DirectoryStream directoryStream = Files.newDirectoryStream(FileSystems.getDefault().getPath(PathUtil.dataFolderPath(app, table)))) {
             Iterator<Path> iterator = directoryStream.iterator();
 
@@ -139,6 +154,10 @@ public class BSqlFileManager {
     }
 
     public int rowCount(final String ds, final String collection) throws OperationException {
+        if (segmentedRecordStore.isSegmented(ds, collection)) {
+            return segmentedRecordStore.rowCount(ds, collection);
+        }
+
         try (DirectoryStream directoryStream = Files.newDirectoryStream(FileSystems.getDefault().getPath(PathUtil.dataFolderPath(ds, collection)))) {
             return Iterators.size(directoryStream.iterator());
         } catch (IOException ex) {
@@ -157,6 +176,14 @@ public class BSqlFileManager {
      * @throws IOException If an i/o error occurs
      */
     public Iterator<String> selectAllKeysAsStream(final String app, final String table) throws IOException {
+        try {
+            if (segmentedRecordStore.isSegmented(app, table)) {
+                return segmentedRecordStore.selectAllKeysAsStream(app, table);
+            }
+        } catch (OperationException ex) {
+            throw new IOException(ex);
+        }
+
         try(DirectoryStream ds = Files.newDirectoryStream(FileSystems.getDefault().getPath(PathUtil.dataFolderPath(app, table)))) {
             final Iterator<Path> pathIterator = ds.iterator();
 
@@ -206,6 +233,13 @@ public class BSqlFileManager {
      * system read permissions on non existence of required data storage or corrupt data.
      */
     public Iterator<String> selectWithFilterAsStream(final String app, final String table, final Filter filter) throws IOException {
+        try {
+            if (segmentedRecordStore.isSegmented(app, table)) {
+                return selectSegmentedWithFilterAsStream(app, table, filter);
+            }
+        } catch (OperationException ex) {
+            throw new IOException(ex);
+        }
 
         try(DirectoryStream ds = Files.newDirectoryStream(FileSystems.getDefault().getPath(PathUtil.dataFolderPath(app, table)), filter)) {
             final Iterator<Path> pathIterator = ds.iterator();
@@ -276,6 +310,9 @@ public class BSqlFileManager {
      * @throws com.blobcity.db.exceptions.OperationException for internal decoding error
      */
     public boolean exists(final String app, final String table, final String key) throws OperationException {
+        if (segmentedRecordStore.isSegmented(app, table)) {
+            return segmentedRecordStore.exists(app, table, key);
+        }
         return new File(PathUtil.dataFile(app, table, key)).exists();
     }
 
@@ -290,6 +327,14 @@ public class BSqlFileManager {
     public void remove(final String app, final String table, String key) throws OperationException {
         transactionLocking.acquireLock(app, table, key, LockType.WRITE);
         try {
+            if (segmentedRecordStore.isSegmented(app, table)) {
+                segmentedRecordStore.remove(app, table, key);
+                if (FeatureRules.DATA_CACHING) {
+                    dataCache.invalidate(app, table, key);
+                }
+                return;
+            }
+
             Path path = Paths.get(PathUtil.dataFile(app, table, key));
             if (!Files.exists(path)) {
                 throw new OperationException(ErrorCode.PRIMARY_KEY_INEXISTENT, "A record with the given primary key: " + key + " could not be found in table: " + table);
@@ -320,6 +365,14 @@ public class BSqlFileManager {
     public void save(final String app, final String table, final String key, final String jsonString) throws OperationException {
         transactionLocking.acquireLock(app, table, key, LockType.WRITE);
         try {
+            if (segmentedRecordStore.isSegmented(app, table)) {
+                segmentedRecordStore.save(app, table, key, jsonString);
+                if (FeatureRules.DATA_CACHING && cacheRules.shouldCache(app, table)) {
+                    dataCache.cache(app, table, key, jsonString);
+                }
+                return;
+            }
+
             Path path = Paths.get(PathUtil.dataFile(app, table, key));
             try {
                 Files.write(path, jsonString.getBytes("UTF-8"));
@@ -339,6 +392,14 @@ public class BSqlFileManager {
     public void insert(final String app, final String table, final String key, final String jsonString) throws OperationException {
         transactionLocking.acquireLock(app, table, key, LockType.WRITE);
         try {
+            if (segmentedRecordStore.isSegmented(app, table)) {
+                segmentedRecordStore.insert(app, table, key, jsonString);
+                if (FeatureRules.DATA_CACHING && FeatureRules.CACHE_INSERTS && cacheRules.shouldCache(app, table)) {
+                    dataCache.cache(app, table, key, jsonString);
+                }
+                return;
+            }
+
             Path path = Paths.get(PathUtil.dataFile(app, table, key));
             if (Files.exists(path)) {
                 throw new OperationException(ErrorCode.PRIMARY_KEY_CONFLICT, "A record with the given primary key: " + key + " already isPresent in table: " + table);
@@ -358,6 +419,16 @@ public class BSqlFileManager {
     }
 
     public boolean rename(final String app, final String table, final String existingKey, final String newKey) throws OperationException {
+        if (segmentedRecordStore.isSegmented(app, table)) {
+            if (!segmentedRecordStore.rename(app, table, existingKey, newKey)) {
+                return false;
+            }
+            if (FeatureRules.DATA_CACHING && cacheRules.shouldCache(app, table)) {
+                dataCache.invalidate(app, table, existingKey);
+            }
+            return true;
+        }
+
         try {
             File file = new File(PathUtil.dataFile(app, table, existingKey));
             File newFile = new File(PathUtil.dataFile(app, table, newKey));
@@ -386,4 +457,21 @@ public class BSqlFileManager {
 
         return false;
     }
+
+    /**
+     * Filtered key iteration for collections stored in segments. The filters used with this class evaluate the name
+     * of the record file, so each key is presented to the filter as the file name it would have had in the
+     * one-file-per-record storage.
+     */
+    private Iterator<String> selectSegmentedWithFilterAsStream(final String app, final String table, final Filter filter) throws OperationException {
+        final Iterator<String> keyIterator = segmentedRecordStore.selectAllKeysAsStream(app, table);
+        return Iterators.filter(keyIterator, key -> {
+            try {
+                return filter.accept(Paths.get(FileNameEncoding.encode(key)));
+            } catch (IOException | OperationException ex) {
+                logger.error("Filter evaluation failed for key: " + key, ex);
+                throw new DbRuntimeException(ex);
+            }
+        });
+    }
 }
@@ -16,17 +16,33 @@
 
 package com.blobcity.db.storage;
 
+import com.blobcity.db.bsql.filefilters.OperatorFileFilter;
 import com.blobcity.db.exceptions.ErrorCode;
 import com.blobcity.db.exceptions.OperationException;
+import com.blobcity.db.lang.Operators;
+import com.blobcity.db.memory.collection.MemCollection;
 import com.blobcity.db.memory.collection.MemCollectionStoreBean;
+import com.blobcity.db.schema.ColumnMapping;
+import com.blobcity.db.schema.beans.SchemaManager;
+import com.blobcity.db.schema.beans.SchemaStore;
+import com.blobcity.db.util.FileNameEncoding;
 import com.blobcity.lib.data.Record;
+import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.Collection;
-import java.util.Set;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
+ * Storage manager for in-memory collections. Records are held with internal column names, same as records stored on
+ * disk, and are converted to viewable column names only where this class returns complete records for display.
+ *
  * @author sanketsarang
  */
 @Component
@@ -34,21 +50,204 @@ public class BSqlMemoryManager {
 
     @Autowired
     private MemCollectionStoreBean memCollectionStoreBean;
+    @Autowired
+    private SchemaManager schemaManager;
 
     public void insert(final String ds, final String collection, final Record record) throws OperationException {
-        final String dsAndCollection = ds + "." + collection;
-        memCollectionStoreBean.get(dsAndCollection).add(record);
+        getCollection(ds, collection).add(record);
+    }
+
+    /**
+     * Inserts a record into an in-memory collection
+     * @param ds the datastore
+     * @param collection the in-memory collection
+     * @param key the primary key of the record
+     * @param internalJson the record with internal column names
+     * @throws OperationException if a record with the same primary key already exists
+     */
+    public void insert(final String ds, final String collection, final String key, final JSONObject internalJson) throws OperationException {
+        getCollection(ds, collection).add(key, internalJson);
+    }
+
+    public void save(final String ds, final String collection, final String key, final JSONObject internalJson) throws OperationException {
+        getCollection(ds, collection).upsert(key, internalJson);
+    }
+
+    public boolean exists(final String ds, final String collection, final String key) throws OperationException {
+        return getCollection(ds, collection).contains(key);
+    }
+
+    public void remove(final String ds, final String collection, final String key) throws OperationException {
+        getCollection(ds, collection).remove(key);
+    }
+
+    public boolean clearContents(final String ds, final String collection) throws OperationException {
+        getCollection(ds, collection).clear();
+        return true;
+    }
+
+    /**
+     * Selects the record matching the primary key
+     * @param ds the datastore
+     * @param collection the in-memory collection
+     * @param key the primary key of the record
+     * @return a new <code>JSONObject</code> with internal column names
+     * @throws OperationException with {@link ErrorCode#PRIMARY_KEY_INEXISTENT} if no such record exists
+     */
+    public JSONObject select(final String ds, final String collection, final String key) throws OperationException {
+        final JSONObject json = getCollection(ds, collection).get(key);
+        if(json == null) {
+            throw new OperationException(ErrorCode.PRIMARY_KEY_INEXISTENT, "A record with the given primary key: " + key + " could not be found in collection: " + collection);
+        }
+
+        return json;
+    }
+
+    /**
+     * Selects all records with viewable column names
+     */
+    public List<JSONObject> selectAll(final String ds, final String collection) throws OperationException {
+        return toViewable(ds, collection, getCollection(ds, collection).getRecords(null));
+    }
+
+    /**
+     * Selects all records with viewable column names, retaining only the specified columns
+     * @param colsToSelect viewable names of columns to select. All columns are selected if <code>null</code> or empty
+     */
+    public List<Object> selectAllFromCols(final String ds, final String collection, final List<String> colsToSelect) throws OperationException {
+        final List<JSONObject> internalRecords = getCollection(ds, collection).getRecords(toInternal(ds, collection, colsToSelect));
+        return new ArrayList<>(toViewable(ds, collection, internalRecords));
+    }
+
+    public List<String> selectAllKeys(final String ds, final String collection) throws OperationException {
+        return getCollection(ds, collection).getKeys();
+    }
+
+    public int rowCount(final String ds, final String collection) throws OperationException {
+        return getCollection(ds, collection).size();
+    }
+
+    public Iterator<String> selectAllKeysAsStream(final String ds, final String collection) throws OperationException {
+        return selectAllKeys(ds, collection).iterator();
+    }
+
+    /**
+     * Gets an iterator over primary keys that satisfy the filter. The filter is evaluated on the primary key value
+     * only, same as filters used for selecting records on disk by file name.
+     */
+    public Iterator<String> selectWithFilterAsStream(final String ds, final String collection, final OperatorFileFilter filter) throws OperationException {
+        final List<String> keys = new ArrayList<>();
+        try {
+            for(String key : selectAllKeys(ds, collection)) {
+                if(filter.accept(Paths.get(FileNameEncoding.encode(key)))) {
+                    keys.add(key);
+                }
+            }
+        } catch (IOException ex) {
+            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "An exception occurred in filtering records of collection: " + collection);
+        }
+        return keys.iterator();
+    }
+
+    /**
+     * Selects records where the column satisfies the operator against the reference values. The filter is evaluated
+     * over the column vectors of the collection, and only matching records are materialized.
+     *
+     * @param operator the comparison operator
+     * @param ds the datastore
+     * @param collection the in-memory collection
+     * @param colsToSelect viewable names of columns to select. All columns are selected if <code>null</code> or empty
+     * @param column viewable name of the column to filter on
+     * @param values reference values as required by the operator
+     * @return matching records with viewable column names
+     */
+    public List<Object> search(final Operators operator, final String ds, final String collection, final List<String> colsToSelect,
+                               final String column, final Object... values) throws OperationException {
+        final String internalColumn = SchemaStore.getInstance().getColumnMapping(ds, collection).getInternalName(column);
+        if(internalColumn == null) {
+            throw new OperationException(ErrorCode.UNKNOWN_COLUMN, "Unknown column " + column + " in collection " + collection);
+        }
+
+        final List<JSONObject> internalRecords = getCollection(ds, collection).search(internalColumn, operator, values,
+                toInternal(ds, collection, colsToSelect));
+        return new ArrayList<>(toViewable(ds, collection, internalRecords));
+    }
+
+    /**
+     * Selects primary keys of records where the column satisfies the operator against the reference values
+     * @param column viewable name of the column to filter on
+     * @return list of matching primary keys
+     */
+    public List<String> searchKeys(final Operators operator, final String ds, final String collection, final String column,
+                                   final Object... values) throws OperationException {
+        final String internalColumn = SchemaStore.getInstance().getColumnMapping(ds, collection).getInternalName(column);
+        if(internalColumn == null) {
+            throw new OperationException(ErrorCode.UNKNOWN_COLUMN, "Unknown column " + column + " in collection " + collection);
+        }
+
+        return getCollection(ds, collection).searchKeys(internalColumn, operator, values);
+    }
+
+    /**
+     * Gets the rows of all records of the collection, for use with {@link #selectRows(String, String, BitSet)}
+     */
+    public BitSet selectAllRows(final String ds, final String collection) throws OperationException {
+        return getCollection(ds, collection).rows();
+    }
+
+    /**
+     * Selects the rows of records where the column satisfies the operator against the reference values. Rows of
+     * separate filters combine through the <code>and</code> and <code>or</code> operations of {@link BitSet}, so a
+     * compound condition materializes only the records that satisfy all of it.
+     *
+     * @param column viewable name of the column to filter on
+     * @return a new bit set of matching rows
+     */
+    public BitSet filterRows(final Operators operator, final String ds, final String collection, final String column,
+                             final Object... values) throws OperationException {
+        final String internalColumn = SchemaStore.getInstance().getColumnMapping(ds, collection).getInternalName(column);
+        if(internalColumn == null) {
+            throw new OperationException(ErrorCode.UNKNOWN_COLUMN, "Unknown column " + column + " in collection " + collection);
+        }
+
+        return getCollection(ds, collection).filter(internalColumn, operator, values);
+    }
+
+    /**
+     * Selects the records held in the given rows
+     * @return records with viewable column names, in row order
+     */
+    public List<JSONObject> selectRows(final String ds, final String collection, final BitSet rows) throws OperationException {
+        return toViewable(ds, collection, getCollection(ds, collection).select(rows, null));
+    }
+
+    public boolean existsCollection(final String ds, final String collection) {
+        return memCollectionStoreBean.contains(ds + "." + collection);
+    }
+
+    private MemCollection getCollection(final String ds, final String collection) throws OperationException {
+        final MemCollection memCollection = memCollectionStoreBean.get(ds + "." + collection);
+        if(memCollection == null) {
+            throw new OperationException(ErrorCode.COLLECTION_INVALID, "In-memory collection " + ds + "." + collection + " does not exist");
+        }
+
+        return memCollection;
     }
 
-    public Record select(final String ds, final String collection, final String key) throws OperationException {
-        final String dsAndCollection = ds + "." + collection;
-        //TODO: Implement this
+    private List<String> toInternal(final String ds, final String collection, final List<String> viewableColumns) throws OperationException {
+        if(viewableColumns == null || viewableColumns.isEmpty()) {
+            return null;
+        }
 
-        throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Operation not yet supported");
+        final ColumnMapping mapping = SchemaStore.getInstance().getColumnMapping(ds, collection);
+        return viewableColumns.stream().map(mapping::getInternalName).filter(name -> name != null).collect(Collectors.toList());
     }
 
-    public Collection<Record> selectAll(final String ds, final String collection) throws OperationException {
-        final String dsAndCollection = ds + "." + collection;
-        return memCollectionStoreBean.get(dsAndCollection).getRecords();
+    private List<JSONObject> toViewable(final String ds, final String collection, final List<JSONObject> internalRecords) throws OperationException {
+        final List<JSONObject> list = new ArrayList<>(internalRecords.size());
+        for(JSONObject internalRecord : internalRecords) {
+            list.add(schemaManager.internalToViewable(ds, collection, internalRecord));
+        }
+        return list;
     }
- }
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.storage;
+
+import java.util.Map;
+import org.json.JSONObject;
+
+/**
+ * Reads selected top level fields of a stored JSON record straight off its text. Values of fields that are not
+ * asked for are skipped over without being decoded, and reading stops as soon as every requested field has been
+ * found, so that narrow reads of wide records do not pay for decoding the whole record.
+ *
+ * @author sanketsarang
+ */
+public class JsonFieldReader {
+
+    private JsonFieldReader() {
+        //static utility
+    }
+
+    /**
+     * Reads fields of a JSON object
+     *
+     * @param json text of a JSON object
+     * @param fields name of each field to read in the text, mapped to the name it is to have in the result
+     * @return an object holding the requested fields that are present in the text; <code>null</code> if the text is
+     * not a well formed JSON object
+     */
+    public static JSONObject read(final String json, final Map<String, String> fields) {
+        final int length = json.length();
+        final JSONObject result = new JSONObject();
+        int remaining = fields.size();
+
+        int i = skipWhitespace(json, 0);
+        if (i >= length || json.charAt(i) != '{') {
+            return null;
+        }
+        i = skipWhitespace(json, i + 1);
+        if (i < length && json.charAt(i) == '}') {
+            return result;
+        }
+
+        while (i < length && remaining > 0) {
+            if (json.charAt(i) != '"') {
+                return null;
+            }
+            final int keyEnd = skipString(json, i);
+            if (keyEnd < 0) {
+                return null;
+            }
+            final String key = decodeKey(json, i, keyEnd);
+
+            i = skipWhitespace(json, keyEnd);
+            if (i >= length || json.charAt(i) != ':') {
+                return null;
+            }
+            final int valueStart = skipWhitespace(json, i + 1);
+            final int valueEnd = skipValue(json, valueStart);
+            if (valueEnd < 0) {
+                return null;
+            }
+
+            final String name = fields.get(key);
+            if (name != null && !result.has(name)) {
+                result.put(name, decodeValue(json, valueStart, valueEnd));
+                remaining--;
+            }
+
+            i = skipWhitespace(json, valueEnd);
+            if (i < length && json.charAt(i) == ',') {
+                i = skipWhitespace(json, i + 1);
+            } else if (i < length && json.charAt(i) == '}') {
+                return result;
+            } else {
+                return null;
+            }
+        }
+        return remaining == 0 ? result : null;
+    }
+
+    private static int skipWhitespace(final String json, int i) {
+        while (i < json.length() && Character.isWhitespace(json.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /* Returns the index just past the closing quote of the string starting at i, or -1 if the string is not closed */
+    private static int skipString(final String json, final int i) {
+        int j = i + 1;
+        while (j < json.length()) {
+            final char c = json.charAt(j);
+            if (c == '\\') {
+                j += 2;
+            } else if (c == '"') {
+                return j + 1;
+            } else {
+                j++;
+            }
+        }
+        return -1;
+    }
+
+    /* Returns the index just past the value starting at i, or -1 if the value is not well formed */
+    private static int skipValue(final String json, final int i) {
+        if (i >= json.length()) {
+            return -1;
+        }
+
+        final char first = json.charAt(i);
+        if (first == '"') {
+            return skipString(json, i);
+        }
+
+        if (first == '{' || first == '[') {
+            int depth = 0;
+            int j = i;
+            while (j < json.length()) {
+                final char c = json.charAt(j);
+                if (c == '"') {
+                    j = skipString(json, j);
+                    if (j < 0) {
+                        return -1;
+                    }
+                    continue;
+                }
+                if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    if (--depth == 0) {
+                        return j + 1;
+                    }
+                }
+                j++;
+            }
+            return -1;
+        }
+
+        int j = i;
+        while (j < json.length() && ",}] \t\r\n".indexOf(json.charAt(j)) < 0) {
+            j++;
+        }
+        return j == i ? -1 : j;
+    }
+
+    private static String decodeKey(final String json, final int start, final int end) {
+        final String raw = json.substring(start + 1, end - 1);
+        if (raw.indexOf('\\') < 0) {
+            return raw;
+        }
+        return new JSONObject("{" + json.substring(start, end) + ":0}").keys().next();
+    }
+
+    /* Decodes a value exactly as parsing the complete record would */
+    private static Object decodeValue(final String json, final int start, final int end) {
+        final char first = json.charAt(start);
+        if (first == '"') {
+            final String raw = json.substring(start + 1, end - 1);
+            if (raw.indexOf('\\') < 0) {
+                return raw;
+            }
+        } else if (json.startsWith("null", start) && end - start == 4) {
+            return JSONObject.NULL;
+        } else if (json.startsWith("true", start) && end - start == 4) {
+            return Boolean.TRUE;
+        } else if (json.startsWith("false", start) && end - start == 5) {
+            return Boolean.FALSE;
+        }
+        return new JSONObject("{\"v\":" + json.substring(start, end) + "}").get("v");
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.storage;
+
+/**
+ * Locates the value of a single record inside a {@link RecordSegment}. Pointers are immutable and are swapped as a
+ * whole inside the primary key map of a {@link SegmentedCollection} whenever a record is written or relocated.
+ *
+ * @author sanketsarang
+ */
+final class RecordPointer {
+
+    private final long segmentId;
+    private final long valueOffset;
+    private final int valueLength;
+    private final int recordLength;
+
+    RecordPointer(final long segmentId, final long valueOffset, final int valueLength, final int recordLength) {
+        this.segmentId = segmentId;
+        this.valueOffset = valueOffset;
+        this.valueLength = valueLength;
+        this.recordLength = recordLength;
+    }
+
+    long getSegmentId() {
+        return segmentId;
+    }
+
+    long getValueOffset() {
+        return valueOffset;
+    }
+
+    int getValueLength() {
+        return valueLength;
+    }
+
+    /**
+     * @return the number of bytes occupied by the full record (header, key and value) inside its segment
+     */
+    int getRecordLength() {
+        return recordLength;
+    }
+}
@@ -0,0 +1,249 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.storage;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * A single append-only segment file of a {@link SegmentedCollection}. Every record is laid out as
+ * <code>[type:1][keyLength:4][valueLength:4][crc32:4][key][value]</code>, where the checksum covers the key and value
+ * bytes. Records are never modified in place; an update appends a new version and a delete appends a tombstone.<br/><br/>
+ * Appends must be serialised by the caller, while reads use positional channel reads and may run concurrently with
+ * appends and with each other.
+ *
+ * @author sanketsarang
+ */
+final class RecordSegment implements Closeable {
+
+    static final byte TYPE_PUT = 1;
+    static final byte TYPE_DELETE = 2;
+    static final int HEADER_SIZE = 1 + 4 + 4 + 4;
+    static final String FILE_EXTENSION = ".seg";
+
+    private final long id;
+    private final Path path;
+    private final FileChannel channel;
+    private final AtomicLong size;
+    private final AtomicLong liveBytes = new AtomicLong();
+
+    private RecordSegment(final long id, final Path path, final FileChannel channel, final long size) {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.size = new AtomicLong(size);
+    }
+
+    /**
+     * Opens an existing segment file or creates a new empty one
+     *
+     * @param folder the segment folder of the collection
+     * @param id the id of the segment, which also decides the order in which segments are replayed
+     * @return an open {@link RecordSegment}
+     * @throws IOException if the file could not be opened
+     */
+    static RecordSegment open(final Path folder, final long id) throws IOException {
+        final Path path = folder.resolve(fileName(id));
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new RecordSegment(id, path, channel, channel.size());
+    }
+
+    static String fileName(final long id) {
+        return String.format("%016d", id) + FILE_EXTENSION;
+    }
+
+    /**
+     * Parses the segment id out of a segment file name
+     *
+     * @param fileName name of the segment file
+     * @return the segment id, or -1 if the name is not that of a segment file
+     */
+    static long parseId(final String fileName) {
+        if (!fileName.endsWith(FILE_EXTENSION)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(fileName.substring(0, fileName.length() - FILE_EXTENSION.length()));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    long getId() {
+        return id;
+    }
+
+    long size() {
+        return size.get();
+    }
+
+    long liveBytes() {
+        return liveBytes.get();
+    }
+
+    void addLiveBytes(final long delta) {
+        liveBytes.addAndGet(delta);
+    }
+
+    /**
+     * Appends a record at the end of the segment. Calls must be externally serialised.
+     *
+     * @param type one of {@link #TYPE_PUT} or {@link #TYPE_DELETE}
+     * @param key the primary key of the record
+     * @param value the record contents; ignored for tombstones
+     * @return a pointer to the value of the appended record
+     * @throws IOException if the write fails
+     */
+    RecordPointer append(final byte type, final byte[] key, final byte[] value) throws IOException {
+        final byte[] data = type == TYPE_DELETE || value == null ? new byte[0] : value;
+        final int recordLength = HEADER_SIZE + key.length + data.length;
+        final CRC32 crc = new CRC32();
+        crc.update(key);
+        crc.update(data);
+
+        final ByteBuffer buffer = ByteBuffer.allocate(recordLength);
+        buffer.put(type);
+        buffer.putInt(key.length);
+        buffer.putInt(data.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(key);
+        buffer.put(data);
+        buffer.flip();
+
+        final long offset = size.get();
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        size.set(position);
+        return new RecordPointer(id, offset + HEADER_SIZE + key.length, data.length, recordLength);
+    }
+
+    /**
+     * Reads the value pointed to by the pointer. Safe to call concurrently with appends.
+     *
+     * @param pointer a pointer belonging to this segment
+     * @return the value bytes
+     * @throws IOException if the read fails or the segment ends before the value does
+     */
+    byte[] read(final RecordPointer pointer) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(pointer.getValueLength());
+        long position = pointer.getValueOffset();
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of segment " + path);
+            }
+            position += read;
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Sequentially reads every record in the segment and passes it to the visitor. Reading stops at the first
+     * truncated or corrupt record, which can only legitimately happen at the tail of a segment that was being written
+     * to when the process stopped.
+     *
+     * @param visitor receives every valid record in file order
+     * @return the length of the valid prefix of the segment in bytes
+     * @throws IOException if the file cannot be read
+     */
+    long scan(final RecordVisitor visitor) throws IOException {
+        final long end = size.get();
+        long position = 0;
+        channel.position(0);
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+        final CRC32 crc = new CRC32();
+        while (position + HEADER_SIZE <= end) {
+            final byte type = in.readByte();
+            final int keyLength = in.readInt();
+            final int valueLength = in.readInt();
+            final int checksum = in.readInt();
+            if ((type != TYPE_PUT && type != TYPE_DELETE) || keyLength < 0 || valueLength < 0
+                    || position + HEADER_SIZE + keyLength + valueLength > end) {
+                break;
+            }
+
+            final byte[] key = new byte[keyLength];
+            final byte[] value = new byte[valueLength];
+            in.readFully(key);
+            in.readFully(value);
+            crc.reset();
+            crc.update(key);
+            crc.update(value);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            final int recordLength = HEADER_SIZE + keyLength + valueLength;
+            visitor.visit(type, new String(key, StandardCharsets.UTF_8), value,
+                    new RecordPointer(id, position + HEADER_SIZE + keyLength, valueLength, recordLength));
+            position += recordLength;
+        }
+        return position;
+    }
+
+    /**
+     * Drops a corrupt or partially written tail from the segment
+     *
+     * @param length the length to truncate the segment to
+     * @throws IOException if the truncate fails
+     */
+    void truncate(final long length) throws IOException {
+        channel.truncate(length);
+        size.set(length);
+    }
+
+    void sync() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Closes the segment and deletes its file
+     *
+     * @throws IOException if the file could not be deleted
+     */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Receives records read by {@link RecordSegment#scan(RecordVisitor)}
+     */
+    interface RecordVisitor {
+
+        void visit(byte type, String key, byte[] value, RecordPointer pointer) throws IOException;
+    }
+}
@@ -0,0 +1,388 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores all records of a single collection packed inside a sequence of append-only {@link RecordSegment} files,
+ * along with an in-memory map of primary key to record location. The map is rebuilt on open by replaying the
+ * segments in id order, so the latest version of every record wins.<br/><br/>
+ * Writes are serialised on this object and always go to the active (highest id) segment. Reads are lock free with
+ * respect to writes and only contend with compaction at the moment a fully compacted segment is being retired.
+ *
+ * @author sanketsarang
+ */
+final class SegmentedCollection implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentedCollection.class.getName());
+
+    private final Path folder;
+    private final long maxSegmentSize;
+    private final Map<String, RecordPointer> index = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, RecordSegment> segments = new ConcurrentSkipListMap<>();
+    private final ReadWriteLock retireLock = new ReentrantReadWriteLock();
+    private volatile RecordSegment activeSegment;
+
+    private SegmentedCollection(final Path folder, final long maxSegmentSize) {
+        this.folder = folder;
+        this.maxSegmentSize = maxSegmentSize;
+    }
+
+    /**
+     * Opens the collection stored inside the specified folder, creating the folder if required, and rebuilds the
+     * primary key map from the segments found
+     *
+     * @param folder the segment folder of the collection
+     * @param maxSegmentSize the size in bytes after which the active segment is sealed and a new one started
+     * @return an open {@link SegmentedCollection}
+     * @throws IOException if the folder or any of the segments could not be read
+     */
+    static SegmentedCollection open(final Path folder, final long maxSegmentSize) throws IOException {
+        Files.createDirectories(folder);
+        final SegmentedCollection collection = new SegmentedCollection(folder, maxSegmentSize);
+        collection.load();
+        return collection;
+    }
+
+    private void load() throws IOException {
+        final List<Long> ids = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, "*" + RecordSegment.FILE_EXTENSION)) {
+            for (Path path : stream) {
+                final long id = RecordSegment.parseId(path.getFileName().toString());
+                if (id >= 0) {
+                    ids.add(id);
+                }
+            }
+        }
+        Collections.sort(ids);
+
+        for (int i = 0; i < ids.size(); i++) {
+            final RecordSegment segment = RecordSegment.open(folder, ids.get(i));
+            segments.put(segment.getId(), segment);
+            final long validLength = segment.scan((type, key, value, pointer) -> {
+                if (type == RecordSegment.TYPE_PUT) {
+                    segment.addLiveBytes(pointer.getRecordLength());
+                    markDead(index.put(key, pointer));
+                } else {
+                    markDead(index.remove(key));
+                }
+            });
+
+            if (validLength < segment.size()) {
+                if (i == ids.size() - 1) {
+                    logger.warn("Truncating partially written tail of segment {} in {} from {} to {} bytes",
+                            new Object[]{segment.getId(), folder, segment.size(), validLength});
+                    segment.truncate(validLength);
+                } else {
+                    logger.error("Segment {} in {} is corrupt after offset {}. Records beyond this point are ignored",
+                            new Object[]{segment.getId(), folder, validLength});
+                }
+            }
+        }
+
+        if (segments.isEmpty() || segments.lastEntry().getValue().size() >= maxSegmentSize) {
+            rollSegment();
+        } else {
+            activeSegment = segments.lastEntry().getValue();
+        }
+    }
+
+    /**
+     * Reads the record stored against the key
+     *
+     * @param key the primary key
+     * @return the record contents, or <code>null</code> if no record is present against the key
+     * @throws IOException if the segment could not be read
+     */
+    byte[] get(final String key) throws IOException {
+        while (true) {
+            final RecordPointer pointer = index.get(key);
+            if (pointer == null) {
+                return null;
+            }
+
+            retireLock.readLock().lock();
+            try {
+                final RecordSegment segment = segments.get(pointer.getSegmentId());
+                if (segment != null) {
+                    return segment.read(pointer);
+                }
+            } finally {
+                retireLock.readLock().unlock();
+            }
+
+            /* segment was compacted away after the pointer was read; the key now points to its new location */
+        }
+    }
+
+    boolean contains(final String key) {
+        return index.containsKey(key);
+    }
+
+    int size() {
+        return index.size();
+    }
+
+    /**
+     * @return a weakly consistent iterator over all primary keys in the collection
+     */
+    Iterator<String> keys() {
+        return index.keySet().iterator();
+    }
+
+    /**
+     * Writes the record, replacing any existing record with the same key
+     *
+     * @param key the primary key
+     * @param value the record contents
+     * @throws IOException if the write fails
+     */
+    synchronized void put(final String key, final byte[] value) throws IOException {
+        final RecordPointer pointer = append(RecordSegment.TYPE_PUT, key, value);
+        markDead(index.put(key, pointer));
+    }
+
+    /**
+     * Writes the record only if no record is present against the key
+     *
+     * @param key the primary key
+     * @param value the record contents
+     * @return true if the record was written; false if a record with the key is already present
+     * @throws IOException if the write fails
+     */
+    synchronized boolean putIfAbsent(final String key, final byte[] value) throws IOException {
+        if (index.containsKey(key)) {
+            return false;
+        }
+        index.put(key, append(RecordSegment.TYPE_PUT, key, value));
+        return true;
+    }
+
+    /**
+     * Deletes the record by appending a tombstone for the key
+     *
+     * @param key the primary key
+     * @return true if a record was deleted; false if no record was present against the key
+     * @throws IOException if the write fails
+     */
+    synchronized boolean remove(final String key) throws IOException {
+        if (!index.containsKey(key)) {
+            return false;
+        }
+        append(RecordSegment.TYPE_DELETE, key, null);
+        markDead(index.remove(key));
+        return true;
+    }
+
+    /**
+     * Moves the record stored against one key to another key
+     *
+     * @param existingKey the current primary key
+     * @param newKey the new primary key
+     * @return true if the record was moved; false if no record is present against <code>existingKey</code> or a
+     * record is already present against <code>newKey</code>
+     * @throws IOException if the write fails
+     */
+    synchronized boolean rename(final String existingKey, final String newKey) throws IOException {
+        if (!index.containsKey(existingKey) || index.containsKey(newKey)) {
+            return false;
+        }
+        final byte[] value = get(existingKey);
+        put(newKey, value);
+        remove(existingKey);
+        return true;
+    }
+
+    /**
+     * @return fraction of bytes across all sealed segments that belong to overwritten or deleted records
+     */
+    double garbageRatio() {
+        long total = 0;
+        long live = 0;
+        for (RecordSegment segment : segments.values()) {
+            if (segment != activeSegment) {
+                total += segment.size();
+                live += segment.liveBytes();
+            }
+        }
+        return total == 0 ? 0 : 1 - (double) live / total;
+    }
+
+    /**
+     * Rewrites the live records of every sealed segment whose garbage ratio exceeds the threshold into the active
+     * segment, and then deletes the old segment. A tombstone is carried forward only while an older segment still
+     * holds a version of the deleted record; once no older segment does, the tombstone is dropped.
+     *
+     * @param garbageThreshold the minimum fraction of dead bytes in a segment for it to be compacted
+     * @return the number of segments that were compacted
+     * @throws IOException if reading or writing a segment fails
+     */
+    int compact(final double garbageThreshold) throws IOException {
+        int compacted = 0;
+        for (RecordSegment segment : new ArrayList<>(segments.values())) {
+            if (segment == activeSegment || segment.size() == 0) {
+                continue;
+            }
+            if (1 - (double) segment.liveBytes() / segment.size() < garbageThreshold) {
+                continue;
+            }
+
+            compactSegment(segment);
+            compacted++;
+        }
+        return compacted;
+    }
+
+    private void compactSegment(final RecordSegment segment) throws IOException {
+        final Set<String> heldByOlder = keysHeldByOlderSegments(segment);
+        final long firstTargetId = activeSegment.getId();
+        segment.scan((type, key, value, pointer) -> {
+            synchronized (SegmentedCollection.this) {
+                if (type == RecordSegment.TYPE_PUT) {
+                    final RecordPointer current = index.get(key);
+                    if (current != null && current.getSegmentId() == segment.getId()
+                            && current.getValueOffset() == pointer.getValueOffset()) {
+                        markDead(index.put(key, append(RecordSegment.TYPE_PUT, key, value)));
+                    }
+                } else if (!index.containsKey(key) && heldByOlder.contains(key)) {
+                    append(RecordSegment.TYPE_DELETE, key, null);
+                }
+            }
+        });
+
+        /* The rewritten records, and the directory entries of any segment rolled while writing them, must be durable
+         * before the only other copy of the records is deleted */
+        for (RecordSegment target : segments.tailMap(firstTargetId).values()) {
+            target.sync();
+        }
+        syncFolder();
+
+        retireLock.writeLock().lock();
+        try {
+            segments.remove(segment.getId());
+        } finally {
+            retireLock.writeLock().unlock();
+        }
+        segment.delete();
+    }
+
+    /**
+     * Finds the keys deleted by tombstones in the segment that are still held by a put record in an older segment.
+     * Older segments are sealed and only removed by compaction, so the result stays valid for the duration of a
+     * compaction.
+     */
+    private Set<String> keysHeldByOlderSegments(final RecordSegment segment) throws IOException {
+        final Set<String> deleted = new HashSet<>();
+        segment.scan((type, key, value, pointer) -> {
+            if (type == RecordSegment.TYPE_DELETE) {
+                deleted.add(key);
+            }
+        });
+
+        final Set<String> held = new HashSet<>();
+        if (deleted.isEmpty()) {
+            return held;
+        }
+        for (RecordSegment older : segments.headMap(segment.getId()).values()) {
+            older.scan((type, key, value, pointer) -> {
+                if (type == RecordSegment.TYPE_PUT && deleted.contains(key)) {
+                    held.add(key);
+                }
+            });
+        }
+        return held;
+    }
+
+    /**
+     * Makes creation of new segment files durable. Not every platform allows a directory to be opened for a sync,
+     * in which case the file system is relied upon to persist the directory entries.
+     */
+    private void syncFolder() {
+        try (FileChannel channel = FileChannel.open(folder, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ex) {
+            logger.debug("Could not sync segment folder {}: {}", folder, ex.getMessage());
+        }
+    }
+
+    /**
+     * Forces all written data of the active segment to the storage device
+     *
+     * @throws IOException if the sync fails
+     */
+    void sync() throws IOException {
+        activeSegment.sync();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (RecordSegment segment : segments.values()) {
+            segment.close();
+        }
+        segments.clear();
+        index.clear();
+    }
+
+    private RecordPointer append(final byte type, final String key, final byte[] value) throws IOException {
+        if (activeSegment.size() >= maxSegmentSize) {
+            rollSegment();
+        }
+        final RecordPointer pointer = activeSegment.append(type, key.getBytes(StandardCharsets.UTF_8), value);
+        if (type == RecordSegment.TYPE_PUT) {
+            activeSegment.addLiveBytes(pointer.getRecordLength());
+        }
+        return pointer;
+    }
+
+    private void rollSegment() throws IOException {
+        final long nextId = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        final RecordSegment segment = RecordSegment.open(folder, nextId);
+        segments.put(nextId, segment);
+        activeSegment = segment;
+    }
+
+    private void markDead(final RecordPointer pointer) {
+        if (pointer == null) {
+            return;
+        }
+        final RecordSegment segment = segments.get(pointer.getSegmentId());
+        if (segment != null) {
+            segment.addLiveBytes(-pointer.getRecordLength());
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.storage;
+
+import com.blobcity.db.exceptions.ErrorCode;
+import com.blobcity.db.exceptions.OperationException;
+import com.blobcity.db.schema.TableType;
+import com.blobcity.db.schema.beans.SchemaStore;
+import com.blobcity.db.sql.util.PathUtil;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Storage for collections of type {@link TableType#ON_DISK_SEGMENTED}. Instead of one file per record, records of
+ * such collections are packed into large append-only segment files with an in-memory primary key to offset map,
+ * which removes the per record inode and open/close cost of the regular on-disk storage. Segments that are mostly
+ * garbage are compacted in the background.<br/><br/>
+ * This class is used by {@link BSqlFileManager} and is not meant to be called directly. Locking and caching are left
+ * to the file manager, exactly as they are for the one-file-per-record storage.
+ *
+ * @author sanketsarang
+ */
+@Component
+public class SegmentedRecordStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentedRecordStore.class.getName());
+
+    public static final long MAX_SEGMENT_SIZE = 64L * 1024 * 1024; //64 MB
+    public static final double COMPACTION_THRESHOLD = 0.5; //compact segments that are at-least half garbage
+
+    @Autowired
+    private SchemaStore schemaStore;
+
+    /* Keyed on {ds}.{collection} */
+    private final Map<String, SegmentedCollection> collections = new ConcurrentHashMap<>();
+    /* Keyed on ds, then collection, so that the check done on every record operation builds no key */
+    private final Map<String, Map<String, Boolean>> segmentedFlags = new ConcurrentHashMap<>();
+
+    /**
+     * Checks if the specified collection uses segmented storage. The result is cached till the collection is closed,
+     * so the schema is only consulted on the first operation on a collection.
+     *
+     * @param ds name of datastore
+     * @param collection name of collection
+     * @return true if the collection is of type {@link TableType#ON_DISK_SEGMENTED}, false otherwise, including when
+     * the collection does not exist
+     * @throws OperationException if the schema of an existing collection could not be loaded
+     */
+    public boolean isSegmented(final String ds, final String collection) throws OperationException {
+        final Map<String, Boolean> dsFlags = segmentedFlags.get(ds);
+        final Boolean cached = dsFlags == null ? null : dsFlags.get(collection);
+        if (cached != null) {
+            return cached;
+        }
+
+        /* Not cached for a missing collection, as it may later be created with segmented storage */
+        if (!Files.exists(Paths.get(PathUtil.schemaFilePath(ds, collection)))) {
+            return false;
+        }
+
+        final boolean segmented = schemaStore.getSchema(ds, collection).getTableType() == TableType.ON_DISK_SEGMENTED;
+        segmentedFlags.computeIfAbsent(ds, key -> new ConcurrentHashMap<>()).put(collection, segmented);
+        return segmented;
+    }
+
+    public String select(final String ds, final String collection, final String key) throws OperationException {
+        try {
+            final byte[] value = getCollection(ds, collection).get(key);
+            if (value == null) {
+                throw new OperationException(ErrorCode.PRIMARY_KEY_INEXISTENT, "A record with the given primary key: " + key + " could not be found in table: " + collection);
+            }
+            return new String(value, StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            logger.error("Failed to read record " + key + " from " + ds + "." + collection, ex);
+            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "An internal operation error occured. Could not select record for table: " + collection);
+        }
+    }
+
+    public boolean exists(final String ds, final String collection, final String key) throws OperationException {
+        return getCollection(ds, collection).contains(key);
+    }
+
+    public int rowCount(final String ds, final String collection) throws OperationException {
+        return getCollection(ds, collection).size();
+    }
+
+    public Iterator<String> selectAllKeysAsStream(final String ds, final String collection) throws OperationException {
+        return getCollection(ds, collection).keys();
+    }
+
+    public void insert(final String ds, final String collection, final String key, final String jsonString) throws OperationException {
+        final boolean inserted;
+        try {
+            inserted = getCollection(ds, collection).putIfAbsent(key, jsonString.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            logger.error("Failed to insert record " + key + " into " + ds + "." + collection, ex);
+            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "An internal operation error occured. Could not commit insert operation to file system for table: " + collection);
+        }
+
+        if (!inserted) {
+            throw new OperationException(ErrorCode.PRIMARY_KEY_CONFLICT, "A record with the given primary key: " + key + " already isPresent in table: " + collection);
+        }
+    }
+
+    public void save(final String ds, final String collection, final String key, final String jsonString) throws OperationException {
+        try {
+            getCollection(ds, collection).put(key, jsonString.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            logger.error("Failed to save record " + key + " into " + ds + "." + collection, ex);
+            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "An internal operation error occured. Could not commit save operation to file system for table: " + collection);
+        }
+    }
+
+    public void remove(final String ds, final String collection, final String key) throws OperationException {
+        final boolean removed;
+        try {
+            removed = getCollection(ds, collection).remove(key);
+        } catch (IOException ex) {
+            logger.error("Failed to delete record " + key + " from " + ds + "." + collection, ex);
+            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "An internal operation error occured. Could not delete record in table: " + collection);
+        }
+
+        if (!removed) {
+            throw new OperationException(ErrorCode.PRIMARY_KEY_INEXISTENT, "A record with the given primary key: " + key + " could not be found in table: " + collection);
+        }
+    }
+
+    public boolean rename(final String ds, final String collection, final String existingKey, final String newKey) throws OperationException {
+        try {
+            return getCollection(ds, collection).rename(existingKey, newKey);
+        } catch (IOException ex) {
+            logger.error("Rename failed: " + existingKey + " to " + newKey + " failed for ds:" + ds + ", collection:" + collection, ex);
+            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "An internal operation error occurred. Failed to rename record");
+        }
+    }
+
+    /**
+     * Closes the segment files of the collection if open. Must be called before the collection folder is moved or
+     * deleted, such as on drop, truncate or rename of a collection.
+     *
+     * @param ds name of datastore
+     * @param collection name of collection
+     */
+    public void close(final String ds, final String collection) {
+        final String key = generateKey(ds, collection);
+        final Map<String, Boolean> dsFlags = segmentedFlags.get(ds);
+        if (dsFlags != null) {
+            dsFlags.remove(collection);
+        }
+        final SegmentedCollection segmentedCollection = collections.remove(key);
+        if (segmentedCollection == null) {
+            return;
+        }
+
+        try {
+            segmentedCollection.close();
+        } catch (IOException ex) {
+            logger.error("Failed to close segments of " + key, ex);
+        }
+    }
+
+    @Scheduled(fixedRate = 60000)
+    private void compact() {
+        collections.forEach((key, segmentedCollection) -> {
+            try {
+                final int compacted = segmentedCollection.compact(COMPACTION_THRESHOLD);
+                if (compacted > 0) {
+                    logger.debug("Compacted {} segment(s) of {}", compacted, key);
+                }
+            } catch (IOException ex) {
+                logger.error("Segment compaction failed for " + key, ex);
+            }
+        });
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        collections.forEach((key, segmentedCollection) -> {
+            try {
+                segmentedCollection.sync();
+                segmentedCollection.close();
+            } catch (IOException ex) {
+                logger.error("Failed to close segments of " + key, ex);
+            }
+        });
+        collections.clear();
+    }
+
+    private SegmentedCollection getCollection(final String ds, final String collection) throws OperationException {
+        try {
+            return collections.computeIfAbsent(generateKey(ds, collection), key -> {
+                try {
+                    return SegmentedCollection.open(Paths.get(PathUtil.segmentFolderPath(ds, collection)), MAX_SEGMENT_SIZE);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            logger.error("Failed to open segments of " + ds + "." + collection, ex);
+            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "An internal operation error occured. Could not open storage for table: " + collection);
+        }
+    }
+
+    private String generateKey(final String ds, final String collection) {
+        return ds + "." + collection;
+    }
+}
@@ -311,6 +311,7 @@ public class SystemDBService {
                 + "folder     VARCHAR(255),"
                 + "file     VARCHAR(255),"
                 + "lineNo     VARCHAR(255),"
+                + "byteOffset   LONG,"
                 + "md5     VARCHAR(255),"
                 + "status   VARCHAR(255)"
                 + ")";
@@ -17,37 +17,33 @@
 package com.blobcity.db.transaction;
 
 import com.blobcity.db.constants.BSql;
-import com.blobcity.db.locks.LockType;
 import com.blobcity.lib.query.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.io.*;
-import java.util.concurrent.locks.Lock;
+import java.io.IOException;
+import java.nio.file.Paths;
 
 /**
+ * Writes node wide operations, such as creation and deletion of datastores and collections, to the central commit log
+ *
  * @author sanketsarang
  */
 @Component //singleton
 public class CentralCommitLogWriter {
-    private BufferedWriter writer;
 
-    public CentralCommitLogWriter() {
-        try {
-            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(BSql.CURRENT_COMMIT_LOG_FILE)));
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+    private static final Logger logger = LoggerFactory.getLogger(CentralCommitLogWriter.class.getName());
 
-            //TODO: Figure out how to handle this. Maybe product boot should be failed
-        }
-    }
+    @Autowired
+    private CommitLogManager commitLogManager;
 
     public void write(Query query) {
         try {
-            writer.write(System.currentTimeMillis() + "|" + query.toJsonString());
-            writer.newLine();
-            writer.flush();
+            commitLogManager.getLog(Paths.get(BSql.COMMIT_LOGS_FOLDER)).write(new CommitLogRecord(System.currentTimeMillis(), query.toJsonString()));
         } catch (IOException e) {
-            e.printStackTrace();
+            logger.error("Failed to write to central commit log", e);
 
             //TODO: Figure out how to handle this. Maybe commits should be rolled back if failure happens here
         }
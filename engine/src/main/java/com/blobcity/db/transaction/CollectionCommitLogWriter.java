@@ -16,58 +16,56 @@
 
 package com.blobcity.db.transaction;
 
-import com.blobcity.db.bsql.BSqlCollectionManager;
 import com.blobcity.db.constants.BSql;
 import com.blobcity.db.exceptions.ErrorCode;
 import com.blobcity.db.exceptions.OperationException;
 import com.blobcity.lib.query.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import java.io.BufferedWriter;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
- * Holds writers to commit log files for each collection in the database
+ * Writes operations on individual collections to the commit log of the collection. Concurrent writes to the same
+ * collection are group committed by the underlying {@link CommitLog}.
+ *
  * @author sanketsarang
  */
 @Component //singleton
 public class CollectionCommitLogWriter {
-    private Map<String, BufferedWriter> writerMap = new HashMap<>();
+
+    private static final Logger logger = LoggerFactory.getLogger(CollectionCommitLogWriter.class.getName());
+
+    @Autowired
+    private CommitLogManager commitLogManager;
 
     public void write(final String ds, final String collection, final Query query) throws OperationException {
-        BufferedWriter writer = getWriter(ds, collection);
-        synchronized (writer) {
-            try {
-                writer.write(System.currentTimeMillis() + "|" + query.toJsonString());
-                writer.newLine();
-                writer.flush();
-            } catch (IOException e) {
-                throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Failed to write to commit logs of collection: " + ds + "." + collection);
-            }
+        try {
+            commitLogManager.getLog(logFolder(ds, collection)).write(new CommitLogRecord(System.currentTimeMillis(), query.toJsonString()));
+        } catch (IOException e) {
+            logger.error("Failed to write to commit logs of collection: " + ds + "." + collection, e);
+            throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Failed to write to commit logs of collection: " + ds + "." + collection);
         }
     }
 
-    private synchronized BufferedWriter getWriter(final String ds, final String collection) throws OperationException {
-        final String key = ds + "." + collection;
-        if(!writerMap.containsKey(key)) {
-
-            //{data_folder}/{ds}/db/{collection}/commit-logs/commit.log
-            final String filePath = BSql.BSQL_BASE_FOLDER + ds + BSql.SEPERATOR + BSql.DATABASE_FOLDER_NAME
-                    + BSql.SEPERATOR + collection + BSql.SEPERATOR + BSql.COMMIT_LOGS_FOLDER_NAME
-                    + BSql.CURRENT_COMMIT_LOG_FILENAME;
-
-            try {
-                writerMap.put(key, new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filePath))));
-            } catch(IOException ex) {
-                throw new OperationException(ErrorCode.INTERNAL_OPERATION_ERROR, "Cannot open commit log writer to path: " + filePath);
-            }
-        }
+    /**
+     * Closes the commit log of the collection if it is open. Must be called before the collection folder is moved.
+     *
+     * @param ds name of datastore
+     * @param collection name of collection
+     */
+    public void close(final String ds, final String collection) {
+        commitLogManager.close(logFolder(ds, collection));
+    }
 
-        return writerMap.get(key);
+    /**
+     * {data_folder}/{ds}/db/{collection}/commit-logs/
+     */
+    public static Path logFolder(final String ds, final String collection) {
+        return Paths.get(BSql.BSQL_BASE_FOLDER + ds + BSql.SEPERATOR + BSql.DATABASE_FOLDER_NAME
+                + BSql.SEPERATOR + collection + BSql.SEPERATOR + BSql.COMMIT_LOGS_FOLDER_NAME);
     }
 }
@@ -0,0 +1,382 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.transaction;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * An append-only write-ahead log stored as a sequence of segment files inside a single folder. Segments are named by
+ * a zero padded sequence number so that listing them in name order gives the order in which they were written. The
+ * active segment is rotated once it exceeds {@link #MAX_SEGMENT_SIZE}; a record is never split across segments.</p>
+ *
+ * <p>
+ * Every segment starts with a {@link #SEGMENT_HEADER_SIZE} byte header holding {@link #SEGMENT_MAGIC} and the
+ * {@link CommitLogSyncMode} the segment was written in, so that recovery knows how far the records of a segment can
+ * be trusted.</p>
+ *
+ * <p>
+ * Writes use group commit. Each write is first appended to an in-memory buffer under a short lock. The writer then
+ * competes for the flush lock; the thread that gets it writes out everything buffered so far, including records of
+ * every other waiting writer, with a single write and an optional single sync. Waiting writers whose records were
+ * covered by that flush return without any I/O of their own.</p>
+ *
+ * @author sanketsarang
+ */
+public final class CommitLog implements Closeable {
+
+    public static final long MAX_SEGMENT_SIZE = 64L * 1024 * 1024;
+    public static final String FILE_EXTENSION = ".log";
+    public static final String CHECKPOINT_FILE = "checkpoint";
+    public static final int SEGMENT_MAGIC = 0x42434C47; // "BCLG", larger than any record length
+    public static final int SEGMENT_HEADER_SIZE = 8;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("(\\d{16})" + Pattern.quote(FILE_EXTENSION));
+
+    private final Path folder;
+    private final CommitLogSyncMode syncMode;
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    /* Guarded by this */
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private long appendedSequence = 0;
+    private boolean closed = false;
+
+    /* Guarded by flushLock */
+    private FileChannel channel;
+    private volatile long segmentId;
+    private long segmentSize;
+    private volatile long writtenSequence = 0;
+    private volatile long syncedSequence = 0;
+    private volatile long lastSyncTime = System.currentTimeMillis();
+
+    private CommitLog(final Path folder, final CommitLogSyncMode syncMode) {
+        this.folder = folder;
+        this.syncMode = syncMode;
+    }
+
+    /**
+     * Opens the commit log inside the specified folder. Writes always go to a new segment, so that a torn record at
+     * the end of a segment left behind by a crash is never followed by valid records.
+     *
+     * @param folder folder holding the segment files of the log; created if it does not exist
+     * @param syncMode when writes are synced to disk
+     * @return an open {@link CommitLog}
+     * @throws IOException if the folder or segment file cannot be created
+     */
+    public static CommitLog open(final Path folder, final CommitLogSyncMode syncMode) throws IOException {
+        Files.createDirectories(folder);
+        final CommitLog commitLog = new CommitLog(folder, syncMode);
+        final List<Path> segments = listSegments(folder);
+        final long lastId = segments.isEmpty() ? 0 : segmentId(segments.get(segments.size() - 1));
+        commitLog.openSegment(Math.max(lastId + 1, readCheckpoint(folder)));
+        return commitLog;
+    }
+
+    /**
+     * Reads the checkpoint of the log. All transactions started in segments older than the checkpoint segment are
+     * known to be resolved, so recovery only needs to read segments from the checkpoint segment onwards.
+     *
+     * @param folder folder holding the segment files of the log
+     * @return id of the first segment that must be read on recovery; 0 if the log has no checkpoint
+     * @throws IOException if the checkpoint file exists but cannot be read
+     */
+    public static long readCheckpoint(final Path folder) throws IOException {
+        final Path path = folder.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(path), StandardCharsets.UTF_8).trim());
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * Moves the checkpoint of the log forward and deletes all segments older than the checkpoint segment. The
+     * checkpoint file is replaced atomically, so a crash leaves either the old or the new checkpoint in place.
+     *
+     * @param folder folder holding the segment files of the log
+     * @param checkpointSegmentId id of the first segment that must be read on recovery
+     * @throws IOException if the checkpoint cannot be written
+     */
+    public static void writeCheckpoint(final Path folder, final long checkpointSegmentId) throws IOException {
+        final Path temp = folder.resolve(CHECKPOINT_FILE + ".tmp");
+        Files.write(temp, Long.toString(checkpointSegmentId).getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, folder.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        for (Path segment : listSegments(folder)) {
+            if (segmentId(segment) < checkpointSegmentId) {
+                Files.deleteIfExists(segment);
+            }
+        }
+    }
+
+    /**
+     * Reads all valid records of a segment in the order in which they were written. Reading stops at the first torn
+     * or corrupt record, which can only be the tail of a segment that was being written at the time of a crash. A
+     * segment whose header was not completely written before a crash holds no records.
+     *
+     * @param segment path of the segment file
+     * @param consumer receives every valid record of the segment
+     * @throws IOException if the segment cannot be read, or the file is not a segment
+     */
+    public static void readSegment(final Path segment, final Consumer<CommitLogRecord> consumer) throws IOException {
+        try (FileChannel readChannel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+            if (buffer.remaining() < SEGMENT_HEADER_SIZE) {
+                return;
+            }
+            if (buffer.getInt(0) != SEGMENT_MAGIC) {
+                throw new IOException(segment + " is not a commit log segment");
+            }
+            buffer.position(SEGMENT_HEADER_SIZE);
+            CommitLogRecord record;
+            while ((record = CommitLogRecord.read(buffer)) != null) {
+                consumer.accept(record);
+            }
+        }
+    }
+
+    /**
+     * Reads the sync mode recorded in the header of a segment
+     *
+     * @param segment path of the segment file
+     * @return the sync mode the segment was written in; <code>null</code> if the header of the segment was not
+     * completely written
+     * @throws IOException if the segment cannot be read
+     */
+    public static CommitLogSyncMode readSyncMode(final Path segment) throws IOException {
+        try (FileChannel readChannel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+            while (header.hasRemaining() && readChannel.read(header) >= 0) {
+                // read till the header is complete or the file ends
+            }
+            if (header.hasRemaining() || header.getInt(0) != SEGMENT_MAGIC) {
+                return null;
+            }
+
+            final int ordinal = header.get(5);
+            final CommitLogSyncMode[] modes = CommitLogSyncMode.values();
+            return ordinal >= 0 && ordinal < modes.length ? modes[ordinal] : null;
+        }
+    }
+
+    /**
+     * @param segment path of a segment file
+     * @return the id of the segment, as decided by its file name; -1 if the file name is not that of a segment
+     */
+    public static long segmentId(final Path segment) {
+        final Matcher matcher = SEGMENT_NAME.matcher(segment.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    /**
+     * Lists all segment files of the log in the order in which they were written. Other files in the folder, such as
+     * the checkpoint or the single file log of older versions, are ignored.
+     *
+     * @param folder folder holding the segment files of the log
+     * @return paths of all segment files; an empty list if the folder does not exist
+     * @throws IOException if the folder cannot be listed
+     */
+    public static List<Path> listSegments(final Path folder) throws IOException {
+        final List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(folder)) {
+            return segments;
+        }
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, path -> segmentId(path) >= 0)) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    public Path getFolder() {
+        return folder;
+    }
+
+    public CommitLogSyncMode getSyncMode() {
+        return syncMode;
+    }
+
+    /**
+     * @return id of the segment currently being written to
+     */
+    public long getActiveSegmentId() {
+        return segmentId;
+    }
+
+    /**
+     * Appends a record to the log. Returns once the record is durable to the extent required by the sync mode of the
+     * log.
+     *
+     * @param record the record to append
+     * @throws IOException if the record could not be written, or the log is closed
+     */
+    public void write(final CommitLogRecord record) throws IOException {
+        final byte[] bytes = record.toBytes();
+        final long sequence;
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("Commit log at " + folder + " is closed");
+            }
+            buffer.write(bytes, 0, bytes.length);
+            sequence = ++appendedSequence;
+        }
+
+        switch (syncMode) {
+            case BATCH:
+                flush(sequence, true);
+                break;
+            case OS:
+                flush(sequence, false);
+                break;
+            case INTERVAL:
+                break;
+        }
+    }
+
+    /**
+     * Writes and syncs all buffered records
+     *
+     * @throws IOException if the write or sync fails
+     */
+    public void sync() throws IOException {
+        final long sequence;
+        synchronized (this) {
+            sequence = appendedSequence;
+        }
+        flush(sequence, true);
+    }
+
+    /**
+     * @return time in milliseconds since the last sync of this log
+     */
+    public long millisSinceSync() {
+        return System.currentTimeMillis() - lastSyncTime;
+    }
+
+    /**
+     * @return true if records have been written to the log that are not yet synced
+     */
+    public boolean hasUnsyncedWrites() {
+        synchronized (this) {
+            return syncedSequence < appendedSequence;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+
+        flushLock.lock();
+        try {
+            sync();
+            channel.close();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Makes all records up to the specified sequence written, and synced if required. Concurrent callers queue on
+     * the flush lock and most find their records already flushed by the caller ahead of them.
+     */
+    private void flush(final long sequence, final boolean force) throws IOException {
+        if ((force ? syncedSequence : writtenSequence) >= sequence) {
+            return;
+        }
+
+        flushLock.lock();
+        try {
+            if ((force ? syncedSequence : writtenSequence) >= sequence) {
+                return;
+            }
+
+            final byte[] bytes;
+            final long lastSequence;
+            synchronized (this) {
+                bytes = buffer.toByteArray();
+                lastSequence = appendedSequence;
+                buffer = new ByteArrayOutputStream(Math.max(32, bytes.length));
+            }
+
+            if (bytes.length > 0) {
+                if (segmentSize > SEGMENT_HEADER_SIZE && segmentSize + bytes.length > MAX_SEGMENT_SIZE) {
+                    channel.force(false);
+                    channel.close();
+                    openSegment(segmentId + 1);
+                }
+
+                final ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+                while (byteBuffer.hasRemaining()) {
+                    segmentSize += channel.write(byteBuffer, segmentSize);
+                }
+            }
+            writtenSequence = lastSequence;
+
+            if (force) {
+                channel.force(false);
+                syncedSequence = lastSequence;
+                lastSyncTime = System.currentTimeMillis();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void openSegment(final long id) throws IOException {
+        final Path path = folder.resolve(String.format("%016d", id) + FILE_EXTENSION);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        segmentId = id;
+        segmentSize = channel.size();
+        if (segmentSize == 0) {
+            final ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+            header.putInt(SEGMENT_MAGIC).put((byte) 1).put((byte) syncMode.ordinal());
+            header.rewind();
+            while (header.hasRemaining()) {
+                segmentSize += channel.write(header, segmentSize);
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.transaction;
+
+import com.blobcity.db.config.ConfigBean;
+import com.blobcity.db.config.ConfigProperties;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Owns all open {@link CommitLog}s of the node. Reads the configured sync mode and sync interval, opens logs on
+ * request and, when running in {@link CommitLogSyncMode#INTERVAL} mode, periodically syncs every open log.
+ *
+ * @author sanketsarang
+ */
+@Component
+public class CommitLogManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(CommitLogManager.class.getName());
+    private static final long DEFAULT_SYNC_INTERVAL = 1000;
+
+    @Autowired
+    private ConfigBean configBean;
+
+    private final Map<Path, CommitLog> logs = new ConcurrentHashMap<>();
+    private CommitLogSyncMode syncMode = CommitLogSyncMode.BATCH;
+    private long syncInterval = DEFAULT_SYNC_INTERVAL;
+
+    @PostConstruct
+    private void init() {
+        syncMode = CommitLogSyncMode.fromString(configBean.getStringProperty(ConfigProperties.COMMIT_LOG_SYNC_MODE));
+        final String interval = configBean.getStringProperty(ConfigProperties.COMMIT_LOG_SYNC_INTERVAL);
+        if (interval != null) {
+            try {
+                syncInterval = Long.parseLong(interval);
+            } catch (NumberFormatException ex) {
+                logger.warn("Invalid commit log sync interval {}. Using default of {} ms", interval, DEFAULT_SYNC_INTERVAL);
+            }
+        }
+        logger.info("Commit logs will sync in {} mode", syncMode.getText());
+    }
+
+    public CommitLogSyncMode getSyncMode() {
+        return syncMode;
+    }
+
+    /**
+     * Gets the open commit log stored in the specified folder, opening it if required
+     *
+     * @param folder folder holding the segments of the log
+     * @return the open {@link CommitLog}
+     * @throws IOException if the log could not be opened
+     */
+    public CommitLog getLog(final Path folder) throws IOException {
+        CommitLog commitLog = logs.get(folder);
+        if (commitLog != null) {
+            return commitLog;
+        }
+
+        synchronized (logs) {
+            commitLog = logs.get(folder);
+            if (commitLog == null) {
+                commitLog = CommitLog.open(folder, syncMode);
+                logs.put(folder, commitLog);
+            }
+        }
+        return commitLog;
+    }
+
+    /**
+     * @return all currently open commit logs
+     */
+    public Collection<CommitLog> getOpenLogs() {
+        return Collections.unmodifiableCollection(logs.values());
+    }
+
+    /**
+     * Syncs and closes the commit log stored in the specified folder if the log is open. Must be called before the
+     * folder is moved or deleted.
+     *
+     * @param folder folder holding the segments of the log
+     */
+    public void close(final Path folder) {
+        final CommitLog commitLog = logs.remove(folder);
+        if (commitLog != null) {
+            try {
+                commitLog.close();
+            } catch (IOException ex) {
+                logger.error("Failed to close commit log at " + folder, ex);
+            }
+        }
+    }
+
+    /**
+     * Bounds the data loss window in {@link CommitLogSyncMode#INTERVAL} mode by syncing every log that has unsynced
+     * writes once the configured interval has passed since its last sync
+     */
+    @Scheduled(fixedRate = 100)
+    public void syncLogs() {
+        if (syncMode != CommitLogSyncMode.INTERVAL) {
+            return;
+        }
+
+        logs.values().forEach(commitLog -> {
+            if (commitLog.hasUnsyncedWrites() && commitLog.millisSinceSync() >= syncInterval) {
+                try {
+                    commitLog.sync();
+                } catch (IOException ex) {
+                    logger.error("Failed to sync commit log at " + commitLog.getFolder(), ex);
+                }
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        logs.keySet().forEach(this::close);
+    }
+}
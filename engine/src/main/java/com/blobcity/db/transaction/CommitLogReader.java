@@ -16,15 +16,426 @@
 
 package com.blobcity.db.transaction;
 
+import com.blobcity.db.bsql.BSqlCollectionManager;
+import com.blobcity.db.bsql.BSqlDataManager;
+import com.blobcity.db.constants.BSql;
+import com.blobcity.db.exceptions.OperationException;
+import com.blobcity.lib.query.Query;
+import com.blobcity.lib.query.QueryParams;
+import com.blobcity.lib.query.QueryType;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 /**
+ * <p>
+ * Recovers transactions left unresolved in the commit logs by a crash, and keeps the commit logs checkpointed so
+ * that recovery only reads the tail of each log.</p>
+ *
+ * <p>
+ * A transaction is identified by its request id. It is resolved once a COMMIT_SUCCESS or ROLLBACK_SUCCESS entry is
+ * logged for it. How an unresolved transaction is resolved depends on the sync mode recorded in the header of the
+ * segment it was started in:</p>
+ * <ul>
+ * <li>{@link CommitLogSyncMode#BATCH}: every entry was synced before the transaction moved on, so a missing
+ * COMMIT_SUCCESS entry was never written and the master reported the transaction as failed. The transaction is undone
+ * and closed with a ROLLBACK_SUCCESS entry.</li>
+ * <li>{@link CommitLogSyncMode#INTERVAL}, {@link CommitLogSyncMode#OS}, or a segment written without a header: the
+ * COMMIT_SUCCESS entry may have been lost from the unsynced tail of the log after the client was told of success, so
+ * undoing could drop acknowledged data. The transaction is rolled forward and closed with a COMMIT_SUCCESS entry.</li>
+ * </ul>
+ *
+ * <p>
+ * Both directions go through {@link BSqlDataManager}, so indexes are updated along with the records. An insert is
+ * undone by removing only the records that its SOFT_COMMIT_SUCCESS entry reports as inserted by it, and rolled forward
+ * by inserting records that are missing. Updates and deletes are undone from the before-images logged under {@link QueryParams#BEFORE}; without
+ * before-images they are rolled forward instead, as a half applied update or delete is worse than a complete one.</p>
+ *
  * @author sanketsarang
  */
 @Component
 public class CommitLogReader {
 
+    private static final Logger logger = LoggerFactory.getLogger(CommitLogReader.class.getName());
+
+    @Autowired
+    private CommitLogManager commitLogManager;
+    @Autowired @Lazy
+    private CollectionCommitLogWriter collectionCommitLogWriter;
+    @Autowired @Lazy
+    private BSqlDataManager dataManager;
+    @Autowired @Lazy
+    private BSqlCollectionManager collectionManager;
+
+    /* Active segment id of each open log at the time its checkpoint was last computed */
+    private final Map<Path, Long> checkpointedAt = new ConcurrentHashMap<>();
+
+    /**
+     * Resolves all transactions left open in the commit logs of every collection. Collections are recovered in
+     * parallel, each reading its log from its last checkpoint onwards.
+     */
     public void replayLogs() {
-        //collectively reads all logs
+        final List<String[]> collections = listCollectionsWithLogs();
+        if (collections.isEmpty()) {
+            return;
+        }
+
+        final long startTime = System.currentTimeMillis();
+        final AtomicInteger undone = new AtomicInteger();
+        final ExecutorService executorService = Executors.newFixedThreadPool(Math.min(collections.size(), Runtime.getRuntime().availableProcessors()));
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (String[] collection : collections) {
+                futures.add(executorService.submit(() -> undone.addAndGet(recover(collection[0], collection[1]))));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (Exception ex) {
+                    logger.error("Commit log recovery failed for a collection", ex);
+                }
+            }
+        } finally {
+            executorService.shutdown();
+        }
+
+        recoverCentralLog();
+        logger.info("Commit log recovery of {} collections completed in {} ms. {} unresolved transactions resolved",
+                collections.size(), System.currentTimeMillis() - startTime, undone.get());
+    }
+
+    /**
+     * Moves forward the checkpoint of every open log that has rotated to a new segment since its checkpoint was last
+     * computed. Only sealed segments are read, so the scan never competes with writers of the active segment.
+     */
+    @Scheduled(fixedRate = 60000)
+    public void checkpoint() {
+        for (CommitLog commitLog : commitLogManager.getOpenLogs()) {
+            final Path folder = commitLog.getFolder();
+            final long activeSegmentId = commitLog.getActiveSegmentId();
+            final Long lastActiveSegmentId = checkpointedAt.get(folder);
+            if (lastActiveSegmentId != null && lastActiveSegmentId == activeSegmentId) {
+                continue;
+            }
+
+            try {
+                final Map<String, PendingTransaction> pending = readUnresolved(folder, activeSegmentId);
+                long checkpointSegmentId = activeSegmentId;
+                for (PendingTransaction transaction : pending.values()) {
+                    checkpointSegmentId = Math.min(checkpointSegmentId, transaction.segmentId);
+                }
+                if (checkpointSegmentId > CommitLog.readCheckpoint(folder)) {
+                    CommitLog.writeCheckpoint(folder, checkpointSegmentId);
+                }
+                checkpointedAt.put(folder, activeSegmentId);
+            } catch (IOException ex) {
+                logger.error("Failed to checkpoint commit log at " + folder, ex);
+            }
+        }
+    }
+
+    /**
+     * Resolves all unresolved transactions of a single collection and checkpoints its log
+     *
+     * @return the number of transactions that were resolved
+     */
+    private int recover(final String ds, final String collection) throws IOException {
+        final Path folder = CollectionCommitLogWriter.logFolder(ds, collection);
+        final Map<String, PendingTransaction> pending = readUnresolved(folder, Long.MAX_VALUE);
+
+        for (PendingTransaction transaction : pending.values()) {
+            try {
+                if (transaction.syncMode == CommitLogSyncMode.BATCH && undo(ds, collection, transaction)) {
+                    logger.debug("Rolled back unresolved transaction {} on {}.{}", transaction.requestId, ds, collection);
+                    collectionCommitLogWriter.write(ds, collection, new Query().requestId(transaction.requestId).rollbackSuccessQuery().ack("1"));
+                } else {
+                    rollForward(ds, collection, transaction.query);
+                    logger.debug("Rolled forward unresolved transaction {} on {}.{}", transaction.requestId, ds, collection);
+                    collectionCommitLogWriter.write(ds, collection, new Query().requestId(transaction.requestId).commitSuccessQuery().ack("1"));
+                }
+            } catch (OperationException | JSONException ex) {
+                logger.error("Failed to resolve transaction " + transaction.requestId + " on " + ds + "." + collection, ex);
+                return pending.size();
+            }
+        }
+
+        /* Every transaction in the existing segments is now resolved */
+        final List<Path> segments = CommitLog.listSegments(folder);
+        final long nextSegmentId = segments.isEmpty() ? 0 : CommitLog.segmentId(segments.get(segments.size() - 1)) + 1;
+        final long checkpointSegmentId = pending.isEmpty() ? nextSegmentId : nextSegmentId - 1;
+        if (checkpointSegmentId > CommitLog.readCheckpoint(folder)) {
+            CommitLog.writeCheckpoint(folder, checkpointSegmentId);
+        }
+        return pending.size();
+    }
+
+    /**
+     * The central log holds datastore and collection level operations, which are not undone automatically. Any
+     * unresolved operations are reported before the log is checkpointed.
+     */
+    private void recoverCentralLog() {
+        final Path folder = Paths.get(BSql.COMMIT_LOGS_FOLDER);
+        try {
+            final Map<String, PendingTransaction> pending = readUnresolved(folder, Long.MAX_VALUE);
+            for (PendingTransaction transaction : pending.values()) {
+                logger.warn("Operation {} of type {} was not completed before the last shutdown and may need manual verification",
+                        transaction.requestId, transaction.query.getQueryType());
+            }
+            final List<Path> segments = CommitLog.listSegments(folder);
+            if (!segments.isEmpty()) {
+                CommitLog.writeCheckpoint(folder, CommitLog.segmentId(segments.get(segments.size() - 1)) + 1);
+            }
+        } catch (IOException ex) {
+            logger.error("Failed to recover central commit log", ex);
+        }
+    }
+
+    /**
+     * Reads the log from its checkpoint up to, but excluding, the specified segment and collects all transactions
+     * that were started but not resolved
+     *
+     * @param folder folder holding the segment files of the log
+     * @param endSegmentId id of the first segment not to read
+     * @return unresolved transactions keyed by request id, in the order in which they were started
+     */
+    private Map<String, PendingTransaction> readUnresolved(final Path folder, final long endSegmentId) throws IOException {
+        final Map<String, PendingTransaction> pending = new LinkedHashMap<>();
+        final long checkpointSegmentId = CommitLog.readCheckpoint(folder);
+        for (Path segment : CommitLog.listSegments(folder)) {
+            final long segmentId = CommitLog.segmentId(segment);
+            if (segmentId < checkpointSegmentId || segmentId >= endSegmentId) {
+                continue;
+            }
+
+            final CommitLogSyncMode syncMode = CommitLog.readSyncMode(segment);
+            CommitLog.readSegment(segment, record -> {
+                final Query query;
+                final String requestId;
+                try {
+                    query = new Query(new JSONObject(record.getPayload()));
+                    requestId = query.getRequestId();
+                } catch (JSONException ex) {
+                    logger.warn("Skipping unreadable commit log entry in {}", segment);
+                    return;
+                }
+
+                final QueryType queryType = query.getQueryType();
+                if (queryType == null) {
+                    return;
+                }
+
+                switch (queryType) {
+                    case COMMIT_SUCCESS:
+                    case ROLLBACK_SUCCESS:
+                        pending.remove(requestId);
+                        break;
+                    case SOFT_COMMIT_SUCCESS:
+                        final PendingTransaction transaction = pending.get(requestId);
+                        if (transaction != null && query.isAckSuccess() && query.contains(QueryParams.STATUS)) {
+                            transaction.statuses = query.getJSONArray(QueryParams.STATUS.getParam());
+                        }
+                        break;
+                    case COMMIT:
+                    case ROLLBACK:
+                        break;
+                    default:
+                        pending.putIfAbsent(requestId, new PendingTransaction(requestId, query, segmentId, syncMode));
+                }
+            });
+        }
+        return pending;
+    }
+
+    /**
+     * Undoes an unresolved operation. An insert only removes the records that its logged soft commit statuses report
+     * as inserted by it. A record whose insert failed because the key was already in use, or an insert that crashed
+     * before logging its statuses, is left untouched, as the stored records may belong to another operation.
+     *
+     * @return true if the operation was undone; false if it cannot be undone and must be rolled forward instead
+     */
+    private boolean undo(final String ds, final String collection, final PendingTransaction transaction) throws OperationException {
+        if (!collectionManager.exists(ds, collection) || collectionManager.isInMemory(ds, collection)) {
+            return true;
+        }
+
+        final Query query = transaction.query;
+        switch (query.getQueryType()) {
+            case INSERT:
+                if (transaction.statuses == null) {
+                    logger.warn("Unresolved insert {} on {}.{} logged no inserted records, so no records are removed",
+                            query.getRequestId(), ds, collection);
+                    return true;
+                }
+                final JSONArray recordsArray = query.getJSONObject(QueryParams.PAYLOAD).getJSONArray(QueryParams.DATA.getParam());
+                for (int i = 0; i < recordsArray.length() && i < transaction.statuses.length(); i++) {
+                    final JSONObject record = recordsArray.getJSONObject(i);
+                    if (transaction.statuses.optInt(i) == 1 && record.has("_id")) {
+                        final String _id = record.get("_id").toString();
+                        if (dataManager.exists(ds, collection, _id)) {
+                            dataManager.remove(ds, collection, _id);
+                        }
+                    }
+                }
+                return true;
+            case UPDATE:
+            case DELETE:
+                if (!query.contains(QueryParams.PAYLOAD) || !query.getJSONObject(QueryParams.PAYLOAD).has(QueryParams.BEFORE.getParam())) {
+                    logger.warn("Unresolved {} operation {} on {}.{} has no before-images and will be completed instead of rolled back",
+                            query.getQueryType(), query.getRequestId(), ds, collection);
+                    return false;
+                }
+                for (JSONObject before : records(query, QueryParams.BEFORE)) {
+                    dataManager.save(ds, collection, before);
+                }
+                return true;
+            default:
+                logger.warn("Unresolved {} operation {} on {}.{} cannot be resolved automatically",
+                        query.getQueryType(), query.getRequestId(), ds, collection);
+                return true;
+        }
+    }
+
+    /**
+     * Completes an unresolved operation. Every step is idempotent, so parts of the operation applied before the
+     * shutdown are left as they are.
+     */
+    private void rollForward(final String ds, final String collection, final Query query) throws OperationException {
+        if (!collectionManager.exists(ds, collection) || collectionManager.isInMemory(ds, collection)) {
+            return;
+        }
+
+        switch (query.getQueryType()) {
+            case INSERT:
+                for (JSONObject record : records(query, QueryParams.DATA)) {
+                    if (!dataManager.exists(ds, collection, record.get("_id").toString())) {
+                        dataManager.insert(ds, collection, record);
+                    }
+                }
+                break;
+            case UPDATE:
+                for (JSONObject record : records(query, QueryParams.DATA)) {
+                    if (dataManager.exists(ds, collection, record.get("_id").toString())) {
+                        dataManager.save(ds, collection, record);
+                    }
+                }
+                break;
+            case DELETE:
+                for (String _id : deletedIds(query)) {
+                    if (dataManager.exists(ds, collection, _id)) {
+                        dataManager.remove(ds, collection, _id);
+                    }
+                }
+                break;
+            default:
+                logger.warn("Unresolved {} operation {} on {}.{} cannot be resolved automatically",
+                        query.getQueryType(), query.getRequestId(), ds, collection);
+        }
+    }
+
+    /**
+     * @return the records logged under the specified payload parameter that carry an _id
+     */
+    private List<JSONObject> records(final Query query, final QueryParams param) {
+        final List<JSONObject> records = new ArrayList<>();
+        if (!query.contains(QueryParams.PAYLOAD) || !query.getJSONObject(QueryParams.PAYLOAD).has(param.getParam())) {
+            return records;
+        }
+
+        final JSONArray recordsArray = query.getJSONObject(QueryParams.PAYLOAD).getJSONArray(param.getParam());
+        for (int i = 0; i < recordsArray.length(); i++) {
+            final JSONObject record = recordsArray.getJSONObject(i);
+            if (record.has("_id")) {
+                records.add(record);
+            } else {
+                logger.warn("Record without _id in unresolved {} {} cannot be resolved", query.getQueryType(), query.getRequestId());
+            }
+        }
+        return records;
+    }
+
+    /**
+     * A delete logs either the ids of the deleted records under {@link QueryParams#IDS} or the records themselves
+     * under {@link QueryParams#DATA}
+     */
+    private List<String> deletedIds(final Query query) {
+        final List<String> ids = new ArrayList<>();
+        if (query.contains(QueryParams.PAYLOAD) && query.getJSONObject(QueryParams.PAYLOAD).has(QueryParams.IDS.getParam())) {
+            final JSONArray idsArray = query.getJSONObject(QueryParams.PAYLOAD).getJSONArray(QueryParams.IDS.getParam());
+            for (int i = 0; i < idsArray.length(); i++) {
+                ids.add(idsArray.get(i).toString());
+            }
+        } else {
+            records(query, QueryParams.DATA).forEach(record -> ids.add(record.get("_id").toString()));
+        }
+        return ids;
+    }
+
+    /**
+     * @return datastore and collection name pairs of all collections that have a commit log
+     */
+    private List<String[]> listCollectionsWithLogs() {
+        final List<String[]> collections = new ArrayList<>();
+        final Path base = Paths.get(BSql.BSQL_BASE_FOLDER);
+        if (!Files.isDirectory(base)) {
+            return collections;
+        }
+
+        try (DirectoryStream<Path> dsStream = Files.newDirectoryStream(base, Files::isDirectory)) {
+            for (Path dsPath : dsStream) {
+                final Path dbPath = dsPath.resolve(BSql.DATABASE_FOLDER_NAME);
+                if (!Files.isDirectory(dbPath)) {
+                    continue;
+                }
+                try (DirectoryStream<Path> collectionStream = Files.newDirectoryStream(dbPath, Files::isDirectory)) {
+                    for (Path collectionPath : collectionStream) {
+                        final String ds = dsPath.getFileName().toString();
+                        final String collection = collectionPath.getFileName().toString();
+                        if (Files.isDirectory(CollectionCommitLogWriter.logFolder(ds, collection))) {
+                            collections.add(new String[]{ds, collection});
+                        }
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            logger.error("Failed to list collections for commit log recovery", ex);
+        }
+        return collections;
+    }
+
+    private static final class PendingTransaction {
+
+        private final String requestId;
+        private final Query query;
+        private final long segmentId;
+        private final CommitLogSyncMode syncMode;
+        /* Per record insert statuses logged by the SOFT_COMMIT_SUCCESS of an insert, 1 where the record was inserted */
+        private JSONArray statuses;
+
+        PendingTransaction(final String requestId, final Query query, final long segmentId, final CommitLogSyncMode syncMode) {
+            this.requestId = requestId;
+            this.query = query;
+            this.segmentId = segmentId;
+            this.syncMode = syncMode;
+        }
     }
 }
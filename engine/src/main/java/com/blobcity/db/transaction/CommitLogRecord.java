@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.transaction;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * A single entry of a {@link CommitLog}. Entries are laid out as
+ * <code>[payloadLength:4][crc32:4][timestamp:8][payload]</code>, where the payload is the JSON form of the logged
+ * query and the checksum covers the timestamp and payload bytes. A torn write at the end of a log is detected by
+ * either a short read or a checksum mismatch.
+ *
+ * @author sanketsarang
+ */
+public final class CommitLogRecord {
+
+    public static final int HEADER_SIZE = 4 + 4 + 8;
+
+    private final long timestamp;
+    private final String payload;
+
+    public CommitLogRecord(final long timestamp, final String payload) {
+        this.timestamp = timestamp;
+        this.payload = payload;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    /**
+     * @return the binary form of the record as written to a commit log segment
+     */
+    public byte[] toBytes() {
+        final byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payloadBytes.length);
+        buffer.putInt(payloadBytes.length);
+        buffer.putInt((int) checksum(timestamp, payloadBytes));
+        buffer.putLong(timestamp);
+        buffer.put(payloadBytes);
+        return buffer.array();
+    }
+
+    /**
+     * Reads the record starting at the current position of the buffer. The position is advanced past the record only
+     * if a complete and valid record is found.
+     *
+     * @param buffer buffer holding commit log bytes
+     * @return the record; <code>null</code> if the buffer does not hold a complete record with a valid checksum at its
+     * current position
+     */
+    public static CommitLogRecord read(final ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE) {
+            return null;
+        }
+
+        final int start = buffer.position();
+        final int length = buffer.getInt();
+        final int crc = buffer.getInt();
+        final long timestamp = buffer.getLong();
+        if (length < 0 || buffer.remaining() < length) {
+            buffer.position(start);
+            return null;
+        }
+
+        final byte[] payloadBytes = new byte[length];
+        buffer.get(payloadBytes);
+        if ((int) checksum(timestamp, payloadBytes) != crc) {
+            buffer.position(start);
+            return null;
+        }
+
+        return new CommitLogRecord(timestamp, new String(payloadBytes, StandardCharsets.UTF_8));
+    }
+
+    private static long checksum(final long timestamp, final byte[] payloadBytes) {
+        final CRC32 crc32 = new CRC32();
+        crc32.update(ByteBuffer.allocate(8).putLong(timestamp).array());
+        crc32.update(payloadBytes);
+        return crc32.getValue();
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.transaction;
+
+/**
+ * Decides when commit log writes are forced to the storage device, and so the amount of committed data that may be
+ * lost on a power failure. Configured through the <code>commit-log-sync-mode</code> property of the node config.
+ *
+ * @author sanketsarang
+ */
+public enum CommitLogSyncMode {
+
+    /**
+     * Every write waits till it is synced to disk. Concurrent writes are grouped and synced together, so a single
+     * sync covers every write that arrived while the previous sync was in progress.
+     */
+    BATCH("batch"),
+
+    /**
+     * Writes return once buffered in memory and all commit logs are written and synced once per configured interval.
+     * At most one interval of writes may be lost.
+     */
+    INTERVAL("interval"),
+
+    /**
+     * Writes return once handed to the operating system and are never explicitly synced. Survives a crash of the
+     * database process but not of the machine.
+     */
+    OS("os");
+
+    private final String text;
+
+    CommitLogSyncMode(final String text) {
+        this.text = text;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Gets the sync mode for the configured text
+     *
+     * @param text the configured value
+     * @return the matching sync mode; {@link #BATCH} if the value is missing or not recognised
+     */
+    public static CommitLogSyncMode fromString(final String text) {
+        if (text == null) {
+            return BATCH;
+        }
+
+        for (CommitLogSyncMode mode : values()) {
+            if (mode.text.equalsIgnoreCase(text)) {
+                return mode;
+            }
+        }
+
+        return BATCH;
+    }
+}
@@ -23,7 +23,7 @@ import com.blobcity.db.requests.RequestHandlingBean;
 import com.blobcity.lib.data.Record;
 import com.blobcity.lib.query.Query;
 import com.blobcity.lib.query.RecordType;
-import org.apache.commons.io.input.TailerListenerAdapter;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,15 +31,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * A listener for file tailing operations which inserts the the added row to database
+ * A listener for file tailing operations which inserts the lines added to the file into the database. Lines arrive in
+ * batches from a {@link FileTailer}; each batch is run through the data interpreter and inserted with a single insert
+ * request, after which the offset of the batch is checkpointed in the {@link WatchServiceFileTracker}.
  *
  * @author sanketsarang
  */
 @Component
-public class FileTailListener extends TailerListenerAdapter {
+public class FileTailListener {
 
     private static final Logger logger = LoggerFactory.getLogger(FileTailListener.class);
 
@@ -47,11 +50,14 @@ public class FileTailListener extends TailerListenerAdapter {
     private String collection;
     private String filePath;
     private String interpreter;
+    private long lineNo = 0;
 
     @Autowired @Lazy
     private CodeExecutor codeExecutor;
     @Autowired @Lazy
     private RequestHandlingBean requestHandlingBean;
+    @Autowired @Lazy
+    private WatchServiceFileTracker fileTracker;
 
 
     public void setParams(final String datastore, final String collection, final String interpreter, final String filePath){
@@ -61,28 +67,67 @@ public class FileTailListener extends TailerListenerAdapter {
         this.filePath = filePath;
     }
 
-    @Override
-    public void handle(String line){
-        JSONObject rowJson;
+    /**
+     * Sets the number of lines of the file committed before tailing starts
+     *
+     * @param lineNo number of lines already committed
+     */
+    public void setLineNo(final long lineNo) {
+        this.lineNo = lineNo;
+    }
+
+    /**
+     * Inserts a batch of lines and checkpoints the offset of the batch once the insert is committed
+     *
+     * @param lines the lines, in the order they appear in the file
+     * @param offset offset of the first byte after the last line of the batch
+     * @return <code>true</code> if the batch was committed; <code>false</code> if the insert failed and the batch must
+     * be handed over again
+     */
+    public boolean handle(final List<String> lines, final long offset) {
+        final List<JSONObject> rows = interpret(lines);
+        final List<Record> records = new ArrayList<>(rows.size());
+        rows.forEach(rowJson -> records.add(new JsonRecord(rowJson)));
+
+        logger.debug(filePath + "," + datastore + "," + collection + ": " + records.size() + " lines up to offset " + offset);
+        Query query = new Query().insertQuery(datastore, collection, records, RecordType.JSON);
+        Query response = requestHandlingBean.newRequest(query);
+        if (!response.isAckSuccess()) {
+            logger.error("Failed to insert " + lines.size() + " lines of " + filePath + " ending at offset " + offset
+                    + " into " + datastore + "." + collection + ". Offset not checkpointed");
+            return false;
+        }
+
+        lineNo += lines.size();
+        fileTracker.checkpoint(datastore, filePath, offset, lineNo);
+        return true;
+    }
+
+    /**
+     * Converts lines to rows with the interpreter in one call for the batch. Should the interpreter fail on the
+     * batch, lines are converted one at a time so that only the failing lines are inserted as empty rows.
+     */
+    private List<JSONObject> interpret(final List<String> lines) {
+        final List<JSONObject> rows = new ArrayList<>(lines.size());
+        if (interpreter == null) {
+            lines.forEach(line -> rows.add(new JSONObject().put("_txt", line)));
+            return rows;
+        }
 
-        if(line == null || line.isEmpty()) {
-            return;
+        try {
+            return codeExecutor.executeDataInterpreter(datastore, interpreter, new JSONArray(lines));
+        } catch (OperationException ex) {
+            logger.debug("Batch interpretation with " + interpreter + " failed for " + datastore + "." + collection + ". Interpreting line by line");
         }
 
-        if(interpreter == null) {
-            rowJson = new JSONObject();
-            rowJson.put("_txt", line);
-        } else {
+        for (String line : lines) {
             try {
-                rowJson = codeExecutor.executeDataInterpreter(datastore, interpreter, line);
+                rows.add(codeExecutor.executeDataInterpreter(datastore, interpreter, line));
             } catch (OperationException ex) {
                 logger.error("error in running " + interpreter + " for " + datastore + "." + collection + " watch service for line: " + line);
-                rowJson = new JSONObject();
+                rows.add(new JSONObject());
             }
         }
-
-        logger.debug(filePath + ","+datastore+","+collection+":"+rowJson.toString());
-        Query query = new Query().insertQuery(datastore, collection, Arrays.asList(new Record[]{new JsonRecord(rowJson)}), RecordType.JSON);
-        requestHandlingBean.newRequest(query);
+        return rows;
     }
 }
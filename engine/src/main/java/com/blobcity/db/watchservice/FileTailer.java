@@ -16,31 +16,295 @@
 
 package com.blobcity.db.watchservice;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
+ * <p>
+ * Tails a file from a byte offset and hands the lines appended to the file to a {@link FileTailListener} in batches.
+ * A batch is handed over once it holds <code>maxLines</code> lines or <code>maxBytes</code> bytes, or once its first
+ * line has waited for <code>maxLatency</code> milliseconds, whichever happens first. Every batch carries the offset of
+ * the first byte after its last line, so that tailing can resume from the last batch committed. Only complete lines
+ * are read; a line still being written is read once its line break is written.</p>
+ *
+ * <p>
+ * A batch the listener fails to commit is kept and handed over again, with the wait between attempts doubling up to
+ * {@link #MAX_RETRY_DELAY}. No further lines are read while a batch is failing, so lines are committed in file order
+ * and none are skipped. Should the tailer be stopped before the batch is committed, the checkpoint of the file still
+ * points at the last committed batch, from where tailing resumes.</p>
+ *
+ * <p>
+ * The file is held open between reads. Rotation is detected by the file key (the inode on POSIX file systems) of the
+ * path changing, upon which the rest of the old file is read before tailing moves to the new file from its start. A
+ * file truncated in place is detected by its length dropping below the read position.</p>
+ *
  * @author sanketsarang
  */
 public class FileTailer implements Runnable {
 
+    private static final Logger logger = LoggerFactory.getLogger(FileTailer.class);
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final long MAX_RETRY_DELAY = 60000;
+
+    private final File file;
+    private final FileTailListener listener;
+    private final long delay;
+    private final int maxLines;
+    private final int maxBytes;
+    private final long maxLatency;
+    private volatile boolean running = true;
+
+    /* Open handle on the file being read, and the file key it was opened with */
+    private RandomAccessFile reader;
+    private Object fileKey;
+
+    /* Offset of the first byte not yet read */
+    private long position;
+
+    private final List<String> batch = new ArrayList<>();
+    private int batchBytes = 0;
+    private long batchStart = 0;
+    private long batchEnd = 0;
+
+    /* Wait before the next attempt to commit a failed batch; 0 while batches are being committed */
+    private long retryDelay = 0;
+
+    /**
+     * @param file the file to tail
+     * @param offset offset of the first byte to read, which must be the start of a line
+     * @param listener listener receiving the batches of lines
+     * @param delay milliseconds to wait before checking the file again once all lines have been read
+     * @param maxLines maximum number of lines per batch
+     * @param maxBytes maximum number of bytes per batch
+     * @param maxLatency maximum milliseconds a line waits for its batch to fill up
+     */
+    public FileTailer(final File file, final long offset, final FileTailListener listener, final long delay,
+            final int maxLines, final int maxBytes, final long maxLatency) {
+        this.file = file;
+        this.position = offset;
+        this.listener = listener;
+        this.delay = delay;
+        this.maxLines = Math.max(1, maxLines);
+        this.maxBytes = Math.max(1, maxBytes);
+        this.maxLatency = maxLatency;
+    }
+
+    @Override
+    public void run() {
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[READ_BUFFER_SIZE];
+        try {
+            while (running) {
+                if (retryDelay > 0 && !flush()) {
+                    Thread.sleep(retryDelay);
+                    continue;
+                }
+
+                try {
+                    if (reader == null) {
+                        open();
+                    }
+                    if (reader != null) {
+                        read(line, buffer);
+                        if (retryDelay == 0) {
+                            checkReplaced(line, buffer);
+                        }
+                    }
+                } catch (IOException ex) {
+                    logger.error("Error reading tailed file " + file, ex);
+                    close();
+                }
 
-    public FileTailer(){
+                if (retryDelay == 0 && !batch.isEmpty() && System.currentTimeMillis() - batchStart >= maxLatency) {
+                    flush();
+                }
 
+                final long wait;
+                if (retryDelay > 0) {
+                    wait = retryDelay;
+                } else {
+                    wait = batch.isEmpty() ? delay : Math.min(delay, maxLatency - (System.currentTimeMillis() - batchStart));
+                }
+                if (wait > 0) {
+                    Thread.sleep(wait);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            flush();
+            close();
+        }
     }
 
+    /**
+     * Stops tailing. Lines read but not yet handed to the listener are handed over once more before the tailer exits.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * Opens the file if it exists. A file shorter than the read position was replaced or truncated while it was not
+     * being tailed, and is read from the start.
+     */
+    private void open() throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+
+        fileKey = fileKey();
+        reader = new RandomAccessFile(file, "r");
+        if (reader.length() < position) {
+            logger.info("File {} is shorter than the tail offset {}. Tailing from the start", file, position);
+            position = 0;
+        }
+        reader.seek(position);
+    }
+
+    /**
+     * Reads all complete lines available in the open file. Reading stops early if a batch fails to commit, leaving
+     * the read position just after the last line of the failed batch.
+     */
+    private void read(final ByteArrayOutputStream line, final byte[] buffer) throws IOException {
+        int read;
+        while (running && retryDelay == 0 && (read = reader.read(buffer)) > 0) {
+            int consumed = read;
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] == '\n') {
+                    add(line, position + i + 1);
+                    line.reset();
+                    if (retryDelay > 0) {
+                        consumed = i + 1;
+                        break;
+                    }
+                } else {
+                    line.write(buffer[i]);
+                }
+            }
+            position += consumed;
+        }
+
+        if (retryDelay > 0) {
+            line.reset();
+            reader.seek(position);
+        }
+    }
 
-    public void prep(){
-        FileTailer tailer = new FileTailer();
-        Thread thread  = new Thread(tailer);
-        thread.setDaemon(true);
-        thread.start();
+    /**
+     * Moves tailing to the start of the file if the path now refers to a new file, or if the file was truncated in
+     * place. A rotated file is read once more to its end, to pick up lines written to it just before the new file was
+     * created; a final line without a line break is then taken as complete, as nothing more will be written to it.
+     */
+    private void checkReplaced(final ByteArrayOutputStream line, final byte[] buffer) throws IOException {
+        final Object currentKey = fileKey();
+        final boolean rotated = currentKey != null && fileKey != null && !currentKey.equals(fileKey);
+        final boolean truncated = !rotated && file.exists() && file.length() < position;
+        if (!rotated && !truncated) {
+            return;
+        }
 
+        if (rotated) {
+            read(line, buffer);
+            if (retryDelay > 0) {
+                return;
+            }
+        }
+        if (rotated && line.size() > 0) {
+            add(line, position);
+        }
+        line.reset();
+        if (!flush()) {
+            return; //retried before the switch, so the old file is not left with uncommitted lines
+        }
+
+        logger.info("File {} was {}. Tailing from the start", file, rotated ? "rotated" : "truncated");
+        position = 0;
+        batchEnd = 0;
+        if (rotated) {
+            close();
+        } else {
+            reader.seek(0);
+        }
     }
 
-    public void stop(){
-        ;
+    private void add(final ByteArrayOutputStream bytes, final long lineEnd) {
+        String text = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        if (text.endsWith("\r")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        batchEnd = lineEnd;
+        if (text.isEmpty()) {
+            return;
+        }
+
+        if (batch.isEmpty()) {
+            batchStart = System.currentTimeMillis();
+        }
+        batch.add(text);
+        batchBytes += bytes.size();
+        if (batch.size() >= maxLines || batchBytes >= maxBytes) {
+            flush();
+        }
     }
 
+    /**
+     * Hands the batch to the listener
+     *
+     * @return <code>true</code> if the batch was committed or is empty; <code>false</code> if it is kept for a retry
+     */
+    private boolean flush() {
+        if (batch.isEmpty()) {
+            return true;
+        }
+
+        boolean committed;
+        try {
+            committed = listener.handle(new ArrayList<>(batch), batchEnd);
+        } catch (RuntimeException ex) {
+            logger.error("Error importing " + batch.size() + " lines of " + file, ex);
+            committed = false;
+        }
+
+        if (!committed) {
+            retryDelay = retryDelay == 0 ? Math.max(1, delay) : Math.min(retryDelay * 2, MAX_RETRY_DELAY);
+            logger.warn("Retrying {} lines of {} in {} ms", batch.size(), file, retryDelay);
+            return false;
+        }
 
-    public void run(){
+        retryDelay = 0;
+        batch.clear();
+        batchBytes = 0;
+        return true;
+    }
+
+    private Object fileKey() {
+        try {
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+        } catch (IOException ex) {
+            return null; //file is missing between rotations
+        }
+    }
 
+    private void close() {
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.close();
+        } catch (IOException ex) {
+            logger.debug("Error closing tailed file " + file, ex);
+        }
+        reader = null;
     }
 }
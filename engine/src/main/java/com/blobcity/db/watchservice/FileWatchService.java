@@ -16,7 +16,7 @@
 
 package com.blobcity.db.watchservice;
 
-import org.apache.commons.io.input.Tailer;
+import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -35,9 +35,14 @@ public class FileWatchService {
 
     private static final Logger logger = LoggerFactory.getLogger(FileWatchService.class);
 
+    /* Bounds of the batches of lines inserted together */
+    private static final int BATCH_LINES = 1000;
+    private static final int BATCH_BYTES = 1024 * 1024;
+    private static final long BATCH_LATENCY = 500;
+
     /* Full path to file */
     private String filePath;
-    private Tailer tailer;
+    private FileTailer tailer;
 
     private long lastModifiedTime;
     /* Whether to start from the end or beginning of file*/
@@ -51,6 +56,9 @@ public class FileWatchService {
 
     @Autowired
     private FileTailListener tailListener;
+    @Autowired
+    @Lazy
+    private WatchServiceFileTracker fileTracker;
 
 
     public FileWatchService(){
@@ -78,11 +86,24 @@ public class FileWatchService {
     }
 
     /**
-     * start the file watch service
+     * start the file watch service. Tailing resumes after the last batch of lines committed, if the file has been
+     * tailed before and has not been truncated since.
      */
     public void startService(){
         tailListener.setParams(datastore, collection, interpreter, filePath);
-        Tailer tailer = new Tailer(new File(filePath), tailListener, defaultTime, startFromEnd);
+
+        final File file = new File(filePath);
+        final JSONObject checkpoint = fileTracker.getCheckpoint(datastore, filePath);
+        long offset = 0;
+        if (startFromEnd) {
+            offset = file.length();
+        } else if (checkpoint != null && checkpoint.optLong("byteOffset", 0) <= file.length()) {
+            offset = checkpoint.optLong("byteOffset", 0);
+            tailListener.setLineNo(Long.parseLong(checkpoint.optString("lineNo", "0")));
+            logger.info("Resuming tail of {} from offset {}", filePath, offset);
+        }
+
+        FileTailer tailer = new FileTailer(file, offset, tailListener, defaultTime, BATCH_LINES, BATCH_BYTES, BATCH_LATENCY);
         Thread thread = new Thread(tailer);
         thread.setDaemon(true);
         thread.start();
@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.watchservice;
+
+import com.blobcity.db.bquery.SQLExecutorBean;
+import com.blobcity.db.bsql.BSqlDataManager;
+import com.blobcity.db.exceptions.OperationException;
+import com.blobcity.db.systemdb.SystemDBService;
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tracks the progress of files tailed by the watch service in the <code>WSFileTracker</code> table of the system
+ * database. The byte offset up to which a file has been imported is checkpointed after every committed batch of lines,
+ * so that tailing the file again resumes after the last committed line instead of importing the file from the start.
+ *
+ * @author sanketsarang
+ */
+@Component
+public class WatchServiceFileTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(WatchServiceFileTracker.class);
+
+    private static final String TABLE = "WSFileTracker";
+
+    @Autowired
+    @Lazy
+    private SystemDBService systemDBService;
+    @Autowired
+    @Lazy
+    private SQLExecutorBean sqlExecutor;
+    @Autowired
+    @Lazy
+    private BSqlDataManager dataManager;
+
+    /* ds + file to _id of the tracking record of the file */
+    private final Map<String, String> recordIds = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the checkpoint of a file
+     *
+     * @param ds name of datastore the file is imported into
+     * @param filePath absolute path of the file
+     * @return the tracking record of the file, holding <code>byteOffset</code> and <code>lineNo</code>;
+     * <code>null</code> if the file has no checkpoint
+     */
+    public JSONObject getCheckpoint(final String ds, final String filePath) {
+        systemDBService.createWatchServiceFileTrackerTable();
+        final JSONObject response = new JSONObject(sqlExecutor.executePrivileged(".systemdb", "select * from `.systemdb`.`"
+                + TABLE + "` where `ds`='" + escape(ds) + "' and `file`='" + escape(filePath) + "'"));
+        if (!"1".equals(response.optString("ack"))) {
+            logger.warn("Could not read watch service checkpoint of {}: {}", filePath, response.optString("cause"));
+            return null;
+        }
+
+        final JSONArray records = response.getJSONArray("p");
+        if (records.length() == 0) {
+            return null;
+        }
+        final JSONObject record = records.getJSONObject(0);
+        recordIds.put(key(ds, filePath), record.getString("_id"));
+        return record;
+    }
+
+    /**
+     * Records that all lines of a file up to an offset have been committed
+     *
+     * @param ds name of datastore the file is imported into
+     * @param filePath absolute path of the file
+     * @param offset offset of the first byte after the last committed line
+     * @param lineNo number of lines of the file committed
+     */
+    public void checkpoint(final String ds, final String filePath, final long offset, final long lineNo) {
+        final JSONObject record = new JSONObject();
+        record.put("ds", ds);
+        record.put("folder", new File(filePath).getParent());
+        record.put("file", filePath);
+        record.put("byteOffset", offset);
+        record.put("lineNo", String.valueOf(lineNo));
+        record.put("status", "tailing");
+
+        try {
+            final String _id = recordIds.get(key(ds, filePath));
+            if (_id != null) {
+                record.put("_id", _id);
+                dataManager.save(".systemdb", TABLE, record);
+            } else {
+                systemDBService.createWatchServiceFileTrackerTable();
+                recordIds.put(key(ds, filePath), dataManager.insert(".systemdb", TABLE, record).getString("_id"));
+            }
+        } catch (OperationException ex) {
+            logger.error("Could not checkpoint watch service offset " + offset + " of " + filePath, ex);
+        }
+    }
+
+    private static String key(final String ds, final String filePath) {
+        return ds + "/" + filePath;
+    }
+
+    private static String escape(final String value) {
+        return value.replace("'", "''");
+    }
+}
@@ -20,9 +20,11 @@ import com.blobcity.code.ExportServiceRouter;
 import com.blobcity.code.WebServiceExecutor;
 import com.blobcity.db.billing.BillingCron;
 import com.blobcity.db.billing.SelectActivityLog;
+import com.blobcity.db.bitmap.RowIdStore;
 import com.blobcity.db.bquery.*;
 import com.blobcity.db.bsql.*;
 import com.blobcity.db.cache.QueryResultCache;
+import com.blobcity.db.cache.StatementCache;
 import com.blobcity.db.code.webservices.WebServiceExecutorBean;
 import com.blobcity.db.export.ExportProcedureStore;
 import com.blobcity.db.export.ExportServiceRouterBean;
@@ -44,15 +46,22 @@ import com.blobcity.db.processors.ProcessorStore;
 import com.blobcity.db.requests.RequestHandlingBean;
 import com.blobcity.db.security.ApiKeyManager;
 import com.blobcity.db.spamdetect.SpamDetector;
+import com.blobcity.db.sql.join.JoinExecutor;
+import com.blobcity.db.sql.planner.QueryPlanner;
+import com.blobcity.db.sql.planner.StatisticsStore;
 import com.blobcity.db.sql.processing.*;
 import com.blobcity.db.sql.statements.*;
 import com.blobcity.db.storage.BSqlFileManager;
 import com.blobcity.db.storage.BSqlMemoryManager;
 import com.blobcity.db.storage.BSqlMemoryManagerOld;
+import com.blobcity.db.storage.SegmentedRecordStore;
 import com.blobcity.db.cache.CacheRules;
 import com.blobcity.db.cache.DataCache;
+import com.blobcity.db.cache.IndexCache;
 import com.blobcity.db.cli.statements.DDLStatement;
 import com.blobcity.db.cluster.ClusterNodesStore;
+import com.blobcity.db.cluster.RoutingTable;
+import com.blobcity.db.cluster.connection.ClusterTransport;
 import com.blobcity.db.cluster.connection.ConnectionManager;
 import com.blobcity.db.cluster.connection.ConnectionStore;
 import com.blobcity.db.master.MasterStore;
@@ -66,13 +75,13 @@ import com.blobcity.db.tableau.TableauTdeManager;
 import com.blobcity.db.transaction.CentralCommitLogWriter;
 import com.blobcity.db.transactions.TransactionStore;
 import com.blobcity.db.code.CodeExecutor;
+import com.blobcity.db.code.CodeInvocationCache;
 import com.blobcity.db.code.CodeLoader;
 import com.blobcity.db.code.filters.FilterParallelExecutor;
 import com.blobcity.db.code.LoaderStore;
 import com.blobcity.db.code.ManifestParserBean;
 import com.blobcity.db.code.datainterpreter.InterpreterExecutorBean;
 import com.blobcity.db.code.datainterpreter.InterpreterStoreBean;
-import com.blobcity.db.code.filters.ThreadRun;
 import com.blobcity.db.code.filters.FilterExecutorBean;
 import com.blobcity.db.code.filters.FilterStoreBean;
 import com.blobcity.db.code.procedures.ProcedureExecutorBean;
@@ -82,10 +91,12 @@ import com.blobcity.db.code.triggers.TriggerStoreBean;
 import com.blobcity.db.config.ConfigBean;
 import com.blobcity.db.data.RowCountManager;
 import com.blobcity.db.data.RowCountStore;
+import com.blobcity.db.export.CollectionExporter;
 import com.blobcity.db.export.CsvExporter;
 import com.blobcity.db.global.live.GlobalLiveManager;
 import com.blobcity.db.global.live.GlobalLiveStore;
 import com.blobcity.db.home.HomeReportingBean;
+import com.blobcity.db.importer.CsvBulkLoader;
 import com.blobcity.db.importer.CsvImporter;
 import com.blobcity.db.indexing.OnDiskBTreeIndex;
 import com.blobcity.db.lang.datatypes.converters.DoubleConverter;
@@ -122,6 +133,8 @@ import com.blobcity.db.systemdb.SystemDBService;
 import com.blobcity.db.security.UserManager;
 import com.blobcity.db.security.UserGroupManager;
 import com.blobcity.db.transaction.CollectionCommitLogWriter;
+import com.blobcity.db.transaction.CommitLogManager;
+import com.blobcity.db.transaction.CommitLogReader;
 import com.blobcity.db.transientstate.TransientStore;
 import com.blobcity.db.versioning.Version1to2;
 import com.blobcity.db.versioning.Version2to3;
@@ -642,6 +655,142 @@ public class EngineBeanConfig {
         return new ExportProcedureStore();
     }
 
+    @Bean
+    @Lazy
+    public SegmentedRecordStore segmentedRecordStore() { // singleton bean
+        logger.trace("Creating an instance of " + SegmentedRecordStore.class.getSimpleName());
+
+        return new SegmentedRecordStore();
+    }
+
+    @Bean(name = "OnDiskBPlusTreeIndex")
+    @Lazy
+    public OnDiskBPlusTreeIndex onDiskBPlusTreeIndex() { // singleton bean
+        logger.trace("Creating an instance of " + OnDiskBPlusTreeIndex.class.getSimpleName());
+
+        return new OnDiskBPlusTreeIndex();
+    }
+
+    @Bean
+    @Lazy
+    public CommitLogManager commitLogManager() { // singleton bean
+        logger.trace("Creating an instance of " + CommitLogManager.class.getSimpleName());
+
+        return new CommitLogManager();
+    }
+
+    @Bean
+    @Lazy
+    public CommitLogReader commitLogReader() { // singleton bean
+        logger.trace("Creating an instance of " + CommitLogReader.class.getSimpleName());
+
+        return new CommitLogReader();
+    }
+
+    @Bean
+    @Lazy
+    public IndexCache indexCache() { // singleton bean
+        logger.trace("Creating an instance of " + IndexCache.class.getSimpleName());
+
+        return new IndexCache();
+    }
+
+    @Bean
+    @Lazy
+    public ClusterTransport clusterTransport() { // singleton bean
+        logger.trace("Creating an instance of " + ClusterTransport.class.getSimpleName());
+
+        return new ClusterTransport();
+    }
+
+    @Bean
+    @Lazy
+    public RoutingTable routingTable() { // singleton bean
+        logger.trace("Creating an instance of " + RoutingTable.class.getSimpleName());
+
+        return new RoutingTable();
+    }
+
+    @Bean
+    @Lazy
+    public StatisticsStore statisticsStore() { // singleton bean
+        logger.trace("Creating an instance of " + StatisticsStore.class.getSimpleName());
+
+        return new StatisticsStore();
+    }
+
+    @Bean
+    @Lazy
+    public QueryPlanner queryPlanner() { // singleton bean
+        logger.trace("Creating an instance of " + QueryPlanner.class.getSimpleName());
+
+        return new QueryPlanner();
+    }
+
+    @Bean
+    @Lazy
+    public RowIdStore rowIdStore() { // singleton bean
+        logger.trace("Creating an instance of " + RowIdStore.class.getSimpleName());
+
+        return new RowIdStore();
+    }
+
+    @Bean
+    @Lazy
+    public JoinExecutor joinExecutor() { // singleton bean
+        logger.trace("Creating an instance of " + JoinExecutor.class.getSimpleName());
+
+        return new JoinExecutor();
+    }
+
+    @Bean
+    @Lazy
+    public StatementCache statementCache() { // singleton bean
+        logger.trace("Creating an instance of " + StatementCache.class.getSimpleName());
+
+        return new StatementCache();
+    }
+
+    @Bean
+    @Lazy
+    public OnlineIndexBuilder onlineIndexBuilder() { // singleton bean
+        logger.trace("Creating an instance of " + OnlineIndexBuilder.class.getSimpleName());
+
+        return new OnlineIndexBuilder();
+    }
+
+    @Bean
+    @Lazy
+    public CsvBulkLoader csvBulkLoader() { // singleton bean
+        logger.trace("Creating an instance of " + CsvBulkLoader.class.getSimpleName());
+
+        return new CsvBulkLoader();
+    }
+
+    @Bean
+    @Lazy
+    public WatchServiceFileTracker watchServiceFileTracker() { // singleton bean
+        logger.trace("Creating an instance of " + WatchServiceFileTracker.class.getSimpleName());
+
+        return new WatchServiceFileTracker();
+    }
+
+    @Bean
+    @Lazy
+    public CollectionExporter collectionExporter() { // singleton bean
+        logger.trace("Creating an instance of " + CollectionExporter.class.getSimpleName());
+
+        return new CollectionExporter();
+    }
+
+    @Bean
+    @Lazy
+    public CodeInvocationCache codeInvocationCache() { // singleton bean
+        logger.trace("Creating an instance of " + CodeInvocationCache.class.getSimpleName());
+
+        return new CodeInvocationCache();
+    }
+
     /*
      * Lazy Singletons: End
      */
@@ -890,12 +1039,6 @@ public class EngineBeanConfig {
         return new FilterParallelExecutor();
     }
 
-    @Bean
-    @Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
-    public ThreadRun threadRun() {
-        return new ThreadRun();
-    }
-
     @Bean
     @Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
     public QueryExecutorImpl queryExecutor() { // stateless/stateful bean
@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.bitmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author sanketsarang
+ */
+public class RoaringBitmapTest {
+
+    @Test
+    public void testAddRemove() {
+        final RoaringBitmap bitmap = RoaringBitmap.of(5, 1, 70000, 5);
+        assertEquals(3, bitmap.getCardinality());
+        assertTrue(bitmap.contains(70000));
+        assertFalse(bitmap.contains(2));
+
+        bitmap.remove(70000);
+        bitmap.remove(3);
+        assertEquals(2, bitmap.getCardinality());
+        assertFalse(bitmap.contains(70000));
+
+        bitmap.remove(1);
+        bitmap.remove(5);
+        assertTrue(bitmap.isEmpty());
+    }
+
+    @Test
+    public void testDenseContainers() {
+        final RoaringBitmap bitmap = new RoaringBitmap();
+        for (int i = 0; i < 10000; i++) {
+            bitmap.add(i * 2);
+        }
+        assertEquals(10000, bitmap.getCardinality());
+        assertTrue(bitmap.contains(19998));
+        assertFalse(bitmap.contains(19999));
+
+        /* Falls back to a sorted array once the container is sparse again */
+        for (int i = 100; i < 10000; i++) {
+            bitmap.remove(i * 2);
+        }
+        assertEquals(100, bitmap.getCardinality());
+        assertTrue(bitmap.contains(198));
+        assertFalse(bitmap.contains(200));
+        assertEquals(RoaringBitmap.of(range(0, 200, 2)), bitmap);
+    }
+
+    @Test
+    public void testSetOperations() {
+        final BitSet left = new BitSet();
+        final BitSet right = new BitSet();
+        final RoaringBitmap leftBitmap = new RoaringBitmap();
+        final RoaringBitmap rightBitmap = new RoaringBitmap();
+        for (int i = 0; i < 200000; i += 3) {
+            left.set(i);
+            leftBitmap.add(i);
+        }
+        for (int i = 0; i < 200000; i += 7) {
+            right.set(i);
+            rightBitmap.add(i);
+        }
+        for (int i = 300000; i < 300010; i++) {
+            right.set(i);
+            rightBitmap.add(i);
+        }
+
+        final BitSet and = (BitSet) left.clone();
+        and.and(right);
+        final BitSet or = (BitSet) left.clone();
+        or.or(right);
+        final BitSet andNot = (BitSet) left.clone();
+        andNot.andNot(right);
+
+        assertEquals(toBitmap(and), leftBitmap.and(rightBitmap));
+        assertEquals(toBitmap(or), leftBitmap.or(rightBitmap));
+        assertEquals(toBitmap(andNot), leftBitmap.andNot(rightBitmap));
+        assertEquals(left.cardinality(), leftBitmap.getCardinality());
+    }
+
+    @Test
+    public void testIterationOrder() {
+        final RoaringBitmap bitmap = RoaringBitmap.of(131072, 7, 65536, 3, 65535);
+        final List<Integer> values = new ArrayList<>();
+        final PrimitiveIterator.OfInt iterator = bitmap.iterator();
+        while (iterator.hasNext()) {
+            values.add(iterator.nextInt());
+        }
+        assertEquals(Arrays.asList(3, 7, 65535, 65536, 131072), values);
+
+        final List<Integer> visited = new ArrayList<>();
+        bitmap.forEach(visited::add);
+        assertEquals(values, visited);
+    }
+
+    @Test
+    public void testRowIdMapping() {
+        final RowIdMapping mapping = new RowIdMapping();
+        final List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 70000; i++) {
+            keys.add("key-" + i);
+        }
+        final RoaringBitmap all = mapping.toBitmap(keys.iterator());
+        assertEquals(70000, all.getCardinality());
+        assertEquals(70000, mapping.size());
+        assertEquals(mapping.idOf("key-42"), mapping.idOf("key-42"));
+        assertEquals("key-69999", mapping.keyOf(mapping.idOf("key-69999")));
+
+        final RoaringBitmap some = mapping.toBitmap(Arrays.asList("key-10", "key-69000", "key-10").iterator());
+        final List<String> remaining = new ArrayList<>();
+        final Iterator<String> iterator = mapping.toKeys(all.andNot(some));
+        iterator.forEachRemaining(remaining::add);
+        assertEquals(69998, remaining.size());
+        assertFalse(remaining.contains("key-10"));
+        assertFalse(remaining.contains("key-69000"));
+        assertEquals(70000, mapping.size());
+    }
+
+    @Test
+    public void testRowIdRelease() {
+        final RowIdMapping mapping = new RowIdMapping();
+        final RoaringBitmap all = mapping.toBitmap(Arrays.asList("a", "b", "c").iterator());
+        final int id = mapping.idOf("b");
+        assertEquals(1, mapping.release("b"));
+        assertEquals(-1, mapping.release("b"));
+        assertNull(mapping.keyOf(id));
+
+        final List<String> remaining = new ArrayList<>();
+        mapping.toKeys(all).forEachRemaining(remaining::add);
+        assertEquals(Arrays.asList("a", "c"), remaining);
+
+        /* A key inserted again gets a new id, so older bitmaps never resolve to it */
+        assertEquals(3, mapping.idOf("b"));
+        assertEquals(4, mapping.size());
+    }
+
+    @Test
+    public void testRowIdStore() {
+        final RowIdStore store = new RowIdStore();
+        final RowIdMapping mapping = store.getMapping("ds", "c");
+        assertSame(mapping, store.getMapping("ds", "c"));
+        for (int i = 0; i < 131072; i++) {
+            mapping.idOf("key-" + i);
+        }
+
+        /* Replaced only once half of its ids are released */
+        for (int i = 0; i < 65535; i++) {
+            store.release("ds", "c", "key-" + i);
+        }
+        assertSame(mapping, store.getMapping("ds", "c"));
+        store.release("ds", "c", "key-65535");
+        assertNotSame(mapping, store.getMapping("ds", "c"));
+        assertEquals("key-70000", mapping.keyOf(70000));
+
+        final RowIdMapping other = store.getMapping("ds.c", "d");
+        store.invalidate("ds");
+        assertSame(other, store.getMapping("ds.c", "d"));
+        assertNotSame(mapping, store.getMapping("ds", "c"));
+
+        /* Mappings not handed out since the eviction time are dropped */
+        store.evictUnusedSince(0);
+        assertSame(other, store.getMapping("ds.c", "d"));
+        store.evictUnusedSince(System.currentTimeMillis() + 1);
+        assertNotSame(other, store.getMapping("ds.c", "d"));
+    }
+
+    private static int[] range(final int from, final int to, final int step) {
+        final int[] values = new int[(to - from + step - 1) / step];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = from + i * step;
+        }
+        return values;
+    }
+
+    private static RoaringBitmap toBitmap(final BitSet bitSet) {
+        final RoaringBitmap bitmap = new RoaringBitmap();
+        bitSet.stream().forEach(bitmap::add);
+        return bitmap;
+    }
+}
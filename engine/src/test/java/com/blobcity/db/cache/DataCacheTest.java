@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.cache;
+
+import java.lang.reflect.Field;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author sanketsarang
+ */
+public class DataCacheTest {
+
+    private DataCache dataCache;
+
+    @Before
+    public void setUp() throws Exception {
+        dataCache = new DataCache();
+        final Field field = DataCache.class.getDeclaredField("cache");
+        field.setAccessible(true);
+        field.set(dataCache, new SegmentedLruCache<String, String>(1024 * 1024, CacheSizing::weigh));
+    }
+
+    @Test
+    public void testInvalidateTable() {
+        dataCache.cache("app", "table", "1", "{}");
+        dataCache.cache("app", "table-archive", "1", "{}");
+        dataCache.cache("app-table", "archive", "1", "{}");
+
+        dataCache.invalidate("app", "table");
+        assertNull(dataCache.load("app", "table", "1"));
+        assertEquals("{}", dataCache.load("app", "table-archive", "1"));
+        assertEquals("{}", dataCache.load("app-table", "archive", "1"));
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author sanketsarang
+ */
+public class SegmentedLruCacheTest {
+
+    @Test
+    public void testHitsAndMisses() {
+        final SegmentedLruCache<String, String> cache = new SegmentedLruCache<>(1024 * 1024, (k, v) -> 100);
+        cache.put("a", "1");
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        cache.remove("a");
+        assertNull(cache.get("a"));
+
+        CacheStats stats = cache.getStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(2, stats.getMisses());
+        assertEquals(0, stats.getEntries());
+        assertEquals(0, stats.getBytes());
+    }
+
+    @Test
+    public void testByteBudget() {
+        final List<String> evicted = new ArrayList<>();
+        final SegmentedLruCache<Integer, String> cache = new SegmentedLruCache<>(16 * 1000, (k, v) -> 100,
+                (k, v) -> evicted.add(v));
+        for (int i = 0; i < 10000; i++) {
+            cache.put(i, "v" + i);
+        }
+
+        assertTrue(cache.weightedSize() <= 16 * 1000);
+        assertEquals(cache.size() * 100, cache.weightedSize());
+        assertEquals(10000 - cache.size(), cache.getStats().getEvictions());
+        assertEquals(10000 - cache.size(), evicted.size());
+
+        /* Entries heavier than a partition are never cached */
+        final SegmentedLruCache<Integer, String> small = new SegmentedLruCache<>(1600, (k, v) -> 1000);
+        small.put(1, "big");
+        assertNull(small.get(1));
+    }
+
+    @Test
+    public void testScanResistance() {
+        /* Single partition worth of keys: all keys below map to partition 0 */
+        final SegmentedLruCache<Integer, String> cache = new SegmentedLruCache<>(16 * 1000, (k, v) -> 100);
+        final int hot = 0;
+        cache.put(hot, "hot");
+        cache.get(hot); //promoted to protected
+
+        /* Scan through many one-off keys of the same partition */
+        for (int i = 1; i < 1000; i++) {
+            cache.put(i * 16, "cold" + i);
+        }
+        assertEquals("hot", cache.get(hot));
+    }
+
+    @Test
+    public void testRemoveIf() {
+        final SegmentedLruCache<String, String> cache = new SegmentedLruCache<>(1024 * 1024, CacheSizing::weigh);
+        cache.put("ds-t1-1", "a");
+        cache.put("ds-t1-2", "b");
+        cache.put("ds-t2-1", "c");
+        cache.get("ds-t1-1");
+        cache.removeIf(key -> key.startsWith("ds-t1-"));
+        assertEquals(1, cache.size());
+        assertEquals("c", cache.get("ds-t2-1"));
+        assertEquals(CacheSizing.weigh("ds-t2-1", "c"), cache.weightedSize());
+    }
+
+    @Test
+    public void testConcurrentAccess() throws InterruptedException {
+        final SegmentedLruCache<Integer, String> cache = new SegmentedLruCache<>(64 * 1000, (k, v) -> 100);
+        final ExecutorService executorService = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            final int seed = t;
+            executorService.submit(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    final int key = (i * 31 + seed) % 2000;
+                    if (cache.get(key) == null) {
+                        cache.put(key, "v" + key);
+                    }
+                }
+            });
+        }
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(30, TimeUnit.SECONDS));
+        assertTrue(cache.weightedSize() <= 64 * 1000);
+        assertEquals(cache.size() * 100, cache.weightedSize());
+        assertEquals(8 * 20000, cache.getStats().getHits() + cache.getStats().getMisses());
+    }
+}
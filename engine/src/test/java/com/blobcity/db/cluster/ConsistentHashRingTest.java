@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.cluster;
+
+import java.util.Arrays;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author sanketsarang
+ */
+public class ConsistentHashRingTest {
+
+    @Test
+    public void testDistinctReplicas() {
+        final ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("n1", "n2", "n3", "n4"));
+        for (int i = 0; i < 1000; i++) {
+            final Set<String> nodes = ring.getNodes("key-" + i, 3);
+            assertEquals(3, nodes.size());
+        }
+        assertEquals(4, ring.getNodes("key", 10).size());
+    }
+
+    @Test
+    public void testDeterministic() {
+        final ConsistentHashRing first = new ConsistentHashRing(Arrays.asList("n1", "n2", "n3"));
+        final ConsistentHashRing second = new ConsistentHashRing(Arrays.asList("n3", "n1", "n2"));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(first.getNodes("key-" + i, 2), second.getNodes("key-" + i, 2));
+        }
+    }
+
+    @Test
+    public void testLimitedMovementOnNodeAdd() {
+        final ConsistentHashRing before = new ConsistentHashRing(Arrays.asList("n1", "n2", "n3", "n4"));
+        final ConsistentHashRing after = new ConsistentHashRing(Arrays.asList("n1", "n2", "n3", "n4", "n5"));
+        int moved = 0;
+        final int keys = 10000;
+        for (int i = 0; i < keys; i++) {
+            final String owner = after.getNodes("key-" + i, 1).iterator().next();
+            if (!owner.equals(before.getNodes("key-" + i, 1).iterator().next())) {
+                assertEquals("n5", owner);
+                moved++;
+            }
+        }
+        assertTrue(moved > keys / 10);
+        assertTrue(moved < keys / 3);
+    }
+
+    @Test
+    public void testEmptyRing() {
+        assertTrue(new ConsistentHashRing(Arrays.asList()).getNodes("key", 2).isEmpty());
+    }
+}
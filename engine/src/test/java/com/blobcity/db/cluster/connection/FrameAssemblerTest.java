@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.cluster.connection;
+
+import com.blobcity.db.exceptions.OperationException;
+import com.blobcity.lib.query.Query;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.json.JSONObject;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ *
+ * @author sanketsarang
+ */
+public class FrameAssemblerTest {
+
+    @Test
+    public void testInterleavedFrames() throws IOException {
+        final byte[] large = payload(2 * Frames.MAX_FRAME_PAYLOAD + 10, (byte) 1);
+        final byte[] small = payload(20, (byte) 2);
+
+        /* Stream 1 is split into three frames with stream 2 in between, and a frame is cut across two reads */
+        final ByteBuffer frames = ByteBuffer.allocate(large.length + small.length + 4 * Frames.HEADER_SIZE);
+        frames.put(Frames.header(Frames.MAX_FRAME_PAYLOAD, 1, Frames.QUERY, (byte) 0)).put(large, 0, Frames.MAX_FRAME_PAYLOAD);
+        frames.put(Frames.header(small.length, 2, Frames.TEXT, Frames.FLAG_END)).put(small);
+        frames.put(Frames.header(Frames.MAX_FRAME_PAYLOAD, 1, Frames.QUERY, (byte) 0)).put(large, Frames.MAX_FRAME_PAYLOAD, Frames.MAX_FRAME_PAYLOAD);
+        frames.put(Frames.header(10, 1, Frames.QUERY, Frames.FLAG_END)).put(large, 2 * Frames.MAX_FRAME_PAYLOAD, 10);
+        frames.flip();
+
+        final FrameAssembler assembler = new FrameAssembler();
+        final List<byte[]> messages = new ArrayList<>();
+        final List<Byte> types = new ArrayList<>();
+        final FrameAssembler.MessageHandler handler = (type, flags, payload) -> {
+            types.add(type);
+            messages.add(payload);
+        };
+
+        final ByteBuffer first = frames.duplicate();
+        first.limit(frames.limit() - 5);
+        assembler.read(first, handler);
+        assertEquals(frames.limit() - 10 - Frames.HEADER_SIZE, first.position());
+        assertEquals(1, messages.size());
+        assertArrayEquals(small, messages.get(0));
+
+        frames.position(first.position());
+        assembler.read(frames, handler);
+        assertFalse(frames.hasRemaining());
+        assertEquals(Arrays.asList(Frames.TEXT, Frames.QUERY), types);
+        assertArrayEquals(large, messages.get(1));
+    }
+
+    @Test
+    public void testInvalidFrameLength() {
+        final ByteBuffer frame = Frames.header(Frames.MAX_FRAME_PAYLOAD + 1, 1, Frames.QUERY, Frames.FLAG_END);
+        try {
+            new FrameAssembler().read(frame, (type, flags, payload) -> fail("No message expected"));
+            fail("Expected a frame longer than the maximum payload to be rejected");
+        } catch (IOException ex) {
+            //expected
+        }
+    }
+
+    @Test
+    public void testOversizedMessage() throws IOException {
+        final FrameAssembler assembler = new FrameAssembler();
+        final byte[] payload = new byte[Frames.MAX_FRAME_PAYLOAD];
+        final ByteBuffer frame = ByteBuffer.allocate(Frames.HEADER_SIZE + payload.length);
+        try {
+            for (int i = 0; i <= Frames.MAX_MESSAGE_SIZE / Frames.MAX_FRAME_PAYLOAD; i++) {
+                frame.clear();
+                frame.put(Frames.header(payload.length, 1, Frames.QUERY, (byte) 0)).put(payload).flip();
+                assembler.read(frame, (type, flags, message) -> fail("No message expected"));
+            }
+            fail("Expected a message longer than the maximum message size to be rejected");
+        } catch (IOException ex) {
+            //expected
+        }
+    }
+
+    @Test
+    public void testSmallMessageOvertakesLargeMessage() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (ServerSocketChannel server = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+                SocketChannel client = SocketChannel.open(server.getLocalAddress());
+                SocketChannel accepted = server.accept();
+                Selector selector = Selector.open()) {
+            client.configureBlocking(false);
+            final ClusterConnection connection = new ClusterConnection(client, mock(ClusterTransport.class), "a", "b");
+            connection.setSelectionKey(client.register(selector, SelectionKey.OP_READ));
+
+            final JSONObject large = new JSONObject().put("data", new String(new char[3 * Frames.MAX_FRAME_PAYLOAD]).replace('\0', 'x'));
+            connection.sendMessage(new Query().requestId("large").payload(large));
+            connection.sendMessage(new Query().requestId("small"));
+
+            /* The receiving end reads frames off the socket until both messages are complete */
+            final Future<List<String>> received = executor.submit(() -> {
+                final FrameAssembler assembler = new FrameAssembler();
+                final List<String> requestIds = new ArrayList<>();
+                final ByteBuffer buffer = ByteBuffer.allocate(Frames.HEADER_SIZE + Frames.MAX_FRAME_PAYLOAD);
+                while (requestIds.size() < 2 && accepted.read(buffer) >= 0) {
+                    buffer.flip();
+                    assembler.read(buffer, (type, flags, payload) -> {
+                        try {
+                            requestIds.add(QueryCodec.decode(payload).getRequestId());
+                        } catch (OperationException ex) {
+                            throw new IOException(ex.getMessage(), ex);
+                        }
+                    });
+                    buffer.compact();
+                }
+                return requestIds;
+            });
+
+            while (connection.hasPendingWrites()) {
+                connection.onWritable();
+            }
+            assertEquals(Arrays.asList("small", "large"), received.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] payload(final int length, final byte seed) {
+        final byte[] payload = new byte[length];
+        for (int i = 0; i < length; i++) {
+            payload[i] = (byte) (seed + i);
+        }
+        return payload;
+    }
+}
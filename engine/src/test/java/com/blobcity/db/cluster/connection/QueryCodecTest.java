@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.cluster.connection;
+
+import com.blobcity.db.exceptions.OperationException;
+import com.blobcity.lib.query.Query;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author sanketsarang
+ */
+public class QueryCodecTest {
+
+    @Test
+    public void testRoundTrip() throws OperationException {
+        final JSONArray records = new JSONArray();
+        for (int i = 0; i < 100; i++) {
+            records.put(new JSONObject()
+                    .put("_id", "id" + i)
+                    .put("quantity", -i)
+                    .put("price", new BigDecimal("-12.50").add(BigDecimal.valueOf(i)))
+                    .put("tags", new JSONArray().put("a").put(JSONObject.NULL).put(new JSONArray().put(i)))
+                    .put("address", new JSONObject().put("city", "Zürich").put("zip", i)));
+        }
+        final JSONObject payload = new JSONObject()
+                .put("records", records)
+                .put("min", Long.MIN_VALUE)
+                .put("max", Long.MAX_VALUE)
+                .put("negative", Integer.MIN_VALUE)
+                .put("ratio", -0.25)
+                .put("flag", true)
+                .put("none", JSONObject.NULL)
+                .put("empty", new JSONObject())
+                .put("text", "");
+        final Query query = new Query().requestId("r1").payload(payload);
+
+        final byte[] bytes = QueryCodec.encode(query);
+        final Query decoded = QueryCodec.decode(bytes);
+        assertTrue(query.toJson().similar(decoded.toJson()));
+        assertEquals(Long.MIN_VALUE, ((JSONObject) decoded.getPayload()).getLong("min"));
+        assertEquals(new BigDecimal("-12.50"), ((JSONObject) decoded.getPayload()).getJSONArray("records")
+                .getJSONObject(0).get("price"));
+
+        /* Keys repeated across the records are written once */
+        assertEquals(1, occurrences(bytes, "quantity".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(1, occurrences(bytes, "city".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testMalformed() throws OperationException {
+        final byte[] bytes = QueryCodec.encode(new Query().requestId("r1").payload(new JSONObject().put("a", "value")));
+        assertMalformed(Arrays.copyOf(bytes, bytes.length - 1));
+        assertMalformed(new byte[0]);
+
+        /* Unknown value tag */
+        assertMalformed(new byte[]{42});
+
+        /* Top level value that is not an object */
+        assertMalformed(new byte[]{5, 1, 'a'});
+
+        /* Object of one entry whose key refers to a key never written */
+        assertMalformed(new byte[]{7, 1, 3, 0});
+
+        /* String longer than the message */
+        assertMalformed(new byte[]{7, 1, 0, 100, 'a'});
+
+        /* Varint that does not terminate */
+        final byte[] varint = new byte[12];
+        Arrays.fill(varint, (byte) 0xFF);
+        varint[0] = 3;
+        assertMalformed(varint);
+    }
+
+    private static void assertMalformed(final byte[] bytes) {
+        try {
+            QueryCodec.decode(bytes);
+            fail("Expected malformed message to be rejected");
+        } catch (OperationException ex) {
+            //expected
+        }
+    }
+
+    private static int occurrences(final byte[] bytes, final byte[] pattern) {
+        int count = 0;
+        for (int i = 0; i + pattern.length <= bytes.length; i++) {
+            int j = 0;
+            while (j < pattern.length && bytes[i + j] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
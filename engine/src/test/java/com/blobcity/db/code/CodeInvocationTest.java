@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.code;
+
+import com.blobcity.db.exceptions.OperationException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONObject;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author sanketsarang
+ */
+public class CodeInvocationTest {
+
+    @Test
+    public void testInvocation() throws Throwable {
+        final CodeInvocation invocation = CodeInvocation.compile(Counting.class, "afterInsert", JSONObject.class);
+        assertFalse(invocation.isShared());
+        assertSame(Counting.class, invocation.getDeclaringClass());
+
+        final Object first = invocation.instance();
+        assertNotSame(first, invocation.instance());
+        assertEquals("1", invocation.invoke(first, new JSONObject().put("id", 1)));
+        assertEquals("2", invocation.invoke(first, new JSONObject().put("id", 2)));
+
+        final CodeInvocation update = CodeInvocation.compile(Counting.class, "afterUpdate", JSONObject.class, JSONObject.class);
+        assertEquals("1>2", update.invoke(update.instance(), new JSONObject().put("id", 1), new JSONObject().put("id", 2)));
+
+        final CodeInvocation shared = CodeInvocation.compile(Shared.class, "interpret", String.class);
+        assertTrue(shared.isShared());
+        assertSame(shared.instance(), shared.instance());
+        assertEquals("a", ((JSONObject) shared.invoke(shared.instance(), "a")).getString("row"));
+        assertNotSame(shared.instance(), shared.newInstance());
+    }
+
+    @Test
+    public void testCache() throws OperationException {
+        final CodeInvocationCache cache = new CodeInvocationCache();
+        final AtomicInteger resolved = new AtomicInteger();
+        final CodeInvocationCache.ClassResolver resolver = () -> {
+            resolved.incrementAndGet();
+            return Shared.class;
+        };
+
+        final CodeInvocation invocation = cache.get("ds", "shared", resolver, "interpret", String.class);
+        assertSame(invocation, cache.get("ds", "shared", resolver, "interpret", String.class));
+        assertNull(cache.find("ds", "shared", resolver, "interpret", Integer.class));
+        assertNull(cache.find("ds", "shared", resolver, "interpret", Integer.class));
+        assertEquals(2, resolved.get());
+
+        try {
+            cache.get("ds", "shared", resolver, "missing", String.class);
+            fail("Expected an OperationException for a method the class does not declare");
+        } catch (OperationException ex) {
+            //expected
+        }
+
+        cache.invalidate("ds");
+        assertNotSame(invocation, cache.get("ds", "shared", resolver, "interpret", String.class));
+    }
+
+    @Test
+    public void testCacheByClass() throws Exception {
+        final CodeInvocationCache cache = new CodeInvocationCache();
+        final CodeInvocation invocation = cache.get("ds", Counting.class, "afterInsert", JSONObject.class);
+        assertSame(invocation, cache.get("ds", Counting.class, "afterInsert", JSONObject.class));
+
+        /* Another version of the class with the same name, as loaded by a new class loader of the datastore */
+        final Class<?> reloaded = new Reloader().reload(Counting.class);
+        assertNotSame(Counting.class, reloaded);
+        assertSame(reloaded, cache.get("ds", reloaded, "afterInsert", JSONObject.class).getDeclaringClass());
+        assertSame(Counting.class, cache.get("ds", Counting.class, "afterInsert", JSONObject.class).getDeclaringClass());
+    }
+
+    /**
+     * Defines a class again from its class file, giving a distinct class of the same name
+     */
+    private static class Reloader extends ClassLoader {
+
+        private Reloader() {
+            super(CodeInvocationTest.class.getClassLoader());
+        }
+
+        private Class<?> reload(final Class<?> clazz) throws IOException {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (InputStream in = getParent().getResourceAsStream(clazz.getName().replace('.', '/') + ".class")) {
+                final byte[] buffer = new byte[4096];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    bytes.write(buffer, 0, read);
+                }
+            }
+            return defineClass(clazz.getName(), bytes.toByteArray(), 0, bytes.size());
+        }
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    private @interface ThreadSafe {
+    }
+
+    public static class Counting {
+
+        private final List<Object> seen = new ArrayList<>();
+
+        public String afterInsert(final JSONObject jsonObject) {
+            seen.add(jsonObject.get("id"));
+            return String.valueOf(seen.size());
+        }
+
+        public String afterUpdate(final JSONObject oldObject, final JSONObject newObject) {
+            return oldObject.get("id") + ">" + newObject.get("id");
+        }
+    }
+
+    @ThreadSafe
+    public static class Shared {
+
+        public JSONObject interpret(final String row) {
+            return new JSONObject().put("row", row);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.code.filters;
+
+import com.blobcity.db.exceptions.ErrorCode;
+import com.blobcity.db.exceptions.OperationException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.json.JSONObject;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author sanketsarang
+ */
+public class FilterScanTest {
+
+    @Test
+    public void testScan() {
+        /* Fewer threads than the workers of a scan */
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            /* Key 13 is deleted while the scan runs and only even ids qualify */
+            final List<FilterScan.RecordFilter> filters = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                filters.add(record -> record.getInt("id") % 2 == 0);
+            }
+            final FilterScan scan = new FilterScan(keys(5000).iterator(), key -> key.equals("13") ? null
+                    : new JSONObject().put("id", Integer.parseInt(key)), filters, 0, executor);
+            final Set<String> matched = new HashSet<>();
+            scan.forEachRemaining(key -> assertTrue(matched.add(key)));
+            scan.close();
+            assertEquals(2500, matched.size());
+            assertTrue(matched.contains("4998"));
+            assertFalse(scan.isLimitReached());
+
+            /* The result limit stops the scan */
+            final FilterScan limited = new FilterScan(keys(5000).iterator(), key -> new JSONObject().put("id", Integer.parseInt(key)),
+                    filters, 10, executor);
+            int count = 0;
+            while (limited.hasNext()) {
+                limited.next();
+                count++;
+            }
+            assertEquals(10, count);
+            assertTrue(limited.isLimitReached());
+
+            /* Exactly as many matches as the limit do not exceed it */
+            final FilterScan exact = new FilterScan(keys(10).iterator(), key -> new JSONObject().put("id", Integer.parseInt(key)),
+                    filters, 5, executor);
+            exact.forEachRemaining(key -> {
+            });
+            assertFalse(exact.isLimitReached());
+
+            /* Empty collection */
+            assertFalse(new FilterScan(new ArrayList<String>().iterator(), key -> null, filters, 0, executor).hasNext());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailure() {
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            final List<FilterScan.RecordFilter> filters = new ArrayList<>();
+            filters.add(record -> {
+                if (record.getInt("id") == 700) {
+                    throw new OperationException(ErrorCode.FILTER_EXECUTION_ERROR, "failed on 700");
+                }
+                return true;
+            });
+            final FilterScan scan = new FilterScan(keys(1000).iterator(), key -> new JSONObject().put("id", Integer.parseInt(key)),
+                    filters, 0, executor);
+            try {
+                scan.forEachRemaining(key -> {
+                });
+                fail("Expected the failure of the filter to surface");
+            } catch (IllegalStateException ex) {
+                assertTrue(ex.getCause() instanceof OperationException);
+            }
+            assertFalse(scan.hasNext());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<String> keys(final int count) {
+        final List<String> keys = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            keys.add(String.valueOf(i));
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.export;
+
+import au.com.bytecode.opencsv.CSVReader;
+import com.blobcity.db.bsql.BSqlDataManager;
+import com.blobcity.db.exceptions.ErrorCode;
+import com.blobcity.db.exceptions.OperationException;
+import com.blobcity.db.lang.columntypes.FieldTypeFactory;
+import com.blobcity.db.schema.AutoDefineTypes;
+import com.blobcity.db.schema.Column;
+import com.blobcity.db.schema.IndexTypes;
+import com.blobcity.db.schema.Schema;
+import com.blobcity.db.schema.beans.SchemaStore;
+import com.blobcity.db.sql.pipeline.ScanExecutor;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * @author sanketsarang
+ */
+public class CollectionExporterTest {
+
+    private static final String DS = "ds";
+    private static final String COLLECTION = "people";
+    private static final int ROWS = 3000;
+
+    /* Record 7 can no longer be read */
+    private static final String MISSING = "7";
+
+    private CollectionExporter exporter;
+    private ExecutorService executorService;
+
+    @Before
+    public void setUp() throws Exception {
+        final Schema schema = new Schema();
+        schema.setPrimary("_id");
+        schema.getColumnMap().put("_id", new Column("_id", FieldTypeFactory.fromString("string"), IndexTypes.UNIQUE, AutoDefineTypes.NONE));
+        schema.getColumnMap().put("name", new Column("name", FieldTypeFactory.fromString("string"), IndexTypes.NONE, AutoDefineTypes.NONE));
+        schema.getColumnMap().put("age", new Column("age", FieldTypeFactory.fromString("int"), IndexTypes.NONE, AutoDefineTypes.NONE));
+        final SchemaStore schemaStore = mock(SchemaStore.class);
+        when(schemaStore.getSchema(DS, COLLECTION)).thenReturn(schema);
+
+        final List<String> keys = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            keys.add(String.valueOf(i));
+        }
+        final BSqlDataManager dataManager = mock(BSqlDataManager.class);
+        when(dataManager.selectAllKeysAsStream(DS, COLLECTION)).thenAnswer(invocation -> keys.iterator());
+        doAnswer(invocation -> {
+            final String key = (String) invocation.getArguments()[2];
+            if (key.equals(MISSING)) {
+                throw new OperationException(ErrorCode.PRIMARY_KEY_INEXISTENT, "No record with pk " + key);
+            }
+            return record(Integer.parseInt(key));
+        }).when(dataManager).select(eq(DS), eq(COLLECTION), anyString(), any(), any(), any());
+
+        executorService = Executors.newFixedThreadPool(2);
+        final ScanExecutor scanExecutor = new ScanExecutor() {
+            @Override
+            public void execute(final Runnable command) {
+                executorService.execute(command);
+            }
+
+            @Override
+            public int parallelism(final int requested) {
+                return 4;
+            }
+        };
+
+        exporter = new CollectionExporter();
+        setField(exporter, "dataManager", dataManager);
+        setField(exporter, "schemaStore", schemaStore);
+        setField(exporter, "scanExecutor", scanExecutor);
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testCsv() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Map<String, OperationException> failures = new ConcurrentHashMap<>();
+        assertEquals(ROWS - 1, exporter.export(DS, COLLECTION, ExportType.CSV, false, out, null, failures::put));
+        assertEquals(Arrays.asList(MISSING), new ArrayList<>(failures.keySet()));
+
+        assertCsv(new InputStreamReader(new ByteArrayInputStream(out.toByteArray()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testNdjson() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final List<Long> progress = new ArrayList<>();
+        assertEquals(ROWS - 1, exporter.export(DS, COLLECTION, ExportType.NDJSON, false, out, progress::add, null));
+        assertEquals(Arrays.asList((long) ROWS - 1), progress);
+
+        assertNdjson(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test
+    public void testCompressed() throws Exception {
+        final ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        exporter.export(DS, COLLECTION, ExportType.CSV, true, csv, null, null);
+        assertCsv(new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(csv.toByteArray())), StandardCharsets.UTF_8));
+
+        final ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        exporter.export(DS, COLLECTION, ExportType.NDJSON, true, ndjson, null, null);
+        assertNdjson(new GZIPInputStream(new ByteArrayInputStream(ndjson.toByteArray())));
+    }
+
+    /* Names carry delimiters, quotes and line breaks to exercise CSV quoting */
+    private static JSONObject record(final int id) {
+        final JSONObject record = new JSONObject().put("_id", String.valueOf(id)).put("name", "Doe, \"J\"\n" + id);
+        if (id % 2 == 0) {
+            record.put("age", id);
+        }
+        return record;
+    }
+
+    private static void assertCsv(final Reader reader) throws IOException {
+        final CSVReader csvReader = new CSVReader(reader);
+        try {
+            final String[] header = csvReader.readNext();
+            assertEquals("_id", header[0]);
+            assertEquals(3, header.length);
+
+            final Map<String, String[]> rows = new HashMap<>();
+            String[] row;
+            while ((row = csvReader.readNext()) != null) {
+                assertNull(rows.put(row[0], row));
+            }
+            assertEquals(ROWS - 1, rows.size());
+            assertFalse(rows.containsKey(MISSING));
+
+            for (int id : new int[]{0, 1, 2999}) {
+                final JSONObject expected = record(id);
+                final String[] actual = rows.get(String.valueOf(id));
+                for (int i = 0; i < header.length; i++) {
+                    assertEquals(expected.has(header[i]) ? expected.get(header[i]).toString() : "", actual[i]);
+                }
+            }
+        } finally {
+            csvReader.close();
+        }
+    }
+
+    private static void assertNdjson(final InputStream in) throws IOException {
+        final Map<String, JSONObject> records = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final JSONObject record = new JSONObject(line);
+                assertNull(records.put(record.getString("_id"), record));
+            }
+        }
+        assertEquals(ROWS - 1, records.size());
+        assertFalse(records.containsKey(MISSING));
+        assertEquals(record(42).toString(), records.get("42").toString());
+        assertFalse(records.get("43").has("age"));
+    }
+
+    private static void setField(final Object target, final String name, final Object value) throws Exception {
+        final Field field = CollectionExporter.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
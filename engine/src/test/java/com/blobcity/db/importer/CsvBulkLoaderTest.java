@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.importer;
+
+import com.blobcity.db.bsql.BSqlCollectionManager;
+import com.blobcity.db.cache.QueryResultCache;
+import com.blobcity.db.code.CodeExecutor;
+import com.blobcity.db.exceptions.ErrorCode;
+import com.blobcity.db.exceptions.OperationException;
+import com.blobcity.db.indexing.IndexFactory;
+import com.blobcity.db.indexing.IndexingStrategy;
+import com.blobcity.db.indexing.OnlineIndexBuilder;
+import com.blobcity.db.lang.columntypes.FieldTypeFactory;
+import com.blobcity.db.operations.OperationLogger;
+import com.blobcity.db.operations.OperationsFileStore;
+import com.blobcity.db.schema.AutoDefineTypes;
+import com.blobcity.db.schema.Column;
+import com.blobcity.db.schema.ColumnMapping;
+import com.blobcity.db.schema.IndexTypes;
+import com.blobcity.db.schema.Schema;
+import com.blobcity.db.schema.beans.SchemaManager;
+import com.blobcity.db.schema.beans.SchemaStore;
+import com.blobcity.db.sql.planner.StatisticsStore;
+import com.blobcity.db.storage.BSqlFileManager;
+import com.blobcity.db.tableau.TableauPublishStore;
+import java.io.StringReader;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * @author sanketsarang
+ */
+public class CsvBulkLoaderTest {
+
+    private static final String DS = "ds";
+    private static final String COLLECTION = "people";
+    private static final int ROWS = 50;
+
+    private final Map<String, String> stored = new ConcurrentHashMap<>();
+    private CsvBulkLoader loader;
+    private BSqlFileManager fileManager;
+    private OnlineIndexBuilder onlineIndexBuilder;
+    private IndexingStrategy strategy;
+    private Object previousSchemaStore;
+    private Path csvFile;
+
+    @Before
+    public void setUp() throws Exception {
+        final Schema schema = new Schema();
+        schema.setPrimary("_id");
+        schema.getColumnMap().put("_id", new Column("_id", FieldTypeFactory.fromString("string"), IndexTypes.UNIQUE, AutoDefineTypes.NONE));
+        schema.getColumnMap().put("name", new Column("name", FieldTypeFactory.fromString("string"), IndexTypes.BTREE, AutoDefineTypes.NONE));
+        schema.getColumnMap().put("city", new Column("city", FieldTypeFactory.fromString("string"), IndexTypes.NONE, AutoDefineTypes.NONE));
+        final ColumnMapping mapping = new ColumnMapping();
+        mapping.addMapping("_id", "1");
+        mapping.addMapping("name", "2");
+        mapping.addMapping("city", "3");
+
+        final SchemaStore schemaStore = mock(SchemaStore.class);
+        when(schemaStore.getSchema(DS, COLLECTION)).thenReturn(schema);
+        when(schemaStore.getColumnMapping(DS, COLLECTION)).thenReturn(mapping);
+        previousSchemaStore = setField(SchemaStore.class, null, "self", schemaStore);
+
+        fileManager = mock(BSqlFileManager.class);
+        doAnswer(invocation -> {
+            final Object[] args = invocation.getArguments();
+            stored.put((String) args[2], (String) args[3]);
+            return null;
+        }).when(fileManager).insert(anyString(), anyString(), anyString(), anyString());
+
+        strategy = mock(IndexingStrategy.class);
+        final IndexFactory indexFactory = mock(IndexFactory.class);
+        when(indexFactory.getStrategy(any(IndexTypes.class))).thenReturn(strategy);
+
+        /* An index build on city starts after the load has read the schema */
+        onlineIndexBuilder = mock(OnlineIndexBuilder.class);
+        when(onlineIndexBuilder.hasBuilds()).thenReturn(true);
+
+        loader = new CsvBulkLoader();
+        setField(CsvBulkLoader.class, loader, "collectionManager", mock(BSqlCollectionManager.class));
+        setField(CsvBulkLoader.class, loader, "fileManager", fileManager);
+        setField(CsvBulkLoader.class, loader, "schemaManager", mock(SchemaManager.class));
+        setField(CsvBulkLoader.class, loader, "indexFactory", indexFactory);
+        setField(CsvBulkLoader.class, loader, "onlineIndexBuilder", onlineIndexBuilder);
+        setField(CsvBulkLoader.class, loader, "operationsFileStore", mock(OperationsFileStore.class));
+        setField(CsvBulkLoader.class, loader, "operationLogger", mock(OperationLogger.class));
+        setField(CsvBulkLoader.class, loader, "statisticsStore", mock(StatisticsStore.class));
+        setField(CsvBulkLoader.class, loader, "queryResultCache", mock(QueryResultCache.class));
+        setField(CsvBulkLoader.class, loader, "tableauPublishStore", mock(TableauPublishStore.class));
+        setField(CsvBulkLoader.class, loader, "codeExecutor", mock(CodeExecutor.class));
+
+        final StringBuilder csv = new StringBuilder("_id,name,city\n");
+        for (int i = 0; i < ROWS; i++) {
+            csv.append(i).append(",name").append(i % 5).append(",city").append(i % 3).append("\n");
+        }
+        csvFile = Files.createTempFile("bulk-load", ".csv");
+        Files.write(csvFile, csv.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        setField(SchemaStore.class, null, "self", previousSchemaStore);
+        Files.deleteIfExists(csvFile);
+    }
+
+    @Test
+    public void testLoadIndexesEveryRecord() throws Exception {
+        assertTrue(loader.load(DS, COLLECTION, "op", csvFile.toString()));
+
+        assertEquals(ROWS, stored.size());
+        assertTrue(stored.get("7").contains("\"2\":\"name2\""));
+        verify(strategy, times(ROWS)).index(eq(DS), eq(COLLECTION), eq("name"), anyString(), anyString());
+        verify(strategy).index(DS, COLLECTION, "name", "name2", "7");
+
+        /* Values of the unindexed column reach the build started mid-load */
+        verify(onlineIndexBuilder, times(ROWS)).capture(eq(DS), eq(COLLECTION), eq("city"), anyString(), anyString(), eq(true));
+        verify(onlineIndexBuilder).capture(DS, COLLECTION, "city", "city1", "7", true);
+        verify(onlineIndexBuilder, never()).capture(eq(DS), eq(COLLECTION), eq("name"), anyString(), anyString(), anyBoolean());
+    }
+
+    @Test
+    public void testFailedLoadIndexesRecordsAlreadyWritten() throws Exception {
+        doThrow(new IllegalStateException("disk failure")).when(fileManager).insert(anyString(), anyString(), eq("25"), anyString());
+
+        try {
+            loader.load(DS, COLLECTION, "op", csvFile.toString());
+            fail("OperationException was expected");
+        } catch (OperationException ex) {
+            assertEquals(ErrorCode.INTERNAL_OPERATION_ERROR, ex.getErrorCode());
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+
+        /* Rows are loaded in file order within a chunk, so the rows before the failed one are stored */
+        assertEquals(25, stored.size());
+        verify(strategy, times(25)).index(eq(DS), eq(COLLECTION), eq("name"), anyString(), anyString());
+        verify(strategy).index(DS, COLLECTION, "name", "name4", "24");
+        verify(strategy, never()).index(DS, COLLECTION, "name", "name0", "25");
+    }
+
+    @Test
+    public void testChunking() throws Exception {
+        final StringBuilder csv = new StringBuilder("id,name\n");
+        for (int i = 0; i < 100; i++) {
+            csv.append(i).append(",\"line one\nline two, \"\"quoted\"\"\"\n");
+        }
+
+        final CsvChunkReader reader = new CsvChunkReader(new StringReader(csv.toString()), 50);
+        assertEquals("id,name\n", reader.nextRecord());
+
+        final StringBuilder joined = new StringBuilder("id,name\n");
+        int chunks = 0;
+        String chunk;
+        while ((chunk = reader.next()) != null) {
+            /* Every chunk holds complete records, so a multi-line quoted field is never split */
+            assertTrue(chunk.endsWith("\"\n"));
+            assertEquals(0, chunk.chars().filter(c -> c == '"').count() % 2);
+            joined.append(chunk);
+            chunks++;
+        }
+        assertTrue(chunks > 1);
+        assertEquals(csv.toString(), joined.toString());
+        assertNull(new CsvChunkReader(new StringReader(""), 50).next());
+    }
+
+    @Test
+    public void testExternalSort() throws Exception {
+        final Path folder = Files.createTempDirectory("sorter");
+        try (IndexEntrySorter sorter = new IndexEntrySorter("name", 10, folder)) {
+            for (int i = 99; i >= 0; i--) {
+                sorter.add(Collections.singletonList(new String[]{"v" + (i % 7), "pk" + String.format("%03d", i)}));
+            }
+            try (Stream<Path> files = Files.list(folder)) {
+                assertTrue(files.count() > 1);
+            }
+
+            final List<String> sorted = new ArrayList<>();
+            sorter.forEachSorted((value, pk) -> sorted.add(value + ":" + pk));
+            assertEquals(100, sorted.size());
+            assertEquals("v0:pk000", sorted.get(0));
+            assertEquals("v0:pk007", sorted.get(1));
+            assertEquals("v6:pk097", sorted.get(99));
+            for (int i = 1; i < sorted.size(); i++) {
+                assertTrue(sorted.get(i - 1).compareTo(sorted.get(i)) < 0);
+            }
+        }
+        try (Stream<Path> files = Files.list(folder)) {
+            assertEquals(0, files.count());
+        }
+        Files.delete(folder);
+    }
+
+    private static Object setField(final Class<?> type, final Object target, final String name, final Object value) throws Exception {
+        final Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        final Object previous = field.get(target);
+        field.set(target, value);
+        return previous;
+    }
+}
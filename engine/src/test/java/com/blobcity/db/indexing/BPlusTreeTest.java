@@ -0,0 +1,246 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.indexing;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author sanketsarang
+ */
+public class BPlusTreeTest {
+
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("index", ".bpt");
+        Files.delete(file);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testInsertContainsRemove() throws IOException {
+        try (BPlusTree tree = BPlusTree.open(file, BPlusTreeKeyType.LONG)) {
+            final List<Integer> values = new ArrayList<>();
+            for (int i = 0; i < 5000; i++) {
+                values.add(i);
+            }
+            Collections.shuffle(values, new Random(7));
+            for (int value : values) {
+                assertTrue(tree.insert(key(value % 100), pk(value)));
+            }
+            assertFalse(tree.insert(key(3), pk(3)));
+            assertEquals(5000, tree.size());
+
+            assertTrue(tree.contains(key(42), pk(142)));
+            assertFalse(tree.contains(key(42), pk(143)));
+            assertEquals(50, tree.count(key(42)));
+
+            assertTrue(tree.remove(key(42), pk(142)));
+            assertFalse(tree.remove(key(42), pk(142)));
+            assertEquals(49, tree.count(key(42)));
+            assertEquals(4999, tree.size());
+        }
+    }
+
+    @Test
+    public void testRangeOrderAndBounds() throws IOException {
+        try (BPlusTree tree = BPlusTree.open(file, BPlusTreeKeyType.LONG)) {
+            for (int i = -500; i < 500; i++) {
+                tree.insert(key(i), pk(i));
+            }
+
+            assertEquals(400, count(tree.range(key(-100), true, key(300), false)));
+            assertEquals(399, count(tree.range(key(-100), false, key(300), false)));
+            assertEquals(500, count(tree.range(key(0), true, null, true)));
+            assertEquals(500, count(tree.range(null, true, key(0), false)));
+
+            long previous = Long.MIN_VALUE;
+            final Iterator<BPlusTree.Entry> iterator = tree.range(null, true, null, true);
+            while (iterator.hasNext()) {
+                final long value = Long.parseLong(BPlusTreeKeyType.LONG.decode(iterator.next().getValue()));
+                assertTrue(value > previous);
+                previous = value;
+            }
+            assertEquals(499, previous);
+        }
+    }
+
+    @Test
+    public void testDescending() throws IOException {
+        try (BPlusTree tree = BPlusTree.open(file, BPlusTreeKeyType.LONG)) {
+            for (int i = 0; i < 3000; i++) {
+                tree.insert(key(i), pk(i));
+            }
+
+            /* Leaves left empty by deletes must be skipped */
+            for (int i = 1000; i < 2000; i++) {
+                tree.remove(key(i), pk(i));
+            }
+
+            long previous = Long.MAX_VALUE;
+            int count = 0;
+            final Iterator<BPlusTree.Entry> iterator = tree.descending();
+            while (iterator.hasNext()) {
+                final long value = Long.parseLong(BPlusTreeKeyType.LONG.decode(iterator.next().getValue()));
+                assertTrue(value < previous);
+                assertTrue(value < 1000 || value >= 2000);
+                previous = value;
+                count++;
+            }
+            assertEquals(2000, count);
+            assertEquals(0, previous);
+        }
+    }
+
+    @Test
+    public void testBulkLoadAndReopen() throws IOException {
+        final List<BPlusTree.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            entries.add(new BPlusTree.Entry(BPlusTreeKeyType.STRING.encode("value-" + (i % 1000)), pk(i)));
+        }
+        Collections.sort(entries, BPlusTree::compare);
+
+        try (BPlusTree tree = BPlusTree.open(file, BPlusTreeKeyType.STRING)) {
+            tree.bulkLoad(entries);
+            assertEquals(20000, tree.size());
+        }
+
+        try (BPlusTree tree = BPlusTree.open(file, BPlusTreeKeyType.LONG)) {
+            assertEquals(BPlusTreeKeyType.STRING, tree.getKeyType());
+            assertEquals(20000, tree.size());
+            assertEquals(20, tree.count(BPlusTreeKeyType.STRING.encode("value-7")));
+            assertTrue(tree.insert(BPlusTreeKeyType.STRING.encode("value-7"), pk(20000)));
+            assertEquals(21, tree.count(BPlusTreeKeyType.STRING.encode("value-7")));
+
+            int distinct = 0;
+            final Iterator<byte[]> iterator = tree.distinctValues();
+            while (iterator.hasNext()) {
+                iterator.next();
+                distinct++;
+            }
+            assertEquals(1000, distinct);
+        }
+    }
+
+    @Test
+    public void testUncleanShutdownIsDetected() throws IOException {
+        final Path copy = Files.createTempFile("index-copy", ".bpt");
+        try {
+            try (BPlusTree tree = BPlusTree.open(file, BPlusTreeKeyType.LONG)) {
+                assertTrue(tree.isClean());
+                tree.insert(key(1), pk(1));
+                tree.sync();
+
+                /* A copy taken while the tree is being written is what a crash leaves on disk */
+                tree.insert(key(2), pk(2));
+                Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            try (BPlusTree tree = BPlusTree.open(file, BPlusTreeKeyType.LONG)) {
+                assertTrue(tree.isClean());
+                assertEquals(2, tree.size());
+            }
+            try (BPlusTree tree = BPlusTree.open(copy, BPlusTreeKeyType.LONG)) {
+                assertFalse(tree.isClean());
+            }
+            try (BPlusTree tree = BPlusTree.open(copy, BPlusTreeKeyType.LONG)) {
+                assertFalse(tree.isClean());
+            }
+        } finally {
+            Files.deleteIfExists(copy);
+        }
+    }
+
+    @Test
+    public void testSyncedTreeSurvivesCrash() throws IOException {
+        final Path copy = Files.createTempFile("index-copy", ".bpt");
+        try {
+            try (BPlusTree tree = BPlusTree.open(file, BPlusTreeKeyType.LONG)) {
+                tree.insert(key(1), pk(1));
+                tree.insert(key(2), pk(2));
+                tree.sync();
+                tree.sync();
+                Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            try (BPlusTree tree = BPlusTree.open(copy, BPlusTreeKeyType.LONG)) {
+                assertTrue(tree.isClean());
+                assertEquals(2, tree.size());
+            }
+        } finally {
+            Files.deleteIfExists(copy);
+        }
+    }
+
+    @Test
+    public void testLongKeyRejectsFractions() {
+        assertArrayEquals(key(5), BPlusTreeKeyType.LONG.encode("5.0"));
+        assertArrayEquals(key(-5), BPlusTreeKeyType.LONG.encode("-5"));
+        try {
+            BPlusTreeKeyType.LONG.encode("5.5");
+            fail("A fractional value must not be truncated into an integral key");
+        } catch (NumberFormatException ex) {
+            //expected
+        }
+    }
+
+    @Test
+    public void testDoubleKeyOrdering() {
+        final double[] values = {-1e10, -2.5, -0.0, 0.0, 1.5, 3, 1e10};
+        for (int i = 1; i < values.length; i++) {
+            assertTrue(BPlusTree.compare(BPlusTreeKeyType.DOUBLE.encode(Double.toString(values[i - 1])),
+                    BPlusTreeKeyType.DOUBLE.encode(Double.toString(values[i]))) < 0);
+        }
+        assertEquals("-2.5", BPlusTreeKeyType.DOUBLE.decode(BPlusTreeKeyType.DOUBLE.encode("-2.5")));
+    }
+
+    private static byte[] key(final long value) {
+        return BPlusTreeKeyType.LONG.encode(Long.toString(value));
+    }
+
+    private static byte[] pk(final int value) {
+        return ("pk" + value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int count(final Iterator<?> iterator) {
+        int count = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,197 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.indexing;
+
+import com.blobcity.db.bsql.BSqlIndexManager;
+import com.blobcity.db.exceptions.OperationException;
+import com.blobcity.db.schema.IndexTypes;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * @author sanketsarang
+ */
+public class OnlineIndexBuilderTest {
+
+    private static final String DS = "ds";
+    private static final String COLLECTION = "people";
+    private static final String COLUMN = "city";
+
+    private Path spillFolder;
+    private IndexingStrategy strategy;
+    private BSqlIndexManager indexManager;
+    private OnlineIndexBuilder builder;
+
+    @Before
+    public void setUp() throws Exception {
+        spillFolder = Files.createTempDirectory("index-spill");
+        strategy = mock(IndexingStrategy.class);
+        final IndexFactory indexFactory = mock(IndexFactory.class);
+        when(indexFactory.getStrategy(IndexTypes.BTREE)).thenReturn(strategy);
+        indexManager = mock(BSqlIndexManager.class);
+
+        builder = new OnlineIndexBuilder();
+        setField(builder, "indexFactory", indexFactory);
+        setField(builder, "indexManager", indexManager);
+        setField(builder, "spillFolder", spillFolder);
+        setField(builder, "maxLogChanges", 3);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(spillFolder)) {
+            files.forEach(file -> file.toFile().delete());
+        }
+        Files.delete(spillFolder);
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        assertTrue(builder.begin(DS, COLLECTION, COLUMN));
+        assertFalse(builder.begin(DS, COLLECTION, COLUMN));
+        assertTrue(builder.isBuilding(DS, COLLECTION, COLUMN));
+
+        /* Seven changes spill the log twice at three changes held in memory */
+        for (int i = 0; i < 7; i++) {
+            builder.capture(DS, COLLECTION, COLUMN, "city" + i, String.valueOf(i), i % 2 == 0);
+            when(strategy.contains(DS, COLLECTION, COLUMN, "city" + i, String.valueOf(i))).thenReturn(i % 2 == 1);
+        }
+        assertEquals(2, count(spillFolder));
+        verifyNoMoreInteractions(strategy);
+
+        assertEquals(7, builder.complete(DS, COLLECTION, COLUMN, IndexTypes.BTREE));
+        final InOrder order = inOrder(strategy, indexManager);
+        for (int i = 0; i < 7; i++) {
+            if (i % 2 == 0) {
+                order.verify(strategy).index(DS, COLLECTION, COLUMN, "city" + i, String.valueOf(i));
+            } else {
+                order.verify(strategy).remove(DS, COLLECTION, COLUMN, "city" + i, String.valueOf(i));
+            }
+        }
+        order.verify(indexManager).switchOn(DS, COLLECTION, COLUMN, IndexTypes.BTREE);
+        assertEquals(0, count(spillFolder));
+        assertFalse(builder.isBuilding(DS, COLLECTION, COLUMN));
+    }
+
+    @Test
+    public void testWriterAcrossSwitch() throws Exception {
+        builder.begin(DS, COLLECTION, COLUMN);
+
+        /* Reads the schema with the column still unindexed */
+        final OnlineIndexBuilder.Writer stale = builder.beginWrite();
+        builder.complete(DS, COLLECTION, COLUMN, IndexTypes.BTREE);
+        final OnlineIndexBuilder.Writer current = builder.beginWrite();
+
+        assertTrue(builder.hasBuilds());
+        builder.capture(DS, COLLECTION, COLUMN, "pune", "1", true);
+        verify(strategy).index(DS, COLLECTION, COLUMN, "pune", "1");
+
+        /* Writers that began after the switch do not hold the build back */
+        stale.close();
+        assertFalse(builder.hasBuilds());
+        builder.capture(DS, COLLECTION, COLUMN, "pune", "2", true);
+        verify(strategy, never()).index(DS, COLLECTION, COLUMN, "pune", "2");
+        current.close();
+    }
+
+    @Test
+    public void testReplaySkipsSnapshotChanges() throws Exception {
+        builder.begin(DS, COLLECTION, COLUMN);
+
+        /* Record 1 was inserted and record 2 deleted before the snapshot was read */
+        builder.capture(DS, COLLECTION, COLUMN, "pune", "1", true);
+        builder.capture(DS, COLLECTION, COLUMN, "pune", "2", false);
+        when(strategy.contains(DS, COLLECTION, COLUMN, "pune", "1")).thenReturn(true);
+
+        builder.complete(DS, COLLECTION, COLUMN, IndexTypes.BTREE);
+        verify(strategy, never()).index(DS, COLLECTION, COLUMN, "pune", "1");
+        verify(strategy, never()).remove(DS, COLLECTION, COLUMN, "pune", "2");
+    }
+
+    @Test
+    public void testAbort() throws Exception {
+        assertFalse(builder.abort(DS, COLLECTION, COLUMN));
+        builder.begin(DS, COLLECTION, COLUMN);
+        for (int i = 0; i < 4; i++) {
+            builder.capture(DS, COLLECTION, COLUMN, "city" + i, String.valueOf(i), true);
+        }
+
+        assertTrue(builder.abort(DS, COLLECTION, COLUMN));
+        assertTrue(builder.isAborted(DS, COLLECTION, COLUMN));
+        assertFalse(builder.isBuilding(DS, COLLECTION, COLUMN));
+        assertEquals(0, count(spillFolder));
+        builder.capture(DS, COLLECTION, COLUMN, "pune", "5", true);
+        try {
+            builder.complete(DS, COLLECTION, COLUMN, IndexTypes.BTREE);
+            fail("Expected an aborted build not to switch the index on");
+        } catch (OperationException ex) {
+            //expected
+        }
+        verifyNoMoreInteractions(strategy, indexManager);
+
+        builder.cancel(DS, COLLECTION, COLUMN);
+        assertFalse(builder.isAborted(DS, COLLECTION, COLUMN));
+        assertTrue(builder.begin(DS, COLLECTION, COLUMN));
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        builder.begin(DS, COLLECTION, COLUMN);
+        for (int i = 0; i < 4; i++) {
+            builder.capture(DS, COLLECTION, COLUMN, "city" + i, String.valueOf(i), true);
+        }
+        assertEquals(1, count(spillFolder));
+
+        builder.cancel(DS, COLLECTION, COLUMN);
+        assertEquals(0, count(spillFolder));
+        assertFalse(builder.hasBuilds());
+        try {
+            builder.complete(DS, COLLECTION, COLUMN, IndexTypes.BTREE);
+            fail("Expected an OperationException for a cancelled build");
+        } catch (OperationException ex) {
+            //expected
+        }
+        verifyNoMoreInteractions(strategy, indexManager);
+    }
+
+    private static long count(final Path folder) throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            return files.count();
+        }
+    }
+
+    private static void setField(final Object target, final String name, final Object value) throws Exception {
+        final Field field = OnlineIndexBuilder.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
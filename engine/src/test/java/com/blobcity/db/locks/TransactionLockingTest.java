@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.locks;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author sanketsarang
+ */
+public class TransactionLockingTest {
+
+    @Test
+    public void testLockTypes() {
+        final TransactionLocking locking = new TransactionLocking();
+        assertEquals(LockType.NONE, locking.getLockType("ds", "c", "1"));
+
+        locking.acquireLock("ds", "c", "1", LockType.READ);
+        assertEquals(LockType.READ, locking.getLockType("ds", "c", "1"));
+        locking.releaseLock("ds", "c", "1", LockType.READ);
+
+        locking.acquireLock("ds", "c", "1", LockType.WRITE);
+        assertEquals(LockType.WRITE, locking.getLockType("ds", "c", "1"));
+        assertTrue(locking.isLocked("ds", "c", "1"));
+        locking.releaseLock("ds", "c", "1", LockType.WRITE);
+        assertFalse(locking.isLocked("ds", "c", "1"));
+
+        /* Releasing a lock that is not held is a no-op */
+        locking.releaseLock("ds", "c", "1", LockType.WRITE);
+        assertEquals(2, locking.getAcquisitionCount());
+    }
+
+    @Test
+    public void testWritesAreExclusive() throws InterruptedException {
+        final TransactionLocking locking = new TransactionLocking();
+        final int[] counter = new int[1];
+        final ExecutorService executorService = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executorService.submit(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    locking.acquireLock("ds", "c", "pk", LockType.WRITE);
+                    try {
+                        counter[0]++;
+                    } finally {
+                        locking.releaseLock("ds", "c", "pk", LockType.WRITE);
+                    }
+                }
+            });
+        }
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(80000, counter[0]);
+    }
+}
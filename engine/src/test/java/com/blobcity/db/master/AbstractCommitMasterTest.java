@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.master;
+
+import com.blobcity.db.cluster.messaging.ClusterMessaging;
+import com.blobcity.db.features.FeatureRules;
+import com.blobcity.lib.database.bean.manager.factory.BeanConfigFactory;
+import com.blobcity.lib.query.Query;
+import com.blobcity.lib.query.QueryType;
+import com.blobcity.pom.database.engine.factory.EngineBeanConfig;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationContext;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * @author sanketsarang
+ */
+public class AbstractCommitMasterTest {
+
+    private static final String NODE = "node-1";
+
+    private final List<String> rollbackThreads = new CopyOnWriteArrayList<>();
+    private ClusterMessaging clusterMessaging;
+    private long commitTimeout;
+
+    @Before
+    public void setUp() {
+        commitTimeout = FeatureRules.COMMIT_OP_TIMEOUT;
+        FeatureRules.COMMIT_OP_TIMEOUT = 1;
+
+        clusterMessaging = mock(ClusterMessaging.class);
+        final ApplicationContext context = mock(ApplicationContext.class);
+        when(context.getBean(ClusterMessaging.class)).thenReturn(clusterMessaging);
+        BeanConfigFactory.beanConfigMap.put(EngineBeanConfig.class.getName(), context);
+    }
+
+    @After
+    public void tearDown() {
+        FeatureRules.COMMIT_OP_TIMEOUT = commitTimeout;
+        BeanConfigFactory.beanConfigMap.remove(EngineBeanConfig.class.getName());
+    }
+
+    @Test
+    public void testCommitTimeout() throws Exception {
+        final AbstractCommitMaster master = new AbstractCommitMaster(new Query().requestId("r1"), Collections.singleton(NODE)) {
+        };
+
+        /* The node never acknowledges the soft commit, but acknowledges the rollback */
+        doAnswer(invocation -> {
+            final Query query = (Query) invocation.getArguments()[0];
+            if (query.getQueryType() == QueryType.ROLLBACK) {
+                rollbackThreads.add(Thread.currentThread().getName());
+                master.notifyMessage(NODE, new Query().requestId("r1").rollbackSuccessQuery().ackSuccess());
+            }
+            return null;
+        }).when(clusterMessaging).sendMessage(any(Query.class), anySetOf(String.class));
+
+        final Query response = master.execute().get(5, TimeUnit.SECONDS);
+        assertFalse(response.isAckSuccess());
+        assertEquals(1, rollbackThreads.size());
+        assertNotEquals("master-timeouts", rollbackThreads.get(0));
+    }
+
+    @Test
+    public void testRollbackTimeout() throws Exception {
+        final AbstractCommitMaster master = new AbstractCommitMaster(new Query().requestId("r2"), Collections.singleton(NODE)) {
+        };
+        doAnswer(invocation -> {
+            if (((Query) invocation.getArguments()[0]).getQueryType() == QueryType.ROLLBACK) {
+                rollbackThreads.add(Thread.currentThread().getName());
+            }
+            return null;
+        }).when(clusterMessaging).sendMessage(any(Query.class), anySetOf(String.class));
+
+        final long start = System.currentTimeMillis();
+        final Query response = master.execute().get(5, TimeUnit.SECONDS);
+        assertFalse(response.isAckSuccess());
+        assertEquals("INTERNAL-ERROR with transaction handling", response.getErrorCode());
+        assertEquals(1, rollbackThreads.size());
+        assertTrue(System.currentTimeMillis() - start >= 2 * TimeUnit.SECONDS.toMillis(FeatureRules.COMMIT_OP_TIMEOUT));
+    }
+}
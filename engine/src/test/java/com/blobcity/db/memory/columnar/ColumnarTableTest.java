@@ -0,0 +1,166 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.memory.columnar;
+
+import com.blobcity.db.exceptions.OperationException;
+import com.blobcity.db.lang.Operators;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import org.json.JSONObject;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author sanketsarang
+ */
+public class ColumnarTableTest {
+
+    private static JSONObject record(final Object... keyValues) {
+        final JSONObject json = new JSONObject();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            json.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return json;
+    }
+
+    private static ColumnarTable sample() throws OperationException {
+        final ColumnarTable table = new ColumnarTable();
+        table.insert("1", record("name", "alice", "age", 30, "score", 1.5));
+        table.insert("2", record("name", "bob", "age", 25));
+        table.insert("3", record("name", "alice", "age", 41, "score", 3.0));
+        return table;
+    }
+
+    @Test
+    public void testInsertAndGet() throws OperationException {
+        final ColumnarTable table = sample();
+        assertEquals(3, table.size());
+        assertEquals("bob", table.get("2").get("name"));
+        assertEquals(25, table.get("2").get("age"));
+        assertFalse(table.get("2").has("score"));
+        assertNull(table.get("4"));
+    }
+
+    @Test
+    public void testDuplicateInsert() throws OperationException {
+        final ColumnarTable table = sample();
+        try {
+            table.insert("1", record("name", "carol"));
+            fail("Duplicate primary key was accepted");
+        } catch (OperationException ex) {
+            assertEquals("alice", table.get("1").get("name"));
+        }
+    }
+
+    @Test
+    public void testFilters() throws OperationException {
+        final ColumnarTable table = sample();
+        assertEquals(Arrays.asList("1", "3"), table.keys(table.filter("name", Operators.EQ, "alice")));
+        assertEquals(Arrays.asList("2"), table.keys(table.filter("name", Operators.NEQ, "alice")));
+        assertEquals(Arrays.asList("1", "3"), table.keys(table.filter("age", Operators.GT, "26")));
+        assertEquals(Arrays.asList("1", "2"), table.keys(table.filter("age", Operators.BETWEEN, 25, 30)));
+        assertEquals(Arrays.asList("2", "3"), table.keys(table.filter("age", Operators.IN, 25, 41)));
+        assertEquals(Arrays.asList("1", "3"), table.keys(table.filter("name", Operators.LIKE, "a%e")));
+        assertEquals(Arrays.asList("3"), table.keys(table.filter("score", Operators.GTEQ, 2)));
+        assertTrue(table.filter("missing", Operators.EQ, "x").isEmpty());
+        assertTrue(table.filter("name", Operators.EQ, "nobody").isEmpty());
+    }
+
+    @Test
+    public void testConjunction() throws OperationException {
+        final ColumnarTable table = sample();
+        final BitSet alice = table.filter("name", Operators.EQ, "alice");
+        assertEquals(Arrays.asList("3"), table.keys(table.filter("age", Operators.GT, new Object[]{35}, alice)));
+    }
+
+    @Test
+    public void testRemoveAndReuse() throws OperationException {
+        final ColumnarTable table = sample();
+        assertTrue(table.remove("1"));
+        assertFalse(table.remove("1"));
+        table.insert("4", record("name", "dave"));
+        assertFalse(table.get("4").has("age"));
+        assertFalse(table.get("4").has("score"));
+        assertEquals(Arrays.asList("4", "2", "3"), table.keys(null));
+    }
+
+    @Test
+    public void testUpsert() throws OperationException {
+        final ColumnarTable table = sample();
+        table.upsert("2", record("name", "robert"));
+        assertEquals("robert", table.get("2").get("name"));
+        assertFalse(table.get("2").has("age"));
+        table.upsert("5", record("name", "eve"));
+        assertEquals(4, table.size());
+    }
+
+    @Test
+    public void testWidening() throws OperationException {
+        final ColumnarTable table = sample();
+        table.insert("4", record("age", 5000000000L));
+        table.insert("5", record("age", 2.5));
+        table.insert("6", record("age", "unknown"));
+        assertEquals(30L, ((Number) table.get("1").get("age")).longValue());
+        assertEquals(5000000000L, table.get("4").get("age"));
+        assertEquals(2.5, table.get("5").get("age"));
+        assertEquals("unknown", table.get("6").get("age"));
+        assertEquals(Arrays.asList("4", "6"), table.keys(table.filter("age", Operators.GT, "100")));
+    }
+
+    @Test
+    public void testIntegralValuesInDoubleColumn() throws OperationException {
+        final ColumnarTable table = new ColumnarTable();
+        table.insert("1", record("value", 1.5));
+        table.insert("2", record("value", 2));
+        assertEquals(2L, table.get("2").get("value"));
+        assertEquals(1.5, table.get("1").get("value"));
+    }
+
+    @Test
+    public void testIndex() throws OperationException {
+        final ColumnarTable table = sample();
+        table.createIndex("name");
+        assertEquals(Arrays.asList("1", "3"), table.keys(table.filter("name", Operators.EQ, "alice")));
+        table.remove("1");
+        table.insert("7", record("name", "alice"));
+        assertEquals(Arrays.asList("7", "3"), table.keys(table.filter("name", Operators.EQ, "alice")));
+        assertEquals(Arrays.asList("2"), table.keys(table.filter("name", Operators.IN, "bob", "zed")));
+        table.createIndex("age");
+        assertEquals(Arrays.asList("2"), table.keys(table.filter("age", Operators.EQ, "25")));
+    }
+
+    @Test
+    public void testProjection() throws OperationException {
+        final ColumnarTable table = sample();
+        final List<JSONObject> records = table.select(table.filter("age", Operators.LT, 40), Arrays.asList("name"));
+        assertEquals(2, records.size());
+        assertEquals(1, records.get(0).length());
+        assertEquals("alice", records.get(0).get("name"));
+    }
+
+    @Test
+    public void testClear() throws OperationException {
+        final ColumnarTable table = sample();
+        table.clear();
+        assertEquals(0, table.size());
+        assertTrue(table.getColumnNames().isEmpty());
+        table.insert("1", record("name", "x"));
+        assertEquals(1, table.size());
+    }
+}
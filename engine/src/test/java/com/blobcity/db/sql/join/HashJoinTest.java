@@ -0,0 +1,226 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.join;
+
+import com.blobcity.db.exceptions.OperationException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author sanketsarang
+ */
+public class HashJoinTest {
+
+    private Path spillFolder;
+
+    @Before
+    public void setUp() throws IOException {
+        spillFolder = Files.createTempDirectory("hash-join-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(spillFolder);
+    }
+
+    @Test
+    public void testInMemoryJoin() throws OperationException {
+        final List<JSONObject[]> pairs = join(customers(), orders(), 1000, false);
+        assertEquals(5, pairs.size());
+        for (JSONObject[] pair : pairs) {
+            assertEquals(HashJoin.key(pair[0].get("customer")), HashJoin.key(pair[1].get("id")));
+        }
+    }
+
+    @Test
+    public void testSpilledJoin() throws OperationException, IOException {
+        final List<JSONObject> build = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            build.add(new JSONObject().put("id", i).put("name", "c" + i));
+        }
+        final List<JSONObject> probe = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            probe.add(new JSONObject().put("customer", i % 1000));
+        }
+
+        final Map<Integer, Integer> matches = new HashMap<>();
+        try (HashJoin hashJoin = new HashJoin("id", "customer", 50, spillFolder)) {
+            hashJoin.build(build.iterator());
+            assertTrue(hashJoin.isSpilled());
+            hashJoin.probe(probe.iterator(), null, null, true, (row, match) -> {
+                final int customer = row.getInt("customer");
+                if (match == null) {
+                    assertTrue(customer >= 500);
+                } else {
+                    assertEquals(customer, match.getInt("id"));
+                    matches.merge(customer, 1, Integer::sum);
+                }
+                return true;
+            });
+        }
+        assertEquals(500, matches.size());
+        assertTrue(matches.values().stream().allMatch(count -> count == 2));
+
+        try (Stream<Path> files = Files.list(spillFolder)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void testOversizedPartitionsAreSplitAgain() throws OperationException, IOException {
+        final List<JSONObject> build = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            build.add(new JSONObject().put("id", i));
+        }
+        final List<JSONObject> probe = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            probe.add(new JSONObject().put("customer", i));
+        }
+
+        final Map<Integer, Integer> matches = new HashMap<>();
+        try (HashJoin hashJoin = new HashJoin("id", "customer", 20, spillFolder)) {
+            hashJoin.build(build.iterator());
+            hashJoin.probe(probe.iterator(), null, null, false, (row, match) -> {
+                assertEquals(row.getInt("customer"), match.getInt("id"));
+                matches.merge(match.getInt("id"), 1, Integer::sum);
+                return true;
+            });
+            assertTrue(hashJoin.getDepth() > 0);
+            assertTrue(hashJoin.getDepth() < HashJoin.MAX_DEPTH);
+        }
+        assertEquals(2000, matches.size());
+        assertTrue(matches.values().stream().allMatch(count -> count == 1));
+
+        try (Stream<Path> files = Files.list(spillFolder)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void testSkewedKeyIsJoinedAtMaximumDepth() throws OperationException {
+        final List<JSONObject> build = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            build.add(new JSONObject().put("id", 7).put("name", "c" + i));
+        }
+        build.add(new JSONObject().put("id", 9));
+        final List<JSONObject> probe = new ArrayList<>();
+        probe.add(new JSONObject().put("customer", 7));
+        probe.add(new JSONObject().put("customer", 9));
+
+        final List<JSONObject[]> pairs = new ArrayList<>();
+        try (HashJoin hashJoin = new HashJoin("id", "customer", 10, spillFolder)) {
+            hashJoin.build(build.iterator());
+            hashJoin.probe(probe.iterator(), null, null, false, (row, match) -> {
+                assertEquals(row.getInt("customer"), match.getInt("id"));
+                pairs.add(new JSONObject[]{row, match});
+                return true;
+            });
+            assertEquals(HashJoin.MAX_DEPTH, hashJoin.getDepth());
+        }
+        assertEquals(101, pairs.size());
+    }
+
+    @Test
+    public void testOuterJoinAndResidual() throws OperationException {
+        final List<JSONObject[]> pairs = join(customers(), orders(), 1000, true);
+        assertEquals(6, pairs.size());
+        assertEquals(1, pairs.stream().filter(pair -> pair[1] == null).count());
+
+        final List<JSONObject[]> large = new ArrayList<>();
+        try (HashJoin hashJoin = new HashJoin("id", "customer", 1000, spillFolder)) {
+            hashJoin.build(customers().iterator());
+            hashJoin.probe(orders().iterator(), null, (order, customer) -> order.getInt("amount") > 100, false, (row, match) -> {
+                large.add(new JSONObject[]{row, match});
+                return true;
+            });
+        }
+        assertEquals(2, large.size());
+    }
+
+    @Test
+    public void testStop() throws OperationException {
+        final List<JSONObject> rows = new ArrayList<>();
+        try (HashJoin hashJoin = new HashJoin("id", "customer", 1000, spillFolder)) {
+            hashJoin.build(customers().iterator());
+            assertFalse(hashJoin.probe(orders().iterator(), null, null, false, (row, match) -> {
+                rows.add(row);
+                return rows.size() < 2;
+            }));
+        }
+        assertEquals(2, rows.size());
+    }
+
+    @Test
+    public void testLookupForms() {
+        assertTrue(HashJoin.lookupForms(5).containsAll(Arrays.asList("5", "5.0")));
+        assertTrue(HashJoin.lookupForms("5.00").containsAll(Arrays.asList("5.00", "5", "5.0")));
+        assertTrue(HashJoin.lookupForms(2.5).containsAll(Arrays.asList("2.5")));
+        assertEquals(Collections.singleton("pune"), HashJoin.lookupForms("pune"));
+        assertTrue(HashJoin.lookupForms(JSONObject.NULL).isEmpty());
+        for (String form : HashJoin.lookupForms(5)) {
+            assertEquals(HashJoin.key(5), HashJoin.key(form));
+        }
+    }
+
+    /* Orders are the probe side and customers the build side */
+    private List<JSONObject[]> join(final List<JSONObject> build, final List<JSONObject> probe, final int memoryRows,
+            final boolean outer) throws OperationException {
+        final List<JSONObject[]> pairs = new ArrayList<>();
+        try (HashJoin hashJoin = new HashJoin("id", "customer", memoryRows, spillFolder)) {
+            hashJoin.build(build.iterator());
+            hashJoin.probe(probe.iterator(), null, null, outer, (row, match) -> {
+                pairs.add(new JSONObject[]{row, match});
+                return true;
+            });
+        }
+        return pairs;
+    }
+
+    private List<JSONObject> customers() {
+        final List<JSONObject> customers = new ArrayList<>();
+        customers.add(new JSONObject().put("id", 1).put("name", "anne"));
+        customers.add(new JSONObject().put("id", 2).put("name", "bob"));
+        customers.add(new JSONObject().put("id", "3").put("name", "carl"));
+        customers.add(new JSONObject().put("id", JSONObject.NULL).put("name", "nobody"));
+        return customers;
+    }
+
+    private List<JSONObject> orders() {
+        final List<JSONObject> orders = new ArrayList<>();
+        orders.add(new JSONObject().put("customer", 1).put("amount", 50));
+        orders.add(new JSONObject().put("customer", 1.0).put("amount", 150));
+        orders.add(new JSONObject().put("customer", 2).put("amount", 20));
+        orders.add(new JSONObject().put("customer", 3).put("amount", 200));
+        orders.add(new JSONObject().put("customer", "2").put("amount", 70));
+        orders.add(new JSONObject().put("customer", 9).put("amount", 10));
+        return orders;
+    }
+}
@@ -0,0 +1,251 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.pipeline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author sanketsarang
+ */
+public class ResultStreamTest {
+
+    @Test
+    public void testChunking() {
+        final ListOperator source = new ListOperator(rows(25));
+        final AtomicLong closedWith = new AtomicLong(-1);
+        final ResultStream stream = new ResultStream(source, 10, System.currentTimeMillis(), closedWith::set);
+
+        final List<String> chunks = new ArrayList<>();
+        stream.forEachRemaining(chunks::add);
+        assertEquals(3, chunks.size());
+        assertEquals(25, closedWith.get());
+        assertTrue(source.closed);
+
+        final JSONObject response = new JSONObject(String.join("", chunks));
+        assertEquals("1", response.getString("ack"));
+        assertEquals(25, response.getLong("rows"));
+        final JSONArray payload = response.getJSONArray("p");
+        assertEquals(25, payload.length());
+        assertEquals(24, payload.getJSONObject(24).getInt("id"));
+    }
+
+    @Test
+    public void testEmptyResult() {
+        final ResultStream stream = new ResultStream(new ListOperator(new ArrayList<>()), 10, System.currentTimeMillis(), null);
+        final JSONObject response = new JSONObject(stream.next());
+        assertFalse(stream.hasNext());
+        assertEquals(0, response.getJSONArray("p").length());
+        assertEquals(0, response.getLong("rows"));
+    }
+
+    @Test
+    public void testPipeline() {
+        final ListOperator source = new ListOperator(rows(1000));
+        Operator operator = new FilterOperator(source, row -> row.getInt("id") % 2 == 0);
+        operator = new ProjectOperator(operator, new HashSet<>(Arrays.asList("id")));
+        operator = new LimitOperator(operator, 5);
+
+        final List<Integer> ids = new ArrayList<>();
+        while (operator.hasNext()) {
+            final JSONObject row = operator.next();
+            assertFalse(row.has("name"));
+            ids.add(row.getInt("id"));
+        }
+        assertEquals(Arrays.asList(0, 2, 4, 6, 8), ids);
+
+        /* The limit stops the pull, so the source is read only as far as needed */
+        assertTrue(source.pulled <= 10);
+        assertTrue(source.closed);
+    }
+
+    @Test
+    public void testTopN() {
+        final List<JSONObject> rows = rows(1000);
+        Collections.shuffle(rows, new Random(11));
+        final ListOperator source = new ListOperator(rows);
+        final Comparator<JSONObject> descending = (a, b) -> Integer.compare(b.getInt("id"), a.getInt("id"));
+
+        final List<Integer> top = new ArrayList<>();
+        new TopNOperator(source, descending, 5).forEachRemaining(row -> top.add(row.getInt("id")));
+        assertEquals(Arrays.asList(999, 998, 997, 996, 995), top);
+        assertEquals(1000, source.pulled);
+        assertTrue(source.closed);
+
+        assertFalse(new TopNOperator(new ListOperator(rows(10)), descending, 0).hasNext());
+        assertEquals(10, count(new TopNOperator(new ListOperator(rows(10)), descending, 50)));
+    }
+
+    @Test
+    public void testTopNHeapIsBounded() {
+        final List<JSONObject> rows = rows(100000);
+        Collections.shuffle(rows, new Random(5));
+        final AtomicLong comparisons = new AtomicLong();
+        final Comparator<JSONObject> ascending = (a, b) -> {
+            comparisons.incrementAndGet();
+            return Integer.compare(a.getInt("id"), b.getInt("id"));
+        };
+
+        final List<Integer> top = new ArrayList<>();
+        new TopNOperator(new ListOperator(rows), ascending, 5).forEachRemaining(row -> top.add(row.getInt("id")));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), top);
+
+        /* Most rows are rejected by a single comparison against the top of the heap, well short of a full sort */
+        assertTrue(comparisons.get() < 2 * rows.size());
+    }
+
+    @Test
+    public void testTopNDescendingWithTies() {
+        final List<JSONObject> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rows.add(new JSONObject().put("id", i).put("score", i % 10));
+        }
+        Collections.shuffle(rows, new Random(3));
+        final Comparator<JSONObject> descending = (a, b) -> Integer.compare(b.getInt("score"), a.getInt("score"));
+
+        final List<Integer> scores = new ArrayList<>();
+        final HashSet<Integer> ids = new HashSet<>();
+        new TopNOperator(new ListOperator(rows), descending, 15).forEachRemaining(row -> {
+            scores.add(row.getInt("score"));
+            assertTrue(ids.add(row.getInt("id")));
+        });
+        assertEquals(15, scores.size());
+        assertEquals(Collections.nCopies(10, 9), scores.subList(0, 10));
+        assertEquals(Collections.nCopies(5, 8), scores.subList(10, 15));
+    }
+
+    @Test
+    public void testIndexOrderWalkStopsAtLimit() {
+        final List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            keys.add(String.valueOf(i));
+        }
+
+        /* Keys arrive in index order, and the walk loads batches of the limit, as for ORDER BY ... LIMIT */
+        final AtomicInteger pulled = new AtomicInteger();
+        final Iterator<String> ordered = keys.stream().peek(key -> pulled.incrementAndGet()).iterator();
+        final Operator walk = new LimitOperator(new ScanOperator(ordered, key -> new JSONObject().put("id", Integer.parseInt(key)), 5), 5);
+        final List<Integer> ids = new ArrayList<>();
+        walk.forEachRemaining(row -> ids.add(row.getInt("id")));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), ids);
+        assertEquals(5, pulled.get());
+
+        /* Records failing the WHERE condition are skipped, so the walk reads on only until the limit is met */
+        pulled.set(0);
+        final Iterator<String> filtered = keys.stream().peek(key -> pulled.incrementAndGet()).iterator();
+        final Operator filteredWalk = new LimitOperator(new ScanOperator(filtered,
+                key -> Integer.parseInt(key) % 3 == 0 ? new JSONObject().put("id", Integer.parseInt(key)) : null, 5), 5);
+        ids.clear();
+        filteredWalk.forEachRemaining(row -> ids.add(row.getInt("id")));
+        assertEquals(Arrays.asList(0, 3, 6, 9, 12), ids);
+        assertEquals(15, pulled.get());
+    }
+
+    @Test
+    public void testParallelScan() {
+        final List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            keys.add(String.valueOf(i));
+        }
+        Collections.shuffle(keys, new Random(7));
+
+        /* Fewer threads than the workers of the scans together */
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            /* Key 13 is deleted while the scan runs and only even ids qualify */
+            final Operator scan = new ParallelScanOperator(keys.iterator(), key -> key.equals("13") ? null : new JSONObject().put("id", Integer.parseInt(key)),
+                    row -> row.getInt("id") % 2 == 0, 4, 16, executor);
+            final Operator other = new ParallelScanOperator(keys.iterator(), key -> new JSONObject().put("id", key), null, 4, 16, executor);
+            final HashSet<Integer> ids = new HashSet<>();
+            scan.forEachRemaining(row -> assertTrue(ids.add(row.getInt("id"))));
+            scan.close();
+            assertEquals(500, ids.size());
+            assertEquals(1000, count(other));
+            other.close();
+
+            /* Keys are read as the scan progresses, and closing early stops the workers */
+            final AtomicInteger pulled = new AtomicInteger();
+            final Iterator<String> counting = keys.stream().peek(key -> pulled.incrementAndGet()).iterator();
+            final Operator abandoned = new ParallelScanOperator(counting, key -> new JSONObject().put("id", key), null, 4, 1, executor);
+            assertTrue(abandoned.hasNext());
+            abandoned.close();
+            assertFalse(abandoned.hasNext());
+            assertTrue(pulled.get() < 10);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static int count(final Iterator<JSONObject> iterator) {
+        int count = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        return count;
+    }
+
+    private static List<JSONObject> rows(final int count) {
+        final List<JSONObject> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(new JSONObject().put("id", i).put("name", "row-" + i));
+        }
+        return rows;
+    }
+
+    private static class ListOperator implements Operator {
+
+        private final Iterator<JSONObject> iterator;
+        private int pulled = 0;
+        private boolean closed = false;
+
+        private ListOperator(final List<JSONObject> rows) {
+            this.iterator = rows.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !closed && iterator.hasNext();
+        }
+
+        @Override
+        public JSONObject next() {
+            pulled++;
+            return iterator.next();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.planner;
+
+import com.blobcity.db.lang.Operators;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import org.json.JSONObject;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author sanketsarang
+ */
+public class ColumnStatisticsTest {
+
+    private static final double DELTA = 0.02;
+
+    @Test
+    public void testHistogram() {
+        final Map<Double, Long> distribution = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            distribution.put((double) i, 1L);
+        }
+        final EquiDepthHistogram histogram = EquiDepthHistogram.build(distribution, 10);
+        assertEquals(10, histogram.getBuckets());
+        assertEquals(0, histogram.fractionBelow(-5), DELTA);
+        assertEquals(0.25, histogram.fractionBelow(250), DELTA);
+        assertEquals(0.5, histogram.fractionBetween(250, 750), DELTA);
+        assertEquals(1, histogram.fractionBelow(5000), DELTA);
+
+        /* Skewed data: half of all rows hold a single value */
+        distribution.clear();
+        distribution.put(1.0, 500L);
+        for (int i = 2; i <= 501; i++) {
+            distribution.put((double) i, 1L);
+        }
+        final EquiDepthHistogram skewed = EquiDepthHistogram.build(distribution, 10);
+        assertTrue(skewed.fractionBelow(2) >= 0.4);
+    }
+
+    @Test
+    public void testExactFrequencies() {
+        final Map<String, Long> frequencies = new HashMap<>();
+        frequencies.put("red", 700L);
+        frequencies.put("green", 200L);
+        frequencies.put("blue", 100L);
+        final ColumnStatistics statistics = ColumnStatistics.fromFrequencies("colour", 1000, 0, 3, frequencies, true);
+
+        assertEquals(0.7, statistics.selectivity(Operators.EQ, "red"), DELTA);
+        assertEquals(0.3, statistics.selectivity(Operators.NEQ, "red"), DELTA);
+        assertEquals(0, statistics.selectivity(Operators.EQ, "black"), DELTA);
+        assertEquals(0.3, statistics.selectivity(Operators.IN, new HashSet<>(Arrays.asList("green", "blue"))), DELTA);
+        assertEquals(0.7, statistics.selectivity(Operators.NOT_IN, new HashSet<>(Arrays.asList("green", "blue"))), DELTA);
+        assertNull(statistics.getMin());
+    }
+
+    @Test
+    public void testNumericRanges() {
+        final Map<String, Long> frequencies = new HashMap<>();
+        for (int i = 1; i <= 100; i++) {
+            frequencies.put(String.valueOf(i), 10L);
+        }
+        final ColumnStatistics statistics = ColumnStatistics.fromFrequencies("age", 1200, 200, 100, frequencies, true);
+
+        assertEquals(1.0, statistics.getMin(), 0);
+        assertEquals(100.0, statistics.getMax(), 0);
+        assertEquals(10.0 / 1200, statistics.selectivity(Operators.EQ, 25), 0.001);
+        assertEquals(10.0 / 1200, statistics.selectivity(Operators.EQ, "25.0"), 0.001);
+        assertEquals(0, statistics.selectivity(Operators.EQ, 500), 0);
+
+        /* Nulls never satisfy a comparison */
+        final double nonNull = 1000.0 / 1200;
+        assertEquals(0.5 * nonNull, statistics.selectivity(Operators.LT, 50), 0.05);
+        assertEquals(0.5 * nonNull, statistics.selectivity(Operators.GT, 50), 0.05);
+        assertEquals(nonNull, statistics.selectivity(Operators.GTEQ, 0), 0.01);
+        assertEquals(0, statistics.selectivity(Operators.GT, 100), 0.01);
+    }
+
+    @Test
+    public void testDefaults() {
+        final ColumnStatistics statistics = ColumnStatistics.unknown("name", 1000);
+        assertEquals(ColumnStatistics.DEFAULT_EQ_SELECTIVITY, statistics.selectivity(Operators.EQ, "x"), 0);
+        assertEquals(ColumnStatistics.DEFAULT_RANGE_SELECTIVITY, statistics.selectivity(Operators.GT, 10), 0);
+        assertEquals(-1, statistics.getDistinctCount());
+    }
+
+    @Test
+    public void testComparison() {
+        final JSONObject record = new JSONObject().put("age", 30).put("name", "anne");
+        assertTrue(new Comparison("age", Operators.GT, 25).test(record));
+        assertTrue(new Comparison("age", Operators.EQ, "30.0").test(record));
+        assertFalse(new Comparison("age", Operators.LT, 25).test(record));
+        assertTrue(new Comparison("name", Operators.IN, new HashSet<>(Arrays.asList("anne", "bob"))).test(record));
+        assertFalse(new Comparison("missing", Operators.NEQ, 1).test(record));
+
+        final Comparison selective = new Comparison("name", Operators.EQ, "anne");
+        selective.setSelectivity(0.01);
+        final Comparison broad = new Comparison("age", Operators.GT, 10);
+        broad.setSelectivity(0.9);
+        final Conjunction conjunction = new Conjunction(Arrays.asList(broad, selective));
+        conjunction.orderBySelectivity();
+        assertSame(selective, conjunction.getChildren().get(0));
+        assertEquals(0.009, conjunction.getSelectivity(), 0.0001);
+        assertTrue(conjunction.test(record));
+        assertEquals(new HashSet<>(Arrays.asList("age", "name")), new Negation(conjunction).getColumns());
+    }
+}
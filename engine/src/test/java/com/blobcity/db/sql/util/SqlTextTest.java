@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.util;
+
+import com.blobcity.db.exceptions.OperationException;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author sanketsarang
+ */
+public class SqlTextTest {
+
+    @Test
+    public void testNormalize() {
+        assertEquals("SELECT * FROM t WHERE id = ?", SqlText.normalize("  SELECT *\n\tFROM t   WHERE id = ?  "));
+        assertEquals("SELECT * FROM t WHERE name = 'a  b'", SqlText.normalize("SELECT * FROM t WHERE name =   'a  b'"));
+        assertEquals("SELECT \"my  col\" FROM t", SqlText.normalize("SELECT  \"my  col\"  FROM t"));
+    }
+
+    @Test
+    public void testBind() throws OperationException {
+        assertEquals("SELECT * FROM t WHERE id = 'it''s' AND age > 25 AND x IS NULL AND b = TRUE",
+                SqlText.bind("SELECT * FROM t WHERE id = ? AND age > ? AND x IS ? AND b = ?", Arrays.asList("it's", 25, null, true)));
+
+        /* Question marks inside literals are not placeholders */
+        assertEquals("SELECT * FROM t WHERE q = '?' AND id = 1", SqlText.bind("SELECT * FROM t WHERE q = '?' AND id = ?", Arrays.asList(1)));
+    }
+
+    @Test
+    public void testParameterCount() {
+        try {
+            SqlText.bind("SELECT * FROM t WHERE id = ? AND age = ?", Collections.singletonList(1));
+            fail("Missing parameter not detected");
+        } catch (OperationException ex) {
+            //expected
+        }
+
+        try {
+            SqlText.bind("SELECT * FROM t", Collections.singletonList(1));
+            fail("Extra parameter not detected");
+        } catch (OperationException ex) {
+            //expected
+        }
+    }
+
+    @Test
+    public void testParallelismHint() {
+        assertEquals(8, SqlText.parallelism("SELECT /*+ PARALLEL(8) */ * FROM t"));
+        assertEquals(4, SqlText.parallelism("select /*+ parallel ( 4 ) */ count(*) from t where a > 1"));
+        assertEquals(0, SqlText.parallelism("SELECT * FROM t"));
+        assertEquals(0, SqlText.parallelism("SELECT /* PARALLEL(8) */ * FROM t"));
+        assertEquals(0, SqlText.parallelism("SELECT * FROM t WHERE note = '/*+ PARALLEL(8) */'"));
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.sql.vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONObject;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author sanketsarang
+ */
+public class GroupAggregatorTest {
+
+    @Test
+    public void testLongIntHashMap() {
+        final LongIntHashMap map = new LongIntHashMap(4);
+        for (long i = -1000; i < 1000; i++) {
+            assertEquals(-1, map.putIfAbsent(i * 7919, (int) (i + 1000)));
+        }
+        assertEquals(2000, map.size());
+        assertEquals(1000, map.get(0));
+        assertEquals(0, map.get(-1000L * 7919));
+        assertEquals(-1, map.get(3));
+        assertEquals(1000, map.idOf(0));
+        assertEquals(2000, map.idOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testGroupBy() {
+        final List<JSONObject> rows = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            final JSONObject row = new JSONObject().put("region", "r" + (i % 3)).put("hour", i % 2).put("amount", i);
+            if (i % 10 == 0) {
+                row.remove("amount");
+            }
+            rows.add(row);
+        }
+
+        final GroupAggregator aggregator = new GroupAggregator(Arrays.asList("region", "hour"), Arrays.asList(
+                new AggregateSpec(AggregateFunction.COUNT_STAR, null, "COUNT(*)", null),
+                new AggregateSpec(AggregateFunction.COUNT, "amount", "count(amount)", null),
+                new AggregateSpec(AggregateFunction.SUM, "amount", "sum(amount)", value -> (long) value),
+                new AggregateSpec(AggregateFunction.AVG, "amount", "avg(amount)", null),
+                new AggregateSpec(AggregateFunction.MIN, "amount", "min(amount)", null),
+                new AggregateSpec(AggregateFunction.MAX, "amount", "max(amount)", null)));
+        for (int from = 0; from < rows.size(); from += 1000) {
+            aggregator.add(rows.subList(from, from + 1000));
+        }
+        assertEquals(6, aggregator.getGroupCount());
+
+        /* Expected values computed the slow way */
+        final Map<String, long[]> expected = new HashMap<>();
+        for (int i = 0; i < 10000; i++) {
+            final long[] state = expected.computeIfAbsent("r" + (i % 3) + "/" + (i % 2), key -> new long[]{0, 0, 0, Long.MAX_VALUE, Long.MIN_VALUE});
+            state[0]++;
+            if (i % 10 != 0) {
+                state[1]++;
+                state[2] += i;
+                state[3] = Math.min(state[3], i);
+                state[4] = Math.max(state[4], i);
+            }
+        }
+
+        for (JSONObject row : aggregator.result()) {
+            final long[] state = expected.get(row.get("region") + "/" + row.get("hour"));
+            assertEquals(state[0], ((Number) row.get("COUNT(*)")).longValue());
+            assertEquals(state[1], ((Number) row.get("count(amount)")).longValue());
+            assertEquals(state[2], ((Number) row.get("sum(amount)")).longValue());
+            assertEquals((double) state[2] / state[1], ((Number) row.get("avg(amount)")).doubleValue(), 0.0001);
+            assertEquals(state[3], ((Number) row.get("min(amount)")).longValue());
+            assertEquals(state[4], ((Number) row.get("max(amount)")).longValue());
+        }
+    }
+
+    @Test
+    public void testNullAndMixedKeys() {
+        final List<JSONObject> rows = Arrays.asList(
+                new JSONObject().put("k", 5).put("v", "1.5"),
+                new JSONObject().put("k", 5.0).put("v", 2),
+                new JSONObject().put("v", 4),
+                new JSONObject().put("k", JSONObject.NULL).put("v", ""));
+        final GroupAggregator aggregator = new GroupAggregator(Collections.singletonList("k"), Arrays.asList(
+                new AggregateSpec(AggregateFunction.SUM, "v", "sum(v)", null),
+                new AggregateSpec(AggregateFunction.COUNT, "v", "count(v)", null)));
+        aggregator.add(rows);
+
+        final List<JSONObject> result = aggregator.result();
+        assertEquals(2, result.size());
+        assertEquals(3.5, ((Number) result.get(0).get("sum(v)")).doubleValue(), 0);
+        assertEquals(4.0, ((Number) result.get(1).get("sum(v)")).doubleValue(), 0);
+
+        /* An empty string is a value, so it is counted though it is not summed */
+        assertEquals(2L, ((Number) result.get(1).get("count(v)")).longValue());
+    }
+
+    @Test
+    public void testWithoutGroups() {
+        final GroupAggregator aggregator = new GroupAggregator(Collections.emptyList(), Arrays.asList(
+                new AggregateSpec(AggregateFunction.COUNT_STAR, null, "COUNT(*)", null),
+                new AggregateSpec(AggregateFunction.MAX, "v", "max(v)", null)));
+        aggregator.add(Collections.emptyList());
+
+        final List<JSONObject> result = aggregator.result();
+        assertEquals(1, result.size());
+        assertEquals(0L, result.get(0).get("COUNT(*)"));
+        assertSame(JSONObject.NULL, result.get(0).get("max(v)"));
+    }
+}
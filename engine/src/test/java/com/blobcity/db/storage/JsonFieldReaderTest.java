@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.storage;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.json.JSONObject;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author sanketsarang
+ */
+public class JsonFieldReaderTest {
+
+    private static final String RECORD = "{\"a\": \"anne\", \"b\": {\"x\": [1, \"}\", {\"y\": null}]}, \"c\" : 42,"
+            + " \"d\": \"say \\\"hi\\\"\", \"e\": null, \"f\": true, \"g\": [\"]\", 2.5]}";
+
+    @Test
+    public void testReadSelectedFields() {
+        final Map<String, String> fields = new HashMap<>();
+        fields.put("a", "name");
+        fields.put("c", "age");
+        final JSONObject record = JsonFieldReader.read(RECORD, fields);
+        assertEquals(2, record.length());
+        assertEquals("anne", record.getString("name"));
+        assertEquals(42, record.getInt("age"));
+    }
+
+    @Test
+    public void testDecodesLikeFullParse() {
+        final JSONObject full = new JSONObject(RECORD);
+        final Map<String, String> fields = new HashMap<>();
+        for (String key : full.keySet()) {
+            fields.put(key, key);
+        }
+        fields.put("missing", "missing");
+
+        final JSONObject record = JsonFieldReader.read(RECORD, fields);
+        assertEquals(full.length(), record.length());
+        assertEquals("say \"hi\"", record.getString("d"));
+        assertSame(JSONObject.NULL, record.get("e"));
+        assertEquals(Boolean.TRUE, record.get("f"));
+        assertEquals(full.getJSONObject("b").toString(), record.getJSONObject("b").toString());
+        assertEquals(full.getJSONArray("g").toString(), record.getJSONArray("g").toString());
+    }
+
+    @Test
+    public void testMalformed() {
+        final Map<String, String> fields = new HashMap<>();
+        fields.put("z", "z");
+        assertNull(JsonFieldReader.read("[1, 2]", fields));
+        assertNull(JsonFieldReader.read("{\"a\": \"unterminated}", fields));
+        assertNull(JsonFieldReader.read("{\"a\": 1", fields));
+        assertEquals(0, JsonFieldReader.read("{}", fields).length());
+    }
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.storage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author sanketsarang
+ */
+public class SegmentedCollectionTest {
+
+    private Path folder;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("segments");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+            for (Path path : stream) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(folder);
+    }
+
+    @Test
+    public void testPutGetRemove() throws IOException {
+        try (SegmentedCollection collection = SegmentedCollection.open(folder, 1024)) {
+            assertTrue(collection.putIfAbsent("a", bytes("{\"v\":1}")));
+            assertFalse(collection.putIfAbsent("a", bytes("{\"v\":2}")));
+            collection.put("b", bytes("{\"v\":3}"));
+            collection.put("b", bytes("{\"v\":4}"));
+
+            assertEquals("{\"v\":1}", string(collection.get("a")));
+            assertEquals("{\"v\":4}", string(collection.get("b")));
+            assertEquals(2, collection.size());
+
+            assertTrue(collection.remove("a"));
+            assertFalse(collection.remove("a"));
+            assertNull(collection.get("a"));
+            assertEquals(1, collection.size());
+
+            assertTrue(collection.rename("b", "c"));
+            assertNull(collection.get("b"));
+            assertEquals("{\"v\":4}", string(collection.get("c")));
+        }
+    }
+
+    @Test
+    public void testReopenReplaysSegments() throws IOException {
+        try (SegmentedCollection collection = SegmentedCollection.open(folder, 256)) {
+            for (int i = 0; i < 100; i++) {
+                collection.put("key" + i, bytes("value" + i));
+            }
+            for (int i = 0; i < 100; i += 2) {
+                collection.remove("key" + i);
+            }
+            collection.put("key1", bytes("updated"));
+        }
+
+        assertTrue("records should span multiple segments", countSegments() > 1);
+
+        try (SegmentedCollection collection = SegmentedCollection.open(folder, 256)) {
+            assertEquals(50, collection.size());
+            assertNull(collection.get("key0"));
+            assertEquals("updated", string(collection.get("key1")));
+            assertEquals("value99", string(collection.get("key99")));
+        }
+    }
+
+    @Test
+    public void testTornTailIsTruncated() throws IOException {
+        try (SegmentedCollection collection = SegmentedCollection.open(folder, 1024 * 1024)) {
+            collection.put("a", bytes("first"));
+            collection.put("b", bytes("second"));
+        }
+
+        /* simulate a crash half way through writing a record */
+        final Path segment = folder.resolve(RecordSegment.fileName(1));
+        Files.write(segment, new byte[]{RecordSegment.TYPE_PUT, 0, 0, 0, 1}, StandardOpenOption.APPEND);
+
+        try (SegmentedCollection collection = SegmentedCollection.open(folder, 1024 * 1024)) {
+            assertEquals(2, collection.size());
+            assertEquals("second", string(collection.get("b")));
+            collection.put("c", bytes("third"));
+        }
+
+        try (SegmentedCollection collection = SegmentedCollection.open(folder, 1024 * 1024)) {
+            assertEquals(3, collection.size());
+            assertEquals("third", string(collection.get("c")));
+        }
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        try (SegmentedCollection collection = SegmentedCollection.open(folder, 512)) {
+            for (int round = 0; round < 10; round++) {
+                for (int i = 0; i < 20; i++) {
+                    collection.put("key" + i, bytes("round" + round));
+                }
+            }
+            collection.remove("key0");
+            final int segmentsBefore = countSegments();
+
+            assertTrue(collection.garbageRatio() > 0.5);
+            assertTrue(collection.compact(0.5) > 0);
+            assertTrue(countSegments() < segmentsBefore);
+
+            assertEquals(19, collection.size());
+            assertNull(collection.get("key0"));
+            assertEquals("round9", string(collection.get("key5")));
+        }
+
+        try (SegmentedCollection collection = SegmentedCollection.open(folder, 512)) {
+            final Set<String> keys = new HashSet<>();
+            collection.keys().forEachRemaining(keys::add);
+            assertEquals(19, keys.size());
+            assertFalse(keys.contains("key0"));
+            assertEquals("round9", string(collection.get("key19")));
+        }
+    }
+
+    @Test
+    public void testTombstoneDroppedOnceNoOlderSegmentHoldsKey() throws IOException {
+        try (SegmentedCollection collection = SegmentedCollection.open(folder, 256)) {
+
+            /* A fully live first segment that is never compacted and does not hold the deleted key */
+            for (int i = 0; i < 12; i++) {
+                collection.put("stay" + i, bytes("value"));
+            }
+            collection.put("gone", bytes("value"));
+            for (int i = 0; i < 20; i++) {
+                collection.put("key" + i, bytes("first"));
+            }
+            collection.remove("gone");
+            for (int round = 0; round < 5; round++) {
+                for (int i = 0; i < 20; i++) {
+                    collection.put("key" + i, bytes("round" + round));
+                }
+            }
+
+            assertTrue(collection.compact(0.5) > 0);
+            assertEquals(0, countTombstones());
+        }
+
+        try (SegmentedCollection collection = SegmentedCollection.open(folder, 256)) {
+            assertNull(collection.get("gone"));
+            assertEquals(32, collection.size());
+        }
+    }
+
+    private int countTombstones() throws IOException {
+        final int[] count = new int[1];
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, "*" + RecordSegment.FILE_EXTENSION)) {
+            for (Path path : stream) {
+                try (RecordSegment segment = RecordSegment.open(folder, RecordSegment.parseId(path.getFileName().toString()))) {
+                    segment.scan((type, key, value, pointer) -> {
+                        if (type == RecordSegment.TYPE_DELETE) {
+                            count[0]++;
+                        }
+                    });
+                }
+            }
+        }
+        return count[0];
+    }
+
+    private int countSegments() throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, "*" + RecordSegment.FILE_EXTENSION)) {
+            for (Path path : stream) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static byte[] bytes(final String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(final byte[] value) {
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.transaction;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author sanketsarang
+ */
+public class CommitLogTest {
+
+    private Path folder;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("commit-logs");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (Path path : CommitLog.listSegments(folder)) {
+            Files.delete(path);
+        }
+        Files.deleteIfExists(folder.resolve(CommitLog.CHECKPOINT_FILE));
+        Files.deleteIfExists(folder.resolve("commit.log"));
+        Files.delete(folder);
+    }
+
+    @Test
+    public void testConcurrentWritesAreAllLogged() throws IOException {
+        try (CommitLog commitLog = CommitLog.open(folder, CommitLogSyncMode.BATCH)) {
+            IntStream.range(0, 2000).parallel().forEach(i -> {
+                try {
+                    commitLog.write(new CommitLogRecord(i, "{\"i\":" + i + "}"));
+                } catch (IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            });
+        }
+
+        final Set<Long> timestamps = new HashSet<>();
+        for (CommitLogRecord record : readAll()) {
+            assertEquals("{\"i\":" + record.getTimestamp() + "}", record.getPayload());
+            timestamps.add(record.getTimestamp());
+        }
+        assertEquals(2000, timestamps.size());
+    }
+
+    @Test
+    public void testIntervalModeWritesOnSync() throws IOException {
+        try (CommitLog commitLog = CommitLog.open(folder, CommitLogSyncMode.INTERVAL)) {
+            commitLog.write(new CommitLogRecord(1, "{}"));
+            assertTrue(commitLog.hasUnsyncedWrites());
+            assertEquals(0, readAll().size());
+            commitLog.sync();
+            assertFalse(commitLog.hasUnsyncedWrites());
+            assertEquals(1, readAll().size());
+        }
+    }
+
+    @Test
+    public void testTornRecordIsRejected() {
+        final byte[] bytes = new CommitLogRecord(5, "{\"a\":1}").toBytes();
+        assertNotNull(CommitLogRecord.read(ByteBuffer.wrap(bytes)));
+
+        final ByteBuffer torn = ByteBuffer.wrap(bytes, 0, bytes.length - 1).slice();
+        assertNull(CommitLogRecord.read(torn));
+        assertEquals(0, torn.position());
+
+        bytes[bytes.length - 1] ^= 1;
+        assertNull(CommitLogRecord.read(ByteBuffer.wrap(bytes)));
+    }
+
+    @Test
+    public void testReopenStartsNewSegment() throws IOException {
+        try (CommitLog commitLog = CommitLog.open(folder, CommitLogSyncMode.OS)) {
+            commitLog.write(new CommitLogRecord(1, "{}"));
+        }
+        try (CommitLog commitLog = CommitLog.open(folder, CommitLogSyncMode.OS)) {
+            commitLog.write(new CommitLogRecord(2, "{}"));
+        }
+        assertEquals(2, CommitLog.listSegments(folder).size());
+        assertEquals(2, readAll().size());
+    }
+
+    @Test
+    public void testCheckpointDropsOlderSegments() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            try (CommitLog commitLog = CommitLog.open(folder, CommitLogSyncMode.BATCH)) {
+                commitLog.write(new CommitLogRecord(i, "{}"));
+            }
+        }
+        assertEquals(3, CommitLog.listSegments(folder).size());
+
+        CommitLog.writeCheckpoint(folder, 4);
+        assertEquals(4, CommitLog.readCheckpoint(folder));
+        assertTrue(CommitLog.listSegments(folder).isEmpty());
+
+        try (CommitLog commitLog = CommitLog.open(folder, CommitLogSyncMode.BATCH)) {
+            assertEquals(4, commitLog.getActiveSegmentId());
+        }
+    }
+
+    @Test
+    public void testSegmentRecordsSyncMode() throws IOException {
+        try (CommitLog commitLog = CommitLog.open(folder, CommitLogSyncMode.INTERVAL)) {
+            commitLog.write(new CommitLogRecord(1, "{}"));
+        }
+        final Path segment = CommitLog.listSegments(folder).get(0);
+        assertEquals(CommitLogSyncMode.INTERVAL, CommitLog.readSyncMode(segment));
+        assertEquals(1, readAll().size());
+
+        /* A segment whose header was torn by a crash holds no records */
+        Files.write(segment, new byte[CommitLog.SEGMENT_HEADER_SIZE - 1]);
+        assertNull(CommitLog.readSyncMode(segment));
+        assertTrue(readAll().isEmpty());
+    }
+
+    @Test
+    public void testLegacyLogIsNotASegment() throws IOException {
+        Files.write(folder.resolve("commit.log"), "{}".getBytes(StandardCharsets.UTF_8));
+        assertEquals(-1, CommitLog.segmentId(folder.resolve("commit.log")));
+
+        try (CommitLog commitLog = CommitLog.open(folder, CommitLogSyncMode.BATCH)) {
+            commitLog.write(new CommitLogRecord(1, "{}"));
+        }
+        try (CommitLog commitLog = CommitLog.open(folder, CommitLogSyncMode.BATCH)) {
+            assertEquals(2, commitLog.getActiveSegmentId());
+        }
+        assertEquals(2, CommitLog.listSegments(folder).size());
+    }
+
+    private List<CommitLogRecord> readAll() throws IOException {
+        final List<CommitLogRecord> records = new ArrayList<>();
+        for (Path segment : CommitLog.listSegments(folder)) {
+            CommitLog.readSegment(segment, records::add);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.db.watchservice;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author sanketsarang
+ */
+public class FileTailerTest {
+
+    private Path folder;
+    private Path path;
+    private Thread thread;
+    private FileTailer tailer;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("tail");
+        path = folder.resolve("app.log");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (tailer != null) {
+            tailer.stop();
+            thread.join(5000);
+        }
+        for (File file : folder.toFile().listFiles()) {
+            Files.delete(file.toPath());
+        }
+        Files.delete(folder);
+    }
+
+    @Test
+    public void testBatchesAndCheckpoints() throws Exception {
+        append(path, lines(0, 10));
+        final RecordingListener listener = new RecordingListener(0);
+        start(0, listener);
+
+        await(() -> listener.lines().size() == 10);
+        assertEquals(lines(0, 10), listener.lines());
+        assertEquals(Arrays.asList(4, 4, 2), listener.sizes());
+        assertEquals(Arrays.asList(24L, 48L, 60L), listener.offsets());
+    }
+
+    @Test
+    public void testResumesFromCheckpointedOffset() throws Exception {
+        append(path, lines(0, 6));
+        final RecordingListener listener = new RecordingListener(0);
+        start(24, listener);
+
+        await(() -> listener.lines().size() == 2);
+        assertEquals(lines(4, 6), listener.lines());
+        assertEquals(Arrays.asList(36L), listener.offsets());
+    }
+
+    @Test
+    public void testFailedBatchIsRetriedWithoutLosingLines() throws Exception {
+        append(path, lines(0, 10));
+        final RecordingListener listener = new RecordingListener(2);
+        start(0, listener);
+
+        await(() -> listener.lines().size() == 10);
+        assertEquals(lines(0, 10), listener.lines());
+        assertEquals(Arrays.asList(24L, 48L, 60L), listener.offsets());
+        assertEquals(5, listener.attempts());
+    }
+
+    @Test
+    public void testRotationIsFollowed() throws Exception {
+        append(path, lines(0, 2));
+        final RecordingListener listener = new RecordingListener(0);
+        start(0, listener);
+        await(() -> listener.lines().size() == 2);
+
+        /* The new file is longer than the old one, so it cannot be told apart by its length alone */
+        final Path rotated = folder.resolve("app.log.1");
+        Files.move(path, rotated);
+        append(rotated, lines(2, 3));
+        Thread.sleep(100);
+        append(path, Arrays.asList("a-much-longer-line-in-the-new-file"));
+
+        await(() -> listener.lines().size() == 4);
+        final List<String> expected = lines(0, 3);
+        expected.add("a-much-longer-line-in-the-new-file");
+        assertEquals(expected, listener.lines());
+        assertEquals(35L, (long) listener.offsets().get(listener.offsets().size() - 1));
+    }
+
+    @Test
+    public void testTruncationRestartsFromStart() throws Exception {
+        append(path, lines(0, 3));
+        final RecordingListener listener = new RecordingListener(0);
+        start(0, listener);
+        await(() -> listener.lines().size() == 3);
+
+        Files.write(path, "x\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+        await(() -> listener.lines().size() == 4);
+        assertEquals("x", listener.lines().get(3));
+        assertEquals(2L, (long) listener.offsets().get(listener.offsets().size() - 1));
+    }
+
+    private void start(final long offset, final FileTailListener listener) {
+        tailer = new FileTailer(path.toFile(), offset, listener, 10, 4, 1024 * 1024, 100);
+        thread = new Thread(tailer);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static List<String> lines(final int from, final int to) {
+        final List<String> lines = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            lines.add("line" + i);
+        }
+        return lines;
+    }
+
+    private static void append(final Path file, final List<String> lines) throws IOException {
+        final StringBuilder text = new StringBuilder();
+        lines.forEach(line -> text.append(line).append('\n'));
+        Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static void await(final BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    /**
+     * Records committed batches, failing the first <code>failures</code> attempts
+     */
+    private static class RecordingListener extends FileTailListener {
+
+        private final List<String> lines = new ArrayList<>();
+        private final List<Integer> sizes = new ArrayList<>();
+        private final List<Long> offsets = new ArrayList<>();
+        private int failures;
+        private int attempts = 0;
+
+        private RecordingListener(final int failures) {
+            this.failures = failures;
+        }
+
+        @Override
+        public synchronized boolean handle(final List<String> batch, final long offset) {
+            attempts++;
+            if (failures > 0) {
+                failures--;
+                return false;
+            }
+            lines.addAll(batch);
+            sizes.add(batch.size());
+            offsets.add(offset);
+            return true;
+        }
+
+        private synchronized List<String> lines() {
+            return new ArrayList<>(lines);
+        }
+
+        private synchronized List<Integer> sizes() {
+            return new ArrayList<>(sizes);
+        }
+
+        private synchronized List<Long> offsets() {
+            return new ArrayList<>(offsets);
+        }
+
+        private synchronized int attempts() {
+            return attempts;
+        }
+    }
+}
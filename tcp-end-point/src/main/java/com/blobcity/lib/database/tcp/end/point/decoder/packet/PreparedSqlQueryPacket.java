@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2018 BlobCity Inc
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.blobcity.lib.database.tcp.end.point.decoder.packet;
+
+import com.blobcity.lib.database.tcp.end.point.decoder.exception.DecodeException;
+import com.blobcity.lib.database.tcp.end.point.decoder.packet.base.Header;
+import com.blobcity.lib.database.tcp.end.point.decoder.packet.base.Packet;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Represents a packet containing a prepared SQL statement along with the values of its <code>?</code> placeholders.
+ * The data of the packet is a JSON object of the form <code>{"q": "SELECT * FROM t WHERE id = ?", "p": ["a"]}</code>.
+ *
+ * @author sanketsarang
+ */
+public class PreparedSqlQueryPacket extends Packet {
+
+    private final String sql;
+    private final List<Object> parameters;
+
+    /**
+     * Creates an instance of a packet containing a prepared SQL statement
+     *
+     * @param header {@link Header} object representing the header information for this packet
+     * @param dataBytes bytes of data remaining in the message after reading the header
+     * @throws DecodeException if the data is not a JSON object holding the statement and its parameters
+     */
+    public PreparedSqlQueryPacket(final Header header, final byte[] dataBytes) throws DecodeException {
+        super(header);
+        try {
+            final JSONObject jsonObject = new JSONObject(new String(dataBytes, StandardCharsets.UTF_8));
+            this.sql = jsonObject.getString("q");
+            final JSONArray jsonArray = jsonObject.optJSONArray("p");
+            final List<Object> list = new ArrayList<>();
+            if (jsonArray != null) {
+                for (int i = 0; i < jsonArray.length(); i++) {
+                    list.add(jsonArray.isNull(i) ? null : jsonArray.get(i));
+                }
+            }
+            this.parameters = Collections.unmodifiableList(list);
+        } catch (JSONException ex) {
+            throw new DecodeException("Invalid prepared statement packet", ex);
+        }
+    }
+
+    /**
+     * @return the SQL statement, with a <code>?</code> placeholder for every parameter
+     */
+    @Override
+    public String getData() {
+        return sql;
+    }
+
+    /**
+     * @return values of the placeholders in order of occurrence
+     */
+    public List<Object> getParameters() {
+        return parameters;
+    }
+
+    @Override
+    public String toString() {
+        return "PreparedSqlQueryPacket{header=\"" + header + "\", data=\"" + sql + "\", parameters=" + parameters + "}";
+    }
+}
@@ -18,6 +18,7 @@ package com.blobcity.lib.database.tcp.end.point.decoder.packet.base;
 
 import com.blobcity.lib.database.tcp.end.point.decoder.exception.DecodeException;
 import com.blobcity.lib.database.tcp.end.point.decoder.packet.LoginRequestPacket;
+import com.blobcity.lib.database.tcp.end.point.decoder.packet.PreparedSqlQueryPacket;
 import com.blobcity.lib.database.tcp.end.point.decoder.packet.SqlQueryPacket;
 import com.blobcity.lib.database.tcp.end.point.decoder.packet.field.MessageStatus;
 import com.blobcity.lib.database.tcp.end.point.decoder.packet.field.MessageType;
@@ -40,6 +41,8 @@ public abstract class Header {
         switch (getType()) {
             case SQL_BATCH:
                 return new SqlQueryPacket(this, dataBytes);
+            case SQL_PREPARED:
+                return new PreparedSqlQueryPacket(this, dataBytes);
             case LOGIN_REQ:
                 return new LoginRequestPacket(this, dataBytes);
             default:
@@ -25,7 +25,7 @@ import com.blobcity.lib.database.tcp.end.point.decoder.exception.DecodeException
  */
 public enum MessageType {
 
-    SQL_BATCH((byte) 0x01), TABULAR_RESULT((byte) 0x02), BULK_LOAD_DATA((byte) 0x03), ACK_RESP((byte) 0x10), PRE_LOGIN_REQ((byte) 0x11), LOGIN_REQ((byte) 0x12);
+    SQL_BATCH((byte) 0x01), TABULAR_RESULT((byte) 0x02), BULK_LOAD_DATA((byte) 0x03), SQL_PREPARED((byte) 0x04), ACK_RESP((byte) 0x10), PRE_LOGIN_REQ((byte) 0x11), LOGIN_REQ((byte) 0x12);
 
     private final byte typeByte;
 
@@ -60,6 +60,8 @@ public enum MessageType {
                 return TABULAR_RESULT;
             case 0x03:
                 return BULK_LOAD_DATA;
+            case 0x04:
+                return SQL_PREPARED;
             case 0x10:
                 return ACK_RESP;
             case 0x11:
@@ -17,10 +17,12 @@
 package com.blobcity.lib.database.tcp.end.point.handler;
 
 import com.blobcity.lib.database.bean.manager.factory.BeanConfigFactory;
+import com.blobcity.lib.database.bean.manager.interfaces.engine.QueryResultStream;
 import com.blobcity.lib.database.bean.manager.interfaces.engine.RequestStore;
 import com.blobcity.lib.database.bean.manager.interfaces.engine.SqlExecutor;
 import com.blobcity.lib.database.tcp.end.point.decoder.TcpStreamDecoder;
 import com.blobcity.lib.database.tcp.end.point.decoder.packet.LoginRequestPacket;
+import com.blobcity.lib.database.tcp.end.point.decoder.packet.PreparedSqlQueryPacket;
 import com.blobcity.lib.database.tcp.end.point.decoder.packet.base.Packet;
 import com.blobcity.lib.database.tcp.end.point.decoder.packet.SqlQueryPacket;
 import io.netty.buffer.ByteBuf;
@@ -37,11 +39,16 @@ import org.springframework.context.ApplicationContext;
  */
 public class TcpStreamHandler extends ChannelInboundHandlerAdapter {
 
+    /* Maximum number of rows written to the channel in one chunk of a SELECT response */
+    private static final int FETCH_SIZE = 1000;
+
     private final SqlExecutor sqlExecutorBean;
     private final RequestStore requestStore;
     private final Logger logger;
     private final TcpStreamDecoder decoder;
     private LoginRequestPacket sessionBean;
+    private QueryResultStream pendingResponse;
+    private String pendingRequestId;
 
     /**
      * Creates an instance of channel stream that is associated with the respective decoder
@@ -61,6 +68,9 @@ public class TcpStreamHandler extends ChannelInboundHandlerAdapter {
         try {
             if (msg instanceof Exception) {
                 logger.error("Something broke. Write an appropriate message in the channel", (Exception) msg); // TODO: Handle
+            } else if ((msg instanceof SqlQueryPacket || msg instanceof PreparedSqlQueryPacket) && sessionBean != null) {
+                logger.debug("Found message: \"{}\"", msg);
+                streamPacket(ctx, (Packet) msg);
             } else if (msg instanceof Packet) {
                 logger.debug("Found message: \"{}\"", msg);
 
@@ -79,6 +89,70 @@ public class TcpStreamHandler extends ChannelInboundHandlerAdapter {
         }
     }
 
+    /**
+     * Executes an SQL packet and writes its response to the channel chunk by chunk. Chunks are pulled from the
+     * response only while the channel is writable, so a slow client holds back the reading of records instead of
+     * having them buffered in memory. No further packets are read from the channel until the response is complete.
+     *
+     * @param ctx the channel context
+     * @param sqlPacket {@link SqlQueryPacket} or {@link PreparedSqlQueryPacket} containing SQL query data
+     */
+    private void streamPacket(final ChannelHandlerContext ctx, final Packet sqlPacket) {
+        pendingRequestId = requestStore.registerNewRequest(sessionBean.getDbName(), sessionBean.getUserName(), sessionBean.getPasswordHash(), null);
+        if (sqlPacket instanceof PreparedSqlQueryPacket) {
+            pendingResponse = sqlExecutorBean.runPreparedQueryAsStream(pendingRequestId, sessionBean.getUserName(), sessionBean.getPasswordHash(), sessionBean.getDbName(),
+                    sqlPacket.getData(), ((PreparedSqlQueryPacket) sqlPacket).getParameters(), FETCH_SIZE);
+        } else {
+            pendingResponse = sqlExecutorBean.runQueryAsStream(pendingRequestId, sessionBean.getUserName(), sessionBean.getPasswordHash(), sessionBean.getDbName(), sqlPacket.getData(), FETCH_SIZE);
+        }
+        ctx.channel().config().setAutoRead(false);
+        writePendingResponse(ctx);
+    }
+
+    private void writePendingResponse(final ChannelHandlerContext ctx) {
+        try {
+            while (pendingResponse != null && ctx.channel().isWritable()) {
+                if (!pendingResponse.hasNext()) {
+                    completePendingResponse(ctx);
+                    return;
+                }
+
+                final byte[] bytes = pendingResponse.next().getBytes();
+                final ByteBuf respBytes = ctx.alloc().buffer(bytes.length);
+                respBytes.writeBytes(bytes, 0, bytes.length);
+                ctx.writeAndFlush(respBytes);
+            }
+        } catch (Throwable t) {
+            logger.error("Streaming of SQL response failed", t);
+            completePendingResponse(ctx);
+        }
+    }
+
+    private void completePendingResponse(final ChannelHandlerContext ctx) {
+        if (pendingResponse == null) {
+            return;
+        }
+        pendingResponse.close();
+        requestStore.unregisterRequest(pendingRequestId);
+        pendingResponse = null;
+        pendingRequestId = null;
+        ctx.channel().config().setAutoRead(true);
+    }
+
+    @Override
+    public void channelWritabilityChanged(final ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            writePendingResponse(ctx);
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
+        completePendingResponse(ctx);
+        super.channelInactive(ctx);
+    }
+
     /**
      * Processes packets based on the packet type and provides a response to be returned to the client
      *
@@ -91,6 +165,8 @@ public class TcpStreamHandler extends ChannelInboundHandlerAdapter {
         switch (packet.getHeader().getType()) {
             case SQL_BATCH:
                 return processPacket((SqlQueryPacket) packet);
+            case SQL_PREPARED:
+                return processPacket((PreparedSqlQueryPacket) packet);
             case LOGIN_REQ:
                 return processPacket((LoginRequestPacket) packet);
             default:
@@ -118,6 +194,25 @@ public class TcpStreamHandler extends ChannelInboundHandlerAdapter {
         return response;
     }
 
+    /**
+     * Processes prepared SQL packets by invoking the appropriate database bean
+     *
+     * @param sqlPacket {@link Packet} containing a prepared SQL statement and its parameters
+     * @return response to the requested query
+     */
+    public String processPacket(final PreparedSqlQueryPacket sqlPacket) {
+        if (sessionBean == null) {
+            logger.error("No session bean found!");
+            return "No session bean found!"; // TODO: Write error response here
+        }
+
+        final String requestId = requestStore.registerNewRequest(sessionBean.getDbName(), sessionBean.getUserName(),sessionBean.getPasswordHash(), null);
+        final String response = sqlExecutorBean.runPreparedQuery(requestId, sessionBean.getUserName(), sessionBean.getPasswordHash(), sessionBean.getDbName(), sqlPacket.getData(), sqlPacket.getParameters());
+        logger.debug("[App: {} - SQL: {}] executed. Received a response length of {}.", sessionBean.getDbName(), sqlPacket.getData(), response.length());
+        requestStore.unregisterRequest(requestId);
+        return response;
+    }
+
     /**
      * Processes Login Request packets
      *
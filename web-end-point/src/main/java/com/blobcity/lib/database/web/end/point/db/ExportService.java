@@ -35,13 +35,13 @@ import javax.ws.rs.core.StreamingOutput;
 import java.io.*;
 
 /**
- * Multiformat export service. The endpoints must route to a stored procedure that is designed to export data of the
- * desired format
+ * Multiformat export service. The stored procedure endpoints must route to a stored procedure that is designed to
+ * export data of the desired format, while the collection endpoint streams out all records of a collection
  *
  * @author sanketsarang
  */
 
-@Path("export/{ds}/{sp-name}/{export-type}")
+@Path("export/{ds}")
 public class ExportService {
 
     private final Logger logger;
@@ -62,6 +62,7 @@ public class ExportService {
     }
 
     @GET
+    @Path("{sp-name}/{export-type}")
     @Produces("application/octet-stream")
     public Response handleGet(
             @PathParam(value ="ds") final String datastore,
@@ -103,6 +104,7 @@ public class ExportService {
 
 
     @POST
+    @Path("{sp-name}/{export-type}")
     @Produces("application/octet-stream")
     public Response handlePost(
             @PathParam(value ="ds") final String datastore,
@@ -141,4 +143,36 @@ public class ExportService {
         return Response.ok(output).header("Access-Control-Allow-Origin", "*").header(
                 "Content-Disposition", "attachment; filename=\"" + ger.getFilename() + "\"").build();
     }
+
+    /**
+     * Downloads all records of a collection as CSV, or as JSON with one record per line. Records are streamed to the
+     * client as they are read, so the download starts immediately and is never held in memory in full
+     */
+    @POST
+    @Path("collections/{collection}/{export-type}")
+    @Produces("application/octet-stream")
+    public Response handleCollectionExport(
+            @PathParam(value = "ds") final String datastore,
+            @PathParam(value = "collection") final String collection,
+            @PathParam(value = "export-type") final String exportTypeString,
+            @FormParam(value = "username") final String username,
+            @FormParam(value = "password") final String password,
+            @FormParam(value = "compress") final boolean compress
+    ) {
+        logger.debug("Collection export called: ds={}, collection={}, export-type: {}", datastore, collection, exportTypeString);
+        if (username == null || password == null || !securityManager.verifyCredentials(username, password)) {
+            return Response.status(Response.Status.UNAUTHORIZED).entity("Valid username and password are required").build();
+        }
+
+        final ExportType exportType = ExportType.fromTypeString(exportTypeString);
+        if (exportType != ExportType.CSV && exportType != ExportType.JSON) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(exportTypeString + " not a supported export type for collections").build();
+        }
+
+        final String filename = collection + (exportType == ExportType.CSV ? ".csv" : ".ndjson") + (compress ? ".gz" : "");
+        final StreamingOutput output = out -> exportServiceRouter.exportCollection(datastore, collection, exportType, compress, out);
+
+        return Response.ok(output).header("Access-Control-Allow-Origin", "*").header(
+                "Content-Disposition", "attachment; filename=\"" + filename + "\"").build();
+    }
 }
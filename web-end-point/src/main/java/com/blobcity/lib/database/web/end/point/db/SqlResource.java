@@ -17,8 +17,15 @@
 package com.blobcity.lib.database.web.end.point.db;
 
 import com.blobcity.lib.database.bean.manager.factory.BeanConfigFactory;
+import com.blobcity.lib.database.bean.manager.interfaces.engine.QueryResultStream;
 import com.blobcity.lib.database.bean.manager.interfaces.engine.RequestStore;
 import com.blobcity.lib.database.bean.manager.interfaces.engine.SqlExecutor;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.FormParam;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
@@ -27,6 +34,9 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import org.json.JSONArray;
+import org.json.JSONException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContext;
@@ -41,6 +51,8 @@ import org.springframework.util.StringUtils;
 @Path("rest/sql")
 public class SqlResource {
 
+    private static final int DEFAULT_FETCH_SIZE = 1000;
+
     private final SqlExecutor sqlExecutorBean;
     private final RequestStore requestStore;
     private final Logger logger;
@@ -76,22 +88,55 @@ public class SqlResource {
             @FormParam(value = "ds")
             final String db,
             @FormParam(value = "q")
-            final String queryPayload
+            final String queryPayload,
+            @FormParam(value = "fetchSize")
+            @DefaultValue("" + DEFAULT_FETCH_SIZE)
+            final int fetchSize,
+            @FormParam(value = "params")
+            final String params
     ) {
         if (StringUtils.isEmpty(username) || StringUtils.isEmpty(password) || StringUtils.isEmpty(db) || StringUtils.isEmpty(queryPayload)) {
             return Response.status(Response.Status.BAD_REQUEST).entity("All of the parameters: username, password, db, q - are required").build();
         }
 
+        /* A JSON array of parameters makes q a prepared statement, with a ? placeholder for every parameter */
+        final List<Object> parameters;
+        try {
+            parameters = StringUtils.isEmpty(params) ? null : toList(new JSONArray(params));
+        } catch (JSONException ex) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Parameter params must be a JSON array").build();
+        }
+
+        /* The response is written chunk by chunk as the client reads it, so large results are never held in memory */
         final long startTime = System.currentTimeMillis();
-        final String response = sqlExecutorBean.runQuery("internal", username, password, db, queryPayload);
-        final long executionTime = System.currentTimeMillis() - startTime;
-        logger.debug("User: \"{}\"\n"
-                + "DB: \"{}\"\n"
-                + "Query: \"{}\"\n\n"
-                + "Response: \"{}\"\n\n"
-                + "End of result.", new Object[]{username, db, queryPayload, response});
-        logger.debug("Execution time (ms): " + executionTime);
+        final int rows = fetchSize > 0 ? fetchSize : DEFAULT_FETCH_SIZE;
+        final QueryResultStream response = parameters == null
+                ? sqlExecutorBean.runQueryAsStream("internal", username, password, db, queryPayload, rows)
+                : sqlExecutorBean.runPreparedQueryAsStream("internal", username, password, db, queryPayload, parameters, rows);
+        final StreamingOutput output = outputStream -> {
+            try (QueryResultStream stream = response) {
+                final Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+                while (stream.hasNext()) {
+                    writer.write(stream.next());
+                    writer.flush();
+                }
+            } finally {
+                logger.debug("User: \"{}\"\n"
+                        + "DB: \"{}\"\n"
+                        + "Query: \"{}\"\n\n"
+                        + "End of result.", new Object[]{username, db, queryPayload});
+                logger.debug("Execution time (ms): " + (System.currentTimeMillis() - startTime));
+            }
+        };
 
-        return Response.ok(response, MediaType.APPLICATION_JSON).build();
+        return Response.ok(output, MediaType.APPLICATION_JSON).build();
+    }
+
+    private static List<Object> toList(final JSONArray jsonArray) {
+        final List<Object> list = new ArrayList<>();
+        for (int i = 0; i < jsonArray.length(); i++) {
+            list.add(jsonArray.isNull(i) ? null : jsonArray.get(i));
+        }
+        return list;
     }
 }